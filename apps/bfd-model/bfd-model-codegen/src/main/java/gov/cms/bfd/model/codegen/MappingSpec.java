@@ -275,6 +275,32 @@ public final class MappingSpec {
     return ClassName.get(packageName, headerEntity + "CsvWriter");
   }
 
+  /**
+   * @return the name of the Java class that will be generated to write the {@link
+   *     #getHeaderEntity()} (and its lines, if any) out in PostgreSQL's binary <code>COPY</code>
+   *     format
+   */
+  public ClassName getBinaryCopyWriterClass() {
+    return ClassName.get(packageName, headerEntity + "BinaryCopyWriter");
+  }
+
+  /**
+   * @return the name of the Java class that will be generated to bind the {@link
+   *     #getHeaderEntity()} (and its lines, if any) to batched JDBC <code>INSERT</code>s
+   */
+  public ClassName getJdbcBinderClass() {
+    return ClassName.get(packageName, headerEntity + "JdbcBinder");
+  }
+
+  /**
+   * @return the name of the Java class that will be generated to transcode RIF records for this
+   *     layout straight into PostgreSQL's binary <code>COPY</code> format, without building any
+   *     {@link Entity} instances
+   */
+  public ClassName getCopyTranscoderClass() {
+    return ClassName.get(packageName, headerEntity + "CopyTranscoder");
+  }
+
   /** @see java.lang.Object#toString() */
   @Override
   public String toString() {
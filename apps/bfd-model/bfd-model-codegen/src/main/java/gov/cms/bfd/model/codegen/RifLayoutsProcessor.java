@@ -29,6 +29,7 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -89,6 +90,14 @@ public final class RifLayoutsProcessor extends AbstractProcessor {
   private static final String DATA_DICTIONARY_LINK =
       "https://bluebutton.cms.gov/resources/variables/";
 
+  /**
+   * The <code>"table.column"</code>s for the few <code>NUM</code> fields that are stored as <code>
+   * integer</code>s, rather than as <code>numeric</code>s (see <code>
+   * V1__Create_beneficiary_and_claim_tables.sql</code>).
+   */
+  private static final Set<String> INT4_COLUMNS =
+      ImmutableSet.of("PartDEvents.compoundCode", "SNFClaimLines.unitCount");
+
   private final List<String> logMessages = new LinkedList<>();
 
   /** @see javax.annotation.processing.AbstractProcessor#getSupportedAnnotationTypes() */
@@ -354,6 +363,25 @@ public final class RifLayoutsProcessor extends AbstractProcessor {
      * files, for use with PostgreSQL's copy APIs.
      */
     generateCsvWriter(mappingSpec, headerEntity, lineEntity);
+
+    /*
+     * Then, create code that can be used to write the JPA Entity out in
+     * PostgreSQL's binary copy format, which skips the CSV text round trip.
+     */
+    generateBinaryCopyWriter(mappingSpec, headerEntity, lineEntity);
+
+    /*
+     * Then, create code that can be used to insert the JPA Entity via plain
+     * batched JDBC, bypassing Hibernate.
+     */
+    generateJdbcBinder(mappingSpec, headerEntity, lineEntity);
+
+    /*
+     * Finally, for the layouts whose columns all come straight from the RIF
+     * fields, create code that can be used to transcode RIF records into that
+     * same binary copy format, without building any entities at all.
+     */
+    if (isTranscodable(mappingSpec)) generateCopyTranscoder(mappingSpec, headerEntity, lineEntity);
   }
 
   /**
@@ -815,7 +843,25 @@ public final class RifLayoutsProcessor extends AbstractProcessor {
 
     // Grab some common types we'll need.
     ClassName csvRecordType = ClassName.get("org.apache.commons.csv", "CSVRecord");
+    ClassName rifRecordType = ClassName.get("gov.cms.bfd.model.rif.parse", "RifRecord");
     ClassName parseUtilsType = ClassName.get("gov.cms.bfd.model.rif.parse", "RifParsingUtils");
+    ArrayTypeName columnIndexesType = ArrayTypeName.of(TypeName.INT);
+
+    /*
+     * Generate a method that will resolve the file position of each column, once per file, so
+     * that the index-based parseRif(...) method can skip the by-name header lookups that
+     * CSVRecord.get(...) does for every single value.
+     */
+    MethodSpec.Builder resolveColumnIndexesMethod =
+        MethodSpec.methodBuilder("resolveColumnIndexes")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .returns(columnIndexesType)
+            .addParameter(ParameterizedTypeName.get(List.class, String.class), "header");
+    resolveColumnIndexesMethod.addStatement(
+        "return $T.resolveColumnIndexes(header, $T.values())",
+        parseUtilsType,
+        mappingSpec.getColumnEnum());
+    parsingClass.addMethod(resolveColumnIndexesMethod.build());
 
     MethodSpec.Builder parseMethod =
         MethodSpec.methodBuilder("parseRif")
@@ -823,6 +869,13 @@ public final class RifLayoutsProcessor extends AbstractProcessor {
             .returns(mappingSpec.getHeaderEntity())
             .addParameter(
                 ParameterizedTypeName.get(ClassName.get(List.class), csvRecordType), "csvRecords");
+    MethodSpec.Builder indexedParseMethod =
+        MethodSpec.methodBuilder("parseRif")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .returns(mappingSpec.getHeaderEntity())
+            .addParameter(
+                ParameterizedTypeName.get(ClassName.get(List.class), rifRecordType), "rifRecords")
+            .addParameter(columnIndexesType, "columnIndexes");
 
     parseMethod.addComment("Verify the inputs.");
     parseMethod.addStatement("$T.requireNonNull(csvRecords)", Objects.class);
@@ -830,8 +883,16 @@ public final class RifLayoutsProcessor extends AbstractProcessor {
         .beginControlFlow("if (csvRecords.size() < 1)")
         .addStatement("throw new $T()", IllegalArgumentException.class)
         .endControlFlow();
+    indexedParseMethod.addComment("Verify the inputs.");
+    indexedParseMethod.addStatement("$T.requireNonNull(rifRecords)", Objects.class);
+    indexedParseMethod.addStatement("$T.requireNonNull(columnIndexes)", Objects.class);
+    indexedParseMethod
+        .beginControlFlow("if (rifRecords.size() < 1)")
+        .addStatement("throw new $T()", IllegalArgumentException.class)
+        .endControlFlow();
 
     parseMethod.addCode("\n$1T header = new $1T();\n", mappingSpec.getHeaderEntity());
+    indexedParseMethod.addCode("\n$1T header = new $1T();\n", mappingSpec.getHeaderEntity());
 
     // Loop over each field and generate the code needed to parse it.
     for (int fieldIndex = 0;
@@ -855,22 +916,33 @@ public final class RifLayoutsProcessor extends AbstractProcessor {
       if (fieldIndex == 0) {
         parseMethod.addCode("\n// Parse the header fields.\n");
         parseMethod.addCode("$T headerRecord = csvRecords.get(0);\n", csvRecordType);
+        indexedParseMethod.addCode("\n// Parse the header fields.\n");
+        indexedParseMethod.addCode("$T headerRecord = rifRecords.get(0);\n", rifRecordType);
       }
 
       // Are we starting the line parsing?
       if (mappingSpec.getHasLines() && fieldIndex == mappingSpec.calculateFirstLineFieldIndex()) {
-        parseMethod.addCode("\n// Parse the line fields.\n");
-        parseMethod.beginControlFlow(
-            "for (int lineIndex = 0; lineIndex < csvRecords.size(); lineIndex++)");
-        parseMethod.addStatement("$T lineRecord = csvRecords.get(lineIndex)", csvRecordType);
-        parseMethod.addStatement("$1T line = new $1T()", mappingSpec.getLineEntity());
-
         FieldSpec lineEntityParentField =
             lineEntity.get().fieldSpecs.stream()
                 .filter(f -> f.name.equals(mappingSpec.getLineEntityParentField()))
                 .findAny()
                 .get();
+
+        parseMethod.addCode("\n// Parse the line fields.\n");
+        parseMethod.beginControlFlow(
+            "for (int lineIndex = 0; lineIndex < csvRecords.size(); lineIndex++)");
+        parseMethod.addStatement("$T lineRecord = csvRecords.get(lineIndex)", csvRecordType);
+        parseMethod.addStatement("$1T line = new $1T()", mappingSpec.getLineEntity());
         parseMethod.addCode("line.$L(header);\n\n", calculateSetterName(lineEntityParentField));
+
+        indexedParseMethod.addCode("\n// Parse the line fields.\n");
+        indexedParseMethod.beginControlFlow(
+            "for (int lineIndex = 0; lineIndex < rifRecords.size(); lineIndex++)");
+        indexedParseMethod.addStatement(
+            "$T lineRecord = rifRecords.get(lineIndex)", rifRecordType);
+        indexedParseMethod.addStatement("$1T line = new $1T()", mappingSpec.getLineEntity());
+        indexedParseMethod.addCode(
+            "line.$L(header);\n\n", calculateSetterName(lineEntityParentField));
       }
 
       // Determine which variables to use in assignment statement.
@@ -884,38 +956,10 @@ public final class RifLayoutsProcessor extends AbstractProcessor {
         recordName = "headerRecord";
       }
 
-      // Determine which parsing utility method to use.
-      String parseUtilsMethodName;
-      if (rifField.getRifColumnType() == RifColumnType.CHAR
-          && rifField.getRifColumnLength().orElse(Integer.MAX_VALUE) > 1) {
-        // Handle a String field.
-        parseUtilsMethodName =
-            rifField.isRifColumnOptional() ? "parseOptionalString" : "parseString";
-      } else if (rifField.getRifColumnType() == RifColumnType.CHAR
-          && rifField.getRifColumnLength().orElse(Integer.MAX_VALUE) == 1) {
-        // Handle a Character field.
-        parseUtilsMethodName =
-            rifField.isRifColumnOptional() ? "parseOptionalCharacter" : "parseCharacter";
-      } else if (rifField.getRifColumnType() == RifColumnType.NUM
-          && rifField.getRifColumnScale().orElse(Integer.MAX_VALUE) == 0) {
-        // Handle an Integer field.
-        parseUtilsMethodName =
-            rifField.isRifColumnOptional() ? "parseOptionalInteger" : "parseInteger";
-      } else if (rifField.getRifColumnType() == RifColumnType.NUM
-          && rifField.getRifColumnScale().orElse(Integer.MAX_VALUE) > 0) {
-        // Handle a Decimal field.
-        parseUtilsMethodName =
-            rifField.isRifColumnOptional() ? "parseOptionalDecimal" : "parseDecimal";
-      } else if (rifField.getRifColumnType() == RifColumnType.DATE) {
-        // Handle a LocalDate field.
-        parseUtilsMethodName = rifField.isRifColumnOptional() ? "parseOptionalDate" : "parseDate";
-      } else if (rifField.getRifColumnType() == RifColumnType.TIMESTAMP) {
-        // Handle an Instant field.
-        parseUtilsMethodName =
-            rifField.isRifColumnOptional() ? "parseOptionalTimestamp" : "parseTimestamp";
-      } else {
-        throw new IllegalStateException();
-      }
+      // Determine which parsing utility methods to use.
+      String parsedTypeName = selectParsedTypeName(rifField);
+      String parseUtilsMethodName =
+          (rifField.isRifColumnOptional() ? "parseOptional" : "parse") + parsedTypeName;
 
       Map<String, Object> valueAssignmentArgs = new LinkedHashMap<>();
       valueAssignmentArgs.put("entity", entityName);
@@ -934,6 +978,34 @@ public final class RifLayoutsProcessor extends AbstractProcessor {
                       + "$columnEnumType:T.$columnEnumConstant:L)));\n",
                   valueAssignmentArgs)
               .build());
+
+      /*
+       * The index-based parser reads required values straight into the entity's (primitive, where
+       * possible) field types, and only wraps optional values in an Optional when they're
+       * actually present, which avoids a lot of short-lived garbage for the many empty columns.
+       */
+      CodeBlock indexedColumn =
+          CodeBlock.builder()
+              .addNamed(
+                  "columnIndexes[$columnEnumType:T.$columnEnumConstant:L.ordinal()]",
+                  valueAssignmentArgs)
+              .build();
+      CodeBlock indexedValue =
+          CodeBlock.of(
+              "$T.$L($L, $L)", parseUtilsType, "parse" + parsedTypeName, recordName, indexedColumn);
+      if (!rifField.isRifColumnOptional()) {
+        indexedParseMethod.addStatement(
+            "$L.$L($L)", entityName, calculateSetterName(entityField), indexedValue);
+      } else {
+        indexedParseMethod.beginControlFlow("if (!$L.isEmpty($L))", recordName, indexedColumn);
+        indexedParseMethod.addStatement(
+            "$L.$L($T.of($L))",
+            entityName,
+            calculateSetterName(entityField),
+            Optional.class,
+            indexedValue);
+        indexedParseMethod.endControlFlow();
+      }
     }
 
     // Did we just finish line parsing?
@@ -945,10 +1017,14 @@ public final class RifLayoutsProcessor extends AbstractProcessor {
               .get();
       parseMethod.addStatement("header.$L().add(line)", calculateGetterName(linesField));
       parseMethod.endControlFlow();
+      indexedParseMethod.addStatement("header.$L().add(line)", calculateGetterName(linesField));
+      indexedParseMethod.endControlFlow();
     }
 
     parseMethod.addStatement("return header");
     parsingClass.addMethod(parseMethod.build());
+    indexedParseMethod.addStatement("return header");
+    parsingClass.addMethod(indexedParseMethod.build());
 
     TypeSpec parsingClassFinal = parsingClass.build();
     JavaFile parsingClassFile =
@@ -958,6 +1034,43 @@ public final class RifLayoutsProcessor extends AbstractProcessor {
     return parsingClassFinal;
   }
 
+  /**
+   * Used in {@link #generateParser(MappingSpec, TypeSpec, TypeSpec, Optional)} and {@link
+   * #generateCopyTranscoder(MappingSpec, TypeSpec, Optional)} to select which <code>
+   * RifParsingUtils</code> methods should be used to parse the specified {@link RifField}.
+   *
+   * @param rifField the {@link RifField} to select the parsing methods for
+   * @return the suffix of the <code>RifParsingUtils.parse*(...)</code> methods to use, e.g. <code>
+   *     "Decimal"</code>
+   */
+  private static String selectParsedTypeName(RifField rifField) {
+    if (rifField.getRifColumnType() == RifColumnType.CHAR
+        && rifField.getRifColumnLength().orElse(Integer.MAX_VALUE) > 1) {
+      // Handle a String field.
+      return "String";
+    } else if (rifField.getRifColumnType() == RifColumnType.CHAR
+        && rifField.getRifColumnLength().orElse(Integer.MAX_VALUE) == 1) {
+      // Handle a Character field.
+      return "Character";
+    } else if (rifField.getRifColumnType() == RifColumnType.NUM
+        && rifField.getRifColumnScale().orElse(Integer.MAX_VALUE) == 0) {
+      // Handle an Integer field.
+      return "Integer";
+    } else if (rifField.getRifColumnType() == RifColumnType.NUM
+        && rifField.getRifColumnScale().orElse(Integer.MAX_VALUE) > 0) {
+      // Handle a Decimal field.
+      return "Decimal";
+    } else if (rifField.getRifColumnType() == RifColumnType.DATE) {
+      // Handle a LocalDate field.
+      return "Date";
+    } else if (rifField.getRifColumnType() == RifColumnType.TIMESTAMP) {
+      // Handle an Instant field.
+      return "Timestamp";
+    } else {
+      throw new IllegalStateException();
+    }
+  }
+
   /**
    * Generates a Java class that can be used to write the JPA Entity out to CSV files, for use with
    * PostgreSQL's copy APIs.
@@ -999,26 +1112,16 @@ public final class RifLayoutsProcessor extends AbstractProcessor {
     csvWriterMethod.addCode("\n");
     csvWriterMethod.addComment("Convert the header fields.");
     csvWriterMethod.addStatement("$T headerRecords = new $T[2][]", recordsListType, Object.class);
+    List<FieldSpec> headerColumnFields =
+        headerEntity.fieldSpecs.stream().filter(f -> isColumnField(f)).collect(Collectors.toList());
     String headerColumnsList =
-        headerEntity.fieldSpecs.stream()
-            .filter(
-                f -> {
-                  if (mappingSpec.getHasLines()
-                      && f.name.equals(mappingSpec.getHeaderEntityLinesField())) return false;
-                  return true;
-                })
-            .map(f -> "\"" + f.name + "\"")
+        headerColumnFields.stream()
+            .map(f -> "\"" + calculateColumnName(f) + "\"")
             .collect(Collectors.joining(", "));
     csvWriterMethod.addStatement(
         "headerRecords[0] = new $1T{ $2L }", recordType, headerColumnsList);
     String headerGettersList =
-        headerEntity.fieldSpecs.stream()
-            .filter(
-                f -> {
-                  if (mappingSpec.getHasLines()
-                      && f.name.equals(mappingSpec.getHeaderEntityLinesField())) return false;
-                  return true;
-                })
+        headerColumnFields.stream()
             .map(f -> calculateFieldToCsvValueCode("entity", f, mappingSpec, null, null))
             .collect(Collectors.joining(", "));
     csvWriterMethod.addStatement(
@@ -1046,7 +1149,8 @@ public final class RifLayoutsProcessor extends AbstractProcessor {
           "csvRecordsByTable.put($S, lineRecords)", mappingSpec.getLineTable());
       String lineColumnsList =
           lineEntity.get().fieldSpecs.stream()
-              .map(f -> "\"" + f.name + "\"")
+              .filter(f -> isColumnField(f))
+              .map(f -> "\"" + calculateColumnName(f) + "\"")
               .collect(Collectors.joining(", "));
       csvWriterMethod.addStatement("lineRecords[0] = new $1T{ $2L }", recordType, lineColumnsList);
       csvWriterMethod.beginControlFlow(
@@ -1067,6 +1171,7 @@ public final class RifLayoutsProcessor extends AbstractProcessor {
               .get();
       String lineGettersList =
           lineEntity.get().fieldSpecs.stream()
+              .filter(f -> isColumnField(f))
               .map(
                   f -> {
                     return calculateFieldToCsvValueCode(
@@ -1089,6 +1194,520 @@ public final class RifLayoutsProcessor extends AbstractProcessor {
     return parsingClassFinal;
   }
 
+  /**
+   * Generates a Java class that can be used to write the JPA Entity out in PostgreSQL's binary
+   * <code>COPY</code> format, into <code>gov.cms.bfd.model.rif.PostgreSqlBinaryCopyBuffer</code>s.
+   *
+   * @param mappingSpec the {@link MappingSpec} of the layout to generate code for
+   * @param headerEntity the Java {@link Entity} that was generated for the header fields
+   * @param lineEntity the Java {@link Entity} that was generated for the line fields, if any
+   * @return the Java binary copy writing class that was generated
+   * @throws IOException An {@link IOException} may be thrown if errors are encountered trying to
+   *     generate source files.
+   */
+  private TypeSpec generateBinaryCopyWriter(
+      MappingSpec mappingSpec, TypeSpec headerEntity, Optional<TypeSpec> lineEntity)
+      throws IOException {
+    TypeSpec.Builder binaryCopyWriterClass =
+        TypeSpec.classBuilder(mappingSpec.getBinaryCopyWriterClass())
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL);
+
+    // Grab some common types we'll need.
+    ClassName bufferType = ClassName.get("gov.cms.bfd.model.rif", "PostgreSqlBinaryCopyBuffer");
+    ParameterizedTypeName columnsType =
+        ParameterizedTypeName.get(ClassName.get(List.class), ClassName.get(String.class));
+
+    MethodSpec.Builder writeRowsMethod =
+        MethodSpec.methodBuilder("writeRows")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(mappingSpec.getHeaderEntity(), "entity")
+            .addParameter(bufferType, "headerRows");
+    if (mappingSpec.getHasLines()) writeRowsMethod.addParameter(bufferType, "lineRows");
+
+    writeRowsMethod.addComment("Verify the input.");
+    writeRowsMethod.addStatement("$T.requireNonNull(entity)", Objects.class);
+
+    // Generate the header conversion.
+    List<FieldSpec> headerColumnFields =
+        headerEntity.fieldSpecs.stream().filter(f -> isColumnField(f)).collect(Collectors.toList());
+    binaryCopyWriterClass.addField(
+        FieldSpec.builder(
+                String.class, "HEADER_TABLE", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+            .initializer("$S", mappingSpec.getHeaderTable())
+            .build());
+    binaryCopyWriterClass.addField(
+        FieldSpec.builder(
+                columnsType, "HEADER_COLUMNS", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+            .initializer(
+                "$T.unmodifiableList($T.asList($L))",
+                Collections.class,
+                Arrays.class,
+                headerColumnFields.stream()
+                    .map(f -> "\"" + calculateColumnName(f) + "\"")
+                    .collect(Collectors.joining(", ")))
+            .build());
+    String headerIdColumn =
+        mappingSpec.getHeaderEntityIdField() != null
+            ? mappingSpec.getHeaderEntityIdField()
+            : mappingSpec.getHeaderEntityGeneratedIdField();
+    binaryCopyWriterClass.addField(
+        FieldSpec.builder(
+                String.class, "HEADER_ID_COLUMN", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+            .initializer("$S", headerIdColumn)
+            .build());
+    writeRowsMethod.addCode("\n");
+    writeRowsMethod.addComment("Write the header row.");
+    writeRowsMethod.addStatement("headerRows.startRow($L)", headerColumnFields.size());
+    for (FieldSpec field : headerColumnFields) {
+      writeRowsMethod.addStatement(
+          "headerRows.$L($L)",
+          selectBinaryCopyWriteMethod(mappingSpec.getHeaderTable(), field, field.type),
+          calculateFieldToCsvValueCode("entity", field, mappingSpec, null, null));
+    }
+
+    // Generate the line conversion.
+    if (mappingSpec.getHasLines()) {
+      FieldSpec linesField =
+          headerEntity.fieldSpecs.stream()
+              .filter(f -> f.name.equals(mappingSpec.getHeaderEntityLinesField()))
+              .findAny()
+              .get();
+      FieldSpec parentField =
+          lineEntity.get().fieldSpecs.stream()
+              .filter(f -> f.name.equals(mappingSpec.getLineEntityParentField()))
+              .findAny()
+              .get();
+      FieldSpec headerIdField =
+          headerEntity.fieldSpecs.stream()
+              .filter(f -> f.name.equals(mappingSpec.getHeaderEntityIdField()))
+              .findAny()
+              .get();
+      List<FieldSpec> lineColumnFields =
+          lineEntity.get().fieldSpecs.stream()
+              .filter(f -> isColumnField(f))
+              .collect(Collectors.toList());
+      binaryCopyWriterClass.addField(
+          FieldSpec.builder(
+                  String.class, "LINE_TABLE", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+              .initializer("$S", mappingSpec.getLineTable())
+              .build());
+      binaryCopyWriterClass.addField(
+          FieldSpec.builder(
+                  columnsType, "LINE_COLUMNS", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+              .initializer(
+                  "$T.unmodifiableList($T.asList($L))",
+                  Collections.class,
+                  Arrays.class,
+                  lineColumnFields.stream()
+                      .map(f -> "\"" + calculateColumnName(f) + "\"")
+                      .collect(Collectors.joining(", ")))
+              .build());
+      binaryCopyWriterClass.addField(
+          FieldSpec.builder(
+                  columnsType, "LINE_ID_COLUMNS", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+              .initializer(
+                  "$T.unmodifiableList($T.asList($S, $S))",
+                  Collections.class,
+                  Arrays.class,
+                  mappingSpec.getLineEntityParentField(),
+                  mappingSpec.getLineEntityLineNumberField())
+              .build());
+
+      writeRowsMethod.addCode("\n");
+      writeRowsMethod.addComment("Write the line rows.");
+      writeRowsMethod.beginControlFlow(
+          "for ($T lineEntity : entity.$L())",
+          mappingSpec.getLineEntity(),
+          calculateGetterName(linesField));
+      writeRowsMethod.addStatement("lineRows.startRow($L)", lineColumnFields.size());
+      for (FieldSpec field : lineColumnFields) {
+        TypeName valueType = field == parentField ? headerIdField.type : field.type;
+        writeRowsMethod.addStatement(
+            "lineRows.$L($L)",
+            selectBinaryCopyWriteMethod(mappingSpec.getLineTable(), field, valueType),
+            calculateFieldToCsvValueCode(
+                "lineEntity", field, mappingSpec, parentField, headerIdField));
+      }
+      writeRowsMethod.endControlFlow();
+    }
+
+    binaryCopyWriterClass.addMethod(writeRowsMethod.build());
+
+    TypeSpec binaryCopyWriterClassFinal = binaryCopyWriterClass.build();
+    JavaFile binaryCopyWriterClassFile =
+        JavaFile.builder(mappingSpec.getPackageName(), binaryCopyWriterClassFinal).build();
+    binaryCopyWriterClassFile.writeTo(processingEnv.getFiler());
+
+    return binaryCopyWriterClassFinal;
+  }
+
+  /**
+   * Generates a Java class that can be used to insert the JPA Entity via plain, batched JDBC
+   * <code>INSERT</code>s, binding its values to <code>PreparedStatement</code>s in column order.
+   * This skips all of the per-entity work that Hibernate would do for an <code>
+   * EntityManager.persist(...)</code> (snapshots, persistence context tracking, cascades, etc.),
+   * none of which the loader needs.
+   *
+   * @param mappingSpec the {@link MappingSpec} of the layout to generate code for
+   * @param headerEntity the Java {@link Entity} that was generated for the header fields
+   * @param lineEntity the Java {@link Entity} that was generated for the line fields, if any
+   * @return the Java JDBC binding class that was generated
+   * @throws IOException An {@link IOException} may be thrown if errors are encountered trying to
+   *     generate source files.
+   */
+  private TypeSpec generateJdbcBinder(
+      MappingSpec mappingSpec, TypeSpec headerEntity, Optional<TypeSpec> lineEntity)
+      throws IOException {
+    TypeSpec.Builder jdbcBinderClass =
+        TypeSpec.classBuilder(mappingSpec.getJdbcBinderClass())
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL);
+
+    // Grab some common types we'll need.
+    ClassName parametersType = ClassName.get("gov.cms.bfd.model.rif", "JdbcParameters");
+    ClassName statementType = ClassName.get("java.sql", "PreparedStatement");
+    ClassName sqlExceptionType = ClassName.get("java.sql", "SQLException");
+
+    MethodSpec.Builder bindRowsMethod =
+        MethodSpec.methodBuilder("bindRows")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(mappingSpec.getHeaderEntity(), "entity")
+            .addParameter(statementType, "headerInsert")
+            .addException(sqlExceptionType);
+    if (mappingSpec.getHasLines()) bindRowsMethod.addParameter(statementType, "lineInsert");
+
+    bindRowsMethod.addComment("Verify the input.");
+    bindRowsMethod.addStatement("$T.requireNonNull(entity)", Objects.class);
+
+    // Generate the header binding.
+    List<FieldSpec> headerColumnFields =
+        headerEntity.fieldSpecs.stream().filter(f -> isColumnField(f)).collect(Collectors.toList());
+    jdbcBinderClass.addField(
+        FieldSpec.builder(
+                String.class, "HEADER_INSERT_SQL", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+            .initializer("$S", calculateInsertSql(mappingSpec.getHeaderTable(), headerColumnFields))
+            .build());
+    bindRowsMethod.addCode("\n");
+    bindRowsMethod.addComment("Bind and batch the header row.");
+    for (int fieldIndex = 0; fieldIndex < headerColumnFields.size(); fieldIndex++) {
+      FieldSpec field = headerColumnFields.get(fieldIndex);
+      bindRowsMethod.addStatement(
+          "$T.$L(headerInsert, $L, $L)",
+          parametersType,
+          selectJdbcBindMethod(mappingSpec.getHeaderTable(), field, field.type),
+          fieldIndex + 1,
+          calculateFieldToCsvValueCode("entity", field, mappingSpec, null, null));
+    }
+    bindRowsMethod.addStatement("headerInsert.addBatch()");
+
+    // Generate the line binding.
+    if (mappingSpec.getHasLines()) {
+      FieldSpec linesField =
+          headerEntity.fieldSpecs.stream()
+              .filter(f -> f.name.equals(mappingSpec.getHeaderEntityLinesField()))
+              .findAny()
+              .get();
+      FieldSpec parentField =
+          lineEntity.get().fieldSpecs.stream()
+              .filter(f -> f.name.equals(mappingSpec.getLineEntityParentField()))
+              .findAny()
+              .get();
+      FieldSpec headerIdField =
+          headerEntity.fieldSpecs.stream()
+              .filter(f -> f.name.equals(mappingSpec.getHeaderEntityIdField()))
+              .findAny()
+              .get();
+      List<FieldSpec> lineColumnFields =
+          lineEntity.get().fieldSpecs.stream()
+              .filter(f -> isColumnField(f))
+              .collect(Collectors.toList());
+      jdbcBinderClass.addField(
+          FieldSpec.builder(
+                  String.class, "LINE_INSERT_SQL", Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+              .initializer("$S", calculateInsertSql(mappingSpec.getLineTable(), lineColumnFields))
+              .build());
+
+      bindRowsMethod.addCode("\n");
+      bindRowsMethod.addComment("Bind and batch the line rows.");
+      bindRowsMethod.beginControlFlow(
+          "for ($T lineEntity : entity.$L())",
+          mappingSpec.getLineEntity(),
+          calculateGetterName(linesField));
+      for (int fieldIndex = 0; fieldIndex < lineColumnFields.size(); fieldIndex++) {
+        FieldSpec field = lineColumnFields.get(fieldIndex);
+        TypeName valueType = field == parentField ? headerIdField.type : field.type;
+        bindRowsMethod.addStatement(
+            "$T.$L(lineInsert, $L, $L)",
+            parametersType,
+            selectJdbcBindMethod(mappingSpec.getLineTable(), field, valueType),
+            fieldIndex + 1,
+            calculateFieldToCsvValueCode(
+                "lineEntity", field, mappingSpec, parentField, headerIdField));
+      }
+      bindRowsMethod.addStatement("lineInsert.addBatch()");
+      bindRowsMethod.endControlFlow();
+    }
+
+    jdbcBinderClass.addMethod(bindRowsMethod.build());
+
+    TypeSpec jdbcBinderClassFinal = jdbcBinderClass.build();
+    JavaFile jdbcBinderClassFile =
+        JavaFile.builder(mappingSpec.getPackageName(), jdbcBinderClassFinal).build();
+    jdbcBinderClassFile.writeTo(processingEnv.getFiler());
+
+    return jdbcBinderClassFinal;
+  }
+
+  /**
+   * @param tableName the name of the database table to insert into
+   * @param columnFields the entity fields for each of the table's columns, in order
+   * @return the parameterized SQL <code>INSERT</code> for the specified table and columns
+   */
+  private static String calculateInsertSql(String tableName, List<FieldSpec> columnFields) {
+    /*
+     * The lastUpdated columns' names weren't quoted when they were created
+     * (see calculateColumnName(...)), so they mustn't be quoted here, either:
+     * PostgreSQL and HSQL each fold unquoted names to their own case.
+     */
+    String columnsList =
+        columnFields.stream()
+            .map(f -> f.name.equals("lastUpdated") ? f.name : "\"" + calculateColumnName(f) + "\"")
+            .collect(Collectors.joining(", "));
+    String parametersList = columnFields.stream().map(f -> "?").collect(Collectors.joining(", "));
+    return String.format(
+        "INSERT INTO \"%s\" (%s) VALUES (%s)", tableName, columnsList, parametersList);
+  }
+
+  /**
+   * @param tableName the name of the database table that the field is stored in
+   * @param field the field to select the bind method for
+   * @param valueType the {@link TypeName} of the value that will be bound for the field
+   * @return the name of the <code>JdbcParameters</code> method to use
+   */
+  private static String selectJdbcBindMethod(
+      String tableName, FieldSpec field, TypeName valueType) {
+    // JdbcParameters' methods are named to match PostgreSqlBinaryCopyBuffer's.
+    return selectBinaryCopyWriteMethod(tableName, field, valueType).replaceFirst("^write", "bind");
+  }
+
+  /**
+   * @param mappingSpec the {@link MappingSpec} of the layout to check
+   * @return <code>true</code> if every database column for the specified layout comes straight
+   *     from a RIF field (or is <code>lastUpdated</code>), such that {@link
+   *     #generateCopyTranscoder(MappingSpec, TypeSpec, Optional)} can be used for it, <code>false
+   *     </code> if the layout has generated IDs, additional database fields (e.g. hashes), or
+   *     {@link Transient} fields that require an entity to be built
+   */
+  private static boolean isTranscodable(MappingSpec mappingSpec) {
+    return mappingSpec.getHeaderEntityGeneratedIdField() == null
+        && mappingSpec.getHeaderEntityAdditionalDatabaseFields().isEmpty()
+        && mappingSpec.getHeaderEntityTransientFields().isEmpty();
+  }
+
+  /**
+   * Generates a Java class that transcodes RIF records straight into PostgreSQL's binary <code>COPY
+   * </code> format, without building any JPA Entity instances along the way. Each value is parsed
+   * with the same <code>RifParsingUtils</code> methods that the generated parser uses (so it's
+   * validated the same way), and the rows that are written match those of the generated binary copy
+   * writer byte-for-byte, in the same column order.
+   *
+   * @param mappingSpec the {@link MappingSpec} of the layout to generate code for, which must be
+   *     {@link #isTranscodable(MappingSpec)}
+   * @param headerEntity the Java {@link Entity} that was generated for the header fields
+   * @param lineEntity the Java {@link Entity} that was generated for the line fields, if any
+   * @return the Java transcoding class that was generated
+   * @throws IOException An {@link IOException} may be thrown if errors are encountered trying to
+   *     generate source files.
+   */
+  private TypeSpec generateCopyTranscoder(
+      MappingSpec mappingSpec, TypeSpec headerEntity, Optional<TypeSpec> lineEntity)
+      throws IOException {
+    TypeSpec.Builder transcoderClass =
+        TypeSpec.classBuilder(mappingSpec.getCopyTranscoderClass())
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL);
+
+    // Grab some common types we'll need.
+    ClassName bufferType = ClassName.get("gov.cms.bfd.model.rif", "PostgreSqlBinaryCopyBuffer");
+    ClassName rifRecordType = ClassName.get("gov.cms.bfd.model.rif.parse", "RifRecord");
+
+    MethodSpec.Builder transcodeMethod =
+        MethodSpec.methodBuilder("transcodeRif")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .addParameter(
+                ParameterizedTypeName.get(ClassName.get(List.class), rifRecordType), "rifRecords")
+            .addParameter(ArrayTypeName.of(TypeName.INT), "columnIndexes")
+            .addParameter(Date.class, "lastUpdated")
+            .addParameter(bufferType, "headerRows");
+    if (mappingSpec.getHasLines()) transcodeMethod.addParameter(bufferType, "lineRows");
+
+    transcodeMethod.addComment("Verify the inputs.");
+    transcodeMethod.addStatement("$T.requireNonNull(rifRecords)", Objects.class);
+    transcodeMethod.addStatement("$T.requireNonNull(columnIndexes)", Objects.class);
+    transcodeMethod
+        .beginControlFlow("if (rifRecords.size() < 1)")
+        .addStatement("throw new $T()", IllegalArgumentException.class)
+        .endControlFlow();
+
+    // Generate the header transcoding.
+    List<FieldSpec> headerColumnFields =
+        headerEntity.fieldSpecs.stream().filter(f -> isColumnField(f)).collect(Collectors.toList());
+    transcodeMethod.addCode("\n");
+    transcodeMethod.addComment("Write the header row.");
+    transcodeMethod.addStatement("$T headerRecord = rifRecords.get(0)", rifRecordType);
+    transcodeMethod.addStatement("headerRows.startRow($L)", headerColumnFields.size());
+    for (FieldSpec field : headerColumnFields) {
+      String writeMethod =
+          selectBinaryCopyWriteMethod(mappingSpec.getHeaderTable(), field, field.type);
+      if (field.name.equals("lastUpdated"))
+        transcodeMethod.addStatement("headerRows.$L(lastUpdated)", writeMethod);
+      else
+        addTranscodeStatements(
+            transcodeMethod,
+            mappingSpec,
+            "headerRows",
+            writeMethod,
+            "headerRecord",
+            findRifField(mappingSpec, field.name));
+    }
+
+    // Generate the line transcoding.
+    if (mappingSpec.getHasLines()) {
+      FieldSpec parentField =
+          lineEntity.get().fieldSpecs.stream()
+              .filter(f -> f.name.equals(mappingSpec.getLineEntityParentField()))
+              .findAny()
+              .get();
+      FieldSpec headerIdField =
+          headerEntity.fieldSpecs.stream()
+              .filter(f -> f.name.equals(mappingSpec.getHeaderEntityIdField()))
+              .findAny()
+              .get();
+      List<FieldSpec> lineColumnFields =
+          lineEntity.get().fieldSpecs.stream()
+              .filter(f -> isColumnField(f))
+              .collect(Collectors.toList());
+
+      transcodeMethod.addCode("\n");
+      transcodeMethod.addComment("Write the line rows.");
+      transcodeMethod.beginControlFlow(
+          "for (int lineIndex = 0; lineIndex < rifRecords.size(); lineIndex++)");
+      transcodeMethod.addStatement("$T lineRecord = rifRecords.get(lineIndex)", rifRecordType);
+      transcodeMethod.addStatement("lineRows.startRow($L)", lineColumnFields.size());
+      for (FieldSpec field : lineColumnFields) {
+        if (field == parentField)
+          addTranscodeStatements(
+              transcodeMethod,
+              mappingSpec,
+              "lineRows",
+              selectBinaryCopyWriteMethod(mappingSpec.getLineTable(), field, headerIdField.type),
+              "headerRecord",
+              findRifField(mappingSpec, headerIdField.name));
+        else
+          addTranscodeStatements(
+              transcodeMethod,
+              mappingSpec,
+              "lineRows",
+              selectBinaryCopyWriteMethod(mappingSpec.getLineTable(), field, field.type),
+              "lineRecord",
+              findRifField(mappingSpec, field.name));
+      }
+      transcodeMethod.endControlFlow();
+    }
+
+    transcoderClass.addMethod(transcodeMethod.build());
+
+    TypeSpec transcoderClassFinal = transcoderClass.build();
+    JavaFile transcoderClassFile =
+        JavaFile.builder(mappingSpec.getPackageName(), transcoderClassFinal).build();
+    transcoderClassFile.writeTo(processingEnv.getFiler());
+
+    return transcoderClassFinal;
+  }
+
+  /**
+   * Used in {@link #generateCopyTranscoder(MappingSpec, TypeSpec, Optional)} to generate the code
+   * that parses the specified {@link RifField} and writes it out.
+   *
+   * @param transcodeMethod the method to add the generated statements to
+   * @param mappingSpec the {@link MappingSpec} of the layout to generate code for
+   * @param bufferName the name of the <code>PostgreSqlBinaryCopyBuffer</code> to write to
+   * @param writeMethod the name of the <code>PostgreSqlBinaryCopyBuffer</code> method to write with
+   * @param recordName the name of the <code>RifRecord</code> to read the value from
+   * @param rifField the {@link RifField} to parse and write
+   */
+  private static void addTranscodeStatements(
+      MethodSpec.Builder transcodeMethod,
+      MappingSpec mappingSpec,
+      String bufferName,
+      String writeMethod,
+      String recordName,
+      RifField rifField) {
+    ClassName parseUtilsType = ClassName.get("gov.cms.bfd.model.rif.parse", "RifParsingUtils");
+    CodeBlock indexedColumn =
+        CodeBlock.of(
+            "columnIndexes[$T.$L.ordinal()]",
+            mappingSpec.getColumnEnum(),
+            rifField.getRifColumnName());
+    CodeBlock indexedValue =
+        CodeBlock.of(
+            "$T.$L($L, $L)",
+            parseUtilsType,
+            "parse" + selectParsedTypeName(rifField),
+            recordName,
+            indexedColumn);
+
+    if (!rifField.isRifColumnOptional()) {
+      transcodeMethod.addStatement("$L.$L($L)", bufferName, writeMethod, indexedValue);
+    } else {
+      transcodeMethod
+          .beginControlFlow("if ($L.isEmpty($L))", recordName, indexedColumn)
+          .addStatement("$L.writeNull()", bufferName)
+          .nextControlFlow("else")
+          .addStatement("$L.$L($L)", bufferName, writeMethod, indexedValue)
+          .endControlFlow();
+    }
+  }
+
+  /**
+   * @param mappingSpec the {@link MappingSpec} to search
+   * @param javaFieldName the {@link RifField#getJavaFieldName()} value to find
+   * @return the {@link RifField} in the specified {@link MappingSpec} with the specified {@link
+   *     RifField#getJavaFieldName()}
+   */
+  private static RifField findRifField(MappingSpec mappingSpec, String javaFieldName) {
+    return mappingSpec.getRifLayout().getRifFields().stream()
+        .filter(f -> f.getJavaFieldName().equals(javaFieldName))
+        .findAny()
+        .orElseThrow(() -> new IllegalStateException("Unmapped field: " + javaFieldName));
+  }
+
+  /**
+   * Used in {@link #generateBinaryCopyWriter(MappingSpec, TypeSpec, Optional)} to select which
+   * <code>PostgreSqlBinaryCopyBuffer</code> method should be used to write out the specified field.
+   * Binary <code>COPY</code>s don't do any type conversions, so this has to match the field's
+   * actual database column type.
+   *
+   * @param tableName the name of the database table that the field is stored in
+   * @param field the field to select the write method for
+   * @param valueType the {@link TypeName} of the value that will be written for the field
+   * @return the name of the <code>PostgreSqlBinaryCopyBuffer</code> method to use
+   */
+  private static String selectBinaryCopyWriteMethod(
+      String tableName, FieldSpec field, TypeName valueType) {
+    TypeName boxedType = valueType.box();
+    if (boxedType.equals(ClassName.get(String.class))
+        || boxedType.equals(ClassName.get(Character.class))) return "writeText";
+    else if (boxedType.equals(ClassName.get(LocalDate.class))) return "writeDate";
+    else if (boxedType.equals(ClassName.get(Instant.class))) return "writeTimestamp";
+    else if (boxedType.equals(ClassName.get(Date.class))) return "writeTimestampTz";
+    else if (boxedType.equals(ClassName.get(BigDecimal.class))) return "writeNumeric";
+    else if (boxedType.equals(ClassName.get(Integer.class)))
+      return INT4_COLUMNS.contains(tableName + "." + calculateColumnName(field))
+          ? "writeInt4"
+          : "writeNumeric";
+    else if (boxedType.equals(ClassName.get(Long.class))) return "writeInt8";
+    else throw new IllegalArgumentException("Unhandled field type: " + field);
+  }
+
   /**
    * Used in {@link #generateCsvWriter(MappingSpec, TypeSpec, Optional)} and generates the
    * field-to-CSV-value conversion code for the specified field.
@@ -1113,7 +1732,9 @@ public final class RifLayoutsProcessor extends AbstractProcessor {
     code.append(".");
 
     Optional<RifField> rifField =
-        mappingSpec.getRifLayout().getRifFields().stream()
+        Stream.concat(
+                mappingSpec.getRifLayout().getRifFields().stream(),
+                mappingSpec.getHeaderEntityAdditionalDatabaseFields().stream())
             .filter(f -> field.name.equals(f.getJavaFieldName()))
             .findAny();
     if (field == parentField) {
@@ -1122,7 +1743,8 @@ public final class RifLayoutsProcessor extends AbstractProcessor {
       code.append("().");
       code.append(calculateGetterName(headerIdField));
       code.append("()");
-    } else if (rifField.isPresent() && rifField.get().isRifColumnOptional()) {
+    } else if ((rifField.isPresent() && rifField.get().isRifColumnOptional())
+        || field.name.equals("lastUpdated")) {
       code.append(calculateGetterName(field));
       code.append("().orElse(null)");
     } else {
@@ -1133,6 +1755,33 @@ public final class RifLayoutsProcessor extends AbstractProcessor {
     return code.toString();
   }
 
+  /**
+   * @param field the entity field to check
+   * @return <code>true</code> if the specified entity field is stored in its own database column
+   *     (i.e. isn't {@link Transient} or a {@link OneToMany} collection), <code>false</code> if not
+   */
+  private static boolean isColumnField(FieldSpec field) {
+    return field.annotations.stream()
+        .noneMatch(
+            a ->
+                a.type.equals(ClassName.get(Transient.class))
+                    || a.type.equals(ClassName.get(OneToMany.class)));
+  }
+
+  /**
+   * @param field the entity field to get the database column name of
+   * @return the name of the database column that the specified entity field is stored in
+   */
+  private static String calculateColumnName(FieldSpec field) {
+    /*
+     * The lastUpdated columns were added without quoting their names (see
+     * V23__Add_lastUpdated.sql), so PostgreSQL folded them to lower case.
+     */
+    if (field.name.equals("lastUpdated")) return "lastupdated";
+
+    return field.name;
+  }
+
   /**
    * @param fields the fields that should be hashed
    * @return a new <code>hashCode()</code> implementation that uses the specified fields
@@ -0,0 +1,67 @@
+package db.migration;
+
+import gov.cms.bfd.model.rif.BeneficiaryIdsCodec;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration;
+
+/**
+ * Backfills the <code>"LoadedBatches"."beneficiaryIds"</code> column added by V27, by re-encoding
+ * each existing row's comma-separated <code>"beneficiaries"</code> with {@link
+ * BeneficiaryIdsCodec}. This has to be a Java migration, as the encoding can't sensibly be done in
+ * SQL. The old column is kept, for now (see V27).
+ *
+ * <p>Like all of Flyway's migrations, this is run in a single transaction, and so either every row
+ * is backfilled, or none are.
+ */
+public final class V28__Backfill_LoadedBatch_beneficiaryIds implements JdbcMigration {
+  /** The separator used by the old <code>"beneficiaries"</code> column. */
+  private static final String SEPARATOR = ",";
+
+  /** The number of rows to fetch, and then update, at a time. */
+  private static final int BATCH_SIZE = 1000;
+
+  private static final String SELECT_SQL =
+      "select \"loadedBatchId\", \"beneficiaries\" from \"LoadedBatches\"";
+
+  private static final String UPDATE_SQL =
+      "update \"LoadedBatches\" set \"beneficiaryIds\" = ? where \"loadedBatchId\" = ?";
+
+  /** @see org.flywaydb.core.api.migration.jdbc.JdbcMigration#migrate(java.sql.Connection) */
+  @Override
+  public void migrate(Connection connection) throws Exception {
+    try (Statement select = connection.createStatement();
+        PreparedStatement update = connection.prepareStatement(UPDATE_SQL)) {
+      // Stream the rows, rather than reading them all in at once.
+      select.setFetchSize(BATCH_SIZE);
+      try (ResultSet rows = select.executeQuery(SELECT_SQL)) {
+        int pendingUpdates = 0;
+        while (rows.next()) {
+          update.setBytes(1, BeneficiaryIdsCodec.encode(splitBeneficiaries(rows.getString(2))));
+          update.setLong(2, rows.getLong(1));
+          update.addBatch();
+
+          if (++pendingUpdates >= BATCH_SIZE) {
+            update.executeBatch();
+            pendingUpdates = 0;
+          }
+        }
+        if (pendingUpdates > 0) update.executeBatch();
+      }
+    }
+  }
+
+  /**
+   * @param beneficiaries the value of an old <code>"beneficiaries"</code> column
+   * @return the beneficiary IDs in the specified value
+   */
+  private static List<String> splitBeneficiaries(String beneficiaries) {
+    if (beneficiaries == null || beneficiaries.isEmpty()) return Collections.emptyList();
+    return Arrays.asList(beneficiaries.split(SEPARATOR, -1));
+  }
+}
@@ -0,0 +1,25 @@
+package db.migration;
+
+import gov.cms.bfd.model.rif.schema.LoadedBatchPartitions;
+import java.sql.Connection;
+import org.flywaydb.core.api.migration.jdbc.JdbcMigration;
+
+/**
+ * Turns <code>"LoadedBatches"</code> into the parent of daily partitions (see {@link
+ * LoadedBatchPartitions}), by installing the trigger that routes new rows to them. The partitions
+ * themselves are created ahead of time, and dropped once expired, by the pipeline. Existing rows
+ * are left in <code>"LoadedBatches"</code> itself, where they'll be trimmed as before, until they
+ * have all expired.
+ *
+ * <p>This is a no-op for databases other than PostgreSQL (e.g. HSQL, in tests), which just keep a
+ * plain table.
+ */
+public final class V29__Partition_LoadedBatches implements JdbcMigration {
+  /** @see org.flywaydb.core.api.migration.jdbc.JdbcMigration#migrate(java.sql.Connection) */
+  @Override
+  public void migrate(Connection connection) throws Exception {
+    if (!connection.getMetaData().getDatabaseProductName().equals("PostgreSQL")) return;
+
+    LoadedBatchPartitions.installRouting(connection);
+  }
+}
@@ -0,0 +1,233 @@
+package gov.cms.bfd.model.rif;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Encodes the set of beneficiary IDs in a {@link LoadedBatch} as a compact <code>byte[]</code>, as
+ * stored in its <code>"beneficiaryIds"</code> column. The IDs are sorted and de-duplicated first,
+ * and then packed in one of two formats:
+ *
+ * <ul>
+ *   <li>{@link #FORMAT_NUMERIC}: used when every ID is a canonical <code>long</code>, as they
+ *       almost always are. The first ID is written as a zigzag varint, and each of the rest as the
+ *       varint delta from the ID before it, so that runs of nearby IDs take a byte or two apiece.
+ *   <li>{@link #FORMAT_STRINGS}: used otherwise. Each ID is written as the varint length of the
+ *       prefix it shares with the ID before it, followed by the varint length and UTF-8 bytes of
+ *       the rest of it.
+ * </ul>
+ *
+ * <p>Both formats start with the format byte and then the varint count of IDs, so that {@link
+ * #count(byte[])} is cheap. The encoding of an empty set is an empty array.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class BeneficiaryIdsCodec {
+  /** The format byte for IDs that are all canonical <code>long</code>s. */
+  static final byte FORMAT_NUMERIC = 1;
+
+  /** The format byte for IDs that are arbitrary strings. */
+  static final byte FORMAT_STRINGS = 2;
+
+  private static final byte[] EMPTY = new byte[0];
+
+  /** Prevents instantiation of this utility class. */
+  private BeneficiaryIdsCodec() {}
+
+  /**
+   * @param beneficiaryIds the beneficiary IDs to encode (or <code>null</code>, for none), which may
+   *     contain duplicates and may be in any order, but may not contain <code>null</code>s
+   * @return the compact encoding of the (sorted, de-duplicated) beneficiary IDs
+   */
+  public static byte[] encode(Collection<String> beneficiaryIds) {
+    if (beneficiaryIds == null || beneficiaryIds.isEmpty()) return EMPTY;
+
+    long[] numericIds = toNumericIds(beneficiaryIds);
+    if (numericIds != null) return encodeNumeric(numericIds);
+    return encodeStrings(new TreeSet<>(beneficiaryIds));
+  }
+
+  /**
+   * @param encoded the output of {@link #encode(Collection)}, or <code>null</code>
+   * @return the number of beneficiary IDs in the specified encoding
+   */
+  public static int count(byte[] encoded) {
+    if (encoded == null || encoded.length == 0) return 0;
+
+    return (int) new Reader(encoded, 1).readVarint();
+  }
+
+  /**
+   * @param encoded the output of {@link #encode(Collection)}, or <code>null</code>
+   * @param action the {@link Consumer} to pass each of the beneficiary IDs in the specified
+   *     encoding to, in sorted order
+   */
+  public static void forEach(byte[] encoded, Consumer<String> action) {
+    if (encoded == null || encoded.length == 0) return;
+
+    Reader reader = new Reader(encoded, 1);
+    long count = reader.readVarint();
+    if (encoded[0] == FORMAT_NUMERIC) {
+      long id = 0;
+      for (long i = 0; i < count; i++) {
+        long delta = reader.readVarint();
+        // The first value is zigzagged, as IDs may be negative (e.g. for synthetic data).
+        id = i == 0 ? (delta >>> 1) ^ -(delta & 1) : id + delta;
+        action.accept(Long.toString(id));
+      }
+    } else if (encoded[0] == FORMAT_STRINGS) {
+      String id = "";
+      for (long i = 0; i < count; i++) {
+        int sharedLength = (int) reader.readVarint();
+        int suffixLength = (int) reader.readVarint();
+        id = id.substring(0, sharedLength) + reader.readUtf8(suffixLength);
+        action.accept(id);
+      }
+    } else {
+      throw new IllegalArgumentException("Unsupported format: " + encoded[0]);
+    }
+  }
+
+  /**
+   * @param encoded the output of {@link #encode(Collection)}, or <code>null</code>
+   * @return the beneficiary IDs in the specified encoding, in sorted order
+   */
+  public static List<String> decode(byte[] encoded) {
+    List<String> beneficiaryIds = new ArrayList<>(count(encoded));
+    forEach(encoded, beneficiaryIds::add);
+    return beneficiaryIds;
+  }
+
+  /**
+   * @param beneficiaryIds the beneficiary IDs to convert
+   * @return the sorted, de-duplicated <code>long</code> values of the specified beneficiary IDs, or
+   *     <code>null</code> if any of them isn't a canonical <code>long</code> (i.e. one that {@link
+   *     Long#toString(long)} would produce exactly)
+   */
+  private static long[] toNumericIds(Collection<String> beneficiaryIds) {
+    long[] numericIds = new long[beneficiaryIds.size()];
+    int i = 0;
+    for (String beneficiaryId : beneficiaryIds) {
+      try {
+        numericIds[i] = Long.parseLong(beneficiaryId);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+      // Rules out IDs such as "007" and "+7", which wouldn't round trip.
+      if (!Long.toString(numericIds[i]).equals(beneficiaryId)) return null;
+      i++;
+    }
+
+    Arrays.sort(numericIds);
+    int distinct = 1;
+    for (int j = 1; j < numericIds.length; j++) {
+      if (numericIds[j] != numericIds[distinct - 1]) numericIds[distinct++] = numericIds[j];
+    }
+    return Arrays.copyOf(numericIds, distinct);
+  }
+
+  /**
+   * @param sortedIds the sorted, distinct IDs to encode
+   * @return the {@link #FORMAT_NUMERIC} encoding of the specified IDs
+   */
+  private static byte[] encodeNumeric(long[] sortedIds) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream(2 + sortedIds.length * 2);
+    output.write(FORMAT_NUMERIC);
+    writeVarint(output, sortedIds.length);
+    writeVarint(output, (sortedIds[0] << 1) ^ (sortedIds[0] >> 63));
+    for (int i = 1; i < sortedIds.length; i++) {
+      // As the IDs are sorted, this (unsigned) delta is exact, even if it overflows a long.
+      writeVarint(output, sortedIds[i] - sortedIds[i - 1]);
+    }
+    return output.toByteArray();
+  }
+
+  /**
+   * @param sortedIds the sorted, distinct IDs to encode
+   * @return the {@link #FORMAT_STRINGS} encoding of the specified IDs
+   */
+  private static byte[] encodeStrings(Collection<String> sortedIds) {
+    ByteArrayOutputStream output = new ByteArrayOutputStream(2 + sortedIds.size() * 4);
+    output.write(FORMAT_STRINGS);
+    writeVarint(output, sortedIds.size());
+    String previousId = "";
+    for (String id : sortedIds) {
+      int sharedLength = 0;
+      int maxSharedLength = Math.min(previousId.length(), id.length());
+      while (sharedLength < maxSharedLength
+          && previousId.charAt(sharedLength) == id.charAt(sharedLength)) sharedLength++;
+      // Never split a surrogate pair, as half of one can't be encoded as UTF-8.
+      if (sharedLength > 0 && Character.isHighSurrogate(id.charAt(sharedLength - 1)))
+        sharedLength--;
+
+      byte[] suffix = id.substring(sharedLength).getBytes(StandardCharsets.UTF_8);
+      writeVarint(output, sharedLength);
+      writeVarint(output, suffix.length);
+      output.write(suffix, 0, suffix.length);
+      previousId = id;
+    }
+    return output.toByteArray();
+  }
+
+  /**
+   * Writes the specified value as an unsigned LEB128 varint: seven bits per byte, least significant
+   * first, with the high bit set on every byte but the last.
+   *
+   * @param output the {@link ByteArrayOutputStream} to write to
+   * @param value the value to write, which is treated as unsigned
+   */
+  private static void writeVarint(ByteArrayOutputStream output, long value) {
+    while ((value & ~0x7FL) != 0) {
+      output.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    output.write((int) value);
+  }
+
+  /** Reads the values written by {@link #writeVarint(ByteArrayOutputStream, long)} and such. */
+  private static final class Reader {
+    private final byte[] bytes;
+    private int position;
+
+    /**
+     * @param bytes the bytes to read
+     * @param position the offset to start reading at
+     */
+    Reader(byte[] bytes, int position) {
+      this.bytes = bytes;
+      this.position = position;
+    }
+
+    /** @return the next varint, as written by {@link #writeVarint(ByteArrayOutputStream, long)} */
+    long readVarint() {
+      long value = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        if (position >= bytes.length) throw new IllegalArgumentException("Truncated varint.");
+
+        byte b = bytes[position++];
+        value |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) return value;
+      }
+      throw new IllegalArgumentException("Malformed varint.");
+    }
+
+    /**
+     * @param length the number of bytes to read
+     * @return the next <code>length</code> bytes, decoded as UTF-8
+     */
+    String readUtf8(int length) {
+      if (length < 0 || length > bytes.length - position)
+        throw new IllegalArgumentException("Truncated string.");
+
+      String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+      position += length;
+      return value;
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package gov.cms.bfd.model.rif;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Date;
+
+/**
+ * Binds (possibly <code>null</code>) column values to {@link PreparedStatement} parameters, as
+ * called by the generated <code>*JdbcBinder</code> classes. The methods here mirror the ones in
+ * {@link PostgreSqlBinaryCopyBuffer}, and each binds its value the same way that Hibernate's
+ * corresponding type would, so that rows inserted via plain JDBC are identical to those inserted
+ * via {@link javax.persistence.EntityManager#persist(Object)}.
+ */
+public final class JdbcParameters {
+  /** Prevents instantiation of this utility class. */
+  private JdbcParameters() {}
+
+  /**
+   * Binds a <code>varchar</code>/<code>char</code> value.
+   *
+   * @param statement the {@link PreparedStatement} to bind the value to
+   * @param parameterIndex the (1-based) index of the parameter to bind
+   * @param value the value to bind, or <code>null</code>
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  public static void bindText(PreparedStatement statement, int parameterIndex, String value)
+      throws SQLException {
+    if (value == null) statement.setNull(parameterIndex, Types.VARCHAR);
+    else statement.setString(parameterIndex, value);
+  }
+
+  /**
+   * Binds a single-character <code>varchar</code>/<code>char</code> value.
+   *
+   * @param statement the {@link PreparedStatement} to bind the value to
+   * @param parameterIndex the (1-based) index of the parameter to bind
+   * @param value the value to bind
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  public static void bindText(PreparedStatement statement, int parameterIndex, char value)
+      throws SQLException {
+    statement.setString(parameterIndex, String.valueOf(value));
+  }
+
+  /**
+   * Binds a single-character <code>varchar</code>/<code>char</code> value.
+   *
+   * @param statement the {@link PreparedStatement} to bind the value to
+   * @param parameterIndex the (1-based) index of the parameter to bind
+   * @param value the value to bind, or <code>null</code>
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  public static void bindText(PreparedStatement statement, int parameterIndex, Character value)
+      throws SQLException {
+    if (value == null) statement.setNull(parameterIndex, Types.CHAR);
+    else bindText(statement, parameterIndex, value.charValue());
+  }
+
+  /**
+   * Binds a <code>date</code> value.
+   *
+   * @param statement the {@link PreparedStatement} to bind the value to
+   * @param parameterIndex the (1-based) index of the parameter to bind
+   * @param value the value to bind, or <code>null</code>
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  public static void bindDate(PreparedStatement statement, int parameterIndex, LocalDate value)
+      throws SQLException {
+    if (value == null) statement.setNull(parameterIndex, Types.DATE);
+    else statement.setDate(parameterIndex, java.sql.Date.valueOf(value));
+  }
+
+  /**
+   * Binds a <code>timestamp</code> value.
+   *
+   * @param statement the {@link PreparedStatement} to bind the value to
+   * @param parameterIndex the (1-based) index of the parameter to bind
+   * @param value the value to bind, or <code>null</code>
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  public static void bindTimestamp(PreparedStatement statement, int parameterIndex, Instant value)
+      throws SQLException {
+    if (value == null) statement.setNull(parameterIndex, Types.TIMESTAMP);
+    else statement.setTimestamp(parameterIndex, Timestamp.from(value));
+  }
+
+  /**
+   * Binds a <code>timestamp with time zone</code> value.
+   *
+   * @param statement the {@link PreparedStatement} to bind the value to
+   * @param parameterIndex the (1-based) index of the parameter to bind
+   * @param value the value to bind, or <code>null</code>
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  public static void bindTimestampTz(PreparedStatement statement, int parameterIndex, Date value)
+      throws SQLException {
+    if (value == null) statement.setNull(parameterIndex, Types.TIMESTAMP);
+    else statement.setTimestamp(parameterIndex, new Timestamp(value.getTime()));
+  }
+
+  /**
+   * Binds an <code>integer</code> value.
+   *
+   * @param statement the {@link PreparedStatement} to bind the value to
+   * @param parameterIndex the (1-based) index of the parameter to bind
+   * @param value the value to bind, or <code>null</code>
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  public static void bindInt4(PreparedStatement statement, int parameterIndex, Integer value)
+      throws SQLException {
+    if (value == null) statement.setNull(parameterIndex, Types.INTEGER);
+    else statement.setInt(parameterIndex, value);
+  }
+
+  /**
+   * Binds a <code>bigint</code> value.
+   *
+   * @param statement the {@link PreparedStatement} to bind the value to
+   * @param parameterIndex the (1-based) index of the parameter to bind
+   * @param value the value to bind, or <code>null</code>
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  public static void bindInt8(PreparedStatement statement, int parameterIndex, Long value)
+      throws SQLException {
+    if (value == null) statement.setNull(parameterIndex, Types.BIGINT);
+    else statement.setLong(parameterIndex, value);
+  }
+
+  /**
+   * Binds an integral <code>numeric</code> value.
+   *
+   * @param statement the {@link PreparedStatement} to bind the value to
+   * @param parameterIndex the (1-based) index of the parameter to bind
+   * @param value the value to bind, or <code>null</code>
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  public static void bindNumeric(PreparedStatement statement, int parameterIndex, Integer value)
+      throws SQLException {
+    if (value == null) statement.setNull(parameterIndex, Types.NUMERIC);
+    else statement.setInt(parameterIndex, value);
+  }
+
+  /**
+   * Binds a <code>numeric</code> value.
+   *
+   * @param statement the {@link PreparedStatement} to bind the value to
+   * @param parameterIndex the (1-based) index of the parameter to bind
+   * @param value the value to bind, or <code>null</code>
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  public static void bindNumeric(PreparedStatement statement, int parameterIndex, BigDecimal value)
+      throws SQLException {
+    if (value == null) statement.setNull(parameterIndex, Types.NUMERIC);
+    else statement.setBigDecimal(parameterIndex, value);
+  }
+}
@@ -1,16 +1,36 @@
 package gov.cms.bfd.model.rif;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 import javax.persistence.*;
-
-/** JPA class for the LoadedBatches table */
+import org.hibernate.annotations.ResultCheckStyle;
+import org.hibernate.annotations.SQLInsert;
+
+/**
+ * JPA class for the LoadedBatches table
+ *
+ * <p>Dev Note: On PostgreSQL, inserted rows are routed to a daily partition by a trigger (see
+ * {@link gov.cms.bfd.model.rif.schema.LoadedBatchPartitions}), so the INSERT into LoadedBatches
+ * itself reports that no rows were inserted. Hence the custom insert, which skips Hibernate's row
+ * count check. Its parameters must be in the order that Hibernate binds them: the (alphabetically
+ * sorted) properties, and then the ID.
+ *
+ * <p>Dev Note: The old comma-separated <code>"beneficiaries"</code> column is still written, as
+ * well as <code>"beneficiaryIds"</code>, so that servers from before V27 keep seeing every batch.
+ * Once all of them have been upgraded, a later migration can drop it, and it can be unmapped here.
+ */
 @Entity
 @Table(name = "`LoadedBatches`")
+@SQLInsert(
+    sql =
+        "insert into \"LoadedBatches\" (\"beneficiaries\", \"beneficiaryIds\", \"created\","
+            + " \"loadedFileId\", \"loadedBatchId\") values (?, ?, ?, ?, ?)",
+    check = ResultCheckStyle.NONE)
 public class LoadedBatch {
+  /** The separator used by the old <code>"beneficiaries"</code> column. */
   public static final String SEPARATOR = ",";
 
   @Id
@@ -25,6 +45,11 @@ public class LoadedBatch {
   @Column(name = "`loadedFileId`", nullable = false)
   private long loadedFileId;
 
+  /** The beneficiary IDs, as encoded by {@link BeneficiaryIdsCodec}. */
+  @Column(name = "`beneficiaryIds`", nullable = false)
+  private byte[] beneficiaryIds;
+
+  /** The same beneficiary IDs as {@link #beneficiaryIds}, joined by {@link #SEPARATOR}. */
   @Column(name = "`beneficiaries`", columnDefinition = "varchar", nullable = false)
   private String beneficiaries;
 
@@ -35,22 +60,6 @@ public class LoadedBatch {
   /** default constructor */
   public LoadedBatch() {}
 
-  /**
-   * Create with known values
-   *
-   * @param loadedBatchId unique sequence id
-   * @param loadedFileId associated file
-   * @param beneficiaries to associate
-   * @param created batch creation date
-   */
-  public LoadedBatch(long loadedBatchId, long loadedFileId, String beneficiaries, Date created) {
-    this();
-    this.loadedBatchId = loadedBatchId;
-    this.loadedFileId = loadedFileId;
-    this.beneficiaries = beneficiaries;
-    this.created = created;
-  }
-
   /**
    * Create with known values
    *
@@ -64,7 +73,7 @@ public class LoadedBatch {
     this();
     this.loadedBatchId = loadedBatchId;
     this.loadedFileId = loadedFileId;
-    this.beneficiaries = convertToString(beneficiaries);
+    setBeneficiaries(beneficiaries);
     this.created = created;
   }
 
@@ -88,14 +97,15 @@ public class LoadedBatch {
     this.loadedFileId = loadedFileId;
   }
 
-  /** @return the beneficiaries */
-  public String getBeneficiaries() {
-    return beneficiaries;
+  /** @return the beneficiary IDs, as encoded by {@link BeneficiaryIdsCodec} */
+  public byte[] getBeneficiaryIds() {
+    return beneficiaryIds;
   }
 
-  /** @param beneficiaries the beneficiaryId to set */
-  public void setBeneficiaries(String beneficiaries) {
-    this.beneficiaries = beneficiaries;
+  /** @param beneficiaryIds the beneficiary IDs to set, as encoded by {@link BeneficiaryIdsCodec} */
+  public void setBeneficiaryIds(byte[] beneficiaryIds) {
+    this.beneficiaryIds = beneficiaryIds;
+    this.beneficiaries = String.join(SEPARATOR, BeneficiaryIdsCodec.decode(beneficiaryIds));
   }
 
   /** @return the creation time stamp */
@@ -113,17 +123,32 @@ public class LoadedBatch {
    *
    * @param beneficiaries list to convert
    */
-  public void setBeneficiaries(List<String> beneficiaries) {
-    this.beneficiaries = convertToString(beneficiaries);
+  public void setBeneficiaries(Collection<String> beneficiaries) {
+    this.beneficiaryIds = BeneficiaryIdsCodec.encode(beneficiaries);
+    this.beneficiaries = String.join(SEPARATOR, beneficiaries);
   }
 
   /**
    * Get the beneficiaries as a list
    *
-   * @return beneficiaries as list
+   * @return beneficiaries as list, in sorted order
    */
   public List<String> getBeneficiariesAsList() {
-    return convertToList(this.beneficiaries);
+    return BeneficiaryIdsCodec.decode(this.beneficiaryIds);
+  }
+
+  /** @return the number of (distinct) beneficiaries in this batch */
+  public int getBeneficiaryCount() {
+    return BeneficiaryIdsCodec.count(this.beneficiaryIds);
+  }
+
+  /**
+   * Pass each of the beneficiaries to an action, without building a list of them first
+   *
+   * @param action to pass each beneficiaryId to, in sorted order
+   */
+  public void forEachBeneficiary(Consumer<String> action) {
+    BeneficiaryIdsCodec.forEach(this.beneficiaryIds, action);
   }
 
   /**
@@ -139,31 +164,11 @@ public class LoadedBatch {
     LoadedBatch sum = new LoadedBatch();
     sum.loadedBatchId = a.loadedBatchId;
     sum.loadedFileId = a.loadedFileId;
-    sum.beneficiaries =
-        a.beneficiaries.isEmpty()
-            ? b.beneficiaries
-            : b.beneficiaries.isEmpty()
-                ? a.beneficiaries
-                : a.beneficiaries + SEPARATOR + b.beneficiaries;
+    Collection<String> beneficiaries = new TreeSet<>();
+    a.forEachBeneficiary(beneficiaries::add);
+    b.forEachBeneficiary(beneficiaries::add);
+    sum.setBeneficiaries(beneficiaries);
     sum.created = (a.created.after(b.created)) ? a.created : b.created;
     return sum;
   }
-
-  /*
-   * Dev Note: A JPA AttributeConverter could be created instead of these static methods. This is
-   * slightly simpler and, since conversion is done once, just as efficient.
-   */
-  private static String convertToString(List<String> list) {
-    if (list == null || list.isEmpty()) {
-      return "";
-    }
-    return list.stream().collect(Collectors.joining(SEPARATOR));
-  }
-
-  private static List<String> convertToList(String commaSeparated) {
-    if (commaSeparated == null || commaSeparated.isEmpty()) {
-      return new ArrayList<>();
-    }
-    return Arrays.asList(commaSeparated.split(SEPARATOR, -1));
-  }
 }
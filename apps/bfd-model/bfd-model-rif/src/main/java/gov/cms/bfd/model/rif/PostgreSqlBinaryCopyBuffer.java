@@ -0,0 +1,396 @@
+package gov.cms.bfd.model.rif;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Date;
+
+/**
+ * A reusable, growable buffer of rows encoded in <a
+ * href="https://www.postgresql.org/docs/9.6/static/sql-copy.html">PostgreSQL's binary
+ * <code>COPY</code> format</a>, as written by the generated <code>*BinaryCopyWriter</code> classes.
+ * This avoids the cost of formatting each value as text on the client and then parsing it again on
+ * the server.
+ *
+ * <p>Only the tuples are buffered here: callers must send {@link #COPY_HEADER} before them and
+ * {@link #COPY_TRAILER} after them. The values written to each row must exactly match the types of
+ * the columns being copied into, as PostgreSQL does no conversions for binary <code>COPY</code>s.
+ *
+ * <p>Instances are not thread-safe.
+ */
+public final class PostgreSqlBinaryCopyBuffer {
+  /** The header that must be sent at the start of each binary <code>COPY</code>. */
+  private static final byte[] COPY_HEADER_BYTES = {
+    'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0, 0, 0, 0, 0, 0, 0, 0, 0
+  };
+
+  /** The trailer that must be sent at the end of each binary <code>COPY</code>. */
+  private static final byte[] COPY_TRAILER_BYTES = {(byte) 0xFF, (byte) 0xFF};
+
+  /** The number of days between the Java epoch (1970-01-01) and the PostgreSQL one (2000-01-01). */
+  private static final long POSTGRES_EPOCH_DAYS = LocalDate.of(2000, 1, 1).toEpochDay();
+
+  /** The number of seconds between the Java epoch and the PostgreSQL one. */
+  private static final long POSTGRES_EPOCH_SECONDS = POSTGRES_EPOCH_DAYS * 24 * 60 * 60;
+
+  private static final BigInteger NUMERIC_BASE = BigInteger.valueOf(10000);
+  private static final short NUMERIC_POSITIVE = 0x0000;
+  private static final short NUMERIC_NEGATIVE = 0x4000;
+
+  private ByteBuffer buffer;
+  private int rowCount;
+
+  /** The scratch space used to calculate <code>numeric</code> digits. */
+  private short[] numericDigits;
+
+  /**
+   * Constructs a new {@link PostgreSqlBinaryCopyBuffer}.
+   *
+   * @param initialCapacity the initial size of the buffer, in bytes, which will grow as needed
+   */
+  public PostgreSqlBinaryCopyBuffer(int initialCapacity) {
+    this.buffer = ByteBuffer.allocate(initialCapacity);
+    this.rowCount = 0;
+    this.numericDigits = new short[8];
+  }
+
+  /** @return the header that must be sent at the start of each binary <code>COPY</code> */
+  public static byte[] getCopyHeader() {
+    return COPY_HEADER_BYTES.clone();
+  }
+
+  /** @return the trailer that must be sent at the end of each binary <code>COPY</code> */
+  public static byte[] getCopyTrailer() {
+    return COPY_TRAILER_BYTES.clone();
+  }
+
+  /** Empties this buffer, so that it can be reused for a new <code>COPY</code>. */
+  public void clear() {
+    buffer.clear();
+    rowCount = 0;
+  }
+
+  /** @return the number of rows that have been started since the last {@link #clear()} */
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * @return a read-only view of the encoded rows, which is only valid until this buffer is next
+   *     modified
+   */
+  public ByteBuffer getContents() {
+    ByteBuffer contents = buffer.duplicate();
+    contents.flip();
+    return contents;
+  }
+
+  /**
+   * Starts a new row. It must be followed by exactly the specified number of values.
+   *
+   * @param fieldCount the number of fields (columns) in the row
+   */
+  public void startRow(int fieldCount) {
+    ensureCapacity(2);
+    buffer.putShort((short) fieldCount);
+    rowCount++;
+  }
+
+  /** Writes a <code>NULL</code> value, which is valid for columns of any type. */
+  public void writeNull() {
+    ensureCapacity(4);
+    buffer.putInt(-1);
+  }
+
+  /**
+   * Writes a <code>varchar</code>/<code>char</code> value.
+   *
+   * @param value the value to write, or <code>null</code>
+   */
+  public void writeText(String value) {
+    if (value == null) {
+      writeNull();
+      return;
+    }
+
+    // Almost all RIF text is ASCII, which can skip the CharsetEncoder.
+    int length = value.length();
+    ensureCapacity(4 + length);
+    int lengthPosition = buffer.position();
+    buffer.putInt(length);
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c >= 0x80) {
+        buffer.position(lengthPosition);
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        ensureCapacity(4 + encoded.length);
+        buffer.putInt(encoded.length);
+        buffer.put(encoded);
+        return;
+      }
+      buffer.put((byte) c);
+    }
+  }
+
+  /**
+   * Writes a single-character <code>varchar</code>/<code>char</code> value.
+   *
+   * @param value the value to write
+   */
+  public void writeText(char value) {
+    if (value >= 0x80) {
+      writeText(String.valueOf(value));
+      return;
+    }
+
+    ensureCapacity(5);
+    buffer.putInt(1);
+    buffer.put((byte) value);
+  }
+
+  /**
+   * Writes a single-character <code>varchar</code>/<code>char</code> value.
+   *
+   * @param value the value to write, or <code>null</code>
+   */
+  public void writeText(Character value) {
+    if (value == null) writeNull();
+    else writeText(value.charValue());
+  }
+
+  /**
+   * Writes a <code>date</code> value.
+   *
+   * @param value the value to write, or <code>null</code>
+   */
+  public void writeDate(LocalDate value) {
+    if (value == null) {
+      writeNull();
+      return;
+    }
+
+    ensureCapacity(8);
+    buffer.putInt(4);
+    buffer.putInt((int) (value.toEpochDay() - POSTGRES_EPOCH_DAYS));
+  }
+
+  /**
+   * Writes a <code>timestamp</code> (without time zone) value, as the UTC date and time.
+   *
+   * @param value the value to write, or <code>null</code>
+   */
+  public void writeTimestamp(Instant value) {
+    if (value == null) {
+      writeNull();
+      return;
+    }
+
+    writeTimestampMicros(
+        Math.multiplyExact(value.getEpochSecond() - POSTGRES_EPOCH_SECONDS, 1_000_000L)
+            + (value.getNano() / 1000));
+  }
+
+  /**
+   * Writes a <code>timestamp with time zone</code> value.
+   *
+   * @param value the value to write, or <code>null</code>
+   */
+  public void writeTimestampTz(Date value) {
+    if (value == null) {
+      writeNull();
+      return;
+    }
+
+    writeTimestampMicros(
+        Math.multiplyExact(value.getTime() - (POSTGRES_EPOCH_SECONDS * 1000L), 1000L));
+  }
+
+  /**
+   * @param microsSincePostgresEpoch the <code>timestamp</code> value to write, as the number of
+   *     microseconds since 2000-01-01T00:00:00Z
+   */
+  private void writeTimestampMicros(long microsSincePostgresEpoch) {
+    ensureCapacity(12);
+    buffer.putInt(8);
+    buffer.putLong(microsSincePostgresEpoch);
+  }
+
+  /**
+   * Writes an <code>integer</code> value.
+   *
+   * @param value the value to write
+   */
+  public void writeInt4(int value) {
+    ensureCapacity(8);
+    buffer.putInt(4);
+    buffer.putInt(value);
+  }
+
+  /**
+   * Writes an <code>integer</code> value.
+   *
+   * @param value the value to write, or <code>null</code>
+   */
+  public void writeInt4(Integer value) {
+    if (value == null) writeNull();
+    else writeInt4(value.intValue());
+  }
+
+  /**
+   * Writes a <code>bigint</code> value.
+   *
+   * @param value the value to write
+   */
+  public void writeInt8(long value) {
+    ensureCapacity(12);
+    buffer.putInt(8);
+    buffer.putLong(value);
+  }
+
+  /**
+   * Writes a <code>bigint</code> value.
+   *
+   * @param value the value to write, or <code>null</code>
+   */
+  public void writeInt8(Long value) {
+    if (value == null) writeNull();
+    else writeInt8(value.longValue());
+  }
+
+  /**
+   * Writes a <code>numeric</code> value.
+   *
+   * @param value the value to write
+   */
+  public void writeNumeric(int value) {
+    writeNumeric(Math.abs((long) value), value < 0, 0);
+  }
+
+  /**
+   * Writes a <code>numeric</code> value.
+   *
+   * @param value the value to write, or <code>null</code>
+   */
+  public void writeNumeric(Integer value) {
+    if (value == null) writeNull();
+    else writeNumeric(value.intValue());
+  }
+
+  /**
+   * Writes a <code>numeric</code> value.
+   *
+   * @param value the value to write, or <code>null</code>
+   */
+  public void writeNumeric(BigDecimal value) {
+    if (value == null) {
+      writeNull();
+      return;
+    }
+
+    BigInteger unscaled = value.unscaledValue();
+    int scale = value.scale();
+    if (scale < 0) {
+      unscaled = unscaled.multiply(BigInteger.TEN.pow(-scale));
+      scale = 0;
+    }
+
+    // The common case: small enough to do the math with longs.
+    if (unscaled.bitLength() < 53) {
+      writeNumeric(Math.abs(unscaled.longValue()), unscaled.signum() < 0, scale);
+      return;
+    }
+
+    /*
+     * PostgreSQL numerics are stored as base-10000 digits, which have to
+     * line up with the decimal point. So, pad the fractional part out to a
+     * multiple of four decimal digits first.
+     */
+    int fractionPadding = (4 - (scale % 4)) % 4;
+    BigInteger remaining = unscaled.abs().multiply(BigInteger.TEN.pow(fractionPadding));
+    int digitCount = 0;
+    while (remaining.signum() != 0) {
+      BigInteger[] quotientAndRemainder = remaining.divideAndRemainder(NUMERIC_BASE);
+      addNumericDigit(digitCount++, quotientAndRemainder[1].shortValue());
+      remaining = quotientAndRemainder[0];
+    }
+    writeNumericDigits(digitCount, (scale + fractionPadding) / 4, unscaled.signum() < 0, scale);
+  }
+
+  /**
+   * @param unscaledMagnitude the absolute value of the unscaled <code>numeric</code> to write,
+   *     which must be less than 2^53 (so that padding it can't overflow)
+   * @param negative <code>true</code> if the value is negative
+   * @param scale the number of digits to the right of the decimal point
+   */
+  private void writeNumeric(long unscaledMagnitude, boolean negative, int scale) {
+    int fractionPadding = (4 - (scale % 4)) % 4;
+    long remaining = unscaledMagnitude;
+    for (int i = 0; i < fractionPadding; i++) remaining *= 10;
+
+    int digitCount = 0;
+    while (remaining != 0) {
+      addNumericDigit(digitCount++, (short) (remaining % 10000));
+      remaining /= 10000;
+    }
+    writeNumericDigits(digitCount, (scale + fractionPadding) / 4, negative, scale);
+  }
+
+  /**
+   * @param index the index of the base-10000 digit to set, counting from the least significant
+   * @param digit the value of that digit
+   */
+  private void addNumericDigit(int index, short digit) {
+    if (index >= numericDigits.length) {
+      short[] grown = new short[numericDigits.length * 2];
+      System.arraycopy(numericDigits, 0, grown, 0, numericDigits.length);
+      numericDigits = grown;
+    }
+    numericDigits[index] = digit;
+  }
+
+  /**
+   * Writes out a <code>numeric</code> value from the base-10000 digits in {@link #numericDigits}.
+   *
+   * @param digitCount the number of digits in {@link #numericDigits}, which are ordered from least
+   *     to most significant, and have no leading zeroes
+   * @param fractionDigitCount the number of those digits that are to the right of the decimal point
+   * @param negative <code>true</code> if the value is negative
+   * @param scale the number of decimal digits to the right of the decimal point to display
+   */
+  private void writeNumericDigits(
+      int digitCount, int fractionDigitCount, boolean negative, int scale) {
+    // Trailing zero digits don't need to be sent.
+    int firstDigit = 0;
+    while (firstDigit < digitCount && numericDigits[firstDigit] == 0) firstDigit++;
+
+    int sentDigitCount = digitCount - firstDigit;
+    int weight = sentDigitCount == 0 ? 0 : digitCount - fractionDigitCount - 1;
+    short sign = negative && sentDigitCount > 0 ? NUMERIC_NEGATIVE : NUMERIC_POSITIVE;
+
+    ensureCapacity(12 + (2 * sentDigitCount));
+    buffer.putInt(8 + (2 * sentDigitCount));
+    buffer.putShort((short) sentDigitCount);
+    buffer.putShort((short) weight);
+    buffer.putShort(sign);
+    buffer.putShort((short) scale);
+    for (int i = digitCount - 1; i >= firstDigit; i--) buffer.putShort(numericDigits[i]);
+  }
+
+  /**
+   * Grows {@link #buffer}, if needed, to ensure that it has room for the specified number of bytes.
+   *
+   * @param byteCount the number of bytes that are about to be written
+   */
+  private void ensureCapacity(int byteCount) {
+    if (buffer.remaining() >= byteCount) return;
+
+    ByteBuffer grown =
+        ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + byteCount));
+    buffer.flip();
+    grown.put(buffer);
+    buffer = grown;
+  }
+}
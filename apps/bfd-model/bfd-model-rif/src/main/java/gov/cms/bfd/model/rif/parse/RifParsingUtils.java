@@ -9,10 +9,13 @@ import java.nio.charset.Charset;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.time.format.DateTimeParseException;
+import java.util.List;
 import java.util.Optional;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -30,6 +33,23 @@ public final class RifParsingUtils {
           .appendPattern("dd-MMM-yyyy HH:mm:ss")
           .toFormatter();
 
+  private static final DateTimeFormatter RIF_DATE_FORMATTER =
+      new DateTimeFormatterBuilder()
+          .parseCaseInsensitive()
+          .appendPattern("dd-MMM-yyyy")
+          .toFormatter();
+
+  private static final DateTimeFormatter RIF_DATE_FORMATTER_COMPACT =
+      new DateTimeFormatterBuilder()
+          .parseCaseInsensitive()
+          .appendPattern("yyyyMMdd")
+          .toFormatter();
+
+  /** The upper-cased three-letter month abbreviations used in <code>dd-MMM-yyyy</code> dates. */
+  private static final String[] MONTH_ABBREVIATIONS = {
+    "JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"
+  };
+
   /**
    * @param file the {@link RifFile} to parse
    * @return a {@link CSVParser} for the specified {@link RifFile}
@@ -72,6 +92,40 @@ public final class RifParsingUtils {
     }
   }
 
+  /**
+   * @param file the {@link RifFile} to tokenize
+   * @return a {@link RifRecordTokenizer} for the specified {@link RifFile}, which will have already
+   *     read in the file's header record
+   */
+  public static RifRecordTokenizer createRifTokenizer(RifFile file) {
+    return new RifRecordTokenizer(file.open(), file.getCharset());
+  }
+
+  /**
+   * Resolves the position of each of the specified RIF columns in a file's header record, so that
+   * the generated index-based <code>parseRif(...)</code> methods can read each value by its index,
+   * rather than by looking up its column name again for every single record.
+   *
+   * @param header the header record (i.e. the column names) of the RIF file being parsed, as
+   *     returned by {@link RifRecordTokenizer#getHeader()}
+   * @param columns the column {@link Enum} constants for the RIF layout being parsed
+   * @return an array of the (0-based) header positions of the specified columns, indexed by each
+   *     column's {@link Enum#ordinal()}
+   * @throws InvalidRifFileFormatException An {@link InvalidRifFileFormatException} will be thrown
+   *     if any of the specified columns are missing from the header record.
+   */
+  public static int[] resolveColumnIndexes(List<String> header, Enum<?>[] columns) {
+    int[] columnIndexes = new int[columns.length];
+    for (Enum<?> column : columns) {
+      int columnIndex = header.indexOf(column.name());
+      if (columnIndex < 0)
+        throw new InvalidRifFileFormatException(
+            String.format("RIF header record is missing the '%s' column: %s", column, header));
+      columnIndexes[column.ordinal()] = columnIndex;
+    }
+    return columnIndexes;
+  }
+
   /**
    * @param string the value to parse
    * @return the {@link String} that was specified (yes, this is a silly method, but it's here for
@@ -96,16 +150,7 @@ public final class RifParsingUtils {
    * @return the specified text parsed into an {@link Integer}
    */
   public static Integer parseInteger(String intText) {
-    /*
-     * Might seem silly to pull this out, but it makes the code a bit easier
-     * to read, and ensures that this parsing is standardized.
-     */
-    try {
-      return Integer.parseInt(intText);
-    } catch (NumberFormatException e) {
-      throw new InvalidRifValueException(
-          String.format("Unable to parse integer value: '%s'.", intText), e);
-    }
+    return decodeInteger(intText, null, -1);
   }
 
   /**
@@ -126,20 +171,7 @@ public final class RifParsingUtils {
    * @return the specified text parsed into a {@link BigDecimal}
    */
   public static BigDecimal parseDecimal(String decimalText) {
-    /*
-     * Might seem silly to pull this out, but it makes the code a bit easier
-     * to read, and ensures that this parsing is standardized.
-     */
-    if (decimalText.isEmpty()) {
-      return new BigDecimal(0);
-    } else {
-      try {
-        return new BigDecimal(decimalText);
-      } catch (NumberFormatException e) {
-        throw new InvalidRifValueException(
-            String.format("Unable to parse decimal value: '%s'.", decimalText), e);
-      }
-    }
+    return decodeDecimal(decimalText, null, -1);
   }
 
   /**
@@ -160,38 +192,7 @@ public final class RifParsingUtils {
    * @return the specified text as a {@link LocalDate}
    */
   public static LocalDate parseDate(String dateText) {
-    /*
-     * Might seem silly to pull this out, but it makes the code a bit easier
-     * to read, and ensures that this parsing is standardized.
-     */
-
-    DateTimeFormatter rifDateFormatter;
-    /*
-     * Incoming dates usually are in the format of dd-MMM-yyyy (01-MAR-2019). There
-     * are a couple instances where a date may come in the format of yyyyMMdd
-     * (20190301). Thus the reason for the following code.
-     */
-    if (dateText.matches("\\d{8}")) {
-      rifDateFormatter =
-          new DateTimeFormatterBuilder()
-              .parseCaseInsensitive()
-              .appendPattern("yyyyMMdd")
-              .toFormatter();
-    } else {
-      rifDateFormatter =
-          new DateTimeFormatterBuilder()
-              .parseCaseInsensitive()
-              .appendPattern("dd-MMM-yyyy")
-              .toFormatter();
-    }
-
-    try {
-      LocalDate dateFrom = LocalDate.parse(dateText, rifDateFormatter);
-      return dateFrom;
-    } catch (DateTimeParseException e) {
-      throw new InvalidRifValueException(
-          String.format("Unable to parse date value: '%s'.", dateText), e);
-    }
+    return decodeDate(dateText, null, -1);
   }
 
   /**
@@ -199,19 +200,7 @@ public final class RifParsingUtils {
    * @return the specified text as a {@link Instant}, parsed using {@link #RIF_TIMESTAMP_FORMATTER}
    */
   public static Instant parseTimestamp(String timestampText) {
-    /*
-     * Might seem silly to pull this out, but it makes the code a bit easier to
-     * read, and ensures that this parsing is standardized.
-     */
-
-    try {
-      LocalDateTime localDateTime = LocalDateTime.parse(timestampText, RIF_TIMESTAMP_FORMATTER);
-      Instant instantFormatted = localDateTime.toInstant(ZoneOffset.UTC);
-      return instantFormatted;
-    } catch (DateTimeParseException e) {
-      throw new InvalidRifValueException(
-          String.format("Unable to parse timestamp value: '%s'.", timestampText), e);
-    }
+    return decodeTimestamp(timestampText, null, -1);
   }
 
   /**
@@ -269,4 +258,311 @@ public final class RifParsingUtils {
       return Optional.of(parseCharacter(charText));
     }
   }
+
+  /**
+   * @param record the {@link RifRecord} to read the value from
+   * @param column the (0-based) index of the column in the {@link RifRecord} to read
+   * @return the specified column's value, as parsed by {@link #parseString(String)}
+   */
+  public static String parseString(RifRecord record, int column) {
+    return record.getString(column);
+  }
+
+  /**
+   * @param record the {@link RifRecord} to read the value from
+   * @param column the (0-based) index of the column in the {@link RifRecord} to read
+   * @return the specified column's value, as parsed by {@link #parseInteger(String)}
+   */
+  public static int parseInteger(RifRecord record, int column) {
+    return decodeInteger(null, record, column);
+  }
+
+  /**
+   * @param record the {@link RifRecord} to read the value from
+   * @param column the (0-based) index of the column in the {@link RifRecord} to read
+   * @return the specified column's value, as parsed by {@link #parseDecimal(String)}
+   */
+  public static BigDecimal parseDecimal(RifRecord record, int column) {
+    return decodeDecimal(null, record, column);
+  }
+
+  /**
+   * @param record the {@link RifRecord} to read the value from
+   * @param column the (0-based) index of the column in the {@link RifRecord} to read
+   * @return the specified column's value, as parsed by {@link #parseDate(String)}
+   */
+  public static LocalDate parseDate(RifRecord record, int column) {
+    return decodeDate(null, record, column);
+  }
+
+  /**
+   * @param record the {@link RifRecord} to read the value from
+   * @param column the (0-based) index of the column in the {@link RifRecord} to read
+   * @return the specified column's value, as parsed by {@link #parseTimestamp(String)}
+   */
+  public static Instant parseTimestamp(RifRecord record, int column) {
+    return decodeTimestamp(null, record, column);
+  }
+
+  /**
+   * @param record the {@link RifRecord} to read the value from
+   * @param column the (0-based) index of the column in the {@link RifRecord} to read
+   * @return the specified column's value, as parsed by {@link #parseCharacter(String)}
+   */
+  public static char parseCharacter(RifRecord record, int column) {
+    /*
+     * The common case is a single ASCII byte, which can be read without creating a String. Anything
+     * else (including a multi-byte character) is left for the String-based method to sort out.
+     */
+    if (record.length(column) == 1) {
+      char value = record.charAt(column, 0);
+      if (value < 0x80) return value;
+    }
+
+    return parseCharacter(record.getString(column));
+  }
+
+  /*
+   * The decode*(...) methods below are shared by the String- and RifRecord-based parse methods:
+   * exactly one of their text or record parameters will be non-null. They hand-decode the fixed
+   * formats that RIF values actually come in, without any regexes, intermediate Strings, or
+   * boxing. Anything else (including anything invalid) falls back to the general-purpose JDK
+   * parsers, so that the accepted values and error reporting are unchanged.
+   */
+
+  /**
+   * @param text the value to decode, or <code>null</code> if <code>record</code> is specified
+   * @param record the {@link RifRecord} containing the value to decode, or <code>null</code> if
+   *     <code>text</code> is specified
+   * @param column the (0-based) index of the column in <code>record</code> to decode
+   * @return the decoded value
+   */
+  private static int decodeInteger(String text, RifRecord record, int column) {
+    int length = length(text, record, column);
+
+    // Anything longer than nine digits might overflow, so leave it to the slow path.
+    if (length > 0 && length <= 9) {
+      char first = charAt(text, record, column, 0);
+      boolean negative = first == '-';
+      int index = (negative || first == '+') ? 1 : 0;
+      int value = 0;
+      if (index < length) {
+        for (; index < length; index++) {
+          int digit = charAt(text, record, column, index) - '0';
+          if (digit < 0 || digit > 9) break;
+          value = value * 10 + digit;
+        }
+        if (index == length) return negative ? -value : value;
+      }
+    }
+
+    String intText = text != null ? text : record.getString(column);
+    try {
+      return Integer.parseInt(intText);
+    } catch (NumberFormatException e) {
+      throw new InvalidRifValueException(
+          String.format("Unable to parse integer value: '%s'.", intText), e);
+    }
+  }
+
+  /**
+   * @param text the value to decode, or <code>null</code> if <code>record</code> is specified
+   * @param record the {@link RifRecord} containing the value to decode, or <code>null</code> if
+   *     <code>text</code> is specified
+   * @param column the (0-based) index of the column in <code>record</code> to decode
+   * @return the decoded value, which will be zero if the value is empty
+   */
+  private static BigDecimal decodeDecimal(String text, RifRecord record, int column) {
+    int length = length(text, record, column);
+    if (length == 0) return BigDecimal.ZERO;
+
+    // Up to 18 digits will always fit into a long.
+    char first = charAt(text, record, column, 0);
+    boolean negative = first == '-';
+    int index = (negative || first == '+') ? 1 : 0;
+    long unscaledValue = 0L;
+    int digits = 0;
+    int scale = -1;
+    for (; index < length && digits <= 18; index++) {
+      char c = charAt(text, record, column, index);
+      if (c >= '0' && c <= '9') {
+        unscaledValue = unscaledValue * 10 + (c - '0');
+        digits++;
+        if (scale >= 0) scale++;
+      } else if (c == '.' && scale < 0) {
+        scale = 0;
+      } else {
+        break;
+      }
+    }
+    if (index == length && digits > 0 && digits <= 18)
+      return BigDecimal.valueOf(negative ? -unscaledValue : unscaledValue, Math.max(scale, 0));
+
+    String decimalText = text != null ? text : record.getString(column);
+    try {
+      return new BigDecimal(decimalText);
+    } catch (NumberFormatException e) {
+      throw new InvalidRifValueException(
+          String.format("Unable to parse decimal value: '%s'.", decimalText), e);
+    }
+  }
+
+  /**
+   * Decodes dates, which usually are in the format of <code>dd-MMM-yyyy</code> (e.g. <code>
+   * 01-MAR-2019</code>), but occasionally come in the format of <code>yyyyMMdd</code> (e.g. <code>
+   * 20190301</code>).
+   *
+   * @param text the value to decode, or <code>null</code> if <code>record</code> is specified
+   * @param record the {@link RifRecord} containing the value to decode, or <code>null</code> if
+   *     <code>text</code> is specified
+   * @param column the (0-based) index of the column in <code>record</code> to decode
+   * @return the decoded value
+   */
+  private static LocalDate decodeDate(String text, RifRecord record, int column) {
+    int length = length(text, record, column);
+    if (length == 8) {
+      int year = decodeDigits(text, record, column, 0, 4);
+      int month = decodeDigits(text, record, column, 4, 2);
+      int day = decodeDigits(text, record, column, 6, 2);
+      if (isValidDate(year, month, day)) return LocalDate.of(year, month, day);
+    } else if (length == 11) {
+      LocalDate date = decodeDayMonthYear(text, record, column);
+      if (date != null) return date;
+    }
+
+    String dateText = text != null ? text : record.getString(column);
+    DateTimeFormatter rifDateFormatter =
+        dateText.matches("\\d{8}") ? RIF_DATE_FORMATTER_COMPACT : RIF_DATE_FORMATTER;
+    try {
+      return LocalDate.parse(dateText, rifDateFormatter);
+    } catch (DateTimeParseException e) {
+      throw new InvalidRifValueException(
+          String.format("Unable to parse date value: '%s'.", dateText), e);
+    }
+  }
+
+  /**
+   * @param text the value to decode, or <code>null</code> if <code>record</code> is specified
+   * @param record the {@link RifRecord} containing the value to decode, or <code>null</code> if
+   *     <code>text</code> is specified
+   * @param column the (0-based) index of the column in <code>record</code> to decode
+   * @return the decoded value, parsed as per {@link #RIF_TIMESTAMP_FORMATTER}
+   */
+  private static Instant decodeTimestamp(String text, RifRecord record, int column) {
+    if (length(text, record, column) == 20
+        && charAt(text, record, column, 11) == ' '
+        && charAt(text, record, column, 14) == ':'
+        && charAt(text, record, column, 17) == ':') {
+      LocalDate date = decodeDayMonthYear(text, record, column);
+      int hour = decodeDigits(text, record, column, 12, 2);
+      int minute = decodeDigits(text, record, column, 15, 2);
+      int second = decodeDigits(text, record, column, 18, 2);
+      if (date != null
+          && hour >= 0
+          && hour <= 23
+          && minute >= 0
+          && minute <= 59
+          && second >= 0
+          && second <= 59)
+        return Instant.ofEpochSecond(
+            date.toEpochDay() * 86400L + hour * 3600 + minute * 60 + second);
+    }
+
+    String timestampText = text != null ? text : record.getString(column);
+    try {
+      LocalDateTime localDateTime = LocalDateTime.parse(timestampText, RIF_TIMESTAMP_FORMATTER);
+      return localDateTime.toInstant(ZoneOffset.UTC);
+    } catch (DateTimeParseException e) {
+      throw new InvalidRifValueException(
+          String.format("Unable to parse timestamp value: '%s'.", timestampText), e);
+    }
+  }
+
+  /**
+   * @param text the value to decode, or <code>null</code> if <code>record</code> is specified
+   * @param record the {@link RifRecord} containing the value to decode, or <code>null</code> if
+   *     <code>text</code> is specified
+   * @param column the (0-based) index of the column in <code>record</code> to decode
+   * @return the <code>dd-MMM-yyyy</code> date at the start of the specified value, or <code>null
+   *     </code> if it isn't a valid date in exactly that format
+   */
+  private static LocalDate decodeDayMonthYear(String text, RifRecord record, int column) {
+    if (charAt(text, record, column, 2) != '-' || charAt(text, record, column, 6) != '-')
+      return null;
+
+    int day = decodeDigits(text, record, column, 0, 2);
+    int year = decodeDigits(text, record, column, 7, 4);
+    int month = -1;
+    for (int i = 0; i < MONTH_ABBREVIATIONS.length && month < 0; i++) {
+      String abbreviation = MONTH_ABBREVIATIONS[i];
+      if (Character.toUpperCase(charAt(text, record, column, 3)) == abbreviation.charAt(0)
+          && Character.toUpperCase(charAt(text, record, column, 4)) == abbreviation.charAt(1)
+          && Character.toUpperCase(charAt(text, record, column, 5)) == abbreviation.charAt(2))
+        month = i + 1;
+    }
+
+    return isValidDate(year, month, day) ? LocalDate.of(year, month, day) : null;
+  }
+
+  /**
+   * @param text the value to decode, or <code>null</code> if <code>record</code> is specified
+   * @param record the {@link RifRecord} containing the value to decode, or <code>null</code> if
+   *     <code>text</code> is specified
+   * @param column the (0-based) index of the column in <code>record</code> to decode
+   * @param start the (0-based) index of the first digit to decode
+   * @param count the number of digits to decode
+   * @return the non-negative value of the specified ASCII digits, or <code>-1</code> if any of the
+   *     specified characters are not ASCII digits
+   */
+  private static int decodeDigits(
+      String text, RifRecord record, int column, int start, int count) {
+    int value = 0;
+    for (int index = start; index < start + count; index++) {
+      int digit = charAt(text, record, column, index) - '0';
+      if (digit < 0 || digit > 9) return -1;
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+
+  /**
+   * Note: invalid (e.g. <code>30-FEB-2019</code>) dates are left for the {@link DateTimeFormatter}
+   * fallbacks to resolve or reject, just as they always have been.
+   *
+   * @param year the year to check
+   * @param month the (1-based) month to check
+   * @param day the (1-based) day of the month to check
+   * @return <code>true</code> if the specified values represent a valid date, <code>false</code>
+   *     if not
+   */
+  private static boolean isValidDate(int year, int month, int day) {
+    return year >= 1
+        && month >= 1
+        && month <= 12
+        && day >= 1
+        && day <= Month.of(month).length(Year.isLeap(year));
+  }
+
+  /**
+   * @param text the value to check, or <code>null</code> if <code>record</code> is specified
+   * @param record the {@link RifRecord} containing the value to check, or <code>null</code> if
+   *     <code>text</code> is specified
+   * @param column the (0-based) index of the column in <code>record</code> to check
+   * @return the length of the specified value
+   */
+  private static int length(String text, RifRecord record, int column) {
+    return text != null ? text.length() : record.length(column);
+  }
+
+  /**
+   * @param text the value to read from, or <code>null</code> if <code>record</code> is specified
+   * @param record the {@link RifRecord} containing the value to read from, or <code>null</code> if
+   *     <code>text</code> is specified
+   * @param column the (0-based) index of the column in <code>record</code> to read from
+   * @param index the (0-based) index of the character to read
+   * @return the specified character of the specified value
+   */
+  private static char charAt(String text, RifRecord record, int column, int index) {
+    return text != null ? text.charAt(index) : record.charAt(column, index);
+  }
 }
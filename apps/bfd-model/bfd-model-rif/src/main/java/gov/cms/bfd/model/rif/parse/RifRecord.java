@@ -0,0 +1,213 @@
+package gov.cms.bfd.model.rif.parse;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * A single tokenized row from a RIF file, as produced by {@link RifRecordTokenizer}. Unlike
+ * commons-csv's <code>CSVRecord</code>, this does not copy each column out into its own {@link
+ * String}: it just records where each column starts and ends in the underlying {@link ByteBuffer}.
+ * Callers can then inspect those raw column values via {@link #length(int)} and {@link #charAt(int,
+ * int)}, and only pay for a {@link String} via {@link #getString(int)} when they actually need one.
+ *
+ * <p>Instances are immutable and may be safely read from multiple threads.
+ */
+public final class RifRecord {
+  private final ByteBuffer buffer;
+  private final Charset charset;
+  private final long recordNumber;
+  private final int columnCount;
+
+  /**
+   * The start (inclusive) and end (exclusive) offsets in {@link #buffer} of each column, with the
+   * start of column <code>n</code> at index <code>2n</code>, and its end at <code>2n + 1</code>.
+   */
+  private final int[] columnBounds;
+
+  /**
+   * The decoded values of any columns that were quoted or contained escape sequences, such that
+   * their raw bytes are not their actual value, or <code>null</code> if there were no such columns
+   * (which is the norm).
+   */
+  private final String[] decodedColumns;
+
+  /**
+   * Constructs a new {@link RifRecord}.
+   *
+   * @param buffer the {@link ByteBuffer} containing the record's raw data
+   * @param charset the {@link Charset} that the record's raw data is encoded in
+   * @param recordNumber the value to use for {@link #getRecordNumber()}
+   * @param columnCount the value to use for {@link #size()}
+   * @param columnBounds the start and end offsets of each column (see {@link #columnBounds})
+   * @param decodedColumns the pre-decoded values of any escaped columns (see {@link
+   *     #decodedColumns})
+   */
+  RifRecord(
+      ByteBuffer buffer,
+      Charset charset,
+      long recordNumber,
+      int columnCount,
+      int[] columnBounds,
+      String[] decodedColumns) {
+    this.buffer = buffer;
+    this.charset = charset;
+    this.recordNumber = recordNumber;
+    this.columnCount = columnCount;
+    this.columnBounds = columnBounds;
+    this.decodedColumns = decodedColumns;
+  }
+
+  /**
+   * @return the (1-based) number of this record in the file it was read from, counting the header
+   *     record (if any), which matches the numbering used by commons-csv's <code>
+   *     CSVRecord.getRecordNumber()</code>
+   */
+  public long getRecordNumber() {
+    return recordNumber;
+  }
+
+  /** @return the number of columns in this {@link RifRecord} */
+  public int size() {
+    return columnCount;
+  }
+
+  /**
+   * @return the approximate number of bytes that this {@link RifRecord} took up in its file, from
+   *     the start of its first column to the end of its last one, which callers can use to size
+   *     buffers and budgets without decoding anything
+   */
+  public int getRawLength() {
+    if (columnCount == 0) return 0;
+    return columnBounds[2 * columnCount - 1] - columnBounds[0];
+  }
+
+  /**
+   * @param column the (0-based) index of the column to check
+   * @return <code>true</code> if the specified column's value is empty, <code>false</code> if not
+   */
+  public boolean isEmpty(int column) {
+    return length(column) == 0;
+  }
+
+  /**
+   * @param column the (0-based) index of the column to check
+   * @return the length of the specified column's value, in <code>char</code>s for escaped columns,
+   *     or in bytes otherwise (which, since RIF data is ASCII, will be the same thing)
+   */
+  public int length(int column) {
+    checkColumn(column);
+    if (decodedColumns != null && decodedColumns[column] != null)
+      return decodedColumns[column].length();
+    return columnBounds[2 * column + 1] - columnBounds[2 * column];
+  }
+
+  /**
+   * Provides access to a single character of the specified column, without creating a {@link
+   * String}. Note that this assumes that non-escaped column values are single-byte (e.g. ASCII)
+   * encoded, which is always the case for the numeric, date, and code columns that this method is
+   * intended for. Use {@link #getString(int)} for free-text columns.
+   *
+   * @param column the (0-based) index of the column to read from
+   * @param index the (0-based) index of the character in the column to read
+   * @return the specified character of the specified column
+   */
+  public char charAt(int column, int index) {
+    checkColumn(column);
+    if (decodedColumns != null && decodedColumns[column] != null)
+      return decodedColumns[column].charAt(index);
+
+    int start = columnBounds[2 * column];
+    int end = columnBounds[2 * column + 1];
+    if (index < 0 || index >= (end - start)) throw new IndexOutOfBoundsException("" + index);
+    return (char) (buffer.get(start + index) & 0xFF);
+  }
+
+  /**
+   * @param column the (0-based) index of the column to read
+   * @return a new {@link String} with the specified column's (decoded) value
+   */
+  public String getString(int column) {
+    checkColumn(column);
+    if (decodedColumns != null && decodedColumns[column] != null) return decodedColumns[column];
+
+    int start = columnBounds[2 * column];
+    int end = columnBounds[2 * column + 1];
+    if (start == end) return "";
+    return decode(buffer, start, end, charset);
+  }
+
+  /**
+   * Compares the values of the same column in two {@link RifRecord}s, without creating any {@link
+   * String}s (unless one of the values is escaped).
+   *
+   * @param column the (0-based) index of the column to compare
+   * @param other the other {@link RifRecord} to compare against
+   * @return <code>true</code> if the specified column has the same value in both {@link
+   *     RifRecord}s, <code>false</code> if not
+   */
+  public boolean valueEquals(int column, RifRecord other) {
+    checkColumn(column);
+    other.checkColumn(column);
+    if ((decodedColumns != null && decodedColumns[column] != null)
+        || (other.decodedColumns != null && other.decodedColumns[column] != null))
+      return getString(column).equals(other.getString(column));
+
+    int start = columnBounds[2 * column];
+    int end = columnBounds[2 * column + 1];
+    int otherStart = other.columnBounds[2 * column];
+    int otherEnd = other.columnBounds[2 * column + 1];
+    if ((end - start) != (otherEnd - otherStart)) return false;
+    for (int i = 0; i < end - start; i++)
+      if (buffer.get(start + i) != other.buffer.get(otherStart + i)) return false;
+    return true;
+  }
+
+  /**
+   * @param column the column index to verify
+   * @throws ArrayIndexOutOfBoundsException An {@link ArrayIndexOutOfBoundsException} will be thrown
+   *     if the specified column is not present in this {@link RifRecord}.
+   */
+  private void checkColumn(int column) {
+    if (column < 0 || column >= columnCount)
+      throw new ArrayIndexOutOfBoundsException(
+          String.format(
+              "Column index '%d' is not present in record number '%d', which has '%d' columns.",
+              column, recordNumber, columnCount));
+  }
+
+  /**
+   * @param buffer the {@link ByteBuffer} to decode from
+   * @param start the (inclusive) offset to decode from
+   * @param end the (exclusive) offset to decode to
+   * @param charset the {@link Charset} to decode with
+   * @return the decoded {@link String}
+   */
+  static String decode(ByteBuffer buffer, int start, int end, Charset charset) {
+    if (buffer.hasArray())
+      return new String(buffer.array(), buffer.arrayOffset() + start, end - start, charset);
+
+    /*
+     * Direct and memory-mapped buffers don't have a backing array, so the bytes have to be copied
+     * out. Absolute gets are used, rather than a bulk get(byte[]), as those don't modify the
+     * buffer's position, which keeps this thread-safe.
+     */
+    byte[] bytes = new byte[end - start];
+    for (int i = 0; i < bytes.length; i++) bytes[i] = buffer.get(start + i);
+    return new String(bytes, charset);
+  }
+
+  /** @see java.lang.Object#toString() */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("RifRecord [recordNumber=");
+    builder.append(recordNumber);
+    builder.append(", values=[");
+    for (int column = 0; column < columnCount; column++) {
+      if (column > 0) builder.append(", ");
+      builder.append(getString(column));
+    }
+    builder.append("]]");
+    return builder.toString();
+  }
+}
@@ -0,0 +1,604 @@
+package gov.cms.bfd.model.rif.parse;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A purpose-built tokenizer for RIF files, which are <code>|</code>-delimited, with <code>\</code>
+ * as the escape character. This is intended as a much cheaper alternative to running RIF data
+ * through {@link RifParsingUtils#CSV_FORMAT}: rather than building a {@link String} for every
+ * column of every row, it just records the column boundaries in the file's bytes (see {@link
+ * RifRecord}), and leaves it up to the caller to decide which of those columns actually need to be
+ * turned into {@link String}s.
+ *
+ * <p>The tokenizer reads from a {@link ByteBuffer} "window" over the file's data, which is either
+ * memory-mapped (for local files), filled from an {@link InputStream}, or provided up front. Each
+ * {@link RifRecord} it produces gets a single copy of just its own bytes from that window (rather
+ * than one copy per column), so that records never pin a whole window in memory.
+ *
+ * <p>Its output is intended to match that of {@link RifParsingUtils#CSV_FORMAT}: blank lines are
+ * skipped, <code>\r\n</code>, <code>\n</code>, and <code>\r</code> are all accepted as record
+ * separators, and <code>"</code>-quoted columns and <code>\</code> escape sequences are decoded
+ * just as commons-csv would. Real RIF files never have either of those, so such columns take a
+ * slower path.
+ *
+ * <p>This class is not thread-safe, though the {@link RifRecord}s it produces are.
+ */
+public final class RifRecordTokenizer implements Iterator<RifRecord>, Closeable {
+  /** The default size of the {@link ByteBuffer} windows used for memory-mapped files. */
+  static final int DEFAULT_MAPPED_WINDOW_SIZE = 64 * 1024 * 1024;
+
+  /** The default size of the {@link ByteBuffer} windows used for {@link InputStream}s. */
+  static final int DEFAULT_STREAM_WINDOW_SIZE = 1024 * 1024;
+
+  private static final byte DELIMITER = '|';
+  private static final byte ESCAPE = '\\';
+  private static final byte QUOTE = '"';
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+
+  private final WindowSource windowSource;
+  private final Charset charset;
+  private final List<String> header;
+
+  private ByteBuffer window;
+  private int position;
+  private boolean endOfData;
+  private long nextRecordNumber;
+  private int expectedColumnCount;
+  private RifRecord nextRecord;
+
+  /**
+   * Constructs a new {@link RifRecordTokenizer} for the specified local file, which will be
+   * memory-mapped, and reads its header record.
+   *
+   * @param file the local RIF file to tokenize
+   * @param charset the {@link Charset} that the file is encoded in
+   */
+  public RifRecordTokenizer(Path file, Charset charset) {
+    this(new MappedWindowSource(file, DEFAULT_MAPPED_WINDOW_SIZE), charset, null);
+  }
+
+  /**
+   * Constructs a new {@link RifRecordTokenizer} for the specified {@link InputStream}, and reads
+   * its header record.
+   *
+   * @param stream the RIF data to tokenize (which will be closed by {@link #close()})
+   * @param charset the {@link Charset} that the data is encoded in
+   */
+  public RifRecordTokenizer(InputStream stream, Charset charset) {
+    this(new StreamWindowSource(stream, DEFAULT_STREAM_WINDOW_SIZE), charset, null);
+  }
+
+  /**
+   * Constructs a new {@link RifRecordTokenizer} for the specified {@link ByteBuffer}, e.g. a chunk
+   * of a larger RIF file.
+   *
+   * @param buffer the RIF data to tokenize, from its current position to its limit
+   * @param charset the {@link Charset} that the data is encoded in
+   * @param header the column names for the data, or <code>null</code> if the data's first record
+   *     is its header
+   */
+  public RifRecordTokenizer(ByteBuffer buffer, Charset charset, List<String> header) {
+    this(new FixedWindowSource(buffer), charset, header);
+  }
+
+  /**
+   * Constructs a new {@link RifRecordTokenizer}.
+   *
+   * @param windowSource the {@link WindowSource} to read data from
+   * @param charset the {@link Charset} that the data is encoded in
+   * @param header the column names for the data, or <code>null</code> if the data's first record
+   *     is its header
+   */
+  RifRecordTokenizer(WindowSource windowSource, Charset charset, List<String> header) {
+    this.windowSource = windowSource;
+    this.charset = charset;
+    this.window = windowSource.nextWindow(null, 0);
+    this.position = 0;
+    this.endOfData = false;
+    this.nextRecordNumber = 1L;
+    this.expectedColumnCount = 0;
+    this.nextRecord = null;
+
+    skipByteOrderMark();
+
+    if (header != null) {
+      this.header = Collections.unmodifiableList(new ArrayList<>(header));
+    } else {
+      RifRecord headerRecord = readRecord();
+      if (headerRecord == null) throw new InvalidRifFileFormatException("Missing header record.");
+      List<String> headerColumns = new ArrayList<>(headerRecord.size());
+      for (int column = 0; column < headerRecord.size(); column++)
+        headerColumns.add(headerRecord.getString(column));
+      this.header = Collections.unmodifiableList(headerColumns);
+    }
+    this.expectedColumnCount = this.header.size();
+  }
+
+  /** @return the column names of the data being tokenized, in order */
+  public List<String> getHeader() {
+    return header;
+  }
+
+  /** @see java.util.Iterator#hasNext() */
+  @Override
+  public boolean hasNext() {
+    if (nextRecord == null) nextRecord = readRecord();
+    return nextRecord != null;
+  }
+
+  /** @see java.util.Iterator#next() */
+  @Override
+  public RifRecord next() {
+    if (!hasNext()) throw new NoSuchElementException();
+
+    RifRecord record = nextRecord;
+    nextRecord = null;
+    return record;
+  }
+
+  /** @see java.io.Closeable#close() */
+  @Override
+  public void close() {
+    try {
+      windowSource.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Skips over the UTF-8 byte order mark at the start of the data, if there is one. */
+  private void skipByteOrderMark() {
+    if (window == null || window.limit() < 3) return;
+    if ((window.get(0) & 0xFF) == 0xEF
+        && (window.get(1) & 0xFF) == 0xBB
+        && (window.get(2) & 0xFF) == 0xBF) position = 3;
+  }
+
+  /**
+   * Tries to pull more data into {@link #window}, retaining everything from {@link #position}
+   * onwards.
+   *
+   * @return <code>true</code> if more data was made available, <code>false</code> if the end of the
+   *     data has been reached (in which case {@link #endOfData} will be set)
+   */
+  private boolean refillWindow() {
+    ByteBuffer nextWindow = windowSource.nextWindow(window, position);
+    if (nextWindow == null) {
+      endOfData = true;
+      return false;
+    }
+
+    window = nextWindow;
+    position = 0;
+    return true;
+  }
+
+  /**
+   * @return the next {@link RifRecord} in the data, or <code>null</code> if there isn't one
+   * @throws InvalidRifFileFormatException An {@link InvalidRifFileFormatException} will be thrown
+   *     if the data ends in the middle of a quoted column or escape sequence.
+   */
+  private RifRecord readRecord() {
+    while (true) {
+      if (window == null) return null;
+
+      /*
+       * Make at least one attempt to tokenize the next record from the current window. If the
+       * window runs out before the record does, refill it (which will move the record's start to
+       * offset 0 of the new window) and start over from the beginning of the record.
+       */
+      int limit = window.limit();
+      if (position >= limit) {
+        if (endOfData || !refillWindow()) return null;
+        continue;
+      }
+
+      // Skip over blank lines, just as commons-csv does.
+      byte firstByte = window.get(position);
+      if (firstByte == LF || firstByte == CR) {
+        position++;
+        continue;
+      }
+
+      int[] columnBounds = new int[2 * Math.max(expectedColumnCount, 8)];
+      String[] decodedColumns = null;
+      int columnCount = 0;
+      int columnStart = position;
+      boolean columnNeedsDecoding = false;
+      boolean needMoreData = false;
+      int recordEnd = -1;
+      int i = position;
+
+      while (true) {
+        if (i >= limit) {
+          if (!endOfData) {
+            needMoreData = true;
+            break;
+          }
+
+          // The last record in the data may not have a trailing newline.
+          recordEnd = limit;
+          break;
+        }
+
+        byte b = window.get(i);
+        if (b == DELIMITER) {
+          if (2 * columnCount + 2 > columnBounds.length) {
+            columnBounds = Arrays.copyOf(columnBounds, 2 * columnBounds.length);
+            if (decodedColumns != null)
+              decodedColumns = Arrays.copyOf(decodedColumns, columnBounds.length / 2);
+          }
+          if (columnNeedsDecoding) {
+            if (decodedColumns == null) decodedColumns = new String[columnBounds.length / 2];
+            decodedColumns[columnCount] = decodeColumn(columnStart, i);
+          }
+          columnBounds[2 * columnCount] = columnStart;
+          columnBounds[2 * columnCount + 1] = i;
+          columnCount++;
+          columnStart = i + 1;
+          columnNeedsDecoding = false;
+          i++;
+        } else if (b == LF || b == CR) {
+          if (b == CR && i + 1 >= limit && !endOfData) {
+            // Need to see whether or not this is a "\r\n".
+            needMoreData = true;
+            break;
+          }
+          recordEnd = i;
+          break;
+        } else if (b == ESCAPE) {
+          if (i + 1 >= limit) {
+            if (!endOfData) {
+              needMoreData = true;
+              break;
+            }
+            throw new InvalidRifFileFormatException(
+                String.format(
+                    "Data ended in the middle of an escape sequence, in record number '%d'.",
+                    nextRecordNumber));
+          }
+          columnNeedsDecoding = true;
+          i += 2;
+        } else if (b == QUOTE && i == columnStart) {
+          int closingQuote = findClosingQuote(i + 1, limit);
+          if (closingQuote < 0) {
+            if (!endOfData) {
+              needMoreData = true;
+              break;
+            }
+            throw new InvalidRifFileFormatException(
+                String.format(
+                    "Data ended in the middle of a quoted column, in record number '%d'.",
+                    nextRecordNumber));
+          }
+          columnNeedsDecoding = true;
+          i = closingQuote + 1;
+        } else {
+          i++;
+        }
+      }
+
+      if (needMoreData) {
+        refillWindow();
+        continue;
+      }
+
+      // Record the last column.
+      if (2 * columnCount + 2 > columnBounds.length) {
+        columnBounds = Arrays.copyOf(columnBounds, 2 * columnBounds.length);
+        if (decodedColumns != null)
+          decodedColumns = Arrays.copyOf(decodedColumns, columnBounds.length / 2);
+      }
+      if (columnNeedsDecoding) {
+        if (decodedColumns == null) decodedColumns = new String[columnBounds.length / 2];
+        decodedColumns[columnCount] = decodeColumn(columnStart, recordEnd);
+      }
+      columnBounds[2 * columnCount] = columnStart;
+      columnBounds[2 * columnCount + 1] = recordEnd;
+      columnCount++;
+
+      // Advance past the record separator.
+      position = recordEnd;
+      if (position < limit && window.get(position) == CR) position++;
+      if (position < limit && window.get(position) == LF) position++;
+
+      if (columnCount > expectedColumnCount) expectedColumnCount = columnCount;
+      return new RifRecord(
+          copyRecord(columnBounds, columnCount),
+          charset,
+          nextRecordNumber++,
+          columnCount,
+          columnBounds,
+          decodedColumns);
+    }
+  }
+
+  /**
+   * Copies a just-tokenized record's bytes out of {@link #window}, so that the {@link RifRecord}
+   * holds on to only its own data, rather than keeping the whole window alive for as long as it's
+   * referenced. This matters because callers budget memory by {@link RifRecord#getRawLength()}:
+   * otherwise, a handful of records still queued up for loading could be holding on to many times
+   * that.
+   *
+   * @param columnBounds the record's column bounds (see {@link RifRecord}), which will be rebased
+   *     in place to be relative to the returned {@link ByteBuffer}
+   * @param columnCount the number of columns in the record
+   * @return a new {@link ByteBuffer} containing just the specified record's bytes
+   */
+  private ByteBuffer copyRecord(int[] columnBounds, int columnCount) {
+    int recordStart = columnBounds[0];
+    int recordEnd = columnBounds[2 * columnCount - 1];
+    byte[] recordBytes = new byte[recordEnd - recordStart];
+    ByteBuffer source = window.duplicate();
+    source.position(recordStart);
+    source.get(recordBytes);
+    for (int i = 0; i < 2 * columnCount; i++) columnBounds[i] -= recordStart;
+    return ByteBuffer.wrap(recordBytes);
+  }
+
+  /**
+   * @param start the offset in {@link #window} to start searching from, which should be just after
+   *     the opening quote
+   * @param limit the offset in {@link #window} to stop searching at
+   * @return the offset of the quote that closes the quoted column, or <code>-1</code> if it could
+   *     not be found before the limit (or if more data is needed to be sure)
+   */
+  private int findClosingQuote(int start, int limit) {
+    int i = start;
+    while (i < limit) {
+      byte b = window.get(i);
+      if (b == ESCAPE) {
+        i += 2;
+      } else if (b == QUOTE) {
+        if (i + 1 >= limit) return endOfData ? i : -1;
+        if (window.get(i + 1) == QUOTE) i += 2;
+        else return i;
+      } else {
+        i++;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Decodes a column that is quoted and/or contains escape sequences, following the same rules
+   * that commons-csv applies for {@link RifParsingUtils#CSV_FORMAT}.
+   *
+   * @param start the (inclusive) offset of the column in {@link #window}
+   * @param end the (exclusive) offset of the column in {@link #window}
+   * @return the decoded value of the specified column
+   */
+  private String decodeColumn(int start, int end) {
+    String raw = RifRecord.decode(window, start, end, charset);
+    StringBuilder value = new StringBuilder(raw.length());
+
+    boolean quoted = raw.length() > 0 && raw.charAt(0) == QUOTE;
+    int i = quoted ? 1 : 0;
+    while (i < raw.length()) {
+      char c = raw.charAt(i);
+      if (c == ESCAPE && i + 1 < raw.length()) {
+        value.append(unescape(raw.charAt(i + 1)));
+        i += 2;
+      } else if (quoted && c == QUOTE) {
+        if (i + 1 < raw.length() && raw.charAt(i + 1) == QUOTE) {
+          value.append((char) QUOTE);
+          i += 2;
+        } else if (i + 1 == raw.length()) {
+          i++;
+        } else {
+          throw new InvalidRifFileFormatException(
+              String.format(
+                  "Invalid character after quoted column, in record number '%d'.",
+                  nextRecordNumber));
+        }
+      } else {
+        value.append(c);
+        i++;
+      }
+    }
+
+    return value.toString();
+  }
+
+  /**
+   * @param escaped the character following an escape character
+   * @return the {@link CharSequence} that the specified escape sequence represents
+   */
+  private static CharSequence unescape(char escaped) {
+    switch (escaped) {
+      case 'r':
+        return "\r";
+      case 'n':
+        return "\n";
+      case 't':
+        return "\t";
+      case 'b':
+        return "\b";
+      case 'f':
+        return "\f";
+      case '\r':
+      case '\n':
+      case '\t':
+      case '\b':
+      case '\f':
+      case (char) DELIMITER:
+      case (char) ESCAPE:
+      case (char) QUOTE:
+        return String.valueOf(escaped);
+      default:
+        // commons-csv leaves unrecognized escape sequences as-is.
+        return new StringBuilder(2).append((char) ESCAPE).append(escaped);
+    }
+  }
+
+  /** Provides the successive {@link ByteBuffer} windows that a {@link RifRecordTokenizer} reads. */
+  interface WindowSource extends Closeable {
+    /**
+     * @param currentWindow the window currently being read, or <code>null</code> if this is the
+     *     first call
+     * @param retainFrom the offset in the current window of the first byte that must also be
+     *     included at the start of the next window
+     * @return the next window, which will start with all of the bytes from the current window at
+     *     <code>retainFrom</code> and after, followed by at least one more byte, or <code>null
+     *     </code> if there is no more data
+     */
+    ByteBuffer nextWindow(ByteBuffer currentWindow, int retainFrom);
+  }
+
+  /** A {@link WindowSource} that memory-maps successive regions of a local file. */
+  static final class MappedWindowSource implements WindowSource {
+    private final FileChannel channel;
+    private final long fileSize;
+    private int windowSize;
+    private long currentWindowStart;
+
+    /**
+     * Constructs a new {@link MappedWindowSource}.
+     *
+     * @param file the local file to map
+     * @param windowSize the size of each mapped region
+     */
+    MappedWindowSource(Path file, int windowSize) {
+      try {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      this.windowSize = windowSize;
+      this.currentWindowStart = 0L;
+    }
+
+    /** @see WindowSource#nextWindow(ByteBuffer, int) */
+    @Override
+    public ByteBuffer nextWindow(ByteBuffer currentWindow, int retainFrom) {
+      long start = currentWindow == null ? 0L : currentWindowStart + retainFrom;
+      long currentEnd = currentWindow == null ? 0L : currentWindowStart + currentWindow.limit();
+      if (currentWindow != null && currentEnd >= fileSize) return null;
+
+      // If a single record is bigger than the window, the window has to grow.
+      while (currentWindow != null
+          && start + windowSize <= currentEnd
+          && windowSize < Integer.MAX_VALUE / 2) windowSize *= 2;
+
+      long size = Math.min(windowSize, fileSize - start);
+      try {
+        ByteBuffer window = channel.map(MapMode.READ_ONLY, start, size);
+        currentWindowStart = start;
+        return window;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    /** @see java.io.Closeable#close() */
+    @Override
+    public void close() throws IOException {
+      /*
+       * Note: Closing the channel does not invalidate any of the mapped buffers, so RifRecords
+       * that are still being used remain valid.
+       */
+      channel.close();
+    }
+  }
+
+  /** A {@link WindowSource} that reads successive blocks from an {@link InputStream}. */
+  static final class StreamWindowSource implements WindowSource {
+    private final InputStream stream;
+    private final int windowSize;
+    private boolean endOfStream;
+
+    /**
+     * Constructs a new {@link StreamWindowSource}.
+     *
+     * @param stream the {@link InputStream} to read from
+     * @param windowSize the (minimum) size of each window
+     */
+    StreamWindowSource(InputStream stream, int windowSize) {
+      this.stream = stream;
+      this.windowSize = windowSize;
+      this.endOfStream = false;
+    }
+
+    /** @see WindowSource#nextWindow(ByteBuffer, int) */
+    @Override
+    public ByteBuffer nextWindow(ByteBuffer currentWindow, int retainFrom) {
+      if (endOfStream) return null;
+
+      int retained = currentWindow == null ? 0 : currentWindow.limit() - retainFrom;
+      byte[] bytes = new byte[Math.max(windowSize, 2 * retained)];
+      if (retained > 0)
+        System.arraycopy(
+            currentWindow.array(),
+            currentWindow.arrayOffset() + retainFrom,
+            bytes,
+            0,
+            retained);
+
+      int filled = retained;
+      try {
+        while (filled < bytes.length) {
+          int bytesRead = stream.read(bytes, filled, bytes.length - filled);
+          if (bytesRead < 0) {
+            endOfStream = true;
+            break;
+          }
+          filled += bytesRead;
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      if (filled == retained && currentWindow != null) return null;
+      return ByteBuffer.wrap(bytes, 0, filled);
+    }
+
+    /** @see java.io.Closeable#close() */
+    @Override
+    public void close() throws IOException {
+      stream.close();
+    }
+  }
+
+  /** A {@link WindowSource} for data that is already entirely in a single {@link ByteBuffer}. */
+  static final class FixedWindowSource implements WindowSource {
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructs a new {@link FixedWindowSource}.
+     *
+     * @param buffer the data to provide, from its current position to its limit
+     */
+    FixedWindowSource(ByteBuffer buffer) {
+      this.buffer = buffer.slice();
+    }
+
+    /** @see WindowSource#nextWindow(ByteBuffer, int) */
+    @Override
+    public ByteBuffer nextWindow(ByteBuffer currentWindow, int retainFrom) {
+      return currentWindow == null ? buffer : null;
+    }
+
+    /** @see java.io.Closeable#close() */
+    @Override
+    public void close() {
+      // Nothing to do here.
+    }
+  }
+}
@@ -1,10 +1,25 @@
 package gov.cms.bfd.model.rif.schema;
 
 import com.justdavis.karl.misc.exceptions.unchecked.UncheckedSqlException;
+import gov.cms.bfd.model.rif.schema.DeferredSchemaObject.ObjectType;
+import gov.cms.bfd.model.rif.schema.DeferredSchemaObject.State;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 import javax.sql.DataSource;
 import org.flywaydb.core.Flyway;
 import org.flywaydb.core.internal.dbsupport.DbSupport;
@@ -25,10 +40,27 @@ import org.slf4j.LoggerFactory;
 public final class DatabaseSchemaManager {
   private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseSchemaManager.class);
 
+  /**
+   * The tables whose indexes and foreign keys are never deferred by {@link
+   * #deferSecondarySchemaObjects(DataSource)}: the pipeline's own bookkeeping tables (and their
+   * partitions, see {@link LoadedBatchPartitions}), which are small and queried while loading, and
+   * Flyway's.
+   */
+  private static final Set<String> TABLES_NEVER_DEFERRED =
+      Collections.unmodifiableSet(
+          new HashSet<>(
+              Arrays.asList(
+                  "LoadedFiles",
+                  "LoadedBatches",
+                  "DeferredSchemaObjects",
+                  "FixupCheckpoints",
+                  "schema_version")));
+
   /**
    * Creates or updates, as appropriate, the Blue Button API backend database schema for the
    * specified database. The Flyway migration scripts are stored in <code>
-   * src/main/resources/db/migration</code>.
+   * src/main/resources/db/migration</code>, and the (few) migrations that must be written in Java
+   * are in the <code>db.migration</code> package.
    *
    * @param dataSource the JDBC {@link DataSource} for the database whose schema should be created
    *     or updated
@@ -73,6 +105,357 @@ public final class DatabaseSchemaManager {
     disableConstraintsScript.execute(dbSupport.getJdbcTemplate());
   }
 
+  /**
+   * Drops all of the secondary (i.e. non-unique) indexes and foreign keys on the CCW data tables,
+   * so that a bulk load doesn't have to maintain them row by row, recording each one's definition
+   * in the <code>"DeferredSchemaObjects"</code> table, so that {@link
+   * #restoreDeferredSchemaObject(DataSource, DeferredSchemaObject)} can re-create it afterwards.
+   * Primary keys are left alone, as loads (and their idempotency checks) rely on them.
+   *
+   * <p>The objects are all recorded and dropped in a single transaction, so a crash here leaves
+   * either all or none of them dropped, and every dropped object recorded. Objects that were
+   * already deferred (e.g. by an earlier bulk load that crashed) are left as is, even if they've
+   * since been partly restored (e.g. a foreign key that's {@link State#NOT_VALIDATED}).
+   *
+   * <p>This is only supported for PostgreSQL: for other databases (e.g. HSQL, in tests), nothing is
+   * dropped.
+   *
+   * <p><strong>WARNING:</strong> Queries against the database will be very slow until the deferred
+   * objects have been restored. This is only intended for use with initial (or very large) loads.
+   *
+   * @param dataSource the JDBC {@link DataSource} for the database whose schema should be modified
+   * @return all of the {@link DeferredSchemaObject}s that are now awaiting restoration, including
+   *     any that were deferred earlier
+   */
+  public static List<DeferredSchemaObject> deferSecondarySchemaObjects(DataSource dataSource) {
+    try (Connection connection = dataSource.getConnection()) {
+      if (!isPostgreSql(connection)) {
+        LOGGER.warn("Bulk load schema changes are only supported for PostgreSQL: skipping them.");
+        return findDeferredSchemaObjects(connection);
+      }
+
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try {
+        Instant deferred = Instant.now();
+        List<DeferredSchemaObject> objectsToDefer = new ArrayList<>();
+        objectsToDefer.addAll(queryForeignKeys(connection, deferred));
+        objectsToDefer.addAll(querySecondaryIndexes(connection, deferred));
+
+        try (PreparedStatement insert =
+                connection.prepareStatement(
+                    "insert into \"DeferredSchemaObjects\" (\"objectName\", \"objectType\","
+                        + " \"tableName\", \"definition\", \"state\", \"deferred\")"
+                        + " values (?, ?, ?, ?, ?, ?)");
+            Statement drop = connection.createStatement()) {
+          for (DeferredSchemaObject object : objectsToDefer) {
+            insert.setString(1, object.getObjectName());
+            insert.setString(2, object.getObjectType().name());
+            insert.setString(3, object.getTableName());
+            insert.setString(4, object.getDefinition());
+            insert.setString(5, object.getState().name());
+            insert.setTimestamp(6, Timestamp.from(object.getDeferred()));
+            insert.executeUpdate();
+
+            if (object.getObjectType() == ObjectType.INDEX)
+              drop.execute(String.format("drop index %s", quote(object.getObjectName())));
+            else
+              drop.execute(
+                  String.format(
+                      "alter table %s drop constraint %s",
+                      object.getTableName(), quote(object.getObjectName())));
+          }
+        }
+
+        connection.commit();
+        LOGGER.info("Deferred '{}' secondary indexes and foreign keys.", objectsToDefer.size());
+      } catch (SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+
+      return findDeferredSchemaObjects(connection);
+    } catch (SQLException e) {
+      throw new UncheckedSqlException(e);
+    }
+  }
+
+  /**
+   * @param dataSource the JDBC {@link DataSource} for the database to check
+   * @return all of the {@link DeferredSchemaObject}s that are awaiting restoration, which will only
+   *     be non-empty if a bulk load is running, or crashed
+   */
+  public static List<DeferredSchemaObject> findDeferredSchemaObjects(DataSource dataSource) {
+    try (Connection connection = dataSource.getConnection()) {
+      return findDeferredSchemaObjects(connection);
+    } catch (SQLException e) {
+      throw new UncheckedSqlException(e);
+    }
+  }
+
+  /**
+   * Runs the next step needed to restore the specified {@link DeferredSchemaObject}, in a single
+   * transaction with the update to its <code>"DeferredSchemaObjects"</code> record, so that each
+   * step is crash-safe:
+   *
+   * <ul>
+   *   <li>{@link ObjectType#INDEX}: re-creates the index, after which it's fully restored.
+   *   <li>{@link ObjectType#FOREIGN_KEY} in {@link State#DROPPED}: re-adds the constraint as <code>
+   *       NOT VALID</code>, which is quick, moving it to {@link State#NOT_VALIDATED}.
+   *   <li>{@link ObjectType#FOREIGN_KEY} in {@link State#NOT_VALIDATED}: validates the constraint
+   *       against the existing rows, after which it's fully restored. This takes only a <code>
+   *       SHARE UPDATE EXCLUSIVE</code> lock, so several constraints can be validated at once.
+   * </ul>
+   *
+   * <p>Objects that have already been re-created by other means (e.g. by hand, via <code>
+   * db/scripts/Create_all_constraints.sql</code>) are just marked as restored.
+   *
+   * @param dataSource the JDBC {@link DataSource} for the database whose schema should be modified
+   * @param object the {@link DeferredSchemaObject} to restore
+   * @return the {@link DeferredSchemaObject} in its new {@link State}, if it needs further steps,
+   *     or {@link Optional#empty()} if it's now fully restored
+   */
+  public static Optional<DeferredSchemaObject> restoreDeferredSchemaObject(
+      DataSource dataSource, DeferredSchemaObject object) {
+    try (Connection connection = dataSource.getConnection()) {
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try (Statement statement = connection.createStatement()) {
+        Optional<DeferredSchemaObject> result;
+        if (object.getObjectType() == ObjectType.INDEX) {
+          if (!indexExists(connection, object)) statement.execute(object.getDefinition());
+          result = Optional.empty();
+        } else if (object.getState() == State.DROPPED) {
+          if (!foreignKeyExists(connection, object))
+            statement.execute(
+                String.format(
+                    "alter table %s add constraint %s %s not valid",
+                    object.getTableName(), quote(object.getObjectName()), object.getDefinition()));
+          result = Optional.of(object.withState(State.NOT_VALIDATED));
+        } else {
+          statement.execute(
+              String.format(
+                  "alter table %s validate constraint %s",
+                  object.getTableName(), quote(object.getObjectName())));
+          result = Optional.empty();
+        }
+
+        if (result.isPresent()) {
+          try (PreparedStatement update =
+              connection.prepareStatement(
+                  "update \"DeferredSchemaObjects\" set \"state\" = ? where \"objectName\" = ?")) {
+            update.setString(1, result.get().getState().name());
+            update.setString(2, object.getObjectName());
+            update.executeUpdate();
+          }
+        } else {
+          try (PreparedStatement delete =
+              connection.prepareStatement(
+                  "delete from \"DeferredSchemaObjects\" where \"objectName\" = ?")) {
+            delete.setString(1, object.getObjectName());
+            delete.executeUpdate();
+          }
+        }
+
+        connection.commit();
+        return result;
+      } catch (SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+    } catch (SQLException e) {
+      throw new UncheckedSqlException(e);
+    }
+  }
+
+  /**
+   * @param connection the {@link Connection} to use
+   * @return all of the {@link DeferredSchemaObject}s that are awaiting restoration
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  private static List<DeferredSchemaObject> findDeferredSchemaObjects(Connection connection)
+      throws SQLException {
+    List<DeferredSchemaObject> objects = new ArrayList<>();
+    try (Statement statement = connection.createStatement();
+        ResultSet results =
+            statement.executeQuery(
+                "select \"objectName\", \"objectType\", \"tableName\", \"definition\","
+                    + " \"state\", \"deferred\" from \"DeferredSchemaObjects\""
+                    + " order by \"objectName\"")) {
+      while (results.next())
+        objects.add(
+            new DeferredSchemaObject(
+                results.getString(1),
+                ObjectType.valueOf(results.getString(2)),
+                results.getString(3),
+                results.getString(4),
+                State.valueOf(results.getString(5)),
+                results.getTimestamp(6).toInstant()));
+    }
+    return objects;
+  }
+
+  /**
+   * @param connection the (PostgreSQL) {@link Connection} to use
+   * @param deferred the value to use for {@link DeferredSchemaObject#getDeferred()}
+   * @return a {@link DeferredSchemaObject} for each of the foreign keys on the tables in the
+   *     current schema, other than the {@link #TABLES_NEVER_DEFERRED}
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  private static List<DeferredSchemaObject> queryForeignKeys(
+      Connection connection, Instant deferred) throws SQLException {
+    String sql =
+        "select con.conname, con.conrelid::regclass::text, pg_get_constraintdef(con.oid)"
+            + " from pg_constraint con"
+            + " join pg_class tab on tab.oid = con.conrelid"
+            + " join pg_class ref on ref.oid = con.confrelid"
+            + " join pg_namespace nsp on nsp.oid = tab.relnamespace"
+            + " where con.contype = 'f' and nsp.nspname = current_schema()"
+            + " and tab.relname not in "
+            + createTablesNeverDeferredList()
+            + " and ref.relname not in "
+            + createTablesNeverDeferredList();
+    return querySchemaObjects(connection, sql, ObjectType.FOREIGN_KEY, deferred);
+  }
+
+  /**
+   * @param connection the (PostgreSQL) {@link Connection} to use
+   * @param deferred the value to use for {@link DeferredSchemaObject#getDeferred()}
+   * @return a {@link DeferredSchemaObject} for each of the non-unique indexes on the tables in the
+   *     current schema, other than the {@link #TABLES_NEVER_DEFERRED} and their partitions
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  private static List<DeferredSchemaObject> querySecondaryIndexes(
+      Connection connection, Instant deferred) throws SQLException {
+    String sql =
+        "select idx.relname, tab.oid::regclass::text, pg_get_indexdef(ind.indexrelid)"
+            + " from pg_index ind"
+            + " join pg_class idx on idx.oid = ind.indexrelid"
+            + " join pg_class tab on tab.oid = ind.indrelid"
+            + " join pg_namespace nsp on nsp.oid = tab.relnamespace"
+            + " where not ind.indisprimary and not ind.indisunique and not ind.indisexclusion"
+            + " and nsp.nspname = current_schema()"
+            + " and tab.relname not in "
+            + createTablesNeverDeferredList()
+            + " and not exists (select 1 from pg_inherits inh"
+            + " join pg_class par on par.oid = inh.inhparent"
+            + " where inh.inhrelid = tab.oid and par.relname in "
+            + createTablesNeverDeferredList()
+            + ")";
+    return querySchemaObjects(connection, sql, ObjectType.INDEX, deferred);
+  }
+
+  /**
+   * @param connection the {@link Connection} to use
+   * @param sql the catalog query to run, which must select the object's name, its table's name,
+   *     and its definition
+   * @param objectType the {@link ObjectType} of the objects being queried for
+   * @param deferred the value to use for {@link DeferredSchemaObject#getDeferred()}
+   * @return a {@link DeferredSchemaObject} for each row returned by the query, other than any that
+   *     are already recorded in <code>"DeferredSchemaObjects"</code>
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  private static List<DeferredSchemaObject> querySchemaObjects(
+      Connection connection, String sql, ObjectType objectType, Instant deferred)
+      throws SQLException {
+    /*
+     * Objects that are still recorded may exist again, e.g. a foreign key that was re-added as NOT
+     * VALID before a crash, and mustn't be recorded twice.
+     */
+    String newObjectsSql =
+        "select obj.* from ("
+            + sql
+            + ") obj (objname, tabname, objdef) where not exists"
+            + " (select 1 from \"DeferredSchemaObjects\" d where d.\"objectName\" = obj.objname)";
+
+    List<DeferredSchemaObject> objects = new ArrayList<>();
+    try (Statement statement = connection.createStatement();
+        ResultSet results = statement.executeQuery(newObjectsSql)) {
+      while (results.next())
+        objects.add(
+            new DeferredSchemaObject(
+                results.getString(1),
+                objectType,
+                results.getString(2),
+                results.getString(3),
+                State.DROPPED,
+                deferred));
+    }
+    return objects;
+  }
+
+  /**
+   * @param connection the (PostgreSQL) {@link Connection} to use
+   * @param object the {@link ObjectType#INDEX} {@link DeferredSchemaObject} to check for
+   * @return <code>true</code> if the index already exists, <code>false</code> if it does not
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  private static boolean indexExists(Connection connection, DeferredSchemaObject object)
+      throws SQLException {
+    try (PreparedStatement query =
+        connection.prepareStatement("select to_regclass(?) is not null")) {
+      query.setString(1, quote(object.getObjectName()));
+      try (ResultSet results = query.executeQuery()) {
+        results.next();
+        return results.getBoolean(1);
+      }
+    }
+  }
+
+  /**
+   * @param connection the (PostgreSQL) {@link Connection} to use
+   * @param object the {@link ObjectType#FOREIGN_KEY} {@link DeferredSchemaObject} to check for
+   * @return <code>true</code> if the constraint already exists (whether or not it's been
+   *     validated), <code>false</code> if it does not
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  private static boolean foreignKeyExists(Connection connection, DeferredSchemaObject object)
+      throws SQLException {
+    try (PreparedStatement query =
+        connection.prepareStatement(
+            "select count(*) from pg_constraint where conname = ? and conrelid = ?::regclass")) {
+      query.setString(1, object.getObjectName());
+      query.setString(2, object.getTableName());
+      try (ResultSet results = query.executeQuery()) {
+        results.next();
+        return results.getLong(1) > 0;
+      }
+    }
+  }
+
+  /**
+   * @param connection the {@link Connection} to check
+   * @return <code>true</code> if the {@link Connection} is to a PostgreSQL database, <code>false
+   *     </code> if it is not
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  private static boolean isPostgreSql(Connection connection) throws SQLException {
+    return connection.getMetaData().getDatabaseProductName().equals("PostgreSQL");
+  }
+
+  /**
+   * @param identifier the SQL identifier (e.g. table or index name) to quote
+   * @return the specified identifier, wrapped in double quotes (and with any embedded double quotes
+   *     escaped), so that its case is preserved
+   */
+  private static String quote(String identifier) {
+    return "\"" + identifier.replace("\"", "\"\"") + "\"";
+  }
+
+  /**
+   * @return the {@link #TABLES_NEVER_DEFERRED} as a parenthesized SQL list of string literals, e.g.
+   *     <code>('a', 'b')</code>
+   */
+  private static String createTablesNeverDeferredList() {
+    return TABLES_NEVER_DEFERRED.stream()
+        .map(t -> "'" + t + "'")
+        .collect(Collectors.joining(", ", "(", ")"));
+  }
+
   /**
    * @param dataSource the {@link DataSource} that the replacements will be used for
    * @return the {@link Map} of key-value replacements to use for {@link
@@ -83,6 +466,7 @@ public final class DatabaseSchemaManager {
     try (Connection connection = dataSource.getConnection()) {
       if (connection.getMetaData().getDatabaseProductName().equals("HSQL Database Engine")) {
         placeholders.put("type.int4", "integer");
+        placeholders.put("type.bytea", "varbinary(1048576)");
         placeholders.put("logic.tablespaces-escape", "--");
         placeholders.put("logic.drop-tablespaces-escape", "--");
         placeholders.put("logic.alter-column-type", "");
@@ -91,6 +475,7 @@ public final class DatabaseSchemaManager {
         placeholders.put("logic.sequence-increment", "increment by");
       } else {
         placeholders.put("type.int4", "int4");
+        placeholders.put("type.bytea", "bytea");
         placeholders.put("logic.tablespaces-escape", "--");
         placeholders.put("logic.drop-tablespaces-escape", "");
         placeholders.put("logic.alter-column-type", "type");
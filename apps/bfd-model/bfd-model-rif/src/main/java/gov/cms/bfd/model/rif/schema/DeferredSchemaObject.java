@@ -0,0 +1,135 @@
+package gov.cms.bfd.model.rif.schema;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Models a secondary index or foreign key that has been dropped for a bulk load, as recorded in the
+ * <code>"DeferredSchemaObjects"</code> table by {@link
+ * DatabaseSchemaManager#deferSecondarySchemaObjects(javax.sql.DataSource)}, until {@link
+ * DatabaseSchemaManager} re-creates it.
+ *
+ * <p>Instances are immutable.
+ */
+public final class DeferredSchemaObject {
+  private final String objectName;
+  private final ObjectType objectType;
+  private final String tableName;
+  private final String definition;
+  private final State state;
+  private final Instant deferred;
+
+  /**
+   * Constructs a new {@link DeferredSchemaObject}.
+   *
+   * @param objectName the value to use for {@link #getObjectName()}
+   * @param objectType the value to use for {@link #getObjectType()}
+   * @param tableName the value to use for {@link #getTableName()}
+   * @param definition the value to use for {@link #getDefinition()}
+   * @param state the value to use for {@link #getState()}
+   * @param deferred the value to use for {@link #getDeferred()}
+   */
+  public DeferredSchemaObject(
+      String objectName,
+      ObjectType objectType,
+      String tableName,
+      String definition,
+      State state,
+      Instant deferred) {
+    this.objectName = Objects.requireNonNull(objectName);
+    this.objectType = Objects.requireNonNull(objectType);
+    this.tableName = Objects.requireNonNull(tableName);
+    this.definition = Objects.requireNonNull(definition);
+    this.state = Objects.requireNonNull(state);
+    this.deferred = Objects.requireNonNull(deferred);
+  }
+
+  /** @return the (unquoted) name of the index or constraint */
+  public String getObjectName() {
+    return objectName;
+  }
+
+  /** @return the {@link ObjectType} of the index or constraint */
+  public ObjectType getObjectType() {
+    return objectType;
+  }
+
+  /**
+   * @return the (already quoted, as needed) name of the table that the index or constraint is on,
+   *     suitable for use directly in SQL
+   */
+  public String getTableName() {
+    return tableName;
+  }
+
+  /**
+   * @return the SQL needed to re-create the object: a complete <code>CREATE INDEX</code> statement
+   *     for {@link ObjectType#INDEX}es, or the constraint clause (e.g. <code>FOREIGN KEY (...)
+   *     REFERENCES ...</code>) for {@link ObjectType#FOREIGN_KEY}s
+   */
+  public String getDefinition() {
+    return definition;
+  }
+
+  /** @return how far along the object is in being restored */
+  public State getState() {
+    return state;
+  }
+
+  /** @return when the object was dropped */
+  public Instant getDeferred() {
+    return deferred;
+  }
+
+  /**
+   * @param newState the value to use for {@link #getState()}
+   * @return a copy of this {@link DeferredSchemaObject}, in the specified {@link State}
+   */
+  DeferredSchemaObject withState(State newState) {
+    return new DeferredSchemaObject(
+        objectName, objectType, tableName, definition, newState, deferred);
+  }
+
+  /** @see java.lang.Object#toString() */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("DeferredSchemaObject [objectName=");
+    builder.append(objectName);
+    builder.append(", objectType=");
+    builder.append(objectType);
+    builder.append(", tableName=");
+    builder.append(tableName);
+    builder.append(", state=");
+    builder.append(state);
+    builder.append(", deferred=");
+    builder.append(deferred);
+    builder.append("]");
+    return builder.toString();
+  }
+
+  /** Enumerates the kinds of schema objects that may be deferred. */
+  public static enum ObjectType {
+    /** A non-unique secondary index, which is dropped and then re-created. */
+    INDEX,
+
+    /**
+     * A foreign key constraint, which is dropped, then re-added as <code>NOT VALID</code>, and then
+     * validated, so that the (slow) validation of existing rows doesn't block writes to the
+     * referenced table.
+     */
+    FOREIGN_KEY;
+  }
+
+  /** Enumerates the steps that a {@link DeferredSchemaObject} goes through as it's restored. */
+  public static enum State {
+    /** The object has been dropped, and not yet re-created. */
+    DROPPED,
+
+    /**
+     * The (foreign key) object has been re-created as <code>NOT VALID</code>, and so is enforced
+     * for new rows, but has not yet been checked against the existing ones.
+     */
+    NOT_VALIDATED;
+  }
+}
@@ -0,0 +1,233 @@
+package gov.cms.bfd.model.rif.schema;
+
+import com.justdavis.karl.misc.exceptions.unchecked.UncheckedSqlException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import javax.sql.DataSource;
+
+/**
+ * Manages the daily partitions of the <code>"LoadedBatches"</code> table, so that old batches can
+ * be expired by dropping whole partitions, rather than by (slow, vacuum-heavy) row deletes.
+ *
+ * <p>As PostgreSQL 9.6 doesn't support declarative partitioning, this uses table inheritance: each
+ * partition is a child table of <code>"LoadedBatches"</code> named <code>
+ * "LoadedBatches_yyyyMMdd"</code>, holding the batches <code>"created"</code> on that (UTC) day,
+ * with its own primary key and indexes. Queries against <code>"LoadedBatches"</code> see the rows
+ * in every partition. Rows inserted into <code>"LoadedBatches"</code> itself are routed to their
+ * partition by a trigger (see {@link #installRouting(Connection)}), or left in the parent table if
+ * that partition doesn't exist (yet), so that inserts never fail for want of one.
+ *
+ * <p>This is only supported for PostgreSQL: for other databases (e.g. HSQL, in tests), <code>
+ * "LoadedBatches"</code> remains a plain table, and must be trimmed via row deletes.
+ */
+public final class LoadedBatchPartitions {
+  /** The prefix of each partition's table name, which is followed by its day. */
+  public static final String PARTITION_PREFIX = "LoadedBatches_";
+
+  private static final DateTimeFormatter PARTITION_SUFFIX_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+  /** The PostgreSQL error code for a <code>lock_timeout</code> expiring. */
+  private static final String SQL_STATE_LOCK_NOT_AVAILABLE = "55P03";
+
+  /** Prevents instantiation of this utility class. */
+  private LoadedBatchPartitions() {}
+
+  /**
+   * @param day the (UTC) day of the partition
+   * @return the (unquoted) name of the partition table for the specified day
+   */
+  public static String getPartitionName(LocalDate day) {
+    return PARTITION_PREFIX + PARTITION_SUFFIX_FORMAT.format(day);
+  }
+
+  /**
+   * @param tableName the (unquoted) name of the table to check
+   * @return the (UTC) day of the partition with the specified name, or {@link Optional#empty()} if
+   *     the table isn't a partition
+   */
+  static Optional<LocalDate> parsePartitionDay(String tableName) {
+    if (!tableName.startsWith(PARTITION_PREFIX)) return Optional.empty();
+
+    try {
+      return Optional.of(
+          LocalDate.parse(tableName.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX_FORMAT));
+    } catch (DateTimeParseException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * @param dataSource the JDBC {@link DataSource} for the database to check
+   * @return the (UTC) days of all of the partitions that currently exist, in order
+   */
+  public static SortedSet<LocalDate> findPartitions(DataSource dataSource) {
+    SortedSet<LocalDate> days = new TreeSet<>();
+    try (Connection connection = dataSource.getConnection();
+        Statement statement = connection.createStatement();
+        ResultSet results =
+            statement.executeQuery(
+                "select child.relname from pg_inherits inh"
+                    + " join pg_class child on child.oid = inh.inhrelid"
+                    + " join pg_class parent on parent.oid = inh.inhparent"
+                    + " join pg_namespace nsp on nsp.oid = parent.relnamespace"
+                    + " where parent.relname = 'LoadedBatches'"
+                    + " and nsp.nspname = current_schema()")) {
+      while (results.next()) parsePartitionDay(results.getString(1)).ifPresent(days::add);
+    } catch (SQLException e) {
+      throw new UncheckedSqlException(e);
+    }
+    return days;
+  }
+
+  /**
+   * Creates the partition for the specified day, along with its primary key and indexes, if it
+   * doesn't already exist. This only takes a <code>SHARE UPDATE EXCLUSIVE</code> lock on <code>
+   * "LoadedBatches"</code>, and so doesn't block concurrent reads or inserts.
+   *
+   * @param dataSource the JDBC {@link DataSource} for the database whose schema should be modified
+   * @param day the (UTC) day of the partition to create
+   * @return <code>true</code> if the partition was created, or <code>false</code> if it already
+   *     existed
+   */
+  public static boolean createPartition(DataSource dataSource, LocalDate day) {
+    try (Connection connection = dataSource.getConnection()) {
+      if (partitionExists(connection, day)) return false;
+
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try (Statement statement = connection.createStatement()) {
+        for (String sql : createPartitionSql(day)) statement.execute(sql);
+        connection.commit();
+        return true;
+      } catch (SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+    } catch (SQLException e) {
+      throw new UncheckedSqlException(e);
+    }
+  }
+
+  /**
+   * Drops the partition for the specified day, and all of the batches in it, which only takes a
+   * moment, regardless of its size. If the partition is in use (e.g. by a long query against
+   * <code>"LoadedBatches"</code>), this gives up after the specified timeout, rather than making
+   * everything else wait behind it.
+   *
+   * @param dataSource the JDBC {@link DataSource} for the database whose schema should be modified
+   * @param day the (UTC) day of the partition to drop
+   * @param lockTimeout how long to wait for the partition's lock
+   * @return <code>true</code> if the partition was dropped (or didn't exist), or <code>false</code>
+   *     if its lock couldn't be acquired in time, in which case it should be retried later
+   */
+  public static boolean dropPartition(DataSource dataSource, LocalDate day, Duration lockTimeout) {
+    try (Connection connection = dataSource.getConnection()) {
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try (Statement statement = connection.createStatement()) {
+        statement.execute(String.format("set local lock_timeout = %d", lockTimeout.toMillis()));
+        statement.execute(String.format("drop table if exists \"%s\"", getPartitionName(day)));
+        connection.commit();
+        return true;
+      } catch (SQLException e) {
+        connection.rollback();
+        if (SQL_STATE_LOCK_NOT_AVAILABLE.equals(e.getSQLState())) return false;
+        throw e;
+      } catch (RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+    } catch (SQLException e) {
+      throw new UncheckedSqlException(e);
+    }
+  }
+
+  /**
+   * Installs (or replaces) the trigger that routes each row inserted into <code>"LoadedBatches"
+   * </code> to its partition. Rows whose partition doesn't exist are left in <code>
+   * "LoadedBatches"</code> itself.
+   *
+   * <p>Note that the trigger suppresses the insert into <code>"LoadedBatches"</code> itself, so
+   * the <code>INSERT</code>s will report that no rows were inserted (see {@link
+   * gov.cms.bfd.model.rif.LoadedBatch}).
+   *
+   * @param connection the (PostgreSQL) {@link Connection} to use
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  public static void installRouting(Connection connection) throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute(
+          "create or replace function route_loaded_batches() returns trigger as $$\n"
+              + "begin\n"
+              + "  execute format('insert into %I select ($1).*', '"
+              + PARTITION_PREFIX
+              + "' || to_char(new.\"created\" at time zone 'UTC', 'YYYYMMDD')) using new;\n"
+              + "  return null;\n"
+              + "exception when undefined_table then\n"
+              + "  return new;\n"
+              + "end;\n"
+              + "$$ language plpgsql");
+      statement.execute("drop trigger if exists route_loaded_batches on \"LoadedBatches\"");
+      statement.execute(
+          "create trigger route_loaded_batches before insert on \"LoadedBatches\""
+              + " for each row execute procedure route_loaded_batches()");
+    }
+  }
+
+  /**
+   * @param day the (UTC) day of the partition to create
+   * @return the SQL statements needed to create the partition for the specified day
+   */
+  static String[] createPartitionSql(LocalDate day) {
+    String name = getPartitionName(day);
+    return new String[] {
+      String.format(
+          "create table if not exists \"%s\" ("
+              + "check (\"created\" >= '%s' and \"created\" < '%s'),"
+              + " constraint \"%s_pkey\" primary key (\"loadedBatchId\"))"
+              + " inherits (\"LoadedBatches\")",
+          name,
+          day.atStartOfDay(ZoneOffset.UTC).toOffsetDateTime(),
+          day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toOffsetDateTime(),
+          name),
+      String.format(
+          "create index if not exists \"%s_loadedFileId_idx\" on \"%s\" (\"loadedFileId\")",
+          name, name),
+      String.format(
+          "create index if not exists \"%s_created_idx\" on \"%s\" (\"created\")", name, name)
+    };
+  }
+
+  /**
+   * @param connection the (PostgreSQL) {@link Connection} to use
+   * @param day the (UTC) day of the partition to check for
+   * @return <code>true</code> if the partition already exists, <code>false</code> if it does not
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  private static boolean partitionExists(Connection connection, LocalDate day)
+      throws SQLException {
+    try (PreparedStatement query =
+        connection.prepareStatement("select to_regclass(?) is not null")) {
+      query.setString(1, "\"" + getPartitionName(day) + "\"");
+      try (ResultSet results = query.executeQuery()) {
+        results.next();
+        return results.getBoolean(1);
+      }
+    }
+  }
+}
@@ -0,0 +1,19 @@
+/*
+ * Tracks the secondary indexes and foreign keys that have been dropped for a bulk load (see
+ * DatabaseSchemaManager.deferSecondarySchemaObjects(...)), along with the definitions needed to
+ * re-create them afterwards. Objects are recorded here in the same transaction that drops them, and
+ * only removed once they've been re-created (and validated), so that a crashed bulk load always
+ * leaves enough behind for the schema to be restored.
+ */
+
+create table "DeferredSchemaObjects" (
+  "objectName" varchar(128) not null,
+  "objectType" varchar(16) not null,
+  "tableName" varchar(128) not null,
+  "definition" varchar(4000) not null,
+  "state" varchar(16) not null,
+  "deferred" timestamp with time zone not null,
+  constraint "DeferredSchemaObjects_pkey" primary key ("objectName")
+)
+${logic.tablespaces-escape} tablespace "deferredschemaobjects_ts"
+;
@@ -0,0 +1,13 @@
+/*
+ * Adds a compact binary column to "LoadedBatches", to replace the comma-separated "beneficiaries"
+ * one, holding the sorted beneficiary IDs as packed varint deltas (see BeneficiaryIdsCodec). This
+ * migration just adds the new column, and V28 backfills it.
+ *
+ * The old column is left in place (and still written to by the pipeline) for now, as servers from
+ * before this change still read it. Only once they've all been upgraded can a later migration make
+ * "beneficiaryIds" NOT NULL and drop "beneficiaries".
+ *
+ * As with V23, the new column has no DEFAULT, and so adding it is merely a metadata change.
+ */
+
+alter table "LoadedBatches" add column "beneficiaryIds" ${type.bytea};
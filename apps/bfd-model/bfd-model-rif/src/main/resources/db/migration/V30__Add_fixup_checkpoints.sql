@@ -0,0 +1,21 @@
+/*
+ * Records the progress of the pipeline's mbiHash fixups (see RifLoaderIdleTasks), which walk each
+ * table's primary key in a number of contiguous ranges. Each row is one of those ranges, bounded by
+ * "rangeStart" (exclusive) and "rangeEnd" (inclusive), either of which is null for an open end. A
+ * range's "lastKey" is updated in the same transaction as each batch of rows it fixes, so that a
+ * restarted pipeline picks up where it left off, rather than re-scanning the rows already fixed.
+ */
+
+create table "FixupCheckpoints" (
+  "tableName" varchar(128) not null,
+  "rangeIndex" integer not null,
+  "rangeStart" varchar(64),
+  "rangeEnd" varchar(64),
+  "lastKey" varchar(64),
+  "rowsFixed" bigint not null,
+  "done" boolean not null,
+  "updated" timestamp with time zone not null,
+  constraint "FixupCheckpoints_pkey" primary key ("tableName", "rangeIndex")
+)
+${logic.tablespaces-escape} tablespace "fixupcheckpoints_ts"
+;
@@ -0,0 +1,75 @@
+package gov.cms.bfd.model.rif;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Unit tests for {@link BeneficiaryIdsCodec}. */
+public final class BeneficiaryIdsCodecTest {
+  /**
+   * Verifies that {@link BeneficiaryIdsCodec} packs numeric IDs as sorted, de-duplicated varint
+   * deltas, and that they round trip.
+   */
+  @Test
+  public void numericIds() {
+    List<String> ids = Arrays.asList("567834", "567836", "567835", "567834", "-201");
+    byte[] encoded = BeneficiaryIdsCodec.encode(ids);
+
+    Assert.assertEquals(BeneficiaryIdsCodec.FORMAT_NUMERIC, encoded[0]);
+    // 1 format byte, 1 count byte, 2 bytes for the zigzagged -201, 3 bytes for the first delta, and
+    // then 1 byte for each of the last two deltas.
+    Assert.assertEquals(9, encoded.length);
+    Assert.assertEquals(4, BeneficiaryIdsCodec.count(encoded));
+    Assert.assertEquals(
+        Arrays.asList("-201", "567834", "567835", "567836"), BeneficiaryIdsCodec.decode(encoded));
+
+    // The (unsigned) deltas must survive the full range of longs.
+    List<String> extremes =
+        Arrays.asList(Long.toString(Long.MIN_VALUE), "0", Long.toString(Long.MAX_VALUE));
+    Assert.assertEquals(extremes, BeneficiaryIdsCodec.decode(BeneficiaryIdsCodec.encode(extremes)));
+  }
+
+  /**
+   * Verifies that {@link BeneficiaryIdsCodec} falls back to front-coding IDs that aren't canonical
+   * <code>long</code>s, and that they round trip.
+   */
+  @Test
+  public void nonNumericIds() {
+    List<String> ids =
+        Arrays.asList("007", "7", "abc", "abd", "ab", "\uD83D\uDE00x", "\uD83D\uDE01");
+    byte[] encoded = BeneficiaryIdsCodec.encode(ids);
+
+    Assert.assertEquals(BeneficiaryIdsCodec.FORMAT_STRINGS, encoded[0]);
+    Assert.assertEquals(ids.size(), BeneficiaryIdsCodec.count(encoded));
+    List<String> expected = new ArrayList<>(ids);
+    Collections.sort(expected);
+    Assert.assertEquals(expected, BeneficiaryIdsCodec.decode(encoded));
+  }
+
+  /** Verifies that {@link BeneficiaryIdsCodec} handles empty and <code>null</code> encodings. */
+  @Test
+  public void emptyIds() {
+    byte[] encoded = BeneficiaryIdsCodec.encode(Collections.emptyList());
+    Assert.assertEquals(0, encoded.length);
+    Assert.assertEquals(0, BeneficiaryIdsCodec.count(encoded));
+    Assert.assertEquals(Collections.emptyList(), BeneficiaryIdsCodec.decode(encoded));
+    Assert.assertEquals(Collections.emptyList(), BeneficiaryIdsCodec.decode(null));
+  }
+
+  /**
+   * Verifies that {@link BeneficiaryIdsCodec} is much more compact than the comma-separated IDs
+   * that {@link LoadedBatch} used to store.
+   */
+  @Test
+  public void isCompact() {
+    List<String> ids = new ArrayList<>();
+    for (long id = 100000000000L; ids.size() < 1000; id += 7) ids.add(Long.toString(id));
+    byte[] encoded = BeneficiaryIdsCodec.encode(ids);
+
+    Assert.assertTrue(encoded.length * 5 < String.join(",", ids).length());
+    Assert.assertEquals(ids, BeneficiaryIdsCodec.decode(encoded));
+  }
+}
@@ -0,0 +1,87 @@
+package gov.cms.bfd.model.rif;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Unit tests for {@link PostgreSqlBinaryCopyBuffer}. */
+public final class PostgreSqlBinaryCopyBufferTest {
+  /**
+   * Verifies that {@link PostgreSqlBinaryCopyBuffer#writeNumeric(BigDecimal)} and {@link
+   * PostgreSqlBinaryCopyBuffer#writeNumeric(int)} produce PostgreSQL's base-10000 <code>numeric
+   * </code> encoding.
+   */
+  @Test
+  public void writeNumeric() {
+    assertNumeric(new BigDecimal("123.45"), 2, 0, 0x0000, 2, 123, 4500);
+    assertNumeric(new BigDecimal("-0.5"), 1, -1, 0x4000, 1, 5000);
+    assertNumeric(new BigDecimal("0.00"), 0, 0, 0x0000, 2);
+    assertNumeric(new BigDecimal("1E+4"), 1, 1, 0x0000, 0, 1);
+    assertNumeric(
+        new BigDecimal("12345678901234567.8"), 6, 4, 0x0000, 1, 1, 2345, 6789, 123, 4567, 8000);
+
+    PostgreSqlBinaryCopyBuffer buffer = new PostgreSqlBinaryCopyBuffer(1);
+    buffer.writeNumeric(-10000);
+    ByteBuffer expected = ByteBuffer.allocate(14);
+    expected.putInt(10).putShort((short) 1).putShort((short) 1).putShort((short) 0x4000);
+    expected.putShort((short) 0).putShort((short) 1);
+    assertContents(buffer, expected);
+  }
+
+  /**
+   * Verifies that {@link PostgreSqlBinaryCopyBuffer} encodes text, dates, timestamps, and <code>
+   * NULL</code>s as expected, growing as needed.
+   */
+  @Test
+  public void writeOtherTypes() {
+    PostgreSqlBinaryCopyBuffer buffer = new PostgreSqlBinaryCopyBuffer(1);
+    buffer.startRow(5);
+    buffer.writeText("ab");
+    buffer.writeText("\u00e9");
+    buffer.writeDate(LocalDate.of(2000, 1, 2));
+    buffer.writeTimestamp(Instant.parse("2000-01-01T00:00:01Z"));
+    buffer.writeNull();
+
+    Assert.assertEquals(1, buffer.getRowCount());
+    ByteBuffer expected = ByteBuffer.allocate(40);
+    expected.putShort((short) 5);
+    expected.putInt(2).put((byte) 'a').put((byte) 'b');
+    expected.putInt(2).put((byte) 0xC3).put((byte) 0xA9);
+    expected.putInt(4).putInt(1);
+    expected.putInt(8).putLong(1_000_000L);
+    expected.putInt(-1);
+    assertContents(buffer, expected);
+
+    buffer.clear();
+    Assert.assertEquals(0, buffer.getRowCount());
+    Assert.assertEquals(0, buffer.getContents().remaining());
+  }
+
+  /**
+   * @param value the value to encode
+   * @param expectedFields the expected <code>ndigits</code>, <code>weight</code>, <code>sign</code>
+   *     , and <code>dscale</code> header fields, followed by the expected base-10000 digits
+   */
+  private static void assertNumeric(BigDecimal value, int... expectedFields) {
+    PostgreSqlBinaryCopyBuffer buffer = new PostgreSqlBinaryCopyBuffer(4);
+    buffer.writeNumeric(value);
+
+    ByteBuffer contents = buffer.getContents();
+    Assert.assertEquals(value.toString(), 2 * expectedFields.length, contents.getInt());
+    for (int expectedField : expectedFields)
+      Assert.assertEquals(value.toString(), (short) expectedField, contents.getShort());
+    Assert.assertFalse(contents.hasRemaining());
+  }
+
+  /**
+   * @param buffer the {@link PostgreSqlBinaryCopyBuffer} to check
+   * @param expected a {@link ByteBuffer} that has been filled with the expected contents
+   */
+  private static void assertContents(PostgreSqlBinaryCopyBuffer buffer, ByteBuffer expected) {
+    expected.flip();
+    Assert.assertEquals(expected, buffer.getContents());
+  }
+}
@@ -0,0 +1,154 @@
+package gov.cms.bfd.model.rif.parse;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Unit tests for {@link RifParsingUtils}. */
+public final class RifParsingUtilsTest {
+  /** Verifies that {@link RifParsingUtils#resolveColumnIndexes(List, Enum[])} works correctly. */
+  @Test
+  public void resolveColumnIndexes() {
+    int[] columnIndexes =
+        RifParsingUtils.resolveColumnIndexes(
+            Arrays.asList("C", "EXTRA", "A", "B"), MockColumn.values());
+    Assert.assertArrayEquals(new int[] {2, 3, 0}, columnIndexes);
+  }
+
+  /**
+   * Verifies that {@link RifParsingUtils#resolveColumnIndexes(List, Enum[])} rejects headers that
+   * are missing a column.
+   */
+  @Test(expected = InvalidRifFileFormatException.class)
+  public void resolveColumnIndexesWithMissingColumn() {
+    RifParsingUtils.resolveColumnIndexes(Arrays.asList("A", "C"), MockColumn.values());
+  }
+
+  /**
+   * Verifies that the {@link RifRecord}-based parsing methods produce the same values as their
+   * {@link String}-based equivalents.
+   */
+  @Test
+  public void parseRifRecordValues() {
+    RifRecord record = tokenize("42|X|\u00e9|\\||12.50|01-MAR-2019|");
+    Assert.assertEquals(42, RifParsingUtils.parseInteger(record, 0));
+    Assert.assertEquals('X', RifParsingUtils.parseCharacter(record, 1));
+    Assert.assertEquals('\u00e9', RifParsingUtils.parseCharacter(record, 2));
+    Assert.assertEquals('|', RifParsingUtils.parseCharacter(record, 3));
+    Assert.assertEquals(
+        RifParsingUtils.parseDecimal("12.50"), RifParsingUtils.parseDecimal(record, 4));
+    Assert.assertEquals(
+        RifParsingUtils.parseDate("01-MAR-2019"), RifParsingUtils.parseDate(record, 5));
+    Assert.assertEquals(RifParsingUtils.parseDecimal(""), RifParsingUtils.parseDecimal(record, 6));
+  }
+
+  /**
+   * Verifies that {@link RifParsingUtils#parseCharacter(RifRecord, int)} rejects multi-character
+   * values.
+   */
+  @Test(expected = InvalidRifValueException.class)
+  public void parseRifRecordCharacterTooLong() {
+    RifParsingUtils.parseCharacter(tokenize("XY"), 0);
+  }
+
+  /** Verifies that {@link RifParsingUtils#parseDate(String)} handles both RIF date formats. */
+  @Test
+  public void parseDate() {
+    Assert.assertEquals(LocalDate.of(2019, 3, 1), RifParsingUtils.parseDate("01-MAR-2019"));
+    Assert.assertEquals(LocalDate.of(2019, 3, 1), RifParsingUtils.parseDate("01-mar-2019"));
+    Assert.assertEquals(LocalDate.of(2019, 3, 1), RifParsingUtils.parseDate("20190301"));
+    Assert.assertEquals(LocalDate.of(2020, 2, 29), RifParsingUtils.parseDate("29-FEB-2020"));
+
+    // Out-of-range days have always been resolved to the end of the month, so verify that, too.
+    Assert.assertEquals(LocalDate.of(2019, 2, 28), RifParsingUtils.parseDate("30-FEB-2019"));
+  }
+
+  /** Verifies that {@link RifParsingUtils#parseDate(String)} rejects invalid values. */
+  @Test
+  public void parseDateInvalid() {
+    for (String dateText :
+        Arrays.asList("01-XYZ-2019", "20191301", "1-MAR-2019", "01/MAR/2019", "2019030")) {
+      try {
+        RifParsingUtils.parseDate(dateText);
+        Assert.fail("Expected an exception for: " + dateText);
+      } catch (InvalidRifValueException e) {
+        // Expected.
+      }
+    }
+  }
+
+  /** Verifies that {@link RifParsingUtils#parseTimestamp(String)} works correctly. */
+  @Test
+  public void parseTimestamp() {
+    Assert.assertEquals(
+        Instant.parse("2019-03-01T12:34:56Z"),
+        RifParsingUtils.parseTimestamp("01-MAR-2019 12:34:56"));
+    Assert.assertEquals(
+        Instant.parse("2019-03-02T00:00:00Z"),
+        RifParsingUtils.parseTimestamp("01-MAR-2019 24:00:00"));
+  }
+
+  /**
+   * Verifies that {@link RifParsingUtils#parseDecimal(String)} produces the same values (including
+   * scale) as {@link BigDecimal#BigDecimal(String)}.
+   */
+  @Test
+  public void parseDecimal() {
+    for (String decimalText :
+        Arrays.asList("0", "-0.00", "12.50", "+1.5", ".5", "5.", "-999999999999999999", "1E+3"))
+      Assert.assertEquals(new BigDecimal(decimalText), RifParsingUtils.parseDecimal(decimalText));
+    Assert.assertEquals(
+        new BigDecimal("12345678901234567890.12"),
+        RifParsingUtils.parseDecimal("12345678901234567890.12"));
+    Assert.assertEquals(BigDecimal.ZERO, RifParsingUtils.parseDecimal(""));
+  }
+
+  /** Verifies that {@link RifParsingUtils#parseDecimal(String)} rejects invalid values. */
+  @Test(expected = InvalidRifValueException.class)
+  public void parseDecimalInvalid() {
+    RifParsingUtils.parseDecimal("1.2.3");
+  }
+
+  /** Verifies that {@link RifParsingUtils#parseInteger(String)} works correctly. */
+  @Test
+  public void parseInteger() {
+    Assert.assertEquals(Integer.valueOf(42), RifParsingUtils.parseInteger("42"));
+    Assert.assertEquals(Integer.valueOf(-42), RifParsingUtils.parseInteger("-42"));
+    Assert.assertEquals(Integer.valueOf(42), RifParsingUtils.parseInteger("+42"));
+    Assert.assertEquals(
+        Integer.valueOf(Integer.MIN_VALUE), RifParsingUtils.parseInteger("-2147483648"));
+  }
+
+  /** Verifies that {@link RifParsingUtils#parseInteger(String)} rejects invalid values. */
+  @Test(expected = InvalidRifValueException.class)
+  public void parseIntegerInvalid() {
+    RifParsingUtils.parseInteger("2147483648");
+  }
+
+  /**
+   * @param line the (headerless) RIF line to tokenize
+   * @return the {@link RifRecord} for the specified line
+   */
+  private static RifRecord tokenize(String line) {
+    RifRecordTokenizer tokenizer =
+        new RifRecordTokenizer(
+            ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)),
+            StandardCharsets.UTF_8,
+            Collections.emptyList());
+    return tokenizer.next();
+  }
+
+  /** A mock RIF column {@link Enum}, for use in these tests. */
+  private static enum MockColumn {
+    A,
+    B,
+    C
+  }
+}
@@ -0,0 +1,168 @@
+package gov.cms.bfd.model.rif.parse;
+
+import gov.cms.bfd.model.rif.parse.RifRecordTokenizer.StreamWindowSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Unit tests for {@link RifRecordTokenizer}. */
+public final class RifRecordTokenizerTest {
+  /**
+   * Verifies that {@link RifRecordTokenizer} produces the same values as {@link
+   * RifParsingUtils#CSV_FORMAT} for simple RIF data.
+   */
+  @Test
+  public void simpleRecords() {
+    assertMatchesCsvFormat("A|B|C\n1|2|3\n4|5|6\n");
+    assertMatchesCsvFormat("A|B|C\n1||3\n|5|\n");
+  }
+
+  /**
+   * Verifies that {@link RifRecordTokenizer} handles the various record separators, blank lines,
+   * and missing trailing newlines the same way that {@link RifParsingUtils#CSV_FORMAT} does.
+   */
+  @Test
+  public void recordSeparators() {
+    assertMatchesCsvFormat("A|B\r\n1|2\r\n3|4\r\n");
+    assertMatchesCsvFormat("A|B\n1|2\n\n\n3|4");
+    assertMatchesCsvFormat("A|B\r1|2\r3|4\r");
+    assertMatchesCsvFormat("\uFEFFA|B\n1|2\n");
+  }
+
+  /**
+   * Verifies that {@link RifRecordTokenizer} decodes escape sequences and quoted columns the same
+   * way that {@link RifParsingUtils#CSV_FORMAT} does.
+   */
+  @Test
+  public void escapesAndQuotes() {
+    assertMatchesCsvFormat("A|B\n1\\|2|3\n");
+    assertMatchesCsvFormat("A|B\n1\\\\|2\\n3\n");
+    assertMatchesCsvFormat("A|B\n\"1|2\"|\"3\"\"4\"\n");
+    assertMatchesCsvFormat("A|B\n\"1\n2\"|3\n");
+  }
+
+  /**
+   * Verifies that {@link RifRecordTokenizer} correctly handles records that span the boundaries of
+   * its internal {@link ByteBuffer} windows.
+   */
+  @Test
+  public void recordsSpanningWindows() {
+    String rif = "COL_A|COL_B|COL_C\r\n111|222|333\r\n\"4|4\"|5\\|5|666\r\n7|8|9";
+    for (int windowSize = 1; windowSize < rif.length() + 2; windowSize++) {
+      RifRecordTokenizer tokenizer =
+          new RifRecordTokenizer(
+              new StreamWindowSource(
+                  new ByteArrayInputStream(rif.getBytes(StandardCharsets.UTF_8)), windowSize),
+              StandardCharsets.UTF_8,
+              null);
+      Assert.assertEquals(parseWithCsvFormat(rif), tokenize(tokenizer));
+    }
+  }
+
+  /**
+   * Verifies that {@link RifRecordTokenizer} works correctly with memory-mapped files.
+   *
+   * @throws IOException (indicates a test error)
+   */
+  @Test
+  public void mappedFile() throws IOException {
+    String rif = "A|B|C\n1|2|3\n4|5|6\n";
+    Path rifFile = Files.createTempFile("rif-tokenizer", ".txt");
+    try {
+      Files.write(rifFile, rif.getBytes(StandardCharsets.UTF_8));
+      RifRecordTokenizer tokenizer = new RifRecordTokenizer(rifFile, StandardCharsets.UTF_8);
+      Assert.assertEquals(parseWithCsvFormat(rif), tokenize(tokenizer));
+    } finally {
+      Files.delete(rifFile);
+    }
+  }
+
+  /**
+   * Verifies that {@link RifRecordTokenizer} works correctly with an explicitly specified header,
+   * and that {@link RifRecord}s provide access to their values without creating {@link String}s.
+   */
+  @Test
+  public void headerlessBuffer() {
+    RifRecordTokenizer tokenizer =
+        new RifRecordTokenizer(
+            ByteBuffer.wrap("1|22|\n".getBytes(StandardCharsets.UTF_8)),
+            StandardCharsets.UTF_8,
+            Arrays.asList("A", "B", "C"));
+    Assert.assertEquals(Arrays.asList("A", "B", "C"), tokenizer.getHeader());
+
+    RifRecord record = tokenizer.next();
+    Assert.assertEquals(1L, record.getRecordNumber());
+    Assert.assertEquals(3, record.size());
+    Assert.assertEquals(2, record.length(1));
+    Assert.assertEquals('2', record.charAt(1, 1));
+    Assert.assertTrue(record.isEmpty(2));
+    Assert.assertFalse(tokenizer.hasNext());
+  }
+
+  /**
+   * @param rif the RIF data (including header) to check
+   * @throws AssertionError An {@link AssertionError} will be thrown if {@link RifRecordTokenizer}
+   *     doesn't produce the same values as {@link RifParsingUtils#CSV_FORMAT}.
+   */
+  private static void assertMatchesCsvFormat(String rif) {
+    RifRecordTokenizer tokenizer =
+        new RifRecordTokenizer(
+            new ByteArrayInputStream(rif.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+    Assert.assertEquals(parseWithCsvFormat(rif), tokenize(tokenizer));
+  }
+
+  /**
+   * @param tokenizer the {@link RifRecordTokenizer} to read from
+   * @return the header and the values of each record, as produced by the specified {@link
+   *     RifRecordTokenizer}
+   */
+  private static List<List<String>> tokenize(RifRecordTokenizer tokenizer) {
+    List<List<String>> records = new ArrayList<>();
+    records.add(tokenizer.getHeader());
+    while (tokenizer.hasNext()) {
+      RifRecord record = tokenizer.next();
+      List<String> values = new ArrayList<>();
+      for (int column = 0; column < record.size(); column++) values.add(record.getString(column));
+      records.add(values);
+    }
+    tokenizer.close();
+    return records;
+  }
+
+  /**
+   * @param rif the RIF data (including header) to parse
+   * @return the header and the values of each record, as parsed by {@link
+   *     RifParsingUtils#CSV_FORMAT}
+   */
+  private static List<List<String>> parseWithCsvFormat(String rif) {
+    try (CSVParser parser =
+        RifParsingUtils.createCsvParser(
+            RifParsingUtils.CSV_FORMAT,
+            new ByteArrayInputStream(rif.getBytes(StandardCharsets.UTF_8)),
+            StandardCharsets.UTF_8)) {
+      List<List<String>> records = new ArrayList<>();
+      String[] header = new String[parser.getHeaderMap().size()];
+      parser.getHeaderMap().forEach((name, index) -> header[index] = name);
+      records.add(Arrays.asList(header));
+      for (CSVRecord csvRecord : parser) {
+        List<String> values = new ArrayList<>();
+        for (String value : csvRecord) values.add(value);
+        records.add(values);
+      }
+      return records;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
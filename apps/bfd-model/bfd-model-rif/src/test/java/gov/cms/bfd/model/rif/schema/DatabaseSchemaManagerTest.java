@@ -1,6 +1,13 @@
 package gov.cms.bfd.model.rif.schema;
 
+import gov.cms.bfd.model.rif.schema.DeferredSchemaObject.ObjectType;
+import gov.cms.bfd.model.rif.schema.DeferredSchemaObject.State;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
 import javax.sql.DataSource;
+import org.junit.Assert;
 import org.junit.Test;
 
 /** Unit tests for {@link gov.cms.bfd.model.rif.schema.DatabaseSchemaManager}. */
@@ -16,4 +23,91 @@ public final class DatabaseSchemaManagerTest {
     // Ensure that this runs without errors.
     DatabaseSchemaManager.createOrUpdateSchema(testDbDataSource);
   }
+
+  /**
+   * Verifies that {@link DatabaseSchemaManager#deferSecondarySchemaObjects(DataSource)} drops and
+   * records the secondary indexes and foreign keys on PostgreSQL, and that {@link
+   * DatabaseSchemaManager#restoreDeferredSchemaObject(DataSource, DeferredSchemaObject)} puts them
+   * all back. On other databases (e.g. HSQL), it should leave the schema alone.
+   *
+   * @throws SQLException (indicates a test error)
+   */
+  @Test
+  public void deferAndRestoreSecondarySchemaObjects() throws SQLException {
+    DataSource dataSource = DatabaseTestHelper.getTestDatabaseAfterCleanAndSchema();
+    Assert.assertTrue(DatabaseSchemaManager.findDeferredSchemaObjects(dataSource).isEmpty());
+
+    List<DeferredSchemaObject> deferred =
+        DatabaseSchemaManager.deferSecondarySchemaObjects(dataSource);
+    if (!isPostgreSql(dataSource)) {
+      Assert.assertTrue(deferred.isEmpty());
+      return;
+    }
+
+    Assert.assertTrue(
+        deferred.stream()
+            .anyMatch(
+                o ->
+                    o.getObjectType() == ObjectType.INDEX
+                        && o.getObjectName().equals("Beneficiaries_hicn_idx")));
+    Assert.assertTrue(
+        deferred.stream()
+            .anyMatch(
+                o ->
+                    o.getObjectType() == ObjectType.FOREIGN_KEY
+                        && o.getObjectName()
+                            .equals("CarrierClaimLines_parentClaim_to_CarrierClaims")));
+    Assert.assertFalse(
+        deferred.stream().anyMatch(o -> o.getObjectName().equals("loadedBatches_loadedFileId")));
+
+    // Deferring again (as after a crash) should leave the recorded objects as is.
+    Assert.assertEquals(
+        deferred.size(), DatabaseSchemaManager.deferSecondarySchemaObjects(dataSource).size());
+
+    /*
+     * That should also hold for a foreign key that was partly restored before the crash, and so
+     * exists again (as NOT VALID), even though it's still recorded.
+     */
+    DeferredSchemaObject foreignKey =
+        deferred.stream()
+            .filter(o -> o.getObjectType() == ObjectType.FOREIGN_KEY)
+            .findFirst()
+            .get();
+    Assert.assertEquals(
+        State.NOT_VALIDATED,
+        DatabaseSchemaManager.restoreDeferredSchemaObject(dataSource, foreignKey).get().getState());
+    List<DeferredSchemaObject> redeferred =
+        DatabaseSchemaManager.deferSecondarySchemaObjects(dataSource);
+    Assert.assertEquals(deferred.size(), redeferred.size());
+    Assert.assertTrue(
+        redeferred.stream()
+            .anyMatch(
+                o ->
+                    o.getObjectName().equals(foreignKey.getObjectName())
+                        && o.getState() == State.NOT_VALIDATED));
+
+    for (DeferredSchemaObject object : redeferred) {
+      Optional<DeferredSchemaObject> remaining =
+          DatabaseSchemaManager.restoreDeferredSchemaObject(dataSource, object);
+      while (remaining.isPresent())
+        remaining = DatabaseSchemaManager.restoreDeferredSchemaObject(dataSource, remaining.get());
+    }
+    Assert.assertTrue(DatabaseSchemaManager.findDeferredSchemaObjects(dataSource).isEmpty());
+
+    // Once everything is restored, deferring should find the same objects again.
+    Assert.assertEquals(
+        deferred.size(), DatabaseSchemaManager.deferSecondarySchemaObjects(dataSource).size());
+  }
+
+  /**
+   * @param dataSource the {@link DataSource} to check
+   * @return <code>true</code> if the {@link DataSource} is for a PostgreSQL database, <code>false
+   *     </code> if not
+   * @throws SQLException (indicates a test error)
+   */
+  private static boolean isPostgreSql(DataSource dataSource) throws SQLException {
+    try (Connection connection = dataSource.getConnection()) {
+      return connection.getMetaData().getDatabaseProductName().equals("PostgreSQL");
+    }
+  }
 }
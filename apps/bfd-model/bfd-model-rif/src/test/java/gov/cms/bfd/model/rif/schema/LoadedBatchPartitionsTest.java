@@ -0,0 +1,42 @@
+package gov.cms.bfd.model.rif.schema;
+
+import java.time.LocalDate;
+import java.util.Optional;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Unit tests for {@link LoadedBatchPartitions}. */
+public final class LoadedBatchPartitionsTest {
+  /**
+   * Verifies that {@link LoadedBatchPartitions#getPartitionName(LocalDate)} and {@link
+   * LoadedBatchPartitions#parsePartitionDay(String)} round trip, and that other tables aren't
+   * mistaken for partitions.
+   */
+  @Test
+  public void partitionNames() {
+    LocalDate day = LocalDate.of(2026, 1, 9);
+    Assert.assertEquals("LoadedBatches_20260109", LoadedBatchPartitions.getPartitionName(day));
+    Assert.assertEquals(
+        Optional.of(day),
+        LoadedBatchPartitions.parsePartitionDay(LoadedBatchPartitions.getPartitionName(day)));
+    Assert.assertEquals(Optional.empty(), LoadedBatchPartitions.parsePartitionDay("LoadedBatches"));
+    Assert.assertEquals(
+        Optional.empty(), LoadedBatchPartitions.parsePartitionDay("LoadedBatches_staging_1"));
+  }
+
+  /**
+   * Verifies that {@link LoadedBatchPartitions#createPartitionSql(LocalDate)} constrains each
+   * partition to its (UTC) day.
+   */
+  @Test
+  public void createPartitionSql() {
+    String[] sql = LoadedBatchPartitions.createPartitionSql(LocalDate.of(2026, 12, 31));
+    Assert.assertEquals(
+        "create table if not exists \"LoadedBatches_20261231\" ("
+            + "check (\"created\" >= '2026-12-31T00:00Z' and \"created\" < '2027-01-01T00:00Z'),"
+            + " constraint \"LoadedBatches_20261231_pkey\" primary key (\"loadedBatchId\"))"
+            + " inherits (\"LoadedBatches\")",
+        sql[0]);
+    Assert.assertEquals(3, sql.length);
+  }
+}
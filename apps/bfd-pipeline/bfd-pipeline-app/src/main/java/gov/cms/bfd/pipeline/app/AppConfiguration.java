@@ -4,8 +4,11 @@ import com.amazonaws.AmazonClientException;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 import gov.cms.bfd.model.rif.RifFileType;
 import gov.cms.bfd.pipeline.rif.extract.ExtractionOptions;
+import gov.cms.bfd.pipeline.rif.extract.RifFilesProcessor;
 import gov.cms.bfd.pipeline.rif.extract.s3.DataSetManifest;
+import gov.cms.bfd.pipeline.rif.extract.s3.task.S3TaskManager;
 import gov.cms.bfd.pipeline.rif.load.LoadAppOptions;
+import gov.cms.bfd.pipeline.rif.load.LoadAppOptions.InsertStrategy;
 import gov.cms.bfd.pipeline.rif.load.RifLoaderIdleTasks;
 import java.io.Serializable;
 import java.util.Optional;
@@ -95,6 +98,87 @@ public final class AppConfiguration implements Serializable {
    */
   public static final String ENV_VAR_KEY_FIXUP_THREADS = "FIXUP_THREADS";
 
+  /**
+   * The name of the environment variable that should be used to provide the {@link
+   * #getLoadOptions()} {@link LoadAppOptions#isBinaryCopyEnabled()} value.
+   */
+  public static final String ENV_VAR_KEY_BINARY_COPY_ENABLED = "BINARY_COPY_ENABLED";
+
+  /**
+   * The name of the environment variable that should be used to provide the {@link
+   * #getLoadOptions()} {@link LoadAppOptions#isCopyTranscodingEnabled()} value.
+   */
+  public static final String ENV_VAR_KEY_COPY_TRANSCODING_ENABLED = "COPY_TRANSCODING_ENABLED";
+
+  /**
+   * The name of the environment variable that should be used to provide the {@link
+   * #getLoadOptions()} {@link LoadAppOptions#getInsertStrategy()} value.
+   */
+  public static final String ENV_VAR_KEY_INSERT_STRATEGY = "INSERT_STRATEGY";
+
+  /**
+   * The name of the environment variable that should be used to provide the {@link
+   * #getLoadOptions()} {@link LoadAppOptions#isAdaptiveTuningEnabled()} value.
+   */
+  public static final String ENV_VAR_KEY_ADAPTIVE_TUNING_ENABLED = "ADAPTIVE_TUNING_ENABLED";
+
+  /**
+   * The name of the environment variable that should be used to provide the {@link
+   * #getLoadOptions()} {@link LoadAppOptions#getMinLoaderThreads()} value.
+   */
+  public static final String ENV_VAR_KEY_MIN_LOADER_THREADS = "MIN_LOADER_THREADS";
+
+  /**
+   * The name of the environment variable that should be used to provide the {@link
+   * #getLoadOptions()} {@link LoadAppOptions#isBulkLoadEnabled()} value.
+   */
+  public static final String ENV_VAR_KEY_BULK_LOAD_ENABLED = "BULK_LOAD_ENABLED";
+
+  /**
+   * The name of the environment variable that should be used to provide the {@link
+   * #getLoadOptions()} {@link LoadAppOptions#isBeneficiaryAffinityEnabled()} value.
+   */
+  public static final String ENV_VAR_KEY_BENEFICIARY_AFFINITY_ENABLED =
+      "BENEFICIARY_AFFINITY_ENABLED";
+
+  /**
+   * The name of the environment variable that should be used to provide the {@link
+   * #getExtractionOptions()} {@link ExtractionOptions#getParsingThreads()} value.
+   */
+  public static final String ENV_VAR_KEY_PARSING_THREADS = "PARSING_THREADS";
+
+  /**
+   * The name of the environment variable that should be used to provide the {@link
+   * #getExtractionOptions()} {@link ExtractionOptions#isS3StreamingEnabled()} value.
+   */
+  public static final String ENV_VAR_KEY_S3_STREAMING_ENABLED = "S3_STREAMING_ENABLED";
+
+  /**
+   * The name of the environment variable that should be used to provide the {@link
+   * #getExtractionOptions()} {@link ExtractionOptions#getDownloadThreads()} value.
+   */
+  public static final String ENV_VAR_KEY_DOWNLOAD_THREADS = "DOWNLOAD_THREADS";
+
+  /**
+   * The name of the environment variable that should be used to provide the {@link
+   * #getExtractionOptions()} {@link ExtractionOptions#getDownloadDiskBudget()} value.
+   */
+  public static final String ENV_VAR_KEY_DOWNLOAD_DISK_BUDGET_BYTES = "DOWNLOAD_DISK_BUDGET_BYTES";
+
+  /**
+   * The name of the environment variable that should be used to provide the {@link
+   * #getExtractionOptions()} {@link ExtractionOptions#getDownloadBandwidthLimit()} value.
+   */
+  public static final String ENV_VAR_KEY_DOWNLOAD_BANDWIDTH_BYTES_PER_SECOND =
+      "DOWNLOAD_BANDWIDTH_BYTES_PER_SECOND";
+
+  /**
+   * The name of the environment variable that should be used to provide the {@link
+   * #getExtractionOptions()} {@link ExtractionOptions#getDataSetNotificationQueueUrl()} value.
+   */
+  public static final String ENV_VAR_KEY_DATA_SET_NOTIFICATION_QUEUE_URL =
+      "DATA_SET_NOTIFICATION_QUEUE_URL";
+
   private final ExtractionOptions extractionOptions;
   private final LoadAppOptions loadOptions;
 
@@ -168,6 +252,83 @@ public final class AppConfiguration implements Serializable {
       allowedRifFileType = null;
     }
 
+    String parsingThreadsText = System.getenv(ENV_VAR_KEY_PARSING_THREADS);
+    int parsingThreads = RifFilesProcessor.DEFAULT_PARSING_THREADS;
+    if (parsingThreadsText != null && !parsingThreadsText.isEmpty()) {
+      try {
+        parsingThreads = Integer.parseInt(parsingThreadsText);
+      } catch (NumberFormatException e) {
+        parsingThreads = -1;
+      }
+      if (parsingThreads < 1)
+        throw new AppConfigurationException(
+            String.format(
+                "Invalid value for configuration environment variable '%s': '%s'",
+                ENV_VAR_KEY_PARSING_THREADS, parsingThreadsText));
+    }
+
+    String s3StreamingEnabledText = System.getenv(ENV_VAR_KEY_S3_STREAMING_ENABLED);
+    boolean s3StreamingEnabled = false;
+    if (s3StreamingEnabledText != null && !s3StreamingEnabledText.isEmpty()) {
+      Optional<Boolean> s3StreamingEnabledParsed = parseBoolean(s3StreamingEnabledText);
+      if (!s3StreamingEnabledParsed.isPresent())
+        throw new AppConfigurationException(
+            String.format(
+                "Invalid value for configuration environment variable '%s': '%s'",
+                ENV_VAR_KEY_S3_STREAMING_ENABLED, s3StreamingEnabledText));
+      s3StreamingEnabled = s3StreamingEnabledParsed.get();
+    }
+
+    String downloadThreadsText = System.getenv(ENV_VAR_KEY_DOWNLOAD_THREADS);
+    int downloadThreads = S3TaskManager.DEFAULT_DOWNLOAD_THREADS;
+    if (downloadThreadsText != null && !downloadThreadsText.isEmpty()) {
+      try {
+        downloadThreads = Integer.parseInt(downloadThreadsText);
+      } catch (NumberFormatException e) {
+        downloadThreads = -1;
+      }
+      if (downloadThreads < 1)
+        throw new AppConfigurationException(
+            String.format(
+                "Invalid value for configuration environment variable '%s': '%s'",
+                ENV_VAR_KEY_DOWNLOAD_THREADS, downloadThreadsText));
+    }
+
+    String downloadDiskBudgetText = System.getenv(ENV_VAR_KEY_DOWNLOAD_DISK_BUDGET_BYTES);
+    long downloadDiskBudget = S3TaskManager.DEFAULT_DOWNLOAD_DISK_BUDGET;
+    if (downloadDiskBudgetText != null && !downloadDiskBudgetText.isEmpty()) {
+      try {
+        downloadDiskBudget = Long.parseLong(downloadDiskBudgetText);
+      } catch (NumberFormatException e) {
+        downloadDiskBudget = -1L;
+      }
+      if (downloadDiskBudget < 0)
+        throw new AppConfigurationException(
+            String.format(
+                "Invalid value for configuration environment variable '%s': '%s'",
+                ENV_VAR_KEY_DOWNLOAD_DISK_BUDGET_BYTES, downloadDiskBudgetText));
+    }
+
+    String downloadBandwidthLimitText =
+        System.getenv(ENV_VAR_KEY_DOWNLOAD_BANDWIDTH_BYTES_PER_SECOND);
+    Long downloadBandwidthLimit = null;
+    if (downloadBandwidthLimitText != null && !downloadBandwidthLimitText.isEmpty()) {
+      try {
+        downloadBandwidthLimit = Long.parseLong(downloadBandwidthLimitText);
+      } catch (NumberFormatException e) {
+        downloadBandwidthLimit = -1L;
+      }
+      if (downloadBandwidthLimit < 1)
+        throw new AppConfigurationException(
+            String.format(
+                "Invalid value for configuration environment variable '%s': '%s'",
+                ENV_VAR_KEY_DOWNLOAD_BANDWIDTH_BYTES_PER_SECOND, downloadBandwidthLimitText));
+    }
+
+    String dataSetNotificationQueueUrl = System.getenv(ENV_VAR_KEY_DATA_SET_NOTIFICATION_QUEUE_URL);
+    if (dataSetNotificationQueueUrl != null && dataSetNotificationQueueUrl.isEmpty())
+      dataSetNotificationQueueUrl = null;
+
     String hicnHashIterationsText = System.getenv(ENV_VAR_KEY_HICN_HASH_ITERATIONS);
     if (hicnHashIterationsText == null || hicnHashIterationsText.isEmpty())
       throw new AppConfigurationException(
@@ -268,6 +429,96 @@ public final class AppConfiguration implements Serializable {
       fixupThreads = Integer.parseInt(fixupThreadsText);
     }
 
+    String binaryCopyEnabledText = System.getenv(ENV_VAR_KEY_BINARY_COPY_ENABLED);
+    boolean binaryCopyEnabled = false;
+    if (binaryCopyEnabledText != null && !binaryCopyEnabledText.isEmpty()) {
+      Optional<Boolean> binaryCopyEnabledParsed = parseBoolean(binaryCopyEnabledText);
+      if (!binaryCopyEnabledParsed.isPresent())
+        throw new AppConfigurationException(
+            String.format(
+                "Invalid value for configuration environment variable '%s': '%s'",
+                ENV_VAR_KEY_BINARY_COPY_ENABLED, binaryCopyEnabledText));
+      binaryCopyEnabled = binaryCopyEnabledParsed.get();
+    }
+
+    String copyTranscodingEnabledText = System.getenv(ENV_VAR_KEY_COPY_TRANSCODING_ENABLED);
+    boolean copyTranscodingEnabled = false;
+    if (copyTranscodingEnabledText != null && !copyTranscodingEnabledText.isEmpty()) {
+      Optional<Boolean> copyTranscodingEnabledParsed = parseBoolean(copyTranscodingEnabledText);
+      if (!copyTranscodingEnabledParsed.isPresent())
+        throw new AppConfigurationException(
+            String.format(
+                "Invalid value for configuration environment variable '%s': '%s'",
+                ENV_VAR_KEY_COPY_TRANSCODING_ENABLED, copyTranscodingEnabledText));
+      copyTranscodingEnabled = copyTranscodingEnabledParsed.get();
+    }
+
+    String insertStrategyText = System.getenv(ENV_VAR_KEY_INSERT_STRATEGY);
+    InsertStrategy insertStrategy = InsertStrategy.COPY;
+    if (insertStrategyText != null && !insertStrategyText.isEmpty()) {
+      try {
+        insertStrategy = InsertStrategy.valueOf(insertStrategyText);
+      } catch (IllegalArgumentException e) {
+        throw new AppConfigurationException(
+            String.format(
+                "Invalid value for configuration environment variable '%s': '%s'",
+                ENV_VAR_KEY_INSERT_STRATEGY, insertStrategyText),
+            e);
+      }
+    }
+
+    String adaptiveTuningEnabledText = System.getenv(ENV_VAR_KEY_ADAPTIVE_TUNING_ENABLED);
+    boolean adaptiveTuningEnabled = false;
+    if (adaptiveTuningEnabledText != null && !adaptiveTuningEnabledText.isEmpty()) {
+      Optional<Boolean> adaptiveTuningEnabledParsed = parseBoolean(adaptiveTuningEnabledText);
+      if (!adaptiveTuningEnabledParsed.isPresent())
+        throw new AppConfigurationException(
+            String.format(
+                "Invalid value for configuration environment variable '%s': '%s'",
+                ENV_VAR_KEY_ADAPTIVE_TUNING_ENABLED, adaptiveTuningEnabledText));
+      adaptiveTuningEnabled = adaptiveTuningEnabledParsed.get();
+    }
+
+    String minLoaderThreadsText = System.getenv(ENV_VAR_KEY_MIN_LOADER_THREADS);
+    int minLoaderThreads = adaptiveTuningEnabled ? Math.max(1, loaderThreads / 4) : loaderThreads;
+    if (minLoaderThreadsText != null && !minLoaderThreadsText.isEmpty()) {
+      try {
+        minLoaderThreads = Integer.parseInt(minLoaderThreadsText);
+      } catch (NumberFormatException e) {
+        minLoaderThreads = -1;
+      }
+      if (minLoaderThreads < 1 || minLoaderThreads > loaderThreads)
+        throw new AppConfigurationException(
+            String.format(
+                "Invalid value for configuration environment variable '%s': '%s'",
+                ENV_VAR_KEY_MIN_LOADER_THREADS, minLoaderThreadsText));
+    }
+
+    String bulkLoadEnabledText = System.getenv(ENV_VAR_KEY_BULK_LOAD_ENABLED);
+    boolean bulkLoadEnabled = false;
+    if (bulkLoadEnabledText != null && !bulkLoadEnabledText.isEmpty()) {
+      Optional<Boolean> bulkLoadEnabledParsed = parseBoolean(bulkLoadEnabledText);
+      if (!bulkLoadEnabledParsed.isPresent())
+        throw new AppConfigurationException(
+            String.format(
+                "Invalid value for configuration environment variable '%s': '%s'",
+                ENV_VAR_KEY_BULK_LOAD_ENABLED, bulkLoadEnabledText));
+      bulkLoadEnabled = bulkLoadEnabledParsed.get();
+    }
+
+    String beneficiaryAffinityEnabledText = System.getenv(ENV_VAR_KEY_BENEFICIARY_AFFINITY_ENABLED);
+    boolean beneficiaryAffinityEnabled = false;
+    if (beneficiaryAffinityEnabledText != null && !beneficiaryAffinityEnabledText.isEmpty()) {
+      Optional<Boolean> beneficiaryAffinityEnabledParsed =
+          parseBoolean(beneficiaryAffinityEnabledText);
+      if (!beneficiaryAffinityEnabledParsed.isPresent())
+        throw new AppConfigurationException(
+            String.format(
+                "Invalid value for configuration environment variable '%s': '%s'",
+                ENV_VAR_KEY_BENEFICIARY_AFFINITY_ENABLED, beneficiaryAffinityEnabledText));
+      beneficiaryAffinityEnabled = beneficiaryAffinityEnabledParsed.get();
+    }
+
     /*
      * Just for convenience: make sure DefaultAWSCredentialsProviderChain
      * has whatever it needs.
@@ -289,17 +540,32 @@ public final class AppConfiguration implements Serializable {
     }
 
     return new AppConfiguration(
-        new ExtractionOptions(s3BucketName, allowedRifFileType),
-        new LoadAppOptions(
-            hicnHashIterations,
-            hicnHashPepper,
-            databaseUrl,
-            databaseUsername,
-            databasePassword.toCharArray(),
-            loaderThreads,
-            idempotencyRequired.get().booleanValue(),
-            fixupsEnabled,
-            fixupThreads));
+        new ExtractionOptions(
+            s3BucketName,
+            allowedRifFileType,
+            null,
+            parsingThreads,
+            s3StreamingEnabled,
+            downloadThreads,
+            downloadDiskBudget,
+            downloadBandwidthLimit,
+            dataSetNotificationQueueUrl),
+        LoadAppOptions.builder()
+            .hicnHashIterations(hicnHashIterations)
+            .hicnHashPepper(hicnHashPepper)
+            .database(databaseUrl, databaseUsername, databasePassword.toCharArray())
+            .loaderThreads(loaderThreads)
+            .idempotencyRequired(idempotencyRequired.get().booleanValue())
+            .fixupsEnabled(fixupsEnabled)
+            .fixupThreads(fixupThreads)
+            .binaryCopyEnabled(binaryCopyEnabled)
+            .copyTranscodingEnabled(copyTranscodingEnabled)
+            .insertStrategy(insertStrategy)
+            .adaptiveTuningEnabled(adaptiveTuningEnabled)
+            .minLoaderThreads(minLoaderThreads)
+            .bulkLoadEnabled(bulkLoadEnabled)
+            .beneficiaryAffinityEnabled(beneficiaryAffinityEnabled)
+            .build());
   }
 
   /**
@@ -16,8 +16,11 @@ import gov.cms.bfd.pipeline.rif.load.RifLoader;
 import gov.cms.bfd.pipeline.rif.load.RifRecordLoadResult;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -76,7 +79,8 @@ public final class S3ToDatabaseLoadApp {
      * Create the services that will be used to handle each stage in the
      * extract, transform, and load process.
      */
-    RifFilesProcessor rifProcessor = new RifFilesProcessor();
+    RifFilesProcessor rifProcessor =
+        new RifFilesProcessor(appConfig.getExtractionOptions().getParsingThreads());
     RifLoader rifLoader = new RifLoader(appMetrics, appConfig.getLoadOptions());
 
     /*
@@ -119,20 +123,29 @@ public final class S3ToDatabaseLoadApp {
 
             /*
              * Each ETL stage produces a stream that will be handed off to
-             * and processed by the next stage.
+             * and processed by the next stage. The RifLoader decides which
+             * of the data set's files can be loaded at the same time, and
+             * asks for each file's records when it's ready for them.
              */
-            for (RifFileEvent rifFileEvent : rifFilesEvent.getFileEvents()) {
-              Slf4jReporter dataSetFileMetricsReporter =
-                  Slf4jReporter.forRegistry(rifFileEvent.getEventMetrics())
-                      .outputTo(LOGGER)
-                      .build();
-              dataSetFileMetricsReporter.start(2, TimeUnit.MINUTES);
+            List<Slf4jReporter> dataSetFileMetricsReporters = new CopyOnWriteArrayList<>();
+            Function<RifFileEvent, RifFileRecords> recordsProducer =
+                rifFileEvent -> {
+                  Slf4jReporter dataSetFileMetricsReporter =
+                      Slf4jReporter.forRegistry(rifFileEvent.getEventMetrics())
+                          .outputTo(LOGGER)
+                          .build();
+                  dataSetFileMetricsReporter.start(2, TimeUnit.MINUTES);
+                  dataSetFileMetricsReporters.add(dataSetFileMetricsReporter);
 
-              RifFileRecords rifFileRecords = rifProcessor.produceRecords(rifFileEvent);
-              rifLoader.process(rifFileRecords, errorHandler, resultHandler);
-
-              dataSetFileMetricsReporter.stop();
-              dataSetFileMetricsReporter.report();
+                  return rifProcessor.produceRecords(rifFileEvent);
+                };
+            try {
+              rifLoader.process(rifFilesEvent, recordsProducer, errorHandler, resultHandler);
+            } finally {
+              for (Slf4jReporter dataSetFileMetricsReporter : dataSetFileMetricsReporters) {
+                dataSetFileMetricsReporter.stop();
+                dataSetFileMetricsReporter.report();
+              }
             }
             timerDataSet.stop();
           }
@@ -6,6 +6,16 @@ import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
 
 /** A set of shared utilities for the benchmark code. */
 final class BenchmarkUtilities {
@@ -116,4 +126,56 @@ final class BenchmarkUtilities {
         BenchmarkUtilities.runProcessAndLogOutput(teardownProcessBuilder, teardownLog);
     return teardownExitCode;
   }
+
+  /**
+   * Runs all of the JMH <code>@Benchmark</code> methods in the specified class, measuring the
+   * average time per operation and (via {@link GCProfiler}) the bytes allocated per operation.
+   * The JMH results are also written out to <code>target/jmh-&lt;class name&gt;.txt</code>.
+   *
+   * @param benchmarkClass the class containing the JMH benchmarks to run
+   * @return the {@link RunResult}s from the benchmarks
+   */
+  static Collection<RunResult> runJmhBenchmarks(Class<?> benchmarkClass) {
+    return runJmhBenchmarks(benchmarkClass, Mode.AverageTime, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Runs all of the JMH <code>@Benchmark</code> methods in the specified class, as {@link
+   * #runJmhBenchmarks(Class)} does, but in the specified {@link Mode}. Any of the specified Java
+   * system properties that are set are passed along to the forked benchmark JVM, too.
+   *
+   * @param benchmarkClass the class containing the JMH benchmarks to run
+   * @param mode the JMH {@link Mode} to run the benchmarks in
+   * @param timeUnit the {@link TimeUnit} to report the results in
+   * @param forwardedSystemProperties the names of the Java system properties to pass along
+   * @return the {@link RunResult}s from the benchmarks
+   */
+  static Collection<RunResult> runJmhBenchmarks(
+      Class<?> benchmarkClass, Mode mode, TimeUnit timeUnit, String... forwardedSystemProperties) {
+    String[] forkJvmArgs =
+        Arrays.stream(forwardedSystemProperties)
+            .filter(p -> System.getProperty(p) != null)
+            .map(p -> String.format("-D%s=%s", p, System.getProperty(p)))
+            .toArray(String[]::new);
+    Options options =
+        new OptionsBuilder()
+            .include(benchmarkClass.getName() + "\\.")
+            .mode(mode)
+            .timeUnit(timeUnit)
+            .jvmArgsAppend(forkJvmArgs)
+            .warmupIterations(3)
+            .measurementIterations(5)
+            .forks(1)
+            .addProfiler(GCProfiler.class)
+            .output(
+                findProjectTargetDir()
+                    .resolve(String.format("jmh-%s.txt", benchmarkClass.getSimpleName()))
+                    .toString())
+            .build();
+    try {
+      return new Runner(options).run();
+    } catch (RunnerException e) {
+      throw new BenchmarkError("JMH benchmark run failed.", e);
+    }
+  }
 }
@@ -0,0 +1,157 @@
+package gov.cms.bfd.pipeline.benchmarks;
+
+import gov.cms.bfd.model.rif.Beneficiary;
+import gov.cms.bfd.model.rif.BeneficiaryBinaryCopyWriter;
+import gov.cms.bfd.model.rif.BeneficiaryCsvWriter;
+import gov.cms.bfd.model.rif.CarrierClaim;
+import gov.cms.bfd.model.rif.CarrierClaimBinaryCopyWriter;
+import gov.cms.bfd.model.rif.CarrierClaimCsvWriter;
+import gov.cms.bfd.model.rif.InpatientClaim;
+import gov.cms.bfd.model.rif.InpatientClaimBinaryCopyWriter;
+import gov.cms.bfd.model.rif.InpatientClaimCsvWriter;
+import gov.cms.bfd.model.rif.PartDEvent;
+import gov.cms.bfd.model.rif.PartDEventBinaryCopyWriter;
+import gov.cms.bfd.model.rif.PartDEventCsvWriter;
+import gov.cms.bfd.model.rif.PostgreSqlBinaryCopyBuffer;
+import gov.cms.bfd.model.rif.RifFileRecords;
+import gov.cms.bfd.model.rif.RifFilesEvent;
+import gov.cms.bfd.model.rif.RifRecordBase;
+import gov.cms.bfd.model.rif.samples.StaticRifResource;
+import gov.cms.bfd.pipeline.rif.extract.RifFilesProcessor;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH micro-benchmarks comparing the two ways that the loader can encode RIF entities for
+ * PostgreSQL <code>COPY</code>s: the generated <code>*CsvWriter</code>s, printed as CSV (just as
+ * the loader does), and the generated <code>*BinaryCopyWriter</code>s. Each operation encodes all
+ * of the records (and their lines) in one {@link StaticRifResource} sample. No database is
+ * involved, so this only measures the client side of the work.
+ *
+ * <p>Note: JMH generates subclasses of its <code>@State</code> classes, so this class can't be
+ * <code>final</code>.
+ */
+@State(Scope.Benchmark)
+public class CopyEncodingBenchmark {
+  /** The {@link StaticRifResource} to encode. */
+  @Param({"SAMPLE_A_BENES", "SAMPLE_A_CARRIER", "SAMPLE_A_INPATIENT", "SAMPLE_MCT_PDE"})
+  public String sampleName;
+
+  private List<RifRecordBase> records;
+  private ByteArrayOutputStream csvBytes;
+  private PostgreSqlBinaryCopyBuffer headerRows;
+  private PostgreSqlBinaryCopyBuffer lineRows;
+
+  /**
+   * Runs the benchmarks in this class.
+   *
+   * <p>Note: This method is the JUnit entry point used by failsafe, which will only run it when
+   * <code>-DskipBenchmarks=false</code> is specified.
+   */
+  @Test
+  public void runBenchmarks() {
+    BenchmarkUtilities.runJmhBenchmarks(CopyEncodingBenchmark.class);
+  }
+
+  /** Parses the selected {@link #sampleName} into its JPA entities, and creates the buffers. */
+  @Setup
+  public void parseSample() {
+    StaticRifResource sample = StaticRifResource.valueOf(sampleName);
+    RifFilesEvent rifFilesEvent = new RifFilesEvent(Instant.now(), sample.toRifFile());
+    RifFileRecords rifFileRecords =
+        new RifFilesProcessor().produceRecords(rifFilesEvent.getFileEvents().get(0));
+    records =
+        rifFileRecords
+            .getRecords()
+            .<RifRecordBase>map(r -> r.getRecord())
+            .collect(Collectors.toList());
+
+    csvBytes = new ByteArrayOutputStream(64 * 1024);
+    headerRows = new PostgreSqlBinaryCopyBuffer(64 * 1024);
+    lineRows = new PostgreSqlBinaryCopyBuffer(64 * 1024);
+  }
+
+  /**
+   * Encodes the records with the generated <code>*CsvWriter</code>s, printing them as UTF-8 CSV.
+   *
+   * @param blackhole the JMH {@link Blackhole} to sink the encoded size into
+   */
+  @Benchmark
+  public void csvEncoding(Blackhole blackhole) {
+    csvBytes.reset();
+    try (Writer writer = new OutputStreamWriter(csvBytes, StandardCharsets.UTF_8);
+        CSVPrinter csvPrinter = new CSVPrinter(writer, CSVFormat.DEFAULT)) {
+      for (RifRecordBase record : records) {
+        for (Object[][] tableRecords : toCsvRecordsByTable(record).values()) {
+          for (int rowIndex = 1; rowIndex < tableRecords.length; rowIndex++) {
+            Object[] row = tableRecords[rowIndex];
+            for (int columnIndex = 0; columnIndex < row.length; columnIndex++)
+              if (row[columnIndex] instanceof Date)
+                row[columnIndex] = ((Date) row[columnIndex]).toInstant().toString();
+            csvPrinter.printRecord(row);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    blackhole.consume(csvBytes.size());
+  }
+
+  /**
+   * Encodes the records with the generated <code>*BinaryCopyWriter</code>s.
+   *
+   * @param blackhole the JMH {@link Blackhole} to sink the encoded size into
+   */
+  @Benchmark
+  public void binaryEncoding(Blackhole blackhole) {
+    headerRows.clear();
+    lineRows.clear();
+    for (RifRecordBase record : records) {
+      if (record instanceof Beneficiary)
+        BeneficiaryBinaryCopyWriter.writeRows((Beneficiary) record, headerRows);
+      else if (record instanceof CarrierClaim)
+        CarrierClaimBinaryCopyWriter.writeRows((CarrierClaim) record, headerRows, lineRows);
+      else if (record instanceof InpatientClaim)
+        InpatientClaimBinaryCopyWriter.writeRows((InpatientClaim) record, headerRows, lineRows);
+      else if (record instanceof PartDEvent)
+        PartDEventBinaryCopyWriter.writeRows((PartDEvent) record, headerRows);
+      else throw new BenchmarkError("Unhandled record type: " + record.getClass());
+    }
+    blackhole.consume(headerRows.getContents().remaining() + lineRows.getContents().remaining());
+  }
+
+  /**
+   * @param record the {@link RifRecordBase} to convert
+   * @return the specified record's values, as produced by its generated <code>*CsvWriter</code>
+   */
+  private static Map<String, Object[][]> toCsvRecordsByTable(RifRecordBase record) {
+    if (record instanceof Beneficiary)
+      return BeneficiaryCsvWriter.toCsvRecordsByTable((Beneficiary) record);
+    else if (record instanceof CarrierClaim)
+      return CarrierClaimCsvWriter.toCsvRecordsByTable((CarrierClaim) record);
+    else if (record instanceof InpatientClaim)
+      return InpatientClaimCsvWriter.toCsvRecordsByTable((InpatientClaim) record);
+    else if (record instanceof PartDEvent)
+      return PartDEventCsvWriter.toCsvRecordsByTable((PartDEvent) record);
+    else throw new BenchmarkError("Unhandled record type: " + record.getClass());
+  }
+}
@@ -0,0 +1,143 @@
+package gov.cms.bfd.pipeline.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import gov.cms.bfd.model.rif.RifFileRecords;
+import gov.cms.bfd.model.rif.RifFilesEvent;
+import gov.cms.bfd.model.rif.RifRecordEvent;
+import gov.cms.bfd.model.rif.samples.StaticRifResource;
+import gov.cms.bfd.model.rif.schema.DatabaseTestHelper;
+import gov.cms.bfd.pipeline.rif.extract.RifFilesProcessor;
+import gov.cms.bfd.pipeline.rif.load.LoadAppOptions;
+import gov.cms.bfd.pipeline.rif.load.LoadAppOptions.InsertStrategy;
+import gov.cms.bfd.pipeline.rif.load.RifLoader;
+import gov.cms.bfd.pipeline.rif.load.RifLoaderIdleTasks;
+import gov.cms.bfd.pipeline.rif.load.RifLoaderTestUtils;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks comparing the {@link InsertStrategy#JPA} and {@link InsertStrategy#JDBC_BATCH}
+ * ways that {@link RifLoader} can insert records, against a real database. Each operation loads
+ * one (already parsed) {@link StaticRifResource} claims sample into a freshly cleaned database that
+ * only contains that sample's beneficiaries, so it measures the whole load, including the
+ * transactions and {@link gov.cms.bfd.model.rif.LoadedBatch}es.
+ *
+ * <p>The database is selected via the same <code>its.db.url</code> (etc.) Java system properties
+ * that the integration tests use, and defaults to an in-memory HSQL database. To benchmark against
+ * PostgreSQL, add <code>reWriteBatchedInserts=true</code> to that URL, as {@link RifLoader} would
+ * do for {@link InsertStrategy#JDBC_BATCH} with a JDBC URL.
+ *
+ * <p>Note: JMH generates subclasses of its <code>@State</code> classes, so this class can't be
+ * <code>final</code>.
+ */
+@State(Scope.Benchmark)
+public class InsertStrategyBenchmark {
+  /** The Java system properties that select the database to benchmark against. */
+  private static final String[] DATABASE_SYSTEM_PROPERTIES = {
+    "its.db.url", "its.db.username", "its.db.password"
+  };
+
+  /** The {@link InsertStrategy} to load with. */
+  @Param({"JPA", "JDBC_BATCH"})
+  public String insertStrategy;
+
+  /** The {@link StaticRifResource} claims sample to load. */
+  @Param({"SAMPLE_B_CARRIER", "SAMPLE_B_OUTPATIENT", "SAMPLE_B_PDE"})
+  public String sampleName;
+
+  private RifLoader loader;
+  private RifFileRecords claimRecords;
+  private List<Throwable> loadErrors;
+
+  /**
+   * Runs the benchmarks in this class.
+   *
+   * <p>Note: This method is the JUnit entry point used by failsafe, which will only run it when
+   * <code>-DskipBenchmarks=false</code> is specified.
+   */
+  @Test
+  public void runBenchmarks() {
+    BenchmarkUtilities.runJmhBenchmarks(
+        InsertStrategyBenchmark.class,
+        Mode.SingleShotTime,
+        TimeUnit.MILLISECONDS,
+        DATABASE_SYSTEM_PROPERTIES);
+  }
+
+  /**
+   * Cleans the database, loads the beneficiaries that the selected {@link #sampleName} references,
+   * and parses that sample, none of which is part of what's being measured.
+   */
+  @Setup(Level.Iteration)
+  public void prepareDatabase() {
+    DataSource dataSource = DatabaseTestHelper.getTestDatabaseAfterClean();
+    LoadAppOptions options =
+        LoadAppOptions.builder()
+            .hicnHashIterations(RifLoaderTestUtils.HICN_HASH_ITERATIONS)
+            .hicnHashPepper(RifLoaderTestUtils.HICN_HASH_PEPPER)
+            .databaseDataSource(dataSource)
+            .loaderThreads(LoadAppOptions.DEFAULT_LOADER_THREADS)
+            .idempotencyRequired(false)
+            .fixupsEnabled(false)
+            .fixupThreads(RifLoaderIdleTasks.DEFAULT_PARTITION_COUNT)
+            .binaryCopyEnabled(false)
+            .copyTranscodingEnabled(false)
+            .insertStrategy(InsertStrategy.valueOf(insertStrategy))
+            .build();
+    loader = new RifLoader(new MetricRegistry(), options);
+    loadErrors = new CopyOnWriteArrayList<>();
+
+    loader.process(parseSample(StaticRifResource.SAMPLE_B_BENES), loadErrors::add, r -> {});
+    verifyNoLoadErrors();
+    claimRecords = parseSample(StaticRifResource.valueOf(sampleName));
+  }
+
+  /** Closes the {@link RifLoader} used for the iteration. */
+  @TearDown(Level.Iteration)
+  public void closeLoader() {
+    verifyNoLoadErrors();
+    loader.close();
+  }
+
+  /**
+   * Loads the selected {@link #sampleName} with the selected {@link #insertStrategy}.
+   *
+   * @param blackhole the JMH {@link Blackhole} to sink the load results into
+   */
+  @Benchmark
+  public void load(Blackhole blackhole) {
+    loader.process(claimRecords, loadErrors::add, blackhole::consume);
+  }
+
+  /**
+   * @param sample the {@link StaticRifResource} to parse
+   * @return a {@link RifFileRecords} for all of the sample's (already parsed) records
+   */
+  private static RifFileRecords parseSample(StaticRifResource sample) {
+    RifFilesEvent rifFilesEvent = new RifFilesEvent(Instant.now(), sample.toRifFile());
+    RifFileRecords rifFileRecords =
+        new RifFilesProcessor().produceRecords(rifFilesEvent.getFileEvents().get(0));
+    List<RifRecordEvent<?>> records = rifFileRecords.getRecords().collect(Collectors.toList());
+    return new RifFileRecords(rifFileRecords.getSourceEvent(), records.stream());
+  }
+
+  /** Fails the benchmark if any of the loads so far have reported errors. */
+  private void verifyNoLoadErrors() {
+    if (!loadErrors.isEmpty())
+      throw new BenchmarkError("Load failed for sample: " + sampleName, loadErrors.get(0));
+  }
+}
@@ -0,0 +1,182 @@
+package gov.cms.bfd.pipeline.benchmarks;
+
+import gov.cms.bfd.model.rif.parse.RifParsingUtils;
+import gov.cms.bfd.model.rif.parse.RifRecord;
+import gov.cms.bfd.model.rif.parse.RifRecordTokenizer;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.util.Collections;
+import java.util.Random;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH micro-benchmarks for the {@link RifParsingUtils} field decoders, per field type. Each
+ * benchmark reports the time and (via the GC profiler's <code>gc.alloc.rate.norm</code>) the bytes
+ * allocated to parse a single field value, for:
+ *
+ * <ul>
+ *   <li>the original, general-purpose JDK parsing that {@link RifParsingUtils} used to do,
+ *   <li>the current {@link String}-based {@link RifParsingUtils} methods, and
+ *   <li>the current {@link RifRecord}-based {@link RifParsingUtils} methods, which are what the
+ *       generated parsers use.
+ * </ul>
+ *
+ * <p>Note: JMH generates subclasses of its <code>@State</code> classes, so this class can't be
+ * <code>final</code>.
+ */
+@State(Scope.Benchmark)
+public class RifFieldParsingBenchmark {
+  /** The number of (randomly generated) values of the selected {@link #fieldType} to parse. */
+  private static final int VALUE_COUNT = 1000;
+
+  /** The timestamp {@link DateTimeFormatter} that {@link RifParsingUtils} has always used. */
+  private static final DateTimeFormatter ORIGINAL_TIMESTAMP_FORMATTER =
+      new DateTimeFormatterBuilder()
+          .parseCaseInsensitive()
+          .appendPattern("dd-MMM-yyyy HH:mm:ss")
+          .toFormatter();
+
+  private static final String[] MONTHS = {
+    "JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"
+  };
+
+  /** The type of RIF field to parse. */
+  @Param({"DATE", "DATE_COMPACT", "TIMESTAMP", "DECIMAL", "INTEGER"})
+  public String fieldType;
+
+  private String[] values;
+  private RifRecord record;
+
+  /**
+   * Runs the benchmarks in this class.
+   *
+   * <p>Note: This method is the JUnit entry point used by failsafe, which will only run it when
+   * <code>-DskipBenchmarks=false</code> is specified.
+   */
+  @Test
+  public void runBenchmarks() {
+    BenchmarkUtilities.runJmhBenchmarks(RifFieldParsingBenchmark.class);
+  }
+
+  /**
+   * Generates {@link #VALUE_COUNT} random (but realistic) values of the selected {@link
+   * #fieldType}, both as {@link String}s and as the columns of a single {@link RifRecord}.
+   */
+  @Setup
+  public void generateValues() {
+    Random random = new Random(42L);
+    values = new String[VALUE_COUNT];
+    for (int i = 0; i < values.length; i++) {
+      int year = 1990 + random.nextInt(40);
+      String month = MONTHS[random.nextInt(12)];
+      int day = 1 + random.nextInt(28);
+      if ("DATE".equals(fieldType)) {
+        values[i] = String.format("%02d-%s-%04d", day, month, year);
+      } else if ("DATE_COMPACT".equals(fieldType)) {
+        values[i] = String.format("%04d%02d%02d", year, 1 + random.nextInt(12), day);
+      } else if ("TIMESTAMP".equals(fieldType)) {
+        values[i] =
+            String.format(
+                "%02d-%s-%04d %02d:%02d:%02d",
+                day, month, year, random.nextInt(24), random.nextInt(60), random.nextInt(60));
+      } else if ("DECIMAL".equals(fieldType)) {
+        values[i] = String.format("%d.%02d", random.nextInt(100000), random.nextInt(100));
+      } else if ("INTEGER".equals(fieldType)) {
+        values[i] = Integer.toString(random.nextInt(1000000));
+      } else {
+        throw new IllegalArgumentException(fieldType);
+      }
+    }
+
+    byte[] line = String.join("|", values).getBytes(StandardCharsets.UTF_8);
+    RifRecordTokenizer tokenizer =
+        new RifRecordTokenizer(
+            ByteBuffer.wrap(line), StandardCharsets.UTF_8, Collections.emptyList());
+    record = tokenizer.next();
+  }
+
+  /**
+   * Parses the values with the general-purpose JDK parsing that {@link RifParsingUtils} originally
+   * used: a regex check and new {@link DateTimeFormatter} for every date, and {@link
+   * BigDecimal#BigDecimal(String)} for every decimal.
+   *
+   * @param blackhole the JMH {@link Blackhole} to sink the values into
+   */
+  @Benchmark
+  @OperationsPerInvocation(VALUE_COUNT)
+  public void originalParsing(Blackhole blackhole) {
+    for (String value : values) {
+      if ("DATE".equals(fieldType) || "DATE_COMPACT".equals(fieldType)) {
+        String pattern = value.matches("\\d{8}") ? "yyyyMMdd" : "dd-MMM-yyyy";
+        DateTimeFormatter formatter =
+            new DateTimeFormatterBuilder()
+                .parseCaseInsensitive()
+                .appendPattern(pattern)
+                .toFormatter();
+        blackhole.consume(LocalDate.parse(value, formatter));
+      } else if ("TIMESTAMP".equals(fieldType)) {
+        blackhole.consume(
+            LocalDateTime.parse(value, ORIGINAL_TIMESTAMP_FORMATTER).toInstant(ZoneOffset.UTC));
+      } else if ("DECIMAL".equals(fieldType)) {
+        blackhole.consume(new BigDecimal(value));
+      } else {
+        blackhole.consume(Integer.parseInt(value));
+      }
+    }
+  }
+
+  /**
+   * Parses the values with the {@link String}-based {@link RifParsingUtils} methods.
+   *
+   * @param blackhole the JMH {@link Blackhole} to sink the values into
+   */
+  @Benchmark
+  @OperationsPerInvocation(VALUE_COUNT)
+  public void stringParsing(Blackhole blackhole) {
+    for (String value : values) {
+      if ("DATE".equals(fieldType) || "DATE_COMPACT".equals(fieldType)) {
+        blackhole.consume(RifParsingUtils.parseDate(value));
+      } else if ("TIMESTAMP".equals(fieldType)) {
+        blackhole.consume(RifParsingUtils.parseTimestamp(value));
+      } else if ("DECIMAL".equals(fieldType)) {
+        blackhole.consume(RifParsingUtils.parseDecimal(value));
+      } else {
+        blackhole.consume(RifParsingUtils.parseInteger(value));
+      }
+    }
+  }
+
+  /**
+   * Parses the values with the {@link RifRecord}-based {@link RifParsingUtils} methods.
+   *
+   * @param blackhole the JMH {@link Blackhole} to sink the values into
+   */
+  @Benchmark
+  @OperationsPerInvocation(VALUE_COUNT)
+  public void rifRecordParsing(Blackhole blackhole) {
+    for (int column = 0; column < record.size(); column++) {
+      if ("DATE".equals(fieldType) || "DATE_COMPACT".equals(fieldType)) {
+        blackhole.consume(RifParsingUtils.parseDate(record, column));
+      } else if ("TIMESTAMP".equals(fieldType)) {
+        blackhole.consume(RifParsingUtils.parseTimestamp(record, column));
+      } else if ("DECIMAL".equals(fieldType)) {
+        blackhole.consume(RifParsingUtils.parseDecimal(record, column));
+      } else {
+        blackhole.consume(RifParsingUtils.parseInteger(record, column));
+      }
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package gov.cms.bfd.pipeline.benchmarks;
+
+import gov.cms.bfd.model.rif.parse.RifParsingUtils;
+import gov.cms.bfd.model.rif.parse.RifRecord;
+import gov.cms.bfd.model.rif.parse.RifRecordTokenizer;
+import gov.cms.bfd.model.rif.samples.StaticRifResource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH micro-benchmarks comparing {@link RifRecordTokenizer} against the commons-csv {@link
+ * RifParsingUtils#CSV_FORMAT} tokenization that it replaces, on the {@link StaticRifResource}
+ * samples. Each operation tokenizes one entire sample file.
+ *
+ * <p>Note: JMH generates subclasses of its <code>@State</code> classes, so this class can't be
+ * <code>final</code>.
+ */
+@State(Scope.Benchmark)
+public class RifTokenizerBenchmark {
+  /** The {@link StaticRifResource} to tokenize. */
+  @Param({"SAMPLE_A_BENES", "SAMPLE_A_CARRIER", "SAMPLE_A_INPATIENT", "SAMPLE_MCT_PDE"})
+  public String sampleName;
+
+  private byte[] sampleBytes;
+
+  /**
+   * Runs the benchmarks in this class.
+   *
+   * <p>Note: This method is the JUnit entry point used by failsafe, which will only run it when
+   * <code>-DskipBenchmarks=false</code> is specified.
+   */
+  @Test
+  public void runBenchmarks() {
+    BenchmarkUtilities.runJmhBenchmarks(RifTokenizerBenchmark.class);
+  }
+
+  /**
+   * Reads the {@link #sampleName} data into memory, so that I/O doesn't skew the results.
+   *
+   * @throws IOException (indicates an error in the sample data)
+   */
+  @Setup
+  public void loadSample() throws IOException {
+    try (InputStream sampleStream =
+        StaticRifResource.valueOf(sampleName).getResourceUrl().openStream()) {
+      sampleBytes = IOUtils.toByteArray(sampleStream);
+    }
+  }
+
+  /**
+   * Tokenizes the sample with {@link RifParsingUtils#CSV_FORMAT}, reading every column.
+   *
+   * @param blackhole the JMH {@link Blackhole} to sink the values into
+   * @throws IOException (indicates an error in the sample data)
+   */
+  @Benchmark
+  public void csvFormat(Blackhole blackhole) throws IOException {
+    try (CSVParser parser =
+        RifParsingUtils.createCsvParser(
+            RifParsingUtils.CSV_FORMAT,
+            new ByteArrayInputStream(sampleBytes),
+            StandardCharsets.UTF_8)) {
+      for (CSVRecord record : parser) {
+        for (int column = 0; column < record.size(); column++)
+          blackhole.consume(record.get(column));
+      }
+    }
+  }
+
+  /**
+   * Tokenizes the sample with {@link RifRecordTokenizer}, creating a {@link String} for every
+   * column (i.e. the worst case for it).
+   *
+   * @param blackhole the JMH {@link Blackhole} to sink the values into
+   */
+  @Benchmark
+  public void rifTokenizer(Blackhole blackhole) {
+    RifRecordTokenizer tokenizer =
+        new RifRecordTokenizer(ByteBuffer.wrap(sampleBytes), StandardCharsets.UTF_8, null);
+    while (tokenizer.hasNext()) {
+      RifRecord record = tokenizer.next();
+      for (int column = 0; column < record.size(); column++)
+        blackhole.consume(record.getString(column));
+    }
+    tokenizer.close();
+  }
+
+  /**
+   * Tokenizes the sample with {@link RifRecordTokenizer}, without creating any {@link String}s,
+   * which is roughly what happens for the many empty and numeric columns in real data.
+   *
+   * @param blackhole the JMH {@link Blackhole} to sink the values into
+   */
+  @Benchmark
+  public void rifTokenizerWithoutStrings(Blackhole blackhole) {
+    RifRecordTokenizer tokenizer =
+        new RifRecordTokenizer(ByteBuffer.wrap(sampleBytes), StandardCharsets.UTF_8, null);
+    while (tokenizer.hasNext()) {
+      RifRecord record = tokenizer.next();
+      for (int column = 0; column < record.size(); column++)
+        blackhole.consume(record.length(column));
+    }
+    tokenizer.close();
+  }
+}
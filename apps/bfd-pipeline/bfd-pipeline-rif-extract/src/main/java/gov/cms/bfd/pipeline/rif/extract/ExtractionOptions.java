@@ -5,6 +5,7 @@ import com.amazonaws.services.s3.model.ListObjectsV2Request;
 import gov.cms.bfd.model.rif.RifFileType;
 import gov.cms.bfd.pipeline.rif.extract.s3.DataSetManifest;
 import gov.cms.bfd.pipeline.rif.extract.s3.S3Utilities;
+import gov.cms.bfd.pipeline.rif.extract.s3.task.S3TaskManager;
 import java.io.Serializable;
 import java.util.Optional;
 import java.util.function.Predicate;
@@ -16,6 +17,12 @@ public final class ExtractionOptions implements Serializable {
   private final String s3BucketName;
   private final RifFileType allowedRifFileType;
   private final Integer s3ListMaxKeys;
+  private final int parsingThreads;
+  private final boolean s3StreamingEnabled;
+  private final int downloadThreads;
+  private final long downloadDiskBudget;
+  private final Long downloadBandwidthLimit;
+  private final String dataSetNotificationQueueUrl;
 
   /**
    * Constructs a new {@link ExtractionOptions} instance.
@@ -36,9 +43,121 @@ public final class ExtractionOptions implements Serializable {
    */
   public ExtractionOptions(
       String s3BucketName, RifFileType allowedRifFileType, Integer s3ListMaxKeys) {
+    this(
+        s3BucketName,
+        allowedRifFileType,
+        s3ListMaxKeys,
+        RifFilesProcessor.DEFAULT_PARSING_THREADS);
+  }
+
+  /**
+   * Constructs a new {@link ExtractionOptions} instance.
+   *
+   * @param s3BucketName the value to use for {@link #getS3BucketName()}
+   * @param allowedRifFileType the value to use for {@link #getDataSetFilter()}
+   * @param s3ListMaxKeys the value to use for {@link #getS3ListMaxKeys()}
+   * @param parsingThreads the value to use for {@link #getParsingThreads()}
+   */
+  public ExtractionOptions(
+      String s3BucketName,
+      RifFileType allowedRifFileType,
+      Integer s3ListMaxKeys,
+      int parsingThreads) {
+    this(s3BucketName, allowedRifFileType, s3ListMaxKeys, parsingThreads, false);
+  }
+
+  /**
+   * Constructs a new {@link ExtractionOptions} instance.
+   *
+   * @param s3BucketName the value to use for {@link #getS3BucketName()}
+   * @param allowedRifFileType the value to use for {@link #getDataSetFilter()}
+   * @param s3ListMaxKeys the value to use for {@link #getS3ListMaxKeys()}
+   * @param parsingThreads the value to use for {@link #getParsingThreads()}
+   * @param s3StreamingEnabled the value to use for {@link #isS3StreamingEnabled()}
+   */
+  public ExtractionOptions(
+      String s3BucketName,
+      RifFileType allowedRifFileType,
+      Integer s3ListMaxKeys,
+      int parsingThreads,
+      boolean s3StreamingEnabled) {
+    this(
+        s3BucketName,
+        allowedRifFileType,
+        s3ListMaxKeys,
+        parsingThreads,
+        s3StreamingEnabled,
+        S3TaskManager.DEFAULT_DOWNLOAD_THREADS,
+        S3TaskManager.DEFAULT_DOWNLOAD_DISK_BUDGET,
+        null);
+  }
+
+  /**
+   * Constructs a new {@link ExtractionOptions} instance.
+   *
+   * @param s3BucketName the value to use for {@link #getS3BucketName()}
+   * @param allowedRifFileType the value to use for {@link #getDataSetFilter()}
+   * @param s3ListMaxKeys the value to use for {@link #getS3ListMaxKeys()}
+   * @param parsingThreads the value to use for {@link #getParsingThreads()}
+   * @param s3StreamingEnabled the value to use for {@link #isS3StreamingEnabled()}
+   * @param downloadThreads the value to use for {@link #getDownloadThreads()}
+   * @param downloadDiskBudget the value to use for {@link #getDownloadDiskBudget()}
+   * @param downloadBandwidthLimit the value to use for {@link #getDownloadBandwidthLimit()}
+   */
+  public ExtractionOptions(
+      String s3BucketName,
+      RifFileType allowedRifFileType,
+      Integer s3ListMaxKeys,
+      int parsingThreads,
+      boolean s3StreamingEnabled,
+      int downloadThreads,
+      long downloadDiskBudget,
+      Long downloadBandwidthLimit) {
+    this(
+        s3BucketName,
+        allowedRifFileType,
+        s3ListMaxKeys,
+        parsingThreads,
+        s3StreamingEnabled,
+        downloadThreads,
+        downloadDiskBudget,
+        downloadBandwidthLimit,
+        null);
+  }
+
+  /**
+   * Constructs a new {@link ExtractionOptions} instance.
+   *
+   * @param s3BucketName the value to use for {@link #getS3BucketName()}
+   * @param allowedRifFileType the value to use for {@link #getDataSetFilter()}
+   * @param s3ListMaxKeys the value to use for {@link #getS3ListMaxKeys()}
+   * @param parsingThreads the value to use for {@link #getParsingThreads()}
+   * @param s3StreamingEnabled the value to use for {@link #isS3StreamingEnabled()}
+   * @param downloadThreads the value to use for {@link #getDownloadThreads()}
+   * @param downloadDiskBudget the value to use for {@link #getDownloadDiskBudget()}
+   * @param downloadBandwidthLimit the value to use for {@link #getDownloadBandwidthLimit()}
+   * @param dataSetNotificationQueueUrl the value to use for {@link
+   *     #getDataSetNotificationQueueUrl()}
+   */
+  public ExtractionOptions(
+      String s3BucketName,
+      RifFileType allowedRifFileType,
+      Integer s3ListMaxKeys,
+      int parsingThreads,
+      boolean s3StreamingEnabled,
+      int downloadThreads,
+      long downloadDiskBudget,
+      Long downloadBandwidthLimit,
+      String dataSetNotificationQueueUrl) {
     this.s3BucketName = s3BucketName;
     this.allowedRifFileType = allowedRifFileType;
     this.s3ListMaxKeys = s3ListMaxKeys;
+    this.parsingThreads = parsingThreads;
+    this.s3StreamingEnabled = s3StreamingEnabled;
+    this.downloadThreads = downloadThreads;
+    this.downloadDiskBudget = downloadDiskBudget;
+    this.downloadBandwidthLimit = downloadBandwidthLimit;
+    this.dataSetNotificationQueueUrl = dataSetNotificationQueueUrl;
   }
 
   /**
@@ -100,6 +219,55 @@ public final class ExtractionOptions implements Serializable {
     return Optional.ofNullable(s3ListMaxKeys);
   }
 
+  /**
+   * @return the number of threads that {@link RifFilesProcessor} should use to parse each RIF file,
+   *     where <code>1</code> indicates that each file will be parsed sequentially
+   */
+  public int getParsingThreads() {
+    return parsingThreads;
+  }
+
+  /**
+   * @return <code>true</code> if RIF files should be streamed directly from S3 and parsed while
+   *     they're being downloaded, <code>false</code> if each should instead be downloaded to a
+   *     local temp file first
+   */
+  public boolean isS3StreamingEnabled() {
+    return s3StreamingEnabled;
+  }
+
+  /** @return the maximum number of RIF files that {@link S3TaskManager} should download at once */
+  public int getDownloadThreads() {
+    return downloadThreads;
+  }
+
+  /**
+   * @return the maximum number of bytes of temp disk space that {@link S3TaskManager} should use
+   *     for downloaded RIF files (including those prefetched for upcoming data sets) that haven't
+   *     been processed yet
+   */
+  public long getDownloadDiskBudget() {
+    return downloadDiskBudget;
+  }
+
+  /**
+   * @return the maximum combined rate (in bytes per second) that {@link S3TaskManager} should
+   *     download RIF files at, or {@link Optional#empty()} if it should be unlimited
+   */
+  public Optional<Long> getDownloadBandwidthLimit() {
+    return Optional.ofNullable(downloadBandwidthLimit);
+  }
+
+  /**
+   * @return the URL of the Amazon SQS queue that S3 sends object-created notifications for the
+   *     {@link #getS3BucketName()} bucket to, which will be used to discover new data sets as soon
+   *     as they arrive (with only infrequent S3 scans as a fallback), or {@link Optional#empty()}
+   *     if new data sets should be discovered by regularly scanning S3
+   */
+  public Optional<String> getDataSetNotificationQueueUrl() {
+    return Optional.ofNullable(dataSetNotificationQueueUrl);
+  }
+
   /** @see java.lang.Object#toString() */
   @Override
   public String toString() {
@@ -108,6 +276,18 @@ public final class ExtractionOptions implements Serializable {
     builder.append(s3BucketName);
     builder.append(", allowedRifFileType=");
     builder.append(allowedRifFileType);
+    builder.append(", parsingThreads=");
+    builder.append(parsingThreads);
+    builder.append(", s3StreamingEnabled=");
+    builder.append(s3StreamingEnabled);
+    builder.append(", downloadThreads=");
+    builder.append(downloadThreads);
+    builder.append(", downloadDiskBudget=");
+    builder.append(downloadDiskBudget);
+    builder.append(", downloadBandwidthLimit=");
+    builder.append(downloadBandwidthLimit);
+    builder.append(", dataSetNotificationQueueUrl=");
+    builder.append(dataSetNotificationQueueUrl);
     builder.append("]");
     return builder.toString();
   }
@@ -0,0 +1,375 @@
+package gov.cms.bfd.pipeline.rif.extract;
+
+import gov.cms.bfd.model.rif.RifFile;
+import gov.cms.bfd.model.rif.parse.InvalidRifFileFormatException;
+import gov.cms.bfd.model.rif.parse.RifRecord;
+import gov.cms.bfd.model.rif.parse.RifRecordTokenizer;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.apache.commons.io.input.BOMInputStream;
+
+/**
+ * Splits a {@link RifFile} into contiguous byte ranges ("chunks"), each of which can then be parsed
+ * independently of the others, e.g. on separate threads. Chunks always end on a record (line)
+ * boundary and, for grouped {@link gov.cms.bfd.model.rif.RifFileType}s, on a group boundary as
+ * well: all of the lines for a single claim will always end up in the same chunk.
+ *
+ * <p>The header line is consumed when this iterator is constructed, and is available via {@link
+ * #getHeader()}, which should be passed to the {@link RifRecordTokenizer} for each chunk.
+ *
+ * <p>Record boundaries are found with a lightweight scan that follows the same quoting and escaping
+ * rules as {@link RifRecordTokenizer}, so that a line break inside of a quoted or escaped column
+ * never splits its record, without needing to fully tokenize the file.
+ *
+ * <p>This class is not thread-safe: it should only be driven from a single thread, which will then
+ * typically hand off the chunks that it produces to other threads.
+ */
+public final class RifFileChunkIterator
+    implements Iterator<RifFileChunkIterator.RifFileChunk>, Closeable {
+  /** The default (approximate) size of each chunk, in bytes. */
+  public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+  private static final byte DELIMITER = '|';
+  private static final byte ESCAPE = '\\';
+  private static final byte QUOTE = '"';
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+
+  private final InputStream fileStream;
+  private final Charset charset;
+  private final int chunkSize;
+  private final List<String> header;
+  private final int groupingColumnIndex;
+
+  private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+  private int readBufferPosition = 0;
+  private int readBufferLimit = 0;
+  private boolean endOfStream = false;
+
+  /**
+   * The first line of the next chunk, which had to be read ahead to find the end of the previous
+   * chunk's last group, or <code>null</code> if there is no such line.
+   */
+  private byte[] lineFromNextChunk = null;
+
+  /**
+   * The (1-based) record number of the first record in the next chunk, counting the header record
+   * (see {@link RifRecord#getRecordNumber()}).
+   */
+  private long nextRecordNumber = 1L;
+
+  /**
+   * Constructs a new {@link RifFileChunkIterator}, and reads in the {@link RifFile}'s header line.
+   *
+   * @param file the {@link RifFile} to split into chunks
+   * @param groupingColumn the column whose value is shared by all of the lines in a group (e.g. the
+   *     claim ID), or <code>null</code> if the file's lines are not grouped
+   * @param chunkSize the approximate size, in bytes, of each chunk
+   */
+  public RifFileChunkIterator(RifFile file, Enum<?> groupingColumn, int chunkSize) {
+    if (chunkSize < 1) throw new IllegalArgumentException();
+
+    this.fileStream = new BOMInputStream(file.open(), false);
+    this.charset = file.getCharset();
+    this.chunkSize = chunkSize;
+
+    byte[] headerLine = readLine();
+    if (headerLine == null)
+      throw new InvalidRifFileFormatException(
+          String.format("Missing header record in RIF file '%s'.", file.getDisplayName()));
+    RifRecord headerRecord = parseLine(headerLine);
+    List<String> headerColumns = new ArrayList<>(headerRecord.size());
+    for (int column = 0; column < headerRecord.size(); column++)
+      headerColumns.add(headerRecord.getString(column));
+    this.header = Collections.unmodifiableList(headerColumns);
+    this.nextRecordNumber++;
+
+    if (groupingColumn != null) {
+      this.groupingColumnIndex = header.indexOf(groupingColumn.name());
+      if (this.groupingColumnIndex < 0)
+        throw new InvalidRifFileFormatException(
+            String.format(
+                "Missing grouping column '%s' in RIF file '%s'.",
+                groupingColumn.name(), file.getDisplayName()));
+    } else {
+      this.groupingColumnIndex = -1;
+    }
+  }
+
+  /**
+   * @return the file's header record (i.e. its column names), which should be used to tokenize
+   *     each {@link RifFileChunk}
+   */
+  public List<String> getHeader() {
+    return header;
+  }
+
+  /** @see java.util.Iterator#hasNext() */
+  @Override
+  public boolean hasNext() {
+    return lineFromNextChunk != null || !isEndOfData();
+  }
+
+  /** @see java.util.Iterator#next() */
+  @Override
+  public RifFileChunk next() {
+    if (!hasNext()) throw new NoSuchElementException();
+
+    ByteArrayOutputStream chunkBytes = new ByteArrayOutputStream(chunkSize + READ_BUFFER_SIZE);
+    long firstRecordNumber = nextRecordNumber;
+    byte[] lastLine = null;
+
+    if (lineFromNextChunk != null) {
+      lastLine = lineFromNextChunk;
+      lineFromNextChunk = null;
+      appendLine(chunkBytes, lastLine);
+    }
+
+    while (chunkBytes.size() < chunkSize) {
+      byte[] line = readLine();
+      if (line == null) break;
+      lastLine = line;
+      appendLine(chunkBytes, line);
+    }
+
+    /*
+     * For grouped files, keep going until we hit a line that's part of a different group. That
+     * line has to be held for the next chunk.
+     */
+    if (groupingColumnIndex >= 0 && lastLine != null) {
+      RifRecord lastGroupRecord = parseGroupingLine(lastLine);
+      while (true) {
+        byte[] line = readLine();
+        if (line == null) break;
+        if (!lastGroupRecord.valueEquals(groupingColumnIndex, parseGroupingLine(line))) {
+          lineFromNextChunk = line;
+          break;
+        }
+        appendLine(chunkBytes, line);
+      }
+    }
+
+    return new RifFileChunk(firstRecordNumber, chunkBytes.toByteArray(), charset);
+  }
+
+  /** @see java.io.Closeable#close() */
+  @Override
+  public void close() throws IOException {
+    fileStream.close();
+  }
+
+  /**
+   * @param chunkBytes the {@link ByteArrayOutputStream} to append to
+   * @param line the line to append
+   */
+  private void appendLine(ByteArrayOutputStream chunkBytes, byte[] line) {
+    chunkBytes.write(line, 0, line.length);
+    nextRecordNumber++;
+  }
+
+  /**
+   * @param line the (complete) line to parse
+   * @return the {@link RifRecord} for the specified line, which is guaranteed to have a value for
+   *     the grouping column
+   */
+  private RifRecord parseGroupingLine(byte[] line) {
+    RifRecord record = parseLine(line);
+    if (groupingColumnIndex >= record.size())
+      throw new InvalidRifFileFormatException(
+          String.format("Record number '%d' is missing its grouping column.", nextRecordNumber));
+    return record;
+  }
+
+  /**
+   * @param line the line to parse
+   * @return the {@link RifRecord} for the specified line
+   */
+  private RifRecord parseLine(byte[] line) {
+    RifRecordTokenizer lineTokenizer =
+        new RifRecordTokenizer(ByteBuffer.wrap(line), charset, Collections.emptyList());
+    if (!lineTokenizer.hasNext())
+      throw new InvalidRifFileFormatException(
+          String.format("Unable to parse record number '%d'.", nextRecordNumber));
+    RifRecord record = lineTokenizer.next();
+    if (lineTokenizer.hasNext())
+      throw new InvalidRifFileFormatException(
+          String.format("Unable to parse record number '%d'.", nextRecordNumber));
+    return record;
+  }
+
+  /**
+   * Reads the next record's line(s) from the file. Records are split using the same rules as
+   * {@link RifRecordTokenizer}: <code>\n</code>, <code>\r\n</code>, and <code>\r</code> all end a
+   * record, except when they're escaped (with a preceding <code>\</code>) or inside of a <code>"
+   * </code>-quoted column (where <code>""</code> is an escaped quote).
+   *
+   * @return the next record in the file, including its line terminator (if any), or <code>null
+   *     </code> if the end of the file has been reached
+   */
+  private byte[] readLine() {
+    ByteArrayOutputStream line = null;
+    boolean columnStart = true;
+    boolean inQuotes = false;
+    boolean escaped = false;
+    boolean quoteInQuotes = false;
+    boolean sawCarriageReturn = false;
+    while (true) {
+      if (readBufferPosition >= readBufferLimit && !fillReadBuffer()) {
+        if (line == null || line.size() == 0) return null;
+        byte[] result = line.toByteArray();
+        return isBlank(result) ? null : result;
+      }
+
+      int lineEnd = -1;
+      for (int i = readBufferPosition; i < readBufferLimit; i++) {
+        byte b = readBuffer[i];
+        if (sawCarriageReturn) {
+          // A "\r" ends the record, along with the "\n" after it, if there is one.
+          lineEnd = b == LF ? i + 1 : i;
+          break;
+        }
+
+        if (escaped) {
+          escaped = false;
+          continue;
+        }
+        if (quoteInQuotes) {
+          quoteInQuotes = false;
+          if (b == QUOTE) continue; // It was an escaped quote, so the column's still quoted.
+          inQuotes = false;
+        }
+        if (inQuotes) {
+          if (b == ESCAPE) escaped = true;
+          else if (b == QUOTE) quoteInQuotes = true;
+          continue;
+        }
+
+        if (b == LF) {
+          lineEnd = i + 1;
+          break;
+        } else if (b == CR) {
+          sawCarriageReturn = true;
+        } else if (b == DELIMITER) {
+          columnStart = true;
+        } else {
+          if (b == ESCAPE) escaped = true;
+          else if (b == QUOTE && columnStart) inQuotes = true;
+          columnStart = false;
+        }
+      }
+
+      if (lineEnd >= 0) {
+        byte[] result;
+        if (line == null) {
+          result = Arrays.copyOfRange(readBuffer, readBufferPosition, lineEnd);
+        } else {
+          line.write(readBuffer, readBufferPosition, lineEnd - readBufferPosition);
+          result = line.toByteArray();
+        }
+        readBufferPosition = lineEnd;
+
+        // Skip over any blank lines, just as CSVParser would.
+        if (isBlank(result)) {
+          line = null;
+          columnStart = true;
+          sawCarriageReturn = false;
+          continue;
+        }
+        return result;
+      } else {
+        if (line == null) line = new ByteArrayOutputStream();
+        line.write(readBuffer, readBufferPosition, readBufferLimit - readBufferPosition);
+        readBufferPosition = readBufferLimit;
+      }
+    }
+  }
+
+  /**
+   * @return <code>true</code> if more data was read into {@link #readBuffer}, <code>false</code> if
+   *     the end of the stream has been reached
+   */
+  private boolean fillReadBuffer() {
+    if (endOfStream) return false;
+    try {
+      int bytesRead = fileStream.read(readBuffer, 0, readBuffer.length);
+      if (bytesRead < 0) {
+        endOfStream = true;
+        return false;
+      }
+      readBufferPosition = 0;
+      readBufferLimit = bytesRead;
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** @return <code>true</code> if there's no more (unread) data left in the file */
+  private boolean isEndOfData() {
+    if (readBufferPosition < readBufferLimit) return false;
+    return !fillReadBuffer();
+  }
+
+  /**
+   * @param line the line to check
+   * @return <code>true</code> if the specified line contains only a line terminator
+   */
+  private static boolean isBlank(byte[] line) {
+    for (byte b : line) if (b != CR && b != LF) return false;
+    return true;
+  }
+
+  /**
+   * Represents a contiguous range of complete records from a {@link RifFile}, which can be parsed
+   * independently of the rest of the file.
+   */
+  public static final class RifFileChunk {
+    private final long firstRecordNumber;
+    private final byte[] bytes;
+    private final Charset charset;
+
+    /**
+     * Constructs a new {@link RifFileChunk}.
+     *
+     * @param firstRecordNumber the value to use for {@link #getFirstRecordNumber()}
+     * @param bytes the value to use for {@link #getBytes()}
+     * @param charset the value to use for {@link #getCharset()}
+     */
+    public RifFileChunk(long firstRecordNumber, byte[] bytes, Charset charset) {
+      this.firstRecordNumber = firstRecordNumber;
+      this.bytes = bytes;
+      this.charset = charset;
+    }
+
+    /**
+     * @return the (1-based, counting the header, just as {@link RifRecord#getRecordNumber()} does)
+     *     record number, within the overall file, of the first record in this {@link RifFileChunk}
+     */
+    public long getFirstRecordNumber() {
+      return firstRecordNumber;
+    }
+
+    /** @return the raw bytes of this {@link RifFileChunk} */
+    public byte[] getBytes() {
+      return bytes;
+    }
+
+    /** @return the {@link Charset} of {@link #getBytes()} */
+    public Charset getCharset() {
+      return charset;
+    }
+  }
+}
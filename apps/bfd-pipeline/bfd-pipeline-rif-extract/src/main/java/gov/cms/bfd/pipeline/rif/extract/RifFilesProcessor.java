@@ -4,24 +4,33 @@ import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.justdavis.karl.misc.exceptions.BadCodeMonkeyException;
 import gov.cms.bfd.model.rif.Beneficiary;
+import gov.cms.bfd.model.rif.BeneficiaryColumn;
 import gov.cms.bfd.model.rif.BeneficiaryHistory;
+import gov.cms.bfd.model.rif.BeneficiaryHistoryColumn;
 import gov.cms.bfd.model.rif.BeneficiaryHistoryParser;
 import gov.cms.bfd.model.rif.BeneficiaryParser;
 import gov.cms.bfd.model.rif.CarrierClaim;
+import gov.cms.bfd.model.rif.CarrierClaimColumn;
 import gov.cms.bfd.model.rif.CarrierClaimParser;
 import gov.cms.bfd.model.rif.DMEClaim;
+import gov.cms.bfd.model.rif.DMEClaimColumn;
 import gov.cms.bfd.model.rif.DMEClaimParser;
 import gov.cms.bfd.model.rif.HHAClaim;
+import gov.cms.bfd.model.rif.HHAClaimColumn;
 import gov.cms.bfd.model.rif.HHAClaimParser;
 import gov.cms.bfd.model.rif.HospiceClaim;
+import gov.cms.bfd.model.rif.HospiceClaimColumn;
 import gov.cms.bfd.model.rif.HospiceClaimParser;
 import gov.cms.bfd.model.rif.InpatientClaim;
+import gov.cms.bfd.model.rif.InpatientClaimColumn;
 import gov.cms.bfd.model.rif.InpatientClaimParser;
 import gov.cms.bfd.model.rif.MedicareBeneficiaryIdHistory;
 import gov.cms.bfd.model.rif.MedicareBeneficiaryIdHistoryParser;
 import gov.cms.bfd.model.rif.OutpatientClaim;
+import gov.cms.bfd.model.rif.OutpatientClaimColumn;
 import gov.cms.bfd.model.rif.OutpatientClaimParser;
 import gov.cms.bfd.model.rif.PartDEvent;
+import gov.cms.bfd.model.rif.PartDEventColumn;
 import gov.cms.bfd.model.rif.PartDEventParser;
 import gov.cms.bfd.model.rif.RecordAction;
 import gov.cms.bfd.model.rif.RifFile;
@@ -31,22 +40,35 @@ import gov.cms.bfd.model.rif.RifFileType;
 import gov.cms.bfd.model.rif.RifFilesEvent;
 import gov.cms.bfd.model.rif.RifRecordEvent;
 import gov.cms.bfd.model.rif.SNFClaim;
+import gov.cms.bfd.model.rif.SNFClaimColumn;
 import gov.cms.bfd.model.rif.SNFClaimParser;
 import gov.cms.bfd.model.rif.parse.InvalidRifValueException;
 import gov.cms.bfd.model.rif.parse.RifParsingUtils;
-import gov.cms.bfd.pipeline.rif.extract.CsvRecordGroupingIterator.ColumnValueCsvRecordGrouper;
-import gov.cms.bfd.pipeline.rif.extract.CsvRecordGroupingIterator.CsvRecordGrouper;
+import gov.cms.bfd.model.rif.parse.RifRecord;
+import gov.cms.bfd.model.rif.parse.RifRecordTokenizer;
+import gov.cms.bfd.pipeline.rif.extract.RifFileChunkIterator.RifFileChunk;
 import gov.cms.bfd.pipeline.rif.extract.exceptions.UnsupportedRifFileTypeException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Spliterator;
 import java.util.Spliterators;
-import java.util.function.BiFunction;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,6 +77,46 @@ public final class RifFilesProcessor {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(RifFilesProcessor.class);
 
+  /** The default value for {@link #RifFilesProcessor(int)}: parse each file sequentially. */
+  public static final int DEFAULT_PARSING_THREADS = 1;
+
+  private final int parsingThreads;
+  private final int chunkSize;
+
+  /**
+   * Constructs a new {@link RifFilesProcessor} instance, which will parse each RIF file
+   * sequentially, on the thread consuming its {@link RifFileRecords#getRecords()} {@link Stream}.
+   */
+  public RifFilesProcessor() {
+    this(DEFAULT_PARSING_THREADS);
+  }
+
+  /**
+   * Constructs a new {@link RifFilesProcessor} instance.
+   *
+   * @param parsingThreads the number of threads to use when parsing each RIF file, where <code>1
+   *     </code> indicates that files should be parsed sequentially
+   */
+  public RifFilesProcessor(int parsingThreads) {
+    this(parsingThreads, RifFileChunkIterator.DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Constructs a new {@link RifFilesProcessor} instance.
+   *
+   * @param parsingThreads the number of threads to use when parsing each RIF file, where <code>1
+   *     </code> indicates that files should be parsed sequentially
+   * @param chunkSize the approximate size (in bytes) of the chunks that each RIF file will be split
+   *     into for parsing, when <code>parsingThreads</code> is greater than <code>1</code>
+   */
+  public RifFilesProcessor(int parsingThreads, int chunkSize) {
+    if (parsingThreads < 1) throw new IllegalArgumentException();
+    if (chunkSize < 1) throw new IllegalArgumentException();
+
+    this.parsingThreads = parsingThreads;
+    this.chunkSize = chunkSize;
+  }
+
   /**
    * @param rifFileEvent the {@link RifFileEvent} that is being processed
    * @return a {@link RifFileRecords} with the {@link RifRecordEvent}s produced from the specified
@@ -63,155 +125,365 @@ public final class RifFilesProcessor {
   public RifFileRecords produceRecords(RifFileEvent rifFileEvent) {
     RifFile file = rifFileEvent.getFile();
 
-    /*
-     * Approach used here to parse CSV as a Java 8 Stream is courtesy of
-     * https://rumianom.pl/rumianom/entry/apache-commons-csv-with-java.
-     */
-
-    CSVParser parser = RifParsingUtils.createCsvParser(file);
-
     boolean isGrouped;
-    BiFunction<RifFileEvent, List<CSVRecord>, RifRecordEvent<?>> recordParser;
+    Function<List<String>, int[]> columnIndexResolver;
+    RecordGroupParser recordParser;
     if (file.getFileType() == RifFileType.BENEFICIARY) {
       isGrouped = false;
+      columnIndexResolver = BeneficiaryParser::resolveColumnIndexes;
       recordParser = RifFilesProcessor::buildBeneficiaryEvent;
     } else if (file.getFileType() == RifFileType.BENEFICIARY_HISTORY) {
       isGrouped = false;
+      columnIndexResolver = BeneficiaryHistoryParser::resolveColumnIndexes;
       recordParser = RifFilesProcessor::buildBeneficiaryHistoryEvent;
     } else if (file.getFileType() == RifFileType.MEDICARE_BENEFICIARY_ID_HISTORY) {
       isGrouped = false;
+      columnIndexResolver = MedicareBeneficiaryIdHistoryParser::resolveColumnIndexes;
       recordParser = RifFilesProcessor::buildMedicareBeneficiaryIdHistoryEvent;
     } else if (file.getFileType() == RifFileType.PDE) {
       isGrouped = false;
+      columnIndexResolver = PartDEventParser::resolveColumnIndexes;
       recordParser = RifFilesProcessor::buildPartDEvent;
     } else if (file.getFileType() == RifFileType.CARRIER) {
       isGrouped = true;
+      columnIndexResolver = CarrierClaimParser::resolveColumnIndexes;
       recordParser = RifFilesProcessor::buildCarrierClaimEvent;
     } else if (file.getFileType() == RifFileType.INPATIENT) {
       isGrouped = true;
+      columnIndexResolver = InpatientClaimParser::resolveColumnIndexes;
       recordParser = RifFilesProcessor::buildInpatientClaimEvent;
     } else if (file.getFileType() == RifFileType.OUTPATIENT) {
       isGrouped = true;
+      columnIndexResolver = OutpatientClaimParser::resolveColumnIndexes;
       recordParser = RifFilesProcessor::buildOutpatientClaimEvent;
     } else if (file.getFileType() == RifFileType.SNF) {
       isGrouped = true;
+      columnIndexResolver = SNFClaimParser::resolveColumnIndexes;
       recordParser = RifFilesProcessor::buildSNFClaimEvent;
     } else if (file.getFileType() == RifFileType.HOSPICE) {
       isGrouped = true;
+      columnIndexResolver = HospiceClaimParser::resolveColumnIndexes;
       recordParser = RifFilesProcessor::buildHospiceClaimEvent;
     } else if (file.getFileType() == RifFileType.HHA) {
       isGrouped = true;
+      columnIndexResolver = HHAClaimParser::resolveColumnIndexes;
       recordParser = RifFilesProcessor::buildHHAClaimEvent;
     } else if (file.getFileType() == RifFileType.DME) {
       isGrouped = true;
+      columnIndexResolver = DMEClaimParser::resolveColumnIndexes;
       recordParser = RifFilesProcessor::buildDMEClaimEvent;
     } else {
       throw new UnsupportedRifFileTypeException("Unsupported file type:" + file.getFileType());
     }
+    Enum<?> groupingColumn = isGrouped ? file.getFileType().getIdColumn() : null;
+
+    Stream<RifRecordEvent<?>> rifRecordStream;
+    if (parsingThreads > 1) {
+      rifRecordStream =
+          produceRecordsInParallel(rifFileEvent, groupingColumn, columnIndexResolver, recordParser);
+    } else {
+      rifRecordStream =
+          produceRecordsSequentially(
+              rifFileEvent, groupingColumn, columnIndexResolver, recordParser);
+    }
+
+    return new RifFileRecords(rifFileEvent, rifRecordStream);
+  }
+
+  /**
+   * @param rifFileEvent the {@link RifFileEvent} that is being processed
+   * @param groupingColumn the column to group records by, or <code>null</code> if records should
+   *     not be grouped
+   * @param columnIndexResolver the {@link Function} that will resolve the file's column indexes
+   *     from its header (see {@link RifParsingUtils#resolveColumnIndexes(List, Enum[])})
+   * @param recordParser the {@link RecordGroupParser} to parse each record group with
+   * @return the {@link RifRecordEvent}s produced from the specified {@link RifFileEvent}, parsed on
+   *     the thread consuming the {@link Stream}
+   */
+  private Stream<RifRecordEvent<?>> produceRecordsSequentially(
+      RifFileEvent rifFileEvent,
+      Enum<?> groupingColumn,
+      Function<List<String>, int[]> columnIndexResolver,
+      RecordGroupParser recordParser) {
+    RifRecordTokenizer tokenizer = RifParsingUtils.createRifTokenizer(rifFileEvent.getFile());
+
+    /*
+     * Resolve the position of every column just once for the whole file, rather than looking each
+     * one up by name for every single value that gets parsed.
+     */
+    int[] columnIndexes;
+    try {
+      columnIndexes = columnIndexResolver.apply(tokenizer.getHeader());
+    } catch (RuntimeException e) {
+      tokenizer.close();
+      throw e;
+    }
+    int groupingColumnIndex = groupingColumn != null ? columnIndexes[groupingColumn.ordinal()] : -1;
 
     /*
-     * Use the CSVParser to drive a Stream of grouped CSVRecords
-     * (specifically, group by claim ID/lines).
+     * Use the RifRecordTokenizer to drive a Stream of grouped RifRecords (specifically, group by
+     * claim ID/lines).
      */
-    CsvRecordGrouper grouper =
-        new ColumnValueCsvRecordGrouper(isGrouped ? file.getFileType().getIdColumn() : null);
-    Iterator<List<CSVRecord>> csvIterator = new CsvRecordGroupingIterator(parser, grouper);
-    Spliterator<List<CSVRecord>> spliterator =
-        Spliterators.spliteratorUnknownSize(csvIterator, Spliterator.ORDERED | Spliterator.NONNULL);
-    Stream<List<CSVRecord>> csvRecordStream =
+    Iterator<List<RifRecord>> recordGroupIterator =
+        new RifRecordGroupingIterator(tokenizer, groupingColumnIndex);
+    Spliterator<List<RifRecord>> spliterator =
+        Spliterators.spliteratorUnknownSize(
+            recordGroupIterator, Spliterator.ORDERED | Spliterator.NONNULL);
+    Stream<List<RifRecord>> recordGroupStream =
         StreamSupport.stream(spliterator, false)
             .onClose(
                 () -> {
                   try {
-                    /*
-                     * This will also close the Reader and InputStream that the
-                     * CSVParser was consuming.
-                     */
-                    parser.close();
-                  } catch (IOException e) {
-                    LOGGER.warn("Unable to close CSVParser", e);
+                    // This will also close the InputStream that the tokenizer was consuming.
+                    tokenizer.close();
+                  } catch (UncheckedIOException e) {
+                    LOGGER.warn("Unable to close RifRecordTokenizer", e);
                   }
                 });
 
     /* Map each record group to a single RifRecordEvent. */
-    Stream<RifRecordEvent<?>> rifRecordStream =
-        csvRecordStream.map(
-            csvRecordGroup -> {
-              try {
-                Timer.Context parsingTimer =
-                    rifFileEvent
-                        .getEventMetrics()
-                        .timer(MetricRegistry.name(getClass().getSimpleName(), "recordParsing"))
-                        .time();
-                RifRecordEvent<?> recordEvent = recordParser.apply(rifFileEvent, csvRecordGroup);
-                parsingTimer.close();
-
-                return recordEvent;
-              } catch (InvalidRifValueException e) {
-                LOGGER.warn(
-                    "Parse error encountered near line number '{}'.",
-                    csvRecordGroup.get(0).getRecordNumber());
-                throw new InvalidRifValueException(e);
-              }
-            });
+    return recordGroupStream.map(
+        recordGroup ->
+            parseRecordGroup(rifFileEvent, columnIndexes, recordParser, recordGroup, 0L));
+  }
 
-    return new RifFileRecords(rifFileEvent, rifRecordStream);
+  /**
+   * Splits the specified {@link RifFileEvent}'s {@link RifFile} into chunks (see {@link
+   * RifFileChunkIterator}) and parses those chunks concurrently, on a dedicated pool of {@link
+   * #parsingThreads} threads. The resulting {@link RifRecordEvent}s are merged back together in
+   * their original file order.
+   *
+   * @param rifFileEvent the {@link RifFileEvent} that is being processed
+   * @param groupingColumn the column to group records by, or <code>null</code> if records should
+   *     not be grouped
+   * @param columnIndexResolver the {@link Function} that will resolve the file's column indexes
+   *     from its header (see {@link RifParsingUtils#resolveColumnIndexes(List, Enum[])})
+   * @param recordParser the {@link RecordGroupParser} to parse each record group with
+   * @return the {@link RifRecordEvent}s produced from the specified {@link RifFileEvent}
+   */
+  private Stream<RifRecordEvent<?>> produceRecordsInParallel(
+      RifFileEvent rifFileEvent,
+      Enum<?> groupingColumn,
+      Function<List<String>, int[]> columnIndexResolver,
+      RecordGroupParser recordParser) {
+    RifFileChunkIterator chunkIterator =
+        new RifFileChunkIterator(rifFileEvent.getFile(), groupingColumn, chunkSize);
+    List<String> header = chunkIterator.getHeader();
+    int[] columnIndexes;
+    try {
+      columnIndexes = columnIndexResolver.apply(header);
+    } catch (RuntimeException e) {
+      try {
+        chunkIterator.close();
+      } catch (IOException closeException) {
+        e.addSuppressed(closeException);
+      }
+      throw e;
+    }
+    int groupingColumnIndex = groupingColumn != null ? columnIndexes[groupingColumn.ordinal()] : -1;
+    ExecutorService parsingExecutor =
+        Executors.newFixedThreadPool(
+            parsingThreads, createParsingThreadFactory(rifFileEvent.getFile().getFileType()));
+
+    /*
+     * Release the parsing threads and the file as soon as the chunks run out (or parsing fails),
+     * rather than relying on the Stream's consumer to close it. This is also run when the Stream is
+     * closed, in case it's abandoned partway through.
+     */
+    AtomicBoolean released = new AtomicBoolean(false);
+    Runnable releaser =
+        () -> {
+          if (!released.compareAndSet(false, true)) return;
+          parsingExecutor.shutdownNow();
+          try {
+            chunkIterator.close();
+          } catch (IOException e) {
+            LOGGER.warn("Unable to close RIF file.", e);
+          }
+        };
+
+    /*
+     * Keep a bounded window of chunks in flight: enough to keep all of the parsing threads busy,
+     * while ensuring that we don't read the whole file into memory if the Stream's consumer is
+     * slower than the parsers (which it usually is).
+     */
+    Iterator<List<RifRecordEvent<?>>> chunkResultsIterator =
+        new OrderedChunkResultsIterator(
+            chunkIterator,
+            chunk ->
+                parsingExecutor.submit(
+                    () ->
+                        parseChunk(
+                            rifFileEvent,
+                            header,
+                            columnIndexes,
+                            groupingColumnIndex,
+                            recordParser,
+                            chunk)),
+            2 * parsingThreads,
+            releaser);
+    Spliterator<List<RifRecordEvent<?>>> spliterator =
+        Spliterators.spliteratorUnknownSize(
+            chunkResultsIterator, Spliterator.ORDERED | Spliterator.NONNULL);
+
+    return StreamSupport.stream(spliterator, false).onClose(releaser).flatMap(List::stream);
+  }
+
+  /**
+   * @param rifFileType the {@link RifFileType} of the file being parsed
+   * @return a {@link ThreadFactory} for daemon threads (so that an abandoned parse can never keep
+   *     the JVM alive) that are named after the file's type, so that they're easy to pick out in
+   *     thread dumps
+   */
+  private static ThreadFactory createParsingThreadFactory(RifFileType rifFileType) {
+    AtomicInteger threadCount = new AtomicInteger();
+    ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+    return runnable -> {
+      Thread thread = defaultFactory.newThread(runnable);
+      thread.setName(
+          String.format(
+              "rif-parse-%s-%d", rifFileType.name().toLowerCase(), threadCount.incrementAndGet()));
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /**
+   * Note: This method will be run on the {@link #produceRecordsInParallel(RifFileEvent, Enum,
+   * Function, RecordGroupParser)} worker threads.
+   *
+   * @param rifFileEvent the {@link RifFileEvent} that is being processed
+   * @param header the file's header record, as returned by {@link RifFileChunkIterator#getHeader()}
+   * @param columnIndexes the file's resolved column indexes
+   * @param groupingColumnIndex the (0-based) index of the column to group records by, or <code>-1
+   *     </code> if records should not be grouped
+   * @param recordParser the {@link RecordGroupParser} to parse each record group with
+   * @param chunk the {@link RifFileChunk} to parse
+   * @return the {@link RifRecordEvent}s produced from the specified {@link RifFileChunk}, in order
+   */
+  private List<RifRecordEvent<?>> parseChunk(
+      RifFileEvent rifFileEvent,
+      List<String> header,
+      int[] columnIndexes,
+      int groupingColumnIndex,
+      RecordGroupParser recordParser,
+      RifFileChunk chunk) {
+    List<RifRecordEvent<?>> recordEvents = new ArrayList<>();
+    RifRecordTokenizer tokenizer =
+        new RifRecordTokenizer(ByteBuffer.wrap(chunk.getBytes()), chunk.getCharset(), header);
+    Iterator<List<RifRecord>> recordGroupIterator =
+        new RifRecordGroupingIterator(tokenizer, groupingColumnIndex);
+    while (recordGroupIterator.hasNext()) {
+      recordEvents.add(
+          parseRecordGroup(
+              rifFileEvent,
+              columnIndexes,
+              recordParser,
+              recordGroupIterator.next(),
+              chunk.getFirstRecordNumber() - 1));
+    }
+    tokenizer.close();
+    return recordEvents;
+  }
+
+  /**
+   * @param rifFileEvent the {@link RifFileEvent} that is being processed
+   * @param columnIndexes the file's resolved column indexes
+   * @param recordParser the {@link RecordGroupParser} to parse the record group with
+   * @param recordGroup the group of {@link RifRecord}s to parse
+   * @param recordNumberOffset the value to add to each {@link RifRecord#getRecordNumber()} to get
+   *     its position in the overall file, which will be non-zero when parsing file chunks (whose
+   *     records are numbered from 1, as the chunks don't include the header)
+   * @return the {@link RifRecordEvent} parsed from the specified {@link RifRecord}s
+   */
+  private RifRecordEvent<?> parseRecordGroup(
+      RifFileEvent rifFileEvent,
+      int[] columnIndexes,
+      RecordGroupParser recordParser,
+      List<RifRecord> recordGroup,
+      long recordNumberOffset) {
+    try {
+      Timer.Context parsingTimer =
+          rifFileEvent
+              .getEventMetrics()
+              .timer(MetricRegistry.name(getClass().getSimpleName(), "recordParsing"))
+              .time();
+      RifRecordEvent<?> recordEvent = recordParser.parse(rifFileEvent, columnIndexes, recordGroup);
+      parsingTimer.close();
+
+      return recordEvent;
+    } catch (InvalidRifValueException e) {
+      String message =
+          String.format(
+              "Parse error encountered near line number '%d'.",
+              recordGroup.get(0).getRecordNumber() + recordNumberOffset);
+      LOGGER.warn(message);
+      throw new InvalidRifValueException(message, e);
+    }
   }
 
   /**
    * @param fileEvent the {@link RifFileEvent} being processed
-   * @param csvRecords the {@link CSVRecord} to be mapped (in a single-element {@link List}), which
+   * @param columnIndexes the file's resolved column indexes
+   * @param rifRecords the {@link RifRecord} to be mapped (in a single-element {@link List}), which
    *     must be from a {@link RifFileType#BENEFICIARY} {@link RifFile}
-   * @return a {@link RifRecordEvent} built from the specified {@link CSVRecord}s
+   * @return a {@link RifRecordEvent} built from the specified {@link RifRecord}s
    */
   private static RifRecordEvent<Beneficiary> buildBeneficiaryEvent(
-      RifFileEvent fileEvent, List<CSVRecord> csvRecords) {
-    if (csvRecords.size() != 1) throw new BadCodeMonkeyException();
-    CSVRecord csvRecord = csvRecords.get(0);
+      RifFileEvent fileEvent, int[] columnIndexes, List<RifRecord> rifRecords) {
+    if (rifRecords.size() != 1) throw new BadCodeMonkeyException();
+    RifRecord rifRecord = rifRecords.get(0);
 
-    if (LOGGER.isTraceEnabled()) LOGGER.trace(csvRecord.toString());
+    if (LOGGER.isTraceEnabled()) LOGGER.trace(rifRecord.toString());
 
-    RecordAction recordAction = RecordAction.match(csvRecord.get("DML_IND"));
-    Beneficiary beneficiaryRow = BeneficiaryParser.parseRif(csvRecords);
+    RecordAction recordAction =
+        RecordAction.match(rifRecord.getString(columnIndexes[BeneficiaryColumn.DML_IND.ordinal()]));
+    Beneficiary beneficiaryRow = BeneficiaryParser.parseRif(rifRecords, columnIndexes);
     return new RifRecordEvent<Beneficiary>(
         fileEvent, recordAction, beneficiaryRow.getBeneficiaryId(), beneficiaryRow);
   }
 
   /**
    * @param fileEvent the {@link RifFileEvent} being processed
-   * @param csvRecords the {@link CSVRecord} to be mapped (in a single-element {@link List}), which
+   * @param columnIndexes the file's resolved column indexes
+   * @param rifRecords the {@link RifRecord} to be mapped (in a single-element {@link List}), which
    *     must be from a {@link RifFileType#BENEFICIARY_HISTORY} {@link RifFile}
-   * @return a {@link RifRecordEvent} built from the specified {@link CSVRecord}s
+   * @return a {@link RifRecordEvent} built from the specified {@link RifRecord}s
    */
   private static RifRecordEvent<BeneficiaryHistory> buildBeneficiaryHistoryEvent(
-      RifFileEvent fileEvent, List<CSVRecord> csvRecords) {
-    if (csvRecords.size() != 1) throw new BadCodeMonkeyException();
-    CSVRecord csvRecord = csvRecords.get(0);
+      RifFileEvent fileEvent, int[] columnIndexes, List<RifRecord> rifRecords) {
+    if (rifRecords.size() != 1) throw new BadCodeMonkeyException();
+    RifRecord rifRecord = rifRecords.get(0);
 
-    if (LOGGER.isTraceEnabled()) LOGGER.trace(csvRecord.toString());
+    if (LOGGER.isTraceEnabled()) LOGGER.trace(rifRecord.toString());
 
-    RecordAction recordAction = RecordAction.match(csvRecord.get("DML_IND"));
-    BeneficiaryHistory beneficiaryHistoryRow = BeneficiaryHistoryParser.parseRif(csvRecords);
+    RecordAction recordAction =
+        RecordAction.match(
+            rifRecord.getString(columnIndexes[BeneficiaryHistoryColumn.DML_IND.ordinal()]));
+    BeneficiaryHistory beneficiaryHistoryRow =
+        BeneficiaryHistoryParser.parseRif(rifRecords, columnIndexes);
     return new RifRecordEvent<BeneficiaryHistory>(
         fileEvent, recordAction, beneficiaryHistoryRow.getBeneficiaryId(), beneficiaryHistoryRow);
   }
 
   /**
    * @param fileEvent the {@link RifFileEvent} being processed
-   * @param csvRecords the {@link CSVRecord} to be mapped (in a single-element {@link List}), which
+   * @param columnIndexes the file's resolved column indexes
+   * @param rifRecords the {@link RifRecord} to be mapped (in a single-element {@link List}), which
    *     must be from a {@link RifFileType#Medicare_Beneficiary_Id_History} {@link RifFile}
-   * @return a {@link RifRecordEvent} built from the specified {@link CSVRecord}s
+   * @return a {@link RifRecordEvent} built from the specified {@link RifRecord}s
    */
   private static RifRecordEvent<MedicareBeneficiaryIdHistory>
-      buildMedicareBeneficiaryIdHistoryEvent(RifFileEvent fileEvent, List<CSVRecord> csvRecords) {
-    if (csvRecords.size() != 1) throw new BadCodeMonkeyException();
-    CSVRecord csvRecord = csvRecords.get(0);
+      buildMedicareBeneficiaryIdHistoryEvent(
+          RifFileEvent fileEvent, int[] columnIndexes, List<RifRecord> rifRecords) {
+    if (rifRecords.size() != 1) throw new BadCodeMonkeyException();
+    RifRecord rifRecord = rifRecords.get(0);
 
-    if (LOGGER.isTraceEnabled()) LOGGER.trace(csvRecord.toString());
+    if (LOGGER.isTraceEnabled()) LOGGER.trace(rifRecord.toString());
 
     RecordAction recordAction = RecordAction.INSERT;
     MedicareBeneficiaryIdHistory medicareBeneficiaryIdHistoryRow =
-        MedicareBeneficiaryIdHistoryParser.parseRif(csvRecords);
+        MedicareBeneficiaryIdHistoryParser.parseRif(rifRecords, columnIndexes);
     return new RifRecordEvent<MedicareBeneficiaryIdHistory>(
         fileEvent,
         recordAction,
@@ -221,143 +493,270 @@ public final class RifFilesProcessor {
 
   /**
    * @param fileEvent the {@link RifFilesEvent} being processed
-   * @param csvRecords the {@link CSVRecord}s to be mapped, which must be from a {@link
+   * @param columnIndexes the file's resolved column indexes
+   * @param rifRecords the {@link RifRecord}s to be mapped, which must be from a {@link
    *     RifFileType#PDE} {@link RifFile}
-   * @return a {@link RifRecordEvent} built from the specified {@link CSVRecord}s
+   * @return a {@link RifRecordEvent} built from the specified {@link RifRecord}s
    */
   private static RifRecordEvent<PartDEvent> buildPartDEvent(
-      RifFileEvent fileEvent, List<CSVRecord> csvRecords) {
-    if (csvRecords.size() != 1) throw new BadCodeMonkeyException();
-    if (LOGGER.isTraceEnabled()) LOGGER.trace(csvRecords.toString());
+      RifFileEvent fileEvent, int[] columnIndexes, List<RifRecord> rifRecords) {
+    if (rifRecords.size() != 1) throw new BadCodeMonkeyException();
+    if (LOGGER.isTraceEnabled()) LOGGER.trace(rifRecords.toString());
 
-    CSVRecord csvRecord = csvRecords.get(0);
+    RifRecord rifRecord = rifRecords.get(0);
 
-    RecordAction recordAction = RecordAction.match(csvRecord.get("DML_IND"));
-    PartDEvent partDEvent = PartDEventParser.parseRif(csvRecords);
+    RecordAction recordAction =
+        RecordAction.match(rifRecord.getString(columnIndexes[PartDEventColumn.DML_IND.ordinal()]));
+    PartDEvent partDEvent = PartDEventParser.parseRif(rifRecords, columnIndexes);
     return new RifRecordEvent<PartDEvent>(
         fileEvent, recordAction, partDEvent.getBeneficiaryId(), partDEvent);
   }
 
   /**
-   * @param fileEvent the {@link RifFileEvent} being processed that is being processed
-   * @param csvRecords the {@link CSVRecord}s to be mapped, which must be from a {@link
+   * @param fileEvent the {@link RifFileEvent} being processed
+   * @param columnIndexes the file's resolved column indexes
+   * @param rifRecords the {@link RifRecord}s to be mapped, which must be from a {@link
    *     RifFileType#INPATIENT} {@link RifFile}
-   * @return a {@link RifRecordEvent} built from the specified {@link CSVRecord}s
+   * @return a {@link RifRecordEvent} built from the specified {@link RifRecord}s
    */
   private static RifRecordEvent<InpatientClaim> buildInpatientClaimEvent(
-      RifFileEvent fileEvent, List<CSVRecord> csvRecords) {
-    if (LOGGER.isTraceEnabled()) LOGGER.trace(csvRecords.toString());
+      RifFileEvent fileEvent, int[] columnIndexes, List<RifRecord> rifRecords) {
+    if (LOGGER.isTraceEnabled()) LOGGER.trace(rifRecords.toString());
 
-    CSVRecord firstCsvRecord = csvRecords.get(0);
+    RifRecord firstRifRecord = rifRecords.get(0);
 
-    RecordAction recordAction = RecordAction.match(firstCsvRecord.get("DML_IND"));
-    InpatientClaim claim = InpatientClaimParser.parseRif(csvRecords);
+    RecordAction recordAction =
+        RecordAction.match(
+            firstRifRecord.getString(columnIndexes[InpatientClaimColumn.DML_IND.ordinal()]));
+    InpatientClaim claim = InpatientClaimParser.parseRif(rifRecords, columnIndexes);
     return new RifRecordEvent<InpatientClaim>(
         fileEvent, recordAction, claim.getBeneficiaryId(), claim);
   }
 
   /**
-   * @param fileEvent the {@link RifFileEvent} being processed that is being processed
-   * @param csvRecords the {@link CSVRecord}s to be mapped, which must be from a {@link
+   * @param fileEvent the {@link RifFileEvent} being processed
+   * @param columnIndexes the file's resolved column indexes
+   * @param rifRecords the {@link RifRecord}s to be mapped, which must be from a {@link
    *     RifFileType#OUTPATIENT} {@link RifFile}
-   * @return a {@link RifRecordEvent} built from the specified {@link CSVRecord}s
+   * @return a {@link RifRecordEvent} built from the specified {@link RifRecord}s
    */
   private static RifRecordEvent<OutpatientClaim> buildOutpatientClaimEvent(
-      RifFileEvent fileEvent, List<CSVRecord> csvRecords) {
-    if (LOGGER.isTraceEnabled()) LOGGER.trace(csvRecords.toString());
+      RifFileEvent fileEvent, int[] columnIndexes, List<RifRecord> rifRecords) {
+    if (LOGGER.isTraceEnabled()) LOGGER.trace(rifRecords.toString());
 
-    CSVRecord firstCsvRecord = csvRecords.get(0);
+    RifRecord firstRifRecord = rifRecords.get(0);
 
-    RecordAction recordAction = RecordAction.match(firstCsvRecord.get("DML_IND"));
-    OutpatientClaim claim = OutpatientClaimParser.parseRif(csvRecords);
+    RecordAction recordAction =
+        RecordAction.match(
+            firstRifRecord.getString(columnIndexes[OutpatientClaimColumn.DML_IND.ordinal()]));
+    OutpatientClaim claim = OutpatientClaimParser.parseRif(rifRecords, columnIndexes);
     return new RifRecordEvent<OutpatientClaim>(
         fileEvent, recordAction, claim.getBeneficiaryId(), claim);
   }
 
   /**
    * @param fileEvent the {@link RifFileEvent} being processed
-   * @param csvRecords the {@link CSVRecord}s to be mapped, which must be from a {@link
+   * @param columnIndexes the file's resolved column indexes
+   * @param rifRecords the {@link RifRecord}s to be mapped, which must be from a {@link
    *     RifFileType#CARRIER} {@link RifFile}
-   * @return a {@link RifRecordEvent} built from the specified {@link CSVRecord}s
+   * @return a {@link RifRecordEvent} built from the specified {@link RifRecord}s
    */
   private static RifRecordEvent<CarrierClaim> buildCarrierClaimEvent(
-      RifFileEvent fileEvent, List<CSVRecord> csvRecords) {
-    if (LOGGER.isTraceEnabled()) LOGGER.trace(csvRecords.toString());
+      RifFileEvent fileEvent, int[] columnIndexes, List<RifRecord> rifRecords) {
+    if (LOGGER.isTraceEnabled()) LOGGER.trace(rifRecords.toString());
 
-    CSVRecord firstCsvRecord = csvRecords.get(0);
+    RifRecord firstRifRecord = rifRecords.get(0);
 
-    RecordAction recordAction = RecordAction.match(firstCsvRecord.get("DML_IND"));
-    CarrierClaim claim = CarrierClaimParser.parseRif(csvRecords);
+    RecordAction recordAction =
+        RecordAction.match(
+            firstRifRecord.getString(columnIndexes[CarrierClaimColumn.DML_IND.ordinal()]));
+    CarrierClaim claim = CarrierClaimParser.parseRif(rifRecords, columnIndexes);
     return new RifRecordEvent<CarrierClaim>(
         fileEvent, recordAction, claim.getBeneficiaryId(), claim);
   }
 
   /**
    * @param fileEvent the {@link RifFileEvent} being processed
-   * @param csvRecords the {@link CSVRecord}s to be mapped, which must be from a {@link
+   * @param columnIndexes the file's resolved column indexes
+   * @param rifRecords the {@link RifRecord}s to be mapped, which must be from a {@link
    *     RifFileType#SNF} {@link RifFile}
-   * @return a {@link RifRecordEvent} built from the specified {@link CSVRecord}s
+   * @return a {@link RifRecordEvent} built from the specified {@link RifRecord}s
    */
   private static RifRecordEvent<SNFClaim> buildSNFClaimEvent(
-      RifFileEvent fileEvent, List<CSVRecord> csvRecords) {
-    if (LOGGER.isTraceEnabled()) LOGGER.trace(csvRecords.toString());
+      RifFileEvent fileEvent, int[] columnIndexes, List<RifRecord> rifRecords) {
+    if (LOGGER.isTraceEnabled()) LOGGER.trace(rifRecords.toString());
 
-    CSVRecord firstCsvRecord = csvRecords.get(0);
+    RifRecord firstRifRecord = rifRecords.get(0);
 
-    RecordAction recordAction = RecordAction.match(firstCsvRecord.get("DML_IND"));
-    SNFClaim claim = SNFClaimParser.parseRif(csvRecords);
+    RecordAction recordAction =
+        RecordAction.match(
+            firstRifRecord.getString(columnIndexes[SNFClaimColumn.DML_IND.ordinal()]));
+    SNFClaim claim = SNFClaimParser.parseRif(rifRecords, columnIndexes);
     return new RifRecordEvent<SNFClaim>(fileEvent, recordAction, claim.getBeneficiaryId(), claim);
   }
 
   /**
    * @param fileEvent the {@link RifFileEvent} being processed
-   * @param csvRecords the {@link CSVRecord}s to be mapped, which must be from a {@link
+   * @param columnIndexes the file's resolved column indexes
+   * @param rifRecords the {@link RifRecord}s to be mapped, which must be from a {@link
    *     RifFileType#HOSPICE} {@link RifFile}
-   * @return a {@link RifRecordEvent} built from the specified {@link CSVRecord}s
+   * @return a {@link RifRecordEvent} built from the specified {@link RifRecord}s
    */
   private static RifRecordEvent<HospiceClaim> buildHospiceClaimEvent(
-      RifFileEvent fileEvent, List<CSVRecord> csvRecords) {
-    if (LOGGER.isTraceEnabled()) LOGGER.trace(csvRecords.toString());
+      RifFileEvent fileEvent, int[] columnIndexes, List<RifRecord> rifRecords) {
+    if (LOGGER.isTraceEnabled()) LOGGER.trace(rifRecords.toString());
 
-    CSVRecord firstCsvRecord = csvRecords.get(0);
+    RifRecord firstRifRecord = rifRecords.get(0);
 
-    RecordAction recordAction = RecordAction.match(firstCsvRecord.get("DML_IND"));
-    HospiceClaim claim = HospiceClaimParser.parseRif(csvRecords);
+    RecordAction recordAction =
+        RecordAction.match(
+            firstRifRecord.getString(columnIndexes[HospiceClaimColumn.DML_IND.ordinal()]));
+    HospiceClaim claim = HospiceClaimParser.parseRif(rifRecords, columnIndexes);
     return new RifRecordEvent<HospiceClaim>(
         fileEvent, recordAction, claim.getBeneficiaryId(), claim);
   }
 
   /**
    * @param fileEvent the {@link RifFileEvent} being processed
-   * @param csvRecords the {@link CSVRecord}s to be mapped, which must be from a {@link
+   * @param columnIndexes the file's resolved column indexes
+   * @param rifRecords the {@link RifRecord}s to be mapped, which must be from a {@link
    *     RifFileType#HHA} {@link RifFile}
-   * @return a {@link RifRecordEvent} built from the specified {@link CSVRecord}s
+   * @return a {@link RifRecordEvent} built from the specified {@link RifRecord}s
    */
   private static RifRecordEvent<HHAClaim> buildHHAClaimEvent(
-      RifFileEvent fileEvent, List<CSVRecord> csvRecords) {
-    if (LOGGER.isTraceEnabled()) LOGGER.trace(csvRecords.toString());
+      RifFileEvent fileEvent, int[] columnIndexes, List<RifRecord> rifRecords) {
+    if (LOGGER.isTraceEnabled()) LOGGER.trace(rifRecords.toString());
 
-    CSVRecord firstCsvRecord = csvRecords.get(0);
+    RifRecord firstRifRecord = rifRecords.get(0);
 
-    RecordAction recordAction = RecordAction.match(firstCsvRecord.get("DML_IND"));
-    HHAClaim claim = HHAClaimParser.parseRif(csvRecords);
+    RecordAction recordAction =
+        RecordAction.match(
+            firstRifRecord.getString(columnIndexes[HHAClaimColumn.DML_IND.ordinal()]));
+    HHAClaim claim = HHAClaimParser.parseRif(rifRecords, columnIndexes);
     return new RifRecordEvent<HHAClaim>(fileEvent, recordAction, claim.getBeneficiaryId(), claim);
   }
 
   /**
    * @param fileEvent the {@link RifFileEvent} being processed
-   * @param csvRecords the {@link CSVRecord}s to be mapped, which must be from a {@link
+   * @param columnIndexes the file's resolved column indexes
+   * @param rifRecords the {@link RifRecord}s to be mapped, which must be from a {@link
    *     RifFileType#DME} {@link RifFile}
-   * @return a {@link RifRecordEvent} built from the specified {@link CSVRecord}s
+   * @return a {@link RifRecordEvent} built from the specified {@link RifRecord}s
    */
   private static RifRecordEvent<DMEClaim> buildDMEClaimEvent(
-      RifFileEvent fileEvent, List<CSVRecord> csvRecords) {
-    if (LOGGER.isTraceEnabled()) LOGGER.trace(csvRecords.toString());
+      RifFileEvent fileEvent, int[] columnIndexes, List<RifRecord> rifRecords) {
+    if (LOGGER.isTraceEnabled()) LOGGER.trace(rifRecords.toString());
 
-    CSVRecord firstCsvRecord = csvRecords.get(0);
+    RifRecord firstRifRecord = rifRecords.get(0);
 
-    RecordAction recordAction = RecordAction.match(firstCsvRecord.get("DML_IND"));
-    DMEClaim claim = DMEClaimParser.parseRif(csvRecords);
+    RecordAction recordAction =
+        RecordAction.match(
+            firstRifRecord.getString(columnIndexes[DMEClaimColumn.DML_IND.ordinal()]));
+    DMEClaim claim = DMEClaimParser.parseRif(rifRecords, columnIndexes);
     return new RifRecordEvent<DMEClaim>(fileEvent, recordAction, claim.getBeneficiaryId(), claim);
   }
+
+  /**
+   * Implementations of this interface parse a group of {@link RifRecord}s (i.e. a single
+   * beneficiary, claim, etc.) from a specific {@link RifFileType} into a {@link RifRecordEvent}.
+   */
+  @FunctionalInterface
+  private interface RecordGroupParser {
+    /**
+     * @param fileEvent the {@link RifFileEvent} being processed
+     * @param columnIndexes the file's resolved column indexes
+     * @param rifRecords the {@link RifRecord}s to be mapped
+     * @return a {@link RifRecordEvent} built from the specified {@link RifRecord}s
+     */
+    RifRecordEvent<?> parse(
+        RifFileEvent fileEvent, int[] columnIndexes, List<RifRecord> rifRecords);
+  }
+
+  /**
+   * Drives a {@link RifFileChunkIterator}, submitting each {@link RifFileChunk} for parsing as
+   * capacity allows, and returns the parsed results in the original chunk order.
+   */
+  private static final class OrderedChunkResultsIterator
+      implements Iterator<List<RifRecordEvent<?>>> {
+    private final RifFileChunkIterator chunkIterator;
+    private final Function<RifFileChunk, Future<List<RifRecordEvent<?>>>> chunkSubmitter;
+    private final int maxChunksInFlight;
+    private final Runnable releaser;
+    private final Deque<Future<List<RifRecordEvent<?>>>> chunksInFlight;
+
+    /**
+     * Constructs a new {@link OrderedChunkResultsIterator}.
+     *
+     * @param chunkIterator the {@link RifFileChunkIterator} to pull {@link RifFileChunk}s from
+     * @param chunkSubmitter the {@link Function} that will submit each {@link RifFileChunk} for
+     *     (asynchronous) parsing
+     * @param maxChunksInFlight the maximum number of {@link RifFileChunk}s to have submitted but
+     *     not yet returned at any one time
+     * @param releaser the {@link Runnable} to release the parsing resources with, once all of the
+     *     chunks have been returned, or as soon as any of them fail
+     */
+    OrderedChunkResultsIterator(
+        RifFileChunkIterator chunkIterator,
+        Function<RifFileChunk, Future<List<RifRecordEvent<?>>>> chunkSubmitter,
+        int maxChunksInFlight,
+        Runnable releaser) {
+      this.chunkIterator = chunkIterator;
+      this.chunkSubmitter = chunkSubmitter;
+      this.maxChunksInFlight = maxChunksInFlight;
+      this.releaser = releaser;
+      this.chunksInFlight = new ArrayDeque<>(maxChunksInFlight);
+    }
+
+    /** @see java.util.Iterator#hasNext() */
+    @Override
+    public boolean hasNext() {
+      try {
+        submitChunks();
+      } catch (RuntimeException e) {
+        release();
+        throw e;
+      }
+      if (chunksInFlight.isEmpty()) {
+        releaser.run();
+        return false;
+      }
+      return true;
+    }
+
+    /** @see java.util.Iterator#next() */
+    @Override
+    public List<RifRecordEvent<?>> next() {
+      if (!hasNext()) throw new NoSuchElementException();
+
+      Future<List<RifRecordEvent<?>>> nextChunk = chunksInFlight.removeFirst();
+      try {
+        submitChunks();
+        return nextChunk.get();
+      } catch (InterruptedException e) {
+        release();
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(e);
+      } catch (ExecutionException e) {
+        release();
+        if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+        throw new IllegalStateException(e.getCause());
+      } catch (RuntimeException e) {
+        release();
+        throw e;
+      }
+    }
+
+    /** Cancels any {@link RifFileChunk}s still in flight, and releases the parsing resources. */
+    private void release() {
+      for (Future<List<RifRecordEvent<?>>> chunk : chunksInFlight) chunk.cancel(true);
+      chunksInFlight.clear();
+      releaser.run();
+    }
+
+    /** Submits as many {@link RifFileChunk}s as there is room for. */
+    private void submitChunks() {
+      while (chunksInFlight.size() < maxChunksInFlight && chunkIterator.hasNext())
+        chunksInFlight.addLast(chunkSubmitter.apply(chunkIterator.next()));
+    }
+  }
 }
@@ -0,0 +1,76 @@
+package gov.cms.bfd.pipeline.rif.extract;
+
+import gov.cms.bfd.model.rif.parse.RifRecord;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+/**
+ * This {@link Iterator} groups together adjacent {@link RifRecord}s that share the same value in a
+ * single column (typically the claim ID). It's the {@link RifRecord} equivalent of {@link
+ * CsvRecordGroupingIterator}, but compares the grouping column's raw values in place, rather than
+ * pulling each one out into a {@link String}.
+ *
+ * <p>Like {@link CsvRecordGroupingIterator}, this class is not thread-safe, and <strong>may not be
+ * used with parallel {@link Stream}s</strong>, only sequential ones.
+ */
+public final class RifRecordGroupingIterator implements Iterator<List<RifRecord>> {
+  private final Iterator<RifRecord> singleRecordIter;
+  private final int groupingColumnIndex;
+
+  /**
+   * The first {@link RifRecord} of the next group, which had to be read ahead to find the end of
+   * the previous group, or <code>null</code> if there is no such record.
+   */
+  private RifRecord recordFromNextGroup = null;
+
+  /**
+   * Constructs a new {@link RifRecordGroupingIterator} instance.
+   *
+   * @param singleRecordIter the {@link Iterator} of individual {@link RifRecord}s to group
+   * @param groupingColumnIndex the (0-based) index of the column to group by, or <code>-1</code> if
+   *     no records should be grouped
+   */
+  public RifRecordGroupingIterator(Iterator<RifRecord> singleRecordIter, int groupingColumnIndex) {
+    this.singleRecordIter = singleRecordIter;
+    this.groupingColumnIndex = groupingColumnIndex;
+  }
+
+  /** @see java.util.Iterator#hasNext() */
+  @Override
+  public boolean hasNext() {
+    return recordFromNextGroup != null || singleRecordIter.hasNext();
+  }
+
+  /** @see java.util.Iterator#next() */
+  @Override
+  public List<RifRecord> next() {
+    if (!hasNext()) throw new NoSuchElementException();
+
+    RifRecord firstRecordInGroup;
+    if (recordFromNextGroup != null) {
+      firstRecordInGroup = recordFromNextGroup;
+      recordFromNextGroup = null;
+    } else {
+      firstRecordInGroup = singleRecordIter.next();
+    }
+    if (groupingColumnIndex < 0) return Collections.singletonList(firstRecordInGroup);
+
+    List<RifRecord> recordGroup = new ArrayList<>();
+    recordGroup.add(firstRecordInGroup);
+    while (singleRecordIter.hasNext()) {
+      RifRecord nextRecord = singleRecordIter.next();
+      if (firstRecordInGroup.valueEquals(groupingColumnIndex, nextRecord)) {
+        recordGroup.add(nextRecord);
+      } else {
+        recordFromNextGroup = nextRecord;
+        break;
+      }
+    }
+
+    return Collections.unmodifiableList(recordGroup);
+  }
+}
@@ -198,6 +198,16 @@ public final class DataSetManifest implements Comparable<DataSetManifest> {
       return type;
     }
 
+    /**
+     * @param s3Prefix the S3 key prefix that should be prepended to the calculated S3 key, e.g. "
+     *     <code>Incoming</code>"
+     * @return the S3 key for the object/file represented by this {@link DataSetManifestEntry},
+     *     under the specified prefix
+     */
+    public String computeS3Key(String s3Prefix) {
+      return String.format("%s/%s/%s", s3Prefix, parentManifest.getTimestampText(), name);
+    }
+
     /**
      * Per the {@link Unmarshaller} JavaDocs, when unmarshalling {@link DataSetManifestEntry}
      * instances from XML via JAX-B, this method is called after all the properties (except IDREF)
@@ -45,7 +45,10 @@ import org.slf4j.LoggerFactory;
  * reference.
  *
  * <p>The ETL operates in a loop: periodically checking for the oldest manifest file that can be
- * found and then handing it off to the rest of the pipeline for processing.
+ * found and then handing it off to the rest of the pipeline for processing. If {@link
+ * ExtractionOptions#getDataSetNotificationQueueUrl()} is configured (or a {@link
+ * DataSetNotificationSource} is provided), those checks will only scan S3 when notifications
+ * indicate that new objects have arrived, plus an occasional reconciliation scan.
  */
 public final class DataSetMonitor {
   /**
@@ -67,6 +70,7 @@ public final class DataSetMonitor {
   private final ExtractionOptions options;
   private final int scanRepeatDelay;
   private final DataSetMonitorListener listener;
+  private DataSetNotificationSource notificationSource;
 
   private TaskExecutor dataSetWatcherExecutor;
   private S3TaskManager s3TaskManager;
@@ -88,10 +92,34 @@ public final class DataSetMonitor {
       ExtractionOptions options,
       int scanRepeatDelay,
       DataSetMonitorListener listener) {
+    this(appMetrics, options, scanRepeatDelay, listener, null);
+  }
+
+  /**
+   * Constructs a new {@link DataSetMonitor} instance. Note that this must be used as a singleton
+   * service in the application: only one instance running at a time is supported.
+   *
+   * @param appMetrics the {@link MetricRegistry} for the overall application
+   * @param options the {@link ExtractionOptions} to use
+   * @param scanRepeatDelay the number of milliseconds to wait after completing one poll/process
+   *     operation and starting another
+   * @param listener the {@link DataSetMonitorListener} that will be notified when events occur
+   * @param notificationSource the {@link DataSetNotificationSource} to use, which this {@link
+   *     DataSetMonitor} will start and close, or <code>null</code> to use an {@link
+   *     SqsDataSetNotificationSource} if {@link ExtractionOptions#getDataSetNotificationQueueUrl()}
+   *     is configured (or to just poll S3, if it isn't)
+   */
+  public DataSetMonitor(
+      MetricRegistry appMetrics,
+      ExtractionOptions options,
+      int scanRepeatDelay,
+      DataSetMonitorListener listener,
+      DataSetNotificationSource notificationSource) {
     this.appMetrics = appMetrics;
     this.options = options;
     this.scanRepeatDelay = scanRepeatDelay;
     this.listener = listener;
+    this.notificationSource = notificationSource;
 
     this.dataSetWatcherExecutor = null;
     this.dataSetWatcherFuture = null;
@@ -110,7 +138,15 @@ public final class DataSetMonitor {
 
     this.dataSetWatcherExecutor = new TaskExecutor("Data Set Watcher Executor", 1);
     this.s3TaskManager = new S3TaskManager(appMetrics, options);
-    this.dataSetWatcher = new DataSetMonitorWorker(appMetrics, options, s3TaskManager, listener);
+    if (notificationSource == null && options.getDataSetNotificationQueueUrl().isPresent())
+      this.notificationSource =
+          new SqsDataSetNotificationSource(
+              appMetrics,
+              S3Utilities.createSqsClient(options),
+              options.getDataSetNotificationQueueUrl().get());
+    if (notificationSource != null) notificationSource.start();
+    this.dataSetWatcher =
+        new DataSetMonitorWorker(appMetrics, options, s3TaskManager, listener, notificationSource);
     Runnable errorNotifyingDataSetWatcher =
         new ErrorNotifyingRunnableWrapper(dataSetWatcher, listener);
 
@@ -158,6 +194,7 @@ public final class DataSetMonitor {
     dataSetWatcherExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
     dataSetWatcherExecutor.shutdown();
     dataSetWatcherFuture.cancel(false);
+    if (notificationSource != null) notificationSource.close();
     waitForStop();
 
     // Clean house.
@@ -9,17 +9,12 @@ import gov.cms.bfd.pipeline.rif.extract.s3.DataSetManifest.DataSetManifestEntry;
 import gov.cms.bfd.pipeline.rif.extract.s3.DataSetManifest.DataSetManifestId;
 import gov.cms.bfd.pipeline.rif.extract.s3.task.DataSetMoveTask;
 import gov.cms.bfd.pipeline.rif.extract.s3.task.S3TaskManager;
-import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
@@ -34,11 +29,34 @@ import org.slf4j.LoggerFactory;
  * one available. If such a manifest is found, it will then wait for all of the objects in the data
  * set represented by it to become available. Once they're all available, it will kick off the
  * processing of the data set, and block until that processing has completed.
+ *
+ * <p>If a {@link DataSetNotificationSource} is provided, the S3 scan will be skipped whenever no
+ * notifications have arrived and the queue is empty, other than a periodic reconciliation scan
+ * (every {@link #RECONCILIATION_SCAN_INTERVAL_MILLIS}) that catches any notifications which went
+ * missing.
  */
 public final class DataSetMonitorWorker implements Runnable {
   private static final Logger LOGGER = LoggerFactory.getLogger(DataSetMonitorWorker.class);
 
-  private static final int GIGA = 1000 * 1000 * 1000;
+  /**
+   * The maximum number of upcoming data sets (after the one being processed) to queue up early
+   * downloads for. The {@link S3TaskManager}'s disk budget is what actually limits how far ahead
+   * those downloads get; this just bounds how many S3 listings are needed to find them.
+   */
+  private static final int MAX_DATA_SETS_TO_PREFETCH = 5;
+
+  /**
+   * The number of milliseconds between the full S3 scans that will be run even when no {@link
+   * DataSetNotificationSource} notifications have arrived.
+   */
+  static final long RECONCILIATION_SCAN_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  /**
+   * The maximum number of milliseconds that each {@link #run()} will wait for a {@link
+   * DataSetNotificationSource} notification to arrive, before giving up until its next run. This
+   * keeps the worker responsive to {@link DataSetMonitor#stop()} requests.
+   */
+  private static final long NOTIFICATION_WAIT_MILLIS = 1000L;
 
   /** The directory name that pending/incoming RIF data sets will be pulled from in S3. */
   public static final String S3_PREFIX_PENDING_DATA_SETS = "Incoming";
@@ -78,9 +96,13 @@ public final class DataSetMonitorWorker implements Runnable {
   private final ExtractionOptions options;
   private final DataSetMonitorListener listener;
   private final S3TaskManager s3TaskManager;
+  private final DataSetNotificationSource notificationSource;
 
   private final DataSetQueue dataSetQueue;
 
+  /** The {@link System#nanoTime()} of the last S3 scan, or <code>null</code> if none has run. */
+  private Long lastScanNanos;
+
   /**
    * Constructs a new {@link DataSetMonitorWorker} instance.
    *
@@ -94,20 +116,63 @@ public final class DataSetMonitorWorker implements Runnable {
       ExtractionOptions options,
       S3TaskManager s3TaskManager,
       DataSetMonitorListener listener) {
+    this(appMetrics, options, s3TaskManager, listener, null);
+  }
+
+  /**
+   * Constructs a new {@link DataSetMonitorWorker} instance.
+   *
+   * @param appMetrics the {@link MetricRegistry} for the overall application
+   * @param options the {@link ExtractionOptions} to use
+   * @param s3TaskManager the {@link S3TaskManager} to use
+   * @param listener the {@link DataSetMonitorListener} to send events to
+   * @param notificationSource the (already started) {@link DataSetNotificationSource} to use to
+   *     avoid unnecessary S3 scans, or <code>null</code> to scan S3 on every run
+   */
+  public DataSetMonitorWorker(
+      MetricRegistry appMetrics,
+      ExtractionOptions options,
+      S3TaskManager s3TaskManager,
+      DataSetMonitorListener listener,
+      DataSetNotificationSource notificationSource) {
     this.appMetrics = appMetrics;
     this.options = options;
     this.listener = listener;
     this.s3TaskManager = s3TaskManager;
+    this.notificationSource = notificationSource;
 
     this.dataSetQueue = new DataSetQueue(appMetrics, options, s3TaskManager);
+    this.lastScanNanos = null;
   }
 
   /** @see java.lang.Runnable#run() */
   @Override
   public void run() {
+    /*
+     * If we're being told about new objects, there's no point in scanning S3
+     * until we've heard about some, unless we've still got data sets queued
+     * up or it's time for a reconciliation scan.
+     */
+    if (notificationSource != null && dataSetQueue.isEmpty() && !isReconciliationScanDue()) {
+      boolean changesReceived;
+      try {
+        changesReceived =
+            notificationSource.awaitChanges(NOTIFICATION_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        // Interrupts should not be used on this thread, so go boom.
+        throw new RuntimeException(e);
+      }
+
+      if (!changesReceived) {
+        listener.noDataAvailable();
+        return;
+      }
+    }
+
     LOGGER.debug("Scanning for data sets to process...");
 
     // Update the queue from S3.
+    lastScanNanos = System.nanoTime();
     dataSetQueue.updatePendingDataSets();
 
     // If no manifest was found, we're done (until next time).
@@ -158,37 +223,37 @@ public final class DataSetMonitorWorker implements Runnable {
     /*
      * Huzzah! We've got a data set to process and we've verified it's all there
      * waiting for us in S3. Now convert it into a RifFilesEvent (containing a List
-     * of asynchronously-downloading S3RifFiles.
+     * of asynchronously-downloading or streaming S3RifFiles.
      */
     LOGGER.info(LOG_MESSAGE_DATA_SET_READY);
     List<S3RifFile> rifFiles =
         manifestToProcess.getEntries().stream()
             .map(
                 manifestEntry ->
-                    new S3RifFile(
-                        appMetrics, manifestEntry, s3TaskManager.downloadAsync(manifestEntry)))
+                    options.isS3StreamingEnabled()
+                        ? new S3RifFile(
+                            appMetrics,
+                            manifestEntry,
+                            s3TaskManager.getS3Client(),
+                            options.getS3BucketName())
+                        : new S3RifFile(
+                            appMetrics, manifestEntry, s3TaskManager.downloadAsync(manifestEntry)))
             .collect(Collectors.toList());
     RifFilesEvent rifFilesEvent =
         new RifFilesEvent(manifestToProcess.getTimestamp(), new ArrayList<>(rifFiles));
 
     /*
-     * To save time for the next data set, peek ahead at it. If it's available and
-     * it looks like there's enough disk space, start downloading it early in the
-     * background.
+     * To save time for the next data sets, peek ahead at them. Any that are
+     * available get queued up to download early in the background, in the
+     * order they'll be processed in. The S3TaskManager only starts those
+     * downloads as its temp disk budget allows. (When streaming, there's
+     * nothing to download ahead of time.)
      */
-    Optional<DataSetManifest> secondManifestToProcess = dataSetQueue.getSecondDataSetToProcess();
-    if (secondManifestToProcess.isPresent() && dataSetIsAvailable(secondManifestToProcess.get())) {
-      Path tmpdir = Paths.get(System.getProperty("java.io.tmpdir"));
-      long usableFreeTempSpace;
-      try {
-        usableFreeTempSpace = Files.getFileStore(tmpdir).getUsableSpace();
-      } catch (IOException e) {
-        throw new UncheckedIOException(e);
-      }
-
-      if (usableFreeTempSpace >= (50 * GIGA)) {
-        secondManifestToProcess.get().getEntries().stream()
-            .forEach(manifestEntry -> s3TaskManager.downloadAsync(manifestEntry));
+    if (!options.isS3StreamingEnabled()) {
+      for (DataSetManifest upcomingManifest :
+          dataSetQueue.getDataSetsToProcessAfterNext(MAX_DATA_SETS_TO_PREFETCH)) {
+        if (!dataSetIsAvailable(upcomingManifest)) break;
+        upcomingManifest.getEntries().stream().forEach(s3TaskManager::prefetchAsync);
       }
     }
 
@@ -211,8 +276,22 @@ public final class DataSetMonitorWorker implements Runnable {
      * effect right away.)
      */
     rifFiles.stream().forEach(f -> f.cleanupTempFile());
+    s3TaskManager.releaseDownloads(manifestToProcess);
     dataSetQueue.markProcessed(manifestToProcess);
-    s3TaskManager.submit(new DataSetMoveTask(s3TaskManager, options, manifestToProcess));
+    s3TaskManager.submit(
+        new DataSetMoveTask(s3TaskManager, options, manifestToProcess, dataSetQueue));
+  }
+
+  /**
+   * @return <code>true</code> if it has been at least {@link #RECONCILIATION_SCAN_INTERVAL_MILLIS}
+   *     since the last S3 scan (or there hasn't been one yet), <code>false</code> if not
+   */
+  private boolean isReconciliationScanDue() {
+    if (lastScanNanos == null) return true;
+
+    long millisSinceLastScan =
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastScanNanos.longValue());
+    return millisSinceLastScan >= RECONCILIATION_SCAN_INTERVAL_MILLIS;
   }
 
   /**
@@ -242,7 +321,7 @@ public final class DataSetMonitorWorker implements Runnable {
     Set<String> dataSetObjectNames = new HashSet<>();
     ListObjectsV2Result s3ObjectListing;
     do {
-      s3ObjectListing = s3TaskManager.getS3Client().listObjectsV2(s3BucketListRequest);
+      s3ObjectListing = s3TaskManager.listObjects(s3BucketListRequest);
 
       /*
        * Pull the object names from the keys that were returned, by
@@ -0,0 +1,37 @@
+package gov.cms.bfd.pipeline.rif.extract.s3;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tells {@link DataSetMonitorWorker} when new objects may have arrived under the {@link
+ * DataSetMonitorWorker#S3_PREFIX_PENDING_DATA_SETS} key prefix, so that it only has to scan S3 when
+ * there's likely something new to find. {@link DataSetMonitorWorker} still scans S3 every so often
+ * regardless, so implementations don't have to be perfectly reliable: a missed notification will
+ * just delay the data set's discovery.
+ */
+public interface DataSetNotificationSource extends AutoCloseable {
+  /** Starts listening for notifications, e.g. on a background thread. */
+  void start();
+
+  /**
+   * Waits for a notification that new objects may have arrived, if none has been received since
+   * the last call to this method.
+   *
+   * @param timeout the maximum amount of time to wait
+   * @param unit the {@link TimeUnit} of the <code>timeout</code> value
+   * @return <code>true</code> if a notification has been received since the last call to this
+   *     method, or <code>false</code> if the timeout elapsed (or {@link #close()} was called) first
+   * @throws InterruptedException An {@link InterruptedException} will be thrown if the calling
+   *     {@link Thread} is interrupted while waiting.
+   */
+  boolean awaitChanges(long timeout, TimeUnit unit) throws InterruptedException;
+
+  /**
+   * Stops listening for notifications and releases any resources being used. Any callers blocked
+   * in {@link #awaitChanges(long, TimeUnit)} will be woken up.
+   *
+   * @see java.lang.AutoCloseable#close()
+   */
+  @Override
+  void close();
+}
@@ -13,12 +13,17 @@ import gov.cms.bfd.pipeline.rif.extract.ExtractionOptions;
 import gov.cms.bfd.pipeline.rif.extract.s3.DataSetManifest.DataSetManifestId;
 import gov.cms.bfd.pipeline.rif.extract.s3.task.S3TaskManager;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.xml.bind.JAXBContext;
@@ -31,6 +36,13 @@ import org.slf4j.LoggerFactory;
 public final class DataSetQueue {
   private static final Logger LOGGER = LoggerFactory.getLogger(DataSetMonitorWorker.class);
 
+  /**
+   * The number of incremental scans to run between each full scan of the {@link
+   * DataSetMonitorWorker#S3_PREFIX_PENDING_DATA_SETS} key prefix. See {@link
+   * #updatePendingDataSets()}.
+   */
+  static final int FULL_SCAN_INTERVAL = 60;
+
   private final MetricRegistry appMetrics;
   private final ExtractionOptions options;
   private final S3TaskManager s3TaskManager;
@@ -56,7 +68,23 @@ public final class DataSetQueue {
    */
   private final Set<DataSetManifestId> knownInvalidManifests;
 
-  private Integer completedManifestsCount;
+  /**
+   * The number of {@link DataSetManifest}s found under the {@link
+   * DataSetMonitorWorker#S3_PREFIX_COMPLETED_DATA_SETS} key prefix, or <code>null</code> if they
+   * haven't been counted yet. Updated by {@link #markMoved(DataSetManifest)}, which may be called
+   * from other threads.
+   */
+  private volatile Integer completedManifestsCount;
+
+  /**
+   * The {@link DataSetManifestId}s of the manifests found under the {@link
+   * DataSetMonitorWorker#S3_PREFIX_PENDING_DATA_SETS} key prefix during the last scan, grouped by
+   * the key prefix ("directory") of the data set that they're in, or <code>null</code> if no scan
+   * has happened yet.
+   */
+  private Map<String, Set<DataSetManifestId>> pendingManifestsByDirectory;
+
+  private int scansSinceFullScan;
 
   /**
    * Constructs a new {@link DataSetQueue} instance.
@@ -79,6 +107,11 @@ public final class DataSetQueue {
   /**
    * Updates {@link #manifestsToProcess}, listing the manifests available in S3 right now, then
    * adding those that weren't found before and removing those that are no longer pending.
+   *
+   * <p>Only the {@link DataSetMonitorWorker#S3_PREFIX_PENDING_DATA_SETS} key prefix is listed, and
+   * only incrementally: most calls just list its data set "directories", and then the contents of
+   * any new ones. Everything under it is only listed in full every {@link #FULL_SCAN_INTERVAL}
+   * calls.
    */
   public void updatePendingDataSets() {
     // Find the pending manifests.
@@ -143,58 +176,162 @@ public final class DataSetQueue {
   }
 
   /**
-   * @return the {@link DataSetManifestId}s for the manifests that are found in S3 under the {@value
-   *     #S3_PREFIX_PENDING_DATA_SETS} key prefix, sorted in expected processing order.
+   * @return the {@link DataSetManifestId}s for the manifests that are found in S3 under the {@link
+   *     DataSetMonitorWorker#S3_PREFIX_PENDING_DATA_SETS} key prefix
    */
   private Set<DataSetManifestId> listPendingManifests() {
     Timer.Context timerS3Scanning =
         appMetrics.timer(MetricRegistry.name(getClass().getSimpleName(), "s3Scanning")).time();
     LOGGER.debug("Scanning for data sets in S3...");
-    Set<DataSetManifestId> manifestIds = new HashSet<>();
 
     /*
-     * Request a list of all objects in the configured bucket and directory.
-     * (In the results, we'll be looking for the oldest manifest file, if
-     * any.)
+     * The completed data sets are only counted once, as there can be a very
+     * large number of them. After that, DataSetMoveTask keeps the count up
+     * to date via markMoved(...).
+     */
+    if (completedManifestsCount == null) completedManifestsCount = countCompletedManifests();
+
+    /*
+     * Most scans are incremental: only the data set "directories" that
+     * haven't been seen before (or that didn't have a manifest yet) are
+     * listed in full. Every so often, though, everything under the
+     * pending prefix is listed, to catch anything the incremental scans
+     * can't see (e.g. an extra manifest added to a known directory).
      */
+    if (pendingManifestsByDirectory == null || scansSinceFullScan >= FULL_SCAN_INTERVAL) {
+      pendingManifestsByDirectory = scanPendingManifests();
+      scansSinceFullScan = 0;
+    } else {
+      updatePendingManifests(pendingManifestsByDirectory);
+      scansSinceFullScan++;
+    }
+
+    Set<DataSetManifestId> manifestIds = new HashSet<>();
+    pendingManifestsByDirectory.values().forEach(manifestIds::addAll);
+
+    LOGGER.debug("Scanned for data sets in S3. Found '{}'.", manifestIds.size());
+    timerS3Scanning.close();
+
+    return manifestIds;
+  }
+
+  /**
+   * Lists all of the objects under the {@link DataSetMonitorWorker#S3_PREFIX_PENDING_DATA_SETS} key
+   * prefix, looking for manifests.
+   *
+   * @return the {@link DataSetManifestId}s for the pending manifests found in S3, grouped by the
+   *     key prefix ("directory") of the data set that they're in
+   */
+  private Map<String, Set<DataSetManifestId>> scanPendingManifests() {
+    Map<String, Set<DataSetManifestId>> manifestsByDirectory = new HashMap<>();
+    forEachObjectKey(
+        DataSetMonitorWorker.S3_PREFIX_PENDING_DATA_SETS + "/",
+        key -> {
+          Set<DataSetManifestId> directoryManifests =
+              manifestsByDirectory.computeIfAbsent(
+                  key.substring(0, key.lastIndexOf('/') + 1), d -> new HashSet<>());
+          DataSetManifestId manifestId = parseManifestId(key);
+          if (manifestId != null) directoryManifests.add(manifestId);
+        });
+    return manifestsByDirectory;
+  }
+
+  /**
+   * Uses a delimited listing of the {@link DataSetMonitorWorker#S3_PREFIX_PENDING_DATA_SETS} key
+   * prefix, which returns just one entry per data set "directory", to find the data sets that have
+   * appeared or disappeared since the last scan. Only the directories that are new (or that didn't
+   * contain a manifest yet) are then listed in full.
+   *
+   * @param manifestsByDirectory the result of the previous scan, which will be updated in place
+   */
+  private void updatePendingManifests(Map<String, Set<DataSetManifestId>> manifestsByDirectory) {
     ListObjectsV2Request s3BucketListRequest = new ListObjectsV2Request();
     s3BucketListRequest.setBucketName(options.getS3BucketName());
+    s3BucketListRequest.setPrefix(DataSetMonitorWorker.S3_PREFIX_PENDING_DATA_SETS + "/");
+    s3BucketListRequest.setDelimiter("/");
+    if (options.getS3ListMaxKeys().isPresent())
+      s3BucketListRequest.setMaxKeys(options.getS3ListMaxKeys().get());
+
+    Set<String> directories = new HashSet<>();
+    ListObjectsV2Result s3ObjectListing;
+    do {
+      s3ObjectListing = s3TaskManager.listObjects(s3BucketListRequest);
+      directories.addAll(s3ObjectListing.getCommonPrefixes());
+      s3BucketListRequest.setContinuationToken(s3ObjectListing.getNextContinuationToken());
+    } while (s3ObjectListing.isTruncated());
+
+    manifestsByDirectory.keySet().retainAll(directories);
+    for (String directory : directories) {
+      Set<DataSetManifestId> directoryManifests = manifestsByDirectory.get(directory);
+      if (directoryManifests != null && !directoryManifests.isEmpty()) continue;
+
+      Set<DataSetManifestId> manifestsFound = new HashSet<>();
+      forEachObjectKey(
+          directory,
+          key -> {
+            DataSetManifestId manifestId = parseManifestId(key);
+            if (manifestId != null) manifestsFound.add(manifestId);
+          });
+      manifestsByDirectory.put(directory, manifestsFound);
+    }
+  }
+
+  /**
+   * @return the number of manifests found in S3 under the {@link
+   *     DataSetMonitorWorker#S3_PREFIX_COMPLETED_DATA_SETS} key prefix
+   */
+  private int countCompletedManifests() {
+    AtomicInteger count = new AtomicInteger(0);
+    forEachObjectKey(
+        DataSetMonitorWorker.S3_PREFIX_COMPLETED_DATA_SETS + "/",
+        key -> {
+          if (DataSetMonitorWorker.REGEX_COMPLETED_MANIFEST.matcher(key).matches())
+            count.incrementAndGet();
+        });
+    return count.get();
+  }
+
+  /**
+   * Pages through all of the S3 objects under the specified key prefix.
+   *
+   * @param keyPrefix the S3 key prefix to list the objects under
+   * @param keyConsumer the {@link Consumer} to pass each object's key to
+   */
+  private void forEachObjectKey(String keyPrefix, Consumer<String> keyConsumer) {
+    ListObjectsV2Request s3BucketListRequest = new ListObjectsV2Request();
+    s3BucketListRequest.setBucketName(options.getS3BucketName());
+    s3BucketListRequest.setPrefix(keyPrefix);
     if (options.getS3ListMaxKeys().isPresent())
       s3BucketListRequest.setMaxKeys(options.getS3ListMaxKeys().get());
 
     /*
      * S3 will return results in separate pages. Loop through all of the
-     * pages, looking for manifests.
+     * pages.
      */
-    int completedManifestsCount = 0;
     ListObjectsV2Result s3ObjectListing;
     do {
-      s3ObjectListing = s3TaskManager.getS3Client().listObjectsV2(s3BucketListRequest);
-
-      for (S3ObjectSummary objectSummary : s3ObjectListing.getObjectSummaries()) {
-        String key = objectSummary.getKey();
-        if (DataSetMonitorWorker.REGEX_PENDING_MANIFEST.matcher(key).matches()) {
-          /*
-           * We've got an object that *looks like* it might be a
-           * manifest file. But we need to parse the key to ensure
-           * that it starts with a valid timestamp.
-           */
-          DataSetManifestId manifestId = DataSetManifestId.parseManifestIdFromS3Key(key);
-          if (manifestId != null) manifestIds.add(manifestId);
-        } else if (DataSetMonitorWorker.REGEX_COMPLETED_MANIFEST.matcher(key).matches()) {
-          completedManifestsCount++;
-        }
-      }
-
+      s3ObjectListing = s3TaskManager.listObjects(s3BucketListRequest);
+      for (S3ObjectSummary objectSummary : s3ObjectListing.getObjectSummaries())
+        keyConsumer.accept(objectSummary.getKey());
       s3BucketListRequest.setContinuationToken(s3ObjectListing.getNextContinuationToken());
     } while (s3ObjectListing.isTruncated());
+  }
 
-    this.completedManifestsCount = completedManifestsCount;
-
-    LOGGER.debug("Scanned for data sets in S3. Found '{}'.", manifestsToProcess.size());
-    timerS3Scanning.close();
+  /**
+   * @param key the S3 key of an object under the {@link
+   *     DataSetMonitorWorker#S3_PREFIX_PENDING_DATA_SETS} key prefix
+   * @return the {@link DataSetManifestId} of the specified object, if it's a manifest, or <code>
+   *     null</code> if it's not
+   */
+  private static DataSetManifestId parseManifestId(String key) {
+    if (!DataSetMonitorWorker.REGEX_PENDING_MANIFEST.matcher(key).matches()) return null;
 
-    return manifestIds;
+    /*
+     * We've got an object that *looks like* it might be a manifest file. But
+     * we need to parse the key to ensure that it starts with a valid
+     * timestamp.
+     */
+    return DataSetManifestId.parseManifestIdFromS3Key(key);
   }
 
   /**
@@ -263,11 +400,12 @@ public final class DataSetQueue {
   }
 
   /**
-   * @return the {@link DataSetManifest} for the next-but-one data set that should be processed, if
-   *     any
+   * @param maxDataSets the maximum number of {@link DataSetManifest}s to return
+   * @return the {@link DataSetManifest}s for the data sets that should be processed after the
+   *     {@link #getNextDataSetToProcess()} one, in the order that they should be processed in
    */
-  public Optional<DataSetManifest> getSecondDataSetToProcess() {
-    return getManifestsToProcess().skip(1).findFirst();
+  public List<DataSetManifest> getDataSetsToProcessAfterNext(int maxDataSets) {
+    return getManifestsToProcess().skip(1).limit(maxDataSets).collect(Collectors.toList());
   }
 
   /**
@@ -290,6 +428,19 @@ public final class DataSetQueue {
         : Optional.of(recentlyProcessedManifests.size() + completedManifestsCount);
   }
 
+  /**
+   * Records that the specified {@link DataSetManifest}'s data set has been moved to the {@link
+   * DataSetMonitorWorker#S3_PREFIX_COMPLETED_DATA_SETS} key prefix in S3, updating {@link
+   * #getCompletedManifestsCount()} without having to list that prefix again.
+   *
+   * <p>Unlike the rest of this class' methods, this may be called from any thread.
+   *
+   * @param manifest the {@link DataSetManifest} for the data set that has been moved
+   */
+  public synchronized void markMoved(DataSetManifest manifest) {
+    if (completedManifestsCount != null) completedManifestsCount = completedManifestsCount + 1;
+  }
+
   /**
    * Marks the specified {@link DataSetManifest} as processed, removing it from the list of pending
    * data sets in this {@link DataSetQueue}.
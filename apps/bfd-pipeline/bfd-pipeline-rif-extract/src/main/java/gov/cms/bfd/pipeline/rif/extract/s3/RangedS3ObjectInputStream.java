@@ -0,0 +1,286 @@
+package gov.cms.bfd.pipeline.rif.extract.s3;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.justdavis.karl.misc.exceptions.BadCodeMonkeyException;
+import gov.cms.bfd.pipeline.rif.extract.exceptions.AwsFailureException;
+import gov.cms.bfd.pipeline.rif.extract.exceptions.ChecksumException;
+import gov.cms.bfd.pipeline.rif.extract.s3.task.ManifestEntryDownloadTask;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An {@link InputStream} that reads an S3 object directly, via a sequence of ranged <code>GET
+ * </code>s, rather than first downloading it to a local file. This allows RIF files to be parsed
+ * while they're still being downloaded.
+ *
+ * <p>The object's MD5 checksum (as stored in its <code>md5chksum</code> user metadata, see {@link
+ * ManifestEntryDownloadTask#computeMD5ChkSum(InputStream)}) is computed inline as the data is read.
+ * It's verified just before the object's final bytes are returned, such that a corrupted object
+ * will cause a {@link ChecksumException} to be thrown before any consumer can see the end of its
+ * last record. (Accordingly, the last batch of records in such a file will never be loaded.)
+ *
+ * <p>If a ranged <code>GET</code> fails partway through, it will be re-requested from the offset
+ * where it failed, up to {@link #MAX_ATTEMPTS_PER_RANGE} times.
+ *
+ * <p>Like most {@link InputStream}s, instances of this class are not thread-safe.
+ */
+public final class RangedS3ObjectInputStream extends InputStream {
+  private static final Logger LOGGER = LoggerFactory.getLogger(RangedS3ObjectInputStream.class);
+
+  /** The default number of bytes to request from S3 in each ranged <code>GET</code>. */
+  public static final long DEFAULT_RANGE_SIZE = 64L * 1024L * 1024L;
+
+  /**
+   * The maximum number of times that a single range will be (re-)requested before giving up on it,
+   * when S3 or the network misbehave.
+   */
+  static final int MAX_ATTEMPTS_PER_RANGE = 5;
+
+  private final AmazonS3 s3Client;
+  private final String s3BucketName;
+  private final String s3Key;
+  private final long rangeSize;
+  private final long objectLength;
+  private final String objectETag;
+  private final String expectedMD5ChkSum;
+  private final MessageDigest md5Digest;
+  private final Meter bytesMeter;
+  private final Counter rangeRetriesCounter;
+
+  /** The offset in the S3 object of the next byte that will be returned. */
+  private long position;
+
+  /** The current ranged <code>GET</code>'s content, or <code>null</code> if there isn't one. */
+  private S3ObjectInputStream rangeContent;
+
+  /** The (exclusive) offset in the S3 object that {@link #rangeContent} ends at. */
+  private long rangeEnd;
+
+  /** The number of times that the current range has failed so far. */
+  private int rangeFailures;
+
+  /**
+   * The Base64-encoded MD5 checksum of the complete object, or <code>null</code> if it hasn't been
+   * read completely yet.
+   */
+  private String computedMD5ChkSum;
+
+  private boolean closed;
+
+  /**
+   * Constructs a new {@link RangedS3ObjectInputStream}, which will immediately retrieve the S3
+   * object's metadata (but not any of its data).
+   *
+   * @param appMetrics the {@link MetricRegistry} for the overall application
+   * @param s3Client the {@link AmazonS3} client to use
+   * @param s3BucketName the name of the S3 bucket that the object is in
+   * @param s3Key the key of the S3 object to read
+   * @param rangeSize the number of bytes to request from S3 in each ranged <code>GET</code>, e.g.
+   *     {@link #DEFAULT_RANGE_SIZE}
+   */
+  public RangedS3ObjectInputStream(
+      MetricRegistry appMetrics,
+      AmazonS3 s3Client,
+      String s3BucketName,
+      String s3Key,
+      long rangeSize) {
+    Objects.requireNonNull(appMetrics);
+    Objects.requireNonNull(s3Client);
+    Objects.requireNonNull(s3BucketName);
+    Objects.requireNonNull(s3Key);
+    if (rangeSize < 1) throw new IllegalArgumentException();
+
+    this.s3Client = s3Client;
+    this.s3BucketName = s3BucketName;
+    this.s3Key = s3Key;
+    this.rangeSize = rangeSize;
+
+    ObjectMetadata objectMetadata;
+    try {
+      objectMetadata = s3Client.getObjectMetadata(s3BucketName, s3Key);
+    } catch (AmazonClientException e) {
+      throw new AwsFailureException(e);
+    }
+    this.objectLength = objectMetadata.getContentLength();
+    this.objectETag = objectMetadata.getETag();
+    this.expectedMD5ChkSum = objectMetadata.getUserMetaDataOf("md5chksum");
+
+    try {
+      this.md5Digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      // Every JVM is required to support MD5.
+      throw new BadCodeMonkeyException(e);
+    }
+
+    this.bytesMeter =
+        appMetrics.meter(MetricRegistry.name(getClass().getSimpleName(), "bytesRead"));
+    this.rangeRetriesCounter =
+        appMetrics.counter(MetricRegistry.name(getClass().getSimpleName(), "rangeRetries"));
+
+    this.position = 0L;
+    this.rangeContent = null;
+    this.rangeEnd = 0L;
+    this.rangeFailures = 0;
+    this.computedMD5ChkSum = null;
+    this.closed = false;
+  }
+
+  /** @see java.io.InputStream#read() */
+  @Override
+  public int read() throws IOException {
+    byte[] singleByte = new byte[1];
+    int bytesRead = read(singleByte, 0, 1);
+    return bytesRead < 0 ? -1 : (singleByte[0] & 0xFF);
+  }
+
+  /** @see java.io.InputStream#read(byte[], int, int) */
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    if (closed) throw new IOException("Stream closed.");
+    if (offset < 0 || length < 0 || length > buffer.length - offset)
+      throw new IndexOutOfBoundsException();
+    if (length == 0) return 0;
+    if (position >= objectLength) {
+      verifyChecksum();
+      return -1;
+    }
+
+    while (true) {
+      try {
+        if (rangeContent == null) openRange();
+
+        int bytesRead =
+            rangeContent.read(buffer, offset, (int) Math.min(length, rangeEnd - position));
+        if (bytesRead < 0)
+          throw new IOException(
+              String.format(
+                  "Range of S3 object '%s' ended early, at offset '%d' (of '%d').",
+                  s3Key, position, rangeEnd));
+
+        md5Digest.update(buffer, offset, bytesRead);
+        position += bytesRead;
+        bytesMeter.mark(bytesRead);
+
+        if (position == rangeEnd) {
+          closeRange();
+          rangeFailures = 0;
+        }
+        if (position == objectLength) verifyChecksum();
+        return bytesRead;
+      } catch (IOException | AmazonClientException e) {
+        abortRange();
+        rangeFailures++;
+        if (rangeFailures >= MAX_ATTEMPTS_PER_RANGE) {
+          if (e instanceof IOException) throw (IOException) e;
+          else throw new AwsFailureException(e);
+        }
+
+        rangeRetriesCounter.inc();
+        LOGGER.warn(
+            "Ranged GET of S3 object '{}' failed at offset '{}' (failure {}), retrying...",
+            s3Key,
+            position,
+            rangeFailures,
+            e);
+      }
+    }
+  }
+
+  /** Starts a new ranged <code>GET</code> at {@link #position}, into {@link #rangeContent}. */
+  private void openRange() {
+    long end = Math.min(position + rangeSize, objectLength);
+    GetObjectRequest rangeRequest =
+        new GetObjectRequest(s3BucketName, s3Key).withRange(position, end - 1);
+    if (objectETag != null) rangeRequest.withMatchingETagConstraint(objectETag);
+
+    S3Object rangeObject = s3Client.getObject(rangeRequest);
+    if (rangeObject == null)
+      // Only happens if the ETag constraint fails, which means the object was replaced mid-read.
+      throw new ChecksumException(
+          String.format("S3 object '%s' was modified while it was being read.", s3Key));
+
+    this.rangeContent = rangeObject.getObjectContent();
+    this.rangeEnd = end;
+  }
+
+  /**
+   * Closes {@link #rangeContent}, which must have been read completely (otherwise, {@link
+   * #abortRange()} should be used). As all of the range's data has already been received, any
+   * failures here are only logged.
+   */
+  private void closeRange() {
+    S3ObjectInputStream completedRangeContent = rangeContent;
+    rangeContent = null;
+    try {
+      completedRangeContent.close();
+    } catch (IOException e) {
+      LOGGER.debug("Unable to cleanly close completed range of S3 object '{}'.", s3Key, e);
+    }
+  }
+
+  /**
+   * Aborts {@link #rangeContent} (if any), which is much cheaper than closing it when it hasn't
+   * been read completely, as closing would require the rest of it to be drained first.
+   */
+  private void abortRange() {
+    if (rangeContent == null) return;
+    rangeContent.abort();
+    rangeContent = null;
+  }
+
+  /**
+   * Verifies the MD5 checksum of the data read, which must have been the complete object. May be
+   * called repeatedly, e.g. if the caller keeps reading after a failure.
+   *
+   * @throws ChecksumException A {@link ChecksumException} will be thrown if the computed checksum
+   *     doesn't match the one in the S3 object's metadata.
+   */
+  private void verifyChecksum() {
+    if (computedMD5ChkSum == null)
+      computedMD5ChkSum = Base64.getEncoder().encodeToString(md5Digest.digest());
+
+    // TODO Remove null check below once Jira CBBD-368 is completed
+    if (expectedMD5ChkSum != null && !computedMD5ChkSum.equals(expectedMD5ChkSum))
+      throw new ChecksumException(
+          String.format(
+              "Checksum doesn't match on streamed S3 object '%s': expected '%s' but got '%s'.",
+              s3Key, expectedMD5ChkSum, computedMD5ChkSum));
+  }
+
+  /** @see java.io.InputStream#close() */
+  @Override
+  public void close() {
+    abortRange();
+    closed = true;
+  }
+
+  /** @see java.lang.Object#toString() */
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    builder.append("RangedS3ObjectInputStream [s3BucketName=");
+    builder.append(s3BucketName);
+    builder.append(", s3Key=");
+    builder.append(s3Key);
+    builder.append(", position=");
+    builder.append(position);
+    builder.append(", objectLength=");
+    builder.append(objectLength);
+    builder.append("]");
+    return builder.toString();
+  }
+}
@@ -1,5 +1,6 @@
 package gov.cms.bfd.pipeline.rif.extract.s3;
 
+import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.S3Object;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
@@ -8,6 +9,7 @@ import gov.cms.bfd.model.rif.RifFile;
 import gov.cms.bfd.model.rif.RifFileType;
 import gov.cms.bfd.pipeline.rif.extract.exceptions.AwsFailureException;
 import gov.cms.bfd.pipeline.rif.extract.s3.DataSetManifest.DataSetManifestEntry;
+import gov.cms.bfd.pipeline.rif.extract.s3.task.ManifestEntryDownloadTask;
 import gov.cms.bfd.pipeline.rif.extract.s3.task.ManifestEntryDownloadTask.ManifestEntryDownloadResult;
 import java.io.BufferedInputStream;
 import java.io.FileInputStream;
@@ -30,6 +32,11 @@ import org.slf4j.LoggerFactory;
 /**
  * This {@link RifFile} implementation can be used for files that are backed by {@link S3Object}s.
  * Note that this lazy-loads the files, to ensure that connections are not opened until needed.
+ *
+ * <p>Instances operate in one of two modes, depending on which constructor is used: either {@link
+ * #open()} waits for a local download of the file (from {@link ManifestEntryDownloadTask}) to
+ * complete and then reads that, or it streams the file directly from S3 via a {@link
+ * RangedS3ObjectInputStream}, such that parsing can start immediately.
  */
 public final class S3RifFile implements RifFile {
   private static final Logger LOGGER = LoggerFactory.getLogger(S3RifFile.class);
@@ -37,6 +44,8 @@ public final class S3RifFile implements RifFile {
   private final MetricRegistry appMetrics;
   private final DataSetManifestEntry manifestEntry;
   private final Future<ManifestEntryDownloadResult> manifestEntryDownload;
+  private final AmazonS3 s3Client;
+  private final String s3BucketName;
 
   /**
    * Constructs a new {@link S3RifFile} instance.
@@ -58,6 +67,43 @@ public final class S3RifFile implements RifFile {
     this.appMetrics = appMetrics;
     this.manifestEntry = manifestEntry;
     this.manifestEntryDownload = manifestEntryDownload;
+    this.s3Client = null;
+    this.s3BucketName = null;
+  }
+
+  /**
+   * Constructs a new streaming {@link S3RifFile} instance, which will read its data directly from
+   * S3, rather than from a local download.
+   *
+   * @param appMetrics the {@link MetricRegistry} for the overall application
+   * @param manifestEntry the specific {@link DataSetManifestEntry} represented by this {@link
+   *     S3RifFile}
+   * @param s3Client the {@link AmazonS3} client to stream the RIF file's contents with
+   * @param s3BucketName the name of the S3 bucket that the RIF file is in
+   */
+  public S3RifFile(
+      MetricRegistry appMetrics,
+      DataSetManifestEntry manifestEntry,
+      AmazonS3 s3Client,
+      String s3BucketName) {
+    Objects.requireNonNull(appMetrics);
+    Objects.requireNonNull(manifestEntry);
+    Objects.requireNonNull(s3Client);
+    Objects.requireNonNull(s3BucketName);
+
+    this.appMetrics = appMetrics;
+    this.manifestEntry = manifestEntry;
+    this.manifestEntryDownload = null;
+    this.s3Client = s3Client;
+    this.s3BucketName = s3BucketName;
+  }
+
+  /**
+   * @return <code>true</code> if this {@link S3RifFile} streams its data directly from S3, <code>
+   *     false</code> if it reads it from a local download
+   */
+  public boolean isStreaming() {
+    return manifestEntryDownload == null;
   }
 
   /** @see gov.cms.bfd.model.rif.RifFile#getFileType() */
@@ -85,6 +131,17 @@ public final class S3RifFile implements RifFile {
   /** @see gov.cms.bfd.model.rif.RifFile#open() */
   @Override
   public InputStream open() {
+    if (isStreaming()) {
+      LOGGER.info("Streaming RIF file from S3: '{}'...", getDisplayName());
+      return new BufferedInputStream(
+          new RangedS3ObjectInputStream(
+              appMetrics,
+              s3Client,
+              s3BucketName,
+              manifestEntry.computeS3Key(DataSetMonitorWorker.S3_PREFIX_PENDING_DATA_SETS),
+              RangedS3ObjectInputStream.DEFAULT_RANGE_SIZE));
+    }
+
     ManifestEntryDownloadResult fileDownloadResult = waitForDownload();
 
     // Open a stream for the file.
@@ -141,9 +198,10 @@ public final class S3RifFile implements RifFile {
 
   /**
    * Removes the local temporary file that was used to cache this {@link S3RifFile}'s corresponding
-   * S3 object data locally.
+   * S3 object data locally (if any: streaming instances don't have one).
    */
   public void cleanupTempFile() {
+    if (isStreaming()) return;
     LOGGER.debug("Cleaning up '{}'...", this);
 
     /*
@@ -168,9 +226,11 @@ public final class S3RifFile implements RifFile {
     String localDownloadPath;
     try {
       localDownloadPath =
-          manifestEntryDownload.isDone()
-              ? manifestEntryDownload.get().getLocalDownload().toAbsolutePath().toString()
-              : "(not downloaded)";
+          isStreaming()
+              ? "(streaming)"
+              : manifestEntryDownload.isDone()
+                  ? manifestEntryDownload.get().getLocalDownload().toAbsolutePath().toString()
+                  : "(not downloaded)";
     } catch (InterruptedException e) {
       // We're not expecting interrupts here, so go boom.
       throw new BadCodeMonkeyException(e);
@@ -4,6 +4,8 @@ import com.amazonaws.regions.Region;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
 import gov.cms.bfd.pipeline.rif.extract.ExtractionOptions;
 
 /** Contains utility/helper methods for AWS S3 that can be used in application and test code. */
@@ -27,4 +29,14 @@ public final class S3Utilities {
     AmazonS3 s3Client = AmazonS3ClientBuilder.standard().withRegion(awsS3Region).build();
     return s3Client;
   }
+
+  /**
+   * @param options the {@link ExtractionOptions} to use
+   * @return the {@link AmazonSQS} client to use, for receiving the S3 bucket's event notifications
+   */
+  public static AmazonSQS createSqsClient(ExtractionOptions options) {
+    AmazonSQS sqsClient =
+        AmazonSQSClientBuilder.standard().withRegion(options.getS3Region()).build();
+    return sqsClient;
+  }
 }
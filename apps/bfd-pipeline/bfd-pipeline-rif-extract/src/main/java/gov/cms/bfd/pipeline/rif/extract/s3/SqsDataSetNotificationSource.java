@@ -0,0 +1,191 @@
+package gov.cms.bfd.pipeline.rif.extract.s3;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.event.S3EventNotification;
+import com.amazonaws.services.s3.event.S3EventNotification.S3EventNotificationRecord;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link DataSetNotificationSource} that consumes the S3 bucket's <code>s3:ObjectCreated:*</code>
+ * event notifications from an Amazon SQS queue, using long polling so that an idle queue costs
+ * almost nothing to watch. The bucket must be configured to publish those events directly to the
+ * queue.
+ *
+ * <p>Messages are deleted from the queue as soon as they've been read: the notifications only ever
+ * trigger a rescan of S3, so there's nothing to be gained by letting them be redelivered.
+ */
+public final class SqsDataSetNotificationSource implements DataSetNotificationSource {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SqsDataSetNotificationSource.class);
+
+  /** The maximum number of seconds that each SQS long poll will wait for messages to arrive. */
+  private static final int RECEIVE_WAIT_SECONDS = 20;
+
+  /** The maximum number of messages that SQS allows to be received (or deleted) at once. */
+  private static final int RECEIVE_MAX_MESSAGES = 10;
+
+  /** The number of milliseconds to wait after a failed SQS call before trying again. */
+  private static final long RETRY_DELAY_MILLIS = 1000L;
+
+  private final AmazonSQS sqsClient;
+  private final String queueUrl;
+  private final TaskExecutor receiveExecutor;
+  private final Meter messagesReceived;
+  private final Meter messagesRelevant;
+
+  private boolean changesPending;
+  private volatile boolean closed;
+
+  /**
+   * Constructs a new {@link SqsDataSetNotificationSource} instance.
+   *
+   * @param appMetrics the {@link MetricRegistry} for the overall application
+   * @param sqsClient the {@link AmazonSQS} client to use
+   * @param queueUrl the URL of the SQS queue that the S3 bucket's event notifications are sent to
+   */
+  public SqsDataSetNotificationSource(
+      MetricRegistry appMetrics, AmazonSQS sqsClient, String queueUrl) {
+    this.sqsClient = sqsClient;
+    this.queueUrl = queueUrl;
+    this.receiveExecutor = new TaskExecutor("Data Set Notification Executor", 1);
+    this.messagesReceived =
+        appMetrics.meter(MetricRegistry.name(getClass().getSimpleName(), "messagesReceived"));
+    this.messagesRelevant =
+        appMetrics.meter(MetricRegistry.name(getClass().getSimpleName(), "messagesRelevant"));
+
+    this.changesPending = false;
+    this.closed = false;
+  }
+
+  /** @see gov.cms.bfd.pipeline.rif.extract.s3.DataSetNotificationSource#start() */
+  @Override
+  public void start() {
+    if (closed) throw new IllegalStateException();
+
+    LOGGER.info("Listening for data set notifications from SQS queue: '{}'.", queueUrl);
+    receiveExecutor.submit(this::receiveMessages);
+  }
+
+  /**
+   * Long polls the SQS queue for messages, over and over, until {@link #close()} is called.
+   * Failures are logged and then retried, rather than bubbled up: the periodic S3 scans in {@link
+   * DataSetMonitorWorker} will still find any new data sets while SQS is unavailable.
+   */
+  private void receiveMessages() {
+    while (!closed) {
+      try {
+        ReceiveMessageRequest receiveRequest =
+            new ReceiveMessageRequest(queueUrl)
+                .withWaitTimeSeconds(RECEIVE_WAIT_SECONDS)
+                .withMaxNumberOfMessages(RECEIVE_MAX_MESSAGES);
+        List<Message> messages = sqsClient.receiveMessage(receiveRequest).getMessages();
+        if (messages.isEmpty()) continue;
+
+        messagesReceived.mark(messages.size());
+        long relevantCount = messages.stream().filter(m -> isDataSetChange(m.getBody())).count();
+        messagesRelevant.mark(relevantCount);
+        deleteMessages(messages);
+
+        if (relevantCount > 0) signalChanges();
+      } catch (AmazonClientException e) {
+        if (closed) break;
+
+        LOGGER.warn("Unable to receive data set notifications from SQS. Will retry.", e);
+        try {
+          Thread.sleep(RETRY_DELAY_MILLIS);
+        } catch (InterruptedException e2) {
+          // This thread is only interrupted when the source is being closed.
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * @param messages the {@link Message}s to delete from the queue, which must have been received
+   *     together in a single batch
+   */
+  private void deleteMessages(List<Message> messages) {
+    List<DeleteMessageBatchRequestEntry> deleteEntries =
+        messages.stream()
+            .map(m -> new DeleteMessageBatchRequestEntry(m.getMessageId(), m.getReceiptHandle()))
+            .collect(Collectors.toList());
+    sqsClient.deleteMessageBatch(new DeleteMessageBatchRequest(queueUrl, deleteEntries));
+  }
+
+  /**
+   * @param messageBody the body of an SQS {@link Message} to check
+   * @return <code>true</code> if the message body indicates that a new object was created under the
+   *     {@link DataSetMonitorWorker#S3_PREFIX_PENDING_DATA_SETS} key prefix, or might have, <code>
+   *     false</code> if it's definitely not relevant (e.g. the <code>s3:TestEvent</code> that S3
+   *     sends when notifications are first configured)
+   */
+  static boolean isDataSetChange(String messageBody) {
+    S3EventNotification notification;
+    try {
+      notification = S3EventNotification.parseJson(messageBody);
+    } catch (RuntimeException e) {
+      // Can't tell what this is, so err on the side of caution.
+      LOGGER.debug("Unable to parse data set notification: '{}'.", messageBody, e);
+      return true;
+    }
+
+    if (notification.getRecords() == null) return !messageBody.contains("s3:TestEvent");
+
+    for (S3EventNotificationRecord record : notification.getRecords()) {
+      if (record.getEventName() == null || !record.getEventName().startsWith("ObjectCreated"))
+        continue;
+      if (record.getS3() == null || record.getS3().getObject() == null) return true;
+
+      String key = record.getS3().getObject().getUrlDecodedKey();
+      if (key.startsWith(DataSetMonitorWorker.S3_PREFIX_PENDING_DATA_SETS + "/")) return true;
+    }
+
+    return false;
+  }
+
+  /** Records that changes have happened, waking up any callers of {@link #awaitChanges}. */
+  private synchronized void signalChanges() {
+    changesPending = true;
+    notifyAll();
+  }
+
+  /**
+   * @see gov.cms.bfd.pipeline.rif.extract.s3.DataSetNotificationSource#awaitChanges(long,
+   *     java.util.concurrent.TimeUnit)
+   */
+  @Override
+  public synchronized boolean awaitChanges(long timeout, TimeUnit unit)
+      throws InterruptedException {
+    long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+    while (!changesPending && !closed) {
+      long remainingNanos = deadlineNanos - System.nanoTime();
+      if (remainingNanos <= 0) break;
+      TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+    }
+
+    boolean changesReceived = changesPending;
+    changesPending = false;
+    return changesReceived;
+  }
+
+  /** @see gov.cms.bfd.pipeline.rif.extract.s3.DataSetNotificationSource#close() */
+  @Override
+  public void close() {
+    closed = true;
+    receiveExecutor.shutdownNow();
+    synchronized (this) {
+      notifyAll();
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package gov.cms.bfd.pipeline.rif.extract.s3.task;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A simple shared rate limiter for S3 downloads, which callers report their transferred bytes to
+ * via {@link #acquire(long)}, and which makes them wait whenever the combined transfer rate of all
+ * callers gets ahead of the configured limit. Short bursts (of up to one second's worth of bytes)
+ * are allowed, so that idle periods don't leave the limit unused.
+ *
+ * <p>Instances are thread-safe.
+ */
+final class BandwidthThrottle {
+  private static final long BURST_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final long bytesPerSecond;
+
+  /** The {@link System#nanoTime()} at which the next transfer can start. */
+  private long nextTransferNanos;
+
+  /**
+   * Constructs a new {@link BandwidthThrottle}.
+   *
+   * @param bytesPerSecond the maximum combined transfer rate to allow, in bytes per second
+   */
+  BandwidthThrottle(long bytesPerSecond) {
+    if (bytesPerSecond < 1) throw new IllegalArgumentException();
+
+    this.bytesPerSecond = bytesPerSecond;
+    this.nextTransferNanos = System.nanoTime() - BURST_NANOS;
+  }
+
+  /** @return the maximum combined transfer rate being allowed, in bytes per second */
+  long getBytesPerSecond() {
+    return bytesPerSecond;
+  }
+
+  /**
+   * Accounts for the specified number of transferred bytes, blocking the caller as long as is
+   * needed to keep the overall transfer rate within the limit.
+   *
+   * @param bytes the number of bytes that were just transferred
+   * @throws InterruptedException An {@link InterruptedException} will be thrown if the calling
+   *     {@link Thread} is interrupted while waiting.
+   */
+  void acquire(long bytes) throws InterruptedException {
+    long waitNanos;
+    synchronized (this) {
+      long now = System.nanoTime();
+      long transferStartNanos = Math.max(nextTransferNanos, now - BURST_NANOS);
+      nextTransferNanos =
+          transferStartNanos + (long) (bytes * (1_000_000_000.0 / bytesPerSecond));
+      waitNanos = nextTransferNanos - now;
+    }
+
+    if (waitNanos > 0) TimeUnit.NANOSECONDS.sleep(waitNanos);
+  }
+}
@@ -11,6 +11,7 @@ import com.justdavis.karl.misc.exceptions.BadCodeMonkeyException;
 import gov.cms.bfd.pipeline.rif.extract.ExtractionOptions;
 import gov.cms.bfd.pipeline.rif.extract.s3.DataSetManifest;
 import gov.cms.bfd.pipeline.rif.extract.s3.DataSetMonitorWorker;
+import gov.cms.bfd.pipeline.rif.extract.s3.DataSetQueue;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
@@ -24,6 +25,7 @@ public final class DataSetMoveTask implements Callable<Void> {
   private final S3TaskManager s3TaskManager;
   private final ExtractionOptions options;
   private final DataSetManifest manifest;
+  private final DataSetQueue dataSetQueue;
 
   /**
    * Constructs a new {@link DataSetMoveTask}.
@@ -32,12 +34,18 @@ public final class DataSetMoveTask implements Callable<Void> {
    * @param options the {@link ExtractionOptions} to use
    * @param manifest the {@link DataSetManifest} to be moved/renamed (along with the files it
    *     references)
+   * @param dataSetQueue the {@link DataSetQueue} to notify via {@link
+   *     DataSetQueue#markMoved(DataSetManifest)} once the move is complete
    */
   public DataSetMoveTask(
-      S3TaskManager s3TaskManager, ExtractionOptions options, DataSetManifest manifest) {
+      S3TaskManager s3TaskManager,
+      ExtractionOptions options,
+      DataSetManifest manifest,
+      DataSetQueue dataSetQueue) {
     this.s3TaskManager = s3TaskManager;
     this.options = options;
     this.manifest = manifest;
+    this.dataSetQueue = dataSetQueue;
   }
 
   /** @see java.util.concurrent.Callable#call() */
@@ -128,6 +136,8 @@ public final class DataSetMoveTask implements Callable<Void> {
     }
     LOGGER.debug("Data set deleted in S3 (step 2 of move).");
 
+    dataSetQueue.markMoved(manifest);
+
     LOGGER.debug("Renamed data set '{}' in S3, now that processing is complete.", manifest);
     return null;
   }
@@ -0,0 +1,410 @@
+package gov.cms.bfd.pipeline.rif.extract.s3.task;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import gov.cms.bfd.pipeline.rif.extract.s3.DataSetManifest;
+import gov.cms.bfd.pipeline.rif.extract.s3.DataSetManifest.DataSetManifestEntry;
+import gov.cms.bfd.pipeline.rif.extract.s3.DataSetManifest.DataSetManifestId;
+import gov.cms.bfd.pipeline.rif.extract.s3.task.ManifestEntryDownloadTask.ManifestEntryDownloadResult;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides when each {@link DataSetManifestEntry}'s download should start, such that several can run
+ * at once without the downloaded-but-not-yet-processed files overflowing the temp disk.
+ *
+ * <p>Downloads are started in data set order (and in manifest order within each data set), with
+ * the files that the current data set needs (see {@link #submit(DataSetManifestEntry)}) always
+ * ahead of any prefetched ones (see {@link #prefetch(DataSetManifestEntry)}). Each download
+ * reserves its file's size against the disk budget when it starts, and holds that reservation until
+ * its data set has been processed and {@link #release(DataSetManifest)} is called. Prefetches never
+ * exceed the budget. Downloads for the current data set only do so when nothing else is running, so
+ * that a single oversized file (or a budget filled with prefetched files) can't stall processing.
+ *
+ * <p>Instances are thread-safe.
+ */
+final class ManifestEntryDownloadScheduler {
+  private static final Logger LOGGER =
+      LoggerFactory.getLogger(ManifestEntryDownloadScheduler.class);
+
+  /**
+   * The order to start {@link ScheduledDownload}s in: required ones first, then by data set, then
+   * by their position in the data set's manifest.
+   */
+  private static final Comparator<ScheduledDownload> DOWNLOAD_ORDER =
+      Comparator.<ScheduledDownload, Boolean>comparing(d -> !d.required)
+          .thenComparing(d -> d.manifestEntry.getParentManifest())
+          .thenComparingInt(d -> d.manifestIndex);
+
+  private final ExecutorService downloadExecutor;
+  private final Function<DataSetManifestEntry, Callable<ManifestEntryDownloadResult>> taskFactory;
+  private final ToLongFunction<DataSetManifestEntry> sizeLookup;
+  private final int maxConcurrentDownloads;
+  private final long diskBudgetBytes;
+
+  /** The downloads that haven't been started yet, in the order they should be started in. */
+  private final PriorityQueue<ScheduledDownload> queuedDownloads;
+
+  /** All of the downloads that haven't been cleaned up via {@link #cleanup(DataSetManifestId)}. */
+  private final Map<DataSetManifestEntry, ScheduledDownload> downloads;
+
+  private int runningDownloads;
+  private long bytesInFlight;
+  private long bytesReserved;
+
+  /**
+   * Constructs a new {@link ManifestEntryDownloadScheduler}.
+   *
+   * @param appMetrics the {@link MetricRegistry} for the overall application
+   * @param downloadExecutor the {@link ExecutorService} to run the downloads on, which should have
+   *     at least <code>maxConcurrentDownloads</code> threads
+   * @param taskFactory creates the task to actually download each {@link DataSetManifestEntry}
+   * @param sizeLookup looks up the size (in bytes) of each {@link DataSetManifestEntry}'s file
+   * @param maxConcurrentDownloads the maximum number of downloads to run at once
+   * @param diskBudgetBytes the maximum number of bytes of temp disk space to use for downloaded
+   *     files that haven't been released yet
+   */
+  ManifestEntryDownloadScheduler(
+      MetricRegistry appMetrics,
+      ExecutorService downloadExecutor,
+      Function<DataSetManifestEntry, Callable<ManifestEntryDownloadResult>> taskFactory,
+      ToLongFunction<DataSetManifestEntry> sizeLookup,
+      int maxConcurrentDownloads,
+      long diskBudgetBytes) {
+    if (maxConcurrentDownloads < 1) throw new IllegalArgumentException();
+    if (diskBudgetBytes < 0) throw new IllegalArgumentException();
+
+    this.downloadExecutor = downloadExecutor;
+    this.taskFactory = taskFactory;
+    this.sizeLookup = sizeLookup;
+    this.maxConcurrentDownloads = maxConcurrentDownloads;
+    this.diskBudgetBytes = diskBudgetBytes;
+
+    this.queuedDownloads = new PriorityQueue<>(DOWNLOAD_ORDER);
+    this.downloads = new IdentityHashMap<>();
+    this.runningDownloads = 0;
+    this.bytesInFlight = 0L;
+    this.bytesReserved = 0L;
+
+    appMetrics.register(
+        MetricRegistry.name(getClass().getSimpleName(), "queueDepth"),
+        new Gauge<Integer>() {
+          /** @see com.codahale.metrics.Gauge#getValue() */
+          @Override
+          public Integer getValue() {
+            return getQueueDepth();
+          }
+        });
+    appMetrics.register(
+        MetricRegistry.name(getClass().getSimpleName(), "bytesInFlight"),
+        new Gauge<Long>() {
+          /** @see com.codahale.metrics.Gauge#getValue() */
+          @Override
+          public Long getValue() {
+            return getBytesInFlight();
+          }
+        });
+    appMetrics.register(
+        MetricRegistry.name(getClass().getSimpleName(), "bytesReserved"),
+        new Gauge<Long>() {
+          /** @see com.codahale.metrics.Gauge#getValue() */
+          @Override
+          public Long getValue() {
+            return getBytesReserved();
+          }
+        });
+  }
+
+  /**
+   * Schedules the specified {@link DataSetManifestEntry} to be downloaded as soon as possible, as
+   * it's needed by the data set currently being processed. If it was already scheduled (e.g. as a
+   * prefetch), the existing download is returned (and prioritized, if it hasn't started yet).
+   *
+   * @param manifestEntry the {@link DataSetManifestEntry} to download
+   * @return a {@link Future} for the download's {@link ManifestEntryDownloadResult}
+   */
+  synchronized Future<ManifestEntryDownloadResult> submit(DataSetManifestEntry manifestEntry) {
+    return schedule(manifestEntry, true);
+  }
+
+  /**
+   * Schedules the specified {@link DataSetManifestEntry} to be downloaded once there's room for it
+   * in the disk budget, ahead of when it will actually be needed. Does nothing if it was already
+   * scheduled.
+   *
+   * @param manifestEntry the {@link DataSetManifestEntry} to download
+   * @return a {@link Future} for the download's {@link ManifestEntryDownloadResult}
+   */
+  synchronized Future<ManifestEntryDownloadResult> prefetch(DataSetManifestEntry manifestEntry) {
+    return schedule(manifestEntry, false);
+  }
+
+  /**
+   * @param manifestEntry the {@link DataSetManifestEntry} to download
+   * @param required <code>true</code> if the download is needed now, <code>false</code> if it's a
+   *     prefetch
+   * @return a {@link Future} for the download's {@link ManifestEntryDownloadResult}
+   */
+  private Future<ManifestEntryDownloadResult> schedule(
+      DataSetManifestEntry manifestEntry, boolean required) {
+    ScheduledDownload download = downloads.get(manifestEntry);
+    if (download == null) {
+      download = new ScheduledDownload(manifestEntry, required);
+      downloads.put(manifestEntry, download);
+      queuedDownloads.add(download);
+    } else if (required && !download.required && queuedDownloads.remove(download)) {
+      // Re-queue it, so that its new priority takes effect.
+      download.required = true;
+      queuedDownloads.add(download);
+    }
+
+    dispatch();
+    return download.result;
+  }
+
+  /**
+   * Releases the disk budget reserved by the specified {@link DataSetManifest}'s downloads. Should
+   * be called once the data set has been processed and its downloaded files have been deleted.
+   *
+   * @param manifest the {@link DataSetManifest} whose downloads are no longer needed
+   */
+  synchronized void release(DataSetManifest manifest) {
+    for (DataSetManifestEntry manifestEntry : manifest.getEntries()) {
+      ScheduledDownload download = downloads.get(manifestEntry);
+      if (download != null && download.state == DownloadState.COMPLETED) {
+        bytesReserved -= download.sizeBytes;
+        download.state = DownloadState.RELEASED;
+      }
+    }
+
+    dispatch();
+  }
+
+  /**
+   * Forgets about all downloads for the specified data set, which is no longer pending. Any that
+   * haven't started yet are cancelled, and any that completed but were never released (because
+   * the data set wasn't processed by this application) have their files deleted.
+   *
+   * @param manifestId the {@link DataSetManifest#getId()} of the data set to clean up
+   */
+  synchronized void cleanup(DataSetManifestId manifestId) {
+    for (Iterator<ScheduledDownload> downloadsIterator = downloads.values().iterator();
+        downloadsIterator.hasNext(); ) {
+      ScheduledDownload download = downloadsIterator.next();
+      if (!download.manifestEntry.getParentManifest().getId().equals(manifestId)) continue;
+
+      downloadsIterator.remove();
+      if (download.state == DownloadState.QUEUED) {
+        queuedDownloads.remove(download);
+        download.result.cancel(false);
+      } else if (download.state == DownloadState.COMPLETED) {
+        try {
+          Files.deleteIfExists(download.localDownload);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        bytesReserved -= download.sizeBytes;
+        download.state = DownloadState.RELEASED;
+      }
+    }
+
+    dispatch();
+  }
+
+  /**
+   * Cancels all of the downloads that haven't started yet, as part of shutting down. Downloads
+   * already in progress are left alone.
+   */
+  synchronized void cancelQueued() {
+    for (ScheduledDownload download : queuedDownloads) download.result.cancel(false);
+    queuedDownloads.clear();
+  }
+
+  /**
+   * Starts as many queued downloads as the concurrency limit and disk budget allow, in order.
+   * Stops at the first one that doesn't fit, rather than skipping ahead, to keep files arriving in
+   * the order that they'll be needed.
+   *
+   * <p>Note: This looks up file sizes as needed, which requires a (quick) S3 request while holding
+   * this object's lock. Only the next download's size is ever looked up, though.
+   */
+  private void dispatch() {
+    while (runningDownloads < maxConcurrentDownloads && !queuedDownloads.isEmpty()) {
+      ScheduledDownload download = queuedDownloads.peek();
+      if (download.sizeBytes < 0) {
+        try {
+          download.sizeBytes = sizeLookup.applyAsLong(download.manifestEntry);
+        } catch (RuntimeException e) {
+          queuedDownloads.poll();
+          download.state = DownloadState.FAILED;
+          download.result.completeExceptionally(e);
+          continue;
+        }
+      }
+
+      boolean fitsBudget = bytesReserved + download.sizeBytes <= diskBudgetBytes;
+      boolean canExceedBudget = download.required && runningDownloads == 0;
+      if (!fitsBudget && !canExceedBudget) break;
+      if (!fitsBudget)
+        LOGGER.warn(
+            "Exceeding download disk budget of '{}' bytes for '{}' (with '{}' bytes reserved).",
+            diskBudgetBytes,
+            download.manifestEntry,
+            bytesReserved);
+
+      queuedDownloads.poll();
+      download.state = DownloadState.RUNNING;
+      runningDownloads++;
+      bytesInFlight += download.sizeBytes;
+      bytesReserved += download.sizeBytes;
+      LOGGER.debug(
+          "Starting {} download of '{}' ('{}' bytes).",
+          download.required ? "required" : "prefetch",
+          download.manifestEntry,
+          download.sizeBytes);
+      downloadExecutor.submit(() -> runDownload(download));
+    }
+  }
+
+  /**
+   * Runs the specified {@link ScheduledDownload}, on a {@link #downloadExecutor} thread.
+   *
+   * @param download the {@link ScheduledDownload} to run
+   * @return the {@link ManifestEntryDownloadResult} for the download
+   * @throws Exception Any {@link Exception}s encountered will be bubbled up, such that the {@link
+   *     #downloadExecutor} can act on them.
+   */
+  private ManifestEntryDownloadResult runDownload(ScheduledDownload download) throws Exception {
+    ManifestEntryDownloadResult result;
+    try {
+      result = taskFactory.apply(download.manifestEntry).call();
+    } catch (Exception e) {
+      downloadFinished(download, null);
+      download.result.completeExceptionally(e);
+      throw e;
+    }
+
+    /*
+     * Only hand out the result once the scheduler's state reflects it, so that callers can
+     * immediately (and reliably) release() it.
+     */
+    downloadFinished(download, result);
+    download.result.complete(result);
+    return result;
+  }
+
+  /**
+   * Updates this {@link ManifestEntryDownloadScheduler}'s state after a download completes (or
+   * fails), and starts any downloads that can now run.
+   *
+   * @param download the {@link ScheduledDownload} that finished
+   * @param result the {@link ManifestEntryDownloadResult} of the download, or <code>null</code> if
+   *     it failed
+   */
+  private synchronized void downloadFinished(
+      ScheduledDownload download, ManifestEntryDownloadResult result) {
+    runningDownloads--;
+    bytesInFlight -= download.sizeBytes;
+    download.localDownload = result != null ? result.getLocalDownload() : null;
+    if (result != null && downloads.get(download.manifestEntry) == download) {
+      download.state = DownloadState.COMPLETED;
+    } else {
+      // Failed downloads clean up after themselves, and cleaned-up ones were deleted already.
+      bytesReserved -= download.sizeBytes;
+      download.state = result != null ? DownloadState.RELEASED : DownloadState.FAILED;
+      if (result != null) deleteQuietly(download);
+    }
+
+    dispatch();
+  }
+
+  /**
+   * Deletes the local file for the specified {@link ScheduledDownload}, which is no longer wanted.
+   *
+   * @param download the completed {@link ScheduledDownload} to delete the file of
+   */
+  private static void deleteQuietly(ScheduledDownload download) {
+    try {
+      Files.deleteIfExists(download.localDownload);
+    } catch (IOException e) {
+      LOGGER.warn("Unable to delete abandoned download of '{}'.", download.manifestEntry, e);
+    }
+  }
+
+  /** @return the number of downloads waiting to start */
+  synchronized int getQueueDepth() {
+    return queuedDownloads.size();
+  }
+
+  /** @return the combined size (in bytes) of the downloads currently in progress */
+  synchronized long getBytesInFlight() {
+    return bytesInFlight;
+  }
+
+  /**
+   * @return the combined size (in bytes) of the downloads that are in progress or completed but not
+   *     yet released, which is what counts against the disk budget
+   */
+  synchronized long getBytesReserved() {
+    return bytesReserved;
+  }
+
+  /** Enumerates the states that a {@link ScheduledDownload} moves through. */
+  private static enum DownloadState {
+    QUEUED,
+
+    RUNNING,
+
+    COMPLETED,
+
+    FAILED,
+
+    RELEASED;
+  }
+
+  /** Tracks the state of a single {@link DataSetManifestEntry}'s download. */
+  private static final class ScheduledDownload {
+    private final DataSetManifestEntry manifestEntry;
+    private final int manifestIndex;
+    private final CompletableFuture<ManifestEntryDownloadResult> result;
+    private boolean required;
+    private DownloadState state;
+
+    /** The downloaded file, once the download has completed successfully. */
+    private Path localDownload;
+
+    /** The size of the file being downloaded, or <code>-1</code> if it's not known yet. */
+    private long sizeBytes;
+
+    /**
+     * Constructs a new {@link ScheduledDownload}.
+     *
+     * @param manifestEntry the {@link DataSetManifestEntry} to be downloaded
+     * @param required <code>true</code> if the download is needed now, <code>false</code> if it's
+     *     a prefetch
+     */
+    ScheduledDownload(DataSetManifestEntry manifestEntry, boolean required) {
+      this.manifestEntry = manifestEntry;
+      this.manifestIndex = manifestEntry.getParentManifest().getEntries().indexOf(manifestEntry);
+      this.result = new CompletableFuture<>();
+      this.required = required;
+      this.state = DownloadState.QUEUED;
+      this.sizeBytes = -1L;
+    }
+  }
+}
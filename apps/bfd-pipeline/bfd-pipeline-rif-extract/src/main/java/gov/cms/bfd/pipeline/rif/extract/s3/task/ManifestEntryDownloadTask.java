@@ -1,8 +1,6 @@
 package gov.cms.bfd.pipeline.rif.extract.s3.task;
 
 import com.amazonaws.AmazonClientException;
-import com.amazonaws.services.s3.model.GetObjectRequest;
-import com.amazonaws.services.s3.transfer.Download;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.justdavis.karl.misc.exceptions.BadCodeMonkeyException;
@@ -12,7 +10,7 @@ import gov.cms.bfd.pipeline.rif.extract.exceptions.ChecksumException;
 import gov.cms.bfd.pipeline.rif.extract.s3.DataSetManifest.DataSetManifestEntry;
 import gov.cms.bfd.pipeline.rif.extract.s3.DataSetMonitorWorker;
 import gov.cms.bfd.pipeline.rif.extract.s3.task.ManifestEntryDownloadTask.ManifestEntryDownloadResult;
-import java.io.FileInputStream;
+import gov.cms.bfd.pipeline.rif.extract.s3.task.ParallelRangeDownloader.RangedDownloadResult;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
@@ -59,51 +57,56 @@ public final class ManifestEntryDownloadTask implements Callable<ManifestEntryDo
   /** @see java.util.concurrent.Callable#call() */
   @Override
   public ManifestEntryDownloadResult call() throws Exception {
+    Path localTempFile = null;
     try {
-      GetObjectRequest objectRequest =
-          new GetObjectRequest(
-              options.getS3BucketName(),
-              String.format(
-                  "%s/%s/%s",
-                  DataSetMonitorWorker.S3_PREFIX_PENDING_DATA_SETS,
-                  manifestEntry.getParentManifest().getTimestampText(),
-                  manifestEntry.getName()));
-      Path localTempFile = Files.createTempFile("data-pipeline-s3-temp", ".rif");
+      String s3Key = manifestEntry.computeS3Key(DataSetMonitorWorker.S3_PREFIX_PENDING_DATA_SETS);
+      localTempFile = Files.createTempFile("data-pipeline-s3-temp", ".rif");
 
+      /*
+       * The checksum is computed as the download progresses, so there's no need to re-read the
+       * (possibly very large) file once it's complete.
+       */
       Timer.Context downloadTimer =
           appMetrics
               .timer(MetricRegistry.name(getClass().getSimpleName(), "downloadSystemTime"))
               .time();
       LOGGER.debug(
           "Downloading '{}' to '{}'...", manifestEntry, localTempFile.toAbsolutePath().toString());
-      Download downloadHandle =
-          s3TaskManager.getS3TransferManager().download(objectRequest, localTempFile.toFile());
-      downloadHandle.waitForCompletion();
+      RangedDownloadResult downloadResult =
+          s3TaskManager
+              .getRangeDownloader()
+              .download(options.getS3BucketName(), s3Key, localTempFile);
+      long downloadNanos = downloadTimer.stop();
+
+      long downloadBytes = downloadResult.getObjectMetadata().getContentLength();
+      long bytesPerSecond =
+          (long) (downloadBytes / Math.max(downloadNanos / 1_000_000_000.0, 0.001));
+      appMetrics
+          .histogram(
+              MetricRegistry.name(getClass().getSimpleName(), "downloadThroughputBytesPerSecond"))
+          .update(bytesPerSecond);
       LOGGER.debug(
-          "Downloaded '{}' to '{}'.", manifestEntry, localTempFile.toAbsolutePath().toString());
-      downloadTimer.close();
-
-      // generate MD5ChkSum value on file just downloaded
-      Timer.Context md5ChkSumTimer =
-          appMetrics
-              .timer(MetricRegistry.name(getClass().getSimpleName(), "md5ChkSumSystemTime"))
-              .time();
-      InputStream downloadedInputStream = new FileInputStream(localTempFile.toString());
-      String generatedMD5ChkSum = ManifestEntryDownloadTask.computeMD5ChkSum(downloadedInputStream);
-      md5ChkSumTimer.close();
+          "Downloaded '{}' to '{}' ('{}' bytes, at '{}' bytes/second).",
+          manifestEntry,
+          localTempFile.toAbsolutePath().toString(),
+          downloadBytes,
+          bytesPerSecond);
 
       String downloadedFileMD5ChkSum =
-          downloadHandle.getObjectMetadata().getUserMetaDataOf("md5chksum");
+          downloadResult.getObjectMetadata().getUserMetaDataOf("md5chksum");
       // TODO Remove null check below once Jira CBBD-368 is completed
       if ((downloadedFileMD5ChkSum != null)
-          && (!generatedMD5ChkSum.equals(downloadedFileMD5ChkSum)))
+          && (!downloadResult.getMD5ChkSum().equals(downloadedFileMD5ChkSum)))
         throw new ChecksumException(
             "Checksum doesn't match on downloaded file "
                 + localTempFile
                 + " manifest entry is "
                 + manifestEntry.toString());
 
-      return new ManifestEntryDownloadResult(manifestEntry, localTempFile);
+      ManifestEntryDownloadResult result =
+          new ManifestEntryDownloadResult(manifestEntry, localTempFile);
+      localTempFile = null;
+      return result;
     } catch (IOException e) {
       throw new UncheckedIOException(e);
     } catch (AmazonClientException e) {
@@ -111,6 +114,9 @@ public final class ManifestEntryDownloadTask implements Callable<ManifestEntryDo
     } catch (InterruptedException e) {
       // Shouldn't happen, as our apps don't use thread interrupts.
       throw new BadCodeMonkeyException(e);
+    } finally {
+      // Don't leave partial/corrupt downloads lying around.
+      if (localTempFile != null) Files.deleteIfExists(localTempFile);
     }
   }
 
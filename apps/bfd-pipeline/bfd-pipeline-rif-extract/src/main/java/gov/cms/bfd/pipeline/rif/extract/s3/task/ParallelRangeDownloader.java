@@ -0,0 +1,337 @@
+package gov.cms.bfd.pipeline.rif.extract.s3.task;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.justdavis.karl.misc.exceptions.BadCodeMonkeyException;
+import gov.cms.bfd.pipeline.rif.extract.exceptions.AwsFailureException;
+import gov.cms.bfd.pipeline.rif.extract.exceptions.ChecksumException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Downloads S3 objects to local files by fetching several byte ranges of each object at once, and
+ * writing them into a preallocated file via positional {@link FileChannel} writes. The object's MD5
+ * checksum is computed while the download is in progress, by feeding each range into the digest in
+ * order as it's stitched in. Accordingly, downloading and verifying an object only requires one
+ * pass over its data, rather than a download followed by a complete re-read of the file.
+ *
+ * <p>Each download holds at most <code>maxRangesInFlight</code> ranges in memory at once, so the
+ * memory required per concurrent download is roughly <code>rangeSize * maxRangesInFlight</code>.
+ *
+ * <p>Instances are thread-safe, and a single instance may be used for multiple concurrent
+ * downloads.
+ */
+public final class ParallelRangeDownloader {
+  private static final Logger LOGGER = LoggerFactory.getLogger(ParallelRangeDownloader.class);
+
+  /** The default number of bytes to request from S3 in each ranged <code>GET</code>. */
+  public static final long DEFAULT_RANGE_SIZE = 8L * 1024L * 1024L;
+
+  /** The default maximum number of ranges to have in flight per download. */
+  public static final int DEFAULT_MAX_RANGES_IN_FLIGHT = 8;
+
+  /**
+   * The maximum number of times that a single range will be (re-)requested before giving up on it,
+   * when S3 or the network misbehave.
+   */
+  static final int MAX_ATTEMPTS_PER_RANGE = 5;
+
+  private final AmazonS3 s3Client;
+  private final ExecutorService rangeExecutor;
+  private final long rangeSize;
+  private final int maxRangesInFlight;
+  private final BandwidthThrottle bandwidthThrottle;
+  private final Meter bytesMeter;
+  private final Counter rangeRetriesCounter;
+
+  /**
+   * Constructs a new {@link ParallelRangeDownloader}.
+   *
+   * @param appMetrics the {@link MetricRegistry} for the overall application
+   * @param s3Client the {@link AmazonS3} client to use
+   * @param rangeExecutor the {@link ExecutorService} to run the individual range downloads on,
+   *     which should have at least <code>maxRangesInFlight</code> threads
+   * @param rangeSize the number of bytes to request from S3 in each ranged <code>GET</code>, e.g.
+   *     {@link #DEFAULT_RANGE_SIZE}
+   * @param maxRangesInFlight the maximum number of ranges to download at once for each object,
+   *     e.g. {@link #DEFAULT_MAX_RANGES_IN_FLIGHT}
+   */
+  public ParallelRangeDownloader(
+      MetricRegistry appMetrics,
+      AmazonS3 s3Client,
+      ExecutorService rangeExecutor,
+      long rangeSize,
+      int maxRangesInFlight) {
+    this(appMetrics, s3Client, rangeExecutor, rangeSize, maxRangesInFlight, null);
+  }
+
+  /**
+   * Constructs a new {@link ParallelRangeDownloader}.
+   *
+   * @param appMetrics the {@link MetricRegistry} for the overall application
+   * @param s3Client the {@link AmazonS3} client to use
+   * @param rangeExecutor the {@link ExecutorService} to run the individual range downloads on,
+   *     which should have at least <code>maxRangesInFlight</code> threads
+   * @param rangeSize the number of bytes to request from S3 in each ranged <code>GET</code>, e.g.
+   *     {@link #DEFAULT_RANGE_SIZE}
+   * @param maxRangesInFlight the maximum number of ranges to download at once for each object,
+   *     e.g. {@link #DEFAULT_MAX_RANGES_IN_FLIGHT}
+   * @param bandwidthThrottle the {@link BandwidthThrottle} to limit all downloads with, or <code>
+   *     null</code> if they should be unlimited
+   */
+  ParallelRangeDownloader(
+      MetricRegistry appMetrics,
+      AmazonS3 s3Client,
+      ExecutorService rangeExecutor,
+      long rangeSize,
+      int maxRangesInFlight,
+      BandwidthThrottle bandwidthThrottle) {
+    Objects.requireNonNull(appMetrics);
+    Objects.requireNonNull(s3Client);
+    Objects.requireNonNull(rangeExecutor);
+    if (rangeSize < 1 || rangeSize > Integer.MAX_VALUE) throw new IllegalArgumentException();
+    if (maxRangesInFlight < 1) throw new IllegalArgumentException();
+
+    this.s3Client = s3Client;
+    this.rangeExecutor = rangeExecutor;
+    this.rangeSize = rangeSize;
+    this.maxRangesInFlight = maxRangesInFlight;
+    this.bandwidthThrottle = bandwidthThrottle;
+    this.bytesMeter =
+        appMetrics.meter(MetricRegistry.name(getClass().getSimpleName(), "bytesDownloaded"));
+    this.rangeRetriesCounter =
+        appMetrics.counter(MetricRegistry.name(getClass().getSimpleName(), "rangeRetries"));
+  }
+
+  /**
+   * Downloads the specified S3 object to the specified local file, blocking until the download has
+   * completed (or failed).
+   *
+   * @param s3BucketName the name of the S3 bucket that the object is in
+   * @param s3Key the key of the S3 object to download
+   * @param localFile the local file to download to, which will be overwritten
+   * @return a {@link RangedDownloadResult} with the details of the completed download
+   * @throws IOException Any {@link IOException}s encountered will be bubbled up.
+   * @throws InterruptedException An {@link InterruptedException} will be bubbled up if this thread
+   *     is interrupted while waiting for the download to complete.
+   */
+  public RangedDownloadResult download(String s3BucketName, String s3Key, Path localFile)
+      throws IOException, InterruptedException {
+    ObjectMetadata objectMetadata = s3Client.getObjectMetadata(s3BucketName, s3Key);
+    long objectLength = objectMetadata.getContentLength();
+    long rangeCount = (objectLength + rangeSize - 1) / rangeSize;
+
+    MessageDigest md5Digest;
+    try {
+      md5Digest = MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      // Every JVM is required to support MD5.
+      throw new BadCodeMonkeyException(e);
+    }
+
+    Deque<Future<byte[]>> rangesInFlight = new ArrayDeque<>(maxRangesInFlight);
+    try (RandomAccessFile file = new RandomAccessFile(localFile.toFile(), "rw")) {
+      file.setLength(objectLength);
+      FileChannel fileChannel = file.getChannel();
+
+      /*
+       * Keep a sliding window of ranges in flight, and stitch each into the digest in order. This
+       * thread mostly just waits on the oldest range, while the later ones download behind it.
+       */
+      try {
+        long nextRange = 0;
+        for (long stitchedRanges = 0; stitchedRanges < rangeCount; stitchedRanges++) {
+          while (nextRange < rangeCount && rangesInFlight.size() < maxRangesInFlight) {
+            long rangeStart = nextRange * rangeSize;
+            long rangeEnd = Math.min(rangeStart + rangeSize, objectLength);
+            rangesInFlight.add(
+                rangeExecutor.submit(
+                    () ->
+                        downloadRange(
+                            s3BucketName,
+                            s3Key,
+                            objectMetadata.getETag(),
+                            fileChannel,
+                            rangeStart,
+                            rangeEnd)));
+            nextRange++;
+          }
+
+          byte[] rangeData = rangesInFlight.removeFirst().get();
+          md5Digest.update(rangeData);
+        }
+      } finally {
+        // Only non-empty if something went wrong, in which case the other ranges aren't needed.
+        rangesInFlight.forEach(f -> f.cancel(true));
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+      if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      throw new BadCodeMonkeyException(e);
+    }
+
+    return new RangedDownloadResult(
+        objectMetadata, Base64.getEncoder().encodeToString(md5Digest.digest()));
+  }
+
+  /**
+   * Downloads the specified range of an S3 object, writes it to the specified {@link FileChannel},
+   * and returns it (so it can be fed into the object's checksum).
+   *
+   * @param s3BucketName the name of the S3 bucket that the object is in
+   * @param s3Key the key of the S3 object to download
+   * @param eTag the ETag of the S3 object, to guard against it being replaced mid-download, or
+   *     <code>null</code> to skip that check
+   * @param fileChannel the {@link FileChannel} to write the range to
+   * @param rangeStart the (inclusive) offset in the S3 object that the range starts at
+   * @param rangeEnd the (exclusive) offset in the S3 object that the range ends at
+   * @return the range's data
+   * @throws IOException Any {@link IOException}s encountered (after retrying) will be bubbled up.
+   */
+  private byte[] downloadRange(
+      String s3BucketName,
+      String s3Key,
+      String eTag,
+      FileChannel fileChannel,
+      long rangeStart,
+      long rangeEnd)
+      throws IOException {
+    byte[] rangeData = new byte[(int) (rangeEnd - rangeStart)];
+    int bytesFilled = 0;
+    int rangeFailures = 0;
+    while (bytesFilled < rangeData.length) {
+      // If a previous attempt failed partway through, just ask for the rest of the range.
+      GetObjectRequest rangeRequest =
+          new GetObjectRequest(s3BucketName, s3Key)
+              .withRange(rangeStart + bytesFilled, rangeEnd - 1);
+      if (eTag != null) rangeRequest.withMatchingETagConstraint(eTag);
+
+      S3ObjectInputStream rangeContent = null;
+      try {
+        S3Object rangeObject = s3Client.getObject(rangeRequest);
+        if (rangeObject == null)
+          // Only happens if the ETag constraint fails, which means the object was replaced.
+          throw new ChecksumException(
+              String.format("S3 object '%s' was modified while it was being downloaded.", s3Key));
+        rangeContent = rangeObject.getObjectContent();
+
+        while (bytesFilled < rangeData.length) {
+          if (Thread.currentThread().isInterrupted())
+            throw new IOException("Range download cancelled.");
+          int bytesRead =
+              rangeContent.read(rangeData, bytesFilled, rangeData.length - bytesFilled);
+          if (bytesRead < 0)
+            throw new IOException(
+                String.format(
+                    "Range of S3 object '%s' ended early, at offset '%d' (of '%d').",
+                    s3Key, rangeStart + bytesFilled, rangeEnd));
+          bytesFilled += bytesRead;
+          bytesMeter.mark(bytesRead);
+          throttle(bytesRead);
+        }
+      } catch (IOException | AmazonClientException e) {
+        if (rangeContent != null) rangeContent.abort();
+        rangeFailures++;
+        if (Thread.currentThread().isInterrupted() || rangeFailures >= MAX_ATTEMPTS_PER_RANGE) {
+          if (e instanceof IOException) throw (IOException) e;
+          else throw new AwsFailureException(e);
+        }
+
+        rangeRetriesCounter.inc();
+        LOGGER.warn(
+            "Ranged GET of S3 object '{}' failed at offset '{}' (failure {}), retrying...",
+            s3Key,
+            rangeStart + bytesFilled,
+            rangeFailures,
+            e);
+        continue;
+      }
+
+      // All of the range's data has been received, so failures here don't matter.
+      try {
+        rangeContent.close();
+      } catch (IOException e) {
+        LOGGER.debug("Unable to cleanly close completed range of S3 object '{}'.", s3Key, e);
+      }
+    }
+
+    // Positional writes don't touch the channel's position, so concurrent writes are safe.
+    ByteBuffer rangeBuffer = ByteBuffer.wrap(rangeData);
+    long filePosition = rangeStart;
+    while (rangeBuffer.hasRemaining())
+      filePosition += fileChannel.write(rangeBuffer, filePosition);
+
+    return rangeData;
+  }
+
+  /**
+   * Waits as long as {@link #bandwidthThrottle} requires, after the specified number of bytes has
+   * been downloaded.
+   *
+   * @param bytes the number of bytes that were just downloaded
+   * @throws InterruptedIOException An {@link InterruptedIOException} will be thrown if the range
+   *     download is cancelled while waiting.
+   */
+  private void throttle(int bytes) throws InterruptedIOException {
+    if (bandwidthThrottle == null) return;
+    try {
+      bandwidthThrottle.acquire(bytes);
+    } catch (InterruptedException e) {
+      // Restore the flag, so it's seen by the caller's checks, too.
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Range download cancelled.");
+    }
+  }
+
+  /** Represents the results of a {@link ParallelRangeDownloader#download(String, String, Path)}. */
+  public static final class RangedDownloadResult {
+    private final ObjectMetadata objectMetadata;
+    private final String md5ChkSum;
+
+    /**
+     * Constructs a new {@link RangedDownloadResult}.
+     *
+     * @param objectMetadata the value to use for {@link #getObjectMetadata()}
+     * @param md5ChkSum the value to use for {@link #getMD5ChkSum()}
+     */
+    RangedDownloadResult(ObjectMetadata objectMetadata, String md5ChkSum) {
+      this.objectMetadata = objectMetadata;
+      this.md5ChkSum = md5ChkSum;
+    }
+
+    /** @return the {@link ObjectMetadata} of the S3 object that was downloaded */
+    public ObjectMetadata getObjectMetadata() {
+      return objectMetadata;
+    }
+
+    /**
+     * @return the Base64-encoded MD5 checksum of the data that was downloaded, in the same format
+     *     as {@link ManifestEntryDownloadTask#computeMD5ChkSum(java.io.InputStream)}
+     */
+    public String getMD5ChkSum() {
+      return md5ChkSum;
+    }
+  }
+}
@@ -1,20 +1,27 @@
 package gov.cms.bfd.pipeline.rif.extract.s3.task;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
 import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.TransferManagerBuilder;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.justdavis.karl.misc.exceptions.BadCodeMonkeyException;
 import gov.cms.bfd.pipeline.rif.extract.ExtractionOptions;
+import gov.cms.bfd.pipeline.rif.extract.exceptions.AwsFailureException;
 import gov.cms.bfd.pipeline.rif.extract.s3.DataSetManifest;
 import gov.cms.bfd.pipeline.rif.extract.s3.DataSetManifest.DataSetManifestEntry;
 import gov.cms.bfd.pipeline.rif.extract.s3.DataSetManifest.DataSetManifestId;
+import gov.cms.bfd.pipeline.rif.extract.s3.DataSetMonitorWorker;
 import gov.cms.bfd.pipeline.rif.extract.s3.DataSetQueue;
+import gov.cms.bfd.pipeline.rif.extract.s3.S3RifFile;
 import gov.cms.bfd.pipeline.rif.extract.s3.S3Utilities;
 import gov.cms.bfd.pipeline.rif.extract.s3.TaskExecutor;
 import gov.cms.bfd.pipeline.rif.extract.s3.task.ManifestEntryDownloadTask.ManifestEntryDownloadResult;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
@@ -24,18 +31,22 @@ import org.slf4j.LoggerFactory;
 public final class S3TaskManager {
   private static final Logger LOGGER = LoggerFactory.getLogger(S3TaskManager.class);
 
+  /** The default value for {@link ExtractionOptions#getDownloadThreads()}. */
+  public static final int DEFAULT_DOWNLOAD_THREADS = 3;
+
+  /** The default value for {@link ExtractionOptions#getDownloadDiskBudget()}: 50 GB. */
+  public static final long DEFAULT_DOWNLOAD_DISK_BUDGET = 50L * 1000L * 1000L * 1000L;
+
   private final MetricRegistry appMetrics;
   private final ExtractionOptions options;
   private final AmazonS3 s3Client;
   private final TransferManager s3TransferManager;
   private final TaskExecutor downloadTasksExecutor;
+  private final ExecutorService rangeDownloadsExecutor;
+  private final ParallelRangeDownloader rangeDownloader;
+  private final ManifestEntryDownloadScheduler downloadScheduler;
   private final TaskExecutor moveTasksExecutor;
-
-  /**
-   * Tracks the asynchronous downloads of {@link DataSetManifestEntry}s, which will produce {@link
-   * ManifestEntryDownloadResult}.
-   */
-  private final Map<DataSetManifestEntry, Future<ManifestEntryDownloadResult>> downloadTasks;
+  private final Meter listObjectsCalls;
 
   /**
    * Constructs a new {@link S3TaskManager}.
@@ -50,9 +61,31 @@ public final class S3TaskManager {
     this.s3Client = S3Utilities.createS3Client(options);
     this.s3TransferManager = TransferManagerBuilder.standard().withS3Client(s3Client).build();
 
-    this.downloadTasksExecutor = new TaskExecutor("Download RIF Executor", 1);
+    this.downloadTasksExecutor =
+        new TaskExecutor("Download RIF Executor", options.getDownloadThreads());
+    this.rangeDownloadsExecutor =
+        Executors.newFixedThreadPool(
+            options.getDownloadThreads() * ParallelRangeDownloader.DEFAULT_MAX_RANGES_IN_FLIGHT);
+    this.rangeDownloader =
+        new ParallelRangeDownloader(
+            appMetrics,
+            s3Client,
+            rangeDownloadsExecutor,
+            ParallelRangeDownloader.DEFAULT_RANGE_SIZE,
+            ParallelRangeDownloader.DEFAULT_MAX_RANGES_IN_FLIGHT,
+            options.getDownloadBandwidthLimit().map(BandwidthThrottle::new).orElse(null));
+    this.downloadScheduler =
+        new ManifestEntryDownloadScheduler(
+            appMetrics,
+            downloadTasksExecutor,
+            manifestEntry ->
+                new ManifestEntryDownloadTask(this, appMetrics, options, manifestEntry),
+            this::lookupObjectSize,
+            options.getDownloadThreads(),
+            options.getDownloadDiskBudget());
     this.moveTasksExecutor = new TaskExecutor("Move Completed RIF Executor", 2);
-    this.downloadTasks = new HashMap<>();
+    this.listObjectsCalls =
+        appMetrics.meter(MetricRegistry.name(getClass().getSimpleName(), "listObjectsCalls"));
   }
 
   /** @return the {@link AmazonS3} client being used by this {@link S3TaskManager} */
@@ -66,33 +99,81 @@ public final class S3TaskManager {
   }
 
   /**
-   * Submits an asynchronously task to download the specified {@link DataSetManifestEntry}'s RIF
-   * file and returns the result as a {@link Future} {@link ManifestEntryDownloadResult}.
+   * Runs the specified S3 list request (for a single page of results), via {@link #getS3Client()}.
+   * All S3 listings should go through here, so that they're counted by the <code>listObjectsCalls
+   * </code> {@link Meter}: they're by far the most frequent S3 requests made while idle.
    *
-   * <p>Note that callers of this method need to be careful not to start downloading too much at
-   * once, as each download can consume a large amount of CPU resources while in progress and a
-   * large amount of disk space as it completes.
+   * @param listRequest the {@link ListObjectsV2Request} to run
+   * @return the {@link ListObjectsV2Result} for the specified request
+   */
+  public ListObjectsV2Result listObjects(ListObjectsV2Request listRequest) {
+    listObjectsCalls.mark();
+    return s3Client.listObjectsV2(listRequest);
+  }
+
+  /**
+   * @return the {@link ParallelRangeDownloader} that {@link ManifestEntryDownloadTask}s should use
+   */
+  public ParallelRangeDownloader getRangeDownloader() {
+    return rangeDownloader;
+  }
+
+  /**
+   * Schedules the specified {@link DataSetManifestEntry}'s RIF file to be downloaded as soon as
+   * possible, and returns the result as a {@link Future} {@link ManifestEntryDownloadResult}. If it
+   * was already prefetched (or is being prefetched) via {@link
+   * #prefetchAsync(DataSetManifestEntry)}, that download will be used.
+   *
+   * <p>Note that several downloads may run at once, up to {@link
+   * ExtractionOptions#getDownloadThreads()}, and that they're subject to the {@link
+   * ExtractionOptions#getDownloadDiskBudget()}: see {@link ManifestEntryDownloadScheduler} for
+   * details.
    *
    * @param manifestEntry the {@link DataSetManifestEntry} to download asynchronously
    * @return a {@link Future} {@link ManifestEntryDownloadResult} that can be used to retrieve the
    *     results of the asynchronous download
    */
   public Future<ManifestEntryDownloadResult> downloadAsync(DataSetManifestEntry manifestEntry) {
-    // Has this download already been submitted? If so, just return it.
-    if (this.downloadTasks.containsKey(manifestEntry)) return this.downloadTasks.get(manifestEntry);
+    return downloadScheduler.submit(manifestEntry);
+  }
 
-    /*
-     * Submit a new task for the job and cache the Future in case someone tries to
-     * submit the job again later.
-     */
-    ManifestEntryDownloadTask downloadTask =
-        new ManifestEntryDownloadTask(this, appMetrics, options, manifestEntry);
-    Future<ManifestEntryDownloadResult> downloadFuture =
-        this.downloadTasksExecutor.submit(downloadTask);
-    LOGGER.debug("Submitted future: {}", TaskExecutor.getTaskId(downloadFuture));
-    this.downloadTasks.put(manifestEntry, downloadFuture);
-
-    return downloadFuture;
+  /**
+   * Schedules the specified {@link DataSetManifestEntry}'s RIF file, which is part of an upcoming
+   * data set, to be downloaded in the background once there's room for it in the {@link
+   * ExtractionOptions#getDownloadDiskBudget()}. Callers should prefetch entries in the order that
+   * they'll be processed in, e.g. {@link DataSetQueue} order.
+   *
+   * @param manifestEntry the {@link DataSetManifestEntry} to download asynchronously
+   */
+  public void prefetchAsync(DataSetManifestEntry manifestEntry) {
+    downloadScheduler.prefetch(manifestEntry);
+  }
+
+  /**
+   * Releases the temp disk space reserved for the specified data set's downloads. Must be called
+   * after the data set has been processed and its {@link S3RifFile#cleanupTempFile()}s have been
+   * called, so that further downloads can proceed.
+   *
+   * @param manifest the {@link DataSetManifest} of the data set that's been processed
+   */
+  public void releaseDownloads(DataSetManifest manifest) {
+    downloadScheduler.release(manifest);
+  }
+
+  /**
+   * @param manifestEntry the {@link DataSetManifestEntry} to get the size of
+   * @return the size (in bytes) of the specified {@link DataSetManifestEntry}'s S3 object
+   */
+  private long lookupObjectSize(DataSetManifestEntry manifestEntry) {
+    try {
+      return s3Client
+          .getObjectMetadata(
+              options.getS3BucketName(),
+              manifestEntry.computeS3Key(DataSetMonitorWorker.S3_PREFIX_PENDING_DATA_SETS))
+          .getContentLength();
+    } catch (AmazonClientException e) {
+      throw new AwsFailureException(e);
+    }
   }
 
   /**
@@ -106,9 +187,7 @@ public final class S3TaskManager {
    *     longer present in the "Incoming" S3 queue
    */
   public void cleanupOldDataSet(DataSetManifestId manifestId) {
-    downloadTasks
-        .entrySet()
-        .removeIf(e -> e.getKey().getParentManifest().getId().equals(manifestId));
+    downloadScheduler.cleanup(manifestId);
   }
 
   /**
@@ -127,8 +206,9 @@ public final class S3TaskManager {
     this.moveTasksExecutor.shutdown();
 
     /*
-     * Prevent any new download tasks from being submitted.
+     * Prevent any new download tasks from being submitted, and abandon those that haven't started.
      */
+    this.downloadScheduler.cancelQueued();
     this.downloadTasksExecutor.shutdown();
 
     try {
@@ -143,6 +223,10 @@ public final class S3TaskManager {
         this.downloadTasksExecutor.awaitTermination(30, TimeUnit.MINUTES);
         LOGGER.info("All in-progress downloads are complete.");
       }
+
+      // Nothing else can be using the range downloads executor at this point.
+      this.rangeDownloadsExecutor.shutdown();
+      this.rangeDownloadsExecutor.awaitTermination(1, TimeUnit.MINUTES);
     } catch (InterruptedException e) {
       // We're not expecting interrupts here, so go boom.
       throw new BadCodeMonkeyException(e);
@@ -18,15 +18,25 @@ import gov.cms.bfd.model.rif.OutpatientClaimLine;
 import gov.cms.bfd.model.rif.PartDEvent;
 import gov.cms.bfd.model.rif.RecordAction;
 import gov.cms.bfd.model.rif.RifFileRecords;
+import gov.cms.bfd.model.rif.RifFileType;
 import gov.cms.bfd.model.rif.RifFilesEvent;
 import gov.cms.bfd.model.rif.RifRecordEvent;
 import gov.cms.bfd.model.rif.SNFClaim;
 import gov.cms.bfd.model.rif.SNFClaimLine;
+import gov.cms.bfd.model.rif.parse.InvalidRifValueException;
 import gov.cms.bfd.model.rif.samples.StaticRifResource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.Month;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -1024,4 +1034,201 @@ public final class RifFilesProcessorTest {
         StaticRifResource.SAMPLE_B_DME.getRifFileType(),
         rifEventsList.get(0).getFileEvent().getFile().getFileType());
   }
+
+  /**
+   * Ensures that {@link gov.cms.bfd.pipeline.rif.extract.RifFilesProcessor} produces the same
+   * records, in the same order, when parsing ungrouped files in parallel as it does when parsing
+   * them sequentially.
+   */
+  @Test
+  public void processRecordsInParallel() {
+    for (StaticRifResource rifResource :
+        new StaticRifResource[] {
+          StaticRifResource.SAMPLE_HICN_MULT_BENES, StaticRifResource.SAMPLE_MCT_PDE
+        }) {
+      RifFilesEvent filesEvent = new RifFilesEvent(Instant.now(), rifResource.toRifFile());
+      List<RifRecordEvent<?>> sequentialEvents =
+          new RifFilesProcessor()
+              .produceRecords(filesEvent.getFileEvents().get(0))
+              .getRecords()
+              .collect(Collectors.toList());
+
+      // Use a tiny chunk size, to ensure that the file gets split up a bunch.
+      RifFileRecords parallelRecords =
+          new RifFilesProcessor(3, 512).produceRecords(filesEvent.getFileEvents().get(0));
+      List<RifRecordEvent<?>> parallelEvents =
+          parallelRecords.getRecords().collect(Collectors.toList());
+      parallelRecords.getRecords().close();
+
+      Assert.assertEquals(rifResource.getRecordCount(), parallelEvents.size());
+      for (int i = 0; i < sequentialEvents.size(); i++) {
+        Assert.assertEquals(
+            sequentialEvents.get(i).getBeneficiaryId(), parallelEvents.get(i).getBeneficiaryId());
+        Assert.assertEquals(
+            sequentialEvents.get(i).getRecordAction(), parallelEvents.get(i).getRecordAction());
+        if (rifResource.getRifFileType() == RifFileType.PDE)
+          Assert.assertEquals(
+              ((PartDEvent) sequentialEvents.get(i).getRecord()).getEventId(),
+              ((PartDEvent) parallelEvents.get(i).getRecord()).getEventId());
+      }
+    }
+  }
+
+  /**
+   * Ensures that {@link gov.cms.bfd.pipeline.rif.extract.RifFilesProcessor} never splits a claim's
+   * lines across chunks when parsing grouped files in parallel.
+   *
+   * @throws IOException (indicates test error)
+   */
+  @Test
+  public void processGroupedRecordsInParallel() throws IOException {
+    /*
+     * Build a carrier file with a few multi-line claims, from the one claim line in
+     * SAMPLE_A_CARRIER.
+     */
+    List<String> sampleLines;
+    try (BufferedReader sampleReader =
+        new BufferedReader(
+            new InputStreamReader(
+                StaticRifResource.SAMPLE_A_CARRIER.getResourceUrl().openStream(),
+                StandardCharsets.UTF_8))) {
+      sampleLines = sampleReader.lines().collect(Collectors.toList());
+    }
+    List<String> carrierLines = new ArrayList<>();
+    carrierLines.add(sampleLines.get(0));
+    int[] linesPerClaim = new int[] {3, 1, 2, 4};
+    for (int claimIndex = 0; claimIndex < linesPerClaim.length; claimIndex++) {
+      String[] claimLineValues = sampleLines.get(1).split("\\|", -1);
+      claimLineValues[2] = "9" + claimIndex;
+      for (int lineIndex = 0; lineIndex < linesPerClaim[claimIndex]; lineIndex++)
+        carrierLines.add(String.join("|", claimLineValues));
+    }
+    Path carrierFile = Files.createTempFile("rif-parallel-carrier", ".txt");
+    Files.write(carrierFile, carrierLines, StandardCharsets.UTF_8);
+
+    try {
+      RifFilesEvent filesEvent =
+          new RifFilesEvent(Instant.now(), new LocalRifFile(carrierFile, RifFileType.CARRIER));
+
+      // A one-byte chunk size means that every chunk will end on the first possible boundary.
+      RifFileRecords rifFileRecords =
+          new RifFilesProcessor(2, 1).produceRecords(filesEvent.getFileEvents().get(0));
+      List<RifRecordEvent<?>> rifEventsList =
+          rifFileRecords.getRecords().collect(Collectors.toList());
+      rifFileRecords.getRecords().close();
+
+      Assert.assertEquals(linesPerClaim.length, rifEventsList.size());
+      for (int claimIndex = 0; claimIndex < linesPerClaim.length; claimIndex++) {
+        CarrierClaim claim = (CarrierClaim) rifEventsList.get(claimIndex).getRecord();
+        Assert.assertEquals("9" + claimIndex, claim.getClaimId());
+        Assert.assertEquals(linesPerClaim[claimIndex], claim.getLines().size());
+      }
+    } finally {
+      Files.delete(carrierFile);
+    }
+  }
+
+  /**
+   * Ensures that {@link gov.cms.bfd.pipeline.rif.extract.RifFilesProcessor} never splits a record
+   * at a line break inside of a quoted column when parsing in parallel.
+   *
+   * @throws IOException (indicates test error)
+   */
+  @Test
+  public void processQuotedLineBreaksInParallel() throws IOException {
+    List<String> sampleLines;
+    try (BufferedReader sampleReader =
+        new BufferedReader(
+            new InputStreamReader(
+                StaticRifResource.SAMPLE_A_BENES.getResourceUrl().openStream(),
+                StandardCharsets.UTF_8))) {
+      sampleLines = sampleReader.lines().collect(Collectors.toList());
+    }
+    int surnameIndex =
+        Arrays.asList(sampleLines.get(0).split("\\|", -1)).indexOf("BENE_SRNM_NAME");
+    String[] surnames = new String[] {"\"Doe\r\nSmith\"", "\"O\"\"Brien\nJr\r\"", "Doe"};
+    List<String> beneLines = new ArrayList<>();
+    beneLines.add(sampleLines.get(0));
+    for (int beneIndex = 0; beneIndex < surnames.length; beneIndex++) {
+      String[] beneValues = sampleLines.get(1).split("\\|", -1);
+      beneValues[1] = "9" + beneIndex;
+      beneValues[surnameIndex] = surnames[beneIndex];
+      beneLines.add(String.join("|", beneValues));
+    }
+    Path beneFile = Files.createTempFile("rif-parallel-benes", ".txt");
+    Files.write(beneFile, beneLines, StandardCharsets.UTF_8);
+
+    try {
+      RifFilesEvent filesEvent =
+          new RifFilesEvent(Instant.now(), new LocalRifFile(beneFile, RifFileType.BENEFICIARY));
+
+      // A one-byte chunk size means that every chunk will end on the first possible boundary.
+      RifFileRecords rifFileRecords =
+          new RifFilesProcessor(2, 1).produceRecords(filesEvent.getFileEvents().get(0));
+      List<RifRecordEvent<?>> rifEventsList =
+          rifFileRecords.getRecords().collect(Collectors.toList());
+      rifFileRecords.getRecords().close();
+
+      Assert.assertEquals(surnames.length, rifEventsList.size());
+      Assert.assertEquals("90", rifEventsList.get(0).getBeneficiaryId());
+      Assert.assertEquals(
+          "Doe\r\nSmith", ((Beneficiary) rifEventsList.get(0).getRecord()).getNameSurname());
+      Assert.assertEquals(
+          "O\"Brien\nJr\r", ((Beneficiary) rifEventsList.get(1).getRecord()).getNameSurname());
+      Assert.assertEquals("92", rifEventsList.get(2).getBeneficiaryId());
+    } finally {
+      Files.delete(beneFile);
+    }
+  }
+
+  /**
+   * Ensures that {@link gov.cms.bfd.pipeline.rif.extract.RifFilesProcessor} reports the same line
+   * number for a bad record in a later chunk as it does when parsing serially.
+   *
+   * @throws IOException (indicates test error)
+   */
+  @Test
+  public void reportParseErrorLineInParallel() throws IOException {
+    List<String> sampleLines;
+    try (BufferedReader sampleReader =
+        new BufferedReader(
+            new InputStreamReader(
+                StaticRifResource.SAMPLE_A_BENES.getResourceUrl().openStream(),
+                StandardCharsets.UTF_8))) {
+      sampleLines = sampleReader.lines().collect(Collectors.toList());
+    }
+    int birthDateIndex =
+        Arrays.asList(sampleLines.get(0).split("\\|", -1)).indexOf("BENE_BIRTH_DT");
+    List<String> beneLines = new ArrayList<>();
+    beneLines.add(sampleLines.get(0));
+    for (int beneIndex = 0; beneIndex < 5; beneIndex++) {
+      String[] beneValues = sampleLines.get(1).split("\\|", -1);
+      beneValues[1] = "9" + beneIndex;
+      if (beneIndex == 3) beneValues[birthDateIndex] = "not-a-date";
+      beneLines.add(String.join("|", beneValues));
+    }
+    Path beneFile = Files.createTempFile("rif-parallel-bad-bene", ".txt");
+    Files.write(beneFile, beneLines, StandardCharsets.UTF_8);
+
+    try {
+      RifFilesEvent filesEvent =
+          new RifFilesEvent(Instant.now(), new LocalRifFile(beneFile, RifFileType.BENEFICIARY));
+
+      // The header is line 1, so the fourth beneficiary is on line 5.
+      for (RifFilesProcessor processor :
+          new RifFilesProcessor[] {new RifFilesProcessor(), new RifFilesProcessor(2, 1)}) {
+        RifFileRecords rifFileRecords = processor.produceRecords(filesEvent.getFileEvents().get(0));
+        try {
+          rifFileRecords.getRecords().collect(Collectors.toList());
+          Assert.fail("Expected a parse error.");
+        } catch (InvalidRifValueException e) {
+          Assert.assertEquals("Parse error encountered near line number '5'.", e.getMessage());
+        } finally {
+          rifFileRecords.getRecords().close();
+        }
+      }
+    } finally {
+      Files.delete(beneFile);
+    }
+  }
 }
@@ -0,0 +1,60 @@
+package gov.cms.bfd.pipeline.rif.extract;
+
+import gov.cms.bfd.model.rif.parse.RifRecord;
+import gov.cms.bfd.model.rif.parse.RifRecordTokenizer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Unit tests for {@link RifRecordGroupingIterator}. */
+public final class RifRecordGroupingIteratorTest {
+  /**
+   * Tests {@link RifRecordGroupingIterator} in a scenario that should result in single-record
+   * groups.
+   */
+  @Test
+  public void singleRowGroups() {
+    List<List<RifRecord>> groupedRecordsList = group("A|B\na|b\na|b\na|b\n", -1);
+
+    Assert.assertEquals(3, groupedRecordsList.size());
+    Assert.assertEquals(1, groupedRecordsList.get(0).size());
+    Assert.assertEquals(1, groupedRecordsList.get(1).size());
+    Assert.assertEquals(1, groupedRecordsList.get(2).size());
+  }
+
+  /**
+   * Tests {@link RifRecordGroupingIterator} in a scenario that should result in groups of varying
+   * sizes, including ones whose grouping values differ only by length or by escaping.
+   */
+  @Test
+  public void multipleRowGroups() {
+    List<List<RifRecord>> groupedRecordsList =
+        group("A|B\na|1\na|2\naa|3\n\"aa\"|4\nc|5\nc|6\nc|7\n", 0);
+
+    Assert.assertEquals(3, groupedRecordsList.size());
+    Assert.assertEquals(2, groupedRecordsList.get(0).size());
+    Assert.assertEquals(2, groupedRecordsList.get(1).size());
+    Assert.assertEquals(3, groupedRecordsList.get(2).size());
+    Assert.assertEquals("7", groupedRecordsList.get(2).get(2).getString(1));
+  }
+
+  /**
+   * @param rif the RIF data (including header) to group
+   * @param groupingColumnIndex the (0-based) index of the column to group by, or <code>-1</code>
+   * @return the groups produced by {@link RifRecordGroupingIterator}
+   */
+  private static List<List<RifRecord>> group(String rif, int groupingColumnIndex) {
+    RifRecordTokenizer tokenizer =
+        new RifRecordTokenizer(
+            ByteBuffer.wrap(rif.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8, null);
+    RifRecordGroupingIterator groupingIter =
+        new RifRecordGroupingIterator(tokenizer, groupingColumnIndex);
+
+    List<List<RifRecord>> groupedRecordsList = new ArrayList<>();
+    groupingIter.forEachRemaining(groupedRecordsList::add);
+    return groupedRecordsList;
+  }
+}
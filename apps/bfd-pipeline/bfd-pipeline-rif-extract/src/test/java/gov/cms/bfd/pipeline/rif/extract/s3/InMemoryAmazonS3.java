@@ -0,0 +1,163 @@
+package gov.cms.bfd.pipeline.rif.extract.s3;
+
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.client.methods.HttpGet;
+
+/**
+ * A minimal in-memory stand-in for {@link AmazonS3}, for unit tests that don't need (or want to
+ * wait for) a real S3 bucket. Only the handful of read operations used by the streaming/ranged
+ * download code are supported: everything else will throw {@link UnsupportedOperationException}s.
+ *
+ * <p>Supports injecting failures, to simulate connections that get dropped partway through a
+ * <code>GET</code>.
+ */
+public final class InMemoryAmazonS3 extends AbstractAmazonS3 {
+  private final Map<String, byte[]> objectData = new ConcurrentHashMap<>();
+  private final Map<String, ObjectMetadata> objectMetadata = new ConcurrentHashMap<>();
+  private final AtomicInteger getObjectRequests = new AtomicInteger(0);
+  private final AtomicInteger failuresToInject = new AtomicInteger(0);
+
+  /**
+   * Adds (or replaces) an object in this fake S3.
+   *
+   * @param bucketName the name of the bucket to add the object to (which needn't be created first)
+   * @param key the key of the object to add
+   * @param data the object's data
+   * @param md5ChkSum the value to use for the object's <code>md5chksum</code> user metadata, or
+   *     <code>null</code> to leave it unset
+   */
+  public void addObject(String bucketName, String key, byte[] data, String md5ChkSum) {
+    ObjectMetadata metadata = new ObjectMetadata();
+    metadata.setContentLength(data.length);
+    if (md5ChkSum != null) metadata.addUserMetadata("md5chksum", md5ChkSum);
+
+    objectData.put(computeObjectId(bucketName, key), data.clone());
+    objectMetadata.put(computeObjectId(bucketName, key), metadata);
+  }
+
+  /**
+   * Causes the next <code>GET</code>s to fail partway through reading their content.
+   *
+   * @param count the number of subsequent <code>GET</code>s that should fail
+   */
+  public void injectFailures(int count) {
+    failuresToInject.set(count);
+  }
+
+  /** @return the total number of {@link #getObject(GetObjectRequest)} calls made so far */
+  public int getObjectRequestCount() {
+    return getObjectRequests.get();
+  }
+
+  /** @see AmazonS3#getObjectMetadata(String, String) */
+  @Override
+  public ObjectMetadata getObjectMetadata(String bucketName, String key) {
+    return getObjectMetadata(new GetObjectMetadataRequest(bucketName, key));
+  }
+
+  /** @see AmazonS3#getObjectMetadata(GetObjectMetadataRequest) */
+  @Override
+  public ObjectMetadata getObjectMetadata(GetObjectMetadataRequest request) {
+    ObjectMetadata metadata =
+        objectMetadata.get(computeObjectId(request.getBucketName(), request.getKey()));
+    if (metadata == null) throw createNotFoundException(request.getKey());
+    return metadata.clone();
+  }
+
+  /** @see AmazonS3#getObject(GetObjectRequest) */
+  @Override
+  public S3Object getObject(GetObjectRequest request) {
+    getObjectRequests.incrementAndGet();
+    String objectId = computeObjectId(request.getBucketName(), request.getKey());
+    byte[] data = objectData.get(objectId);
+    if (data == null) throw createNotFoundException(request.getKey());
+
+    // Note: S3 ranges are inclusive of their end offset.
+    int start = 0;
+    int end = data.length;
+    if (request.getRange() != null) {
+      start = (int) request.getRange()[0];
+      end = (int) Math.min(request.getRange()[1] + 1, data.length);
+    }
+
+    InputStream content = new ByteArrayInputStream(data, start, end - start);
+    if (failuresToInject.getAndUpdate(f -> Math.max(0, f - 1)) > 0)
+      content = new FailingInputStream(content, (end - start) / 2);
+
+    S3Object object = new S3Object();
+    object.setBucketName(request.getBucketName());
+    object.setKey(request.getKey());
+    object.setObjectMetadata(objectMetadata.get(objectId).clone());
+    object.setObjectContent(new S3ObjectInputStream(content, new HttpGet()));
+    return object;
+  }
+
+  /**
+   * @param bucketName the S3 bucket name
+   * @param key the S3 object key
+   * @return the key to use for the object in {@link #objectData} and {@link #objectMetadata}
+   */
+  private static String computeObjectId(String bucketName, String key) {
+    return bucketName + "/" + key;
+  }
+
+  /**
+   * @param key the S3 object key that wasn't found
+   * @return an {@link AmazonS3Exception} like the one that S3 produces for missing objects
+   */
+  private static AmazonS3Exception createNotFoundException(String key) {
+    AmazonS3Exception exception = new AmazonS3Exception("Not Found: " + key);
+    exception.setStatusCode(404);
+    return exception;
+  }
+
+  /**
+   * An {@link InputStream} wrapper that throws an {@link IOException} after a specified number of
+   * bytes, as if the connection had been dropped.
+   */
+  private static final class FailingInputStream extends InputStream {
+    private final InputStream wrappedStream;
+    private int bytesUntilFailure;
+
+    /**
+     * Constructs a new {@link FailingInputStream}.
+     *
+     * @param wrappedStream the {@link InputStream} to read from until the failure
+     * @param bytesUntilFailure the number of bytes to return before failing
+     */
+    FailingInputStream(InputStream wrappedStream, int bytesUntilFailure) {
+      this.wrappedStream = wrappedStream;
+      this.bytesUntilFailure = bytesUntilFailure;
+    }
+
+    /** @see java.io.InputStream#read() */
+    @Override
+    public int read() throws IOException {
+      if (bytesUntilFailure <= 0) throw new IOException("Injected failure.");
+      bytesUntilFailure--;
+      return wrappedStream.read();
+    }
+
+    /** @see java.io.InputStream#read(byte[], int, int) */
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (bytesUntilFailure <= 0) throw new IOException("Injected failure.");
+      int bytesRead = wrappedStream.read(buffer, offset, Math.min(length, bytesUntilFailure));
+      if (bytesRead > 0) bytesUntilFailure -= bytesRead;
+      return bytesRead;
+    }
+  }
+}
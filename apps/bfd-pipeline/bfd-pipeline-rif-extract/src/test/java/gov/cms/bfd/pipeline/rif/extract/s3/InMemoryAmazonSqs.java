@@ -0,0 +1,96 @@
+package gov.cms.bfd.pipeline.rif.extract.s3;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.services.sqs.AbstractAmazonSQS;
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequest;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchRequestEntry;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResult;
+import com.amazonaws.services.sqs.model.DeleteMessageBatchResultEntry;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.ReceiveMessageResult;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageResult;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal in-memory stand-in for {@link AmazonSQS}, for unit tests that don't need (or want to
+ * wait for) a real SQS queue. Supports sending, long-poll receiving, and batch deleting messages:
+ * everything else will throw {@link UnsupportedOperationException}s.
+ *
+ * <p>Unlike real SQS, received messages are never redelivered, whether or not they're deleted.
+ */
+public final class InMemoryAmazonSqs extends AbstractAmazonSQS {
+  private final Map<String, BlockingQueue<Message>> queues = new ConcurrentHashMap<>();
+  private final AtomicInteger messagesDeleted = new AtomicInteger(0);
+
+  /** @see AmazonSQS#sendMessage(SendMessageRequest) */
+  @Override
+  public SendMessageResult sendMessage(SendMessageRequest request) {
+    Message message =
+        new Message()
+            .withMessageId(UUID.randomUUID().toString())
+            .withReceiptHandle(UUID.randomUUID().toString())
+            .withBody(request.getMessageBody());
+    getQueue(request.getQueueUrl()).add(message);
+    return new SendMessageResult().withMessageId(message.getMessageId());
+  }
+
+  /** @see AmazonSQS#receiveMessage(ReceiveMessageRequest) */
+  @Override
+  public ReceiveMessageResult receiveMessage(ReceiveMessageRequest request) {
+    BlockingQueue<Message> queue = getQueue(request.getQueueUrl());
+    int maxMessages =
+        request.getMaxNumberOfMessages() != null ? request.getMaxNumberOfMessages() : 1;
+    int waitSeconds = request.getWaitTimeSeconds() != null ? request.getWaitTimeSeconds() : 0;
+
+    List<Message> messages = new ArrayList<>();
+    try {
+      Message firstMessage = queue.poll(waitSeconds, TimeUnit.SECONDS);
+      if (firstMessage != null) {
+        messages.add(firstMessage);
+        queue.drainTo(messages, maxMessages - 1);
+      }
+    } catch (InterruptedException e) {
+      // Mimic the real client, which fails its request when interrupted.
+      Thread.currentThread().interrupt();
+      throw new AbortedException(e);
+    }
+
+    return new ReceiveMessageResult().withMessages(messages);
+  }
+
+  /** @see AmazonSQS#deleteMessageBatch(DeleteMessageBatchRequest) */
+  @Override
+  public DeleteMessageBatchResult deleteMessageBatch(DeleteMessageBatchRequest request) {
+    DeleteMessageBatchResult result = new DeleteMessageBatchResult();
+    for (DeleteMessageBatchRequestEntry entry : request.getEntries()) {
+      messagesDeleted.incrementAndGet();
+      result.withSuccessful(new DeleteMessageBatchResultEntry().withId(entry.getId()));
+    }
+    return result;
+  }
+
+  /** @return the total number of messages that have been deleted so far */
+  public int getMessagesDeleted() {
+    return messagesDeleted.get();
+  }
+
+  /**
+   * @param queueUrl the URL of the queue to get
+   * @return the {@link BlockingQueue} of not-yet-received {@link Message}s for the specified queue
+   *     (which needn't be created first)
+   */
+  private BlockingQueue<Message> getQueue(String queueUrl) {
+    return queues.computeIfAbsent(queueUrl, u -> new LinkedBlockingQueue<>());
+  }
+}
@@ -0,0 +1,160 @@
+package gov.cms.bfd.pipeline.rif.extract.s3;
+
+import com.codahale.metrics.MetricRegistry;
+import gov.cms.bfd.pipeline.rif.extract.exceptions.ChecksumException;
+import gov.cms.bfd.pipeline.rif.extract.s3.task.ManifestEntryDownloadTask;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Unit tests for {@link RangedS3ObjectInputStream}, run against an {@link InMemoryAmazonS3}. */
+public final class RangedS3ObjectInputStreamTest {
+  private static final String BUCKET = "bucket";
+  private static final String KEY = "Incoming/2017-11-27T00:00:00.000Z/beneficiaries.rif";
+
+  /**
+   * Verifies that {@link RangedS3ObjectInputStream} reads objects correctly, regardless of how they
+   * line up with its ranges.
+   *
+   * @throws Exception (indicates test failure)
+   */
+  @Test
+  public void readsObjectAcrossRanges() throws Exception {
+    byte[] data = createData(10000);
+    for (long rangeSize : new long[] {1, 7, 4096, 10000, 20000}) {
+      InMemoryAmazonS3 s3Client = new InMemoryAmazonS3();
+      s3Client.addObject(BUCKET, KEY, data, computeMD5ChkSum(data));
+
+      try (InputStream stream =
+          new RangedS3ObjectInputStream(new MetricRegistry(), s3Client, BUCKET, KEY, rangeSize)) {
+        Assert.assertArrayEquals(data, readFully(stream, 1000));
+      }
+      Assert.assertEquals(
+          (data.length + rangeSize - 1) / rangeSize, s3Client.getObjectRequestCount());
+    }
+  }
+
+  /**
+   * Verifies that {@link RangedS3ObjectInputStream} handles empty objects correctly.
+   *
+   * @throws Exception (indicates test failure)
+   */
+  @Test
+  public void emptyObject() throws Exception {
+    InMemoryAmazonS3 s3Client = new InMemoryAmazonS3();
+    s3Client.addObject(BUCKET, KEY, new byte[0], computeMD5ChkSum(new byte[0]));
+
+    try (InputStream stream =
+        new RangedS3ObjectInputStream(new MetricRegistry(), s3Client, BUCKET, KEY, 100)) {
+      Assert.assertEquals(-1, stream.read());
+    }
+    Assert.assertEquals(0, s3Client.getObjectRequestCount());
+  }
+
+  /**
+   * Verifies that {@link RangedS3ObjectInputStream} throws a {@link ChecksumException} for objects
+   * with a bad checksum, before returning any of the object's final bytes.
+   *
+   * @throws Exception (indicates test failure)
+   */
+  @Test
+  public void checksumMismatch() throws Exception {
+    byte[] data = createData(10000);
+    InMemoryAmazonS3 s3Client = new InMemoryAmazonS3();
+    s3Client.addObject(BUCKET, KEY, data, computeMD5ChkSum(new byte[] {42}));
+
+    long bytesRead = 0;
+    try (InputStream stream =
+        new RangedS3ObjectInputStream(new MetricRegistry(), s3Client, BUCKET, KEY, 4096)) {
+      byte[] buffer = new byte[1000];
+      int count;
+      while ((count = stream.read(buffer)) != -1) bytesRead += count;
+      Assert.fail("Expected a checksum failure.");
+    } catch (ChecksumException e) {
+      // Expected.
+    }
+    Assert.assertTrue(bytesRead < data.length);
+  }
+
+  /**
+   * Verifies that {@link RangedS3ObjectInputStream} retries ranges that fail partway through, from
+   * the offset that they failed at.
+   *
+   * @throws Exception (indicates test failure)
+   */
+  @Test
+  public void retriesFailedRanges() throws Exception {
+    byte[] data = createData(10000);
+    InMemoryAmazonS3 s3Client = new InMemoryAmazonS3();
+    s3Client.addObject(BUCKET, KEY, data, computeMD5ChkSum(data));
+    s3Client.injectFailures(RangedS3ObjectInputStream.MAX_ATTEMPTS_PER_RANGE - 1);
+
+    MetricRegistry appMetrics = new MetricRegistry();
+    try (InputStream stream =
+        new RangedS3ObjectInputStream(appMetrics, s3Client, BUCKET, KEY, 4096)) {
+      Assert.assertArrayEquals(data, readFully(stream, 1000));
+    }
+    String retriesCounterName =
+        MetricRegistry.name(RangedS3ObjectInputStream.class.getSimpleName(), "rangeRetries");
+    Assert.assertEquals(
+        RangedS3ObjectInputStream.MAX_ATTEMPTS_PER_RANGE - 1,
+        appMetrics.counter(retriesCounterName).getCount());
+  }
+
+  /**
+   * Verifies that {@link RangedS3ObjectInputStream} gives up on ranges that keep failing.
+   *
+   * @throws Exception (indicates test failure)
+   */
+  @Test(expected = IOException.class)
+  public void repeatedFailures() throws Exception {
+    byte[] data = createData(10000);
+    InMemoryAmazonS3 s3Client = new InMemoryAmazonS3();
+    s3Client.addObject(BUCKET, KEY, data, computeMD5ChkSum(data));
+    s3Client.injectFailures(RangedS3ObjectInputStream.MAX_ATTEMPTS_PER_RANGE * 2);
+
+    try (InputStream stream =
+        new RangedS3ObjectInputStream(new MetricRegistry(), s3Client, BUCKET, KEY, 4096)) {
+      readFully(stream, 1000);
+    }
+  }
+
+  /**
+   * @param length the number of bytes to create
+   * @return the specified number of random-ish (but repeatable) bytes
+   */
+  private static byte[] createData(int length) {
+    byte[] data = new byte[length];
+    new Random(42).nextBytes(data);
+    return data;
+  }
+
+  /**
+   * @param data the data to compute the checksum of
+   * @return the Base64-encoded MD5 checksum of the specified data, as stored in S3 metadata
+   * @throws IOException (shouldn't happen)
+   * @throws NoSuchAlgorithmException (shouldn't happen)
+   */
+  private static String computeMD5ChkSum(byte[] data) throws IOException, NoSuchAlgorithmException {
+    return ManifestEntryDownloadTask.computeMD5ChkSum(new ByteArrayInputStream(data));
+  }
+
+  /**
+   * @param stream the {@link InputStream} to read
+   * @param bufferSize the size of the buffer to read with
+   * @return all of the remaining data from the specified {@link InputStream}
+   * @throws IOException Any {@link IOException}s encountered will be bubbled up.
+   */
+  private static byte[] readFully(InputStream stream, int bufferSize) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    byte[] buffer = new byte[bufferSize];
+    int count;
+    while ((count = stream.read(buffer)) != -1) output.write(buffer, 0, count);
+    return output.toByteArray();
+  }
+}
@@ -0,0 +1,104 @@
+package gov.cms.bfd.pipeline.rif.extract.s3;
+
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+import com.codahale.metrics.MetricRegistry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link SqsDataSetNotificationSource}, run against an {@link InMemoryAmazonSqs}
+ * queue.
+ */
+public final class SqsDataSetNotificationSourceTest {
+  private static final String QUEUE_URL = "https://sqs.example.com/123456789012/bfd-data-sets";
+
+  /**
+   * Verifies that {@link SqsDataSetNotificationSource} wakes up waiters when an object is created
+   * under the {@link DataSetMonitorWorker#S3_PREFIX_PENDING_DATA_SETS} prefix, and removes the
+   * message from the queue.
+   *
+   * @throws Exception (indicates test failure)
+   */
+  @Test
+  public void signalsIncomingObjectCreated() throws Exception {
+    InMemoryAmazonSqs sqsClient = new InMemoryAmazonSqs();
+    try (SqsDataSetNotificationSource notificationSource =
+        new SqsDataSetNotificationSource(new MetricRegistry(), sqsClient, QUEUE_URL)) {
+      notificationSource.start();
+      Assert.assertFalse(notificationSource.awaitChanges(10, TimeUnit.MILLISECONDS));
+
+      String manifestKey = "Incoming/2017-11-27T00%3A00%3A00.000Z/0_manifest.xml";
+      sqsClient.sendMessage(
+          new SendMessageRequest(QUEUE_URL, createObjectEvent("ObjectCreated:Put", manifestKey)));
+      Assert.assertTrue(notificationSource.awaitChanges(5, TimeUnit.SECONDS));
+      Assert.assertEquals(1, sqsClient.getMessagesDeleted());
+
+      // The notification should only be reported once.
+      Assert.assertFalse(notificationSource.awaitChanges(10, TimeUnit.MILLISECONDS));
+    }
+  }
+
+  /**
+   * Verifies that {@link SqsDataSetNotificationSource#isDataSetChange(String)} ignores the
+   * notifications that can't indicate a new data set.
+   */
+  @Test
+  public void ignoresIrrelevantNotifications() {
+    Assert.assertTrue(
+        SqsDataSetNotificationSource.isDataSetChange(
+            createObjectEvent("ObjectCreated:CompleteMultipartUpload", "Incoming/foo/bar.rif")));
+    Assert.assertFalse(
+        SqsDataSetNotificationSource.isDataSetChange(
+            createObjectEvent("ObjectCreated:Copy", "Done/foo/bar.rif")));
+    Assert.assertFalse(
+        SqsDataSetNotificationSource.isDataSetChange(
+            createObjectEvent("ObjectRemoved:Delete", "Incoming/foo/bar.rif")));
+    Assert.assertFalse(
+        SqsDataSetNotificationSource.isDataSetChange(
+            "{\"Service\":\"Amazon S3\",\"Event\":\"s3:TestEvent\",\"Bucket\":\"bfd\"}"));
+
+    // Anything unrecognizable should be treated as a possible change.
+    Assert.assertTrue(SqsDataSetNotificationSource.isDataSetChange("not JSON"));
+  }
+
+  /**
+   * Verifies that {@link SqsDataSetNotificationSource#close()} wakes up any waiters right away.
+   *
+   * @throws Exception (indicates test failure)
+   */
+  @Test
+  public void closeWakesWaiters() throws Exception {
+    SqsDataSetNotificationSource notificationSource =
+        new SqsDataSetNotificationSource(new MetricRegistry(), new InMemoryAmazonSqs(), QUEUE_URL);
+    notificationSource.start();
+
+    CompletableFuture<Boolean> waiter =
+        CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                return notificationSource.awaitChanges(1, TimeUnit.HOURS);
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+              }
+            });
+    notificationSource.close();
+    Assert.assertFalse(waiter.get(5, TimeUnit.SECONDS));
+  }
+
+  /**
+   * @param eventName the S3 event name to use, e.g. <code>ObjectCreated:Put</code>
+   * @param key the URL-encoded S3 object key to use
+   * @return the JSON for an S3 event notification with a single record, as S3 would send to SQS
+   */
+  private static String createObjectEvent(String eventName, String key) {
+    return String.format(
+        "{\"Records\":[{\"eventVersion\":\"2.1\",\"eventSource\":\"aws:s3\","
+            + "\"awsRegion\":\"us-east-1\",\"eventTime\":\"2017-11-27T00:00:00.000Z\","
+            + "\"eventName\":\"%s\",\"s3\":{\"s3SchemaVersion\":\"1.0\","
+            + "\"bucket\":{\"name\":\"bfd\",\"arn\":\"arn:aws:s3:::bfd\"},"
+            + "\"object\":{\"key\":\"%s\",\"size\":42}}}]}",
+        eventName, key);
+  }
+}
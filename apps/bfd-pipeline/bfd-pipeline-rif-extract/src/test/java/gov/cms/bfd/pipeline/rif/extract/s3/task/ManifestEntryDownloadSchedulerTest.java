@@ -0,0 +1,229 @@
+package gov.cms.bfd.pipeline.rif.extract.s3.task;
+
+import com.codahale.metrics.MetricRegistry;
+import gov.cms.bfd.model.rif.RifFileType;
+import gov.cms.bfd.pipeline.rif.extract.s3.DataSetManifest;
+import gov.cms.bfd.pipeline.rif.extract.s3.DataSetManifest.DataSetManifestEntry;
+import gov.cms.bfd.pipeline.rif.extract.s3.task.ManifestEntryDownloadTask.ManifestEntryDownloadResult;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ManifestEntryDownloadScheduler}, run with fake downloads that only finish
+ * when each test case says so.
+ */
+public final class ManifestEntryDownloadSchedulerTest {
+  private static final long FILE_SIZE = 100L;
+
+  private ExecutorService downloadExecutor;
+  private BlockingQueue<DataSetManifestEntry> startedDownloads;
+  private Map<DataSetManifestEntry, CountDownLatch> downloadLatches;
+
+  /** Creates the {@link ExecutorService} and fake download tracking used in each test case. */
+  @Before
+  public void setup() {
+    downloadExecutor = Executors.newCachedThreadPool();
+    startedDownloads = new LinkedBlockingQueue<>();
+    downloadLatches = new ConcurrentHashMap<>();
+  }
+
+  /** Cleans up the resources created in {@link #setup()}. */
+  @After
+  public void cleanup() {
+    downloadLatches.values().forEach(CountDownLatch::countDown);
+    downloadExecutor.shutdownNow();
+  }
+
+  /**
+   * Verifies that {@link ManifestEntryDownloadScheduler} runs several downloads at once, up to its
+   * concurrency limit, and reports them via its gauges.
+   *
+   * @throws Exception (indicates test failure)
+   */
+  @Test
+  public void runsDownloadsConcurrently() throws Exception {
+    DataSetManifest manifest = createManifest(0, 3);
+    MetricRegistry appMetrics = new MetricRegistry();
+    ManifestEntryDownloadScheduler scheduler = createScheduler(appMetrics, 2, 10 * FILE_SIZE);
+
+    manifest.getEntries().forEach(scheduler::submit);
+    Assert.assertEquals(new HashSet<>(manifest.getEntries().subList(0, 2)), awaitNextStarts(2));
+    Assert.assertEquals(1, getGaugeValue(appMetrics, "queueDepth"));
+    Assert.assertEquals(2 * FILE_SIZE, getGaugeValue(appMetrics, "bytesInFlight"));
+
+    Future<ManifestEntryDownloadResult> firstResult =
+        scheduler.submit(manifest.getEntries().get(0));
+    finishDownload(manifest.getEntries().get(0));
+    Assert.assertSame(
+        manifest.getEntries().get(0), firstResult.get(5, TimeUnit.SECONDS).getManifestEntry());
+    Assert.assertSame(manifest.getEntries().get(2), awaitNextStart());
+    Assert.assertEquals(0, getGaugeValue(appMetrics, "queueDepth"));
+    Assert.assertEquals(3 * FILE_SIZE, getGaugeValue(appMetrics, "bytesReserved"));
+  }
+
+  /**
+   * Verifies that {@link ManifestEntryDownloadScheduler} holds prefetches back until the files
+   * reserving the disk budget have been released.
+   *
+   * @throws Exception (indicates test failure)
+   */
+  @Test
+  public void diskBudgetBlocksPrefetches() throws Exception {
+    DataSetManifest currentManifest = createManifest(0, 2);
+    DataSetManifest upcomingManifest = createManifest(1, 2);
+    ManifestEntryDownloadScheduler scheduler =
+        createScheduler(new MetricRegistry(), 4, (5 * FILE_SIZE) / 2);
+
+    currentManifest.getEntries().forEach(scheduler::submit);
+    upcomingManifest.getEntries().forEach(scheduler::prefetch);
+    awaitNextStarts(2);
+    for (DataSetManifestEntry manifestEntry : currentManifest.getEntries()) {
+      finishDownload(manifestEntry);
+      scheduler.submit(manifestEntry).get(5, TimeUnit.SECONDS);
+    }
+    Assert.assertNull(startedDownloads.poll(100, TimeUnit.MILLISECONDS));
+    Assert.assertEquals(2, scheduler.getQueueDepth());
+    Assert.assertEquals(2 * FILE_SIZE, scheduler.getBytesReserved());
+
+    scheduler.release(currentManifest);
+    Assert.assertEquals(new HashSet<>(upcomingManifest.getEntries()), awaitNextStarts(2));
+  }
+
+  /**
+   * Verifies that {@link ManifestEntryDownloadScheduler} starts the downloads needed by the current
+   * data set ahead of any prefetches, even ones that were requested earlier.
+   *
+   * @throws Exception (indicates test failure)
+   */
+  @Test
+  public void requiredDownloadsBeforePrefetches() throws Exception {
+    DataSetManifest currentManifest = createManifest(0, 2);
+    DataSetManifest upcomingManifest = createManifest(1, 1);
+    ManifestEntryDownloadScheduler scheduler =
+        createScheduler(new MetricRegistry(), 1, 10 * FILE_SIZE);
+
+    scheduler.submit(currentManifest.getEntries().get(0));
+    Assert.assertSame(currentManifest.getEntries().get(0), awaitNextStart());
+    scheduler.prefetch(upcomingManifest.getEntries().get(0));
+    scheduler.submit(currentManifest.getEntries().get(1));
+
+    finishDownload(currentManifest.getEntries().get(0));
+    Assert.assertSame(currentManifest.getEntries().get(1), awaitNextStart());
+    finishDownload(currentManifest.getEntries().get(1));
+    Assert.assertSame(upcomingManifest.getEntries().get(0), awaitNextStart());
+  }
+
+  /**
+   * Verifies that {@link ManifestEntryDownloadScheduler} still runs downloads needed by the current
+   * data set that are larger than the whole disk budget, rather than stalling.
+   *
+   * @throws Exception (indicates test failure)
+   */
+  @Test
+  public void oversizedRequiredDownloadRuns() throws Exception {
+    DataSetManifest manifest = createManifest(0, 1);
+    ManifestEntryDownloadScheduler scheduler =
+        createScheduler(new MetricRegistry(), 2, FILE_SIZE / 2);
+
+    scheduler.submit(manifest.getEntries().get(0));
+    Assert.assertSame(manifest.getEntries().get(0), awaitNextStart());
+  }
+
+  /**
+   * @param appMetrics the {@link MetricRegistry} to use
+   * @param maxConcurrentDownloads the maximum number of downloads to run at once
+   * @param diskBudgetBytes the disk budget to use
+   * @return a new {@link ManifestEntryDownloadScheduler} that runs fake downloads, each of which
+   *     waits for {@link #finishDownload(DataSetManifestEntry)} and is {@link #FILE_SIZE} bytes
+   */
+  private ManifestEntryDownloadScheduler createScheduler(
+      MetricRegistry appMetrics, int maxConcurrentDownloads, long diskBudgetBytes) {
+    return new ManifestEntryDownloadScheduler(
+        appMetrics,
+        downloadExecutor,
+        manifestEntry ->
+            () -> {
+              startedDownloads.add(manifestEntry);
+              getLatch(manifestEntry).await();
+              return new ManifestEntryDownloadResult(
+                  manifestEntry, Paths.get("target", "scheduler-test-never-created.rif"));
+            },
+        manifestEntry -> FILE_SIZE,
+        maxConcurrentDownloads,
+        diskBudgetBytes);
+  }
+
+  /**
+   * @param sequenceId the {@link DataSetManifest#getSequenceId()} to use, which also determines the
+   *     data set order
+   * @param entryCount the number of {@link DataSetManifestEntry}s to include
+   * @return a new {@link DataSetManifest} with the specified number of entries
+   */
+  private static DataSetManifest createManifest(int sequenceId, int entryCount) {
+    DataSetManifestEntry[] entries = new DataSetManifestEntry[entryCount];
+    for (int i = 0; i < entryCount; i++)
+      entries[i] = new DataSetManifestEntry(String.format("file-%d.rif", i), RifFileType.CARRIER);
+    return new DataSetManifest(Instant.parse("2017-11-27T00:00:00.000Z"), sequenceId, entries);
+  }
+
+  /**
+   * @param manifestEntry the {@link DataSetManifestEntry} to get the latch for
+   * @return the {@link CountDownLatch} that the specified entry's fake download waits on
+   */
+  private CountDownLatch getLatch(DataSetManifestEntry manifestEntry) {
+    return downloadLatches.computeIfAbsent(manifestEntry, e -> new CountDownLatch(1));
+  }
+
+  /** @param manifestEntry the {@link DataSetManifestEntry} whose fake download should complete */
+  private void finishDownload(DataSetManifestEntry manifestEntry) {
+    getLatch(manifestEntry).countDown();
+  }
+
+  /**
+   * @return the {@link DataSetManifestEntry} whose fake download started next
+   * @throws InterruptedException (indicates test failure)
+   */
+  private DataSetManifestEntry awaitNextStart() throws InterruptedException {
+    DataSetManifestEntry manifestEntry = startedDownloads.poll(5, TimeUnit.SECONDS);
+    Assert.assertNotNull("Expected another download to start.", manifestEntry);
+    return manifestEntry;
+  }
+
+  /**
+   * @param count the number of fake downloads to wait for
+   * @return the {@link DataSetManifestEntry}s whose fake downloads started next, which may have
+   *     started in any order
+   * @throws InterruptedException (indicates test failure)
+   */
+  private Set<DataSetManifestEntry> awaitNextStarts(int count) throws InterruptedException {
+    Set<DataSetManifestEntry> manifestEntries = new HashSet<>();
+    for (int i = 0; i < count; i++) manifestEntries.add(awaitNextStart());
+    return manifestEntries;
+  }
+
+  /**
+   * @param appMetrics the {@link MetricRegistry} to check
+   * @param gaugeName the simple name of the {@link ManifestEntryDownloadScheduler} gauge to check
+   * @return the current value of that gauge, as a <code>long</code>
+   */
+  private static long getGaugeValue(MetricRegistry appMetrics, String gaugeName) {
+    String fullName =
+        MetricRegistry.name(ManifestEntryDownloadScheduler.class.getSimpleName(), gaugeName);
+    return ((Number) appMetrics.getGauges().get(fullName).getValue()).longValue();
+  }
+}
@@ -0,0 +1,151 @@
+package gov.cms.bfd.pipeline.rif.extract.s3.task;
+
+import com.codahale.metrics.MetricRegistry;
+import gov.cms.bfd.pipeline.rif.extract.s3.InMemoryAmazonS3;
+import gov.cms.bfd.pipeline.rif.extract.s3.task.ParallelRangeDownloader.RangedDownloadResult;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Unit tests for {@link ParallelRangeDownloader}, run against an {@link InMemoryAmazonS3}. */
+public final class ParallelRangeDownloaderTest {
+  private static final String BUCKET = "bucket";
+  private static final String KEY = "Incoming/2017-11-27T00:00:00.000Z/beneficiaries.rif";
+
+  private ExecutorService rangeExecutor;
+  private Path localFile;
+
+  /**
+   * Creates the {@link ExecutorService} and local file used in each test case.
+   *
+   * @throws IOException (indicates test failure)
+   */
+  @Before
+  public void setup() throws IOException {
+    rangeExecutor = Executors.newFixedThreadPool(4);
+    localFile = Files.createTempFile("parallel-range-downloader", ".rif");
+  }
+
+  /**
+   * Cleans up the resources created in {@link #setup()}.
+   *
+   * @throws IOException (indicates test failure)
+   */
+  @After
+  public void cleanup() throws IOException {
+    rangeExecutor.shutdownNow();
+    Files.deleteIfExists(localFile);
+  }
+
+  /**
+   * Verifies that {@link ParallelRangeDownloader} downloads objects correctly and computes their
+   * checksums correctly, regardless of how they line up with its ranges.
+   *
+   * @throws Exception (indicates test failure)
+   */
+  @Test
+  public void downloadsObjectAcrossRanges() throws Exception {
+    byte[] data = createData(10000);
+    String expectedMD5ChkSum =
+        ManifestEntryDownloadTask.computeMD5ChkSum(new ByteArrayInputStream(data));
+    for (long rangeSize : new long[] {1, 7, 4096, 10000, 20000}) {
+      for (int maxRangesInFlight : new int[] {1, 4}) {
+        InMemoryAmazonS3 s3Client = new InMemoryAmazonS3();
+        s3Client.addObject(BUCKET, KEY, data, expectedMD5ChkSum);
+        ParallelRangeDownloader downloader =
+            new ParallelRangeDownloader(
+                new MetricRegistry(), s3Client, rangeExecutor, rangeSize, maxRangesInFlight);
+
+        RangedDownloadResult result = downloader.download(BUCKET, KEY, localFile);
+        Assert.assertArrayEquals(data, Files.readAllBytes(localFile));
+        Assert.assertEquals(expectedMD5ChkSum, result.getMD5ChkSum());
+        Assert.assertEquals(data.length, result.getObjectMetadata().getContentLength());
+        Assert.assertEquals(
+            (data.length + rangeSize - 1) / rangeSize, s3Client.getObjectRequestCount());
+      }
+    }
+  }
+
+  /**
+   * Verifies that {@link ParallelRangeDownloader} handles empty objects correctly.
+   *
+   * @throws Exception (indicates test failure)
+   */
+  @Test
+  public void emptyObject() throws Exception {
+    InMemoryAmazonS3 s3Client = new InMemoryAmazonS3();
+    s3Client.addObject(BUCKET, KEY, new byte[0], null);
+    ParallelRangeDownloader downloader =
+        new ParallelRangeDownloader(new MetricRegistry(), s3Client, rangeExecutor, 100, 4);
+
+    RangedDownloadResult result = downloader.download(BUCKET, KEY, localFile);
+    Assert.assertEquals(0L, Files.size(localFile));
+    Assert.assertEquals(
+        ManifestEntryDownloadTask.computeMD5ChkSum(new ByteArrayInputStream(new byte[0])),
+        result.getMD5ChkSum());
+  }
+
+  /**
+   * Verifies that {@link ParallelRangeDownloader} retries ranges that fail partway through, and
+   * that it reports those retries.
+   *
+   * @throws Exception (indicates test failure)
+   */
+  @Test
+  public void retriesFailedRanges() throws Exception {
+    byte[] data = createData(10000);
+    InMemoryAmazonS3 s3Client = new InMemoryAmazonS3();
+    s3Client.addObject(BUCKET, KEY, data, null);
+    s3Client.injectFailures(ParallelRangeDownloader.MAX_ATTEMPTS_PER_RANGE - 1);
+    MetricRegistry appMetrics = new MetricRegistry();
+    ParallelRangeDownloader downloader =
+        new ParallelRangeDownloader(appMetrics, s3Client, rangeExecutor, 10000, 1);
+
+    RangedDownloadResult result = downloader.download(BUCKET, KEY, localFile);
+    Assert.assertArrayEquals(data, Files.readAllBytes(localFile));
+    Assert.assertEquals(
+        ManifestEntryDownloadTask.computeMD5ChkSum(new ByteArrayInputStream(data)),
+        result.getMD5ChkSum());
+
+    String retriesCounterName =
+        MetricRegistry.name(ParallelRangeDownloader.class.getSimpleName(), "rangeRetries");
+    Assert.assertEquals(
+        ParallelRangeDownloader.MAX_ATTEMPTS_PER_RANGE - 1,
+        appMetrics.counter(retriesCounterName).getCount());
+  }
+
+  /**
+   * Verifies that {@link ParallelRangeDownloader} gives up on ranges that keep failing.
+   *
+   * @throws Exception (indicates test failure)
+   */
+  @Test(expected = IOException.class)
+  public void repeatedFailures() throws Exception {
+    byte[] data = createData(10000);
+    InMemoryAmazonS3 s3Client = new InMemoryAmazonS3();
+    s3Client.addObject(BUCKET, KEY, data, null);
+    s3Client.injectFailures(ParallelRangeDownloader.MAX_ATTEMPTS_PER_RANGE);
+    ParallelRangeDownloader downloader =
+        new ParallelRangeDownloader(new MetricRegistry(), s3Client, rangeExecutor, 10000, 1);
+
+    downloader.download(BUCKET, KEY, localFile);
+  }
+
+  /**
+   * @param length the number of bytes to create
+   * @return the specified number of random-ish (but repeatable) bytes
+   */
+  private static byte[] createData(int length) {
+    byte[] data = new byte[length];
+    new Random(42).nextBytes(data);
+    return data;
+  }
+}
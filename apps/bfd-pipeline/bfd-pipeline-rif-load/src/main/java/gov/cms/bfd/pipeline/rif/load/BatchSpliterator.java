@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Spliterator;
 import java.util.function.Consumer;
+import java.util.function.IntSupplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -17,11 +18,20 @@ import java.util.stream.StreamSupport;
  */
 public final class BatchSpliterator<T> implements Spliterator<List<T>> {
   private final Spliterator<T> base;
-  private final int batchSize;
+  private final IntSupplier batchSizes;
 
   public BatchSpliterator(Spliterator<T> base, int batchSize) {
+    this(base, () -> batchSize);
+  }
+
+  /**
+   * @param base the {@link Spliterator} to batch up the elements of
+   * @param batchSizes supplies the size of each batch, which is checked again for every batch, so
+   *     that batch sizes can be tuned on the fly
+   */
+  public BatchSpliterator(Spliterator<T> base, IntSupplier batchSizes) {
     this.base = base;
-    this.batchSize = batchSize;
+    this.batchSizes = batchSizes;
   }
 
   public static <T> Stream<List<T>> batches(Stream<T> stream, int batchSize) {
@@ -31,8 +41,20 @@ public final class BatchSpliterator<T> implements Spliterator<List<T>> {
             new BatchSpliterator<>(stream.spliterator(), batchSize), stream.isParallel());
   }
 
+  /**
+   * @param stream the {@link Stream} to batch up the elements of
+   * @param batchSizes supplies the (positive) size of each batch, which is checked again for every
+   *     batch
+   * @return a {@link Stream} of the specified {@link Stream}'s elements, in batches
+   */
+  public static <T> Stream<List<T>> batches(Stream<T> stream, IntSupplier batchSizes) {
+    return StreamSupport.stream(
+        new BatchSpliterator<>(stream.spliterator(), batchSizes), stream.isParallel());
+  }
+
   @Override
   public boolean tryAdvance(Consumer<? super List<T>> action) {
+    final int batchSize = batchSizes.getAsInt();
     final List<T> batch = new ArrayList<>(batchSize);
     for (int i = 0; i < batchSize && base.tryAdvance(batch::add); i++) ;
     if (batch.isEmpty()) return false;
@@ -42,15 +64,15 @@ public final class BatchSpliterator<T> implements Spliterator<List<T>> {
 
   @Override
   public Spliterator<List<T>> trySplit() {
-    if (base.estimateSize() <= batchSize) return null;
+    if (base.estimateSize() <= batchSizes.getAsInt()) return null;
     final Spliterator<T> splitBase = this.base.trySplit();
-    return splitBase == null ? null : new BatchSpliterator<>(splitBase, batchSize);
+    return splitBase == null ? null : new BatchSpliterator<>(splitBase, batchSizes);
   }
 
   @Override
   public long estimateSize() {
     final double baseSize = base.estimateSize();
-    return baseSize == 0 ? 0 : (long) Math.ceil(baseSize / (double) batchSize);
+    return baseSize == 0 ? 0 : (long) Math.ceil(baseSize / (double) batchSizes.getAsInt());
   }
 
   @Override
@@ -0,0 +1,261 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import gov.cms.bfd.model.rif.schema.DatabaseSchemaManager;
+import gov.cms.bfd.model.rif.schema.DeferredSchemaObject;
+import gov.cms.bfd.model.rif.schema.DeferredSchemaObject.ObjectType;
+import gov.cms.bfd.model.rif.schema.DeferredSchemaObject.State;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs {@link RifLoader}'s bulk load mode (see {@link LoadAppOptions#isBulkLoadEnabled()}), which
+ * drops the secondary indexes and foreign keys on the CCW data tables before a data set is loaded,
+ * and then rebuilds them afterwards, which is much faster than maintaining them row by row, for
+ * large loads.
+ *
+ * <p>The schema changes themselves are made by {@link DatabaseSchemaManager}, which records each
+ * dropped object in the database before dropping it, and only forgets it once it's been restored.
+ * If the pipeline crashes mid-load, the next {@link RifLoader} will find those records and finish
+ * restoring them (see {@link #restoreSchemaObjects()}), so the schema is never left incomplete.
+ *
+ * <p>After the <code>defer</code> and <code>load</code> phases, restoration runs in three more
+ * phases, each of which runs its objects in parallel:
+ *
+ * <ol>
+ *   <li><code>rebuildIndexes</code>: re-creates each index.
+ *   <li><code>addForeignKeys</code>: re-adds each foreign key as <code>NOT VALID</code>.
+ *   <li><code>validateForeignKeys</code>: checks each foreign key against the loaded rows.
+ * </ol>
+ *
+ * <p>Reports the following metrics, all named <code>BulkLoadSchemaManager.*</code>: timers for
+ * each of the above phases (and <code>restore</code>, for the last three together), an <code>
+ * objects</code> timer for each object's step, <code>objectsRestored</code> and <code>failures
+ * </code> meters, and an <code>objectsRemaining</code> gauge of the objects still to be restored.
+ */
+final class BulkLoadSchemaManager {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BulkLoadSchemaManager.class);
+
+  private final DataSource dataSource;
+  private final int threads;
+  private final MetricRegistry metrics;
+  private final AtomicInteger objectsRemaining;
+
+  /**
+   * Constructs a new {@link BulkLoadSchemaManager}.
+   *
+   * @param dataSource the {@link DataSource} for the database being loaded, which should allow at
+   *     least <code>threads</code> connections at once
+   * @param threads the number of schema objects to restore at once
+   * @param metrics the {@link MetricRegistry} to record metrics in
+   */
+  BulkLoadSchemaManager(DataSource dataSource, int threads, MetricRegistry metrics) {
+    if (threads < 1) throw new IllegalArgumentException();
+
+    this.dataSource = dataSource;
+    this.threads = threads;
+    this.metrics = metrics;
+    this.objectsRemaining = new AtomicInteger();
+
+    MetricsUtils.registerGauge(
+        metrics,
+        MetricRegistry.name(getClass().getSimpleName(), "objectsRemaining"),
+        objectsRemaining::get);
+  }
+
+  /**
+   * Drops (and records) all of the secondary indexes and foreign keys, ahead of a bulk load.
+   *
+   * @return a {@link Timer.Context} for the <code>load</code> phase, which should be passed to
+   *     {@link #endBulkLoad(Timer.Context)} once the data set has been loaded
+   */
+  Timer.Context beginBulkLoad() {
+    Timer.Context timerDefer = metrics.timer(metricName("defer")).time();
+    List<DeferredSchemaObject> deferred =
+        DatabaseSchemaManager.deferSecondarySchemaObjects(dataSource);
+    long deferNanos = timerDefer.stop();
+
+    objectsRemaining.set(deferred.size());
+    LOGGER.info(
+        "Bulk load: '{}' secondary indexes and foreign keys deferred in '{}' ms.",
+        deferred.size(),
+        TimeUnit.NANOSECONDS.toMillis(deferNanos));
+    return metrics.timer(metricName("load")).time();
+  }
+
+  /**
+   * Restores everything that {@link #beginBulkLoad()} dropped, once the data set has been loaded.
+   *
+   * @param timerLoad the {@link Timer.Context} returned by {@link #beginBulkLoad()}
+   * @throws IllegalStateException (see {@link #restoreSchemaObjects()})
+   */
+  void endBulkLoad(Timer.Context timerLoad) {
+    long loadNanos = timerLoad.stop();
+    LOGGER.info(
+        "Bulk load: data set loaded in '{}' ms.", TimeUnit.NANOSECONDS.toMillis(loadNanos));
+    restoreSchemaObjects();
+  }
+
+  /**
+   * Restores all of the schema objects that were deferred by {@link #beginBulkLoad()} (or by an
+   * earlier run that didn't get to finish), if any. If some objects can't be restored, the others
+   * still are, and the failed ones remain recorded, to be retried by a later call.
+   *
+   * @throws IllegalStateException An {@link IllegalStateException} will be thrown if any of the
+   *     objects could not be restored.
+   */
+  void restoreSchemaObjects() {
+    List<DeferredSchemaObject> deferred =
+        DatabaseSchemaManager.findDeferredSchemaObjects(dataSource);
+    objectsRemaining.set(deferred.size());
+    if (deferred.isEmpty()) return;
+
+    LOGGER.info("Bulk load: restoring '{}' deferred schema objects...", deferred.size());
+    Timer.Context timerRestore = metrics.timer(metricName("restore")).time();
+    List<Throwable> failures = new ArrayList<>();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      /*
+       * Indexes first, as they're the slowest part, and the foreign keys'
+       * validation doesn't need them (just the referenced primary keys,
+       * which are never dropped). Adding the foreign keys takes locks that
+       * block each other on the shared referenced tables (e.g.
+       * Beneficiaries), but is quick. Validating them only needs weaker
+       * locks, and so can run in parallel.
+       */
+      List<DeferredSchemaObject> foreignKeys =
+          runPhase(
+              "rebuildIndexes",
+              deferred,
+              o -> o.getObjectType() == ObjectType.INDEX,
+              executor,
+              failures);
+      foreignKeys.addAll(
+          runPhase(
+              "addForeignKeys",
+              deferred,
+              o -> o.getObjectType() == ObjectType.FOREIGN_KEY && o.getState() == State.DROPPED,
+              executor,
+              failures));
+      foreignKeys.addAll(
+          deferred.stream()
+              .filter(
+                  o ->
+                      o.getObjectType() == ObjectType.FOREIGN_KEY
+                          && o.getState() == State.NOT_VALIDATED)
+              .collect(Collectors.toList()));
+      runPhase("validateForeignKeys", foreignKeys, o -> true, executor, failures);
+    } finally {
+      executor.shutdownNow();
+    }
+    long restoreNanos = timerRestore.stop();
+
+    if (!failures.isEmpty()) {
+      IllegalStateException failure =
+          new IllegalStateException(
+              String.format(
+                  "Bulk load: '%d' deferred schema objects could not be restored. They will be"
+                      + " retried when the pipeline is next started.",
+                  failures.size()));
+      failures.forEach(failure::addSuppressed);
+      throw failure;
+    }
+    LOGGER.info(
+        "Bulk load: all deferred schema objects restored in '{}' ms.",
+        TimeUnit.NANOSECONDS.toMillis(restoreNanos));
+  }
+
+  /**
+   * Runs the next restoration step for each of the matching {@link DeferredSchemaObject}s, in
+   * parallel, and waits for them all to complete.
+   *
+   * @param phaseName the name of the phase, for logging and metrics
+   * @param objects the {@link DeferredSchemaObject}s to select from
+   * @param filter selects the {@link DeferredSchemaObject}s to run the phase for
+   * @param executor the {@link ExecutorService} to run the steps on
+   * @param failures the {@link List} to add any errors to
+   * @return the {@link DeferredSchemaObject}s that need further steps, in their new {@link State}s
+   */
+  private List<DeferredSchemaObject> runPhase(
+      String phaseName,
+      List<DeferredSchemaObject> objects,
+      Predicate<DeferredSchemaObject> filter,
+      ExecutorService executor,
+      List<Throwable> failures) {
+    List<DeferredSchemaObject> phaseObjects =
+        objects.stream().filter(filter).collect(Collectors.toList());
+    List<DeferredSchemaObject> nextObjects = new ArrayList<>();
+    if (phaseObjects.isEmpty()) return nextObjects;
+
+    Timer timerObjects = metrics.timer(metricName("objects"));
+    Meter objectsRestored = metrics.meter(metricName("objectsRestored"));
+    Meter failuresMeter = metrics.meter(metricName("failures"));
+
+    LOGGER.info("Bulk load: running '{}' for '{}' objects...", phaseName, phaseObjects.size());
+    Timer.Context timerPhase = metrics.timer(metricName(phaseName)).time();
+    List<Future<Optional<DeferredSchemaObject>>> futures = new ArrayList<>(phaseObjects.size());
+    for (DeferredSchemaObject object : phaseObjects)
+      futures.add(
+          executor.submit(
+              () -> {
+                Timer.Context timerObject = timerObjects.time();
+                Optional<DeferredSchemaObject> result =
+                    DatabaseSchemaManager.restoreDeferredSchemaObject(dataSource, object);
+                long objectNanos = timerObject.stop();
+
+                LOGGER.debug(
+                    "Bulk load: '{}' step of '{}' took '{}' ms.",
+                    phaseName,
+                    object.getObjectName(),
+                    TimeUnit.NANOSECONDS.toMillis(objectNanos));
+                if (!result.isPresent()) {
+                  objectsRemaining.decrementAndGet();
+                  objectsRestored.mark();
+                }
+                return result;
+              }));
+
+    for (int i = 0; i < futures.size(); i++) {
+      try {
+        futures.get(i).get().ifPresent(nextObjects::add);
+      } catch (ExecutionException e) {
+        failuresMeter.mark();
+        LOGGER.error(
+            "Bulk load: '{}' failed for '{}'.", phaseName, phaseObjects.get(i), e.getCause());
+        failures.add(e.getCause());
+      } catch (InterruptedException e) {
+        // Interrupts should not be used on this thread, so go boom.
+        throw new RuntimeException(e);
+      }
+    }
+    long phaseNanos = timerPhase.stop();
+
+    LOGGER.info(
+        "Bulk load: '{}' completed in '{}' ms.",
+        phaseName,
+        TimeUnit.NANOSECONDS.toMillis(phaseNanos));
+    return nextObjects;
+  }
+
+  /**
+   * @param name the metric's name, relative to this class
+   * @return the full name of the specified metric
+   */
+  private String metricName(String name) {
+    return MetricRegistry.name(getClass().getSimpleName(), name);
+  }
+}
@@ -0,0 +1,297 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import gov.cms.bfd.model.rif.CarrierClaim;
+import gov.cms.bfd.model.rif.CarrierClaimColumn;
+import gov.cms.bfd.model.rif.CarrierClaimCopyTranscoder;
+import gov.cms.bfd.model.rif.CarrierClaimParser;
+import gov.cms.bfd.model.rif.DMEClaim;
+import gov.cms.bfd.model.rif.DMEClaimColumn;
+import gov.cms.bfd.model.rif.DMEClaimCopyTranscoder;
+import gov.cms.bfd.model.rif.DMEClaimParser;
+import gov.cms.bfd.model.rif.HHAClaim;
+import gov.cms.bfd.model.rif.HHAClaimColumn;
+import gov.cms.bfd.model.rif.HHAClaimCopyTranscoder;
+import gov.cms.bfd.model.rif.HHAClaimParser;
+import gov.cms.bfd.model.rif.HospiceClaim;
+import gov.cms.bfd.model.rif.HospiceClaimColumn;
+import gov.cms.bfd.model.rif.HospiceClaimCopyTranscoder;
+import gov.cms.bfd.model.rif.HospiceClaimParser;
+import gov.cms.bfd.model.rif.InpatientClaim;
+import gov.cms.bfd.model.rif.InpatientClaimColumn;
+import gov.cms.bfd.model.rif.InpatientClaimCopyTranscoder;
+import gov.cms.bfd.model.rif.InpatientClaimParser;
+import gov.cms.bfd.model.rif.OutpatientClaim;
+import gov.cms.bfd.model.rif.OutpatientClaimColumn;
+import gov.cms.bfd.model.rif.OutpatientClaimCopyTranscoder;
+import gov.cms.bfd.model.rif.OutpatientClaimParser;
+import gov.cms.bfd.model.rif.PartDEvent;
+import gov.cms.bfd.model.rif.PartDEventColumn;
+import gov.cms.bfd.model.rif.PartDEventCopyTranscoder;
+import gov.cms.bfd.model.rif.PartDEventParser;
+import gov.cms.bfd.model.rif.PostgreSqlBinaryCopyBuffer;
+import gov.cms.bfd.model.rif.RecordAction;
+import gov.cms.bfd.model.rif.RifFileType;
+import gov.cms.bfd.model.rif.RifRecordBase;
+import gov.cms.bfd.model.rif.SNFClaim;
+import gov.cms.bfd.model.rif.SNFClaimColumn;
+import gov.cms.bfd.model.rif.SNFClaimCopyTranscoder;
+import gov.cms.bfd.model.rif.SNFClaimParser;
+import gov.cms.bfd.model.rif.parse.RifParsingUtils;
+import gov.cms.bfd.model.rif.parse.RifRecord;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Describes how the RIF records of a single {@link RifFileType} can be transcoded straight into
+ * PostgreSQL binary <code>COPY</code> rows, via its generated <code>*CopyTranscoder</code>, without
+ * building any JPA entities for them (see {@link LoadAppOptions#isCopyTranscodingEnabled()}).
+ *
+ * <p>Only the claim and Part D event file types are supported: the beneficiary files' HICNs and
+ * MBIs have to be hashed before they can be stored, and the (small) MBI history files don't have a
+ * <code>DML_IND</code> column to check.
+ */
+final class CopyTranscodingLayout {
+  /** The {@link CopyTranscodingLayout}s for each supported {@link RifFileType}. */
+  private static final Map<RifFileType, CopyTranscodingLayout> LAYOUTS = createLayouts();
+
+  private final Class<? extends RifRecordBase> entityType;
+  private final Enum<?> groupingColumn;
+  private final Enum<?> recordActionColumn;
+  private final Enum<?> beneficiaryIdColumn;
+  private final Function<List<String>, int[]> columnIndexResolver;
+  private final RecordGroupParser recordGroupParser;
+  private final RecordGroupTranscoder recordGroupTranscoder;
+
+  /**
+   * Constructs a new {@link CopyTranscodingLayout}.
+   *
+   * @param entityType the value to use for {@link #getEntityType()}
+   * @param groupingColumn the column that the file's records are grouped by, or <code>null</code>
+   *     if they aren't grouped
+   * @param recordActionColumn the <code>DML_IND</code> column
+   * @param beneficiaryIdColumn the <code>BENE_ID</code> column
+   * @param columnIndexResolver the generated parser's <code>resolveColumnIndexes(...)</code>
+   * @param recordGroupParser the generated parser's <code>parseRif(...)</code>
+   * @param recordGroupTranscoder the generated transcoder's <code>transcodeRif(...)</code>
+   */
+  private CopyTranscodingLayout(
+      Class<? extends RifRecordBase> entityType,
+      Enum<?> groupingColumn,
+      Enum<?> recordActionColumn,
+      Enum<?> beneficiaryIdColumn,
+      Function<List<String>, int[]> columnIndexResolver,
+      RecordGroupParser recordGroupParser,
+      RecordGroupTranscoder recordGroupTranscoder) {
+    this.entityType = entityType;
+    this.groupingColumn = groupingColumn;
+    this.recordActionColumn = recordActionColumn;
+    this.beneficiaryIdColumn = beneficiaryIdColumn;
+    this.columnIndexResolver = columnIndexResolver;
+    this.recordGroupParser = recordGroupParser;
+    this.recordGroupTranscoder = recordGroupTranscoder;
+  }
+
+  /**
+   * @param fileType the {@link RifFileType} to get the {@link CopyTranscodingLayout} for
+   * @return the {@link CopyTranscodingLayout} for the specified {@link RifFileType}, or {@link
+   *     Optional#empty()} if its records can't be transcoded
+   */
+  static Optional<CopyTranscodingLayout> forFileType(RifFileType fileType) {
+    return Optional.ofNullable(LAYOUTS.get(fileType));
+  }
+
+  /** @return the top-level JPA entity type that the RIF records would otherwise be parsed into */
+  Class<? extends RifRecordBase> getEntityType() {
+    return entityType;
+  }
+
+  /**
+   * @param header the RIF file's header record
+   * @return the file's resolved column indexes
+   */
+  int[] resolveColumnIndexes(List<String> header) {
+    return columnIndexResolver.apply(header);
+  }
+
+  /**
+   * @param columnIndexes the file's resolved column indexes
+   * @return the (0-based) index of the column to group records by, or <code>-1</code> if records
+   *     should not be grouped
+   */
+  int getGroupingColumnIndex(int[] columnIndexes) {
+    return groupingColumn != null ? columnIndexes[groupingColumn.ordinal()] : -1;
+  }
+
+  /**
+   * @param recordGroup the grouped {@link RifRecord}s for a single claim or event
+   * @param columnIndexes the file's resolved column indexes
+   * @return the {@link RecordAction} for the specified record group
+   */
+  RecordAction parseRecordAction(List<RifRecord> recordGroup, int[] columnIndexes) {
+    return RecordAction.match(
+        recordGroup.get(0).getString(columnIndexes[recordActionColumn.ordinal()]));
+  }
+
+  /**
+   * @param recordGroup the grouped {@link RifRecord}s for a single claim or event
+   * @param columnIndexes the file's resolved column indexes
+   * @return the beneficiary ID for the specified record group
+   */
+  String parseBeneficiaryId(List<RifRecord> recordGroup, int[] columnIndexes) {
+    return RifParsingUtils.parseString(
+        recordGroup.get(0), columnIndexes[beneficiaryIdColumn.ordinal()]);
+  }
+
+  /**
+   * @param recordGroup the grouped {@link RifRecord}s for a single claim or event
+   * @param columnIndexes the file's resolved column indexes
+   * @return the JPA entity parsed from the specified record group, for the records that can't be
+   *     transcoded (e.g. {@link RecordAction#UPDATE}s)
+   */
+  RifRecordBase parseRif(List<RifRecord> recordGroup, int[] columnIndexes) {
+    return recordGroupParser.parseRif(recordGroup, columnIndexes);
+  }
+
+  /**
+   * Note: If this throws an exception, the contents of the specified buffers are undefined, and
+   * they must be cleared before being used again.
+   *
+   * @param recordGroup the grouped {@link RifRecord}s for a single claim or event
+   * @param columnIndexes the file's resolved column indexes
+   * @param lastUpdated the value to use for the header row's <code>lastupdated</code> column
+   * @param headerRows the {@link PostgreSqlBinaryCopyBuffer} to write the header row to
+   * @param lineRows the {@link PostgreSqlBinaryCopyBuffer} to write any line rows to
+   */
+  void transcodeRif(
+      List<RifRecord> recordGroup,
+      int[] columnIndexes,
+      Date lastUpdated,
+      PostgreSqlBinaryCopyBuffer headerRows,
+      PostgreSqlBinaryCopyBuffer lineRows) {
+    recordGroupTranscoder.transcodeRif(
+        recordGroup, columnIndexes, lastUpdated, headerRows, lineRows);
+  }
+
+  /** @return the {@link CopyTranscodingLayout}s for each supported {@link RifFileType} */
+  private static Map<RifFileType, CopyTranscodingLayout> createLayouts() {
+    Map<RifFileType, CopyTranscodingLayout> layouts = new EnumMap<>(RifFileType.class);
+    layouts.put(
+        RifFileType.PDE,
+        new CopyTranscodingLayout(
+            PartDEvent.class,
+            null,
+            PartDEventColumn.DML_IND,
+            PartDEventColumn.BENE_ID,
+            PartDEventParser::resolveColumnIndexes,
+            PartDEventParser::parseRif,
+            (r, c, u, h, l) -> PartDEventCopyTranscoder.transcodeRif(r, c, u, h)));
+    layouts.put(
+        RifFileType.CARRIER,
+        new CopyTranscodingLayout(
+            CarrierClaim.class,
+            RifFileType.CARRIER.getIdColumn(),
+            CarrierClaimColumn.DML_IND,
+            CarrierClaimColumn.BENE_ID,
+            CarrierClaimParser::resolveColumnIndexes,
+            CarrierClaimParser::parseRif,
+            CarrierClaimCopyTranscoder::transcodeRif));
+    layouts.put(
+        RifFileType.INPATIENT,
+        new CopyTranscodingLayout(
+            InpatientClaim.class,
+            RifFileType.INPATIENT.getIdColumn(),
+            InpatientClaimColumn.DML_IND,
+            InpatientClaimColumn.BENE_ID,
+            InpatientClaimParser::resolveColumnIndexes,
+            InpatientClaimParser::parseRif,
+            InpatientClaimCopyTranscoder::transcodeRif));
+    layouts.put(
+        RifFileType.OUTPATIENT,
+        new CopyTranscodingLayout(
+            OutpatientClaim.class,
+            RifFileType.OUTPATIENT.getIdColumn(),
+            OutpatientClaimColumn.DML_IND,
+            OutpatientClaimColumn.BENE_ID,
+            OutpatientClaimParser::resolveColumnIndexes,
+            OutpatientClaimParser::parseRif,
+            OutpatientClaimCopyTranscoder::transcodeRif));
+    layouts.put(
+        RifFileType.HHA,
+        new CopyTranscodingLayout(
+            HHAClaim.class,
+            RifFileType.HHA.getIdColumn(),
+            HHAClaimColumn.DML_IND,
+            HHAClaimColumn.BENE_ID,
+            HHAClaimParser::resolveColumnIndexes,
+            HHAClaimParser::parseRif,
+            HHAClaimCopyTranscoder::transcodeRif));
+    layouts.put(
+        RifFileType.DME,
+        new CopyTranscodingLayout(
+            DMEClaim.class,
+            RifFileType.DME.getIdColumn(),
+            DMEClaimColumn.DML_IND,
+            DMEClaimColumn.BENE_ID,
+            DMEClaimParser::resolveColumnIndexes,
+            DMEClaimParser::parseRif,
+            DMEClaimCopyTranscoder::transcodeRif));
+    layouts.put(
+        RifFileType.HOSPICE,
+        new CopyTranscodingLayout(
+            HospiceClaim.class,
+            RifFileType.HOSPICE.getIdColumn(),
+            HospiceClaimColumn.DML_IND,
+            HospiceClaimColumn.BENE_ID,
+            HospiceClaimParser::resolveColumnIndexes,
+            HospiceClaimParser::parseRif,
+            HospiceClaimCopyTranscoder::transcodeRif));
+    layouts.put(
+        RifFileType.SNF,
+        new CopyTranscodingLayout(
+            SNFClaim.class,
+            RifFileType.SNF.getIdColumn(),
+            SNFClaimColumn.DML_IND,
+            SNFClaimColumn.BENE_ID,
+            SNFClaimParser::resolveColumnIndexes,
+            SNFClaimParser::parseRif,
+            SNFClaimCopyTranscoder::transcodeRif));
+    return Collections.unmodifiableMap(layouts);
+  }
+
+  /** Parses a group of {@link RifRecord}s into a JPA entity, via its generated parser. */
+  @FunctionalInterface
+  private interface RecordGroupParser {
+    /**
+     * @param recordGroup the grouped {@link RifRecord}s for a single claim or event
+     * @param columnIndexes the file's resolved column indexes
+     * @return the JPA entity parsed from the specified record group
+     */
+    RifRecordBase parseRif(List<RifRecord> recordGroup, int[] columnIndexes);
+  }
+
+  /**
+   * Transcodes a group of {@link RifRecord}s into {@link PostgreSqlBinaryCopyBuffer}s, via its
+   * generated <code>*CopyTranscoder</code>.
+   */
+  @FunctionalInterface
+  private interface RecordGroupTranscoder {
+    /**
+     * @param recordGroup the grouped {@link RifRecord}s for a single claim or event
+     * @param columnIndexes the file's resolved column indexes
+     * @param lastUpdated the value to use for the header row's <code>lastupdated</code> column
+     * @param headerRows the {@link PostgreSqlBinaryCopyBuffer} to write the header row to
+     * @param lineRows the {@link PostgreSqlBinaryCopyBuffer} to write any line rows to
+     */
+    void transcodeRif(
+        List<RifRecord> recordGroup,
+        int[] columnIndexes,
+        Date lastUpdated,
+        PostgreSqlBinaryCopyBuffer headerRows,
+        PostgreSqlBinaryCopyBuffer lineRows);
+  }
+}
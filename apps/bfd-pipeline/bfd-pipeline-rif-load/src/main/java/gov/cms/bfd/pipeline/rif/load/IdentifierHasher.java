@@ -0,0 +1,218 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.Timer;
+import com.justdavis.karl.misc.exceptions.BadCodeMonkeyException;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.SecretKey;
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Computes one-way cryptographic hashes of beneficiary identifiers (HICNs and MBIs). These are
+ * used as a secure means of identifying Medicare beneficiaries between the Blue Button API frontend
+ * and backend systems, and so must exactly match the <code>PBKDF2WithHmacSHA256</code> hashes that
+ * the frontend computes. They are also much cheaper to get when the same identifiers come up again
+ * and again, as they do in the weekly beneficiary update files and across each beneficiary's
+ * history records.
+ *
+ * <p>Each instance caches the hashes it has computed in a size-bounded, least-recently-used cache.
+ * As the cache belongs to the instance, and each instance only ever uses the one pepper and
+ * iteration count it was created with, cached hashes can never be returned for a different pepper.
+ *
+ * <p>The hashes themselves are computed as PBKDF2 (with HMAC-SHA256) directly, via a {@link Mac}
+ * that each thread creates just once, rather than via a new {@link javax.crypto.SecretKeyFactory}
+ * key each time. As the derived key is exactly one HMAC-SHA256 output long, only one PBKDF2 block
+ * is ever needed, and its salt input (the pepper and block index) is also computed just once.
+ *
+ * <p>Instances are thread-safe.
+ */
+final class IdentifierHasher {
+  /** The default maximum number of hashes that each {@link IdentifierHasher} will cache. */
+  static final int DEFAULT_CACHE_SIZE = 100_000;
+
+  /** The HMAC algorithm used as PBKDF2's pseudorandom function. */
+  private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+  /**
+   * The length (in bytes) of the derived keys. Bigger would reduce the chances of collisions, but
+   * the frontend's equivalent Python Django hashing functions default to 256 bits, which is also
+   * (not coincidentally) the length of a single HMAC-SHA256 output.
+   */
+  private static final int DERIVED_KEY_LENGTH = 32;
+
+  private final int hashIterations;
+  private final byte[] firstBlockSalt;
+  private final Map<String, String> cache;
+  private final ThreadLocal<Mac> macs;
+  private final Meter cacheHits;
+  private final Meter cacheMisses;
+  private final Timer hashTimer;
+
+  /**
+   * Constructs a new {@link IdentifierHasher}.
+   *
+   * @param hashIterations the number of PBKDF2 iterations to use, as specified by {@link
+   *     LoadAppOptions#getHicnHashIterations()}
+   * @param pepper the secret pepper to use as PBKDF2's salt, as specified by {@link
+   *     LoadAppOptions#getHicnHashPepper()}
+   * @param cacheSize the maximum number of hashes to cache
+   * @param metrics the {@link MetricRegistry} to record the cache's hit rate and the hashing
+   *     latency in
+   */
+  IdentifierHasher(int hashIterations, byte[] pepper, int cacheSize, MetricRegistry metrics) {
+    if (hashIterations < 1) throw new IllegalArgumentException();
+    if (cacheSize < 0) throw new IllegalArgumentException();
+
+    this.hashIterations = hashIterations;
+
+    /*
+     * Our approach here is NOT using a salt, as salts must be randomly generated for each value to
+     * be hashed and then included in plaintext with the hash results. Random salts would prevent
+     * the Blue Button API frontend systems from being able to produce equal hashes for the same
+     * identifiers. Instead, we use a secret "pepper" that is shared out-of-band with the frontend.
+     * This value MUST be kept secret. The same pepper is used for both HICNs and MBIs.
+     */
+    // PBKDF2's first (and here, only) block is salted with the salt followed by its block index.
+    this.firstBlockSalt = Arrays.copyOf(pepper, pepper.length + 4);
+    this.firstBlockSalt[pepper.length + 3] = 1;
+
+    this.cache =
+        new LinkedHashMap<String, String>(16, 0.75f, true) {
+          private static final long serialVersionUID = 1L;
+
+          /** @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry) */
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > cacheSize;
+          }
+        };
+    this.macs = ThreadLocal.withInitial(() -> createMac());
+
+    this.cacheHits = metrics.meter(MetricRegistry.name(getClass().getSimpleName(), "cacheHits"));
+    this.cacheMisses =
+        metrics.meter(MetricRegistry.name(getClass().getSimpleName(), "cacheMisses"));
+    this.hashTimer = metrics.timer(MetricRegistry.name(getClass().getSimpleName(), "hashes"));
+
+    String hitRatioName = MetricRegistry.name(getClass().getSimpleName(), "cacheHitRatio");
+    MetricsUtils.registerGauge(
+        metrics,
+        hitRatioName,
+        new RatioGauge() {
+          /** @see com.codahale.metrics.RatioGauge#getRatio() */
+          @Override
+          protected Ratio getRatio() {
+            return Ratio.of(
+                cacheHits.getCount(), (double) cacheHits.getCount() + cacheMisses.getCount());
+          }
+        });
+  }
+
+  /**
+   * Computes (or looks up) a one-way cryptographic hash of the specified identifier.
+   *
+   * @param identifier the HICN, MBI, etc. to be hashed
+   * @return a one-way cryptographic hash of the specified identifier, exactly 64 characters long
+   */
+  public String computeIdentifierHash(String identifier) {
+    String hash;
+    synchronized (cache) {
+      hash = cache.get(identifier);
+    }
+    if (hash != null) {
+      cacheHits.mark();
+      return hash;
+    }
+
+    /*
+     * The hash is computed outside of the lock, as it's the slow part. It's possible for two
+     * threads to both compute the same missing hash, but that's harmless.
+     */
+    cacheMisses.mark();
+    Timer.Context timerHash = hashTimer.time();
+    hash = Hex.encodeHexString(computePbkdf2(identifier));
+    timerHash.stop();
+
+    synchronized (cache) {
+      cache.put(identifier, hash);
+    }
+    return hash;
+  }
+
+  /**
+   * @param identifier the identifier to hash, which is used as PBKDF2's password
+   * @return the PBKDF2 derived key for the specified identifier, exactly as a {@link
+   *     javax.crypto.SecretKeyFactory} for <code>PBKDF2WithHmacSHA256</code> would produce it
+   */
+  private byte[] computePbkdf2(String identifier) {
+    Mac mac = macs.get();
+    try {
+      // PBKDF2WithHmacSHA256 encodes its password as UTF-8, too.
+      mac.init(new PasswordKey(identifier.getBytes(StandardCharsets.UTF_8)));
+
+      // Each iteration's HMAC output is XORed into the result, and then fed into the next one.
+      byte[] iterationOutput = mac.doFinal(firstBlockSalt);
+      byte[] derivedKey = iterationOutput.clone();
+      for (int iteration = 1; iteration < hashIterations; iteration++) {
+        mac.update(iterationOutput);
+        mac.doFinal(iterationOutput, 0);
+        for (int i = 0; i < DERIVED_KEY_LENGTH; i++) derivedKey[i] ^= iterationOutput[i];
+      }
+
+      return derivedKey;
+    } catch (InvalidKeyException | ShortBufferException e) {
+      throw new BadCodeMonkeyException(e);
+    }
+  }
+
+  /**
+   * Wraps a PBKDF2 password as an HMAC key, just as <code>PBKDF2WithHmacSHA256</code> does
+   * internally. Unlike {@link javax.crypto.spec.SecretKeySpec}, this accepts empty passwords (e.g.
+   * for an empty identifier), which HMAC itself handles just fine.
+   */
+  private static final class PasswordKey implements SecretKey {
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] password;
+
+    /** @param password the value to use for {@link #getEncoded()} */
+    PasswordKey(byte[] password) {
+      this.password = password;
+    }
+
+    /** @see java.security.Key#getAlgorithm() */
+    @Override
+    public String getAlgorithm() {
+      return HMAC_ALGORITHM;
+    }
+
+    /** @see java.security.Key#getFormat() */
+    @Override
+    public String getFormat() {
+      return "RAW";
+    }
+
+    /** @see java.security.Key#getEncoded() */
+    @Override
+    public byte[] getEncoded() {
+      return password.clone();
+    }
+  }
+
+  /** @return a new HMAC-SHA256 {@link Mac} */
+  private static Mac createMac() {
+    try {
+      return Mac.getInstance(HMAC_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,243 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.justdavis.karl.misc.exceptions.BadCodeMonkeyException;
+import gov.cms.bfd.model.rif.Beneficiary;
+import gov.cms.bfd.model.rif.BeneficiaryHistory;
+import gov.cms.bfd.model.rif.BeneficiaryHistoryJdbcBinder;
+import gov.cms.bfd.model.rif.BeneficiaryJdbcBinder;
+import gov.cms.bfd.model.rif.CarrierClaim;
+import gov.cms.bfd.model.rif.CarrierClaimJdbcBinder;
+import gov.cms.bfd.model.rif.DMEClaim;
+import gov.cms.bfd.model.rif.DMEClaimJdbcBinder;
+import gov.cms.bfd.model.rif.HHAClaim;
+import gov.cms.bfd.model.rif.HHAClaimJdbcBinder;
+import gov.cms.bfd.model.rif.HospiceClaim;
+import gov.cms.bfd.model.rif.HospiceClaimJdbcBinder;
+import gov.cms.bfd.model.rif.InpatientClaim;
+import gov.cms.bfd.model.rif.InpatientClaimJdbcBinder;
+import gov.cms.bfd.model.rif.MedicareBeneficiaryIdHistory;
+import gov.cms.bfd.model.rif.MedicareBeneficiaryIdHistoryJdbcBinder;
+import gov.cms.bfd.model.rif.OutpatientClaim;
+import gov.cms.bfd.model.rif.OutpatientClaimJdbcBinder;
+import gov.cms.bfd.model.rif.PartDEvent;
+import gov.cms.bfd.model.rif.PartDEventJdbcBinder;
+import gov.cms.bfd.model.rif.RecordAction;
+import gov.cms.bfd.model.rif.RifRecordBase;
+import gov.cms.bfd.model.rif.SNFClaim;
+import gov.cms.bfd.model.rif.SNFClaimJdbcBinder;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handles {@link RecordAction#INSERT}s for {@link RifLoader} via plain, batched JDBC <code>INSERT
+ * </code>s, when {@link LoadAppOptions.InsertStrategy#JDBC_BATCH} is selected. The values are bound
+ * by the generated <code>*JdbcBinder</code>s, which skips all of the per-entity work that
+ * Hibernate does for {@link EntityManager#persist(Object)} (snapshots for dirty checking,
+ * persistence context tracking, cascades, etc.), none of which the loader needs, as it never reads
+ * the records back.
+ *
+ * <p>Each batch of records is bound to one {@link PreparedStatement} per SQL table on the batch's
+ * own {@link EntityManager} connection, so the rows are committed (or rolled back) in the same
+ * transaction as the batch's other changes. As the SQL for each table never changes, the JDBC
+ * driver is free to cache its server-side prepared statements across batches. Unlike {@link
+ * PostgreSqlCopyInserter}, this works with any database, though it's only fast with PostgreSQL if
+ * the driver's <code>reWriteBatchedInserts</code> option is on (see {@link
+ * RifLoader#createDataSource(LoadAppOptions, MetricRegistry)}).
+ *
+ * <p>Instances are thread-safe.
+ */
+final class JdbcBatchInserter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(JdbcBatchInserter.class);
+
+  /** The {@link JdbcBatchLayout}s for each top-level RIF entity type. */
+  private static final Map<Class<?>, JdbcBatchLayout> JDBC_BATCH_LAYOUTS = createJdbcBatchLayouts();
+
+  /**
+   * Inserts the specified records, along with any claim lines they have, using the specified {@link
+   * EntityManager}'s current connection and transaction. Any changes already pending in that
+   * {@link EntityManager} will be flushed first, so that the inserts happen in the expected order.
+   *
+   * @param entityManager the {@link EntityManager} to use, which must have an active transaction
+   * @param records the {@link RifRecordBase} top-level entity instances (e.g. {@link Beneficiary}s,
+   *     {@link CarrierClaim}s, etc.) to insert, which must all be of the same type
+   * @param metrics the {@link MetricRegistry} to use
+   */
+  public void insert(
+      EntityManager entityManager, List<RifRecordBase> records, MetricRegistry metrics) {
+    if (records.isEmpty()) return;
+
+    Timer.Context timerBatches =
+        metrics.timer(MetricRegistry.name(getClass().getSimpleName(), "batches")).time();
+
+    JdbcBatchLayout layout = getJdbcBatchLayout(records.get(0).getClass());
+    PostgreSqlCopyInserter.assignGeneratedIds(entityManager, records);
+
+    // Make sure anything else the batch did gets written before the INSERTs.
+    entityManager.flush();
+
+    Session session = entityManager.unwrap(Session.class);
+    session.doWork(
+        new Work() {
+          /** @see org.hibernate.jdbc.Work#execute(java.sql.Connection) */
+          @Override
+          public void execute(Connection connection) throws SQLException {
+            try (PreparedStatement headerInsert =
+                    connection.prepareStatement(layout.headerInsertSql);
+                PreparedStatement lineInsert =
+                    layout.lineInsertSql != null
+                        ? connection.prepareStatement(layout.lineInsertSql)
+                        : null) {
+              for (RifRecordBase record : records)
+                layout.rowBinder.bindRows(record, headerInsert, lineInsert);
+
+              // The header rows always go first, as the lines have foreign keys to them.
+              LOGGER.trace("Executing JDBC batch of '{}' header rows.", records.size());
+              int rowCount = headerInsert.executeBatch().length;
+              if (lineInsert != null) rowCount += lineInsert.executeBatch().length;
+
+              metrics
+                  .meter(MetricRegistry.name(JdbcBatchInserter.class.getSimpleName(), "rows"))
+                  .mark(rowCount);
+            }
+          }
+        });
+
+    timerBatches.stop();
+  }
+
+  /**
+   * @param entityType the top-level RIF entity type to get the {@link JdbcBatchLayout} of
+   * @return the {@link JdbcBatchLayout} for the specified entity type
+   */
+  private static JdbcBatchLayout getJdbcBatchLayout(Class<?> entityType) {
+    JdbcBatchLayout layout = JDBC_BATCH_LAYOUTS.get(entityType);
+    if (layout == null) throw new BadCodeMonkeyException("Unhandled record type: " + entityType);
+    return layout;
+  }
+
+  /** @return the {@link JdbcBatchLayout}s for each top-level RIF entity type */
+  private static Map<Class<?>, JdbcBatchLayout> createJdbcBatchLayouts() {
+    Map<Class<?>, JdbcBatchLayout> layouts = new HashMap<>();
+    layouts.put(
+        Beneficiary.class,
+        new JdbcBatchLayout(
+            BeneficiaryJdbcBinder.HEADER_INSERT_SQL,
+            (r, h, l) -> BeneficiaryJdbcBinder.bindRows((Beneficiary) r, h)));
+    layouts.put(
+        BeneficiaryHistory.class,
+        new JdbcBatchLayout(
+            BeneficiaryHistoryJdbcBinder.HEADER_INSERT_SQL,
+            (r, h, l) -> BeneficiaryHistoryJdbcBinder.bindRows((BeneficiaryHistory) r, h)));
+    layouts.put(
+        MedicareBeneficiaryIdHistory.class,
+        new JdbcBatchLayout(
+            MedicareBeneficiaryIdHistoryJdbcBinder.HEADER_INSERT_SQL,
+            (r, h, l) ->
+                MedicareBeneficiaryIdHistoryJdbcBinder.bindRows(
+                    (MedicareBeneficiaryIdHistory) r, h)));
+    layouts.put(
+        PartDEvent.class,
+        new JdbcBatchLayout(
+            PartDEventJdbcBinder.HEADER_INSERT_SQL,
+            (r, h, l) -> PartDEventJdbcBinder.bindRows((PartDEvent) r, h)));
+    layouts.put(
+        CarrierClaim.class,
+        new JdbcBatchLayout(
+            CarrierClaimJdbcBinder.HEADER_INSERT_SQL,
+            CarrierClaimJdbcBinder.LINE_INSERT_SQL,
+            (r, h, l) -> CarrierClaimJdbcBinder.bindRows((CarrierClaim) r, h, l)));
+    layouts.put(
+        InpatientClaim.class,
+        new JdbcBatchLayout(
+            InpatientClaimJdbcBinder.HEADER_INSERT_SQL,
+            InpatientClaimJdbcBinder.LINE_INSERT_SQL,
+            (r, h, l) -> InpatientClaimJdbcBinder.bindRows((InpatientClaim) r, h, l)));
+    layouts.put(
+        OutpatientClaim.class,
+        new JdbcBatchLayout(
+            OutpatientClaimJdbcBinder.HEADER_INSERT_SQL,
+            OutpatientClaimJdbcBinder.LINE_INSERT_SQL,
+            (r, h, l) -> OutpatientClaimJdbcBinder.bindRows((OutpatientClaim) r, h, l)));
+    layouts.put(
+        HHAClaim.class,
+        new JdbcBatchLayout(
+            HHAClaimJdbcBinder.HEADER_INSERT_SQL,
+            HHAClaimJdbcBinder.LINE_INSERT_SQL,
+            (r, h, l) -> HHAClaimJdbcBinder.bindRows((HHAClaim) r, h, l)));
+    layouts.put(
+        DMEClaim.class,
+        new JdbcBatchLayout(
+            DMEClaimJdbcBinder.HEADER_INSERT_SQL,
+            DMEClaimJdbcBinder.LINE_INSERT_SQL,
+            (r, h, l) -> DMEClaimJdbcBinder.bindRows((DMEClaim) r, h, l)));
+    layouts.put(
+        HospiceClaim.class,
+        new JdbcBatchLayout(
+            HospiceClaimJdbcBinder.HEADER_INSERT_SQL,
+            HospiceClaimJdbcBinder.LINE_INSERT_SQL,
+            (r, h, l) -> HospiceClaimJdbcBinder.bindRows((HospiceClaim) r, h, l)));
+    layouts.put(
+        SNFClaim.class,
+        new JdbcBatchLayout(
+            SNFClaimJdbcBinder.HEADER_INSERT_SQL,
+            SNFClaimJdbcBinder.LINE_INSERT_SQL,
+            (r, h, l) -> SNFClaimJdbcBinder.bindRows((SNFClaim) r, h, l)));
+    return Collections.unmodifiableMap(layouts);
+  }
+
+  /**
+   * Binds a top-level RIF entity (and its lines, if any) to batched {@link PreparedStatement}s, via
+   * its generated <code>*JdbcBinder</code>.
+   */
+  @FunctionalInterface
+  private interface JdbcBatchRowBinder {
+    /**
+     * @param record the {@link RifRecordBase} top-level entity instance to bind
+     * @param headerInsert the {@link PreparedStatement} to bind and batch the header row to
+     * @param lineInsert the {@link PreparedStatement} to bind and batch any line rows to
+     * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+     */
+    void bindRows(
+        RifRecordBase record, PreparedStatement headerInsert, PreparedStatement lineInsert)
+        throws SQLException;
+  }
+
+  /** A simple struct for the SQL that a top-level RIF entity is inserted with. */
+  private static final class JdbcBatchLayout {
+    final String headerInsertSql;
+    final String lineInsertSql;
+    final JdbcBatchRowBinder rowBinder;
+
+    /**
+     * @param headerInsertSql the parameterized SQL <code>INSERT</code> for the header table
+     * @param lineInsertSql the parameterized SQL <code>INSERT</code> for the line table, or <code>
+     *     null</code> if there isn't one
+     * @param rowBinder the {@link JdbcBatchRowBinder} to use
+     */
+    JdbcBatchLayout(String headerInsertSql, String lineInsertSql, JdbcBatchRowBinder rowBinder) {
+      this.headerInsertSql = headerInsertSql;
+      this.lineInsertSql = lineInsertSql;
+      this.rowBinder = rowBinder;
+    }
+
+    /**
+     * @param headerInsertSql the parameterized SQL <code>INSERT</code> for the header table
+     * @param rowBinder the {@link JdbcBatchRowBinder} to use
+     */
+    JdbcBatchLayout(String headerInsertSql, JdbcBatchRowBinder rowBinder) {
+      this(headerInsertSql, null, rowBinder);
+    }
+  }
+}
@@ -0,0 +1,429 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.hibernate.StatelessSession;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StringType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the <code>"mbiHash"</code> fixup of a single table, for {@link RifLoaderIdleTasks}.
+ *
+ * <p>The table's primary key space is split into contiguous keyset ranges, each of which is walked
+ * in key order, a batch at a time, by <code>WHERE id &gt; lastKey ... ORDER BY id</code> queries
+ * that can use the primary key's index, and so never re-scan the rows already fixed. Each range's
+ * progress is recorded in the <code>"FixupCheckpoints"</code> table, in the same transaction as the
+ * batch it covers, so that a restarted pipeline resumes each range from where it left off.
+ *
+ * <p>Ranges are planned once, when there's work to do and no unfinished ranges to resume: bigint
+ * keys are split evenly between their current minimum and maximum, and text keys are split along
+ * PostgreSQL's column statistics (or not at all, for other databases). The first and last ranges
+ * are open-ended, so the ranges always cover every key, no matter how well they're balanced.
+ *
+ * <p>Reports the following metrics, all named <code>fixups.&lt;name&gt;.*</code>: a <code>rate
+ * </code> meter, and <code>rowsRemaining</code>, <code>rangesRemaining</code>, <code>rowsPerSecond
+ * </code>, and <code>etaSeconds</code> gauges. The rate and ETA only count the (idle) time spent
+ * on this fixup, as that's all it ever gets.
+ */
+final class KeysetRangeFixup {
+  private static final Logger LOGGER = LoggerFactory.getLogger(KeysetRangeFixup.class);
+
+  /** The record count of a db update batch */
+  static final int BATCH_COUNT = 100;
+
+  private final String tableName;
+  private final String idName;
+  private final boolean hasTextId;
+  private final boolean databasePostgreSql;
+
+  /* Progress, for the metrics */
+  private final Meter rowsFixedMeter;
+  private final AtomicLong rowsRemaining;
+  private final AtomicInteger rangesRemaining;
+  private final AtomicLong rowsFixed;
+  private final AtomicLong workNanos;
+
+  /* Whether there's nothing (more) to fix up */
+  private volatile boolean complete;
+
+  /**
+   * Constructs a new {@link KeysetRangeFixup}.
+   *
+   * @param name the name of this fixup, for its metrics
+   * @param tableName the (unquoted) name of the table to fix up
+   * @param idName the (unquoted) name of the table's primary key column
+   * @param hasTextId is true if the id is a varchar, false if the id is a bigint
+   * @param databasePostgreSql <code>true</code> if the database is PostgreSQL, <code>false</code>
+   *     if it is not
+   * @param metrics the {@link MetricRegistry} to record metrics in
+   */
+  KeysetRangeFixup(
+      String name,
+      String tableName,
+      String idName,
+      boolean hasTextId,
+      boolean databasePostgreSql,
+      MetricRegistry metrics) {
+    this.tableName = tableName;
+    this.idName = idName;
+    this.hasTextId = hasTextId;
+    this.databasePostgreSql = databasePostgreSql;
+
+    this.rowsFixedMeter = metrics.meter(MetricRegistry.name("fixups", name, "rate"));
+    this.rowsRemaining = new AtomicLong();
+    this.rangesRemaining = new AtomicInteger();
+    this.rowsFixed = new AtomicLong();
+    this.workNanos = new AtomicLong();
+
+    MetricsUtils.registerGauge(
+        metrics,
+        MetricRegistry.name("fixups", name, "rowsRemaining"),
+        () -> Math.max(0L, rowsRemaining.get()));
+    MetricsUtils.registerGauge(
+        metrics, MetricRegistry.name("fixups", name, "rangesRemaining"), rangesRemaining::get);
+    MetricsUtils.registerGauge(
+        metrics, MetricRegistry.name("fixups", name, "rowsPerSecond"), this::rowsPerSecond);
+    MetricsUtils.registerGauge(
+        metrics,
+        MetricRegistry.name("fixups", name, "etaSeconds"),
+        () -> computeEtaSeconds(rowsRemaining.get(), rowsPerSecond()));
+  }
+
+  /** @return the (unquoted) name of the table to fix up */
+  String getTableName() {
+    return tableName;
+  }
+
+  /** @return the (unquoted) name of the table's primary key column */
+  String getIdName() {
+    return idName;
+  }
+
+  /** @return true if the id is a varchar, false if the id is a bigint */
+  boolean hasTextId() {
+    return hasTextId;
+  }
+
+  /**
+   * Prepares this fixup to run: resumes its unfinished ranges, if there are any, or plans and
+   * records a new set of them, if there's work to do. Executed in the context of a transaction.
+   *
+   * @param session to use
+   * @param rowsToFix the number of rows that are missing their <code>"mbiHash"</code>
+   * @param rangeCount the number of ranges to split the table into, if they need to be planned
+   */
+  void start(StatelessSession session, long rowsToFix, int rangeCount) {
+    rowsRemaining.set(rowsToFix);
+    if (rowsToFix == 0) {
+      complete = true;
+      return;
+    }
+
+    List<Range> pending = findPendingRanges(session);
+    if (!pending.isEmpty()) {
+      LOGGER.info("Resuming the {} fixup: {} ranges remaining", tableName, pending.size());
+      return;
+    }
+
+    /*
+     * Either this table has never been fixed up, or rows have lost their
+     * mbiHash since it was (e.g. in tests): start over.
+     */
+    session
+        .createNativeQuery("DELETE FROM \"FixupCheckpoints\" WHERE \"tableName\" = :tableName")
+        .setParameter("tableName", tableName)
+        .executeUpdate();
+    List<String> boundaries = planBoundaries(session, rangeCount);
+    for (int i = 0; i <= boundaries.size(); i++) {
+      session
+          .createNativeQuery(
+              "INSERT INTO \"FixupCheckpoints\" (\"tableName\", \"rangeIndex\", \"rangeStart\","
+                  + " \"rangeEnd\", \"lastKey\", \"rowsFixed\", \"done\", \"updated\")"
+                  + " VALUES (:tableName, :rangeIndex, :rangeStart, :rangeEnd, NULL, 0, :done,"
+                  + " CURRENT_TIMESTAMP)")
+          .setParameter("tableName", tableName)
+          .setParameter("rangeIndex", i)
+          .setParameter("rangeStart", i == 0 ? null : boundaries.get(i - 1), StringType.INSTANCE)
+          .setParameter(
+              "rangeEnd", i == boundaries.size() ? null : boundaries.get(i), StringType.INSTANCE)
+          .setParameter("done", Boolean.FALSE)
+          .executeUpdate();
+    }
+    rangesRemaining.set(boundaries.size() + 1);
+    complete = false;
+    LOGGER.info(
+        "Planned the {} fixup: {} rows in {} ranges", tableName, rowsToFix, boundaries.size() + 1);
+  }
+
+  /**
+   * @param session to use
+   * @return the ranges that haven't been finished yet, as of their last checkpoints
+   */
+  List<Range> findPendingRanges(StatelessSession session) {
+    if (complete) return Collections.emptyList();
+
+    @SuppressWarnings("unchecked")
+    List<Object[]> rows =
+        session
+            .createNativeQuery(
+                "SELECT \"rangeIndex\", \"rangeStart\", \"rangeEnd\", \"lastKey\""
+                    + " FROM \"FixupCheckpoints\""
+                    + " WHERE \"tableName\" = :tableName AND \"done\" = :done"
+                    + " ORDER BY \"rangeIndex\"")
+            .setParameter("tableName", tableName)
+            .setParameter("done", Boolean.FALSE)
+            .getResultList();
+    List<Range> ranges = new ArrayList<>(rows.size());
+    for (Object[] row : rows)
+      ranges.add(
+          new Range(
+              ((Number) row[0]).intValue(), (String) row[1], (String) row[2], (String) row[3]));
+    rangesRemaining.set(ranges.size());
+    if (ranges.isEmpty()) complete = true;
+    return ranges;
+  }
+
+  /**
+   * Fetch the next batch of rows in the specified range, in key order. Each row contains the
+   * tableId and a medicareBeneficiaryId.
+   *
+   * @param session to use
+   * @param range to fetch from
+   * @return a list of rows, which will be shorter than {@link #BATCH_COUNT} if the range is done
+   */
+  @SuppressWarnings("unchecked")
+  List<Object[]> fetchBatchRows(StatelessSession session, Range range) {
+    String id = "b.\"" + idName + "\"";
+    String after = range.lastKey != null ? range.lastKey : range.start;
+    NativeQuery<Object[]> select =
+        session.createNativeQuery(
+            "SELECT "
+                + id
+                + ", b.\"medicareBeneficiaryId\" FROM \""
+                + tableName
+                + "\" b WHERE b.\"mbiHash\" IS NULL AND b.\"medicareBeneficiaryId\" IS NOT NULL"
+                + (after != null ? " AND " + id + " > :after" : "")
+                + (range.end != null ? " AND " + id + " <= :end" : "")
+                + " ORDER BY "
+                + id);
+    if (after != null) select.setParameter("after", parseKey(after));
+    if (range.end != null) select.setParameter("end", parseKey(range.end));
+    return select.setMaxResults(BATCH_COUNT).getResultList();
+  }
+
+  /**
+   * Records the progress of the specified range, after a batch of its rows have been fixed up.
+   * Executed in the context of the same transaction as that batch.
+   *
+   * @param session to use
+   * @param range the range that the batch was in
+   * @param rows the rows that were fixed up, as returned by {@link
+   *     #fetchBatchRows(StatelessSession, Range)}
+   */
+  void saveCheckpoint(StatelessSession session, Range range, List<Object[]> rows) {
+    boolean done = rows.size() < BATCH_COUNT;
+    String lastKey = rows.isEmpty() ? range.lastKey : rows.get(rows.size() - 1)[0].toString();
+    session
+        .createNativeQuery(
+            "UPDATE \"FixupCheckpoints\" SET \"lastKey\" = :lastKey,"
+                + " \"rowsFixed\" = \"rowsFixed\" + :rowsFixed, \"done\" = :done,"
+                + " \"updated\" = CURRENT_TIMESTAMP"
+                + " WHERE \"tableName\" = :tableName AND \"rangeIndex\" = :rangeIndex")
+        .setParameter("lastKey", lastKey, StringType.INSTANCE)
+        .setParameter("rowsFixed", (long) rows.size())
+        .setParameter("done", done)
+        .setParameter("tableName", tableName)
+        .setParameter("rangeIndex", range.index)
+        .executeUpdate();
+
+    range.lastKey = lastKey;
+    range.done = done;
+  }
+
+  /**
+   * Records the rows that have been fixed up, once they've been committed.
+   *
+   * @param range the range that the rows were in
+   * @param count the number of rows fixed up
+   */
+  void recordRowsFixed(Range range, int count) {
+    rowsFixedMeter.mark(count);
+    rowsFixed.addAndGet(count);
+    rowsRemaining.addAndGet(-count);
+    if (range.done) {
+      rangesRemaining.decrementAndGet();
+      LOGGER.info(
+          "Finished range {} of the {} fixup: ~{} rows remaining, ETA {} seconds",
+          range.index,
+          tableName,
+          Math.max(0L, rowsRemaining.get()),
+          computeEtaSeconds(rowsRemaining.get(), rowsPerSecond()));
+    }
+  }
+
+  /** @param nanos the (wall clock) time that was just spent on this fixup */
+  void recordWorkTime(long nanos) {
+    workNanos.addAndGet(nanos);
+  }
+
+  /**
+   * @param session to use
+   * @param rangeCount the number of ranges to split the table into
+   * @return the (ascending) boundaries between the new ranges, each of which is the inclusive end
+   *     of one range and the exclusive start of the next
+   */
+  private List<String> planBoundaries(StatelessSession session, int rangeCount) {
+    if (!hasTextId) {
+      String select =
+          String.format(
+              "SELECT MIN(\"%s\"), MAX(\"%s\") FROM \"%s\"", idName, idName, tableName);
+      Object[] minMax = (Object[]) session.createNativeQuery(select).getSingleResult();
+      if (minMax[0] == null) return Collections.emptyList();
+      return splitNumericRange(
+          ((Number) minMax[0]).longValue(), ((Number) minMax[1]).longValue(), rangeCount);
+    }
+
+    // Text keys can't be split arithmetically, but PostgreSQL's statistics already sample them.
+    if (!databasePostgreSql) return Collections.emptyList();
+    List<?> histograms =
+        session
+            .createNativeQuery(
+                "SELECT CAST(histogram_bounds AS text) FROM pg_stats"
+                    + " WHERE schemaname = current_schema() AND tablename = :tableName"
+                    + " AND attname = :idName")
+            .setParameter("tableName", tableName)
+            .setParameter("idName", idName)
+            .getResultList();
+    if (histograms.isEmpty() || histograms.get(0) == null) return Collections.emptyList();
+    return selectEvenly(parseHistogramBounds((String) histograms.get(0)), rangeCount - 1);
+  }
+
+  /**
+   * @param key a key, as recorded in a checkpoint
+   * @return the key, as the type of the table's primary key column
+   */
+  private Object parseKey(String key) {
+    return hasTextId ? key : Long.valueOf(key);
+  }
+
+  /** @return the rows fixed up per second of (wall clock) time spent on this fixup */
+  private double rowsPerSecond() {
+    return computeRowsPerSecond(rowsFixed.get(), workNanos.get());
+  }
+
+  /**
+   * @param min the smallest key
+   * @param max the largest key
+   * @param rangeCount the number of ranges to split the keys into
+   * @return the (ascending, distinct) boundaries that evenly split the specified keys into (up to)
+   *     the specified number of ranges
+   */
+  static List<String> splitNumericRange(long min, long max, int rangeCount) {
+    List<String> boundaries = new ArrayList<>();
+    BigInteger low = BigInteger.valueOf(min);
+    BigInteger span = BigInteger.valueOf(max).subtract(low);
+    for (int i = 1; i < rangeCount; i++) {
+      String boundary =
+          low.add(span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(rangeCount)))
+              .toString();
+      if (boundaries.isEmpty() || !boundaries.get(boundaries.size() - 1).equals(boundary))
+        boundaries.add(boundary);
+    }
+    return boundaries;
+  }
+
+  /**
+   * @param histogramBounds the text of a PostgreSQL <code>pg_stats.histogram_bounds</code> array,
+   *     e.g. <code>{1,"a b",c}</code>
+   * @return the values in the specified array
+   */
+  static List<String> parseHistogramBounds(String histogramBounds) {
+    String values = histogramBounds.trim();
+    if (values.startsWith("{")) values = values.substring(1);
+    if (values.endsWith("}")) values = values.substring(0, values.length() - 1);
+
+    List<String> bounds = new ArrayList<>();
+    for (String value : values.split(",")) {
+      value = value.trim();
+      if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\""))
+        value = value.substring(1, value.length() - 1);
+      if (!value.isEmpty()) bounds.add(value);
+    }
+    return bounds;
+  }
+
+  /**
+   * @param candidates the (ascending) values to select from
+   * @param count the number of values to select
+   * @return (up to) the specified number of distinct values, evenly spaced through the candidates
+   */
+  static List<String> selectEvenly(List<String> candidates, int count) {
+    List<String> selected = new ArrayList<>();
+    int picks = Math.min(count, candidates.size());
+    for (int i = 1; i <= picks; i++) {
+      String candidate = candidates.get((int) ((long) i * candidates.size() / (picks + 1)));
+      if (selected.isEmpty() || !selected.get(selected.size() - 1).equals(candidate))
+        selected.add(candidate);
+    }
+    return selected;
+  }
+
+  /**
+   * @param rowsFixed the number of rows fixed up
+   * @param workNanos the (wall clock) time spent fixing them up
+   * @return the rows fixed up per second, or <code>0</code> if no time has been spent yet
+   */
+  static double computeRowsPerSecond(long rowsFixed, long workNanos) {
+    return workNanos <= 0 ? 0.0 : rowsFixed * 1_000_000_000.0 / workNanos;
+  }
+
+  /**
+   * @param rowsRemaining the number of rows left to fix up
+   * @param rowsPerSecond the rows fixed up per second
+   * @return the estimated number of seconds (of time spent on the fixup) until it's done, or
+   *     <code>-1</code> if that can't be estimated yet
+   */
+  static long computeEtaSeconds(long rowsRemaining, double rowsPerSecond) {
+    if (rowsRemaining <= 0) return 0;
+    if (rowsPerSecond <= 0.0) return -1;
+    return (long) Math.ceil(rowsRemaining / rowsPerSecond);
+  }
+
+  /** A contiguous range of the table's primary keys, and its progress. */
+  static final class Range {
+    private final int index;
+    private final String start;
+    private final String end;
+    private volatile String lastKey;
+    private volatile boolean done;
+
+    /**
+     * Constructs a new {@link Range}.
+     *
+     * @param index the index of this range
+     * @param start the (exclusive) start of this range, or <code>null</code> if it's open
+     * @param end the (inclusive) end of this range, or <code>null</code> if it's open
+     * @param lastKey the last key that has been fixed up, or <code>null</code> if none have yet
+     */
+    Range(int index, String start, String end, String lastKey) {
+      this.index = index;
+      this.start = start;
+      this.end = end;
+      this.lastKey = lastKey;
+      this.done = false;
+    }
+
+    /** @return the index of this range */
+    int getIndex() {
+      return index;
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+/**
+ * Batches up a stream of elements by "lane", rather than just in the order they arrive (as {@link
+ * BatchSpliterator} does): each element is routed to a lane by hashing its key, so elements with
+ * the same key always end up in the same lane, and in their original order. Each lane's batch is
+ * handed off to the {@link LaneBatchConsumer} once it's full, and any partial batches are handed
+ * off by {@link #flush()}.
+ *
+ * <p>{@link RifLoader} uses this to route records by their beneficiary ID (see {@link
+ * LoadAppOptions#isBeneficiaryAffinityEnabled()}), and then loads each lane's batches one at a
+ * time (see {@link LoadStage#submit(long, int, Runnable)}), so that no two transactions ever
+ * contend for the same beneficiary's rows.
+ *
+ * <p>Instances are not thread-safe, and are intended to be used by a single producer.
+ *
+ * @param <T> the type of element being batched
+ */
+final class LaneBatcher<T> {
+  private final Function<T, Object> keyFunction;
+  private final IntSupplier batchSizes;
+  private final LaneBatchConsumer<T> batchConsumer;
+  private final List<List<T>> laneBatches;
+
+  /**
+   * Constructs a new {@link LaneBatcher}.
+   *
+   * @param lanes the number of lanes to route elements to
+   * @param keyFunction computes each element's key (elements with <code>null</code> keys all share
+   *     a lane)
+   * @param batchSizes supplies the (positive) size of each batch, which is checked again for every
+   *     batch, so that batch sizes can be tuned on the fly
+   * @param batchConsumer the {@link LaneBatchConsumer} to hand each batch off to
+   */
+  LaneBatcher(
+      int lanes,
+      Function<T, Object> keyFunction,
+      IntSupplier batchSizes,
+      LaneBatchConsumer<T> batchConsumer) {
+    if (lanes < 1) throw new IllegalArgumentException();
+
+    this.keyFunction = keyFunction;
+    this.batchSizes = batchSizes;
+    this.batchConsumer = batchConsumer;
+    this.laneBatches = new ArrayList<>(lanes);
+    for (int lane = 0; lane < lanes; lane++) laneBatches.add(new ArrayList<>());
+  }
+
+  /** @return the number of lanes that elements are routed to */
+  int getLanes() {
+    return laneBatches.size();
+  }
+
+  /**
+   * Adds the specified element to its lane's batch, handing that batch off if it's now full.
+   *
+   * @param element the element to add
+   */
+  void add(T element) {
+    int lane = selectLane(keyFunction.apply(element), laneBatches.size());
+    List<T> laneBatch = laneBatches.get(lane);
+    laneBatch.add(element);
+
+    if (laneBatch.size() >= batchSizes.getAsInt()) {
+      laneBatches.set(lane, new ArrayList<>());
+      batchConsumer.accept(lane, laneBatch);
+    }
+  }
+
+  /** Hands off each lane's partial batch, if it has one. */
+  void flush() {
+    for (int lane = 0; lane < laneBatches.size(); lane++) {
+      List<T> laneBatch = laneBatches.get(lane);
+      if (laneBatch.isEmpty()) continue;
+
+      laneBatches.set(lane, new ArrayList<>());
+      batchConsumer.accept(lane, laneBatch);
+    }
+  }
+
+  /**
+   * @param key the key to route, which may be <code>null</code>
+   * @param lanes the number of lanes
+   * @return the lane (from <code>0</code> to <code>lanes - 1</code>) that the specified key belongs
+   *     in
+   */
+  static int selectLane(Object key, int lanes) {
+    // Spread the hash's high bits into its low ones, just as HashMap does.
+    int hash = Objects.hashCode(key);
+    return Math.floorMod(hash ^ (hash >>> 16), lanes);
+  }
+
+  /**
+   * Receives each of a {@link LaneBatcher}'s batches.
+   *
+   * @param <T> the type of element being batched
+   */
+  @FunctionalInterface
+  static interface LaneBatchConsumer<T> {
+    /**
+     * @param lane the lane that the batch is from
+     * @param batch the batch, which will not be modified by the {@link LaneBatcher} afterwards
+     */
+    void accept(int lane, List<T> batch);
+  }
+}
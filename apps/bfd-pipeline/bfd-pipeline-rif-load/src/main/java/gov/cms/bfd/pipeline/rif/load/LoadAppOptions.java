@@ -11,7 +11,7 @@ public final class LoadAppOptions implements Serializable {
    * also Serializable, so we have to store Strings here, instead.
    */
 
-  private static final long serialVersionUID = 2884121140016566847L;
+  private static final long serialVersionUID = -6297351428763096152L;
 
   /**
    * A reasonable (though not terribly performant) suggested default value for {@link
@@ -30,75 +30,83 @@ public final class LoadAppOptions implements Serializable {
   private final boolean idempotencyRequired;
   private final boolean fixupsEnabled;
   private final int fixupThreads;
+  private final boolean binaryCopyEnabled;
+  private final boolean copyTranscodingEnabled;
+  private final InsertStrategy insertStrategy;
+  private final boolean adaptiveTuningEnabled;
+  private final int minLoaderThreads;
+  private final boolean bulkLoadEnabled;
+  private final boolean beneficiaryAffinityEnabled;
 
   /**
-   * Constructs a new {@link LoadAppOptions} instance.
+   * Constructs a new {@link LoadAppOptions} instance. Use {@link #builder()} to create instances.
    *
-   * @param hicnHashIterations the value to use for {@link #getHicnHashIterations()}
-   * @param hicnHashPepper the value to use for {@link #getHicnHashPepper()}
-   * @param databaseUrl the value to use for {@link #getDatabaseUrl()}
-   * @param databaseUsername the value to use for {@link #getDatabaseUsername()}
-   * @param databasePassword the value to use for {@link #getDatabasePassword()}
-   * @param loaderThreads the value to use for {@link #getLoaderThreads()}
-   * @param idempotencyRequired the value to use for {@link #isIdempotencyRequired()}
-   * @param fixupsEnabled the value to use for {@link #isFixupsEnabled()}
-   * @param fixupThreads the value fot use for {@link #getFixupThreads()}
-   */
-  public LoadAppOptions(
-      int hicnHashIterations,
-      byte[] hicnHashPepper,
-      String databaseUrl,
-      String databaseUsername,
-      char[] databasePassword,
-      int loaderThreads,
-      boolean idempotencyRequired,
-      boolean fixupsEnabled,
-      int fixupThreads) {
-    if (loaderThreads < 1) throw new IllegalArgumentException();
-
-    this.hicnHashIterations = hicnHashIterations;
-    this.hicnHashPepper = hicnHashPepper;
-    this.databaseUrl = databaseUrl;
-    this.databaseUsername = databaseUsername;
-    this.databasePassword = databasePassword;
-    this.databaseDataSource = null;
-    this.loaderThreads = loaderThreads;
-    this.idempotencyRequired = idempotencyRequired;
-    this.fixupsEnabled = fixupsEnabled;
-    this.fixupThreads = fixupThreads;
-  }
-
-  /**
-   * Constructs a new {@link LoadAppOptions} instance.
-   *
-   * @param hicnHashIterations the value to use for {@link #getHicnHashIterations()}
-   * @param hicnHashPepper the value to use for {@link #getHicnHashPepper()}
-   * @param databaseDataSource the value to use for {@link #getDatabaseDataSource()}
-   * @param loaderThreads the value to use for {@link #getLoaderThreads()}
-   * @param idempotencyRequired the value to use for {@link #isIdempotencyRequired()}
-   * @param fixupsEnabled the value to use for {@link #isFixupsEnabled()}
-   * @param fixupThreads the value fot use for {@link #getFixupThreads()}
-   */
-  public LoadAppOptions(
-      int hicnHashIterations,
-      byte[] hicnHashPepper,
-      DataSource databaseDataSource,
-      int loaderThreads,
-      boolean idempotencyRequired,
-      boolean fixupsEnabled,
-      int fixupThreads) {
-    if (loaderThreads < 1) throw new IllegalArgumentException();
-
-    this.hicnHashIterations = hicnHashIterations;
-    this.hicnHashPepper = hicnHashPepper;
-    this.databaseUrl = null;
-    this.databaseUsername = null;
-    this.databasePassword = null;
-    this.databaseDataSource = databaseDataSource;
-    this.loaderThreads = loaderThreads;
-    this.idempotencyRequired = idempotencyRequired;
-    this.fixupsEnabled = fixupsEnabled;
-    this.fixupThreads = fixupThreads;
+   * @param builder the {@link Builder} with the settings to use
+   */
+  private LoadAppOptions(Builder builder) {
+    if (builder.hicnHashIterations < 1) throw new IllegalArgumentException();
+    if (builder.hicnHashPepper == null) throw new IllegalArgumentException();
+    if ((builder.databaseUrl == null) == (builder.databaseDataSource == null))
+      throw new IllegalArgumentException();
+    if (builder.loaderThreads < 1) throw new IllegalArgumentException();
+    if (builder.insertStrategy == null) throw new IllegalArgumentException();
+    int minLoaderThreads =
+        builder.minLoaderThreads != null ? builder.minLoaderThreads : builder.loaderThreads;
+    if (minLoaderThreads < 1 || minLoaderThreads > builder.loaderThreads)
+      throw new IllegalArgumentException();
+
+    this.hicnHashIterations = builder.hicnHashIterations;
+    this.hicnHashPepper = builder.hicnHashPepper;
+    this.databaseUrl = builder.databaseUrl;
+    this.databaseUsername = builder.databaseUsername;
+    this.databasePassword = builder.databasePassword;
+    this.databaseDataSource = builder.databaseDataSource;
+    this.loaderThreads = builder.loaderThreads;
+    this.idempotencyRequired = builder.idempotencyRequired;
+    this.fixupsEnabled = builder.fixupsEnabled;
+    this.fixupThreads = builder.fixupThreads;
+    this.binaryCopyEnabled = builder.binaryCopyEnabled;
+    this.copyTranscodingEnabled = builder.copyTranscodingEnabled;
+    this.insertStrategy = builder.insertStrategy;
+    this.adaptiveTuningEnabled = builder.adaptiveTuningEnabled;
+    this.minLoaderThreads = minLoaderThreads;
+    this.bulkLoadEnabled = builder.bulkLoadEnabled;
+    this.beneficiaryAffinityEnabled = builder.beneficiaryAffinityEnabled;
+  }
+
+  /**
+   * @return a new {@link Builder}, which must at least be given the {@link
+   *     Builder#hicnHashIterations(int)}, {@link Builder#hicnHashPepper(byte[])}, and database to
+   *     use, and which has defaults for everything else
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * @return a new {@link Builder} that starts out with all of this {@link LoadAppOptions}'
+   *     settings, for creating a modified copy of it
+   */
+  public Builder toBuilder() {
+    Builder builder = new Builder();
+    builder.hicnHashIterations = hicnHashIterations;
+    builder.hicnHashPepper = hicnHashPepper;
+    builder.databaseUrl = databaseUrl;
+    builder.databaseUsername = databaseUsername;
+    builder.databasePassword = databasePassword;
+    builder.databaseDataSource = databaseDataSource;
+    builder.loaderThreads = loaderThreads;
+    builder.idempotencyRequired = idempotencyRequired;
+    builder.fixupsEnabled = fixupsEnabled;
+    builder.fixupThreads = fixupThreads;
+    builder.binaryCopyEnabled = binaryCopyEnabled;
+    builder.copyTranscodingEnabled = copyTranscodingEnabled;
+    builder.insertStrategy = insertStrategy;
+    builder.adaptiveTuningEnabled = adaptiveTuningEnabled;
+    builder.minLoaderThreads = minLoaderThreads;
+    builder.bulkLoadEnabled = bulkLoadEnabled;
+    builder.beneficiaryAffinityEnabled = beneficiaryAffinityEnabled;
+    return builder;
   }
 
   /**
@@ -151,7 +159,7 @@ public final class LoadAppOptions implements Serializable {
 
   /**
    * @return the number of threads that will be used to simultaneously process {@link RifLoader}
-   *     operations
+   *     operations, or the most that will be used, if {@link #isAdaptiveTuningEnabled()}
    */
   public int getLoaderThreads() {
     return loaderThreads;
@@ -187,6 +195,82 @@ public final class LoadAppOptions implements Serializable {
     return fixupThreads;
   }
 
+  /**
+   * @return <code>true</code> if {@link RifLoader} should send its PostgreSQL <code>COPY</code>s in
+   *     the binary format (as encoded by the generated <code>*BinaryCopyWriter</code>s), which is
+   *     cheaper for both the loader and the database to process, <code>false</code> if it should
+   *     send them as CSV
+   */
+  public boolean isBinaryCopyEnabled() {
+    return binaryCopyEnabled;
+  }
+
+  /**
+   * @return <code>true</code> if {@link RifLoader} should transcode the RIF records of files that
+   *     support it straight into binary PostgreSQL <code>COPY</code>s (via the generated <code>
+   *     *CopyTranscoder</code>s), without building JPA entities for them, <code>false</code> if it
+   *     should always build JPA entities. Only has an effect if {@link #isBinaryCopyEnabled()} is
+   *     <code>true</code>, {@link #isIdempotencyRequired()} is <code>false</code>, and {@link
+   *     #getInsertStrategy()} is {@link InsertStrategy#COPY}.
+   */
+  public boolean isCopyTranscodingEnabled() {
+    return copyTranscodingEnabled;
+  }
+
+  /**
+   * @return the {@link InsertStrategy} that {@link RifLoader} should use for non-idempotent {@link
+   *     gov.cms.bfd.model.rif.RecordAction#INSERT}s (or for all of them, in the case of {@link
+   *     InsertStrategy#STAGED_MERGE})
+   */
+  public InsertStrategy getInsertStrategy() {
+    return insertStrategy;
+  }
+
+  /**
+   * @return <code>true</code> if {@link RifLoader} should continually tune its batch sizes (for
+   *     each RIF file type) and its number of active loader threads (between {@link
+   *     #getMinLoaderThreads()} and {@link #getLoaderThreads()}), based on the database's observed
+   *     commit latency, throughput, and errors, <code>false</code> if it should stick with its
+   *     default batch size and {@link #getLoaderThreads()} threads
+   */
+  public boolean isAdaptiveTuningEnabled() {
+    return adaptiveTuningEnabled;
+  }
+
+  /**
+   * @return the fewest loader threads that {@link RifLoader} will tune itself down to, if {@link
+   *     #isAdaptiveTuningEnabled()}
+   */
+  public int getMinLoaderThreads() {
+    return minLoaderThreads;
+  }
+
+  /**
+   * @return <code>true</code> if {@link RifLoader} should drop the database's secondary indexes and
+   *     foreign keys before loading each data set, and rebuild them afterwards (see {@link
+   *     BulkLoadSchemaManager}), <code>false</code> if it should maintain them as it loads
+   *     <p>This is much faster for initial or very large loads, but leaves the database all but
+   *     unqueryable until the load completes, so should never be enabled for a database that is
+   *     in service.
+   */
+  public boolean isBulkLoadEnabled() {
+    return bulkLoadEnabled;
+  }
+
+  /**
+   * @return <code>true</code> if {@link RifLoader} should route each record to one of a fixed set
+   *     of "lanes", by its beneficiary ID, so that all of a beneficiary's records are loaded in
+   *     order, one batch at a time, while the lanes themselves are loaded in parallel, <code>false
+   *     </code> if it should batch up records in the order they arrive, and load those batches on
+   *     whichever thread is free
+   *     <p>This keeps concurrent transactions from contending for the same beneficiaries' rows
+   *     (e.g. in <code>Beneficiaries</code> and <code>BeneficiariesHistory</code>), at the cost of
+   *     smaller batches when a file's records are spread across many lanes.
+   */
+  public boolean isBeneficiaryAffinityEnabled() {
+    return beneficiaryAffinityEnabled;
+  }
+
   /** @see java.lang.Object#toString() */
   @Override
   public String toString() {
@@ -211,7 +295,250 @@ public final class LoadAppOptions implements Serializable {
     builder.append(fixupsEnabled);
     builder.append(", fixupThreads=");
     builder.append(fixupThreads);
+    builder.append(", binaryCopyEnabled=");
+    builder.append(binaryCopyEnabled);
+    builder.append(", copyTranscodingEnabled=");
+    builder.append(copyTranscodingEnabled);
+    builder.append(", insertStrategy=");
+    builder.append(insertStrategy);
+    builder.append(", adaptiveTuningEnabled=");
+    builder.append(adaptiveTuningEnabled);
+    builder.append(", minLoaderThreads=");
+    builder.append(minLoaderThreads);
+    builder.append(", bulkLoadEnabled=");
+    builder.append(bulkLoadEnabled);
+    builder.append(", beneficiaryAffinityEnabled=");
+    builder.append(beneficiaryAffinityEnabled);
     builder.append("]");
     return builder.toString();
   }
+
+  /**
+   * Builds {@link LoadAppOptions} instances, one named setting at a time. Settings that aren't
+   * specified keep the defaults documented on each of the setters.
+   */
+  public static final class Builder {
+    private int hicnHashIterations;
+    private byte[] hicnHashPepper;
+    private String databaseUrl;
+    private String databaseUsername;
+    private char[] databasePassword;
+    private DataSource databaseDataSource;
+    private int loaderThreads = DEFAULT_LOADER_THREADS;
+    private boolean idempotencyRequired = true;
+    private boolean fixupsEnabled = false;
+    private int fixupThreads = RifLoaderIdleTasks.DEFAULT_PARTITION_COUNT;
+    private boolean binaryCopyEnabled = false;
+    private boolean copyTranscodingEnabled = false;
+    private InsertStrategy insertStrategy = InsertStrategy.COPY;
+    private boolean adaptiveTuningEnabled = false;
+    private Integer minLoaderThreads = null;
+    private boolean bulkLoadEnabled = false;
+    private boolean beneficiaryAffinityEnabled = false;
+
+    /** Constructs a new {@link Builder}. Use {@link LoadAppOptions#builder()} to create one. */
+    private Builder() {}
+
+    /**
+     * @param hicnHashIterations the value to use for {@link LoadAppOptions#getHicnHashIterations()}
+     *     (required)
+     * @return this {@link Builder}
+     */
+    public Builder hicnHashIterations(int hicnHashIterations) {
+      this.hicnHashIterations = hicnHashIterations;
+      return this;
+    }
+
+    /**
+     * @param hicnHashPepper the value to use for {@link LoadAppOptions#getHicnHashPepper()}
+     *     (required)
+     * @return this {@link Builder}
+     */
+    public Builder hicnHashPepper(byte[] hicnHashPepper) {
+      this.hicnHashPepper = hicnHashPepper;
+      return this;
+    }
+
+    /**
+     * Specifies the database to load into by its JDBC URL. Either this or {@link
+     * #databaseDataSource(DataSource)} is required, but not both.
+     *
+     * @param databaseUrl the value to use for {@link LoadAppOptions#getDatabaseUrl()}
+     * @param databaseUsername the value to use for {@link LoadAppOptions#getDatabaseUsername()}
+     * @param databasePassword the value to use for {@link LoadAppOptions#getDatabasePassword()}
+     * @return this {@link Builder}
+     */
+    public Builder database(String databaseUrl, String databaseUsername, char[] databasePassword) {
+      this.databaseUrl = databaseUrl;
+      this.databaseUsername = databaseUsername;
+      this.databasePassword = databasePassword;
+      this.databaseDataSource = null;
+      return this;
+    }
+
+    /**
+     * Specifies the database to load into by its {@link DataSource}. Either this or {@link
+     * #database(String, String, char[])} is required, but not both.
+     *
+     * @param databaseDataSource the value to use for {@link LoadAppOptions#getDatabaseDataSource()}
+     * @return this {@link Builder}
+     */
+    public Builder databaseDataSource(DataSource databaseDataSource) {
+      this.databaseUrl = null;
+      this.databaseUsername = null;
+      this.databasePassword = null;
+      this.databaseDataSource = databaseDataSource;
+      return this;
+    }
+
+    /**
+     * @param loaderThreads the value to use for {@link LoadAppOptions#getLoaderThreads()} (defaults
+     *     to {@link LoadAppOptions#DEFAULT_LOADER_THREADS})
+     * @return this {@link Builder}
+     */
+    public Builder loaderThreads(int loaderThreads) {
+      this.loaderThreads = loaderThreads;
+      return this;
+    }
+
+    /**
+     * @param idempotencyRequired the value to use for {@link
+     *     LoadAppOptions#isIdempotencyRequired()} (defaults to <code>true</code>)
+     * @return this {@link Builder}
+     */
+    public Builder idempotencyRequired(boolean idempotencyRequired) {
+      this.idempotencyRequired = idempotencyRequired;
+      return this;
+    }
+
+    /**
+     * @param fixupsEnabled the value to use for {@link LoadAppOptions#isFixupsEnabled()} (defaults
+     *     to <code>false</code>)
+     * @return this {@link Builder}
+     */
+    public Builder fixupsEnabled(boolean fixupsEnabled) {
+      this.fixupsEnabled = fixupsEnabled;
+      return this;
+    }
+
+    /**
+     * @param fixupThreads the value to use for {@link LoadAppOptions#getFixupThreads()} (defaults
+     *     to {@link RifLoaderIdleTasks#DEFAULT_PARTITION_COUNT})
+     * @return this {@link Builder}
+     */
+    public Builder fixupThreads(int fixupThreads) {
+      this.fixupThreads = fixupThreads;
+      return this;
+    }
+
+    /**
+     * @param binaryCopyEnabled the value to use for {@link LoadAppOptions#isBinaryCopyEnabled()}
+     *     (defaults to <code>false</code>)
+     * @return this {@link Builder}
+     */
+    public Builder binaryCopyEnabled(boolean binaryCopyEnabled) {
+      this.binaryCopyEnabled = binaryCopyEnabled;
+      return this;
+    }
+
+    /**
+     * @param copyTranscodingEnabled the value to use for {@link
+     *     LoadAppOptions#isCopyTranscodingEnabled()} (defaults to <code>false</code>)
+     * @return this {@link Builder}
+     */
+    public Builder copyTranscodingEnabled(boolean copyTranscodingEnabled) {
+      this.copyTranscodingEnabled = copyTranscodingEnabled;
+      return this;
+    }
+
+    /**
+     * @param insertStrategy the value to use for {@link LoadAppOptions#getInsertStrategy()}
+     *     (defaults to {@link InsertStrategy#COPY})
+     * @return this {@link Builder}
+     */
+    public Builder insertStrategy(InsertStrategy insertStrategy) {
+      this.insertStrategy = insertStrategy;
+      return this;
+    }
+
+    /**
+     * @param adaptiveTuningEnabled the value to use for {@link
+     *     LoadAppOptions#isAdaptiveTuningEnabled()} (defaults to <code>false</code>)
+     * @return this {@link Builder}
+     */
+    public Builder adaptiveTuningEnabled(boolean adaptiveTuningEnabled) {
+      this.adaptiveTuningEnabled = adaptiveTuningEnabled;
+      return this;
+    }
+
+    /**
+     * @param minLoaderThreads the value to use for {@link LoadAppOptions#getMinLoaderThreads()}
+     *     (defaults to the {@link #loaderThreads(int)} value)
+     * @return this {@link Builder}
+     */
+    public Builder minLoaderThreads(int minLoaderThreads) {
+      this.minLoaderThreads = minLoaderThreads;
+      return this;
+    }
+
+    /**
+     * @param bulkLoadEnabled the value to use for {@link LoadAppOptions#isBulkLoadEnabled()}
+     *     (defaults to <code>false</code>)
+     * @return this {@link Builder}
+     */
+    public Builder bulkLoadEnabled(boolean bulkLoadEnabled) {
+      this.bulkLoadEnabled = bulkLoadEnabled;
+      return this;
+    }
+
+    /**
+     * @param beneficiaryAffinityEnabled the value to use for {@link
+     *     LoadAppOptions#isBeneficiaryAffinityEnabled()} (defaults to <code>false</code>)
+     * @return this {@link Builder}
+     */
+    public Builder beneficiaryAffinityEnabled(boolean beneficiaryAffinityEnabled) {
+      this.beneficiaryAffinityEnabled = beneficiaryAffinityEnabled;
+      return this;
+    }
+
+    /**
+     * @return a new {@link LoadAppOptions} with this {@link Builder}'s settings
+     * @throws IllegalArgumentException if any of the settings are missing or invalid
+     */
+    public LoadAppOptions build() {
+      return new LoadAppOptions(this);
+    }
+  }
+
+  /**
+   * Enumerates the ways that {@link RifLoader} can insert records, when {@link
+   * #isIdempotencyRequired()} is <code>false</code>. (Idempotent inserts and updates always go
+   * through JPA, except as noted for {@link #STAGED_MERGE}.)
+   */
+  public static enum InsertStrategy {
+    /**
+     * Inserts records via PostgreSQL's <code>COPY</code> APIs, when the database is PostgreSQL, and
+     * via JPA, otherwise. This is the default.
+     */
+    COPY,
+
+    /** Inserts records via {@link javax.persistence.EntityManager#persist(Object)}. */
+    JPA,
+
+    /**
+     * Inserts records via batched JDBC <code>INSERT</code>s, bound by the generated <code>
+     * *JdbcBinder</code>s, bypassing Hibernate.
+     */
+    JDBC_BATCH,
+
+    /**
+     * Inserts each batch of records by <code>COPY</code>ing them into <code>UNLOGGED</code> staging
+     * tables and then merging them into the real tables with one set-based <code>INSERT ...
+     * SELECT ... ON CONFLICT DO NOTHING</code> per table, when the database is PostgreSQL, and via
+     * JPA, otherwise. As the merge skips any records that have already been loaded, this strategy
+     * is also used when {@link LoadAppOptions#isIdempotencyRequired()} is <code>true</code>.
+     * Otherwise (e.g. for updates), behaves as {@link #COPY}.
+     */
+    STAGED_MERGE;
+  }
 }
@@ -0,0 +1,303 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * One stage of {@link RifLoader}'s load pipeline (e.g. hashing, encoding, or writing to the
+ * database), which runs its tasks on its own pool of threads, so that CPU-bound and IO-bound work
+ * don't compete for the same threads.
+ *
+ * <p>Rather than limiting the number of tasks that can be waiting, each stage limits the
+ * approximate number of bytes (of records) that can be in it at once, whether they're waiting or
+ * running. Once that budget is used up, {@link #submit(long, Runnable)} blocks until enough of the
+ * stage's tasks have completed, which pushes the backpressure upstream to whichever stage (or
+ * producer) is submitting to it. This keeps memory use proportional to the size of the data, rather
+ * than to the batch count, which varies wildly in bytes between (for example) PDE events and
+ * inpatient claims.
+ *
+ * <p>Tasks may also be submitted to a numbered "lane" (see {@link #submit(long, int, Runnable)}):
+ * each lane's tasks run one at a time, in the order they were submitted, on whichever of the
+ * stage's threads is free, while different lanes' tasks run in parallel. A lane's waiting tasks
+ * don't occupy any threads, and still count against the byte budget.
+ *
+ * <p>Each stage reports the following metrics, all named <code>LoadStage.&lt;stage&gt;.*</code>:
+ *
+ * <ul>
+ *   <li><code>admissionWaits</code>: how long submitters were blocked waiting for byte budget, which
+ *       is non-zero when this stage is the bottleneck
+ *   <li><code>queueWaits</code>: how long tasks waited in the queue before a thread picked them up
+ *   <li><code>tasks</code>: how long tasks took to run
+ *   <li><code>utilization</code>: the fraction of the stage's threads that are busy
+ *   <li><code>queuedTasks</code> and <code>bytesInStage</code>: how much work is waiting or running
+ *       (including tasks waiting behind others in their lane)
+ * </ul>
+ *
+ * <p>Instances are thread-safe.
+ */
+final class LoadStage implements AutoCloseable {
+  /** Byte budgets are tracked in KiB, so that they can be very large and still fit in an int. */
+  private static final int BYTES_PER_PERMIT = 1024;
+
+  private final String name;
+  private volatile int threads;
+  private final int budgetPermits;
+  private final ThreadPoolExecutor executor;
+  private final Semaphore budget;
+  private final AtomicLong bytesInStage;
+  private final ConcurrentMap<Integer, Lane> lanes;
+  private final Timer admissionWaits;
+  private final Timer queueWaits;
+  private final Timer tasks;
+
+  /**
+   * Constructs a new {@link LoadStage}.
+   *
+   * @param name the name of the stage, used for its threads and metrics
+   * @param threads the number of threads to run the stage's tasks on
+   * @param byteBudget the approximate maximum number of bytes that may be waiting in or running on
+   *     this stage at once
+   * @param metrics the {@link MetricRegistry} to record the stage's metrics in
+   */
+  LoadStage(String name, int threads, long byteBudget, MetricRegistry metrics) {
+    if (threads < 1) throw new IllegalArgumentException();
+    if (byteBudget < BYTES_PER_PERMIT) throw new IllegalArgumentException();
+
+    this.name = name;
+    this.threads = threads;
+    this.budgetPermits = (int) Math.min(Integer.MAX_VALUE, byteBudget / BYTES_PER_PERMIT);
+    this.executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            60,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            createThreadFactory(name));
+    this.executor.allowCoreThreadTimeOut(true);
+    this.budget = new Semaphore(budgetPermits);
+    this.bytesInStage = new AtomicLong();
+    this.lanes = new ConcurrentHashMap<>();
+
+    String metricsPrefix = MetricRegistry.name(getClass().getSimpleName(), name);
+    this.admissionWaits = metrics.timer(MetricRegistry.name(metricsPrefix, "admissionWaits"));
+    this.queueWaits = metrics.timer(MetricRegistry.name(metricsPrefix, "queueWaits"));
+    this.tasks = metrics.timer(MetricRegistry.name(metricsPrefix, "tasks"));
+
+    // Stages are created for each data set, so replace the previous data set's gauges.
+    MetricsUtils.registerGauge(
+        metrics,
+        MetricRegistry.name(metricsPrefix, "utilization"),
+        () -> (double) executor.getActiveCount() / this.threads);
+    MetricsUtils.registerGauge(
+        metrics, MetricRegistry.name(metricsPrefix, "queuedTasks"), this::getQueuedCount);
+    MetricsUtils.registerGauge(
+        metrics, MetricRegistry.name(metricsPrefix, "bytesInStage"), bytesInStage::get);
+  }
+
+  /** @return the number of threads that this stage runs its tasks on */
+  int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Changes the number of threads that this stage runs its tasks on. Any tasks that are already
+   * running will be allowed to complete, even if that leaves more threads busy than requested, for
+   * a while.
+   *
+   * @param newThreads the new number of threads to run the stage's tasks on
+   */
+  synchronized void setThreads(int newThreads) {
+    if (newThreads < 1) throw new IllegalArgumentException();
+
+    // The core size may never exceed the maximum size, so the order of these matters.
+    if (newThreads > executor.getMaximumPoolSize()) {
+      executor.setMaximumPoolSize(newThreads);
+      executor.setCorePoolSize(newThreads);
+    } else {
+      executor.setCorePoolSize(newThreads);
+      executor.setMaximumPoolSize(newThreads);
+    }
+    this.threads = newThreads;
+  }
+
+  /** @return the number of tasks that are currently running on this stage */
+  int getActiveCount() {
+    return executor.getActiveCount();
+  }
+
+  /** @return the number of tasks that are currently waiting to run on this stage */
+  int getQueuedCount() {
+    return executor.getQueue().size() + lanes.values().stream().mapToInt(Lane::size).sum();
+  }
+
+  /**
+   * Queues the specified task to be run on this stage, blocking first if the stage's byte budget is
+   * used up, until enough of its other tasks have completed. Tasks larger than the entire budget are
+   * allowed, but only once the stage is otherwise empty.
+   *
+   * @param estimatedBytes the approximate size of the data that the task will process
+   * @param task the task to run, which should handle its own errors
+   */
+  void submit(long estimatedBytes, Runnable task) {
+    submit(estimatedBytes, task, executor::execute);
+  }
+
+  /**
+   * Queues the specified task to be run on this stage, just as {@link #submit(long, Runnable)}
+   * does, except that it won't be started until all of the tasks submitted to the same lane before
+   * it have completed.
+   *
+   * @param estimatedBytes the approximate size of the data that the task will process
+   * @param lane the (non-negative) number of the lane to run the task in
+   * @param task the task to run, which should handle its own errors
+   */
+  void submit(long estimatedBytes, int lane, Runnable task) {
+    if (lane < 0) throw new IllegalArgumentException();
+
+    Lane taskLane = lanes.computeIfAbsent(lane, l -> new Lane());
+    submit(estimatedBytes, task, taskLane::enqueue);
+  }
+
+  /**
+   * Admits the specified task to this stage, blocking if its byte budget is used up, and then hands
+   * it off to be run.
+   *
+   * @param estimatedBytes the approximate size of the data that the task will process
+   * @param task the task to run, which should handle its own errors
+   * @param dispatcher runs the (wrapped) task, either right away on {@link #executor} or once its
+   *     lane is free
+   */
+  private void submit(long estimatedBytes, Runnable task, Consumer<Runnable> dispatcher) {
+    int permits =
+        (int) Math.max(1, Math.min(budgetPermits, estimatedBytes / BYTES_PER_PERMIT));
+
+    Timer.Context timerAdmissionWait = admissionWaits.time();
+    budget.acquireUninterruptibly(permits);
+    timerAdmissionWait.stop();
+
+    bytesInStage.addAndGet(estimatedBytes);
+    Timer.Context timerQueueWait = queueWaits.time();
+    try {
+      dispatcher.accept(
+          () -> {
+            timerQueueWait.stop();
+            Timer.Context timerTask = tasks.time();
+            try {
+              task.run();
+            } finally {
+              timerTask.stop();
+              bytesInStage.addAndGet(-estimatedBytes);
+              budget.release(permits);
+            }
+          });
+    } catch (RuntimeException e) {
+      bytesInStage.addAndGet(-estimatedBytes);
+      budget.release(permits);
+      throw e;
+    }
+  }
+
+  /**
+   * Stops this stage's threads, abandoning any tasks that are still waiting.
+   *
+   * @see java.lang.AutoCloseable#close()
+   */
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  /** @see java.lang.Object#toString() */
+  @Override
+  public String toString() {
+    return String.format(
+        "%s [name=%s, threads=%d, byteBudget=%d]",
+        getClass().getSimpleName(), name, threads, (long) budgetPermits * BYTES_PER_PERMIT);
+  }
+
+  /**
+   * A queue of tasks that must be run one at a time, in order. At most one of a lane's tasks is
+   * ever on {@link #executor} at once: each one queues up the next when it completes.
+   */
+  private final class Lane {
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private boolean running = false;
+
+    /** @return the number of this lane's tasks that are waiting to be run */
+    synchronized int size() {
+      return tasks.size();
+    }
+
+    /**
+     * Adds the specified task to this lane, and starts it right away if the lane is idle.
+     *
+     * @param task the task to run
+     */
+    synchronized void enqueue(Runnable task) {
+      if (running) {
+        tasks.add(task);
+        return;
+      }
+
+      // Only marked as running if the executor accepts it (i.e. the stage isn't closed).
+      executor.execute(() -> runThenNext(task));
+      running = true;
+    }
+
+    /**
+     * Runs the specified task, and then queues up this lane's next task, if any.
+     *
+     * @param task the task to run
+     */
+    private void runThenNext(Runnable task) {
+      try {
+        task.run();
+      } finally {
+        synchronized (this) {
+          Runnable nextTask = tasks.poll();
+          if (nextTask == null) {
+            running = false;
+          } else {
+            try {
+              executor.execute(() -> runThenNext(nextTask));
+            } catch (RejectedExecutionException e) {
+              // The stage has been closed, which abandons any waiting tasks.
+              tasks.clear();
+              running = false;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * @param name the name of the stage
+   * @return a {@link ThreadFactory} that names each thread after the stage, so that they're easy to
+   *     pick out in thread dumps
+   */
+  private static ThreadFactory createThreadFactory(String name) {
+    AtomicInteger threadCount = new AtomicInteger();
+    ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+    return runnable -> {
+      Thread thread = defaultFactory.newThread(runnable);
+      thread.setName(String.format("load-%s-%d", name, threadCount.incrementAndGet()));
+      return thread;
+    };
+  }
+}
@@ -0,0 +1,360 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import gov.cms.bfd.model.rif.RifFileType;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A feedback controller for {@link RifLoader}, which tunes its batch sizes and the number of its
+ * active write threads, based on how its database is coping (see {@link
+ * LoadAppOptions#isAdaptiveTuningEnabled()}).
+ *
+ * <p>Batch sizes are tuned separately for each {@link RifFileType}, as their records vary wildly in
+ * size: a PDE event is a single RIF line, while an inpatient claim can be dozens of them. Every
+ * {@link #ADJUSTMENT_INTERVAL_BATCHES} batches of a type, the type's batch size is grown if its
+ * (smoothed) commit latency is below {@link #TARGET_LATENCY_MIN_MILLIS}, shrunk towards the target
+ * if its latency is above {@link #TARGET_LATENCY_MAX_MILLIS}, and halved if any of those batches
+ * failed.
+ *
+ * <p>The number of write threads is tuned by hill climbing on the overall throughput (in records
+ * per second), once per {@link #TUNING_WINDOW_NANOS}: a step that improved throughput is repeated,
+ * a step that hurt it is reversed, and a step that made no difference is followed by a step down,
+ * as threads that don't help only add load to the database. Any failures or lock waits in a window
+ * cut the thread count by a quarter, right away. Thread counts always stay within {@link
+ * LoadAppOptions#getMinLoaderThreads()} and {@link LoadAppOptions#getLoaderThreads()}.
+ *
+ * <p>Every decision is logged and recorded in the following metrics, all named <code>
+ * LoadTuner.*</code>:
+ *
+ * <ul>
+ *   <li><code>batchSize.&lt;RifFileType&gt;</code>: the current batch size for each type
+ *   <li><code>loaderThreads</code>: the current number of write threads
+ *   <li><code>throughput</code>: the records per second in the last complete tuning window
+ *   <li><code>decisions.&lt;decision&gt;</code>: how many times each kind of decision was made
+ *   <li><code>failures</code> and <code>lockWaits</code>: the failed batches it has seen, and how
+ *       many of those were due to lock contention
+ * </ul>
+ *
+ * <p>Instances are thread-safe.
+ */
+final class LoadTuner {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LoadTuner.class);
+
+  /** The batch size that each {@link RifFileType} starts out with. */
+  static final int DEFAULT_BATCH_SIZE = 100;
+
+  /** The smallest batch size that any {@link RifFileType} will be tuned down to. */
+  static final int MIN_BATCH_SIZE = 10;
+
+  /** The largest batch size that any {@link RifFileType} will be tuned up to. */
+  static final int MAX_BATCH_SIZE = 1000;
+
+  /**
+   * Batches that commit faster than this are too small to make the most of each transaction's
+   * overhead, so the batch size will be grown.
+   */
+  static final long TARGET_LATENCY_MIN_MILLIS = 250;
+
+  /**
+   * Batches that take longer than this to commit hold their locks (and memory) for too long, and
+   * cost a lot to retry, so the batch size will be shrunk.
+   */
+  static final long TARGET_LATENCY_MAX_MILLIS = 1000;
+
+  /** The number of batches of each {@link RifFileType} between batch size adjustments. */
+  static final int ADJUSTMENT_INTERVAL_BATCHES = 10;
+
+  /** The length of each window that throughput is measured over, between thread adjustments. */
+  static final long TUNING_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+  /**
+   * The relative change in throughput between windows that is treated as a real change, rather than
+   * just noise.
+   */
+  private static final double THROUGHPUT_CHANGE_THRESHOLD = 0.05;
+
+  /** The weight given to each new latency sample in each {@link RifFileType}'s moving average. */
+  private static final double LATENCY_SMOOTHING = 0.3;
+
+  /**
+   * The PostgreSQL <code>SQLSTATE</code>s that indicate lock contention: <code>deadlock_detected
+   * </code>, <code>lock_not_available</code>, <code>serialization_failure</code>, and <code>
+   * query_canceled</code> (which is what a <code>lock_timeout</code> or <code>statement_timeout
+   * </code> produces).
+   */
+  private static final Set<String> LOCK_CONTENTION_SQL_STATES =
+      Collections.unmodifiableSet(new HashSet<>(Arrays.asList("40P01", "55P03", "40001", "57014")));
+
+  private final int minLoaderThreads;
+  private final int maxLoaderThreads;
+  private final LongSupplier nanoClock;
+  private final IntConsumer loaderThreadsListener;
+  private final MetricRegistry metrics;
+  private final Map<RifFileType, BatchSizeState> batchSizes;
+  private final Meter failures;
+  private final Meter lockWaits;
+
+  private volatile int loaderThreads;
+  private volatile double lastThroughput;
+  private int direction;
+  private long windowStartNanos;
+  private long windowRecords;
+  private long windowFailures;
+  private double previousWindowThroughput;
+
+  /**
+   * Constructs a new {@link LoadTuner}.
+   *
+   * @param minLoaderThreads the fewest write threads to tune down to
+   * @param maxLoaderThreads the most write threads to tune up to
+   * @param nanoClock supplies the current time, as per {@link System#nanoTime()}
+   * @param loaderThreadsListener will be passed the new thread count whenever it's changed, on the
+   *     thread that caused the change
+   * @param metrics the {@link MetricRegistry} to record the tuning decisions in
+   */
+  LoadTuner(
+      int minLoaderThreads,
+      int maxLoaderThreads,
+      LongSupplier nanoClock,
+      IntConsumer loaderThreadsListener,
+      MetricRegistry metrics) {
+    if (minLoaderThreads < 1) throw new IllegalArgumentException();
+    if (maxLoaderThreads < minLoaderThreads) throw new IllegalArgumentException();
+
+    this.minLoaderThreads = minLoaderThreads;
+    this.maxLoaderThreads = maxLoaderThreads;
+    this.nanoClock = nanoClock;
+    this.loaderThreadsListener = loaderThreadsListener;
+    this.metrics = metrics;
+    this.batchSizes = new EnumMap<>(RifFileType.class);
+    this.failures = metrics.meter(MetricRegistry.name(getClass().getSimpleName(), "failures"));
+    this.lockWaits = metrics.meter(MetricRegistry.name(getClass().getSimpleName(), "lockWaits"));
+
+    // Start in the middle of the range, so that there's room to move either way.
+    this.loaderThreads = (minLoaderThreads + maxLoaderThreads) / 2;
+    this.lastThroughput = 0.0;
+    this.direction = 1;
+    this.windowStartNanos = nanoClock.getAsLong();
+    this.windowRecords = 0;
+    this.windowFailures = 0;
+    this.previousWindowThroughput = -1.0;
+
+    for (RifFileType rifFileType : RifFileType.values()) {
+      BatchSizeState batchSize = new BatchSizeState();
+      batchSizes.put(rifFileType, batchSize);
+      MetricsUtils.registerGauge(
+          metrics,
+          MetricRegistry.name(getClass().getSimpleName(), "batchSize", rifFileType.name()),
+          () -> batchSize.size);
+    }
+    MetricsUtils.registerGauge(
+        metrics,
+        MetricRegistry.name(getClass().getSimpleName(), "loaderThreads"),
+        () -> loaderThreads);
+    MetricsUtils.registerGauge(
+        metrics,
+        MetricRegistry.name(getClass().getSimpleName(), "throughput"),
+        () -> lastThroughput);
+  }
+
+  /**
+   * @param rifFileType the {@link RifFileType} of the batch to be built
+   * @return the number of records to put in the next batch of the specified {@link RifFileType}
+   */
+  int getBatchSize(RifFileType rifFileType) {
+    return batchSizes.get(rifFileType).size;
+  }
+
+  /** @return the number of write threads that should currently be active */
+  int getLoaderThreads() {
+    return loaderThreads;
+  }
+
+  /**
+   * Feeds the result of a single batch into the controller, which may then adjust the batch size
+   * for the batch's {@link RifFileType}, and/or the number of write threads.
+   *
+   * @param rifFileType the {@link RifFileType} of the batch
+   * @param recordCount the number of records in the batch
+   * @param latencyNanos how long the batch took to commit (or fail)
+   * @param failure the error that the batch failed with, or <code>null</code> if it succeeded
+   */
+  void recordBatch(RifFileType rifFileType, int recordCount, long latencyNanos, Throwable failure) {
+    boolean lockContention = failure != null && isLockContention(failure);
+    if (failure != null) failures.mark();
+    if (lockContention) lockWaits.mark();
+
+    int newLoaderThreads;
+    synchronized (this) {
+      adjustBatchSize(rifFileType, latencyNanos, failure != null);
+
+      if (failure == null) windowRecords += recordCount;
+      else windowFailures++;
+      newLoaderThreads = adjustLoaderThreads();
+    }
+
+    if (newLoaderThreads > 0) loaderThreadsListener.accept(newLoaderThreads);
+  }
+
+  /**
+   * Adds a latency sample to the specified {@link RifFileType}'s moving average, and adjusts its
+   * batch size, if it's time to.
+   *
+   * @param rifFileType the {@link RifFileType} of the batch
+   * @param latencyNanos how long the batch took to commit (or fail)
+   * @param failed <code>true</code> if the batch failed, <code>false</code> if it succeeded
+   */
+  private void adjustBatchSize(RifFileType rifFileType, long latencyNanos, boolean failed) {
+    BatchSizeState batchSize = batchSizes.get(rifFileType);
+    double latencyMillis = latencyNanos / 1_000_000.0;
+    batchSize.latencyMillis =
+        batchSize.samples == 0
+            ? latencyMillis
+            : (LATENCY_SMOOTHING * latencyMillis)
+                + ((1.0 - LATENCY_SMOOTHING) * batchSize.latencyMillis);
+    batchSize.samples++;
+    if (failed) batchSize.failures++;
+    if (batchSize.samples < ADJUSTMENT_INTERVAL_BATCHES) return;
+
+    int oldSize = batchSize.size;
+    int newSize;
+    String decision;
+    if (batchSize.failures > 0) {
+      newSize = oldSize / 2;
+      decision = "batchSizeHalved";
+    } else if (batchSize.latencyMillis > TARGET_LATENCY_MAX_MILLIS) {
+      // Aim for the middle of the target range, but never more than halve it at once.
+      double targetMillis = (TARGET_LATENCY_MIN_MILLIS + TARGET_LATENCY_MAX_MILLIS) / 2.0;
+      newSize = (int) Math.max(oldSize / 2, oldSize * (targetMillis / batchSize.latencyMillis));
+      decision = "batchSizeDecreased";
+    } else if (batchSize.latencyMillis < TARGET_LATENCY_MIN_MILLIS) {
+      newSize = Math.max(oldSize + 1, (oldSize * 5) / 4);
+      decision = "batchSizeIncreased";
+    } else {
+      newSize = oldSize;
+      decision = "batchSizeHeld";
+    }
+    newSize = Math.max(MIN_BATCH_SIZE, Math.min(MAX_BATCH_SIZE, newSize));
+
+    metrics.meter(MetricRegistry.name(getClass().getSimpleName(), "decisions", decision)).mark();
+    if (newSize != oldSize)
+      LOGGER.info(
+          "Tuned '{}' batch size from '{}' to '{}' (latency: '{}' ms, failures: '{}').",
+          rifFileType,
+          oldSize,
+          newSize,
+          Math.round(batchSize.latencyMillis),
+          batchSize.failures);
+
+    // Start over, so the next decision is based only on batches of the new size.
+    batchSize.size = newSize;
+    batchSize.samples = 0;
+    batchSize.failures = 0;
+  }
+
+  /**
+   * Adjusts the number of write threads, if the current tuning window is over.
+   *
+   * @return the new number of write threads, or <code>0</code> if it's unchanged
+   */
+  private int adjustLoaderThreads() {
+    long nowNanos = nanoClock.getAsLong();
+    long elapsedNanos = nowNanos - windowStartNanos;
+    if (elapsedNanos < TUNING_WINDOW_NANOS) return 0;
+
+    double throughput = windowRecords / (elapsedNanos / 1_000_000_000.0);
+    int oldThreads = loaderThreads;
+    int step = Math.max(1, oldThreads / 8);
+    String decision;
+    if (windowFailures > 0) {
+      // Errors and lock waits mean the database is overloaded: back off hard.
+      direction = -1;
+      step = Math.max(1, oldThreads / 4);
+      decision = "threadsBackedOff";
+    } else if (previousWindowThroughput < 0) {
+      decision = "threadsProbed";
+    } else if (throughput > previousWindowThroughput * (1.0 + THROUGHPUT_CHANGE_THRESHOLD)) {
+      decision = "threadsContinued";
+    } else if (throughput < previousWindowThroughput * (1.0 - THROUGHPUT_CHANGE_THRESHOLD)) {
+      direction = -direction;
+      decision = "threadsReversed";
+    } else {
+      direction = -1;
+      decision = "threadsTrimmed";
+    }
+
+    int newThreads =
+        Math.max(minLoaderThreads, Math.min(maxLoaderThreads, oldThreads + (direction * step)));
+    if (newThreads == oldThreads) {
+      // Pinned against a bound, so turn around for next time.
+      direction = -direction;
+    }
+
+    metrics.meter(MetricRegistry.name(getClass().getSimpleName(), "decisions", decision)).mark();
+    LOGGER.info(
+        "Tuning window complete: '{}' records/s with '{}' threads and '{}' failures, so '{}' to"
+            + " '{}' threads.",
+        Math.round(throughput),
+        oldThreads,
+        windowFailures,
+        decision,
+        newThreads);
+
+    lastThroughput = throughput;
+    previousWindowThroughput = windowFailures > 0 ? -1.0 : throughput;
+    loaderThreads = newThreads;
+    windowStartNanos = nowNanos;
+    windowRecords = 0;
+    windowFailures = 0;
+
+    return newThreads != oldThreads ? newThreads : 0;
+  }
+
+  /**
+   * Starts a new tuning window right now, discarding whatever has been measured in the current one.
+   * This must be called whenever loading resumes after a pause (e.g. at the start of each data set),
+   * as the idle time would otherwise be counted against the next window's throughput, making it
+   * look like the last thread adjustment hurt, and the one after that look like a big improvement.
+   */
+  synchronized void resetWindow() {
+    windowStartNanos = nanoClock.getAsLong();
+    windowRecords = 0;
+    windowFailures = 0;
+  }
+
+  /**
+   * @param failure the error that a batch failed with
+   * @return <code>true</code> if the specified error (or any of its causes) indicates that the
+   *     batch failed due to lock contention in the database, <code>false</code> if not
+   */
+  static boolean isLockContention(Throwable failure) {
+    for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+      if (cause instanceof SQLException) {
+        for (SQLException e = (SQLException) cause; e != null; e = e.getNextException())
+          if (e.getSQLState() != null && LOCK_CONTENTION_SQL_STATES.contains(e.getSQLState()))
+            return true;
+      }
+    }
+    return false;
+  }
+
+  /** Tracks the batch size and recent latency of a single {@link RifFileType}. */
+  private static final class BatchSizeState {
+    volatile int size = DEFAULT_BATCH_SIZE;
+    double latencyMillis;
+    int samples;
+    int failures;
+  }
+}
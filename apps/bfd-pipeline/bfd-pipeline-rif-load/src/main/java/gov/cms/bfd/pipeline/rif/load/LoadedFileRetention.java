@@ -0,0 +1,175 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.justdavis.karl.misc.exceptions.unchecked.UncheckedSqlException;
+import gov.cms.bfd.model.rif.schema.LoadedBatchPartitions;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.ZoneOffset;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Expires the <code>"LoadedFiles"</code> and <code>"LoadedBatches"</code> that are older than
+ * {@link #MAX_FILE_AGE}, for {@link RifLoader}.
+ *
+ * <p>On PostgreSQL, <code>"LoadedBatches"</code> is split into daily partitions (see {@link
+ * LoadedBatchPartitions}), which this creates a few days ahead of when they're needed, and drops
+ * once they've expired. Dropping a partition is a quick metadata change, no matter how many batches
+ * it holds, and leaves nothing behind to vacuum. If a partition is in use, this won't wait more
+ * than {@link #DROP_LOCK_TIMEOUT} for it (and so won't hold up the queries that would then queue up
+ * behind it), and will just try again next time. Only the few batches of expired files that ended
+ * up past the last dropped partition (e.g. from a file that was loaded over midnight) are deleted
+ * row by row. For other databases (e.g. HSQL, in tests), which aren't partitioned, all of the
+ * expired batches are deleted row by row.
+ *
+ * <p>Files are expired at the start of the (UTC) day that is {@link #MAX_FILE_AGE} ago (or of the
+ * first expired partition that couldn't be dropped yet), so that they're expired along with their
+ * partitions. A file and all of its batches are always expired
+ * together, as the server's <code>LoadedFilterManager</code> would otherwise build incomplete
+ * filters for them.
+ *
+ * <p>Reports the following metrics, all named <code>LoadedFileRetention.*</code>: a <code>trim
+ * </code> timer, and <code>partitionsCreated</code>, <code>partitionsDropped</code>, <code>
+ * partitionDropsDeferred</code>, <code>filesDeleted</code>, and <code>batchesDeleted</code> meters.
+ */
+final class LoadedFileRetention {
+  private static final Logger LOGGER = LoggerFactory.getLogger(LoadedFileRetention.class);
+
+  /** How long {@link gov.cms.bfd.model.rif.LoadedFile}s and their batches are kept for. */
+  static final Period MAX_FILE_AGE = Period.ofDays(40);
+
+  /** The number of days past the current one to create partitions for. */
+  static final int PARTITIONS_AHEAD = 7;
+
+  /** The longest that dropping a partition will wait for it to be free. */
+  static final Duration DROP_LOCK_TIMEOUT = Duration.ofSeconds(1);
+
+  private final DataSource dataSource;
+  private final boolean partitioned;
+  private final MetricRegistry metrics;
+
+  /**
+   * Constructs a new {@link LoadedFileRetention}.
+   *
+   * @param dataSource the {@link DataSource} for the database being loaded
+   * @param partitioned <code>true</code> if the database is PostgreSQL, and so supports {@link
+   *     LoadedBatchPartitions}, <code>false</code> if it is not
+   * @param metrics the {@link MetricRegistry} to record metrics in
+   */
+  LoadedFileRetention(DataSource dataSource, boolean partitioned, MetricRegistry metrics) {
+    this.dataSource = dataSource;
+    this.partitioned = partitioned;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Creates any missing partitions for the next {@link #PARTITIONS_AHEAD} days, and then expires
+   * everything from before the cutoff for the specified time.
+   *
+   * @param now the current time
+   */
+  void trim(Instant now) {
+    Timer.Context timerTrim = metrics.timer(metricName("trim")).time();
+    LocalDate today = now.atZone(ZoneOffset.UTC).toLocalDate();
+    LocalDate cutoffDay = now.minus(MAX_FILE_AGE).atZone(ZoneOffset.UTC).toLocalDate();
+
+    if (partitioned) {
+      LocalDate lastDay = today.plusDays(PARTITIONS_AHEAD);
+      for (LocalDate day = today; !day.isAfter(lastDay); day = day.plusDays(1))
+        if (LoadedBatchPartitions.createPartition(dataSource, day))
+          metrics.meter(metricName("partitionsCreated")).mark();
+
+      for (LocalDate day : LoadedBatchPartitions.findPartitions(dataSource)) {
+        if (!day.isBefore(cutoffDay)) break;
+
+        if (LoadedBatchPartitions.dropPartition(dataSource, day, DROP_LOCK_TIMEOUT)) {
+          LOGGER.info("Dropped expired LoadedBatches partition for '{}'.", day);
+          metrics.meter(metricName("partitionsDropped")).mark();
+        } else {
+          /*
+           * Stop here, and only expire the files from before this partition,
+           * so that no file is left with just some of its batches, and the
+           * ones in this partition don't get deleted row by row.
+           */
+          LOGGER.info("LoadedBatches partition for '{}' is in use: will drop it later.", day);
+          metrics.meter(metricName("partitionDropsDeferred")).mark();
+          cutoffDay = day;
+          break;
+        }
+      }
+    }
+
+    deleteExpiredFiles(cutoffDay.atStartOfDay(ZoneOffset.UTC).toInstant());
+    timerTrim.stop();
+  }
+
+  /**
+   * Deletes the <code>"LoadedFiles"</code> created before the specified cutoff, along with any of
+   * their batches that are left, in a single transaction.
+   *
+   * @param cutoff the time to expire files from before
+   */
+  private void deleteExpiredFiles(Instant cutoff) {
+    try (Connection connection = dataSource.getConnection()) {
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try (PreparedStatement countFiles =
+              connection.prepareStatement(
+                  "select count(*) from \"LoadedFiles\" where \"created\" < ?");
+          PreparedStatement deleteBatches =
+              connection.prepareStatement(
+                  "delete from \"LoadedBatches\" where \"loadedFileId\" in"
+                      + " (select \"loadedFileId\" from \"LoadedFiles\" where \"created\" < ?)");
+          PreparedStatement deleteFiles =
+              connection.prepareStatement("delete from \"LoadedFiles\" where \"created\" < ?")) {
+        Timestamp cutoffTimestamp = Timestamp.from(cutoff);
+        countFiles.setTimestamp(1, cutoffTimestamp);
+        try (ResultSet results = countFiles.executeQuery()) {
+          results.next();
+          if (results.getLong(1) == 0) {
+            connection.rollback();
+            return;
+          }
+        }
+
+        deleteBatches.setTimestamp(1, cutoffTimestamp);
+        int batchesDeleted = deleteBatches.executeUpdate();
+        deleteFiles.setTimestamp(1, cutoffTimestamp);
+        int filesDeleted = deleteFiles.executeUpdate();
+        connection.commit();
+
+        LOGGER.info(
+            "Deleted '{}' expired LoadedFiles and '{}' of their remaining LoadedBatches.",
+            filesDeleted,
+            batchesDeleted);
+        metrics.meter(metricName("filesDeleted")).mark(filesDeleted);
+        metrics.meter(metricName("batchesDeleted")).mark(batchesDeleted);
+      } catch (SQLException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+    } catch (SQLException e) {
+      throw new UncheckedSqlException(e);
+    }
+  }
+
+  /**
+   * @param name the metric's name, relative to this class
+   * @return the full name of the specified metric
+   */
+  private String metricName(String name) {
+    return MetricRegistry.name(getClass().getSimpleName(), name);
+  }
+}
@@ -0,0 +1,24 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+/** A set of methods to help record the loader's {@link MetricRegistry} metrics. */
+final class MetricsUtils {
+  /** Not instantiable. */
+  private MetricsUtils() {}
+
+  /**
+   * Registers the specified {@link Gauge}, replacing any existing one of the same name (e.g. from
+   * an earlier instance of the class registering it), as {@link MetricRegistry#register(String,
+   * com.codahale.metrics.Metric)} would otherwise refuse it.
+   *
+   * @param metrics the {@link MetricRegistry} to register with
+   * @param gaugeName the name to register the {@link Gauge} as
+   * @param gauge the {@link Gauge} to register
+   */
+  static <T> void registerGauge(MetricRegistry metrics, String gaugeName, Gauge<T> gauge) {
+    metrics.remove(gaugeName);
+    metrics.register(gaugeName, gauge);
+  }
+}
@@ -0,0 +1,807 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.justdavis.karl.misc.exceptions.BadCodeMonkeyException;
+import gov.cms.bfd.model.rif.Beneficiary;
+import gov.cms.bfd.model.rif.BeneficiaryBinaryCopyWriter;
+import gov.cms.bfd.model.rif.BeneficiaryCsvWriter;
+import gov.cms.bfd.model.rif.BeneficiaryHistory;
+import gov.cms.bfd.model.rif.BeneficiaryHistoryBinaryCopyWriter;
+import gov.cms.bfd.model.rif.BeneficiaryHistoryCsvWriter;
+import gov.cms.bfd.model.rif.CarrierClaim;
+import gov.cms.bfd.model.rif.CarrierClaimBinaryCopyWriter;
+import gov.cms.bfd.model.rif.CarrierClaimCsvWriter;
+import gov.cms.bfd.model.rif.DMEClaim;
+import gov.cms.bfd.model.rif.DMEClaimBinaryCopyWriter;
+import gov.cms.bfd.model.rif.DMEClaimCsvWriter;
+import gov.cms.bfd.model.rif.HHAClaim;
+import gov.cms.bfd.model.rif.HHAClaimBinaryCopyWriter;
+import gov.cms.bfd.model.rif.HHAClaimCsvWriter;
+import gov.cms.bfd.model.rif.HospiceClaim;
+import gov.cms.bfd.model.rif.HospiceClaimBinaryCopyWriter;
+import gov.cms.bfd.model.rif.HospiceClaimCsvWriter;
+import gov.cms.bfd.model.rif.InpatientClaim;
+import gov.cms.bfd.model.rif.InpatientClaimBinaryCopyWriter;
+import gov.cms.bfd.model.rif.InpatientClaimCsvWriter;
+import gov.cms.bfd.model.rif.MedicareBeneficiaryIdHistory;
+import gov.cms.bfd.model.rif.MedicareBeneficiaryIdHistoryBinaryCopyWriter;
+import gov.cms.bfd.model.rif.MedicareBeneficiaryIdHistoryCsvWriter;
+import gov.cms.bfd.model.rif.OutpatientClaim;
+import gov.cms.bfd.model.rif.OutpatientClaimBinaryCopyWriter;
+import gov.cms.bfd.model.rif.OutpatientClaimCsvWriter;
+import gov.cms.bfd.model.rif.PartDEvent;
+import gov.cms.bfd.model.rif.PartDEventBinaryCopyWriter;
+import gov.cms.bfd.model.rif.PartDEventCsvWriter;
+import gov.cms.bfd.model.rif.PostgreSqlBinaryCopyBuffer;
+import gov.cms.bfd.model.rif.RecordAction;
+import gov.cms.bfd.model.rif.RifRecordBase;
+import gov.cms.bfd.model.rif.SNFClaim;
+import gov.cms.bfd.model.rif.SNFClaimBinaryCopyWriter;
+import gov.cms.bfd.model.rif.SNFClaimCsvWriter;
+import gov.cms.bfd.model.rif.parse.RifRecord;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.Table;
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.Assigned;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.jdbc.Work;
+import org.hibernate.persister.entity.EntityPersister;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.postgresql.core.BaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handles PostgreSQL {@link RecordAction#INSERT}s for {@link RifLoader} via PostgreSQL's
+ * non-standard {@link CopyManager} APIs, which <a
+ * href="https://www.postgresql.org/docs/9.6/static/populate.html">PostgreSQL 9.6 Manual: Populating
+ * a Database</a> recommends as the fastest way to insert large amounts of data.
+ *
+ * <p>Each batch of records is streamed straight into a <code>COPY ... FROM STDIN</code> on the
+ * batch's own {@link EntityManager} connection, so the rows are committed (or rolled back) in the
+ * same transaction as the batch's other changes, e.g. its {@link
+ * gov.cms.bfd.model.rif.LoadedBatch}. Nothing is staged on disk.
+ *
+ * <p>By default, rows are sent in <code>COPY</code>'s CSV format. If enabled, they'll instead be
+ * encoded by the generated <code>*BinaryCopyWriter</code>s into PostgreSQL's binary format, which
+ * saves both the client and the server from having to format and then parse every value as text.
+ * The claim files' records can even be transcoded into that format straight from the RIF records
+ * (see {@link CopyTranscodingLayout}), skipping the JPA entities entirely.
+ *
+ * <p>Instances are thread-safe.
+ */
+final class PostgreSqlCopyInserter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PostgreSqlCopyInserter.class);
+
+  /** The initial size (in bytes) of each thread's {@link PostgreSqlBinaryCopyBuffer}s. */
+  private static final int BINARY_COPY_BUFFER_INITIAL_CAPACITY = 256 * 1024;
+
+  private static final byte[] BINARY_COPY_HEADER = PostgreSqlBinaryCopyBuffer.getCopyHeader();
+  private static final byte[] BINARY_COPY_TRAILER = PostgreSqlBinaryCopyBuffer.getCopyTrailer();
+
+  /** The {@link BinaryCopyLayout}s for each top-level RIF entity type. */
+  private static final Map<Class<?>, BinaryCopyLayout> BINARY_COPY_LAYOUTS =
+      createBinaryCopyLayouts();
+
+  private final boolean binaryCopyEnabled;
+  private final ThreadLocal<PostgreSqlBinaryCopyBuffer> headerBuffers;
+  private final ThreadLocal<PostgreSqlBinaryCopyBuffer> lineBuffers;
+
+  /**
+   * The free buffers for {@link #transcode(CopyTranscodingLayout, List, int[], Date)}, which can't
+   * use {@link #headerBuffers} and {@link #lineBuffers}, as its rows are encoded on one thread and
+   * then sent on another. There are only ever as many of these as there are batches in flight.
+   */
+  private final Queue<PostgreSqlBinaryCopyBuffer> transcodingBuffers;
+
+  /**
+   * Constructs a new {@link PostgreSqlCopyInserter}.
+   *
+   * @param binaryCopyEnabled <code>true</code> to send rows in PostgreSQL's binary <code>COPY
+   *     </code> format, <code>false</code> to send them as CSV
+   */
+  PostgreSqlCopyInserter(boolean binaryCopyEnabled) {
+    this.binaryCopyEnabled = binaryCopyEnabled;
+
+    // Each loader thread reuses its own buffers from batch to batch.
+    this.headerBuffers =
+        ThreadLocal.withInitial(
+            () -> new PostgreSqlBinaryCopyBuffer(BINARY_COPY_BUFFER_INITIAL_CAPACITY));
+    this.lineBuffers =
+        ThreadLocal.withInitial(
+            () -> new PostgreSqlBinaryCopyBuffer(BINARY_COPY_BUFFER_INITIAL_CAPACITY));
+    this.transcodingBuffers = new ConcurrentLinkedQueue<>();
+  }
+
+  /**
+   * Inserts the specified records, along with any claim lines they have, using the specified {@link
+   * EntityManager}'s current connection and transaction. Any changes already pending in that
+   * {@link EntityManager} will be flushed first, so that the inserts happen in the expected order.
+   *
+   * @param entityManager the {@link EntityManager} to use, which must have an active transaction
+   * @param records the {@link RifRecordBase} top-level entity instances (e.g. {@link Beneficiary}s,
+   *     {@link CarrierClaim}s, etc.) to insert, which must all be of the same type
+   * @param metrics the {@link MetricRegistry} to use
+   */
+  public void insert(
+      EntityManager entityManager, List<RifRecordBase> records, MetricRegistry metrics) {
+    if (records.isEmpty()) return;
+
+    Timer.Context timerCopy =
+        metrics.timer(MetricRegistry.name(getClass().getSimpleName(), "copies")).time();
+
+    assignGeneratedIds(entityManager, records);
+    if (binaryCopyEnabled) insertBinary(entityManager, records, metrics);
+    else insertCsv(entityManager, records, metrics);
+
+    timerCopy.stop();
+  }
+
+  /**
+   * Inserts the specified records via CSV-format <code>COPY</code>s.
+   *
+   * @param entityManager the {@link EntityManager} to use, which must have an active transaction
+   * @param records the {@link RifRecordBase} top-level entity instances to insert
+   * @param metrics the {@link MetricRegistry} to use
+   */
+  private static void insertCsv(
+      EntityManager entityManager, List<RifRecordBase> records, MetricRegistry metrics) {
+    /*
+     * Use the auto-generated *CsvWriter helpers to convert each JPA entity
+     * to its raw column values, grouped by SQL table. The header's table
+     * is always copied first, as the line tables have foreign keys to it.
+     */
+    String headerTableName = getTableName(records.get(0).getClass());
+    Map<String, TableRows> rowsByTable = new LinkedHashMap<>();
+    rowsByTable.put(headerTableName, null);
+    for (RifRecordBase record : records) {
+      for (Entry<String, Object[][]> tableRecords : toCsvRecordsByTable(record).entrySet()) {
+        TableRows tableRows = rowsByTable.get(tableRecords.getKey());
+        if (tableRows == null) {
+          tableRows = new TableRows(tableRecords.getValue()[0]);
+          rowsByTable.put(tableRecords.getKey(), tableRows);
+        }
+
+        for (int rowIndex = 1; rowIndex < tableRecords.getValue().length; rowIndex++)
+          tableRows.rows.add(tableRecords.getValue()[rowIndex]);
+      }
+    }
+
+    // Make sure anything else the batch did gets written before the COPYs.
+    entityManager.flush();
+
+    Session session = entityManager.unwrap(Session.class);
+    session.doWork(
+        new Work() {
+          /** @see org.hibernate.jdbc.Work#execute(java.sql.Connection) */
+          @Override
+          public void execute(Connection connection) throws SQLException {
+            // Unwrap the pooled connection to get at the raw PostgreSQL one.
+            CopyManager copyManager = new CopyManager(connection.unwrap(BaseConnection.class));
+
+            for (Entry<String, TableRows> tableRows : rowsByTable.entrySet()) {
+              if (tableRows.getValue() == null) continue;
+
+              try {
+                copyRows(copyManager, tableRows.getKey(), tableRows.getValue());
+              } catch (IOException e) {
+                throw new SQLException(e);
+              }
+              metrics
+                  .meter(MetricRegistry.name(PostgreSqlCopyInserter.class.getSimpleName(), "rows"))
+                  .mark(tableRows.getValue().rows.size());
+            }
+          }
+        });
+  }
+
+  /**
+   * Inserts the specified records via binary-format <code>COPY</code>s, using this thread's
+   * {@link PostgreSqlBinaryCopyBuffer}s.
+   *
+   * @param entityManager the {@link EntityManager} to use, which must have an active transaction
+   * @param records the {@link RifRecordBase} top-level entity instances to insert
+   * @param metrics the {@link MetricRegistry} to use
+   */
+  private void insertBinary(
+      EntityManager entityManager, List<RifRecordBase> records, MetricRegistry metrics) {
+    BinaryCopyLayout layout = getBinaryCopyLayout(records.get(0).getClass());
+
+    PostgreSqlBinaryCopyBuffer headerRows = headerBuffers.get();
+    PostgreSqlBinaryCopyBuffer lineRows = lineBuffers.get();
+    headerRows.clear();
+    lineRows.clear();
+    for (RifRecordBase record : records) layout.rowWriter.writeRows(record, headerRows, lineRows);
+
+    copyBinaryRows(entityManager, layout, headerRows, lineRows, metrics);
+  }
+
+  /**
+   * Encodes the specified record (and its lines, if any) via its generated <code>*BinaryCopyWriter
+   * </code>, exactly as {@link #insert(EntityManager, List, MetricRegistry)} would when binary
+   * <code>COPY</code>s are enabled.
+   *
+   * @param record the {@link RifRecordBase} top-level entity instance to encode
+   * @param headerRows the {@link PostgreSqlBinaryCopyBuffer} to write the header row to
+   * @param lineRows the {@link PostgreSqlBinaryCopyBuffer} to write any line rows to
+   */
+  static void writeBinaryRows(
+      RifRecordBase record,
+      PostgreSqlBinaryCopyBuffer headerRows,
+      PostgreSqlBinaryCopyBuffer lineRows) {
+    getBinaryCopyLayout(record.getClass()).rowWriter.writeRows(record, headerRows, lineRows);
+  }
+
+  /**
+   * Transcodes the specified RIF record groups straight into binary-format <code>COPY</code> rows,
+   * without building any JPA entities for them, and without needing a database connection. This is
+   * the CPU-heavy half of a transcoded insert, which {@link RifLoader} runs on its encoding stage,
+   * before handing the result off to {@link #insertTranscoded(EntityManager, TranscodedRows,
+   * MetricRegistry)} on its write stage.
+   *
+   * @param transcodingLayout the {@link CopyTranscodingLayout} for the RIF file being loaded
+   * @param recordGroups the grouped {@link RifRecord}s for each of the claims or events to insert
+   * @param columnIndexes the RIF file's resolved column indexes
+   * @param lastUpdated the value to use for each header row's <code>lastupdated</code> column
+   * @return the {@link TranscodedRows} for the specified record groups
+   */
+  TranscodedRows transcode(
+      CopyTranscodingLayout transcodingLayout,
+      List<List<RifRecord>> recordGroups,
+      int[] columnIndexes,
+      Date lastUpdated) {
+    BinaryCopyLayout layout = getBinaryCopyLayout(transcodingLayout.getEntityType());
+    PostgreSqlBinaryCopyBuffer headerRows = takeTranscodingBuffer();
+    PostgreSqlBinaryCopyBuffer lineRows = takeTranscodingBuffer();
+    for (List<RifRecord> recordGroup : recordGroups)
+      transcodingLayout.transcodeRif(recordGroup, columnIndexes, lastUpdated, headerRows, lineRows);
+
+    return new TranscodedRows(layout, headerRows, lineRows, recordGroups.size());
+  }
+
+  /**
+   * Inserts the specified (already transcoded) rows via binary-format <code>COPY</code>s. Any
+   * changes already pending in the specified {@link EntityManager} will be flushed first, so that
+   * the inserts happen in the expected order.
+   *
+   * @param entityManager the {@link EntityManager} to use, which must have an active transaction
+   * @param transcodedRows the {@link TranscodedRows} to insert, as produced by {@link
+   *     #transcode(CopyTranscodingLayout, List, int[], Date)}, which may not be reused afterwards
+   * @param metrics the {@link MetricRegistry} to use
+   */
+  public void insertTranscoded(
+      EntityManager entityManager, TranscodedRows transcodedRows, MetricRegistry metrics) {
+    if (transcodedRows.recordCount == 0) {
+      releaseTranscodingBuffers(transcodedRows);
+      return;
+    }
+
+    Timer.Context timerCopy =
+        metrics.timer(MetricRegistry.name(getClass().getSimpleName(), "copies")).time();
+
+    try {
+      copyBinaryRows(
+          entityManager,
+          transcodedRows.layout,
+          transcodedRows.headerRows,
+          transcodedRows.lineRows,
+          metrics);
+    } finally {
+      releaseTranscodingBuffers(transcodedRows);
+    }
+    metrics
+        .meter(MetricRegistry.name(getClass().getSimpleName(), "transcodedRecords"))
+        .mark(transcodedRows.recordCount);
+
+    timerCopy.stop();
+  }
+
+  /**
+   * @return a cleared {@link PostgreSqlBinaryCopyBuffer} from {@link #transcodingBuffers}, or a new
+   *     one if none are free
+   */
+  private PostgreSqlBinaryCopyBuffer takeTranscodingBuffer() {
+    PostgreSqlBinaryCopyBuffer buffer = transcodingBuffers.poll();
+    if (buffer == null) return new PostgreSqlBinaryCopyBuffer(BINARY_COPY_BUFFER_INITIAL_CAPACITY);
+    buffer.clear();
+    return buffer;
+  }
+
+  /**
+   * Returns the specified {@link TranscodedRows}' buffers to {@link #transcodingBuffers}, so that
+   * later batches can reuse them.
+   *
+   * @param transcodedRows the {@link TranscodedRows} that are done with
+   */
+  private void releaseTranscodingBuffers(TranscodedRows transcodedRows) {
+    transcodingBuffers.offer(transcodedRows.headerRows);
+    transcodingBuffers.offer(transcodedRows.lineRows);
+  }
+
+  /**
+   * Sends the specified (already encoded) rows via binary-format <code>COPY</code>s.
+   *
+   * @param entityManager the {@link EntityManager} to use, which must have an active transaction
+   * @param layout the {@link BinaryCopyLayout} of the rows
+   * @param headerRows the {@link PostgreSqlBinaryCopyBuffer} containing the header rows to insert
+   * @param lineRows the {@link PostgreSqlBinaryCopyBuffer} containing the line rows to insert
+   * @param metrics the {@link MetricRegistry} to use
+   */
+  private static void copyBinaryRows(
+      EntityManager entityManager,
+      BinaryCopyLayout layout,
+      PostgreSqlBinaryCopyBuffer headerRows,
+      PostgreSqlBinaryCopyBuffer lineRows,
+      MetricRegistry metrics) {
+    // Make sure anything else the batch did gets written before the COPYs.
+    entityManager.flush();
+
+    Session session = entityManager.unwrap(Session.class);
+    session.doWork(
+        new Work() {
+          /** @see org.hibernate.jdbc.Work#execute(java.sql.Connection) */
+          @Override
+          public void execute(Connection connection) throws SQLException {
+            // Unwrap the pooled connection to get at the raw PostgreSQL one.
+            CopyManager copyManager = new CopyManager(connection.unwrap(BaseConnection.class));
+
+            // The header's table is always copied first, as the lines have foreign keys to it.
+            copyRows(copyManager, layout.headerTable, layout.headerColumns, headerRows, metrics);
+            if (layout.lineTable != null && lineRows.getRowCount() > 0)
+              copyRows(copyManager, layout.lineTable, layout.lineColumns, lineRows, metrics);
+          }
+        });
+  }
+
+  /**
+   * Assigns IDs to any of the specified records that use a generated ID (e.g. {@link
+   * BeneficiaryHistory}), using the same Hibernate {@link IdentifierGenerator} that {@link
+   * EntityManager#persist(Object)} would have, so that the IDs won't ever collide.
+   *
+   * @param entityManager the {@link EntityManager} to use
+   * @param records the {@link RifRecordBase} entity instances to assign IDs to, if needed
+   */
+  static void assignGeneratedIds(EntityManager entityManager, List<RifRecordBase> records) {
+    SharedSessionContractImplementor session =
+        entityManager.unwrap(SharedSessionContractImplementor.class);
+    EntityPersister persister = session.getEntityPersister(null, records.get(0));
+    IdentifierGenerator idGenerator = persister.getIdentifierGenerator();
+    if (idGenerator instanceof Assigned) return;
+
+    for (RifRecordBase record : records)
+      persister.setIdentifier(record, idGenerator.generate(session, record), session);
+  }
+
+  /**
+   * @param copyManager the {@link CopyManager} to use
+   * @param tableName the name of the SQL table to insert into
+   * @param tableRows the {@link TableRows} to insert
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   * @throws IOException Any {@link IOException}s encountered will be bubbled up.
+   */
+  private static void copyRows(CopyManager copyManager, String tableName, TableRows tableRows)
+      throws SQLException, IOException {
+    String columnsList =
+        Arrays.stream(tableRows.columnNames)
+            .map(c -> "\"" + c + "\"")
+            .collect(Collectors.joining(", "));
+    String copySql =
+        String.format(
+            "COPY \"%s\" (%s) FROM STDIN DELIMITERS ',' CSV ENCODING 'UTF8'",
+            tableName, columnsList);
+    LOGGER.trace("Submitting PostgreSQL COPY of '{}' rows: '{}'.", tableRows.rows.size(), copySql);
+
+    /*
+     * The rows are streamed to the server as they're printed. Closing the
+     * PGCopyOutputStream ends the COPY, and waits for the server to finish
+     * it.
+     */
+    try (Writer copyWriter =
+        new BufferedWriter(
+            new OutputStreamWriter(
+                new PGCopyOutputStream(copyManager.copyIn(copySql)), StandardCharsets.UTF_8))) {
+      writeCsvRows(copyWriter, tableRows.rows);
+    }
+  }
+
+  /**
+   * Writes the specified rows in the CSV format that PostgreSQL's <code>COPY</code> expects. Only
+   * <code>null</code>s are written as unquoted empty values, which <code>COPY</code> reads as
+   * <code>NULL</code>s: empty {@link String}s are quoted, as are any values with delimiters,
+   * quotes, or line breaks in them. (Commons CSV's <code>CSVFormat.DEFAULT</code> can't be used for
+   * this, as it quotes a leading <code>null</code>, turning it into an empty {@link String}.)
+   *
+   * @param writer the {@link Appendable} to write the CSV rows to (which will not be closed)
+   * @param rows the rows to write, as produced by one of the generated <code>*CsvWriter</code>s
+   * @throws IOException Any {@link IOException}s encountered will be bubbled up.
+   */
+  static void writeCsvRows(Appendable writer, List<Object[]> rows) throws IOException {
+    for (Object[] row : rows) {
+      for (int columnIndex = 0; columnIndex < row.length; columnIndex++) {
+        if (columnIndex > 0) writer.append(',');
+        Object value = toCopyValue(row[columnIndex]);
+        if (value == null) continue;
+
+        String text = value.toString();
+        if (!needsCsvQuoting(text)) {
+          writer.append(text);
+          continue;
+        }
+        writer.append('"');
+        for (int i = 0; i < text.length(); i++) {
+          char c = text.charAt(i);
+          if (c == '"') writer.append('"');
+          writer.append(c);
+        }
+        writer.append('"');
+      }
+      writer.append('\n');
+    }
+  }
+
+  /**
+   * @param text the (non-<code>null</code>) value to check
+   * @return <code>true</code> if the specified value has to be quoted in CSV-format <code>COPY
+   *     </code> data, <code>false</code> if it can be written as-is
+   */
+  private static boolean needsCsvQuoting(String text) {
+    // A lone "\." marks the end of the data, so it has to be quoted, too.
+    if (text.isEmpty() || text.equals("\\.")) return true;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == ',' || c == '"' || c == '\r' || c == '\n') return true;
+    }
+    return false;
+  }
+
+  /**
+   * @param copyManager the {@link CopyManager} to use
+   * @param tableName the name of the SQL table to insert into
+   * @param columnNames the (correctly ordered) SQL column names of the encoded rows
+   * @param rows the {@link PostgreSqlBinaryCopyBuffer} containing the rows to insert
+   * @param metrics the {@link MetricRegistry} to use
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  static void copyRows(
+      CopyManager copyManager,
+      String tableName,
+      List<String> columnNames,
+      PostgreSqlBinaryCopyBuffer rows,
+      MetricRegistry metrics)
+      throws SQLException {
+    String columnsList =
+        columnNames.stream().map(c -> "\"" + c + "\"").collect(Collectors.joining(", "));
+    String copySql =
+        String.format("COPY \"%s\" (%s) FROM STDIN (FORMAT binary)", tableName, columnsList);
+    LOGGER.trace("Submitting PostgreSQL COPY of '{}' rows: '{}'.", rows.getRowCount(), copySql);
+
+    ByteBuffer rowBytes = rows.getContents();
+    CopyIn copyIn = copyManager.copyIn(copySql);
+    try {
+      copyIn.writeToCopy(BINARY_COPY_HEADER, 0, BINARY_COPY_HEADER.length);
+      copyIn.writeToCopy(
+          rowBytes.array(), rowBytes.arrayOffset() + rowBytes.position(), rowBytes.remaining());
+      copyIn.writeToCopy(BINARY_COPY_TRAILER, 0, BINARY_COPY_TRAILER.length);
+      copyIn.endCopy();
+    } finally {
+      // Only still active if something went wrong, in which case the COPY must be abandoned.
+      if (copyIn.isActive()) copyIn.cancelCopy();
+    }
+
+    String metricsPrefix = PostgreSqlCopyInserter.class.getSimpleName();
+    metrics.meter(MetricRegistry.name(metricsPrefix, "rows")).mark(rows.getRowCount());
+    metrics.meter(MetricRegistry.name(metricsPrefix, "binaryBytes")).mark(rowBytes.remaining());
+  }
+
+  /**
+   * @param value a column value, as produced by one of the generated <code>*CsvWriter</code>s
+   * @return the specified value, converted to a form that its {@link Object#toString()} can be
+   *     parsed by PostgreSQL (<code>null</code>s are printed as empty values, which CSV-mode <code>
+   *     COPY</code> treats as <code>NULL</code>s)
+   */
+  static Object toCopyValue(Object value) {
+    if (value instanceof Date) return ((Date) value).toInstant().toString();
+    // BigDecimal.toString() can use scientific notation, e.g. "1E+3", which is best avoided.
+    if (value instanceof BigDecimal) return ((BigDecimal) value).toPlainString();
+    return value;
+  }
+
+  /**
+   * @param entityType the top-level RIF entity type to get the {@link BinaryCopyLayout} of
+   * @return the {@link BinaryCopyLayout} for the specified entity type
+   */
+  static BinaryCopyLayout getBinaryCopyLayout(Class<?> entityType) {
+    BinaryCopyLayout layout = BINARY_COPY_LAYOUTS.get(entityType);
+    if (layout == null) throw new BadCodeMonkeyException("Unhandled record type: " + entityType);
+    return layout;
+  }
+
+  /**
+   * @param entityType the JPA entity type to get the SQL table name of
+   * @return the (unquoted) name of the SQL table that the specified entity is stored in
+   */
+  private static String getTableName(Class<?> entityType) {
+    Table tableAnnotation = entityType.getAnnotation(Table.class);
+    return tableAnnotation.name().replaceAll("`", "");
+  }
+
+  /**
+   * @param record the {@link RifRecordBase} top-level entity instance (e.g. a {@link Beneficiary},
+   *     {@link CarrierClaim}, etc.) to convert
+   * @return the specified record's values, as produced by its generated <code>*CsvWriter</code>:
+   *     each {@link Map} entry represents a single SQL table, and the first <code>Object[]</code>
+   *     for each contains that table's (correctly ordered) SQL column names
+   */
+  private static Map<String, Object[][]> toCsvRecordsByTable(RifRecordBase record) {
+    if (record instanceof Beneficiary)
+      return BeneficiaryCsvWriter.toCsvRecordsByTable((Beneficiary) record);
+    else if (record instanceof BeneficiaryHistory)
+      return BeneficiaryHistoryCsvWriter.toCsvRecordsByTable((BeneficiaryHistory) record);
+    else if (record instanceof MedicareBeneficiaryIdHistory)
+      return MedicareBeneficiaryIdHistoryCsvWriter.toCsvRecordsByTable(
+          (MedicareBeneficiaryIdHistory) record);
+    else if (record instanceof PartDEvent)
+      return PartDEventCsvWriter.toCsvRecordsByTable((PartDEvent) record);
+    else if (record instanceof CarrierClaim)
+      return CarrierClaimCsvWriter.toCsvRecordsByTable((CarrierClaim) record);
+    else if (record instanceof InpatientClaim)
+      return InpatientClaimCsvWriter.toCsvRecordsByTable((InpatientClaim) record);
+    else if (record instanceof OutpatientClaim)
+      return OutpatientClaimCsvWriter.toCsvRecordsByTable((OutpatientClaim) record);
+    else if (record instanceof HHAClaim)
+      return HHAClaimCsvWriter.toCsvRecordsByTable((HHAClaim) record);
+    else if (record instanceof DMEClaim)
+      return DMEClaimCsvWriter.toCsvRecordsByTable((DMEClaim) record);
+    else if (record instanceof HospiceClaim)
+      return HospiceClaimCsvWriter.toCsvRecordsByTable((HospiceClaim) record);
+    else if (record instanceof SNFClaim)
+      return SNFClaimCsvWriter.toCsvRecordsByTable((SNFClaim) record);
+    else throw new BadCodeMonkeyException("Unhandled record type: " + record.getClass());
+  }
+
+  /** @return the {@link BinaryCopyLayout}s for each top-level RIF entity type */
+  private static Map<Class<?>, BinaryCopyLayout> createBinaryCopyLayouts() {
+    Map<Class<?>, BinaryCopyLayout> layouts = new HashMap<>();
+    layouts.put(
+        Beneficiary.class,
+        new BinaryCopyLayout(
+            BeneficiaryBinaryCopyWriter.HEADER_TABLE,
+            BeneficiaryBinaryCopyWriter.HEADER_COLUMNS,
+            BeneficiaryBinaryCopyWriter.HEADER_ID_COLUMN,
+            (r, h, l) -> BeneficiaryBinaryCopyWriter.writeRows((Beneficiary) r, h)));
+    layouts.put(
+        BeneficiaryHistory.class,
+        new BinaryCopyLayout(
+            BeneficiaryHistoryBinaryCopyWriter.HEADER_TABLE,
+            BeneficiaryHistoryBinaryCopyWriter.HEADER_COLUMNS,
+            BeneficiaryHistoryBinaryCopyWriter.HEADER_ID_COLUMN,
+            (r, h, l) -> BeneficiaryHistoryBinaryCopyWriter.writeRows((BeneficiaryHistory) r, h)));
+    layouts.put(
+        MedicareBeneficiaryIdHistory.class,
+        new BinaryCopyLayout(
+            MedicareBeneficiaryIdHistoryBinaryCopyWriter.HEADER_TABLE,
+            MedicareBeneficiaryIdHistoryBinaryCopyWriter.HEADER_COLUMNS,
+            MedicareBeneficiaryIdHistoryBinaryCopyWriter.HEADER_ID_COLUMN,
+            (r, h, l) ->
+                MedicareBeneficiaryIdHistoryBinaryCopyWriter.writeRows(
+                    (MedicareBeneficiaryIdHistory) r, h)));
+    layouts.put(
+        PartDEvent.class,
+        new BinaryCopyLayout(
+            PartDEventBinaryCopyWriter.HEADER_TABLE,
+            PartDEventBinaryCopyWriter.HEADER_COLUMNS,
+            PartDEventBinaryCopyWriter.HEADER_ID_COLUMN,
+            (r, h, l) -> PartDEventBinaryCopyWriter.writeRows((PartDEvent) r, h)));
+    layouts.put(
+        CarrierClaim.class,
+        new BinaryCopyLayout(
+            CarrierClaimBinaryCopyWriter.HEADER_TABLE,
+            CarrierClaimBinaryCopyWriter.HEADER_COLUMNS,
+            CarrierClaimBinaryCopyWriter.HEADER_ID_COLUMN,
+            CarrierClaimBinaryCopyWriter.LINE_TABLE,
+            CarrierClaimBinaryCopyWriter.LINE_COLUMNS,
+            CarrierClaimBinaryCopyWriter.LINE_ID_COLUMNS,
+            (r, h, l) -> CarrierClaimBinaryCopyWriter.writeRows((CarrierClaim) r, h, l)));
+    layouts.put(
+        InpatientClaim.class,
+        new BinaryCopyLayout(
+            InpatientClaimBinaryCopyWriter.HEADER_TABLE,
+            InpatientClaimBinaryCopyWriter.HEADER_COLUMNS,
+            InpatientClaimBinaryCopyWriter.HEADER_ID_COLUMN,
+            InpatientClaimBinaryCopyWriter.LINE_TABLE,
+            InpatientClaimBinaryCopyWriter.LINE_COLUMNS,
+            InpatientClaimBinaryCopyWriter.LINE_ID_COLUMNS,
+            (r, h, l) -> InpatientClaimBinaryCopyWriter.writeRows((InpatientClaim) r, h, l)));
+    layouts.put(
+        OutpatientClaim.class,
+        new BinaryCopyLayout(
+            OutpatientClaimBinaryCopyWriter.HEADER_TABLE,
+            OutpatientClaimBinaryCopyWriter.HEADER_COLUMNS,
+            OutpatientClaimBinaryCopyWriter.HEADER_ID_COLUMN,
+            OutpatientClaimBinaryCopyWriter.LINE_TABLE,
+            OutpatientClaimBinaryCopyWriter.LINE_COLUMNS,
+            OutpatientClaimBinaryCopyWriter.LINE_ID_COLUMNS,
+            (r, h, l) -> OutpatientClaimBinaryCopyWriter.writeRows((OutpatientClaim) r, h, l)));
+    layouts.put(
+        HHAClaim.class,
+        new BinaryCopyLayout(
+            HHAClaimBinaryCopyWriter.HEADER_TABLE,
+            HHAClaimBinaryCopyWriter.HEADER_COLUMNS,
+            HHAClaimBinaryCopyWriter.HEADER_ID_COLUMN,
+            HHAClaimBinaryCopyWriter.LINE_TABLE,
+            HHAClaimBinaryCopyWriter.LINE_COLUMNS,
+            HHAClaimBinaryCopyWriter.LINE_ID_COLUMNS,
+            (r, h, l) -> HHAClaimBinaryCopyWriter.writeRows((HHAClaim) r, h, l)));
+    layouts.put(
+        DMEClaim.class,
+        new BinaryCopyLayout(
+            DMEClaimBinaryCopyWriter.HEADER_TABLE,
+            DMEClaimBinaryCopyWriter.HEADER_COLUMNS,
+            DMEClaimBinaryCopyWriter.HEADER_ID_COLUMN,
+            DMEClaimBinaryCopyWriter.LINE_TABLE,
+            DMEClaimBinaryCopyWriter.LINE_COLUMNS,
+            DMEClaimBinaryCopyWriter.LINE_ID_COLUMNS,
+            (r, h, l) -> DMEClaimBinaryCopyWriter.writeRows((DMEClaim) r, h, l)));
+    layouts.put(
+        HospiceClaim.class,
+        new BinaryCopyLayout(
+            HospiceClaimBinaryCopyWriter.HEADER_TABLE,
+            HospiceClaimBinaryCopyWriter.HEADER_COLUMNS,
+            HospiceClaimBinaryCopyWriter.HEADER_ID_COLUMN,
+            HospiceClaimBinaryCopyWriter.LINE_TABLE,
+            HospiceClaimBinaryCopyWriter.LINE_COLUMNS,
+            HospiceClaimBinaryCopyWriter.LINE_ID_COLUMNS,
+            (r, h, l) -> HospiceClaimBinaryCopyWriter.writeRows((HospiceClaim) r, h, l)));
+    layouts.put(
+        SNFClaim.class,
+        new BinaryCopyLayout(
+            SNFClaimBinaryCopyWriter.HEADER_TABLE,
+            SNFClaimBinaryCopyWriter.HEADER_COLUMNS,
+            SNFClaimBinaryCopyWriter.HEADER_ID_COLUMN,
+            SNFClaimBinaryCopyWriter.LINE_TABLE,
+            SNFClaimBinaryCopyWriter.LINE_COLUMNS,
+            SNFClaimBinaryCopyWriter.LINE_ID_COLUMNS,
+            (r, h, l) -> SNFClaimBinaryCopyWriter.writeRows((SNFClaim) r, h, l)));
+    return Collections.unmodifiableMap(layouts);
+  }
+
+  /** A simple struct for the rows of a single SQL table that are to be inserted. */
+  private static final class TableRows {
+    final String[] columnNames;
+    final List<Object[]> rows;
+
+    /** @param columnNames the (correctly ordered) SQL column names, as <code>Object</code>s */
+    TableRows(Object[] columnNames) {
+      this.columnNames = Arrays.copyOf(columnNames, columnNames.length, String[].class);
+      this.rows = new ArrayList<>();
+    }
+  }
+
+  /**
+   * Writes a top-level RIF entity (and its lines, if any) to {@link PostgreSqlBinaryCopyBuffer}s,
+   * via its generated <code>*BinaryCopyWriter</code>.
+   */
+  @FunctionalInterface
+  private interface BinaryCopyRowWriter {
+    /**
+     * @param record the {@link RifRecordBase} top-level entity instance to write
+     * @param headerRows the {@link PostgreSqlBinaryCopyBuffer} to write the header row to
+     * @param lineRows the {@link PostgreSqlBinaryCopyBuffer} to write any line rows to
+     */
+    void writeRows(
+        RifRecordBase record,
+        PostgreSqlBinaryCopyBuffer headerRows,
+        PostgreSqlBinaryCopyBuffer lineRows);
+  }
+
+  /** A simple struct for the SQL tables that a top-level RIF entity is binary copied into. */
+  static final class BinaryCopyLayout {
+    final String headerTable;
+    final List<String> headerColumns;
+    final String headerIdColumn;
+    final String lineTable;
+    final List<String> lineColumns;
+    final List<String> lineIdColumns;
+    private final BinaryCopyRowWriter rowWriter;
+
+    /**
+     * @param headerTable the name of the header SQL table
+     * @param headerColumns the (correctly ordered) SQL column names of the header table
+     * @param headerIdColumn the SQL column name of the header table's primary key
+     * @param lineTable the name of the line SQL table, or <code>null</code> if there isn't one
+     * @param lineColumns the (correctly ordered) SQL column names of the line table, or <code>null
+     *     </code> if there isn't one
+     * @param lineIdColumns the SQL column names of the line table's primary key, or <code>null
+     *     </code> if there isn't one
+     * @param rowWriter the {@link BinaryCopyRowWriter} to use
+     */
+    BinaryCopyLayout(
+        String headerTable,
+        List<String> headerColumns,
+        String headerIdColumn,
+        String lineTable,
+        List<String> lineColumns,
+        List<String> lineIdColumns,
+        BinaryCopyRowWriter rowWriter) {
+      this.headerTable = headerTable;
+      this.headerColumns = headerColumns;
+      this.headerIdColumn = headerIdColumn;
+      this.lineTable = lineTable;
+      this.lineColumns = lineColumns;
+      this.lineIdColumns = lineIdColumns;
+      this.rowWriter = rowWriter;
+    }
+
+    /**
+     * @param headerTable the name of the header SQL table
+     * @param headerColumns the (correctly ordered) SQL column names of the header table
+     * @param headerIdColumn the SQL column name of the header table's primary key
+     * @param rowWriter the {@link BinaryCopyRowWriter} to use
+     */
+    BinaryCopyLayout(
+        String headerTable,
+        List<String> headerColumns,
+        String headerIdColumn,
+        BinaryCopyRowWriter rowWriter) {
+      this(headerTable, headerColumns, headerIdColumn, null, null, null, rowWriter);
+    }
+  }
+
+  /**
+   * The binary <code>COPY</code> rows that a batch of RIF record groups were transcoded into, which
+   * are ready to be sent to the database.
+   */
+  static final class TranscodedRows {
+    private final BinaryCopyLayout layout;
+    private final PostgreSqlBinaryCopyBuffer headerRows;
+    private final PostgreSqlBinaryCopyBuffer lineRows;
+    private final int recordCount;
+
+    /**
+     * @param layout the {@link BinaryCopyLayout} of the rows
+     * @param headerRows the {@link PostgreSqlBinaryCopyBuffer} containing the header rows
+     * @param lineRows the {@link PostgreSqlBinaryCopyBuffer} containing the line rows
+     * @param recordCount the number of RIF record groups that were transcoded
+     */
+    TranscodedRows(
+        BinaryCopyLayout layout,
+        PostgreSqlBinaryCopyBuffer headerRows,
+        PostgreSqlBinaryCopyBuffer lineRows,
+        int recordCount) {
+      this.layout = layout;
+      this.headerRows = headerRows;
+      this.lineRows = lineRows;
+      this.recordCount = recordCount;
+    }
+
+    /** @return the number of RIF record groups that were transcoded */
+    int getRecordCount() {
+      return recordCount;
+    }
+  }
+}
@@ -0,0 +1,389 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import gov.cms.bfd.model.rif.PostgreSqlBinaryCopyBuffer;
+import gov.cms.bfd.model.rif.RifRecordBase;
+import gov.cms.bfd.pipeline.rif.load.LoadAppOptions.InsertStrategy;
+import gov.cms.bfd.pipeline.rif.load.PostgreSqlCopyInserter.BinaryCopyLayout;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handles PostgreSQL {@link gov.cms.bfd.model.rif.RecordAction#INSERT}s for {@link RifLoader} when
+ * {@link InsertStrategy#STAGED_MERGE} is selected, by binary <code>COPY</code>ing each batch of
+ * records into <code>UNLOGGED</code> staging tables, and then moving them into the real tables with
+ * a single set-based <code>INSERT ... SELECT ... ON CONFLICT DO NOTHING</code> per table.
+ *
+ * <p>The staging tables are created from the real tables' DDL (via <code>LIKE</code>), but without
+ * any of their indexes or constraints, and aren't written to the WAL, so the <code>COPY</code>s
+ * into them are as cheap as they can be. The real tables then have their WAL and indexes
+ * maintained by one statement per table, per batch. The <code>ON CONFLICT DO NOTHING</code> makes
+ * re-runs of already-loaded data idempotent, without the separate query that {@link
+ * LoadAppOptions#isIdempotencyRequired()} otherwise needs: just as for that query, claims that
+ * have already been loaded are skipped entirely, including their lines.
+ *
+ * <p>Concurrent batches can't share staging tables, so each batch leases a numbered "slot" of them
+ * (e.g. <code>"CarrierClaims_staging_3"</code>) via {@link #leaseSlot()} for the length of its
+ * transaction, empties them before committing, and only hands the slot back via {@link
+ * #releaseSlot(int)} once its transaction has committed or rolled back. Slots are reused from batch
+ * to batch, and from run to run, and so there are only ever as many of them as there have been
+ * concurrent batches. The staging tables are created within each batch's own transaction, if
+ * they don't exist yet, so a batch that rolls back takes any tables it created with it, and the
+ * next batch in that slot just creates them again. As they're regular (if unlogged) tables, though,
+ * they'd outlive a schema migration that changes the real tables, so {@link
+ * #dropStagingTables(DataSource)} is run at startup, to clear out any left over from an earlier run
+ * (whether it crashed or not).
+ *
+ * <p>Instances are thread-safe.
+ */
+final class PostgreSqlStagedMerger {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PostgreSqlStagedMerger.class);
+
+  /** The initial size (in bytes) of each thread's {@link PostgreSqlBinaryCopyBuffer}s. */
+  private static final int BINARY_COPY_BUFFER_INITIAL_CAPACITY = 256 * 1024;
+
+  /**
+   * Inserted between each SQL table's name and the slot number to get the name of its staging
+   * tables.
+   */
+  static final String STAGING_TABLE_INFIX = "_staging_";
+
+  private final ThreadLocal<PostgreSqlBinaryCopyBuffer> headerBuffers;
+  private final ThreadLocal<PostgreSqlBinaryCopyBuffer> lineBuffers;
+  private final ConcurrentLinkedQueue<Integer> freeSlots;
+  private final AtomicInteger slotCount;
+
+  /** Constructs a new {@link PostgreSqlStagedMerger}. */
+  PostgreSqlStagedMerger() {
+    // Each loader thread reuses its own buffers from batch to batch.
+    this.headerBuffers =
+        ThreadLocal.withInitial(
+            () -> new PostgreSqlBinaryCopyBuffer(BINARY_COPY_BUFFER_INITIAL_CAPACITY));
+    this.lineBuffers =
+        ThreadLocal.withInitial(
+            () -> new PostgreSqlBinaryCopyBuffer(BINARY_COPY_BUFFER_INITIAL_CAPACITY));
+    this.freeSlots = new ConcurrentLinkedQueue<>();
+    this.slotCount = new AtomicInteger();
+  }
+
+  /**
+   * Inserts the specified records, along with any claim lines they have, using the specified {@link
+   * EntityManager}'s current connection and transaction, skipping any that have already been
+   * loaded. Any changes already pending in that {@link EntityManager} will be flushed first.
+   *
+   * @param entityManager the {@link EntityManager} to use, which must have an active transaction
+   * @param slot the staging slot to use, as leased via {@link #leaseSlot()} for the length of the
+   *     {@link EntityManager}'s transaction
+   * @param records the {@link RifRecordBase} top-level entity instances (e.g. {@link
+   *     gov.cms.bfd.model.rif.Beneficiary}s, {@link gov.cms.bfd.model.rif.CarrierClaim}s, etc.) to
+   *     insert, which must all be of the same type, must all have distinct IDs, and must not have
+   *     generated IDs
+   * @param metrics the {@link MetricRegistry} to use
+   * @return the IDs (as {@link String}s) of the records that were actually inserted, which will
+   *     exclude any that were already in the database
+   */
+  public Set<String> merge(
+      EntityManager entityManager, int slot, List<RifRecordBase> records, MetricRegistry metrics) {
+    if (records.isEmpty()) return new HashSet<>();
+
+    Timer.Context timerMerges = metrics.timer(metricName("merges")).time();
+
+    BinaryCopyLayout layout = PostgreSqlCopyInserter.getBinaryCopyLayout(records.get(0).getClass());
+    PostgreSqlBinaryCopyBuffer headerRows = headerBuffers.get();
+    PostgreSqlBinaryCopyBuffer lineRows = lineBuffers.get();
+    headerRows.clear();
+    lineRows.clear();
+    for (RifRecordBase record : records)
+      PostgreSqlCopyInserter.writeBinaryRows(record, headerRows, lineRows);
+
+    // Make sure anything else the batch did gets written before the merge.
+    entityManager.flush();
+
+    Set<String> insertedIds = new HashSet<>();
+    Session session = entityManager.unwrap(Session.class);
+    session.doWork(
+        new Work() {
+          /** @see org.hibernate.jdbc.Work#execute(java.sql.Connection) */
+          @Override
+          public void execute(Connection connection) throws SQLException {
+            // Unwrap the pooled connection to get at the raw PostgreSQL one.
+            CopyManager copyManager = new CopyManager(connection.unwrap(BaseConnection.class));
+
+            try (Statement statement = connection.createStatement()) {
+              String headerStagingTable = getStagingTableName(layout.headerTable, slot);
+              stageRows(
+                  statement,
+                  copyManager,
+                  layout.headerTable,
+                  headerStagingTable,
+                  layout.headerColumns,
+                  headerRows,
+                  metrics);
+
+              // The header's table always goes first, as the lines have foreign keys to it.
+              try (ResultSet results =
+                  statement.executeQuery(
+                      createHeaderMergeSql(
+                          layout.headerTable,
+                          headerStagingTable,
+                          layout.headerColumns,
+                          layout.headerIdColumn))) {
+                while (results.next()) insertedIds.add(results.getString(1));
+              }
+              metrics.meter(metricName("rows")).mark(insertedIds.size());
+
+              if (layout.lineTable != null && lineRows.getRowCount() > 0) {
+                String lineStagingTable = getStagingTableName(layout.lineTable, slot);
+                stageRows(
+                    statement,
+                    copyManager,
+                    layout.lineTable,
+                    lineStagingTable,
+                    layout.lineColumns,
+                    lineRows,
+                    metrics);
+                mergeLines(
+                    connection,
+                    layout,
+                    lineStagingTable,
+                    insertedIds.size() < records.size() ? insertedIds : null,
+                    metrics);
+                statement.execute(String.format("TRUNCATE %s", quote(lineStagingTable)));
+              }
+
+              statement.execute(String.format("TRUNCATE %s", quote(headerStagingTable)));
+            }
+          }
+        });
+
+    metrics.meter(metricName("skippedRecords")).mark(records.size() - insertedIds.size());
+    timerMerges.stop();
+    return insertedIds;
+  }
+
+  /**
+   * @return the number of a set of staging tables that no other batch is currently using, which
+   *     must be handed back via {@link #releaseSlot(int)} once the caller's transaction has
+   *     committed or rolled back
+   */
+  int leaseSlot() {
+    Integer slot = freeSlots.poll();
+    if (slot == null) slot = slotCount.incrementAndGet();
+    return slot;
+  }
+
+  /**
+   * Makes the specified staging slot available to other batches again. This must not be called
+   * until the transaction that used it has committed or rolled back, as until then, its staging
+   * tables may be uncommitted DDL, or locked by its <code>TRUNCATE</code>s.
+   *
+   * @param slot the staging slot to release, as returned by {@link #leaseSlot()}
+   */
+  void releaseSlot(int slot) {
+    freeSlots.add(slot);
+  }
+
+  /**
+   * Creates the specified staging table, if it doesn't exist yet (e.g. because the batch that
+   * created it rolled back), and binary <code>COPY</code>s the specified rows into it.
+   *
+   * @param statement the {@link Statement} to use
+   * @param copyManager the {@link CopyManager} to use
+   * @param tableName the name of the real SQL table being staged for
+   * @param stagingTableName the name of the staging table to <code>COPY</code> into
+   * @param columnNames the (correctly ordered) SQL column names of the encoded rows
+   * @param rows the {@link PostgreSqlBinaryCopyBuffer} containing the rows to stage
+   * @param metrics the {@link MetricRegistry} to use
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  private void stageRows(
+      Statement statement,
+      CopyManager copyManager,
+      String tableName,
+      String stagingTableName,
+      List<String> columnNames,
+      PostgreSqlBinaryCopyBuffer rows,
+      MetricRegistry metrics)
+      throws SQLException {
+    /*
+     * Note that LIKE copies the columns, their types, and their NOT NULL
+     * constraints, but no indexes or other constraints, which is exactly
+     * what's wanted here. Whether or not the table already exists can't be
+     * cached: the transaction that created it may yet roll back.
+     */
+    statement.execute(
+        String.format(
+            "CREATE UNLOGGED TABLE IF NOT EXISTS %s (LIKE %s)",
+            quote(stagingTableName), quote(tableName)));
+
+    PostgreSqlCopyInserter.copyRows(copyManager, stagingTableName, columnNames, rows, metrics);
+  }
+
+  /**
+   * Moves the staged claim lines into the real line table, for only the specified claims, if any.
+   *
+   * @param connection the {@link Connection} to use
+   * @param layout the {@link BinaryCopyLayout} of the staged rows
+   * @param lineStagingTable the name of the line staging table
+   * @param insertedIds the IDs of the claims whose lines should be inserted, or <code>null</code>
+   *     if all of the staged claims were inserted
+   * @param metrics the {@link MetricRegistry} to use
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  private static void mergeLines(
+      Connection connection,
+      BinaryCopyLayout layout,
+      String lineStagingTable,
+      Set<String> insertedIds,
+      MetricRegistry metrics)
+      throws SQLException {
+    String mergeSql =
+        createLineMergeSql(
+            layout.lineTable,
+            lineStagingTable,
+            layout.lineColumns,
+            insertedIds != null ? layout.lineIdColumns.get(0) : null);
+    LOGGER.trace("Submitting PostgreSQL staged lines merge: '{}'.", mergeSql);
+
+    int rowCount;
+    if (insertedIds == null) {
+      try (Statement statement = connection.createStatement()) {
+        rowCount = statement.executeUpdate(mergeSql);
+      }
+    } else {
+      try (PreparedStatement statement = connection.prepareStatement(mergeSql)) {
+        Array insertedIdsArray = connection.createArrayOf("text", insertedIds.toArray());
+        statement.setArray(1, insertedIdsArray);
+        rowCount = statement.executeUpdate();
+        insertedIdsArray.free();
+      }
+    }
+    metrics.meter(metricName("rows")).mark(rowCount);
+  }
+
+  /**
+   * @param tableName the name of the real SQL header table to merge into
+   * @param stagingTableName the name of the staging table to merge from
+   * @param columnNames the SQL column names of the table
+   * @param idColumn the SQL column name of the table's primary key
+   * @return the SQL to merge the staged rows into the real table, which returns the IDs (as <code>
+   *     text</code>) of the rows that were actually inserted
+   */
+  static String createHeaderMergeSql(
+      String tableName, String stagingTableName, List<String> columnNames, String idColumn) {
+    return String.format(
+        "%s ON CONFLICT DO NOTHING RETURNING %s::text",
+        createInsertSelectSql(tableName, stagingTableName, columnNames),
+        quote(idColumn));
+  }
+
+  /**
+   * @param tableName the name of the real SQL line table to merge into
+   * @param stagingTableName the name of the staging table to merge from
+   * @param columnNames the SQL column names of the table
+   * @param parentColumn the SQL column name of the lines' parent claim, which will be limited to
+   *     the values in a <code>text[]</code> parameter, or <code>null</code> to merge all of the
+   *     staged lines
+   * @return the SQL to merge the staged rows into the real table
+   */
+  static String createLineMergeSql(
+      String tableName, String stagingTableName, List<String> columnNames, String parentColumn) {
+    StringBuilder mergeSql =
+        new StringBuilder(createInsertSelectSql(tableName, stagingTableName, columnNames));
+    if (parentColumn != null)
+      mergeSql.append(String.format(" WHERE %s::text = ANY (?)", quote(parentColumn)));
+    mergeSql.append(" ON CONFLICT DO NOTHING");
+    return mergeSql.toString();
+  }
+
+  /**
+   * @param tableName the name of the real SQL table to merge into
+   * @param stagingTableName the name of the staging table to merge from
+   * @param columnNames the SQL column names of the table
+   * @return an <code>INSERT ... SELECT</code> of all the staged rows into the real table
+   */
+  private static String createInsertSelectSql(
+      String tableName, String stagingTableName, List<String> columnNames) {
+    String columnsList = columnNames.stream().map(c -> quote(c)).collect(Collectors.joining(", "));
+    return String.format(
+        "INSERT INTO %s (%s) SELECT %s FROM %s",
+        quote(tableName), columnsList, columnsList, quote(stagingTableName));
+  }
+
+  /**
+   * @param tableName the name of the real SQL table
+   * @param slot the staging slot number
+   * @return the name of the specified SQL table's staging table, in the specified slot
+   */
+  static String getStagingTableName(String tableName, int slot) {
+    return tableName + STAGING_TABLE_INFIX + slot;
+  }
+
+  /**
+   * Drops all of the staging tables in the specified database, which must not be in use by any
+   * {@link PostgreSqlStagedMerger}s. This should be run at startup, so that staging tables from
+   * earlier runs (which may have crashed, or been made obsolete by schema changes) don't linger.
+   *
+   * @param dataSource the {@link DataSource} for the (PostgreSQL) database to clean up
+   */
+  static void dropStagingTables(DataSource dataSource) {
+    try (Connection connection = dataSource.getConnection();
+        Statement statement = connection.createStatement()) {
+      List<String> stagingTables = new ArrayList<>();
+      try (ResultSet results =
+          statement.executeQuery(
+              "SELECT c.relname FROM pg_class c"
+                  + " JOIN pg_namespace n ON n.oid = c.relnamespace"
+                  + " WHERE c.relkind = 'r' AND c.relpersistence = 'u'"
+                  + " AND n.nspname = current_schema()"
+                  + " AND c.relname ~ '"
+                  + STAGING_TABLE_INFIX
+                  + "[0-9]+$'")) {
+        while (results.next()) stagingTables.add(results.getString(1));
+      }
+
+      for (String stagingTable : stagingTables)
+        statement.execute(String.format("DROP TABLE IF EXISTS %s", quote(stagingTable)));
+      if (!stagingTables.isEmpty())
+        LOGGER.info("Dropped '{}' staging tables left by an earlier run.", stagingTables.size());
+    } catch (SQLException e) {
+      throw new IllegalStateException("Unable to drop staging tables.", e);
+    }
+  }
+
+  /**
+   * @param name the metric's name, relative to this class
+   * @return the full name of the specified metric
+   */
+  private static String metricName(String name) {
+    return MetricRegistry.name(PostgreSqlStagedMerger.class.getSimpleName(), name);
+  }
+
+  /**
+   * @param name the SQL table or column name to quote
+   * @return the specified name, quoted so that PostgreSQL won't fold its case
+   */
+  private static String quote(String name) {
+    return "\"" + name + "\"";
+  }
+}
@@ -0,0 +1,319 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import gov.cms.bfd.model.rif.Beneficiary;
+import gov.cms.bfd.model.rif.PostgreSqlBinaryCopyBuffer;
+import gov.cms.bfd.model.rif.RecordAction;
+import gov.cms.bfd.model.rif.RifRecordBase;
+import gov.cms.bfd.pipeline.rif.load.PostgreSqlCopyInserter.BinaryCopyLayout;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Handles PostgreSQL {@link RecordAction#UPDATE}s for {@link RifLoader} as set-based upserts,
+ * rather than via {@link EntityManager#merge(Object)}, which issues a <code>SELECT</code> and then
+ * an <code>UPDATE</code> for every record and claim line.
+ *
+ * <p>Each batch of records is binary <code>COPY</code>ed into temporary staging tables that mirror
+ * the real ones, which are then merged into the real tables with just a few statements per table:
+ *
+ * <ol>
+ *   <li>The header rows are upserted via <code>INSERT ... ON CONFLICT DO UPDATE</code>, which
+ *       overwrites every column of existing rows and inserts any missing ones, exactly as {@link
+ *       EntityManager#merge(Object)} would.
+ *   <li>Any existing claim lines that aren't in their updated claim are deleted, as Hibernate's
+ *       orphan removal would.
+ *   <li>The claim lines are upserted, just like the headers.
+ * </ol>
+ *
+ * <p>When {@link Beneficiary}s are updated, their current/previous state is captured as a {@link
+ * gov.cms.bfd.model.rif.BeneficiaryHistory} record first, just as {@link RifLoader} does for
+ * merged ones, though all of a batch's {@link Beneficiary}s are read with a single query.
+ *
+ * <p>The staging tables are created (per connection) on first use, and are emptied by PostgreSQL
+ * whenever their transaction commits or rolls back. A transaction may upsert more than once,
+ * though (e.g. when a batch updates the same record twice), so they're also truncated at the start
+ * of every upsert, so that each one only ever sees its own rows.
+ *
+ * <p>Instances are thread-safe.
+ */
+final class PostgreSqlUpserter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(PostgreSqlUpserter.class);
+
+  /** The initial size (in bytes) of each thread's {@link PostgreSqlBinaryCopyBuffer}s. */
+  private static final int BINARY_COPY_BUFFER_INITIAL_CAPACITY = 256 * 1024;
+
+  /** The suffix added to each SQL table's name to get the name of its staging table. */
+  private static final String STAGING_TABLE_SUFFIX = "_upserts";
+
+  private final PostgreSqlCopyInserter copyInserter;
+  private final ThreadLocal<PostgreSqlBinaryCopyBuffer> headerBuffers;
+  private final ThreadLocal<PostgreSqlBinaryCopyBuffer> lineBuffers;
+
+  /**
+   * Constructs a new {@link PostgreSqlUpserter}.
+   *
+   * @param copyInserter the {@link PostgreSqlCopyInserter} to insert any {@link
+   *     gov.cms.bfd.model.rif.BeneficiaryHistory} records with
+   */
+  PostgreSqlUpserter(PostgreSqlCopyInserter copyInserter) {
+    this.copyInserter = copyInserter;
+
+    // Each loader thread reuses its own buffers from batch to batch.
+    this.headerBuffers =
+        ThreadLocal.withInitial(
+            () -> new PostgreSqlBinaryCopyBuffer(BINARY_COPY_BUFFER_INITIAL_CAPACITY));
+    this.lineBuffers =
+        ThreadLocal.withInitial(
+            () -> new PostgreSqlBinaryCopyBuffer(BINARY_COPY_BUFFER_INITIAL_CAPACITY));
+  }
+
+  /**
+   * Upserts the specified records, along with any claim lines they have, using the specified {@link
+   * EntityManager}'s current connection and transaction. Any changes already pending in that
+   * {@link EntityManager} will be flushed first, so that the upserts happen in the expected order.
+   *
+   * @param entityManager the {@link EntityManager} to use, which must have an active transaction
+   * @param records the {@link RifRecordBase} top-level entity instances (e.g. {@link Beneficiary}s,
+   *     {@link gov.cms.bfd.model.rif.CarrierClaim}s, etc.) to upsert, which must all be of the
+   *     same type and must all have distinct IDs
+   * @param batchTimestamp the timestamp of the batch, for any {@link
+   *     gov.cms.bfd.model.rif.BeneficiaryHistory} records created
+   * @param metrics the {@link MetricRegistry} to use
+   */
+  public void upsert(
+      EntityManager entityManager,
+      List<RifRecordBase> records,
+      Date batchTimestamp,
+      MetricRegistry metrics) {
+    if (records.isEmpty()) return;
+
+    Timer.Context timerUpserts =
+        metrics.timer(MetricRegistry.name(getClass().getSimpleName(), "upserts")).time();
+
+    if (records.get(0) instanceof Beneficiary)
+      insertBeneficiaryHistories(entityManager, records, batchTimestamp, metrics);
+
+    BinaryCopyLayout layout = PostgreSqlCopyInserter.getBinaryCopyLayout(records.get(0).getClass());
+    PostgreSqlBinaryCopyBuffer headerRows = headerBuffers.get();
+    PostgreSqlBinaryCopyBuffer lineRows = lineBuffers.get();
+    headerRows.clear();
+    lineRows.clear();
+    for (RifRecordBase record : records)
+      PostgreSqlCopyInserter.writeBinaryRows(record, headerRows, lineRows);
+
+    // Make sure anything else the batch did gets written before the upserts.
+    entityManager.flush();
+
+    Session session = entityManager.unwrap(Session.class);
+    session.doWork(
+        new Work() {
+          /** @see org.hibernate.jdbc.Work#execute(java.sql.Connection) */
+          @Override
+          public void execute(Connection connection) throws SQLException {
+            // Unwrap the pooled connection to get at the raw PostgreSQL one.
+            CopyManager copyManager = new CopyManager(connection.unwrap(BaseConnection.class));
+
+            try (Statement statement = connection.createStatement()) {
+              // The header's table always goes first, as the lines have foreign keys to it.
+              stageRows(
+                  statement,
+                  copyManager,
+                  layout.headerTable,
+                  layout.headerColumns,
+                  headerRows,
+                  metrics);
+              executeUpsert(
+                  statement,
+                  layout.headerTable,
+                  layout.headerColumns,
+                  Collections.singletonList(layout.headerIdColumn),
+                  metrics);
+
+              if (layout.lineTable != null) {
+                stageRows(
+                    statement,
+                    copyManager,
+                    layout.lineTable,
+                    layout.lineColumns,
+                    lineRows,
+                    metrics);
+                executeOrphanedLinesDelete(statement, layout, metrics);
+                if (lineRows.getRowCount() > 0)
+                  executeUpsert(
+                      statement,
+                      layout.lineTable,
+                      layout.lineColumns,
+                      layout.lineIdColumns,
+                      metrics);
+              }
+            }
+          }
+        });
+
+    metrics.meter(MetricRegistry.name(getClass().getSimpleName(), "records")).mark(records.size());
+    timerUpserts.stop();
+  }
+
+  /**
+   * Inserts a {@link gov.cms.bfd.model.rif.BeneficiaryHistory} record for each of the specified
+   * {@link Beneficiary}s that already exists, capturing its state from before the upsert.
+   *
+   * @param entityManager the {@link EntityManager} to use, which must have an active transaction
+   * @param beneficiaries the {@link Beneficiary}s being upserted
+   * @param batchTimestamp the timestamp of the batch
+   * @param metrics the {@link MetricRegistry} to use
+   */
+  private void insertBeneficiaryHistories(
+      EntityManager entityManager,
+      List<RifRecordBase> beneficiaries,
+      Date batchTimestamp,
+      MetricRegistry metrics) {
+    List<String> beneficiaryIds =
+        beneficiaries.stream()
+            .map(b -> ((Beneficiary) b).getBeneficiaryId())
+            .collect(Collectors.toList());
+    List<Beneficiary> oldBeneficiaryRecords =
+        entityManager
+            .createQuery(
+                "select b from Beneficiary b where b.beneficiaryId in :beneficiaryIds",
+                Beneficiary.class)
+            .setParameter("beneficiaryIds", beneficiaryIds)
+            .getResultList();
+
+    List<RifRecordBase> beneficiaryHistories = new ArrayList<>(oldBeneficiaryRecords.size());
+    for (Beneficiary oldBeneficiaryRecord : oldBeneficiaryRecords)
+      beneficiaryHistories.add(
+          RifLoader.createBeneficiaryHistory(oldBeneficiaryRecord, batchTimestamp));
+
+    copyInserter.insert(entityManager, beneficiaryHistories, metrics);
+  }
+
+  /**
+   * Creates the specified SQL table's staging table, if needed, empties it of any rows staged by an
+   * earlier upsert in the same transaction, and binary <code>COPY</code>s the specified rows into
+   * it.
+   *
+   * @param statement the {@link Statement} to use
+   * @param copyManager the {@link CopyManager} to use
+   * @param tableName the name of the SQL table to stage rows for
+   * @param columnNames the (correctly ordered) SQL column names of the encoded rows
+   * @param rows the {@link PostgreSqlBinaryCopyBuffer} containing the rows to stage
+   * @param metrics the {@link MetricRegistry} to use
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  private static void stageRows(
+      Statement statement,
+      CopyManager copyManager,
+      String tableName,
+      List<String> columnNames,
+      PostgreSqlBinaryCopyBuffer rows,
+      MetricRegistry metrics)
+      throws SQLException {
+    statement.execute(
+        String.format(
+            "CREATE TEMPORARY TABLE IF NOT EXISTS \"%s\" (LIKE \"%s\") ON COMMIT DELETE ROWS",
+            tableName + STAGING_TABLE_SUFFIX, tableName));
+    statement.execute(String.format("TRUNCATE %s", quote(tableName + STAGING_TABLE_SUFFIX)));
+
+    if (rows.getRowCount() > 0)
+      PostgreSqlCopyInserter.copyRows(
+          copyManager, tableName + STAGING_TABLE_SUFFIX, columnNames, rows, metrics);
+  }
+
+  /**
+   * Upserts all of the specified SQL table's staged rows into it.
+   *
+   * @param statement the {@link Statement} to use
+   * @param tableName the name of the SQL table to upsert into
+   * @param columnNames the SQL column names of the table
+   * @param idColumnNames the SQL column names of the table's primary key
+   * @param metrics the {@link MetricRegistry} to use
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  private static void executeUpsert(
+      Statement statement,
+      String tableName,
+      List<String> columnNames,
+      List<String> idColumnNames,
+      MetricRegistry metrics)
+      throws SQLException {
+    String columnsList = columnNames.stream().map(c -> quote(c)).collect(Collectors.joining(", "));
+    String updatesList =
+        columnNames.stream()
+            .filter(c -> !idColumnNames.contains(c))
+            .map(c -> String.format("%s = EXCLUDED.%s", quote(c), quote(c)))
+            .collect(Collectors.joining(", "));
+    String upsertSql =
+        String.format(
+            "INSERT INTO %s (%s) SELECT %s FROM %s ON CONFLICT (%s) DO UPDATE SET %s",
+            quote(tableName),
+            columnsList,
+            columnsList,
+            quote(tableName + STAGING_TABLE_SUFFIX),
+            idColumnNames.stream().map(c -> quote(c)).collect(Collectors.joining(", ")),
+            updatesList);
+    LOGGER.trace("Submitting PostgreSQL upsert: '{}'.", upsertSql);
+
+    int rowCount = statement.executeUpdate(upsertSql);
+    metrics
+        .meter(MetricRegistry.name(PostgreSqlUpserter.class.getSimpleName(), "rows"))
+        .mark(rowCount);
+  }
+
+  /**
+   * Deletes all of the existing claim lines for the staged claims that aren't in their staged
+   * lines, i.e. that are no longer part of their claim.
+   *
+   * @param statement the {@link Statement} to use
+   * @param layout the {@link BinaryCopyLayout} of the staged rows
+   * @param metrics the {@link MetricRegistry} to use
+   * @throws SQLException Any {@link SQLException}s encountered will be bubbled up.
+   */
+  private static void executeOrphanedLinesDelete(
+      Statement statement, BinaryCopyLayout layout, MetricRegistry metrics) throws SQLException {
+    String parentColumn = quote(layout.lineIdColumns.get(0));
+    String lineNumberColumn = quote(layout.lineIdColumns.get(1));
+    String deleteSql =
+        String.format(
+            "DELETE FROM %s l USING %s h WHERE l.%s = h.%s AND NOT EXISTS"
+                + " (SELECT 1 FROM %s s WHERE s.%s = l.%s AND s.%s = l.%s)",
+            quote(layout.lineTable),
+            quote(layout.headerTable + STAGING_TABLE_SUFFIX),
+            parentColumn,
+            quote(layout.headerIdColumn),
+            quote(layout.lineTable + STAGING_TABLE_SUFFIX),
+            parentColumn,
+            parentColumn,
+            lineNumberColumn,
+            lineNumberColumn);
+    LOGGER.trace("Submitting PostgreSQL orphaned lines delete: '{}'.", deleteSql);
+
+    int rowCount = statement.executeUpdate(deleteSql);
+    metrics
+        .meter(MetricRegistry.name(PostgreSqlUpserter.class.getSimpleName(), "linesDeleted"))
+        .mark(rowCount);
+  }
+
+  /**
+   * @param name the SQL table or column name to quote
+   * @return the specified name, quoted so that PostgreSQL won't fold its case
+   */
+  private static String quote(String name) {
+    return "\"" + name + "\"";
+  }
+}
@@ -5,13 +5,8 @@ import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.justdavis.karl.misc.exceptions.BadCodeMonkeyException;
 import com.zaxxer.hikari.HikariDataSource;
-import com.zaxxer.hikari.pool.HikariProxyConnection;
 import gov.cms.bfd.model.rif.Beneficiary;
-import gov.cms.bfd.model.rif.BeneficiaryCsvWriter;
 import gov.cms.bfd.model.rif.BeneficiaryHistory;
-import gov.cms.bfd.model.rif.CarrierClaim;
-import gov.cms.bfd.model.rif.CarrierClaimCsvWriter;
-import gov.cms.bfd.model.rif.CarrierClaimLine;
 import gov.cms.bfd.model.rif.LoadedBatch;
 import gov.cms.bfd.model.rif.LoadedBatchBuilder;
 import gov.cms.bfd.model.rif.LoadedFile;
@@ -22,56 +17,57 @@ import gov.cms.bfd.model.rif.RifFileType;
 import gov.cms.bfd.model.rif.RifFilesEvent;
 import gov.cms.bfd.model.rif.RifRecordBase;
 import gov.cms.bfd.model.rif.RifRecordEvent;
+import gov.cms.bfd.model.rif.parse.RifParsingUtils;
+import gov.cms.bfd.model.rif.parse.RifRecord;
+import gov.cms.bfd.model.rif.parse.RifRecordTokenizer;
 import gov.cms.bfd.model.rif.schema.DatabaseSchemaManager;
+import gov.cms.bfd.pipeline.rif.extract.RifRecordGroupingIterator;
+import gov.cms.bfd.pipeline.rif.load.LaneBatcher.LaneBatchConsumer;
+import gov.cms.bfd.pipeline.rif.load.LoadAppOptions.InsertStrategy;
+import gov.cms.bfd.pipeline.rif.load.PostgreSqlCopyInserter.TranscodedRows;
 import gov.cms.bfd.pipeline.rif.load.RifRecordLoadResult.LoadAction;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.security.NoSuchAlgorithmException;
-import java.security.spec.InvalidKeySpecException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.time.Instant;
-import java.time.Period;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Phaser;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import javax.crypto.SecretKey;
-import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.PBEKeySpec;
 import javax.persistence.Entity;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.Persistence;
-import javax.persistence.Table;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.metamodel.EntityType;
 import javax.sql.DataSource;
-import org.apache.commons.codec.binary.Hex;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
 import org.hibernate.Session;
 import org.hibernate.jdbc.Work;
 import org.hibernate.tool.schema.Action;
 import org.postgresql.copy.CopyManager;
-import org.postgresql.core.BaseConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -81,13 +77,35 @@ import org.slf4j.LoggerFactory;
  */
 public final class RifLoader implements AutoCloseable {
   /**
-   * The number of {@link RifRecordEvent}s that will be included in each processing batch. Note that
-   * larger batch sizes mean that more {@link RifRecordEvent}s will be held in memory
-   * simultaneously.
+   * The number of {@link RifRecordEvent}s that will be included in each processing batch, unless
+   * {@link LoadAppOptions#isAdaptiveTuningEnabled()}. Note that larger batch sizes mean that more
+   * {@link RifRecordEvent}s will be held in memory simultaneously.
    */
-  private static final int RECORD_BATCH_SIZE = 100;
+  private static final int RECORD_BATCH_SIZE = LoadTuner.DEFAULT_BATCH_SIZE;
 
-  private static final Period MAX_FILE_AGE_DAYS = Period.ofDays(40);
+  /**
+   * A rough guess at the average number of bytes per column of a RIF record, which is used to
+   * estimate the size of batches whose raw RIF records aren't available (see {@link
+   * #estimateBytes(List)}). Most RIF columns are short codes, dates, or amounts.
+   */
+  private static final int ESTIMATED_BYTES_PER_COLUMN = 8;
+
+  /** Indicates that a batch isn't in any lane (see {@link LaneBatcher}). */
+  private static final int NO_LANE = -1;
+
+  /** The smallest byte budget that any of the {@link LoadStage}s will be given. */
+  private static final long MIN_STAGE_BYTE_BUDGET = 4L * 1024 * 1024;
+
+  /**
+   * The {@link RifFileType}s that {@link #process(RifFilesEvent, Function, Consumer, Consumer)}
+   * loads before all others, as the other (claim) files' records depend on them.
+   */
+  private static final Set<RifFileType> FILE_TYPES_LOADED_FIRST =
+      Collections.unmodifiableSet(
+          EnumSet.of(
+              RifFileType.BENEFICIARY,
+              RifFileType.BENEFICIARY_HISTORY,
+              RifFileType.MEDICARE_BENEFICIARY_ID_HISTORY));
 
   private static final Logger LOGGER = LoggerFactory.getLogger(RifLoader.class);
   private static final Logger LOGGER_RECORD_COUNTS =
@@ -97,8 +115,18 @@ public final class RifLoader implements AutoCloseable {
   private final LoadAppOptions options;
   private final HikariDataSource dataSource;
   private final EntityManagerFactory entityManagerFactory;
-  private final SecretKeyFactory secretKeyFactory;
+  private final IdentifierHasher identifierHasher;
   private final RifLoaderIdleTasks idleTasks;
+  private final PostgreSqlCopyInserter postgreSqlCopyInserter;
+  private final JdbcBatchInserter jdbcBatchInserter;
+  private final PostgreSqlUpserter postgreSqlUpserter;
+  private final PostgreSqlStagedMerger postgreSqlStagedMerger;
+  private final LoadTuner loadTuner;
+  private final BulkLoadSchemaManager bulkLoadSchemaManager;
+  private final LoadedFileRetention loadedFileRetention;
+
+  /** The write {@link LoadStage} of the data set currently being loaded, if any. */
+  private volatile LoadStage activeWriteStage;
 
   /**
    * Constructs a new {@link RifLoader} instance.
@@ -115,9 +143,59 @@ public final class RifLoader implements AutoCloseable {
     DatabaseSchemaManager.createOrUpdateSchema(dataSource);
     this.entityManagerFactory = createEntityManagerFactory(dataSource);
 
-    this.secretKeyFactory = createSecretKeyFactory();
+    this.identifierHasher =
+        new IdentifierHasher(
+            options.getHicnHashIterations(),
+            options.getHicnHashPepper(),
+            IdentifierHasher.DEFAULT_CACHE_SIZE,
+            appMetrics);
+    boolean databasePostgreSql = isDatabasePostgreSql();
     this.idleTasks =
-        new RifLoaderIdleTasks(options, appMetrics, entityManagerFactory, secretKeyFactory);
+        new RifLoaderIdleTasks(
+            options, appMetrics, entityManagerFactory, identifierHasher, databasePostgreSql);
+    boolean stagedMerge = options.getInsertStrategy() == InsertStrategy.STAGED_MERGE;
+    this.postgreSqlCopyInserter =
+        (options.getInsertStrategy() == InsertStrategy.COPY || stagedMerge) && databasePostgreSql
+            ? new PostgreSqlCopyInserter(options.isBinaryCopyEnabled())
+            : null;
+    this.jdbcBatchInserter =
+        options.getInsertStrategy() == InsertStrategy.JDBC_BATCH ? new JdbcBatchInserter() : null;
+    this.postgreSqlUpserter =
+        postgreSqlCopyInserter != null ? new PostgreSqlUpserter(postgreSqlCopyInserter) : null;
+    this.postgreSqlStagedMerger =
+        stagedMerge && databasePostgreSql ? new PostgreSqlStagedMerger() : null;
+
+    /*
+     * Staging tables are only ever in use by this RifLoader, so any that are
+     * already there were left by an earlier run (which may have crashed mid-
+     * batch, or been on an older schema), whether or not it's still enabled.
+     */
+    if (databasePostgreSql) PostgreSqlStagedMerger.dropStagingTables(dataSource);
+    this.loadTuner =
+        options.isAdaptiveTuningEnabled()
+            ? new LoadTuner(
+                options.getMinLoaderThreads(),
+                options.getLoaderThreads(),
+                System::nanoTime,
+                this::applyLoaderThreads,
+                appMetrics)
+            : null;
+    this.bulkLoadSchemaManager =
+        new BulkLoadSchemaManager(dataSource, options.getLoaderThreads(), appMetrics);
+    this.loadedFileRetention = new LoadedFileRetention(dataSource, databasePostgreSql, appMetrics);
+
+    /*
+     * If an earlier bulk load crashed (or couldn't finish rebuilding), some
+     * of the secondary indexes and foreign keys will still be missing, so
+     * put them back before loading anything else, whether or not bulk loads
+     * are still enabled. If that fails, loads can still proceed without
+     * them, and they'll be retried next time.
+     */
+    try {
+      bulkLoadSchemaManager.restoreSchemaObjects();
+    } catch (RuntimeException e) {
+      LOGGER.error("Unable to restore schema objects deferred by an earlier bulk load.", e);
+    }
   }
 
   /**
@@ -150,6 +228,15 @@ public final class RifLoader implements AutoCloseable {
       dataSource.setJdbcUrl(options.getDatabaseUrl());
       dataSource.setUsername(options.getDatabaseUsername());
       dataSource.setPassword(String.valueOf(options.getDatabasePassword()));
+
+      /*
+       * Unless told otherwise, PostgreSQL's JDBC driver sends each batched
+       * statement on its own, rather than rewriting batched INSERTs into
+       * much cheaper multi-row ones.
+       */
+      if (options.getInsertStrategy() == InsertStrategy.JDBC_BATCH
+          && options.getDatabaseUrl().startsWith("jdbc:postgresql:"))
+        dataSource.addDataSourceProperty("reWriteBatchedInserts", "true");
     }
 
     dataSource.setRegisterMbeans(true);
@@ -184,57 +271,133 @@ public final class RifLoader implements AutoCloseable {
   }
 
   /**
-   * @param options the {@link LoadAppOptions} to use
-   * @return the {@link BlockingThreadPoolExecutor} to use for asynchronous load tasks
+   * @return the {@link LoadStages} to use for asynchronous load tasks, which will also become the
+   *     {@link #activeWriteStage}
    */
-  private static BlockingThreadPoolExecutor createLoadExecutor(LoadAppOptions options) {
+  private LoadStages createLoadStages() {
     /*
      * A 16 vCPU ETL server can handle 400 loader threads at less than 30%
      * CPU usage (once a steady state is hit). The biggest limit here is
-     * what the DB will allow.
+     * what the DB will allow. If the threads are being tuned, this just
+     * picks up wherever the tuning left off with the last data set, but
+     * measures its throughput afresh, so the time spent idle between data
+     * sets isn't mistaken for a slowdown.
      */
-    int threadPoolSize = options.getLoaderThreads();
+    int writeThreads =
+        loadTuner != null ? loadTuner.getLoaderThreads() : options.getLoaderThreads();
+    if (loadTuner != null) loadTuner.resetWindow();
 
     /*
-     * It's tempting to think that a large queue will improve performance,
-     * but in reality: nope. Once the ETL hits a steady state, the queue
-     * will almost always be empty, so about all it accomplishes is
-     * unnecessarily eating up a bunch of RAM when the ETL happens to be
-     * running more slowly (for whatever reason).
+     * Hashing and encoding are purely CPU-bound, so there's no point in
+     * having more threads than cores for them. Unlike the write threads,
+     * these don't hold on to database connections, so the write threads
+     * are never left waiting on anyone's hashing or encoding.
      */
-    int taskQueueSize = 10 * threadPoolSize;
-
-    LOGGER.info(
-        "Configured to load with '{}' threads, a queue of '{}', and a batch size of '{}'.",
-        options.getLoaderThreads(),
-        taskQueueSize,
-        RECORD_BATCH_SIZE);
+    int cpuThreads = Runtime.getRuntime().availableProcessors();
 
     /*
-     * I feel like a hipster using "found" code like
-     * BlockingThreadPoolExecutor: this really cool (and old) class supports
-     * our use case beautifully. It hands out tasks to multiple consumers,
-     * and allows a single producer to feed it, blocking that producer when
-     * the task queue is full.
+     * It's tempting to think that large queues will improve performance,
+     * but in reality: nope. Once the ETL hits a steady state, they'll
+     * almost always be empty, so about all they accomplish is eating up a
+     * bunch of RAM when the ETL happens to be running more slowly. The
+     * budgets are in (approximate) raw RIF bytes, which take up several
+     * times as much heap once parsed, so they're kept to a modest fraction
+     * of it. The write stage gets the largest share, as its batches are
+     * held for the length of a database transaction.
      */
-    BlockingThreadPoolExecutor loadExecutor =
-        new BlockingThreadPoolExecutor(threadPoolSize, taskQueueSize, 100, TimeUnit.MILLISECONDS);
-    return loadExecutor;
+    long maxHeap = Runtime.getRuntime().maxMemory();
+    long writeByteBudget = Math.max(MIN_STAGE_BYTE_BUDGET, maxHeap / 16);
+    long cpuByteBudget = Math.max(MIN_STAGE_BYTE_BUDGET, maxHeap / 32);
+
+    LOGGER.info(
+        "Configured to load with '{}' write threads (byte budget '{}'), '{}' hash and encode"
+            + " threads (byte budget '{}'), and a batch size of '{}'{}.",
+        writeThreads,
+        writeByteBudget,
+        cpuThreads,
+        cpuByteBudget,
+        RECORD_BATCH_SIZE,
+        loadTuner != null ? " (both adaptively tuned)" : "");
+
+    LoadStages loadStages =
+        new LoadStages(
+            new LoadStage("hash", cpuThreads, cpuByteBudget, appMetrics),
+            new LoadStage("encode", cpuThreads, cpuByteBudget, appMetrics),
+            new LoadStage("write", writeThreads, writeByteBudget, appMetrics));
+    activeWriteStage = loadStages.write;
+    return loadStages;
+  }
+
+  /**
+   * Applies a new thread count from {@link #loadTuner} to the {@link #activeWriteStage}, if there
+   * is one.
+   *
+   * @param loaderThreads the new number of write threads to use
+   */
+  private void applyLoaderThreads(int loaderThreads) {
+    LoadStage writeStage = activeWriteStage;
+    if (writeStage != null) writeStage.setThreads(loaderThreads);
+  }
+
+  /**
+   * @param rifFileType the {@link RifFileType} of the records being batched up
+   * @return the number of records to include in the next batch of the specified {@link
+   *     RifFileType}
+   */
+  private int getBatchSize(RifFileType rifFileType) {
+    return loadTuner != null ? loadTuner.getBatchSize(rifFileType) : RECORD_BATCH_SIZE;
+  }
+
+  /**
+   * Records the result of a batch: counts it in the <code>RifLoader.lockWaits</code> meter if it
+   * failed due to lock contention, and passes it along to {@link #loadTuner}, if adaptive tuning is
+   * enabled.
+   *
+   * @param rifFileType the {@link RifFileType} of the batch
+   * @param recordCount the number of records in the batch
+   * @param latencyNanos how long the batch took to commit (or fail)
+   * @param failure the error that the batch failed with, or <code>null</code> if it succeeded
+   */
+  private void tuneForBatch(
+      RifFileType rifFileType, int recordCount, long latencyNanos, Throwable failure) {
+    if (failure != null && LoadTuner.isLockContention(failure))
+      appMetrics.meter(MetricRegistry.name(getClass().getSimpleName(), "lockWaits")).mark();
+    if (loadTuner != null) loadTuner.recordBatch(rifFileType, recordCount, latencyNanos, failure);
   }
 
   /**
    * @param recordAction the {@link RecordAction} of the specific record being processed
+   * @param record the specific record being processed
    * @return the {@link LoadStrategy} that should be used for the record being processed
    */
-  private LoadStrategy selectStrategy(RecordAction recordAction) {
+  private LoadStrategy selectStrategy(RecordAction recordAction, RifRecordBase record) {
     if (recordAction == RecordAction.INSERT) {
-      if (options.isIdempotencyRequired()) return LoadStrategy.INSERT_IDEMPOTENT;
+      // The merge is idempotent anyways, but can't match up records with generated IDs.
+      if (postgreSqlStagedMerger != null && !hasGeneratedId(record))
+        return LoadStrategy.INSERT_STAGED_MERGE;
+      else if (options.isIdempotencyRequired()) return LoadStrategy.INSERT_IDEMPOTENT;
+      else if (postgreSqlCopyInserter != null) return LoadStrategy.INSERT_COPY;
+      else if (jdbcBatchInserter != null) return LoadStrategy.INSERT_JDBC_BATCH;
       else return LoadStrategy.INSERT_UPDATE_NON_IDEMPOTENT;
+    } else if (recordAction == RecordAction.UPDATE
+        && postgreSqlUpserter != null
+        && !hasGeneratedId(record)) {
+      // Records with generated IDs can't be matched up for upserts.
+      return LoadStrategy.UPDATE_UPSERT;
     } else {
       return LoadStrategy.INSERT_UPDATE_NON_IDEMPOTENT;
     }
   }
 
+  /**
+   * @param record the record to check
+   * @return <code>true</code> if the specified record's ID is generated when it's inserted (rather
+   *     than being part of the RIF data), <code>false</code> if not
+   */
+  private static boolean hasGeneratedId(RifRecordBase record) {
+    return record instanceof BeneficiaryHistory;
+  }
+
   /**
    * @return <code>true</code> if {@link #entityManagerFactory} is connected to a PostgreSQL
    *     database, <code>false</code> if it is not
@@ -267,6 +430,114 @@ public final class RifLoader implements AutoCloseable {
     idleTasks.doIdleTask();
   }
 
+  /**
+   * Loads all of the RIF files in the specified data set, pushing each {@link RifRecordEvent}'s
+   * record to the database, and passing the result for each of those bundles to the specified error
+   * handler and result handler, as appropriate.
+   *
+   * <p>Files are loaded in dependency order: the beneficiary files (see {@link
+   * #FILE_TYPES_LOADED_FIRST}) are loaded first, one at a time and in the data set's order, as the
+   * claims reference the beneficiaries. Once those are done, all of the claim files are loaded at
+   * once, as their tables are independent of each other. Regardless, all of the files share the
+   * same {@link LoadStages}, and thus the same {@link LoadAppOptions#getLoaderThreads()} write
+   * threads and budget of database connections.
+   *
+   * <p>If {@link LoadAppOptions#isBeneficiaryAffinityEnabled()}, each file's records are batched
+   * up by beneficiary into lanes, each of whose batches are loaded one at a time (see {@link
+   * LaneBatcher}), and each lane's throughput is reported in the <code>
+   * RifLoader.lanes.&lt;lane&gt;.records</code> meters. Regardless, batches that fail due to lock
+   * contention are counted in the <code>RifLoader.lockWaits</code> meter.
+   *
+   * <p>If {@link LoadAppOptions#isBulkLoadEnabled()}, the database's secondary indexes and foreign
+   * keys are dropped before the data set is loaded, and rebuilt afterwards (see {@link
+   * BulkLoadSchemaManager}).
+   *
+   * @param dataSet the {@link RifFilesEvent} for the data set to be loaded
+   * @param recordsProducer produces the {@link RifFileRecords} for each of the data set's {@link
+   *     RifFileEvent}s, when it's time for that file to be loaded (possibly on a background thread)
+   * @param errorHandler the {@link Consumer} to pass each error that occurs to (possibly one error
+   *     per {@link RifRecordEvent}, if every input element fails to load), which may be run on any
+   *     thread
+   * @param resultHandler the {@link Consumer} to pass each the {@link RifRecordLoadResult} for each
+   *     of the successfully-processed input {@link RifRecordEvent}s, which may be run on any thread
+   */
+  public void process(
+      RifFilesEvent dataSet,
+      Function<RifFileEvent, RifFileRecords> recordsProducer,
+      Consumer<Throwable> errorHandler,
+      Consumer<RifRecordLoadResult> resultHandler) {
+    List<RifFileEvent> filesLoadedFirst =
+        dataSet.getFileEvents().stream()
+            .filter(f -> FILE_TYPES_LOADED_FIRST.contains(f.getFile().getFileType()))
+            .collect(Collectors.toList());
+    List<RifFileEvent> filesLoadedConcurrently =
+        dataSet.getFileEvents().stream()
+            .filter(f -> !FILE_TYPES_LOADED_FIRST.contains(f.getFile().getFileType()))
+            .collect(Collectors.toList());
+    LOGGER.info(
+        "Loading data set with '{}' beneficiary file(s) first, then '{}' claim file(s) at once.",
+        filesLoadedFirst.size(),
+        filesLoadedConcurrently.size());
+
+    Timer.Context timerBulkLoad =
+        options.isBulkLoadEnabled() ? bulkLoadSchemaManager.beginBulkLoad() : null;
+    LoadStages loadStages = createLoadStages();
+    ExecutorService fileExecutor = null;
+    try {
+      // Trim the LoadedFiles & LoadedBatches table, just once for the whole data set.
+      trimLoadedFiles(errorHandler);
+
+      for (RifFileEvent fileEvent : filesLoadedFirst)
+        loadFile(fileEvent, recordsProducer, loadStages, errorHandler, resultHandler);
+
+      if (!filesLoadedConcurrently.isEmpty()) {
+        fileExecutor = Executors.newFixedThreadPool(filesLoadedConcurrently.size());
+        List<Future<?>> fileFutures = new ArrayList<>(filesLoadedConcurrently.size());
+        for (RifFileEvent fileEvent : filesLoadedConcurrently)
+          fileFutures.add(
+              fileExecutor.submit(
+                  () -> {
+                    try {
+                      loadFile(
+                          fileEvent, recordsProducer, loadStages, errorHandler, resultHandler);
+                    } catch (Throwable e) {
+                      errorHandler.accept(e);
+                    }
+                  }));
+
+        for (Future<?> fileFuture : fileFutures) {
+          try {
+            fileFuture.get();
+          } catch (ExecutionException e) {
+            // Can't happen, as the file tasks pass along all of their errors.
+            throw new BadCodeMonkeyException(e);
+          } catch (InterruptedException e) {
+            // Interrupts should not be used on this thread, so go boom.
+            throw new RuntimeException(e);
+          }
+        }
+      }
+    } finally {
+      if (fileExecutor != null) fileExecutor.shutdownNow();
+      activeWriteStage = null;
+      loadStages.close();
+
+      /*
+       * Rebuild the indexes and foreign keys even if the load failed, as the
+       * database is all but unusable without them.
+       */
+      if (timerBulkLoad != null) {
+        try {
+          bulkLoadSchemaManager.endBulkLoad(timerBulkLoad);
+        } catch (RuntimeException e) {
+          errorHandler.accept(e);
+        }
+      }
+    }
+
+    logRecordCounts();
+  }
+
   /**
    * Consumes the input {@link Stream} of {@link RifRecordEvent}s, pushing each {@link
    * RifRecordEvent}'s record to the database, and passing the result for each of those bundles to
@@ -288,42 +559,76 @@ public final class RifLoader implements AutoCloseable {
       RifFileRecords dataToLoad,
       Consumer<Throwable> errorHandler,
       Consumer<RifRecordLoadResult> resultHandler) {
-    BlockingThreadPoolExecutor loadExecutor = createLoadExecutor(options);
+    LoadStages loadStages = createLoadStages();
+    try {
+      // Trim the LoadedFiles & LoadedBatches table
+      trimLoadedFiles(errorHandler);
+
+      processFile(dataToLoad, loadStages, errorHandler, resultHandler);
+    } finally {
+      activeWriteStage = null;
+      loadStages.close();
+    }
+
+    logRecordCounts();
+  }
+
+  /**
+   * Loads the specified file, either by transcoding its RIF records straight into PostgreSQL <code>
+   * COPY</code>s (see {@link LoadAppOptions#isCopyTranscodingEnabled()}), if that's enabled and
+   * supported for it, or by pushing each of its {@link RifRecordEvent}s to the database, otherwise.
+   *
+   * @param fileEvent the {@link RifFileEvent} to be loaded
+   * @param recordsProducer produces the {@link RifFileRecords} for the {@link RifFileEvent}, if its
+   *     records won't be transcoded
+   * @param loadStages the {@link LoadStages} to use for asynchronous load tasks, which may also be
+   *     in use by other files' loads
+   * @param errorHandler the {@link Consumer} to pass each error that occurs to
+   * @param resultHandler the {@link Consumer} to pass each the {@link RifRecordLoadResult} for each
+   *     of the successfully-processed input {@link RifRecordEvent}s
+   */
+  private void loadFile(
+      RifFileEvent fileEvent,
+      Function<RifFileEvent, RifFileRecords> recordsProducer,
+      LoadStages loadStages,
+      Consumer<Throwable> errorHandler,
+      Consumer<RifRecordLoadResult> resultHandler) {
+    Optional<CopyTranscodingLayout> transcodingLayout = Optional.empty();
+    if (options.isCopyTranscodingEnabled()
+        && options.isBinaryCopyEnabled()
+        && !options.isIdempotencyRequired()
+        && postgreSqlCopyInserter != null
+        && postgreSqlStagedMerger == null)
+      transcodingLayout = CopyTranscodingLayout.forFileType(fileEvent.getFile().getFileType());
+
+    if (transcodingLayout.isPresent())
+      processFileTranscoded(
+          fileEvent, transcodingLayout.get(), loadStages, errorHandler, resultHandler);
+    else processFile(recordsProducer.apply(fileEvent), loadStages, errorHandler, resultHandler);
+  }
 
-    MetricRegistry fileEventMetrics = dataToLoad.getSourceEvent().getEventMetrics();
+  /**
+   * Pushes each of the specified file's {@link RifRecordEvent}s to the database, via the specified
+   * (possibly shared) {@link LoadStages}, and waits for all of them to complete.
+   *
+   * @param dataToLoad the FHIR {@link RifRecordEvent}s to be loaded
+   * @param loadStages the {@link LoadStages} to use for asynchronous load tasks, which may also be
+   *     in use by other files' loads
+   * @param errorHandler the {@link Consumer} to pass each error that occurs to
+   * @param resultHandler the {@link Consumer} to pass each the {@link RifRecordLoadResult} for each
+   *     of the successfully-processed input {@link RifRecordEvent}s
+   */
+  private void processFile(
+      RifFileRecords dataToLoad,
+      LoadStages loadStages,
+      Consumer<Throwable> errorHandler,
+      Consumer<RifRecordLoadResult> resultHandler) {
     Timer.Context timerDataSetFile =
         appMetrics
             .timer(MetricRegistry.name(getClass().getSimpleName(), "dataSet", "file", "processed"))
             .time();
     LOGGER.info("Processing '{}'...", dataToLoad);
-
-    dataToLoad
-        .getSourceEvent()
-        .getEventMetrics()
-        .register(
-            MetricRegistry.name(getClass().getSimpleName(), "loadExecutorService", "queueSize"),
-            new Gauge<Integer>() {
-              /** @see com.codahale.metrics.Gauge#getValue() */
-              @Override
-              public Integer getValue() {
-                return loadExecutor.getQueue().size();
-              }
-            });
-    dataToLoad
-        .getSourceEvent()
-        .getEventMetrics()
-        .register(
-            MetricRegistry.name(getClass().getSimpleName(), "loadExecutorService", "activeBatches"),
-            new Gauge<Integer>() {
-              /** @see com.codahale.metrics.Gauge#getValue() */
-              @Override
-              public Integer getValue() {
-                return loadExecutor.getActiveCount();
-              }
-            });
-
-    // Trim the LoadedFiles & LoadedBatches table
-    trimLoadedFiles(errorHandler);
+    registerLoadExecutorGauges(dataToLoad.getSourceEvent().getEventMetrics(), loadStages.write);
 
     // Insert a LoadedFiles entry
     final long loadedFileId = insertLoadedFile(dataToLoad.getSourceEvent(), errorHandler);
@@ -343,113 +648,344 @@ public final class RifLoader implements AutoCloseable {
      * always run in a consistent manner.
      */
 
-    try (PostgreSqlCopyInserter postgresBatch =
-        new PostgreSqlCopyInserter(entityManagerFactory, fileEventMetrics)) {
-      // Define the Consumer that will handle each batch.
-      Consumer<List<RifRecordEvent<?>>> batchProcessor =
-          recordsBatch -> {
-            /*
-             * Submit the RifRecordEvent for asynchronous processing. Note
-             * that, due to the ExecutorService's configuration (see in
-             * constructor), this will block if too many tasks are already
-             * pending. That's desirable behavior, as it prevents
-             * OutOfMemoryErrors.
-             */
+    /*
+     * The loadStages may be shared with other files, so this file's
+     * batches are tracked separately, in order to know when they're done.
+     * Each batch registers itself when submitted and deregisters when
+     * complete.
+     */
+    Phaser batchesInProgress = new Phaser(1);
+
+    // Define the LaneBatchConsumer that will handle each batch, whether it's in a lane or not.
+    LaneBatchConsumer<RifRecordEvent<?>> batchProcessor =
+        (lane, recordsBatch) -> {
+          /*
+           * Submit the RifRecordEvent for asynchronous processing. Note
+           * that, due to the LoadStages' byte budgets, this will block if
+           * too much data is already pending. That's desirable behavior,
+           * as it prevents OutOfMemoryErrors.
+           */
+          batchesInProgress.register();
+          try {
             processAsync(
-                loadExecutor,
+                loadStages,
+                lane,
                 recordsBatch,
                 loadedFileId,
-                postgresBatch,
                 resultHandler,
-                errorHandler);
-          };
+                errorHandler,
+                batchesInProgress);
+          } catch (RuntimeException e) {
+            batchesInProgress.arriveAndDeregister();
+            throw e;
+          }
+        };
 
-      // Collect records into batches and submit each to batchProcessor.
-      if (RECORD_BATCH_SIZE > 1)
-        BatchSpliterator.batches(dataToLoad.getRecords(), RECORD_BATCH_SIZE)
-            .forEach(batchProcessor);
+    // Collect records into batches (sized for the file's type) and submit each to batchProcessor.
+    RifFileType rifFileType = dataToLoad.getSourceEvent().getFile().getFileType();
+    /*
+     * The records Stream holds the file open (and, for parallel parsing, a
+     * pool of parser threads), so it must always be closed once we're done
+     * with it, even if the load fails partway through.
+     */
+    try (Stream<RifRecordEvent<?>> records = dataToLoad.getRecords()) {
+      if (options.isBeneficiaryAffinityEnabled()) {
+        /*
+         * Route each record to a lane by its beneficiary, so that each
+         * beneficiary's records are only ever loaded by one transaction at a
+         * time, in order.
+         */
+        LaneBatcher<RifRecordEvent<?>> laneBatcher =
+            new LaneBatcher<>(
+                options.getLoaderThreads(),
+                RifRecordEvent::getBeneficiaryId,
+                () -> getBatchSize(rifFileType),
+                batchProcessor);
+        records.forEachOrdered(laneBatcher::add);
+        laneBatcher.flush();
+      } else if (RECORD_BATCH_SIZE > 1)
+        BatchSpliterator.batches(records, () -> getBatchSize(rifFileType))
+            .forEach(recordsBatch -> batchProcessor.accept(NO_LANE, recordsBatch));
       else
-        dataToLoad
-            .getRecords()
+        records
             .map(
                 record -> {
                   List<RifRecordEvent<?>> ittyBittyBatch = new LinkedList<>();
                   ittyBittyBatch.add(record);
                   return ittyBittyBatch;
                 })
-            .forEach(batchProcessor);
+            .forEach(recordsBatch -> batchProcessor.accept(NO_LANE, recordsBatch));
+    }
 
-      // Wait for all submitted batches to complete.
-      try {
-        loadExecutor.shutdown();
-        boolean terminatedSuccessfully = loadExecutor.awaitTermination(72, TimeUnit.HOURS);
-        if (!terminatedSuccessfully)
-          throw new IllegalStateException(
-              String.format(
-                  "%s failed to complete processing the records in time: '%s'.",
-                  this.getClass().getSimpleName(), dataToLoad));
-      } catch (InterruptedException e) {
-        // Interrupts should not be used on this thread, so go boom.
-        throw new RuntimeException(e);
-      }
+    // Wait for all submitted batches to complete.
+    awaitBatchesInProgress(batchesInProgress, dataToLoad);
 
-      // Submit the queued PostgreSQL COPY operations, if any.
-      if (!postgresBatch.isEmpty()) {
-        postgresBatch.submit();
+    LOGGER.info("Processed '{}'.", dataToLoad);
+    timerDataSetFile.stop();
+  }
+
+  /**
+   * Transcodes each of the specified file's RIF records straight into PostgreSQL <code>COPY</code>s
+   * (see {@link LoadAppOptions#isCopyTranscodingEnabled()}), via the specified (possibly shared)
+   * {@link LoadStages}, and waits for all of them to complete.
+   *
+   * <p>Only {@link RecordAction#INSERT}s are transcoded: any other records are parsed into their
+   * JPA entities and loaded as usual. As no {@link RifRecordEvent}s are built for the transcoded
+   * records, the specified result handler will only be passed results for those other records.
+   *
+   * @param fileEvent the {@link RifFileEvent} to be loaded
+   * @param transcodingLayout the {@link CopyTranscodingLayout} for the {@link RifFileEvent}
+   * @param loadStages the {@link LoadStages} to use for asynchronous load tasks, which may also be
+   *     in use by other files' loads
+   * @param errorHandler the {@link Consumer} to pass each error that occurs to
+   * @param resultHandler the {@link Consumer} to pass each the {@link RifRecordLoadResult} for each
+   *     of the successfully-processed records that weren't transcoded
+   */
+  private void processFileTranscoded(
+      RifFileEvent fileEvent,
+      CopyTranscodingLayout transcodingLayout,
+      LoadStages loadStages,
+      Consumer<Throwable> errorHandler,
+      Consumer<RifRecordLoadResult> resultHandler) {
+    Timer.Context timerDataSetFile =
+        appMetrics
+            .timer(MetricRegistry.name(getClass().getSimpleName(), "dataSet", "file", "processed"))
+            .time();
+    LOGGER.info("Processing '{}' (transcoding its records)...", fileEvent);
+    registerLoadExecutorGauges(fileEvent.getEventMetrics(), loadStages.write);
+
+    // Insert a LoadedFiles entry
+    final long loadedFileId = insertLoadedFile(fileEvent, errorHandler);
+    if (loadedFileId < 0) {
+      return; // Something went wrong, the error handler was called.
+    }
+
+    Phaser batchesInProgress = new Phaser(1);
+    try (RifRecordTokenizer tokenizer = RifParsingUtils.createRifTokenizer(fileEvent.getFile())) {
+      int[] columnIndexes = transcodingLayout.resolveColumnIndexes(tokenizer.getHeader());
+      Iterator<List<RifRecord>> recordGroups =
+          new RifRecordGroupingIterator(
+              tokenizer, transcodingLayout.getGroupingColumnIndex(columnIndexes));
+
+      // Collect the record groups into batches and submit each for processing.
+      while (recordGroups.hasNext()) {
+        int batchSize = getBatchSize(fileEvent.getFile().getFileType());
+        List<List<RifRecord>> recordGroupsBatch = new ArrayList<>(batchSize);
+        long estimatedBytes = 0;
+        while (recordGroups.hasNext() && recordGroupsBatch.size() < batchSize) {
+          List<RifRecord> recordGroup = recordGroups.next();
+          recordGroupsBatch.add(recordGroup);
+          for (RifRecord record : recordGroup) estimatedBytes += record.getRawLength() + 1;
+        }
+
+        /*
+         * Each batch is transcoded on the encode stage, which then hands
+         * the result off to the write stage (blocking if it's full, which in
+         * turn blocks this producer once the encode stage is full, too).
+         */
+        long batchBytes = estimatedBytes;
+        batchesInProgress.register();
+        try {
+          loadStages.encode.submit(
+              batchBytes,
+              () -> {
+                try {
+                  TranscodedBatch transcodedBatch =
+                      transcode(
+                          fileEvent,
+                          transcodingLayout,
+                          recordGroupsBatch,
+                          columnIndexes,
+                          loadedFileId);
+                  loadStages.write.submit(
+                      batchBytes,
+                      () -> {
+                        try {
+                          List<RifRecordLoadResult> processResults =
+                              processTranscoded(fileEvent, transcodedBatch);
+                          processResults.forEach(resultHandler::accept);
+                        } catch (Throwable e) {
+                          errorHandler.accept(e);
+                        } finally {
+                          batchesInProgress.arriveAndDeregister();
+                        }
+                      });
+                } catch (Throwable e) {
+                  errorHandler.accept(new RifLoadFailure(e));
+                  batchesInProgress.arriveAndDeregister();
+                }
+              });
+        } catch (RuntimeException e) {
+          batchesInProgress.arriveAndDeregister();
+          throw e;
+        }
       }
     }
 
-    LOGGER.info("Processed '{}'.", dataToLoad);
+    // Wait for all submitted batches to complete.
+    awaitBatchesInProgress(batchesInProgress, fileEvent);
+
+    LOGGER.info("Processed '{}'.", fileEvent);
     timerDataSetFile.stop();
+  }
 
-    logRecordCounts();
+  /**
+   * Registers the {@link Gauge}s for the specified write {@link LoadStage}, under the names that
+   * were used before loading was split into stages. (The stages also register their own, more
+   * detailed, metrics.)
+   *
+   * @param fileEventMetrics the {@link RifFileEvent#getEventMetrics()} of the file being loaded
+   * @param writeStage the write {@link LoadStage} being used to load the file
+   */
+  private void registerLoadExecutorGauges(MetricRegistry fileEventMetrics, LoadStage writeStage) {
+    fileEventMetrics.register(
+        MetricRegistry.name(getClass().getSimpleName(), "loadExecutorService", "queueSize"),
+        new Gauge<Integer>() {
+          /** @see com.codahale.metrics.Gauge#getValue() */
+          @Override
+          public Integer getValue() {
+            return writeStage.getQueuedCount();
+          }
+        });
+    fileEventMetrics.register(
+        MetricRegistry.name(getClass().getSimpleName(), "loadExecutorService", "activeBatches"),
+        new Gauge<Integer>() {
+          /** @see com.codahale.metrics.Gauge#getValue() */
+          @Override
+          public Integer getValue() {
+            return writeStage.getActiveCount();
+          }
+        });
   }
 
   /**
-   * @param loadExecutor the {@link BlockingThreadPoolExecutor} to use for asynchronous load tasks
+   * Waits for all of the batches registered with the specified {@link Phaser} to complete.
+   *
+   * @param batchesInProgress the {@link Phaser} that each of the file's batches was registered with
+   * @param dataToLoad the file being loaded, for logging purposes
+   */
+  private void awaitBatchesInProgress(Phaser batchesInProgress, Object dataToLoad) {
+    try {
+      batchesInProgress.awaitAdvanceInterruptibly(batchesInProgress.arrive(), 72, TimeUnit.HOURS);
+    } catch (TimeoutException e) {
+      throw new IllegalStateException(
+          String.format(
+              "%s failed to complete processing the records in time: '%s'.",
+              this.getClass().getSimpleName(), dataToLoad));
+    } catch (InterruptedException e) {
+      // Interrupts should not be used on this thread, so go boom.
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * @param loadStages the {@link LoadStages} to use for asynchronous load tasks
+   * @param lane the lane (see {@link LoadAppOptions#isBeneficiaryAffinityEnabled()}) that the batch
+   *     is in, whose batches must be loaded one at a time and in order, or {@link #NO_LANE}
    * @param recordsBatch the {@link RifRecordEvent}s to process
-   * @param loadedFileBuilder the builder for the {@LoadedFiled} associated with this batch
-   * @param postgresBatch the {@link PostgreSqlCopyInserter} for the current set of {@link
-   *     RifFilesEvent}s being processed
+   * @param loadedFileId the ID of the {@link LoadedFile} associated with this batch
    * @param resultHandler the {@link Consumer} to notify when the batch completes successfully
    * @param errorHandler the {@link Consumer} to notify when the batch fails for any reason
+   * @param batchesInProgress the {@link Phaser} that the batch has been registered with, which it
+   *     will arrive at (and deregister from) once it's complete
    */
   private void processAsync(
-      BlockingThreadPoolExecutor loadExecutor,
+      LoadStages loadStages,
+      int lane,
       List<RifRecordEvent<?>> recordsBatch,
       long loadedFileId,
-      PostgreSqlCopyInserter postgresBatch,
       Consumer<RifRecordLoadResult> resultHandler,
-      Consumer<Throwable> errorHandler) {
-    loadExecutor.submit(
+      Consumer<Throwable> errorHandler,
+      Phaser batchesInProgress) {
+    Runnable loadTask =
         () -> {
           try {
-            List<RifRecordLoadResult> processResults =
-                process(recordsBatch, loadedFileId, postgresBatch);
+            List<RifRecordLoadResult> processResults = process(recordsBatch, loadedFileId);
+            if (lane != NO_LANE)
+              appMetrics
+                  .meter(
+                      MetricRegistry.name(
+                          getClass().getSimpleName(), "lanes", Integer.toString(lane), "records"))
+                  .mark(recordsBatch.size());
             processResults.forEach(resultHandler::accept);
+          } catch (Throwable e) {
+            if (lane != NO_LANE && LoadTuner.isLockContention(e))
+              appMetrics
+                  .meter(
+                      MetricRegistry.name(
+                          getClass().getSimpleName(), "lanes", Integer.toString(lane), "lockWaits"))
+                  .mark();
+            errorHandler.accept(e);
+          } finally {
+            batchesInProgress.arriveAndDeregister();
+          }
+        };
+
+    long estimatedBytes = estimateBytes(recordsBatch);
+    RifFileType rifFileType = recordsBatch.get(0).getFileEvent().getFile().getFileType();
+    if (rifFileType != RifFileType.BENEFICIARY && rifFileType != RifFileType.BENEFICIARY_HISTORY) {
+      submit(loadStages.write, lane, estimatedBytes, loadTask);
+      return;
+    }
+
+    /*
+     * Beneficiary batches have their identifiers hashed first, on the hash
+     * stage, which then hands them off to the write stage (blocking if it's
+     * full, which in turn blocks this producer once the hash stage is full,
+     * too). Laned batches use the same lane on both stages, so that they
+     * reach the write stage in order.
+     */
+    submit(
+        loadStages.hash,
+        lane,
+        estimatedBytes,
+        () -> {
+          try {
+            hashIdentifiers(recordsBatch);
+            submit(loadStages.write, lane, estimatedBytes, loadTask);
           } catch (Throwable e) {
             errorHandler.accept(e);
+            batchesInProgress.arriveAndDeregister();
           }
         });
   }
 
   /**
+   * Submits the specified task to the specified {@link LoadStage}, in the specified lane, if any.
+   *
+   * @param stage the {@link LoadStage} to submit to
+   * @param lane the lane to submit the task to, or {@link #NO_LANE}
+   * @param estimatedBytes the approximate size of the data that the task will process
+   * @param task the task to run
+   */
+  private static void submit(LoadStage stage, int lane, long estimatedBytes, Runnable task) {
+    if (lane == NO_LANE) stage.submit(estimatedBytes, task);
+    else stage.submit(estimatedBytes, lane, task);
+  }
+
+  /**
+   * @param recordsBatch the {@link RifRecordEvent}s to estimate the size of
+   * @return the approximate number of bytes that the specified {@link RifRecordEvent}s took up in
+   *     their RIF file, which is only a rough guess based on the number of columns in their {@link
+   *     RifFileType}, as their raw RIF records are long gone by now
+   */
+  private static long estimateBytes(List<RifRecordEvent<?>> recordsBatch) {
+    RifFileType rifFileType = recordsBatch.get(0).getFileEvent().getFile().getFileType();
+    int columnCount = rifFileType.getColumnEnum().getEnumConstants().length;
+    return (long) recordsBatch.size() * columnCount * ESTIMATED_BYTES_PER_COLUMN;
+  }
+
+  /**
+   * Hashes the beneficiary identifiers (HICNs and MBIs) of the specified {@link RifRecordEvent}s,
+   * if they're {@link Beneficiary} or {@link BeneficiaryHistory} records.
+   *
    * @param recordsBatch the {@link RifRecordEvent}s to process
-   * @param loadedFileBuilder the builder for the {@LoadedFile} associated with this batch
-   * @param postgresBatch the {@link PostgreSqlCopyInserter} for the current set of {@link
-   *     RifFilesEvent}s being processed
-   * @return the {@link RifRecordLoadResult}s that model the results of the operation
    */
-  private List<RifRecordLoadResult> process(
-      List<RifRecordEvent<?>> recordsBatch,
-      long loadedFileId,
-      PostgreSqlCopyInserter postgresBatch) {
+  private void hashIdentifiers(List<RifRecordEvent<?>> recordsBatch) {
     RifFileEvent fileEvent = recordsBatch.get(0).getFileEvent();
     MetricRegistry fileEventMetrics = fileEvent.getEventMetrics();
 
     RifFileType rifFileType = fileEvent.getFile().getFileType();
-
-    // If these are Beneficiary records, first hash their HICNs.
     if (rifFileType == RifFileType.BENEFICIARY) {
       for (RifRecordEvent<?> rifRecordEvent : recordsBatch) {
         hashBeneficiaryHicn(fileEventMetrics, rifRecordEvent);
@@ -461,6 +997,19 @@ public final class RifLoader implements AutoCloseable {
         hashBeneficiaryHistoryMbi(fileEventMetrics, rifRecordEvent);
       }
     }
+  }
+
+  /**
+   * @param recordsBatch the {@link RifRecordEvent}s to process
+   * @param loadedFileBuilder the builder for the {@LoadedFile} associated with this batch
+   * @return the {@link RifRecordLoadResult}s that model the results of the operation
+   */
+  private List<RifRecordLoadResult> process(
+      List<RifRecordEvent<?>> recordsBatch, long loadedFileId) {
+    RifFileEvent fileEvent = recordsBatch.get(0).getFileEvent();
+    MetricRegistry fileEventMetrics = fileEvent.getEventMetrics();
+
+    RifFileType rifFileType = fileEvent.getFile().getFileType();
 
     // Only one of each failure/success Timer.Contexts will be applied.
     Timer.Context timerBatchSuccess =
@@ -478,6 +1027,7 @@ public final class RifLoader implements AutoCloseable {
 
     EntityManager entityManager = null;
     EntityTransaction txn = null;
+    Integer stagingSlot = null;
 
     // TODO: refactor the following to be less of an indented mess
     try {
@@ -486,12 +1036,28 @@ public final class RifLoader implements AutoCloseable {
       txn.begin();
       List<RifRecordLoadResult> loadResults = new ArrayList<>(recordsBatch.size());
 
+      // Leased up front, as queued records may need to be merged partway through the batch.
+      if (postgreSqlStagedMerger != null) stagingSlot = postgreSqlStagedMerger.leaseSlot();
+
       /*
        * Dev Note: All timestamps of records in the batch and the LoadedBatch must be the same for data consistency.
        * The timestamp from the LoadedBatchBuilder is used.
        */
       LoadedBatchBuilder loadedBatchBuilder =
           new LoadedBatchBuilder(loadedFileId, recordsBatch.size());
+      List<RifRecordBase> recordsToCopy = new ArrayList<>();
+      List<RifRecordBase> recordsToBatch = new ArrayList<>();
+      List<RifRecordBase> recordsToUpsert = new ArrayList<>();
+      Set<Object> recordIdsToUpsert = new HashSet<>();
+      List<RifRecordBase> recordsToMerge = new ArrayList<>();
+      Set<String> recordIdsToMerge = new HashSet<>();
+      List<Integer> mergeResultIndexes = new ArrayList<>();
+
+      // Check which of the batch's records have already been loaded all at once, if needed.
+      Set<Object> loadedRecordIds =
+          options.isIdempotencyRequired()
+              ? queryLoadedRecordIds(entityManager, recordsBatch, fileEventMetrics)
+              : new HashSet<>();
       for (RifRecordEvent<?> rifRecordEvent : recordsBatch) {
         RecordAction recordAction = rifRecordEvent.getRecordAction();
         RifRecordBase record = rifRecordEvent.getRecord();
@@ -504,26 +1070,68 @@ public final class RifLoader implements AutoCloseable {
         // Associate the beneficiary with this file loaded
         loadedBatchBuilder.associateBeneficiary(rifRecordEvent.getBeneficiaryId());
 
-        LoadStrategy strategy = selectStrategy(recordAction);
+        LoadStrategy strategy = selectStrategy(recordAction, record);
         LoadAction loadAction;
         if (strategy == LoadStrategy.INSERT_IDEMPOTENT) {
-          // Check to see if record already exists.
-          Timer.Context timerIdempotencyQuery =
-              fileEventMetrics
-                  .timer(MetricRegistry.name(getClass().getSimpleName(), "idempotencyQueries"))
-                  .time();
+          /*
+           * Adding the ID also catches any records that are repeated within the batch. Records
+           * with generated IDs can't have been loaded already, as they don't have IDs yet.
+           */
           Object recordId = entityManagerFactory.getPersistenceUnitUtil().getIdentifier(record);
-          Objects.requireNonNull(recordId);
-          Object recordInDb = entityManager.find(record.getClass(), recordId);
-          timerIdempotencyQuery.close();
-
-          if (recordInDb == null) {
+          if (hasGeneratedId(record) || loadedRecordIds.add(recordId)) {
+            // New records can be inserted as efficiently as they would be otherwise.
             loadAction = LoadAction.INSERTED;
-            entityManager.persist(record);
-            Object recordInDbAfterUpdate = entityManager.find(record.getClass(), recordId);
+            if (postgreSqlCopyInserter != null) recordsToCopy.add(record);
+            else if (jdbcBatchInserter != null) recordsToBatch.add(record);
+            else entityManager.persist(record);
           } else {
             loadAction = LoadAction.DID_NOTHING;
+            fileEventMetrics
+                .meter(MetricRegistry.name(getClass().getSimpleName(), "idempotencySkips"))
+                .mark(1);
           }
+        } else if (strategy == LoadStrategy.INSERT_STAGED_MERGE) {
+          /*
+           * These are all merged together, below, which decides their LoadActions. Records that
+           * are repeated within the batch are skipped here, as a single INSERT can't handle them.
+           */
+          String recordId =
+              String.valueOf(entityManagerFactory.getPersistenceUnitUtil().getIdentifier(record));
+          if (recordIdsToMerge.add(recordId)) {
+            recordsToMerge.add(record);
+            mergeResultIndexes.add(loadResults.size());
+            loadResults.add(null);
+            continue;
+          }
+
+          loadAction = LoadAction.DID_NOTHING;
+          fileEventMetrics
+              .meter(MetricRegistry.name(getClass().getSimpleName(), "idempotencySkips"))
+              .mark(1);
+        } else if (strategy == LoadStrategy.INSERT_COPY) {
+          // These are all inserted together, below.
+          loadAction = LoadAction.INSERTED;
+          recordsToCopy.add(record);
+        } else if (strategy == LoadStrategy.INSERT_JDBC_BATCH) {
+          // These are all inserted together, below.
+          loadAction = LoadAction.INSERTED;
+          recordsToBatch.add(record);
+        } else if (strategy == LoadStrategy.UPDATE_UPSERT) {
+          // These are all upserted together, below.
+          loadAction = LoadAction.UPDATED;
+          queueUpsert(
+              entityManager,
+              stagingSlot,
+              recordsBatch,
+              recordsToCopy,
+              recordsToMerge,
+              mergeResultIndexes,
+              loadResults,
+              recordsToUpsert,
+              recordIdsToUpsert,
+              record,
+              loadedBatchBuilder.getTimestamp(),
+              fileEventMetrics);
         } else if (strategy == LoadStrategy.INSERT_UPDATE_NON_IDEMPOTENT) {
           if (rifRecordEvent.getRecordAction().equals(RecordAction.INSERT)) {
             loadAction = LoadAction.INSERTED;
@@ -556,22 +1164,38 @@ public final class RifLoader implements AutoCloseable {
 
         loadResults.add(new RifRecordLoadResult(rifRecordEvent, loadAction));
       }
+      insertQueuedRecords(
+          entityManager,
+          stagingSlot,
+          recordsBatch,
+          recordsToCopy,
+          recordsToMerge,
+          mergeResultIndexes,
+          loadResults,
+          fileEventMetrics);
+      if (!recordsToBatch.isEmpty())
+        jdbcBatchInserter.insert(entityManager, recordsToBatch, fileEventMetrics);
+      if (!recordsToUpsert.isEmpty())
+        postgreSqlUpserter.upsert(
+            entityManager, recordsToUpsert, loadedBatchBuilder.getTimestamp(), fileEventMetrics);
       LoadedBatch loadedBatch = loadedBatchBuilder.build();
       entityManager.persist(loadedBatch);
 
       txn.commit();
 
       // Update the metrics now that things have been pushed.
-      timerBatchSuccess.stop();
+      long latencyNanos = timerBatchSuccess.stop();
       timerBatchTypeSuccess.stop();
+      tuneForBatch(rifFileType, recordsBatch.size(), latencyNanos, null);
 
       return loadResults;
     } catch (Throwable t) {
-      timerBundleFailure.stop();
+      long latencyNanos = timerBundleFailure.stop();
       fileEventMetrics
           .meter(MetricRegistry.name(getClass().getSimpleName(), "recordBatches", "failed"))
           .mark(1);
       LOGGER.warn("Failed to load '{}' record.", rifFileType, t);
+      tuneForBatch(rifFileType, recordsBatch.size(), latencyNanos, t);
 
       throw new RifLoadFailure(recordsBatch, t);
     } finally {
@@ -592,10 +1216,377 @@ public final class RifLoader implements AutoCloseable {
         throw new RifLoadFailure(recordsBatch, t);
       }
 
+      /*
+       * The staging slot can only be reused once the transaction is over.
+       * (If the rollback failed, the slot may still be locked, so it's
+       * abandoned, and a new one will be created in its place.)
+       */
+      if (stagingSlot != null) postgreSqlStagedMerger.releaseSlot(stagingSlot);
       if (entityManager != null) entityManager.close();
     }
   }
 
+  /**
+   * Does the CPU-heavy part of loading a batch of transcoded records, without needing a database
+   * connection: parses each of the record groups' {@link RecordAction}s, transcodes the {@link
+   * RecordAction#INSERT}s straight into binary <code>COPY</code> rows, and parses any others into
+   * their JPA entities. The result is then loaded by {@link #processTranscoded(RifFileEvent,
+   * TranscodedBatch)}.
+   *
+   * @param fileEvent the {@link RifFileEvent} being loaded
+   * @param transcodingLayout the {@link CopyTranscodingLayout} for the {@link RifFileEvent}
+   * @param recordGroups the grouped {@link RifRecord}s for each of the claims or events to process
+   * @param columnIndexes the file's resolved column indexes
+   * @param loadedFileId the ID of the {@link LoadedFile} associated with this batch
+   * @return the {@link TranscodedBatch} for the specified record groups
+   */
+  private TranscodedBatch transcode(
+      RifFileEvent fileEvent,
+      CopyTranscodingLayout transcodingLayout,
+      List<List<RifRecord>> recordGroups,
+      int[] columnIndexes,
+      long loadedFileId) {
+    // As in the entity path, the whole batch shares the LoadedBatch's timestamp.
+    LoadedBatchBuilder loadedBatchBuilder =
+        new LoadedBatchBuilder(loadedFileId, recordGroups.size());
+    List<List<RifRecord>> recordGroupsToCopy = new ArrayList<>(recordGroups.size());
+    List<RifRecordEvent<RifRecordBase>> recordsToUpdate = new ArrayList<>();
+    for (List<RifRecord> recordGroup : recordGroups) {
+      RecordAction recordAction = transcodingLayout.parseRecordAction(recordGroup, columnIndexes);
+      String beneficiaryId = transcodingLayout.parseBeneficiaryId(recordGroup, columnIndexes);
+
+      // Associate the beneficiary with this file loaded
+      loadedBatchBuilder.associateBeneficiary(beneficiaryId);
+
+      if (recordAction == RecordAction.INSERT) {
+        // These are all transcoded and inserted together, below.
+        recordGroupsToCopy.add(recordGroup);
+      } else if (recordAction == RecordAction.UPDATE) {
+        // Updates can't be COPYed directly, so these are parsed and upserted, later.
+        RifRecordBase record = transcodingLayout.parseRif(recordGroup, columnIndexes);
+        record.setLastUpdated(loadedBatchBuilder.getTimestamp());
+        recordsToUpdate.add(
+            new RifRecordEvent<RifRecordBase>(fileEvent, recordAction, beneficiaryId, record));
+      } else {
+        throw new BadCodeMonkeyException(
+            String.format("Unhandled %s: '%s'.", RecordAction.class, recordAction));
+      }
+    }
+
+    TranscodedRows transcodedRows =
+        postgreSqlCopyInserter.transcode(
+            transcodingLayout,
+            recordGroupsToCopy,
+            columnIndexes,
+            loadedBatchBuilder.getTimestamp());
+    return new TranscodedBatch(loadedBatchBuilder, transcodedRows, recordsToUpdate);
+  }
+
+  /**
+   * @param fileEvent the {@link RifFileEvent} being loaded
+   * @param transcodedBatch the {@link TranscodedBatch} to load, as produced by {@link
+   *     #transcode(RifFileEvent, CopyTranscodingLayout, List, int[], long)}
+   * @return the {@link RifRecordLoadResult}s for the records that weren't transcoded
+   */
+  private List<RifRecordLoadResult> processTranscoded(
+      RifFileEvent fileEvent, TranscodedBatch transcodedBatch) {
+    MetricRegistry fileEventMetrics = fileEvent.getEventMetrics();
+    RifFileType rifFileType = fileEvent.getFile().getFileType();
+    LoadedBatchBuilder loadedBatchBuilder = transcodedBatch.loadedBatchBuilder;
+    int recordCount =
+        transcodedBatch.transcodedRows.getRecordCount() + transcodedBatch.recordsToUpdate.size();
+
+    // Only one of each failure/success Timer.Contexts will be applied.
+    Timer.Context timerBatchSuccess =
+        appMetrics.timer(MetricRegistry.name(getClass().getSimpleName(), "recordBatches")).time();
+    Timer.Context timerBatchTypeSuccess =
+        fileEventMetrics
+            .timer(
+                MetricRegistry.name(
+                    getClass().getSimpleName(), "recordBatches", rifFileType.name()))
+            .time();
+    Timer.Context timerBundleFailure =
+        appMetrics
+            .timer(MetricRegistry.name(getClass().getSimpleName(), "recordBatches", "failed"))
+            .time();
+
+    EntityManager entityManager = null;
+    EntityTransaction txn = null;
+    try {
+      entityManager = entityManagerFactory.createEntityManager();
+      txn = entityManager.getTransaction();
+      txn.begin();
+      List<RifRecordLoadResult> loadResults =
+          new ArrayList<>(transcodedBatch.recordsToUpdate.size());
+
+      postgreSqlCopyInserter.insertTranscoded(
+          entityManager, transcodedBatch.transcodedRows, fileEventMetrics);
+      fileEventMetrics
+          .meter(
+              MetricRegistry.name(
+                  getClass().getSimpleName(), "records", LoadAction.INSERTED.name()))
+          .mark(transcodedBatch.transcodedRows.getRecordCount());
+
+      List<RifRecordBase> recordsToUpsert = new ArrayList<>();
+      Set<Object> recordIdsToUpsert = new HashSet<>();
+      for (RifRecordEvent<RifRecordBase> rifRecordEvent : transcodedBatch.recordsToUpdate) {
+        // These are all upserted together, below (the inserts were all COPYed, above).
+        queueUpsert(
+            entityManager,
+            null,
+            Collections.emptyList(),
+            Collections.emptyList(),
+            Collections.emptyList(),
+            Collections.emptyList(),
+            loadResults,
+            recordsToUpsert,
+            recordIdsToUpsert,
+            rifRecordEvent.getRecord(),
+            loadedBatchBuilder.getTimestamp(),
+            fileEventMetrics);
+        fileEventMetrics
+            .meter(
+                MetricRegistry.name(
+                    getClass().getSimpleName(), "records", LoadAction.UPDATED.name()))
+            .mark(1);
+        loadResults.add(new RifRecordLoadResult(rifRecordEvent, LoadAction.UPDATED));
+      }
+      postgreSqlUpserter.upsert(
+          entityManager, recordsToUpsert, loadedBatchBuilder.getTimestamp(), fileEventMetrics);
+      LoadedBatch loadedBatch = loadedBatchBuilder.build();
+      entityManager.persist(loadedBatch);
+
+      txn.commit();
+
+      // Update the metrics now that things have been pushed.
+      long latencyNanos = timerBatchSuccess.stop();
+      timerBatchTypeSuccess.stop();
+      tuneForBatch(rifFileType, recordCount, latencyNanos, null);
+
+      return loadResults;
+    } catch (Throwable t) {
+      long latencyNanos = timerBundleFailure.stop();
+      fileEventMetrics
+          .meter(MetricRegistry.name(getClass().getSimpleName(), "recordBatches", "failed"))
+          .mark(1);
+      LOGGER.warn("Failed to load '{}' record.", rifFileType, t);
+      tuneForBatch(rifFileType, recordCount, latencyNanos, t);
+
+      throw new RifLoadFailure(t);
+    } finally {
+      try {
+        if (txn != null && txn.isActive()) txn.rollback();
+      } catch (Throwable t) {
+        timerBundleFailure.stop();
+        fileEventMetrics
+            .meter(MetricRegistry.name(getClass().getSimpleName(), "recordBatches", "failed"))
+            .mark(1);
+        LOGGER.warn("Failed to load '{}' record.", rifFileType, t);
+
+        throw new RifLoadFailure(t);
+      }
+
+      if (entityManager != null) entityManager.close();
+    }
+  }
+
+  /**
+   * Inserts the specified records via {@link #postgreSqlStagedMerger}, and fills in their {@link
+   * RifRecordLoadResult}s, based on which of them were actually inserted.
+   *
+   * @param entityManager the {@link EntityManager} to use
+   * @param stagingSlot the staging slot leased for the {@link EntityManager}'s transaction
+   * @param recordsBatch the {@link RifRecordEvent}s being loaded
+   * @param recordsToMerge the {@link RifRecordBase}s to merge, which must all have distinct IDs
+   * @param mergeResultIndexes the index in <code>recordsBatch</code> (and <code>loadResults</code>)
+   *     of each of the <code>recordsToMerge</code>
+   * @param loadResults the batch's {@link RifRecordLoadResult}s, with <code>null</code>s at each of
+   *     the <code>mergeResultIndexes</code>, to be replaced
+   * @param metrics the {@link MetricRegistry} to use
+   */
+  private void mergeRecords(
+      EntityManager entityManager,
+      int stagingSlot,
+      List<RifRecordEvent<?>> recordsBatch,
+      List<RifRecordBase> recordsToMerge,
+      List<Integer> mergeResultIndexes,
+      List<RifRecordLoadResult> loadResults,
+      MetricRegistry metrics) {
+    Set<String> insertedIds =
+        postgreSqlStagedMerger.merge(entityManager, stagingSlot, recordsToMerge, metrics);
+
+    for (int i = 0; i < recordsToMerge.size(); i++) {
+      Object recordId =
+          entityManagerFactory.getPersistenceUnitUtil().getIdentifier(recordsToMerge.get(i));
+      LoadAction loadAction;
+      if (insertedIds.contains(String.valueOf(recordId))) {
+        loadAction = LoadAction.INSERTED;
+      } else {
+        loadAction = LoadAction.DID_NOTHING;
+        metrics.meter(MetricRegistry.name(getClass().getSimpleName(), "idempotencySkips")).mark(1);
+      }
+      metrics
+          .meter(MetricRegistry.name(getClass().getSimpleName(), "records", loadAction.name()))
+          .mark(1);
+
+      int resultIndex = mergeResultIndexes.get(i);
+      loadResults.set(
+          resultIndex, new RifRecordLoadResult(recordsBatch.get(resultIndex), loadAction));
+    }
+  }
+
+  /**
+   * Checks which of the specified batch's {@link RecordAction#INSERT} records are already in the
+   * database, using a single query per record type, rather than one per record. Records with
+   * generated IDs are not checked.
+   *
+   * @param entityManager the {@link EntityManager} to use
+   * @param recordsBatch the {@link RifRecordEvent}s to check
+   * @param metrics the {@link MetricRegistry} to use
+   * @return a new, mutable {@link Set} of the IDs of the batch's {@link RecordAction#INSERT}
+   *     records that are already in the database
+   */
+  private Set<Object> queryLoadedRecordIds(
+      EntityManager entityManager, List<RifRecordEvent<?>> recordsBatch, MetricRegistry metrics) {
+    Timer.Context timerIdempotencyQuery =
+        metrics.timer(MetricRegistry.name(getClass().getSimpleName(), "idempotencyQueries")).time();
+
+    Map<Class<?>, List<Object>> recordIdsByType = new HashMap<>();
+    for (RifRecordEvent<?> rifRecordEvent : recordsBatch) {
+      RifRecordBase record = rifRecordEvent.getRecord();
+      if (rifRecordEvent.getRecordAction() != RecordAction.INSERT || hasGeneratedId(record))
+        continue;
+
+      Object recordId = entityManagerFactory.getPersistenceUnitUtil().getIdentifier(record);
+      Objects.requireNonNull(recordId);
+      recordIdsByType.computeIfAbsent(record.getClass(), t -> new ArrayList<>()).add(recordId);
+    }
+
+    Set<Object> loadedRecordIds = new HashSet<>();
+    for (Map.Entry<Class<?>, List<Object>> recordIds : recordIdsByType.entrySet()) {
+      EntityType<?> entityType = entityManagerFactory.getMetamodel().entity(recordIds.getKey());
+      String idAttribute =
+          entityType.getSingularAttributes().stream()
+              .filter(a -> a.isId())
+              .findAny()
+              .get()
+              .getName();
+      String query =
+          String.format(
+              "select r.%s from %s r where r.%s in :recordIds",
+              idAttribute, entityType.getName(), idAttribute);
+      loadedRecordIds.addAll(
+          entityManager
+              .createQuery(query, Object.class)
+              .setParameter("recordIds", recordIds.getValue())
+              .getResultList());
+    }
+
+    timerIdempotencyQuery.stop();
+    return loadedRecordIds;
+  }
+
+  /**
+   * Inserts the batch's queued records, if any: those to be merged by {@link
+   * #postgreSqlStagedMerger} (filling in their {@link RifRecordLoadResult}s), and then those to be
+   * inserted by {@link #postgreSqlCopyInserter}. Both queues are emptied.
+   *
+   * @param entityManager the {@link EntityManager} to use
+   * @param stagingSlot the staging slot leased for the {@link EntityManager}'s transaction, or
+   *     <code>null</code> if there are no records to merge
+   * @param recordsBatch the {@link RifRecordEvent}s being loaded
+   * @param recordsToCopy the records that are queued to be inserted via <code>COPY</code>
+   * @param recordsToMerge the records that are queued to be merged
+   * @param mergeResultIndexes the index in <code>recordsBatch</code> (and <code>loadResults</code>)
+   *     of each of the <code>recordsToMerge</code>
+   * @param loadResults the batch's {@link RifRecordLoadResult}s so far
+   * @param metrics the {@link MetricRegistry} to use
+   */
+  private void insertQueuedRecords(
+      EntityManager entityManager,
+      Integer stagingSlot,
+      List<RifRecordEvent<?>> recordsBatch,
+      List<RifRecordBase> recordsToCopy,
+      List<RifRecordBase> recordsToMerge,
+      List<Integer> mergeResultIndexes,
+      List<RifRecordLoadResult> loadResults,
+      MetricRegistry metrics) {
+    if (!recordsToMerge.isEmpty()) {
+      mergeRecords(
+          entityManager,
+          stagingSlot,
+          recordsBatch,
+          recordsToMerge,
+          mergeResultIndexes,
+          loadResults,
+          metrics);
+      recordsToMerge.clear();
+      mergeResultIndexes.clear();
+    }
+    if (!recordsToCopy.isEmpty()) {
+      postgreSqlCopyInserter.insert(entityManager, recordsToCopy, metrics);
+      recordsToCopy.clear();
+    }
+  }
+
+  /**
+   * Queues the specified record to be upserted by {@link #postgreSqlUpserter} along with the rest
+   * of its batch. If a record with the same ID is already queued, the queued records are upserted
+   * first, as a single upsert can't apply two changes to the same row. Any records queued to be
+   * inserted are inserted before that (see {@link #insertQueuedRecords}), so that the batch's
+   * changes are still applied in order: otherwise, an <code>INSERT</code> followed by two <code>
+   * UPDATE</code>s of the same record would be upserted first, and the <code>INSERT</code> would
+   * then fail (or, if merged, be skipped).
+   *
+   * @param entityManager the {@link EntityManager} to use
+   * @param stagingSlot the staging slot leased for the {@link EntityManager}'s transaction, or
+   *     <code>null</code> if there are no records to merge
+   * @param recordsBatch the {@link RifRecordEvent}s being loaded
+   * @param recordsToCopy the records that are queued to be inserted via <code>COPY</code>
+   * @param recordsToMerge the records that are queued to be merged
+   * @param mergeResultIndexes the index in <code>recordsBatch</code> (and <code>loadResults</code>)
+   *     of each of the <code>recordsToMerge</code>
+   * @param loadResults the batch's {@link RifRecordLoadResult}s so far
+   * @param recordsToUpsert the records that are queued to be upserted
+   * @param recordIdsToUpsert the IDs of the records that are queued to be upserted
+   * @param record the {@link RifRecordBase} to upsert
+   * @param batchTimestamp the timestamp of the batch
+   * @param metrics the {@link MetricRegistry} to use
+   */
+  private void queueUpsert(
+      EntityManager entityManager,
+      Integer stagingSlot,
+      List<RifRecordEvent<?>> recordsBatch,
+      List<RifRecordBase> recordsToCopy,
+      List<RifRecordBase> recordsToMerge,
+      List<Integer> mergeResultIndexes,
+      List<RifRecordLoadResult> loadResults,
+      List<RifRecordBase> recordsToUpsert,
+      Set<Object> recordIdsToUpsert,
+      RifRecordBase record,
+      Date batchTimestamp,
+      MetricRegistry metrics) {
+    Object recordId = entityManagerFactory.getPersistenceUnitUtil().getIdentifier(record);
+    Objects.requireNonNull(recordId);
+
+    if (!recordIdsToUpsert.add(recordId)) {
+      insertQueuedRecords(
+          entityManager,
+          stagingSlot,
+          recordsBatch,
+          recordsToCopy,
+          recordsToMerge,
+          mergeResultIndexes,
+          loadResults,
+          metrics);
+      postgreSqlUpserter.upsert(entityManager, recordsToUpsert, batchTimestamp, metrics);
+      recordsToUpsert.clear();
+      recordIdsToUpsert.clear();
+      recordIdsToUpsert.add(recordId);
+    }
+    recordsToUpsert.add(record);
+  }
+
   /**
    * Ensures that a {@link BeneficiaryHistory} record is created for the specified {@link
    * Beneficiary}, if that {@link Beneficiary} already exists and is just being updated.
@@ -610,19 +1601,30 @@ public final class RifLoader implements AutoCloseable {
         entityManager.find(Beneficiary.class, newBeneficiaryRecord.getBeneficiaryId());
 
     if (oldBeneficiaryRecord != null) {
-      BeneficiaryHistory oldBeneCopy = new BeneficiaryHistory();
-      oldBeneCopy.setBeneficiaryId(oldBeneficiaryRecord.getBeneficiaryId());
-      oldBeneCopy.setBirthDate(oldBeneficiaryRecord.getBirthDate());
-      oldBeneCopy.setHicn(oldBeneficiaryRecord.getHicn());
-      oldBeneCopy.setHicnUnhashed(oldBeneficiaryRecord.getHicnUnhashed());
-      oldBeneCopy.setSex(oldBeneficiaryRecord.getSex());
-      oldBeneCopy.setMedicareBeneficiaryId(oldBeneficiaryRecord.getMedicareBeneficiaryId());
-      oldBeneCopy.setLastUpdated(batchTimestamp);
-
-      entityManager.persist(oldBeneCopy);
+      entityManager.persist(createBeneficiaryHistory(oldBeneficiaryRecord, batchTimestamp));
     }
   }
 
+  /**
+   * @param oldBeneficiaryRecord the current/previous state of a {@link Beneficiary} that is being
+   *     updated
+   * @param batchTimestamp the timestamp of the batch
+   * @return a new (unsaved) {@link BeneficiaryHistory} record capturing the specified {@link
+   *     Beneficiary}'s state
+   */
+  static BeneficiaryHistory createBeneficiaryHistory(
+      Beneficiary oldBeneficiaryRecord, Date batchTimestamp) {
+    BeneficiaryHistory oldBeneCopy = new BeneficiaryHistory();
+    oldBeneCopy.setBeneficiaryId(oldBeneficiaryRecord.getBeneficiaryId());
+    oldBeneCopy.setBirthDate(oldBeneficiaryRecord.getBirthDate());
+    oldBeneCopy.setHicn(oldBeneficiaryRecord.getHicn());
+    oldBeneCopy.setHicnUnhashed(oldBeneficiaryRecord.getHicnUnhashed());
+    oldBeneCopy.setSex(oldBeneficiaryRecord.getSex());
+    oldBeneCopy.setMedicareBeneficiaryId(oldBeneficiaryRecord.getMedicareBeneficiaryId());
+    oldBeneCopy.setLastUpdated(batchTimestamp);
+    return oldBeneCopy;
+  }
+
   /**
    * Insert the LoadedFile into the database
    *
@@ -670,46 +1672,13 @@ public final class RifLoader implements AutoCloseable {
   }
 
   /**
-   * Trim the LoadedFiles and LoadedBatches tables if necessary
+   * Trim the LoadedFiles and LoadedBatches tables if necessary (see {@link LoadedFileRetention})
    *
    * @param errorHandler is called on exceptions
    */
   private void trimLoadedFiles(Consumer<Throwable> errorHandler) {
     try {
-      EntityManager em = entityManagerFactory.createEntityManager();
-      EntityTransaction txn = null;
-      try {
-        txn = em.getTransaction();
-        txn.begin();
-        final Date oldDate = Date.from(Instant.now().minus(MAX_FILE_AGE_DAYS));
-
-        em.clear(); // Must be done before JPQL statements
-        em.flush();
-        List<Long> oldIds =
-            em.createQuery("select f.loadedFileId from LoadedFile f where created < :oldDate")
-                .setParameter("oldDate", oldDate)
-                .getResultList();
-
-        if (oldIds.size() > 0) {
-          LOGGER.info("Deleting old files: {}", oldIds.size());
-          em.createQuery("delete from LoadedBatch where loadedFileId in :ids")
-              .setParameter("ids", oldIds)
-              .executeUpdate();
-          em.createQuery("delete from LoadedFile where loadedFileId in :ids")
-              .setParameter("ids", oldIds)
-              .executeUpdate();
-          txn.commit();
-        } else {
-          txn.rollback();
-        }
-      } finally {
-        if (em != null && em.isOpen()) {
-          if (txn != null && txn.isActive()) {
-            txn.rollback();
-          }
-          em.close();
-        }
-      }
+      loadedFileRetention.trim(Instant.now());
     } catch (Exception ex) {
       errorHandler.accept(ex);
     }
@@ -778,7 +1747,7 @@ public final class RifLoader implements AutoCloseable {
     // set the unhashed Hicn
     beneficiary.setHicnUnhashed(Optional.of(beneficiary.getHicn()));
     // set the hashed Hicn
-    beneficiary.setHicn(computeHicnHash(options, secretKeyFactory, beneficiary.getHicn()));
+    beneficiary.setHicn(identifierHasher.computeIdentifierHash(beneficiary.getHicn()));
 
     timerHashing.stop();
   }
@@ -808,7 +1777,7 @@ public final class RifLoader implements AutoCloseable {
         .getMedicareBeneficiaryId()
         .ifPresent(
             mbi -> {
-              String mbiHash = computeMbiHash(options, secretKeyFactory, mbi);
+              String mbiHash = identifierHasher.computeIdentifierHash(mbi);
               beneficiary.setMbiHash(Optional.of(mbiHash));
             });
 
@@ -842,7 +1811,7 @@ public final class RifLoader implements AutoCloseable {
 
     // set the hashed Hicn
     beneficiaryHistory.setHicn(
-        computeHicnHash(options, secretKeyFactory, beneficiaryHistory.getHicn()));
+        identifierHasher.computeIdentifierHash(beneficiaryHistory.getHicn()));
 
     timerHashing.stop();
   }
@@ -873,86 +1842,13 @@ public final class RifLoader implements AutoCloseable {
         .getMedicareBeneficiaryId()
         .ifPresent(
             mbi -> {
-              String mbiHash = computeMbiHash(options, secretKeyFactory, mbi);
+              String mbiHash = identifierHasher.computeIdentifierHash(mbi);
               beneficiaryHistory.setMbiHash(Optional.of(mbiHash));
             });
 
     timerHashing.stop();
   }
 
-  /** @return a new {@link SecretKeyFactory} for the <code>PBKDF2WithHmacSHA256</code> algorithm */
-  static SecretKeyFactory createSecretKeyFactory() {
-    try {
-      return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-    } catch (NoSuchAlgorithmException e) {
-      throw new IllegalStateException(e);
-    }
-  }
-
-  /**
-   * Computes a one-way cryptographic hash of the specified HICN value. This is used as a secure
-   * means of identifying Medicare beneficiaries between the Blue Button API frontend and backend
-   * systems: the HICN is the only unique beneficiary identifier shared between those two systems.
-   *
-   * @param options the {@link LoadAppOptions} to use
-   * @param secretKeyFactory the {@link SecretKeyFactory} to use
-   * @param hicn the Medicare beneficiary HICN to be hashed
-   * @return a one-way cryptographic hash of the specified HICN value, exactly 64 characters long
-   */
-  static String computeHicnHash(
-      LoadAppOptions options, SecretKeyFactory secretKeyFactory, String hicn) {
-    return computeIdentifierHash(options, secretKeyFactory, hicn);
-  }
-
-  /**
-   * Computes a one-way cryptographic hash of the specified MBI value.
-   *
-   * @param options the {@link LoadAppOptions} to use
-   * @param secretKeyFactory the {@link SecretKeyFactory} to use
-   * @param mbi the Medicare beneficiary id to be hashed
-   * @return a one-way cryptographic hash of the specified MBI value, exactly 64 characters long
-   */
-  static String computeMbiHash(
-      LoadAppOptions options, SecretKeyFactory secretKeyFactory, String mbi) {
-    return computeIdentifierHash(options, secretKeyFactory, mbi);
-  }
-
-  private static String computeIdentifierHash(
-      LoadAppOptions options, SecretKeyFactory secretKeyFactory, String identifier) {
-    try {
-      /*
-       * Our approach here is NOT using a salt, as salts must be randomly
-       * generated for each value to be hashed and then included in
-       * plaintext with the hash results. Random salts would prevent the
-       * Blue Button API frontend systems from being able to produce equal
-       * hashes for the same identifiers. Instead, we use a secret "pepper" that
-       * is shared out-of-band with the frontend. This value MUST be kept
-       * secret.
-       *
-       * We are re-using the same pepper between HICNs and MBIs
-       */
-      byte[] salt = options.getHicnHashPepper();
-
-      /*
-       * Bigger is better here as it reduces chances of collisions, but
-       * the equivalent Python Django hashing functions used by the
-       * frontend default to this value, so we'll go with it.
-       */
-      int derivedKeyLength = 256;
-
-      /* We're reusing the same hicn hash iterations, so the algorithm is exactly the same */
-      PBEKeySpec keySpec =
-          new PBEKeySpec(
-              identifier.toCharArray(), salt, options.getHicnHashIterations(), derivedKeyLength);
-      SecretKey secret = secretKeyFactory.generateSecret(keySpec);
-      String hexEncodedHash = Hex.encodeHexString(secret.getEncoded());
-
-      return hexEncodedHash;
-    } catch (InvalidKeySpecException e) {
-      throw new BadCodeMonkeyException(e);
-    }
-  }
-
   /** @see java.lang.AutoCloseable#close() */
   @Override
   public void close() {
@@ -961,281 +1857,87 @@ public final class RifLoader implements AutoCloseable {
     if (this.dataSource != null && !this.dataSource.isClosed()) this.dataSource.close();
   }
 
-  /**
-   * Provides the state tracking and logic needed for {@link RifLoader} to handle PostgreSQL {@link
-   * RecordAction#INSERT}s via the use of PostgreSQL's non-standard {@link CopyManager} APIs.
-   *
-   * <p>In <a href="https://www.postgresql.org/docs/9.6/static/populate.html">PostgreSQL 9.6 Manual:
-   * Populating a Database</a>, this is recommended as the fastest way to insert large amounts of
-   * data. However, real-world testing with Blue Button data has shown that to be not be exactly
-   * true: highly parallelized <code>INSERT</code>s (e.g. hundreds of simultaneous connections) can
-   * actually be about 18% faster. Even still, this code may eventually be useful for some
-   * situations, so we'll keep it around.
-   */
-  private static final class PostgreSqlCopyInserter implements AutoCloseable {
-    private final EntityManagerFactory entityManagerFactory;
-    private final MetricRegistry metrics;
-    private final List<CsvPrinterBundle> csvPrinterBundles;
+  /** Enumerates the {@link RifLoader} record handling strategies. */
+  private static enum LoadStrategy {
+    INSERT_IDEMPOTENT,
 
-    /**
-     * Constructs a new {@link PostgreSqlCopyInserter} instance.
-     *
-     * @param entityManagerFactory the {@link EntityManagerFactory} to use
-     * @param metrics the {@link MetricRegistry} to use
-     */
-    public PostgreSqlCopyInserter(
-        EntityManagerFactory entityManagerFactory, MetricRegistry metrics) {
-      this.entityManagerFactory = entityManagerFactory;
-      this.metrics = metrics;
-
-      List<CsvPrinterBundle> csvPrinters = new LinkedList<>();
-      csvPrinters.add(createCsvPrinter(Beneficiary.class));
-      csvPrinters.add(createCsvPrinter(CarrierClaim.class));
-      csvPrinters.add(createCsvPrinter(CarrierClaimLine.class));
-      this.csvPrinterBundles = csvPrinters;
-    }
+    INSERT_STAGED_MERGE,
 
-    /**
-     * @param entityType the JPA {@link Entity} to create a {@link CSVPrinter} for
-     * @return the {@link CSVPrinter} for the specified SQL table
-     */
-    private CsvPrinterBundle createCsvPrinter(Class<?> entityType) {
-      Table tableAnnotation = entityType.getAnnotation(Table.class);
-      String tableName = tableAnnotation.name().replaceAll("`", "");
+    INSERT_COPY,
 
-      CSVFormat baseCsvFormat = CSVFormat.DEFAULT;
+    INSERT_JDBC_BATCH,
 
-      try {
-        CsvPrinterBundle csvPrinterBundle = new CsvPrinterBundle();
-        csvPrinterBundle.tableName = tableName;
-        csvPrinterBundle.backingTempFile = File.createTempFile(tableName, ".postgreSqlCsv");
-        csvPrinterBundle.csvPrinter =
-            new CSVPrinter(new FileWriter(csvPrinterBundle.backingTempFile), baseCsvFormat);
-        return csvPrinterBundle;
-      } catch (IOException e) {
-        throw new UncheckedIOException(e);
-      } finally {
-      }
-    }
+    UPDATE_UPSERT,
 
-    /**
-     * Queues the specified {@link RifRecordEvent#getRecord()} top-level entity instance (e.g. a
-     * {@link Beneficiary}, {@link CarrierClaim}, etc.) for insertion when {@link #submit()} is
-     * called.
-     *
-     * @param record the {@link RifRecordEvent#getRecord()} top-level entity instance (e.g. a {@link
-     *     Beneficiary}, {@link CarrierClaim} , etc.) to queue for insertion
-     */
-    public void add(Object record) {
-      /*
-       * Use the auto-generated *CsvWriter helpers to convert the JPA
-       * entity to its raw field values, in a format suitable for use with
-       * PostgreSQL's CopyManager. Each Map entry will represent a single
-       * JPA table, and each Object[] in there represents a single entity
-       * instance, with the first Object[] containing the (correctly
-       * ordered) SQL column names. So, for a CarrierClaim, there will be
-       * two "CarrerClaims" Object[]s: one column header and one with the
-       * claim header values. In addition, there will be multiple
-       * "CarrierClaimLines" Objects[]: one for the column header and then
-       * one for each CarrierClaim.getLines() entry.
-       */
-      Map<String, Object[][]> csvRecordsByTable;
-      if (record instanceof Beneficiary) {
-        csvRecordsByTable = BeneficiaryCsvWriter.toCsvRecordsByTable((Beneficiary) record);
-      } else if (record instanceof CarrierClaim) {
-        csvRecordsByTable = CarrierClaimCsvWriter.toCsvRecordsByTable((CarrierClaim) record);
-      } else throw new BadCodeMonkeyException();
-
-      /*
-       * Hand off the *CsvWriter results to the appropriate
-       * CsvPrinterBundle entries.
-       */
-      for (Entry<String, Object[][]> tableRecordsEntry : csvRecordsByTable.entrySet()) {
-        String tableName = tableRecordsEntry.getKey();
-        CsvPrinterBundle tablePrinterBundle =
-            csvPrinterBundles.stream().filter(b -> tableName.equals(b.tableName)).findAny().get();
-
-        // Set the column header if it hasn't been yet.
-        if (tablePrinterBundle.columnNames == null) {
-          Object[] columnNamesAsObjects = tableRecordsEntry.getValue()[0];
-          String[] columnNames =
-              Arrays.copyOf(columnNamesAsObjects, columnNamesAsObjects.length, String[].class);
-          tablePrinterBundle.columnNames = columnNames;
-        }
-
-        /*
-         * Write out each Object[] entity row to the temp CSV for the
-         * appropriate SQL table. These HAVE to be written out now, as
-         * there isn't enough RAM to store all of them in memory until
-         * submit() gets called.
-         */
-        for (int recordIndex = 1;
-            recordIndex < tableRecordsEntry.getValue().length;
-            recordIndex++) {
-          Object[] csvRecord = tableRecordsEntry.getValue()[recordIndex];
-          tablePrinterBundle.recordsPrinted.getAndIncrement();
-
-          try {
-            /*
-             * This will be called by multiple loader threads
-             * (possibly hundreds), so it must be synchronized to
-             * ensure that writes aren't corrupted. This isn't the
-             * most efficient possible strategy, but has proven to
-             * not be a bottleneck.
-             */
-            synchronized (tablePrinterBundle.csvPrinter) {
-              tablePrinterBundle.csvPrinter.printRecord(csvRecord);
-            }
-          } catch (IOException e) {
-            throw new UncheckedIOException(e);
-          }
-        }
-      }
-    }
+    INSERT_UPDATE_NON_IDEMPOTENT;
+  }
 
-    /**
-     * @return <code>true</code> if {@link #add(Object)} hasn't been called yet, <code>false</code>
-     *     if it has
-     */
-    public boolean isEmpty() {
-      return !csvPrinterBundles.stream()
-          .filter(b -> b.recordsPrinted.get() > 0)
-          .findAny()
-          .isPresent();
-    }
+  /**
+   * The {@link LoadStage}s that {@link RifLoader} pushes each batch of records through, each of
+   * which has its own threads and byte budget:
+   *
+   * <ol>
+   *   <li>Parsing happens before any of these, on whichever threads produce the records (e.g. the
+   *       parsing threads of {@link gov.cms.bfd.pipeline.rif.extract.RifFilesProcessor}), which
+   *       block when the first stage is full.
+   *   <li>{@link #hash}: hashes the identifiers of beneficiary records. Other records skip it.
+   *   <li>{@link #encode}: transcodes claim records into binary <code>COPY</code> rows, when that's
+   *       enabled. Other records skip it.
+   *   <li>{@link #write}: writes each batch to the database, in its own transaction.
+   * </ol>
+   *
+   * <p>If none of the stages are busy, the bottleneck is parsing (or downloading).
+   */
+  private static final class LoadStages implements AutoCloseable {
+    final LoadStage hash;
+    final LoadStage encode;
+    final LoadStage write;
 
     /**
-     * Uses PostgreSQL's {@link CopyManager} API to bulk-insert all of the JPA entities that have
-     * been queued via {@link #add(Object)}.
-     *
-     * <p>Note: this is an <em>efficient</em> operation, but still not necessarily a <em>fast</em>
-     * one: it can take hours to run for large amounts of data.
+     * @param hash the value to use for {@link #hash}
+     * @param encode the value to use for {@link #encode}
+     * @param write the value to use for {@link #write}
      */
-    public void submit() {
-      Timer.Context submitTimer =
-          metrics
-              .timer(
-                  MetricRegistry.name(
-                      getClass().getSimpleName(), "postgresSqlBatches", "submitted"))
-              .time();
-
-      EntityManager entityManager = null;
-      try {
-        entityManager = entityManagerFactory.createEntityManager();
-
-        /*
-         * PostgreSQL's CopyManager needs a raw PostgreSQL
-         * BaseConnection. So here we unwrap one from the EntityManager.
-         */
-        Session session = entityManager.unwrap(Session.class);
-        session.doWork(
-            new Work() {
-              /** @see org.hibernate.jdbc.Work#execute(java.sql.Connection) */
-              @Override
-              public void execute(Connection connection) throws SQLException {
-                /*
-                 * Further connection unwrapping: go from a pooled
-                 * Hikari connection to a raw PostgreSQL one.
-                 */
-                HikariProxyConnection pooledConnection = (HikariProxyConnection) connection;
-                BaseConnection postgreSqlConnection = pooledConnection.unwrap(BaseConnection.class);
-
-                /*
-                 * Use that PostgreSQL connection to construct a
-                 * CopyManager instance. Finally!
-                 */
-                CopyManager copyManager = new CopyManager(postgreSqlConnection);
-
-                /*
-                 * Run the CopyManager against each CsvPrinterBundle
-                 * with queued records.
-                 */
-                csvPrinterBundles.stream()
-                    .filter(b -> b.recordsPrinted.get() > 0)
-                    .forEach(
-                        b -> {
-                          try {
-                            LOGGER.debug(
-                                "Flushing PostgreSQL COPY queue: '{}'.", b.backingTempFile);
-                            /*
-                             * First, flush the CSVPrinter to ensure that
-                             * all queued records are available on disk.
-                             */
-                            b.csvPrinter.flush();
-
-                            /*
-                             * Crack open the queued CSV records and feed
-                             * them into the CopyManager.
-                             */
-                            Timer.Context postgresCopyTimer =
-                                metrics
-                                    .timer(
-                                        MetricRegistry.name(
-                                            getClass().getSimpleName(),
-                                            "postgresCopy",
-                                            "completed"))
-                                    .time();
-                            LOGGER.info("Submitting PostgreSQL COPY queue: '{}'...", b.tableName);
-                            FileReader reader = new FileReader(b.backingTempFile);
-                            String columnsList =
-                                Arrays.stream(b.columnNames)
-                                    .map(c -> "\"" + c + "\"")
-                                    .collect(Collectors.joining(", "));
-                            copyManager.copyIn(
-                                String.format(
-                                    "COPY \"%s\" (%s) FROM STDIN DELIMITERS ',' CSV ENCODING 'UTF8'",
-                                    b.tableName, columnsList),
-                                reader);
-                            LOGGER.info("Submitted PostgreSQL COPY queue: '{}'.", b.tableName);
-                            postgresCopyTimer.stop();
-                          } catch (Exception e) {
-                            throw new RifLoadFailure(e);
-                          }
-                        });
-              }
-            });
-      } finally {
-        if (entityManager != null) entityManager.close();
-      }
-
-      submitTimer.stop();
+    LoadStages(LoadStage hash, LoadStage encode, LoadStage write) {
+      this.hash = hash;
+      this.encode = encode;
+      this.write = write;
     }
 
     /** @see java.lang.AutoCloseable#close() */
     @Override
     public void close() {
-      csvPrinterBundles.stream()
-          .forEach(
-              b -> {
-                try {
-                  b.csvPrinter.close();
-                  b.backingTempFile.delete();
-                } catch (IOException e) {
-                  throw new UncheckedIOException(e);
-                }
-              });
+      hash.close();
+      encode.close();
+      write.close();
     }
+  }
+
+  /**
+   * A simple struct for a batch of transcoded records that has been encoded by the {@link
+   * LoadStages#encode} stage and is ready to be written.
+   */
+  private static final class TranscodedBatch {
+    final LoadedBatchBuilder loadedBatchBuilder;
+    final TranscodedRows transcodedRows;
+    final List<RifRecordEvent<RifRecordBase>> recordsToUpdate;
 
     /**
-     * A simple struct for storing all of the state and tracking information for each SQL table's
-     * {@link CSVPrinter}.
+     * @param loadedBatchBuilder the {@link LoadedBatchBuilder} for the batch
+     * @param transcodedRows the {@link TranscodedRows} for the batch's {@link
+     *     RecordAction#INSERT}s
+     * @param recordsToUpdate the parsed {@link RifRecordEvent}s for the batch's other records
      */
-    private static final class CsvPrinterBundle {
-      String tableName = null;
-      CSVPrinter csvPrinter = null;
-      File backingTempFile = null;
-      String[] columnNames = null;
-      AtomicInteger recordsPrinted = new AtomicInteger(0);
+    TranscodedBatch(
+        LoadedBatchBuilder loadedBatchBuilder,
+        TranscodedRows transcodedRows,
+        List<RifRecordEvent<RifRecordBase>> recordsToUpdate) {
+      this.loadedBatchBuilder = loadedBatchBuilder;
+      this.transcodedRows = transcodedRows;
+      this.recordsToUpdate = recordsToUpdate;
     }
   }
 
-  /** Enumerates the {@link RifLoader} record handling strategies. */
-  private static enum LoadStrategy {
-    INSERT_IDEMPOTENT,
-
-    INSERT_UPDATE_NON_IDEMPOTENT;
-  }
-
   /** Encapsulates the {@link RifLoader} record handling preferences. */
   private static final class LoadFeatures {
     private final boolean idempotencyRequired;
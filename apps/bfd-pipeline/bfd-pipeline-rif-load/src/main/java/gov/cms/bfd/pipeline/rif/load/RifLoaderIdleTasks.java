@@ -1,10 +1,10 @@
 package gov.cms.bfd.pipeline.rif.load;
 
-import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -17,8 +17,6 @@ import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import javax.crypto.SecretKeyFactory;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import org.hibernate.SessionFactory;
@@ -49,10 +47,11 @@ public class RifLoaderIdleTasks {
    *    A task can take many time slices to complete.
    *  Executor - Within a time slice, work is given to an executor.
    *    Instead of another interface, a generic Callable interface is used.
-   *  Partition - Fixup work is divide among partitions of a table.
-   *    Partitions are numbered 0 ... PARTITION_COUNT-1;
-   *    Each partition is given its own executor.
-   *  Batch - A group of records to update in one DB transaction. All records come from a single partition.
+   *  Range - Fixup work is divided among contiguous ranges of a table's keys (see KeysetRangeFixup).
+   *    Ranges are planned once, and their progress is checkpointed, so a restart resumes them.
+   *    Each unfinished range is given its own executor.
+   *  Batch - A group of records to update in one DB transaction. All records come from a single
+   *    range, and are fetched in key order, starting after the last key of the previous batch.
    */
 
   /** Time slice that a task can take before returning/yielding to the main pipeline */
@@ -64,15 +63,12 @@ public class RifLoaderIdleTasks {
   /** Max amount of time before a timeout occurs. */
   private static final int MAX_EXECUTOR_TIME_SECONDS = 300; // Allow for large table scans
 
-  /** The record count of a db update batch */
-  private static final int BATCH_COUNT = 100;
-
   /** An executor list that does no work and always completes */
   private static final List<Callable<Boolean>> NULL_EXECUTORS = Collections.emptyList();
 
   private static final Logger LOGGER = LoggerFactory.getLogger(RifLoaderIdleTasks.class);
 
-  /** The number of partitions to run by default. It is an option. */
+  /** The number of threads (and of ranges per table) to run by default. It is an option. */
   public static final int DEFAULT_PARTITION_COUNT = 20;
 
   /** Enum to tell what the current task is being executed. */
@@ -96,11 +92,11 @@ public class RifLoaderIdleTasks {
   /* Hashing entities */
   private final LoadAppOptions options;
   private final EntityManagerFactory entityManagerFactory;
-  private final SecretKeyFactory secretKeyFactory;
+  private final IdentifierHasher identifierHasher;
 
-  /* Metrics */
-  private final Meter beneficaryMeter;
-  private final Meter historyMeter;
+  /* Fixups, and their progress */
+  private final KeysetRangeFixup beneficiaryFixup;
+  private final KeysetRangeFixup historyFixup;
 
   /* Thread pool for post startup tasks */
   private final ExecutorService executorService;
@@ -114,19 +110,31 @@ public class RifLoaderIdleTasks {
    * @param options pipeline options
    * @param appMetrics pipeline metrics
    * @param entityManagerFactory a connection to the database of the pipeline
-   * @param secretKeyFactory for hashing
+   * @param identifierHasher the (caching) {@link IdentifierHasher} to compute MBI hashes with
+   * @param databasePostgreSql <code>true</code> if the database is PostgreSQL, <code>false</code>
+   *     if it is not
    */
   public RifLoaderIdleTasks(
       final LoadAppOptions options,
       final MetricRegistry appMetrics,
       final EntityManagerFactory entityManagerFactory,
-      final SecretKeyFactory secretKeyFactory) {
+      final IdentifierHasher identifierHasher,
+      final boolean databasePostgreSql) {
     this.options = options;
     this.entityManagerFactory = entityManagerFactory;
-    this.secretKeyFactory = secretKeyFactory;
-
-    this.beneficaryMeter = appMetrics.meter("fixups.beneficiary.rate");
-    this.historyMeter = appMetrics.meter("fixups.beneficiary_history.rate");
+    this.identifierHasher = identifierHasher;
+
+    this.beneficiaryFixup =
+        new KeysetRangeFixup(
+            "beneficiary", "Beneficiaries", "beneficiaryId", true, databasePostgreSql, appMetrics);
+    this.historyFixup =
+        new KeysetRangeFixup(
+            "beneficiary_history",
+            "BeneficiariesHistory",
+            "beneficiaryHistoryId",
+            false,
+            databasePostgreSql,
+            appMetrics);
 
     this.executorService = Executors.newFixedThreadPool(options.getFixupThreads());
   }
@@ -147,7 +155,10 @@ public class RifLoaderIdleTasks {
    */
   public void doIdleTask() {
     List<Callable<Boolean>> executors = getTaskExecutors(currentTask);
+    final long startNanos = System.nanoTime();
     boolean isTaskDone = doExecutors(executors);
+    KeysetRangeFixup fixup = getTaskFixup(currentTask);
+    if (fixup != null) fixup.recordWorkTime(System.nanoTime() - startNanos);
     if (isTaskDone) {
       currentTask = getNextTask();
     }
@@ -165,9 +176,9 @@ public class RifLoaderIdleTasks {
       case POST_STARTUP:
         return NULL_EXECUTORS;
       case POST_STARTUP_FIXUP_BENEFICIARIES:
-        return makeExecutorsForPartitions(this::fixupBeneficiaryExecutor);
+        return makeExecutorsForRanges(beneficiaryFixup);
       case POST_STARTUP_FIXUP_BENEFICIARY_HISTORY:
-        return makeExecutorsForPartitions(this::fixupHistoryExecutor);
+        return makeExecutorsForRanges(historyFixup);
       case NORMAL:
         return NULL_EXECUTORS;
       default:
@@ -176,14 +187,37 @@ public class RifLoaderIdleTasks {
   }
 
   /**
-   * Form a list of executors, one for each partition
+   * The fixup that a task works on.
+   *
+   * @param task to check
+   * @return the fixup of the task, or null if the task isn't a fixup
+   */
+  private KeysetRangeFixup getTaskFixup(Task task) {
+    switch (task) {
+      case POST_STARTUP_FIXUP_BENEFICIARIES:
+        return beneficiaryFixup;
+      case POST_STARTUP_FIXUP_BENEFICIARY_HISTORY:
+        return historyFixup;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Form a list of executors, one for each unfinished range of the fixup
    *
-   * @param executor for a single partition
+   * @param fixup to work on
    * @return the list of executors
    */
-  private List<Callable<Boolean>> makeExecutorsForPartitions(Function<Integer, Boolean> executor) {
-    return IntStream.range(0, options.getFixupThreads())
-        .mapToObj((partition) -> (Callable<Boolean>) () -> executor.apply(partition))
+  private List<Callable<Boolean>> makeExecutorsForRanges(final KeysetRangeFixup fixup) {
+    final List<KeysetRangeFixup.Range> ranges = new ArrayList<>();
+    doBatches(
+        session -> {
+          ranges.addAll(fixup.findPendingRanges(session));
+          return true;
+        });
+    return ranges.stream()
+        .map(range -> (Callable<Boolean>) () -> fixupRangeExecutor(fixup, range))
         .collect(Collectors.toList());
   }
 
@@ -274,49 +308,38 @@ public class RifLoaderIdleTasks {
         beneficiaryCount,
         historyCount);
 
-    return true;
-  }
+    // Resume the fixups from their checkpoints, or plan them if they're new
+    doBatches(
+        session -> {
+          beneficiaryFixup.start(session, beneficiaryCount, options.getFixupThreads());
+          historyFixup.start(session, historyCount, options.getFixupThreads());
+          return true;
+        });
 
-  /**
-   * Executor for the Beneficiaries table.
-   *
-   * @param partition to work on
-   * @return true if done with the work on this partition
-   */
-  public Boolean fixupBeneficiaryExecutor(final Integer partition) {
-    LOGGER.debug("Start a Beneficiary executor: partition {}", partition);
-    final AtomicInteger counter = new AtomicInteger(0);
-    final Boolean isDone =
-        doBatches(
-            session ->
-                fixupBatch(session, "Beneficiaries", "beneficiaryId", true, partition, counter));
-    beneficaryMeter.mark(counter.get());
-    LOGGER.debug("Finished a Beneficiary executor: {}, count {}", partition, counter.get());
-    return isDone;
+    return true;
   }
 
   /**
-   * Executor for the BeneficiariesHistory table.
+   * Executor for a single range of a fixup.
    *
-   * @param partition to work on
-   * @return true if done with the work on this partition
+   * @param fixup to work on
+   * @param range to work on
+   * @return true if done with the work on this range
    */
-  public Boolean fixupHistoryExecutor(final Integer partition) {
-    LOGGER.debug("Start a BeneficiariesHistory partition {}", partition);
+  private Boolean fixupRangeExecutor(
+      final KeysetRangeFixup fixup, final KeysetRangeFixup.Range range) {
+    LOGGER.debug("Start a {} executor: range {}", fixup.getTableName(), range.getIndex());
     final AtomicInteger counter = new AtomicInteger(0);
-    final Boolean isDone =
-        doBatches(
-            session ->
-                fixupBatch(
-                    session,
-                    "BeneficiariesHistory",
-                    "beneficiaryHistoryId",
-                    false,
-                    partition,
-                    counter));
-    historyMeter.mark(counter.get());
-    LOGGER.debug("Finished a History executor: {}, count {}", partition, counter.get());
-    return isDone;
+    try {
+      return doBatches(session -> fixupBatch(session, fixup, range, counter));
+    } finally {
+      fixup.recordRowsFixed(range, counter.get());
+      LOGGER.debug(
+          "Finished a {} executor: range {}, count {}",
+          fixup.getTableName(),
+          range.getIndex(),
+          counter.get());
+    }
   }
 
   /**
@@ -353,65 +376,27 @@ public class RifLoaderIdleTasks {
   }
 
   /**
-   * Fixup a batch of records. Executed in the context of a transaction.
+   * Fixup the next batch of records in a range, and checkpoint the range's progress. Executed in
+   * the context of a transaction.
    *
    * @param session to use
-   * @param tableName to fetch from
-   * @param idName of the table
-   * @param hasTextId is true if the id is a varchar, false if the id is a bigint
-   * @param partition to fetch from
+   * @param fixup to work on
+   * @param range to fetch from
    * @param counter to increment with the record count
-   * @return the number of records fixed up;
+   * @return true if done with the range
    */
   private boolean fixupBatch(
       final StatelessSession session,
-      final String tableName,
-      final String idName,
-      final boolean hasTextId,
-      final int partition,
+      final KeysetRangeFixup fixup,
+      final KeysetRangeFixup.Range range,
       final AtomicInteger counter) {
-    List<Object[]> rows = fetchBatchRows(session, tableName, idName, hasTextId, partition);
-    if (rows.size() == 0) return true;
-    updateBatchMbiHash(session, rows, tableName, idName, hasTextId);
+    List<Object[]> rows = fixup.fetchBatchRows(session, range);
+    if (rows.size() > 0)
+      updateBatchMbiHash(
+          session, rows, fixup.getTableName(), fixup.getIdName(), fixup.hasTextId());
+    fixup.saveCheckpoint(session, range, rows);
     counter.addAndGet(rows.size());
-    return false;
-  }
-
-  /**
-   * Fetch the rows of a batch. Each row contains the tableId and a medicareBeneficiaryId.
-   *
-   * @param session to use
-   * @param tableName to fetch from
-   * @param idName of the table
-   * @param hasTextId is true if the id is a varchar, false if the id is a bigint
-   * @param partition to fetch from
-   * @return a list of rows
-   */
-  @SuppressWarnings("unchecked")
-  private List<Object[]> fetchBatchRows(
-      final StatelessSession session,
-      final String tableName,
-      final String idName,
-      final boolean hasTextId,
-      final int partition) {
-    final String select =
-        "SELECT b.\""
-            + idName
-            + "\", b.\"medicareBeneficiaryId\" "
-            + "FROM \""
-            + tableName
-            + "\" b "
-            + "WHERE b.\"mbiHash\" IS NULL AND b.\"medicareBeneficiaryId\" IS NOT NULL AND "
-            + (hasTextId
-                ? "MOD(CAST(b.\""
-                    + idName
-                    + "\" AS numeric), "
-                    + options.getFixupThreads()
-                    + ") = "
-                    + partition
-                : "MOD(b.\"" + idName + "\", " + options.getFixupThreads() + ") = " + partition);
-
-    return session.createNativeQuery(select).setMaxResults(BATCH_COUNT).getResultList();
+    return rows.size() < KeysetRangeFixup.BATCH_COUNT;
   }
 
   /**
@@ -444,7 +429,7 @@ public class RifLoaderIdleTasks {
     for (int i = 0; i < rows.size(); i++) {
       Object[] row = rows.get(i);
       String mbi = (String) row[1];
-      String mbiHash = RifLoader.computeMbiHash(options, secretKeyFactory, mbi);
+      String mbiHash = identifierHasher.computeIdentifierHash(mbi);
       if (i > 0) update.append(",");
       update
           .append(hasTextId ? "('" : "(")
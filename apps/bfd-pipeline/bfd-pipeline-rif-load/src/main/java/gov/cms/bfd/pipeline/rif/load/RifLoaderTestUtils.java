@@ -115,14 +115,15 @@ public final class RifLoaderTestUtils {
    *     to the database server that tests should be run against
    */
   public static LoadAppOptions getLoadOptions(DataSource dataSource) {
-    return new LoadAppOptions(
-        HICN_HASH_ITERATIONS,
-        HICN_HASH_PEPPER,
-        dataSource,
-        LoadAppOptions.DEFAULT_LOADER_THREADS,
-        IDEMPOTENCY_REQUIRED,
-        FIXUPS_ENABLED,
-        RifLoaderIdleTasks.DEFAULT_PARTITION_COUNT);
+    return LoadAppOptions.builder()
+        .hicnHashIterations(HICN_HASH_ITERATIONS)
+        .hicnHashPepper(HICN_HASH_PEPPER)
+        .databaseDataSource(dataSource)
+        .loaderThreads(LoadAppOptions.DEFAULT_LOADER_THREADS)
+        .idempotencyRequired(IDEMPOTENCY_REQUIRED)
+        .fixupsEnabled(FIXUPS_ENABLED)
+        .fixupThreads(RifLoaderIdleTasks.DEFAULT_PARTITION_COUNT)
+        .build();
   }
 
   /**
@@ -0,0 +1,119 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import gov.cms.bfd.model.rif.PostgreSqlBinaryCopyBuffer;
+import gov.cms.bfd.model.rif.RifRecordBase;
+import gov.cms.bfd.model.rif.parse.RifParsingUtils;
+import gov.cms.bfd.model.rif.parse.RifRecord;
+import gov.cms.bfd.model.rif.parse.RifRecordTokenizer;
+import gov.cms.bfd.model.rif.samples.StaticRifResource;
+import gov.cms.bfd.model.rif.samples.StaticRifResourceGroup;
+import gov.cms.bfd.pipeline.rif.extract.RifRecordGroupingIterator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CopyTranscodingLayout}, which verify that transcoding RIF records straight
+ * into binary <code>COPY</code> rows produces exactly the same rows as the usual entity path:
+ * parsing them into JPA entities and then encoding those via the generated <code>
+ * *BinaryCopyWriter</code>s.
+ *
+ * <p>Note: Only the {@link StaticRifResourceGroup}s that are bundled with the code are checked
+ * here, as the others have to be downloaded from S3.
+ */
+public final class CopyTranscodingLayoutTest {
+  /**
+   * Verifies that the transcoded rows for {@link StaticRifResourceGroup#SAMPLE_A} match the entity
+   * path's, row-for-row.
+   */
+  @Test
+  public void sampleA() {
+    assertTranscodingEquivalent(StaticRifResourceGroup.SAMPLE_A);
+  }
+
+  /**
+   * Verifies that the transcoded rows for {@link StaticRifResourceGroup#SAMPLE_U} match the entity
+   * path's, row-for-row.
+   */
+  @Test
+  public void sampleU() {
+    assertTranscodingEquivalent(StaticRifResourceGroup.SAMPLE_U);
+  }
+
+  /**
+   * Verifies that the transcoded rows for {@link StaticRifResourceGroup#SAMPLE_MCT} (and its
+   * updates) match the entity path's, row-for-row.
+   */
+  @Test
+  public void sampleMct() {
+    assertTranscodingEquivalent(StaticRifResourceGroup.SAMPLE_MCT);
+    assertTranscodingEquivalent(StaticRifResourceGroup.SAMPLE_MCT_UPDATE_2);
+    assertTranscodingEquivalent(StaticRifResourceGroup.SAMPLE_MCT_UPDATE_3);
+  }
+
+  /**
+   * Transcodes each of the specified sample group's (supported) records, and verifies that the
+   * resulting rows are byte-for-byte identical to those produced by the entity path.
+   *
+   * @param sampleGroup the {@link StaticRifResourceGroup} to check
+   */
+  private static void assertTranscodingEquivalent(StaticRifResourceGroup sampleGroup) {
+    Date lastUpdated = new Date();
+    PostgreSqlBinaryCopyBuffer expectedHeaderRows = new PostgreSqlBinaryCopyBuffer(1024);
+    PostgreSqlBinaryCopyBuffer expectedLineRows = new PostgreSqlBinaryCopyBuffer(1024);
+    PostgreSqlBinaryCopyBuffer actualHeaderRows = new PostgreSqlBinaryCopyBuffer(1024);
+    PostgreSqlBinaryCopyBuffer actualLineRows = new PostgreSqlBinaryCopyBuffer(1024);
+
+    int transcodedResources = 0;
+    for (StaticRifResource sampleResource : sampleGroup.getResources()) {
+      Optional<CopyTranscodingLayout> transcodingLayout =
+          CopyTranscodingLayout.forFileType(sampleResource.getRifFileType());
+      if (!transcodingLayout.isPresent()) continue;
+      transcodedResources++;
+
+      int recordGroupCount = 0;
+      try (RifRecordTokenizer tokenizer =
+          RifParsingUtils.createRifTokenizer(sampleResource.toRifFile())) {
+        int[] columnIndexes = transcodingLayout.get().resolveColumnIndexes(tokenizer.getHeader());
+        Iterator<List<RifRecord>> recordGroups =
+            new RifRecordGroupingIterator(
+                tokenizer, transcodingLayout.get().getGroupingColumnIndex(columnIndexes));
+        while (recordGroups.hasNext()) {
+          List<RifRecord> recordGroup = recordGroups.next();
+          expectedHeaderRows.clear();
+          expectedLineRows.clear();
+          actualHeaderRows.clear();
+          actualLineRows.clear();
+
+          RifRecordBase record = transcodingLayout.get().parseRif(recordGroup, columnIndexes);
+          record.setLastUpdated(lastUpdated);
+          PostgreSqlCopyInserter.writeBinaryRows(record, expectedHeaderRows, expectedLineRows);
+          transcodingLayout
+              .get()
+              .transcodeRif(
+                  recordGroup, columnIndexes, lastUpdated, actualHeaderRows, actualLineRows);
+
+          String message =
+              String.format(
+                  "Mismatch for '%s' record '%d'.",
+                  sampleResource, recordGroup.get(0).getRecordNumber());
+          Assert.assertEquals(message, 1, actualHeaderRows.getRowCount());
+          Assert.assertEquals(
+              message, expectedHeaderRows.getContents(), actualHeaderRows.getContents());
+          Assert.assertEquals(
+              message, expectedLineRows.getRowCount(), actualLineRows.getRowCount());
+          Assert.assertEquals(
+              message, expectedLineRows.getContents(), actualLineRows.getContents());
+          recordGroupCount++;
+        }
+      }
+
+      Assert.assertEquals(sampleResource.getRecordCount(), recordGroupCount);
+    }
+
+    Assert.assertTrue(transcodedResources > 0);
+  }
+}
@@ -0,0 +1,98 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import com.codahale.metrics.MetricRegistry;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Unit tests for {@link gov.cms.bfd.pipeline.rif.load.IdentifierHasher}. */
+public final class IdentifierHasherTest {
+  /**
+   * Runs a couple of fake HICNs and MBIs through {@link
+   * IdentifierHasher#computeIdentifierHash(String)} to verify that the expected results are
+   * produced.
+   */
+  @Test
+  public void computeIdentifierHash() {
+    IdentifierHasher hasher =
+        new IdentifierHasher(
+            1000,
+            "nottherealpepper".getBytes(StandardCharsets.UTF_8),
+            IdentifierHasher.DEFAULT_CACHE_SIZE,
+            new MetricRegistry());
+
+    /*
+     * These are the samples from `dev/design-decisions-readme.md` that
+     * the frontend and backend both have tests to verify the result of.
+     */
+    Assert.assertEquals(
+        "d95a418b0942c7910fb1d0e84f900fe12e5a7fd74f312fa10730cc0fda230e9a",
+        hasher.computeIdentifierHash("123456789A"));
+    Assert.assertEquals(
+        "6357f16ebd305103cf9f2864c56435ad0de5e50f73631159772f4a4fcdfe39a5",
+        hasher.computeIdentifierHash("987654321E"));
+    Assert.assertEquals(
+        "ec49dc08f8dd8b4e189f623ab666cfc8b81f201cc94fe6aef860a4c3bd57f278",
+        hasher.computeIdentifierHash("3456789"));
+    Assert.assertEquals(
+        "742086db6bf338dedda6175ea3af8ca5e85b81fda9cc7078004a4d3e4792494b",
+        hasher.computeIdentifierHash("2456689"));
+  }
+
+  /**
+   * Verifies that {@link IdentifierHasher#computeIdentifierHash(String)} produces exactly the same
+   * hashes as the JDK's own <code>PBKDF2WithHmacSHA256</code> {@link SecretKeyFactory}, for other
+   * peppers and iteration counts, too, and even for an empty identifier.
+   *
+   * @throws GeneralSecurityException (indicates a test error)
+   */
+  @Test
+  public void matchesSecretKeyFactory() throws GeneralSecurityException {
+    SecretKeyFactory secretKeyFactory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+    for (String pepper : new String[] {"nottherealpepper", "p", "a much longer pepper value"}) {
+      byte[] pepperBytes = pepper.getBytes(StandardCharsets.UTF_8);
+      for (int iterations : new int[] {1, 2, 1000}) {
+        IdentifierHasher hasher =
+            new IdentifierHasher(
+                iterations, pepperBytes, IdentifierHasher.DEFAULT_CACHE_SIZE, new MetricRegistry());
+        for (String identifier : new String[] {"123456789A", "1EG4TE5MK73", ""}) {
+          byte[] expected =
+              secretKeyFactory
+                  .generateSecret(
+                      new PBEKeySpec(identifier.toCharArray(), pepperBytes, iterations, 256))
+                  .getEncoded();
+          Assert.assertEquals(
+              Hex.encodeHexString(expected), hasher.computeIdentifierHash(identifier));
+        }
+      }
+    }
+  }
+
+  /**
+   * Verifies that {@link IdentifierHasher#computeIdentifierHash(String)} caches its results, and
+   * evicts the least recently used ones once the cache is full.
+   */
+  @Test
+  public void cachesHashes() {
+    MetricRegistry metrics = new MetricRegistry();
+    IdentifierHasher hasher =
+        new IdentifierHasher(
+            1000, "nottherealpepper".getBytes(StandardCharsets.UTF_8), 2, metrics);
+
+    String hash = hasher.computeIdentifierHash("123456789A");
+    Assert.assertEquals(hash, hasher.computeIdentifierHash("123456789A"));
+    hasher.computeIdentifierHash("987654321E");
+    hasher.computeIdentifierHash("3456789");
+
+    // That last one should have pushed out the first HICN, so it has to be hashed again.
+    Assert.assertEquals(hash, hasher.computeIdentifierHash("123456789A"));
+
+    Assert.assertEquals(1, metrics.meter("IdentifierHasher.cacheHits").getCount());
+    Assert.assertEquals(4, metrics.meter("IdentifierHasher.cacheMisses").getCount());
+    Assert.assertEquals(4, metrics.timer("IdentifierHasher.hashes").getCount());
+  }
+}
@@ -0,0 +1,72 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import com.codahale.metrics.MetricRegistry;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Unit tests for {@link gov.cms.bfd.pipeline.rif.load.KeysetRangeFixup}. */
+public final class KeysetRangeFixupTest {
+  /** Verifies that {@link KeysetRangeFixup#splitNumericRange(long, long, int)} splits evenly. */
+  @Test
+  public void splitNumericRange() {
+    Assert.assertEquals(
+        Arrays.asList("25", "50", "75"), KeysetRangeFixup.splitNumericRange(0, 100, 4));
+    Assert.assertEquals(
+        Arrays.asList("-4", "-3", "-2"), KeysetRangeFixup.splitNumericRange(-4, -1, 4));
+
+    // Ranges too narrow to split that many ways should get fewer (but distinct) boundaries.
+    Assert.assertEquals(Arrays.asList("5"), KeysetRangeFixup.splitNumericRange(5, 6, 20));
+    Assert.assertEquals(Arrays.asList("7"), KeysetRangeFixup.splitNumericRange(7, 7, 20));
+    Assert.assertEquals(Collections.emptyList(), KeysetRangeFixup.splitNumericRange(0, 100, 1));
+
+    // The math must not overflow, even for the full range of longs.
+    Assert.assertEquals(
+        Arrays.asList("-1"), KeysetRangeFixup.splitNumericRange(Long.MIN_VALUE, Long.MAX_VALUE, 2));
+  }
+
+  /**
+   * Verifies that {@link KeysetRangeFixup#parseHistogramBounds(String)} and {@link
+   * KeysetRangeFixup#selectEvenly(java.util.List, int)} pick out text boundaries from PostgreSQL's
+   * column statistics.
+   */
+  @Test
+  public void textBoundariesFromHistogram() {
+    Assert.assertEquals(
+        Arrays.asList("-1", "10", "a b", "zz"),
+        KeysetRangeFixup.parseHistogramBounds("{-1,10,\"a b\",zz}"));
+
+    Assert.assertEquals(
+        Arrays.asList("3", "6", "9"),
+        KeysetRangeFixup.selectEvenly(
+            Arrays.asList("0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11"), 3));
+    Assert.assertEquals(
+        Arrays.asList("a", "b"), KeysetRangeFixup.selectEvenly(Arrays.asList("a", "b"), 19));
+    Assert.assertEquals(
+        Collections.emptyList(), KeysetRangeFixup.selectEvenly(Arrays.asList("a", "b"), 0));
+  }
+
+  /** Verifies that {@link KeysetRangeFixup}'s throughput and ETA math, and gauges, add up. */
+  @Test
+  public void progressEstimates() {
+    Assert.assertEquals(0.0, KeysetRangeFixup.computeRowsPerSecond(500, 0), 0.0);
+    Assert.assertEquals(250.0, KeysetRangeFixup.computeRowsPerSecond(500, 2_000_000_000L), 0.0);
+
+    Assert.assertEquals(-1, KeysetRangeFixup.computeEtaSeconds(1000, 0.0));
+    Assert.assertEquals(0, KeysetRangeFixup.computeEtaSeconds(0, 0.0));
+    Assert.assertEquals(0, KeysetRangeFixup.computeEtaSeconds(-3, 250.0));
+    Assert.assertEquals(5, KeysetRangeFixup.computeEtaSeconds(1001, 250.0));
+
+    MetricRegistry metrics = new MetricRegistry();
+    KeysetRangeFixup fixup = new KeysetRangeFixup("test", "Test", "testId", false, false, metrics);
+    KeysetRangeFixup.Range range = new KeysetRangeFixup.Range(0, null, null, null);
+    Assert.assertEquals(0.0, metrics.getGauges().get("fixups.test.rowsPerSecond").getValue());
+    fixup.recordRowsFixed(range, 400);
+    fixup.recordWorkTime(2_000_000_000L);
+    Assert.assertEquals(400L, metrics.getMeters().get("fixups.test.rate").getCount());
+    Assert.assertEquals(200.0, metrics.getGauges().get("fixups.test.rowsPerSecond").getValue());
+    Assert.assertEquals(0L, metrics.getGauges().get("fixups.test.rowsRemaining").getValue());
+    Assert.assertEquals(0L, metrics.getGauges().get("fixups.test.etaSeconds").getValue());
+  }
+}
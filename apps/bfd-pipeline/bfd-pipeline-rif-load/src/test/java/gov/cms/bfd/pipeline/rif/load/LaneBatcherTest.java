@@ -0,0 +1,73 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Unit tests for {@link gov.cms.bfd.pipeline.rif.load.LaneBatcher}. */
+public final class LaneBatcherTest {
+  /**
+   * Verifies that {@link LaneBatcher} always routes the same key to the same lane, keeps each
+   * lane's elements in their original order, and hands off every element exactly once.
+   */
+  @Test
+  public void routesKeysToStableLanes() {
+    int lanes = 4;
+    List<Integer> batchLanes = new ArrayList<>();
+    List<List<String>> batches = new ArrayList<>();
+    LaneBatcher<String> laneBatcher =
+        new LaneBatcher<>(
+            lanes,
+            e -> e.substring(0, e.indexOf(':')),
+            () -> 3,
+            (lane, batch) -> {
+              batchLanes.add(lane);
+              batches.add(batch);
+            });
+    Assert.assertEquals(lanes, laneBatcher.getLanes());
+
+    // Elements are "<beneficiaryId>:<sequence>".
+    int elementCount = 0;
+    for (int sequence = 0; sequence < 5; sequence++) {
+      for (int beneficiaryId = 0; beneficiaryId < 20; beneficiaryId++) {
+        laneBatcher.add(beneficiaryId + ":" + sequence);
+        elementCount++;
+      }
+    }
+    laneBatcher.flush();
+
+    Map<String, Integer> lanesByKey = new HashMap<>();
+    Map<String, Integer> lastSequenceByKey = new HashMap<>();
+    int handedOff = 0;
+    for (int i = 0; i < batches.size(); i++) {
+      List<String> batch = batches.get(i);
+      Assert.assertTrue(batch.size() >= 1 && batch.size() <= 3);
+      for (String element : batch) {
+        handedOff++;
+        String key = element.substring(0, element.indexOf(':'));
+        int sequence = Integer.parseInt(element.substring(element.indexOf(':') + 1));
+
+        Integer expectedLane = lanesByKey.putIfAbsent(key, batchLanes.get(i));
+        if (expectedLane != null) Assert.assertEquals(expectedLane, batchLanes.get(i));
+        Assert.assertEquals(LaneBatcher.selectLane(key, lanes), batchLanes.get(i).intValue());
+
+        Integer lastSequence = lastSequenceByKey.put(key, sequence);
+        if (lastSequence != null) Assert.assertTrue(sequence > lastSequence);
+      }
+    }
+    Assert.assertEquals(elementCount, handedOff);
+
+    // The keys should be spread across more than one lane.
+    Assert.assertTrue(lanesByKey.values().stream().distinct().count() > 1);
+  }
+
+  /** Verifies that {@link LaneBatcher#selectLane(Object, int)} handles <code>null</code> keys. */
+  @Test
+  public void selectLaneHandlesNullKeys() {
+    int lane = LaneBatcher.selectLane(null, 5);
+    Assert.assertTrue(lane >= 0 && lane < 5);
+  }
+}
@@ -0,0 +1,136 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import com.codahale.metrics.MetricRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Unit tests for {@link gov.cms.bfd.pipeline.rif.load.LoadStage}. */
+public final class LoadStageTest {
+  /**
+   * Verifies that {@link LoadStage#submit(long, Runnable)} blocks once the stage's byte budget is
+   * used up, and unblocks once enough of its tasks have completed.
+   *
+   * @throws InterruptedException (indicates a test error)
+   */
+  @Test
+  public void submitBlocksWhenBudgetIsFull() throws InterruptedException {
+    MetricRegistry metrics = new MetricRegistry();
+    try (LoadStage stage = new LoadStage("test", 2, 64 * 1024, metrics)) {
+      // Fill the budget with a task that won't finish until it's told to.
+      CountDownLatch releaseFirstTask = new CountDownLatch(1);
+      stage.submit(
+          64 * 1024,
+          () -> {
+            try {
+              releaseFirstTask.await();
+            } catch (InterruptedException e) {
+              throw new IllegalStateException(e);
+            }
+          });
+
+      // Submit another task from a separate thread, which should block.
+      CountDownLatch secondTaskRan = new CountDownLatch(1);
+      AtomicBoolean secondTaskSubmitted = new AtomicBoolean(false);
+      Thread submitter =
+          new Thread(
+              () -> {
+                stage.submit(1024, secondTaskRan::countDown);
+                secondTaskSubmitted.set(true);
+              });
+      submitter.start();
+      Assert.assertFalse(secondTaskRan.await(200, TimeUnit.MILLISECONDS));
+      Assert.assertFalse(secondTaskSubmitted.get());
+
+      // Once the first task completes, the second should be admitted and run.
+      releaseFirstTask.countDown();
+      Assert.assertTrue(secondTaskRan.await(10, TimeUnit.SECONDS));
+      submitter.join(10 * 1000);
+      Assert.assertTrue(secondTaskSubmitted.get());
+
+      Assert.assertEquals(2, metrics.timer("LoadStage.test.admissionWaits").getCount());
+      Assert.assertTrue(metrics.getGauges().containsKey("LoadStage.test.utilization"));
+    }
+  }
+
+  /**
+   * Verifies that {@link LoadStage#submit(long, Runnable)} still accepts a task that is larger than
+   * the stage's entire byte budget, rather than blocking forever.
+   *
+   * @throws InterruptedException (indicates a test error)
+   */
+  @Test
+  public void oversizedTaskIsAdmitted() throws InterruptedException {
+    try (LoadStage stage = new LoadStage("test", 1, 1024, new MetricRegistry())) {
+      CountDownLatch taskRan = new CountDownLatch(1);
+      stage.submit(10 * 1024 * 1024, taskRan::countDown);
+      Assert.assertTrue(taskRan.await(10, TimeUnit.SECONDS));
+    }
+  }
+
+  /**
+   * Verifies that {@link LoadStage#submit(long, int, Runnable)} runs each lane's tasks one at a
+   * time and in order, while still running different lanes' tasks in parallel.
+   *
+   * @throws InterruptedException (indicates a test error)
+   */
+  @Test
+  public void laneTasksRunInOrder() throws InterruptedException {
+    int lanes = 3;
+    int tasksPerLane = 50;
+    try (LoadStage stage = new LoadStage("test", 4, 64 * 1024, new MetricRegistry())) {
+      List<List<Integer>> ranByLane = new ArrayList<>();
+      List<AtomicInteger> runningByLane = new ArrayList<>();
+      for (int lane = 0; lane < lanes; lane++) {
+        ranByLane.add(Collections.synchronizedList(new ArrayList<>()));
+        runningByLane.add(new AtomicInteger());
+      }
+      AtomicBoolean overlapped = new AtomicBoolean(false);
+
+      // Hold up lane 0's first task, which must not hold up the other lanes.
+      CountDownLatch releaseLaneZero = new CountDownLatch(1);
+      CountDownLatch allTasksRan = new CountDownLatch(lanes * tasksPerLane);
+      for (int i = 0; i < tasksPerLane; i++) {
+        for (int lane = 0; lane < lanes; lane++) {
+          int taskLane = lane;
+          int taskNumber = i;
+          stage.submit(
+              1024,
+              lane,
+              () -> {
+                if (runningByLane.get(taskLane).incrementAndGet() > 1) overlapped.set(true);
+                try {
+                  if (taskLane == 0 && taskNumber == 0) releaseLaneZero.await();
+                  ranByLane.get(taskLane).add(taskNumber);
+                } catch (InterruptedException e) {
+                  throw new IllegalStateException(e);
+                } finally {
+                  runningByLane.get(taskLane).decrementAndGet();
+                  allTasksRan.countDown();
+                }
+              });
+        }
+      }
+
+      Assert.assertFalse(allTasksRan.await(200, TimeUnit.MILLISECONDS));
+      Assert.assertTrue(ranByLane.get(0).isEmpty());
+      Assert.assertEquals(tasksPerLane, ranByLane.get(1).size());
+      Assert.assertEquals(tasksPerLane, stage.getQueuedCount() + 1);
+
+      releaseLaneZero.countDown();
+      Assert.assertTrue(allTasksRan.await(10, TimeUnit.SECONDS));
+      Assert.assertFalse(overlapped.get());
+      for (int lane = 0; lane < lanes; lane++) {
+        Assert.assertEquals(tasksPerLane, ranByLane.get(lane).size());
+        for (int i = 0; i < tasksPerLane; i++)
+          Assert.assertEquals(i, ranByLane.get(lane).get(i).intValue());
+      }
+    }
+  }
+}
@@ -0,0 +1,264 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import com.codahale.metrics.MetricRegistry;
+import gov.cms.bfd.model.rif.RifFileType;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link gov.cms.bfd.pipeline.rif.load.LoadTuner}, which drive it against a {@link
+ * SimulatedDatabase}, rather than a real one, so that it can be run through hours of simulated
+ * loading in well under a second.
+ */
+public final class LoadTunerTest {
+  /**
+   * Verifies that {@link LoadTuner} grows the batch size for cheap records (e.g. PDE events), and
+   * shrinks it for expensive ones (e.g. inpatient claims), until their commit latency is within its
+   * target range.
+   */
+  @Test
+  public void batchSizesConvergeOnTargetLatency() {
+    SimulatedDatabase database = new SimulatedDatabase(8);
+    SimulatedLoad load = new SimulatedLoad(database, 4, 4);
+
+    load.run(RifFileType.PDE, TimeUnit.MINUTES.toNanos(30));
+    load.run(RifFileType.INPATIENT, TimeUnit.MINUTES.toNanos(30));
+
+    int pdeBatchSize = load.tuner.getBatchSize(RifFileType.PDE);
+    int inpatientBatchSize = load.tuner.getBatchSize(RifFileType.INPATIENT);
+    Assert.assertTrue("PDE: " + pdeBatchSize, pdeBatchSize > LoadTuner.DEFAULT_BATCH_SIZE);
+    Assert.assertTrue(
+        "Inpatient: " + inpatientBatchSize, inpatientBatchSize < LoadTuner.DEFAULT_BATCH_SIZE);
+    assertLatencyInTargetRange(database, RifFileType.PDE, pdeBatchSize, 4);
+    assertLatencyInTargetRange(database, RifFileType.INPATIENT, inpatientBatchSize, 4);
+
+    // Types that haven't been loaded yet should be left alone.
+    Assert.assertEquals(
+        LoadTuner.DEFAULT_BATCH_SIZE, load.tuner.getBatchSize(RifFileType.CARRIER));
+    Assert.assertEquals(
+        pdeBatchSize,
+        load.metrics.getGauges().get("LoadTuner.batchSize.PDE").getValue());
+  }
+
+  /**
+   * Verifies that {@link LoadTuner} settles the number of loader threads near the point where the
+   * {@link SimulatedDatabase} is saturated, whether it starts out with too few or too many.
+   */
+  @Test
+  public void loaderThreadsConvergeOnDatabaseCapacity() {
+    // Starts at 8 threads, below the capacity of 24.
+    SimulatedDatabase database = new SimulatedDatabase(24);
+    SimulatedLoad load = new SimulatedLoad(database, 1, 16);
+    load.run(RifFileType.PDE, TimeUnit.HOURS.toNanos(2));
+    assertThreadsNear(24, load.tuner.getLoaderThreads());
+    Assert.assertEquals(load.tuner.getLoaderThreads(), load.appliedThreads.get());
+
+    // Starts at 50 threads, well above the capacity of 12.
+    database = new SimulatedDatabase(12);
+    load = new SimulatedLoad(database, 1, 100);
+    load.run(RifFileType.PDE, TimeUnit.HOURS.toNanos(2));
+    assertThreadsNear(12, load.tuner.getLoaderThreads());
+
+    Assert.assertTrue(load.metrics.getMeters().containsKey("LoadTuner.decisions.threadsReversed"));
+  }
+
+  /**
+   * Verifies that {@link LoadTuner} backs off when batches start failing due to lock contention,
+   * and counts those lock waits. (Batch sizes are allowed to grow back once the failures stop, so
+   * only the halving itself is checked for.)
+   */
+  @Test
+  public void lockWaitsCauseBackOff() {
+    SimulatedDatabase database = new SimulatedDatabase(8);
+    database.lockWaitThreads = 8;
+    SimulatedLoad load = new SimulatedLoad(database, 2, 32);
+    int initialThreads = load.tuner.getLoaderThreads();
+
+    load.run(RifFileType.BENEFICIARY, TimeUnit.MINUTES.toNanos(10));
+
+    Assert.assertTrue(load.tuner.getLoaderThreads() < initialThreads);
+    Assert.assertTrue(load.tuner.getLoaderThreads() <= database.lockWaitThreads);
+    Assert.assertTrue(load.metrics.meter("LoadTuner.lockWaits").getCount() > 0);
+    Assert.assertTrue(
+        load.metrics.meter("LoadTuner.decisions.batchSizeHalved").getCount() > 0);
+    Assert.assertTrue(
+        load.metrics.meter("LoadTuner.decisions.threadsBackedOff").getCount() > 0);
+  }
+
+  /**
+   * Verifies that {@link LoadTuner#resetWindow()} keeps the idle time between data sets from being
+   * counted against the first tuning window of the next one.
+   */
+  @Test
+  public void idleTimeBetweenWindowsIsIgnored() {
+    SimulatedDatabase database = new SimulatedDatabase(8);
+    SimulatedLoad load = new SimulatedLoad(database, 4, 4);
+    load.run(RifFileType.PDE, TimeUnit.MINUTES.toNanos(30));
+    double throughputBeforeGap = getThroughput(load);
+    long windowsBeforeGap = countThreadDecisions(load);
+
+    // Sit idle for an hour, partway through a window, and then start the next data set.
+    load.clockNanos.addAndGet(TimeUnit.HOURS.toNanos(1));
+    load.tuner.resetWindow();
+    load.run(RifFileType.PDE, LoadTuner.TUNING_WINDOW_NANOS);
+
+    Assert.assertEquals(windowsBeforeGap + 1, countThreadDecisions(load));
+    Assert.assertEquals(throughputBeforeGap, getThroughput(load), throughputBeforeGap * 0.05);
+  }
+
+  /** Verifies that {@link LoadTuner#isLockContention(Throwable)} recognizes lock errors. */
+  @Test
+  public void isLockContention() {
+    Assert.assertTrue(
+        LoadTuner.isLockContention(
+            new RifLoadFailure(new RuntimeException(new SQLException("deadlock", "40P01")))));
+    Assert.assertTrue(LoadTuner.isLockContention(new SQLException("timeout", "55P03")));
+    Assert.assertFalse(
+        LoadTuner.isLockContention(new RuntimeException(new SQLException("bad data", "22001"))));
+    Assert.assertFalse(LoadTuner.isLockContention(new IllegalStateException()));
+  }
+
+  /**
+   * @param database the {@link SimulatedDatabase} to check against
+   * @param rifFileType the {@link RifFileType} to check
+   * @param batchSize the batch size to check
+   * @param threads the number of concurrent batches
+   */
+  private static void assertLatencyInTargetRange(
+      SimulatedDatabase database, RifFileType rifFileType, int batchSize, int threads) {
+    long latencyMillis =
+        TimeUnit.NANOSECONDS.toMillis(database.latencyNanos(rifFileType, batchSize, threads));
+    Assert.assertTrue(
+        rifFileType + " latency: " + latencyMillis,
+        latencyMillis >= LoadTuner.TARGET_LATENCY_MIN_MILLIS / 2
+            && latencyMillis <= LoadTuner.TARGET_LATENCY_MAX_MILLIS * 2);
+  }
+
+  /**
+   * @param load the {@link SimulatedLoad} to check
+   * @return the records per second in the {@link SimulatedLoad#tuner}'s last complete window
+   */
+  private static double getThroughput(SimulatedLoad load) {
+    return (Double) load.metrics.getGauges().get("LoadTuner.throughput").getValue();
+  }
+
+  /**
+   * @param load the {@link SimulatedLoad} to check
+   * @return the number of thread count decisions (i.e. complete windows) that the {@link
+   *     SimulatedLoad#tuner} has made
+   */
+  private static long countThreadDecisions(SimulatedLoad load) {
+    return load.metrics.getMeters().entrySet().stream()
+        .filter(e -> e.getKey().startsWith("LoadTuner.decisions.threads"))
+        .mapToLong(e -> e.getValue().getCount())
+        .sum();
+  }
+
+  /**
+   * @param capacity the {@link SimulatedDatabase#capacity} to check against
+   * @param threads the thread count to check
+   */
+  private static void assertThreadsNear(int capacity, int threads) {
+    Assert.assertTrue(
+        String.format("Threads: %d, capacity: %d", threads, capacity),
+        threads >= capacity / 2 && threads <= capacity * 3 / 2);
+  }
+
+  /**
+   * A very simple model of a database's performance: each transaction has a fixed overhead plus a
+   * per-record cost, and once more than {@link #capacity} transactions are running at once, they
+   * start slowing each other down, by more than enough to cancel out the extra concurrency.
+   */
+  private static final class SimulatedDatabase {
+    /** The number of concurrent transactions that can run before they start to contend. */
+    final int capacity;
+
+    /** Beyond this many concurrent transactions, some will fail with lock waits. */
+    int lockWaitThreads = Integer.MAX_VALUE;
+
+    private long transactionCount = 0;
+
+    /** @param capacity the value to use for {@link #capacity} */
+    SimulatedDatabase(int capacity) {
+      this.capacity = capacity;
+    }
+
+    /**
+     * @param rifFileType the {@link RifFileType} of the batch
+     * @param batchSize the number of records in the batch
+     * @param threads the number of batches being run concurrently
+     * @return how long the specified batch will take to commit
+     */
+    long latencyNanos(RifFileType rifFileType, int batchSize, int threads) {
+      double millisPerRecord;
+      if (rifFileType == RifFileType.PDE) millisPerRecord = 0.2;
+      else if (rifFileType == RifFileType.INPATIENT) millisPerRecord = 20.0;
+      else millisPerRecord = 2.0;
+
+      double latencyMillis = 20.0 + (batchSize * millisPerRecord);
+      if (threads > capacity) latencyMillis *= Math.pow((double) threads / capacity, 2);
+      return (long) (latencyMillis * 1_000_000);
+    }
+
+    /**
+     * @param threads the number of batches being run concurrently
+     * @return the error that the next transaction fails with, or <code>null</code> if it succeeds
+     */
+    Throwable nextTransactionFailure(int threads) {
+      transactionCount++;
+      if (threads > lockWaitThreads && transactionCount % 20 == 0)
+        return new RifLoadFailure(new SQLException("deadlock detected", "40P01"));
+      return null;
+    }
+  }
+
+  /** Drives a {@link LoadTuner} with batches run against a {@link SimulatedDatabase}. */
+  private static final class SimulatedLoad {
+    final SimulatedDatabase database;
+    final MetricRegistry metrics;
+    final AtomicLong clockNanos;
+    final AtomicInteger appliedThreads;
+    final LoadTuner tuner;
+
+    /**
+     * @param database the {@link SimulatedDatabase} to load into
+     * @param minLoaderThreads the fewest loader threads to allow
+     * @param maxLoaderThreads the most loader threads to allow
+     */
+    SimulatedLoad(SimulatedDatabase database, int minLoaderThreads, int maxLoaderThreads) {
+      this.database = database;
+      this.metrics = new MetricRegistry();
+      this.clockNanos = new AtomicLong(0);
+      this.appliedThreads = new AtomicInteger(0);
+      this.tuner =
+          new LoadTuner(
+              minLoaderThreads, maxLoaderThreads, clockNanos::get, appliedThreads::set, metrics);
+      this.appliedThreads.set(tuner.getLoaderThreads());
+    }
+
+    /**
+     * Runs the current number of loader threads' worth of batches at once, over and over, until the
+     * specified amount of simulated time has passed.
+     *
+     * @param rifFileType the {@link RifFileType} of the records to load
+     * @param durationNanos how long to load for
+     */
+    void run(RifFileType rifFileType, long durationNanos) {
+      long endNanos = clockNanos.get() + durationNanos;
+      while (clockNanos.get() < endNanos) {
+        int threads = appliedThreads.get();
+        int batchSize = tuner.getBatchSize(rifFileType);
+        long latencyNanos = database.latencyNanos(rifFileType, batchSize, threads);
+
+        clockNanos.addAndGet(latencyNanos);
+        for (int i = 0; i < threads; i++)
+          tuner.recordBatch(
+              rifFileType, batchSize, latencyNanos, database.nextTransactionFailure(threads));
+      }
+    }
+  }
+}
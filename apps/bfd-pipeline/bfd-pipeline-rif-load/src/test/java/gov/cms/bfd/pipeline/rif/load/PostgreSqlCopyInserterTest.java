@@ -0,0 +1,59 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Date;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Unit tests for {@link gov.cms.bfd.pipeline.rif.load.PostgreSqlCopyInserter}. */
+public final class PostgreSqlCopyInserterTest {
+  /**
+   * Verifies that {@link PostgreSqlCopyInserter#toCopyValue(Object)} converts values into forms
+   * that PostgreSQL can parse.
+   */
+  @Test
+  public void toCopyValue() {
+    Assert.assertNull(PostgreSqlCopyInserter.toCopyValue(null));
+    Assert.assertEquals("abc", PostgreSqlCopyInserter.toCopyValue("abc"));
+    Assert.assertEquals('Y', PostgreSqlCopyInserter.toCopyValue('Y'));
+
+    // Timestamps must keep their time zone and any fractional seconds.
+    Assert.assertEquals("1970-01-01T00:00:00Z", PostgreSqlCopyInserter.toCopyValue(new Date(0L)));
+    Assert.assertEquals(
+        "2020-02-29T01:02:03.456Z", PostgreSqlCopyInserter.toCopyValue(new Date(1582938123456L)));
+    Assert.assertEquals(
+        LocalDate.of(2020, 2, 29), PostgreSqlCopyInserter.toCopyValue(LocalDate.of(2020, 2, 29)));
+
+    // Decimals must never be written in scientific notation, and must keep their scale.
+    Assert.assertEquals("1000", PostgreSqlCopyInserter.toCopyValue(new BigDecimal("1E+3")));
+    Assert.assertEquals("-0.50", PostgreSqlCopyInserter.toCopyValue(new BigDecimal("-0.50")));
+    Assert.assertEquals("0.00000001", PostgreSqlCopyInserter.toCopyValue(new BigDecimal("1E-8")));
+  }
+
+  /**
+   * Verifies that {@link PostgreSqlCopyInserter#writeCsvRows(Appendable, java.util.List)} quotes
+   * and escapes values just as PostgreSQL's CSV-format <code>COPY</code> expects, and only writes
+   * <code>null</code>s as <code>NULL</code>s.
+   *
+   * @throws IOException (indicates a test error)
+   */
+  @Test
+  public void writeCsvRows() throws IOException {
+    StringBuilder csv = new StringBuilder();
+    PostgreSqlCopyInserter.writeCsvRows(
+        csv,
+        Arrays.asList(
+            new Object[] {null, "a", "", null},
+            new Object[] {"say \"hi\"", "x,y", "line1\nline2\r", "back\\slash"},
+            new Object[] {new BigDecimal("1E+2"), new Date(0L), 'Y', "\\."}));
+
+    Assert.assertEquals(
+        ",a,\"\",\n"
+            + "\"say \"\"hi\"\"\",\"x,y\",\"line1\nline2\r\",back\\slash\n"
+            + "100,1970-01-01T00:00:00Z,Y,\"\\.\"\n",
+        csv.toString());
+  }
+}
@@ -0,0 +1,67 @@
+package gov.cms.bfd.pipeline.rif.load;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Unit tests for {@link PostgreSqlStagedMerger}. */
+public final class PostgreSqlStagedMergerTest {
+  /**
+   * Verifies that {@link PostgreSqlStagedMerger#createHeaderMergeSql(String, String,
+   * java.util.List, String)} skips conflicting rows and returns the IDs of the inserted ones.
+   */
+  @Test
+  public void createHeaderMergeSql() {
+    String stagingTable = PostgreSqlStagedMerger.getStagingTableName("CarrierClaims", 3);
+    Assert.assertEquals("CarrierClaims_staging_3", stagingTable);
+    Assert.assertEquals(
+        "INSERT INTO \"CarrierClaims\" (\"claimId\", \"beneficiaryId\")"
+            + " SELECT \"claimId\", \"beneficiaryId\" FROM \"CarrierClaims_staging_3\""
+            + " ON CONFLICT DO NOTHING RETURNING \"claimId\"::text",
+        PostgreSqlStagedMerger.createHeaderMergeSql(
+            "CarrierClaims", stagingTable, Arrays.asList("claimId", "beneficiaryId"), "claimId"));
+  }
+
+  /**
+   * Verifies that {@link PostgreSqlStagedMerger#createLineMergeSql(String, String, java.util.List,
+   * String)} only filters the staged lines by their parent claims when asked to.
+   */
+  @Test
+  public void createLineMergeSql() {
+    Assert.assertEquals(
+        "INSERT INTO \"CarrierClaimLines\" (\"parentClaim\", \"lineNumber\")"
+            + " SELECT \"parentClaim\", \"lineNumber\" FROM \"CarrierClaimLines_staging_1\""
+            + " ON CONFLICT DO NOTHING",
+        PostgreSqlStagedMerger.createLineMergeSql(
+            "CarrierClaimLines",
+            "CarrierClaimLines_staging_1",
+            Arrays.asList("parentClaim", "lineNumber"),
+            null));
+    Assert.assertEquals(
+        "INSERT INTO \"CarrierClaimLines\" (\"parentClaim\", \"lineNumber\")"
+            + " SELECT \"parentClaim\", \"lineNumber\" FROM \"CarrierClaimLines_staging_1\""
+            + " WHERE \"parentClaim\"::text = ANY (?) ON CONFLICT DO NOTHING",
+        PostgreSqlStagedMerger.createLineMergeSql(
+            "CarrierClaimLines",
+            "CarrierClaimLines_staging_1",
+            Arrays.asList("parentClaim", "lineNumber"),
+            "parentClaim"));
+  }
+
+  /**
+   * Verifies that {@link PostgreSqlStagedMerger#leaseSlot()} never hands out a slot that's still
+   * leased, and reuses slots once they've been released via {@link
+   * PostgreSqlStagedMerger#releaseSlot(int)}.
+   */
+  @Test
+  public void leaseSlots() {
+    PostgreSqlStagedMerger merger = new PostgreSqlStagedMerger();
+    int firstSlot = merger.leaseSlot();
+    int secondSlot = merger.leaseSlot();
+    Assert.assertNotEquals(firstSlot, secondSlot);
+
+    merger.releaseSlot(firstSlot);
+    Assert.assertEquals(firstSlot, merger.leaseSlot());
+    Assert.assertNotEquals(secondSlot, merger.leaseSlot());
+  }
+}
@@ -9,22 +9,45 @@ import gov.cms.bfd.model.rif.CarrierClaim;
 import gov.cms.bfd.model.rif.CarrierClaimLine;
 import gov.cms.bfd.model.rif.LoadedBatch;
 import gov.cms.bfd.model.rif.LoadedFile;
+import gov.cms.bfd.model.rif.RifFile;
 import gov.cms.bfd.model.rif.RifFileEvent;
 import gov.cms.bfd.model.rif.RifFileRecords;
+import gov.cms.bfd.model.rif.RifFileType;
 import gov.cms.bfd.model.rif.RifFilesEvent;
 import gov.cms.bfd.model.rif.samples.StaticRifResource;
 import gov.cms.bfd.model.rif.samples.StaticRifResourceGroup;
+import gov.cms.bfd.model.rif.schema.DatabaseSchemaManager;
 import gov.cms.bfd.model.rif.schema.DatabaseTestHelper;
+import gov.cms.bfd.model.rif.schema.LoadedBatchPartitions;
 import gov.cms.bfd.pipeline.rif.extract.RifFilesProcessor;
+import gov.cms.bfd.pipeline.rif.load.LoadAppOptions.InsertStrategy;
+import gov.cms.bfd.pipeline.rif.load.RifRecordLoadResult.LoadAction;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.Month;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -36,6 +59,7 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 import javax.sql.DataSource;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -55,6 +79,233 @@ public final class RifLoaderIT {
     loadSample(dataSource, StaticRifResourceGroup.SAMPLE_A);
   }
 
+  /**
+   * Runs {@link gov.cms.bfd.pipeline.rif.load.RifLoader} against the {@link
+   * StaticRifResourceGroup#SAMPLE_A} data, inserting its records via {@link
+   * InsertStrategy#JDBC_BATCH}.
+   */
+  @Test
+  public void loadSampleAWithJdbcBatches() {
+    DataSource dataSource = DatabaseTestHelper.getTestDatabaseAfterClean();
+    LoadAppOptions options =
+        RifLoaderTestUtils.getLoadOptions(dataSource)
+            .toBuilder()
+            .idempotencyRequired(false)
+            .insertStrategy(InsertStrategy.JDBC_BATCH)
+            .build();
+    loadSample(options, StaticRifResourceGroup.SAMPLE_A);
+  }
+
+  /**
+   * Runs {@link gov.cms.bfd.pipeline.rif.load.RifLoader} against the {@link
+   * StaticRifResourceGroup#SAMPLE_A} data with {@link LoadAppOptions#isBulkLoadEnabled()},
+   * verifying that all of the deferred indexes and foreign keys are restored afterwards.
+   */
+  @Test
+  public void loadSampleAWithBulkLoad() {
+    DataSource dataSource = DatabaseTestHelper.getTestDatabaseAfterClean();
+    LoadAppOptions options =
+        RifLoaderTestUtils.getLoadOptions(dataSource).toBuilder().bulkLoadEnabled(true).build();
+    loadSample(options, StaticRifResourceGroup.SAMPLE_A);
+
+    Assert.assertTrue(DatabaseSchemaManager.findDeferredSchemaObjects(dataSource).isEmpty());
+  }
+
+  /**
+   * Runs {@link gov.cms.bfd.pipeline.rif.load.RifLoader} against the {@link
+   * StaticRifResourceGroup#SAMPLE_U} data (which updates the {@link
+   * StaticRifResourceGroup#SAMPLE_A} beneficiaries) with {@link
+   * LoadAppOptions#isBeneficiaryAffinityEnabled()}, verifying that every record is loaded and that
+   * the lanes' throughput is reported.
+   */
+  @Test
+  public void loadSampleUWithBeneficiaryAffinity() {
+    DataSource dataSource = DatabaseTestHelper.getTestDatabaseAfterClean();
+    LoadAppOptions options =
+        RifLoaderTestUtils.getLoadOptions(dataSource)
+            .toBuilder()
+            .beneficiaryAffinityEnabled(true)
+            .build();
+    loadSample(options, StaticRifResourceGroup.SAMPLE_A);
+    MetricRegistry appMetrics = loadSample(options, StaticRifResourceGroup.SAMPLE_U);
+
+    Assert.assertTrue(
+        appMetrics.getMeters().entrySet().stream()
+            .anyMatch(
+                m ->
+                    m.getKey().startsWith("RifLoader.lanes.")
+                        && m.getKey().endsWith(".records")
+                        && m.getValue().getCount() > 0));
+  }
+
+  /**
+   * Runs {@link gov.cms.bfd.pipeline.rif.load.RifLoader} against the {@link
+   * StaticRifResourceGroup#SAMPLE_A} data with {@link InsertStrategy#STAGED_MERGE}, verifying that
+   * it leaves the database with exactly the same rows as {@link InsertStrategy#JPA} inserts do,
+   * both on the first load and on a second (idempotent) one. Only runs against PostgreSQL, as the
+   * merges aren't used otherwise.
+   *
+   * @throws SQLException (indicates a test error)
+   */
+  @Test
+  public void loadSampleAWithStagedMerge() throws SQLException {
+    DataSource dataSource = DatabaseTestHelper.getTestDatabaseAfterClean();
+    Assume.assumeTrue(isPostgreSql(dataSource));
+    loadSample(createOptions(dataSource, InsertStrategy.JPA), StaticRifResourceGroup.SAMPLE_A);
+    List<String> expectedRows = dumpDataRows(dataSource);
+
+    dataSource = DatabaseTestHelper.getTestDatabaseAfterClean();
+    LoadAppOptions options = createOptions(dataSource, InsertStrategy.STAGED_MERGE);
+    loadSample(options, StaticRifResourceGroup.SAMPLE_A);
+    Assert.assertEquals(expectedRows, dumpDataRows(dataSource));
+
+    loadSample(options, StaticRifResourceGroup.SAMPLE_A);
+    Assert.assertEquals(expectedRows, dumpDataRows(dataSource));
+  }
+
+  /**
+   * Runs {@link gov.cms.bfd.pipeline.rif.load.RifLoader} with {@link InsertStrategy#STAGED_MERGE}
+   * against a claim for a beneficiary that doesn't exist, whose batch fails, rolling back the
+   * creation of its staging tables, too. Then runs the same {@link RifLoader} (and so the same
+   * staging slot) against the {@link StaticRifResourceGroup#SAMPLE_A} data, verifying that it
+   * recreates the staging tables, and leaves the database with exactly the same rows as {@link
+   * InsertStrategy#JPA} inserts do. Only runs against PostgreSQL, as the merges aren't used
+   * otherwise.
+   *
+   * @throws IOException (indicates a test error)
+   * @throws SQLException (indicates a test error)
+   */
+  @Test
+  public void loadSampleAWithStagedMergeAfterRollback() throws IOException, SQLException {
+    DataSource dataSource = DatabaseTestHelper.getTestDatabaseAfterClean();
+    Assume.assumeTrue(isPostgreSql(dataSource));
+    loadSample(createOptions(dataSource, InsertStrategy.JPA), StaticRifResourceGroup.SAMPLE_A);
+    List<String> expectedRows = dumpDataRows(dataSource);
+
+    dataSource = DatabaseTestHelper.getTestDatabaseAfterClean();
+    LoadAppOptions options =
+        createOptions(dataSource, InsertStrategy.STAGED_MERGE).toBuilder().loaderThreads(1).build();
+
+    List<String> sampleLines = readRifLines(StaticRifResource.SAMPLE_A_CARRIER);
+    StringBuilder orphanClaimRif = new StringBuilder(sampleLines.get(0)).append('\n');
+    for (String sampleLine : sampleLines.subList(1, sampleLines.size())) {
+      String[] values = sampleLine.split("\\|", -1);
+      values[1] = "9999999";
+      orphanClaimRif.append(String.join("|", values)).append('\n');
+    }
+    RifFile orphanClaimFile =
+        new InMemoryRifFile(
+            "orphan-carrier-claim",
+            RifFileType.CARRIER,
+            orphanClaimRif.toString().getBytes(StandardCharsets.UTF_8));
+
+    try (RifLoader loader = new RifLoader(new MetricRegistry(), options)) {
+      Assert.assertTrue(countLoadFailures(loader, Arrays.asList(orphanClaimFile)) > 0);
+      Assert.assertEquals(
+          0,
+          countLoadFailures(
+              loader,
+              Arrays.stream(StaticRifResourceGroup.SAMPLE_A.getResources())
+                  .map(r -> r.toRifFile())
+                  .collect(Collectors.toList())));
+    }
+    Assert.assertEquals(expectedRows, dumpDataRows(dataSource));
+  }
+
+  /**
+   * Runs {@link gov.cms.bfd.pipeline.rif.load.RifLoader} against the {@link
+   * StaticRifResourceGroup#SAMPLE_A} data (which has every RIF record type) with CSV-format {@link
+   * InsertStrategy#COPY}s, verifying that it leaves the database with exactly the same rows as
+   * {@link InsertStrategy#JPA} inserts do. Only runs against PostgreSQL, as the <code>COPY</code>s
+   * aren't used otherwise.
+   *
+   * @throws SQLException (indicates a test error)
+   */
+  @Test
+  public void loadSampleAWithCsvCopy() throws SQLException {
+    DataSource dataSource = DatabaseTestHelper.getTestDatabaseAfterClean();
+    Assume.assumeTrue(isPostgreSql(dataSource));
+    loadSample(createOptions(dataSource, InsertStrategy.JPA), StaticRifResourceGroup.SAMPLE_A);
+    List<String> expectedRows = dumpDataRows(dataSource);
+
+    dataSource = DatabaseTestHelper.getTestDatabaseAfterClean();
+    LoadAppOptions csvCopyOptions =
+        createOptions(dataSource, InsertStrategy.COPY)
+            .toBuilder()
+            .binaryCopyEnabled(false)
+            .copyTranscodingEnabled(false)
+            .build();
+    loadSample(csvCopyOptions, StaticRifResourceGroup.SAMPLE_A);
+    Assert.assertEquals(expectedRows, dumpDataRows(dataSource));
+  }
+
+  /**
+   * Runs {@link gov.cms.bfd.pipeline.rif.load.RifLoader} against the {@link
+   * StaticRifResourceGroup#SAMPLE_A} and then {@link StaticRifResourceGroup#SAMPLE_U} data,
+   * followed by a batch that inserts a claim and then updates it twice, the second time removing
+   * some of its lines. Verifies that upserting the updates via {@link PostgreSqlUpserter}, after
+   * either <code>COPY</code>ing or merging (see {@link PostgreSqlStagedMerger}) the inserts, leaves
+   * the database with exactly the same rows, and reports the same {@link LoadAction}s, as loading
+   * them via JPA does. Only runs against PostgreSQL, as the upserts aren't used otherwise.
+   *
+   * @throws IOException (indicates a test error)
+   * @throws SQLException (indicates a test error)
+   */
+  @Test
+  public void loadSampleUWithUpserts() throws IOException, SQLException {
+    DataSource dataSource = DatabaseTestHelper.getTestDatabaseAfterClean();
+    Assume.assumeTrue(isPostgreSql(dataSource));
+    RifFile claimUpdatesFile = createCarrierClaimUpdatesFile();
+
+    List<List<String>> rowsByStrategy = new ArrayList<>();
+    for (InsertStrategy insertStrategy :
+        new InsertStrategy[] {
+          InsertStrategy.JPA, InsertStrategy.COPY, InsertStrategy.STAGED_MERGE
+        }) {
+      dataSource = DatabaseTestHelper.getTestDatabaseAfterClean();
+      LoadAppOptions options =
+          createOptions(dataSource, insertStrategy)
+              .toBuilder()
+              .copyTranscodingEnabled(false)
+              .build();
+      loadSample(options, StaticRifResourceGroup.SAMPLE_A);
+      loadSample(options, StaticRifResourceGroup.SAMPLE_U);
+      Assert.assertEquals(
+          insertStrategy.name(),
+          Arrays.asList(
+              LoadAction.INSERTED,
+              LoadAction.INSERTED,
+              LoadAction.INSERTED,
+              LoadAction.UPDATED,
+              LoadAction.UPDATED),
+          loadRifFile(options, claimUpdatesFile, 5));
+      rowsByStrategy.add(dumpDataRows(dataSource));
+    }
+
+    Assert.assertEquals(rowsByStrategy.get(0), rowsByStrategy.get(1));
+    Assert.assertEquals(rowsByStrategy.get(0), rowsByStrategy.get(2));
+    Assert.assertEquals(
+        1,
+        rowsByStrategy.get(1).stream()
+            .filter(
+                row ->
+                    row.startsWith("CarrierClaimLines, ")
+                        && row.contains(", parentClaim=9991831998,"))
+            .count());
+  }
+
+  /**
+   * Runs {@link gov.cms.bfd.pipeline.rif.load.RifLoader} against the {@link
+   * StaticRifResourceGroup#SAMPLE_A} data twice, verifying that the second (idempotent) load skips
+   * the already-loaded records, rather than failing.
+   */
+  @Test
+  public void loadSampleATwice() {
+    DataSource dataSource = DatabaseTestHelper.getTestDatabaseAfterClean();
+    loadSample(dataSource, StaticRifResourceGroup.SAMPLE_A);
+    loadSample(dataSource, StaticRifResourceGroup.SAMPLE_A);
+  }
+
   @Ignore
   @Test
   public void loadSampleAWithoutClean() {
@@ -150,6 +401,65 @@ public final class RifLoaderIT {
         });
   }
 
+  /**
+   * Verifies that {@link LoadedFileRetention} creates upcoming {@link LoadedBatchPartitions} and
+   * drops expired ones (where supported), and always expires old files along with all of their
+   * batches.
+   */
+  @Test
+  public void trimLoadedBatchPartitions() {
+    RifLoaderTestUtils.doTestWithDb(
+        (dataSource, entityManager) -> {
+          boolean partitioned = isPostgreSql(dataSource);
+          LoadedFileRetention retention =
+              new LoadedFileRetention(dataSource, partitioned, new MetricRegistry());
+          Instant now = Instant.now();
+          LocalDate today = now.atZone(ZoneOffset.UTC).toLocalDate();
+          LocalDate oldDay = today.minusDays(50);
+          retention.trim(now);
+          if (partitioned) {
+            Assert.assertTrue(LoadedBatchPartitions.findPartitions(dataSource).contains(today));
+            Assert.assertTrue(
+                LoadedBatchPartitions.findPartitions(dataSource)
+                    .contains(today.plusDays(LoadedFileRetention.PARTITIONS_AHEAD)));
+            LoadedBatchPartitions.createPartition(dataSource, oldDay);
+          }
+
+          // Setup an old file whose batches straddle two days, and a current one.
+          Date oldDate = Date.from(oldDay.atTime(23, 0).toInstant(ZoneOffset.UTC));
+          Date oldDatePlusTwoHours = Date.from(oldDate.toInstant().plus(2, ChronoUnit.HOURS));
+          EntityTransaction txn = entityManager.getTransaction();
+          txn.begin();
+          LoadedFile oldFile = new LoadedFile("BENEFICIARY");
+          oldFile.setCreated(oldDate);
+          entityManager.persist(oldFile);
+          LoadedFile newFile = new LoadedFile("BENEFICIARY");
+          newFile.setCreated(Date.from(now));
+          entityManager.persist(newFile);
+          entityManager.flush();
+          List<String> beneficiaries = Arrays.asList("567834");
+          long oldFileId = oldFile.getLoadedFileId();
+          entityManager.persist(new LoadedBatch(0, oldFileId, beneficiaries, oldDate));
+          entityManager.persist(new LoadedBatch(0, oldFileId, beneficiaries, oldDatePlusTwoHours));
+          entityManager.persist(
+              new LoadedBatch(0, newFile.getLoadedFileId(), beneficiaries, Date.from(now)));
+          txn.commit();
+          Assert.assertEquals(2, loadBatches(entityManager, oldFile.getLoadedFileId()).size());
+
+          // Trim them, and verify that only the current file and batch remain.
+          retention.trim(now);
+          List<LoadedFile> loadedFiles = RifLoaderTestUtils.findLoadedFiles(entityManager);
+          Assert.assertEquals(1, loadedFiles.size());
+          Assert.assertEquals(newFile.getLoadedFileId(), loadedFiles.get(0).getLoadedFileId());
+          Assert.assertEquals(0, loadBatches(entityManager, oldFile.getLoadedFileId()).size());
+          Assert.assertEquals(1, loadBatches(entityManager, newFile.getLoadedFileId()).size());
+          if (partitioned) {
+            Assert.assertFalse(LoadedBatchPartitions.findPartitions(dataSource).contains(oldDay));
+            Assert.assertTrue(LoadedBatchPartitions.findPartitions(dataSource).contains(today));
+          }
+        });
+  }
+
   @Ignore
   @Test
   public void buildSyntheticLoadedFiles() {
@@ -448,6 +758,19 @@ public final class RifLoaderIT {
    * @param sampleGroup the {@link StaticRifResourceGroup} to load
    */
   private void loadSample(DataSource dataSource, StaticRifResourceGroup sampleGroup) {
+    loadSample(RifLoaderTestUtils.getLoadOptions(dataSource), sampleGroup);
+  }
+
+  /**
+   * Runs {@link gov.cms.bfd.pipeline.rif.load.RifLoader} against the specified {@link
+   * StaticRifResourceGroup}.
+   *
+   * @param options the {@link LoadAppOptions} to use, which must specify a {@link DataSource} for
+   *     the test DB to use
+   * @param sampleGroup the {@link StaticRifResourceGroup} to load
+   * @return the {@link MetricRegistry} that the {@link RifLoader} recorded its metrics in
+   */
+  private MetricRegistry loadSample(LoadAppOptions options, StaticRifResourceGroup sampleGroup) {
     // Generate the sample RIF data to feed through the pipeline.
     List<StaticRifResource> sampleResources =
         Arrays.stream(sampleGroup.getResources()).collect(Collectors.toList());
@@ -461,26 +784,24 @@ public final class RifLoaderIT {
     // Create the processors that will handle each stage of the pipeline.
     MetricRegistry appMetrics = new MetricRegistry();
     RifFilesProcessor processor = new RifFilesProcessor();
-    LoadAppOptions options = RifLoaderTestUtils.getLoadOptions(dataSource);
     RifLoader loader = new RifLoader(appMetrics, options);
 
     // Link up the pipeline and run it.
     LOGGER.info("Loading RIF records...");
     AtomicInteger failureCount = new AtomicInteger(0);
     AtomicInteger loadCount = new AtomicInteger(0);
-    for (RifFileEvent rifFileEvent : rifFilesEvent.getFileEvents()) {
-      RifFileRecords rifFileRecords = processor.produceRecords(rifFileEvent);
-      loader.process(
-          rifFileRecords,
-          error -> {
-            failureCount.incrementAndGet();
-            LOGGER.warn("Record(s) failed to load.", error);
-          },
-          result -> {
-            loadCount.incrementAndGet();
-          });
+    loader.process(
+        rifFilesEvent,
+        processor::produceRecords,
+        error -> {
+          failureCount.incrementAndGet();
+          LOGGER.warn("Record(s) failed to load.", error);
+        },
+        result -> {
+          loadCount.incrementAndGet();
+        });
+    for (RifFileEvent rifFileEvent : rifFilesEvent.getFileEvents())
       Slf4jReporter.forRegistry(rifFileEvent.getEventMetrics()).outputTo(LOGGER).build().report();
-    }
     LOGGER.info("Loaded RIF records: '{}'.", loadCount.get());
     Slf4jReporter.forRegistry(appMetrics).outputTo(LOGGER).build().report();
 
@@ -517,6 +838,193 @@ public final class RifLoaderIT {
     }
     LOGGER.info("All records found in DB.");
     loader.close();
+    return appMetrics;
+  }
+
+  /**
+   * Runs {@link gov.cms.bfd.pipeline.rif.load.RifLoader} against the specified {@link RifFile},
+   * without verifying the results.
+   *
+   * @param options the {@link LoadAppOptions} to use
+   * @param rifFile the {@link RifFile} to load
+   * @param expectedRecordCount the number of records that the {@link RifFile} should load
+   * @return the {@link LoadAction}s of the loaded records, in sorted order (as the order that
+   *     they're loaded in isn't fixed)
+   */
+  private static List<LoadAction> loadRifFile(
+      LoadAppOptions options, RifFile rifFile, int expectedRecordCount) {
+    RifFilesEvent rifFilesEvent = new RifFilesEvent(Instant.now(), rifFile);
+    AtomicInteger failureCount = new AtomicInteger(0);
+    List<LoadAction> loadActions = Collections.synchronizedList(new ArrayList<>());
+    try (RifLoader loader = new RifLoader(new MetricRegistry(), options)) {
+      loader.process(
+          rifFilesEvent,
+          new RifFilesProcessor()::produceRecords,
+          error -> {
+            failureCount.incrementAndGet();
+            LOGGER.warn("Record(s) failed to load.", error);
+          },
+          result -> loadActions.add(result.getLoadAction()));
+    }
+
+    Assert.assertEquals(0, failureCount.get());
+    Assert.assertEquals(expectedRecordCount, loadActions.size());
+    Collections.sort(loadActions);
+    return loadActions;
+  }
+
+  /**
+   * @param loader the {@link RifLoader} to use
+   * @param rifFiles the {@link RifFile}s to load
+   * @return the number of times that the {@link RifLoader} reported a failure to load records
+   */
+  private static int countLoadFailures(RifLoader loader, List<RifFile> rifFiles) {
+    AtomicInteger failureCount = new AtomicInteger(0);
+    loader.process(
+        new RifFilesEvent(Instant.now(), rifFiles),
+        new RifFilesProcessor()::produceRecords,
+        error -> {
+          failureCount.incrementAndGet();
+          LOGGER.warn("Record(s) failed to load.", error);
+        },
+        result -> {});
+    return failureCount.get();
+  }
+
+  /**
+   * @param dataSource the {@link DataSource} for the test DB
+   * @param insertStrategy the {@link InsertStrategy} to use
+   * @return the {@link RifLoaderTestUtils#getLoadOptions(DataSource)} for the specified test DB,
+   *     but with the specified {@link InsertStrategy}
+   */
+  private static LoadAppOptions createOptions(
+      DataSource dataSource, InsertStrategy insertStrategy) {
+    return RifLoaderTestUtils.getLoadOptions(dataSource)
+        .toBuilder()
+        .insertStrategy(insertStrategy)
+        .build();
+  }
+
+  /**
+   * @param rifResource the {@link StaticRifResource} to read
+   * @return the lines of the specified {@link StaticRifResource}, including its header
+   * @throws IOException (indicates a test error)
+   */
+  private static List<String> readRifLines(StaticRifResource rifResource) throws IOException {
+    try (BufferedReader rifReader =
+        new BufferedReader(
+            new InputStreamReader(
+                rifResource.getResourceUrl().openStream(), StandardCharsets.UTF_8))) {
+      return rifReader.lines().collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * @return a {@link RifFile} that, based on the {@link StaticRifResource#SAMPLE_A_CARRIER} claim,
+   *     inserts a new claim with three lines, updates it, and then updates it again with only one
+   *     line (along with inserting a couple of other claims in between)
+   * @throws IOException (indicates a test error)
+   */
+  private static RifFile createCarrierClaimUpdatesFile() throws IOException {
+    List<String> sampleLines = readRifLines(StaticRifResource.SAMPLE_A_CARRIER);
+    List<String> header = Arrays.asList(sampleLines.get(0).split("\\|", -1));
+    int lineNumberIndex = header.indexOf("LINE_NUM");
+    int finalActionIndex = header.indexOf("FINAL_ACTION");
+
+    /*
+     * Each claim's lines are grouped together by claim ID, so the versions of the updated claim
+     * have to be separated by other claims' lines to be read as separate records.
+     */
+    StringBuilder rif = new StringBuilder(sampleLines.get(0)).append('\n');
+    String[][] claimVersions = {
+      {"INSERT", "9991831998", "F", "3"},
+      {"INSERT", "9991831997", "F", "1"},
+      {"UPDATE", "9991831998", "N", "3"},
+      {"INSERT", "9991831996", "F", "1"},
+      {"UPDATE", "9991831998", "F", "1"}
+    };
+    for (String[] claimVersion : claimVersions) {
+      for (int lineNumber = 1; lineNumber <= Integer.parseInt(claimVersion[3]); lineNumber++) {
+        String[] values = sampleLines.get(1).split("\\|", -1);
+        values[0] = claimVersion[0];
+        values[2] = claimVersion[1];
+        values[finalActionIndex] = claimVersion[2];
+        values[lineNumberIndex] = String.valueOf(lineNumber);
+        rif.append(String.join("|", values)).append('\n');
+      }
+    }
+    return new InMemoryRifFile(
+        "carrier-claim-updates",
+        RifFileType.CARRIER,
+        rif.toString().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @param dataSource the {@link DataSource} for the test DB
+   * @return <code>true</code> if the test DB is PostgreSQL, <code>false</code> if it is not
+   */
+  private static boolean isPostgreSql(DataSource dataSource) {
+    try (Connection connection = dataSource.getConnection()) {
+      return connection.getMetaData().getDatabaseProductName().equals("PostgreSQL");
+    } catch (SQLException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @param dataSource the {@link DataSource} for the test DB to dump
+   * @return a sorted {@link List} with a textual representation of every row in every CCW data
+   *     table, leaving out the pipeline's bookkeeping tables and any columns whose values depend on
+   *     when or in what order the rows were loaded
+   * @throws SQLException (indicates a test error)
+   */
+  private static List<String> dumpDataRows(DataSource dataSource) throws SQLException {
+    Set<String> ignoredTables =
+        new HashSet<>(
+            Arrays.asList(
+                "loadedfiles",
+                "loadedbatches",
+                "deferredschemaobjects",
+                "fixupcheckpoints",
+                "schema_version"));
+    Set<String> ignoredColumns =
+        new HashSet<>(Arrays.asList("lastupdated", "beneficiaryhistoryid"));
+
+    List<String> rows = new ArrayList<>();
+    try (Connection connection = dataSource.getConnection()) {
+      List<String> tableNames = new ArrayList<>();
+      try (ResultSet tables =
+          connection
+              .getMetaData()
+              .getTables(null, connection.getSchema(), "%", new String[] {"TABLE"})) {
+        while (tables.next()) tableNames.add(tables.getString("TABLE_NAME"));
+      }
+
+      for (String tableName : tableNames) {
+        if (ignoredTables.contains(tableName.toLowerCase())
+            || tableName.toLowerCase().contains(PostgreSqlStagedMerger.STAGING_TABLE_INFIX)
+            || tableName.startsWith(LoadedBatchPartitions.PARTITION_PREFIX))
+          continue;
+
+        try (Statement statement = connection.createStatement();
+            ResultSet results =
+                statement.executeQuery(String.format("SELECT * FROM \"%s\"", tableName))) {
+          ResultSetMetaData resultsMetadata = results.getMetaData();
+          while (results.next()) {
+            StringBuilder row = new StringBuilder(tableName);
+            for (int i = 1; i <= resultsMetadata.getColumnCount(); i++) {
+              String columnName = resultsMetadata.getColumnName(i);
+              if (ignoredColumns.contains(columnName.toLowerCase())) continue;
+              row.append(", ").append(columnName).append('=').append(results.getString(i));
+            }
+            rows.add(row.toString());
+          }
+        }
+      }
+    }
+
+    Collections.sort(rows);
+    return rows;
   }
 
   /**
@@ -543,6 +1051,12 @@ public final class RifLoaderIT {
    */
   private static void assertAreInDatabase(
       LoadAppOptions options, EntityManagerFactory entityManagerFactory, Stream<Object> records) {
+    IdentifierHasher identifierHasher =
+        new IdentifierHasher(
+            options.getHicnHashIterations(),
+            options.getHicnHashPepper(),
+            IdentifierHasher.DEFAULT_CACHE_SIZE,
+            new MetricRegistry());
     EntityManager entityManager = null;
     try {
       entityManager = entityManagerFactory.createEntityManager();
@@ -554,16 +1068,11 @@ public final class RifLoaderIT {
         if (record instanceof BeneficiaryHistory) {
           BeneficiaryHistory beneficiaryHistoryToFind = (BeneficiaryHistory) record;
           beneficiaryHistoryToFind.setHicn(
-              RifLoader.computeHicnHash(
-                  options, RifLoader.createSecretKeyFactory(), beneficiaryHistoryToFind.getHicn()));
+              identifierHasher.computeIdentifierHash(beneficiaryHistoryToFind.getHicn()));
           beneficiaryHistoryToFind.setMbiHash(
-              beneficiaryHistoryToFind.getMedicareBeneficiaryId().isPresent()
-                  ? Optional.of(
-                      RifLoader.computeMbiHash(
-                          options,
-                          RifLoader.createSecretKeyFactory(),
-                          beneficiaryHistoryToFind.getMedicareBeneficiaryId().get()))
-                  : Optional.empty());
+              beneficiaryHistoryToFind
+                  .getMedicareBeneficiaryId()
+                  .map(identifierHasher::computeIdentifierHash));
 
           CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
           CriteriaQuery<BeneficiaryHistory> query =
@@ -609,17 +1118,12 @@ public final class RifLoaderIT {
    */
   private static RifLoader createLoader(DataSource dataSource, boolean fixupsEnabled) {
     MetricRegistry appMetrics = new MetricRegistry();
-    LoadAppOptions defaultOptions = RifLoaderTestUtils.getLoadOptions(dataSource);
     return new RifLoader(
         appMetrics,
-        new LoadAppOptions(
-            defaultOptions.getHicnHashIterations(),
-            defaultOptions.getHicnHashPepper(),
-            defaultOptions.getDatabaseDataSource(),
-            defaultOptions.getLoaderThreads(),
-            defaultOptions.isIdempotencyRequired(),
-            fixupsEnabled,
-            defaultOptions.getFixupThreads()));
+        RifLoaderTestUtils.getLoadOptions(dataSource)
+            .toBuilder()
+            .fixupsEnabled(fixupsEnabled)
+            .build());
   }
 
   /**
@@ -637,4 +1141,48 @@ public final class RifLoaderIT {
               return true;
             });
   }
+
+  /** A {@link RifFile} whose data is held in memory, for test data that's built on the fly. */
+  private static final class InMemoryRifFile implements RifFile {
+    private final String displayName;
+    private final RifFileType fileType;
+    private final byte[] data;
+
+    /**
+     * Constructs a new {@link InMemoryRifFile}.
+     *
+     * @param displayName the value to use for {@link #getDisplayName()}
+     * @param fileType the value to use for {@link #getFileType()}
+     * @param data the UTF-8 encoded RIF data
+     */
+    InMemoryRifFile(String displayName, RifFileType fileType, byte[] data) {
+      this.displayName = displayName;
+      this.fileType = fileType;
+      this.data = data;
+    }
+
+    /** @see gov.cms.bfd.model.rif.RifFile#getDisplayName() */
+    @Override
+    public String getDisplayName() {
+      return displayName;
+    }
+
+    /** @see gov.cms.bfd.model.rif.RifFile#getFileType() */
+    @Override
+    public RifFileType getFileType() {
+      return fileType;
+    }
+
+    /** @see gov.cms.bfd.model.rif.RifFile#getCharset() */
+    @Override
+    public Charset getCharset() {
+      return StandardCharsets.UTF_8;
+    }
+
+    /** @see gov.cms.bfd.model.rif.RifFile#open() */
+    @Override
+    public InputStream open() {
+      return new ByteArrayInputStream(data);
+    }
+  }
 }
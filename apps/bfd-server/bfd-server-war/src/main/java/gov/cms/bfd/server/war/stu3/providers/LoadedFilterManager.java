@@ -35,9 +35,6 @@ public class LoadedFilterManager {
   private static final Date BEFORE_LAST_UPDATED_FEATURE =
       Date.from(Instant.parse("2020-01-01T00:00:00Z"));
 
-  // The size of the beneficiaryId column
-  private static final int BENE_ID_SIZE = 15;
-
   // The connection to the DB
   private EntityManager entityManager;
 
@@ -350,19 +347,19 @@ public class LoadedFilterManager {
     if (batchCount == 0) {
       throw new IllegalArgumentException("Batches cannot be empty for a filter");
     }
-    final int batchSize =
-        (loadedBatches.get(0).getBeneficiaries().length() + BENE_ID_SIZE) / BENE_ID_SIZE;
-
-    // It is important to get a good estimate of the number of entries for
-    // an accurate FFP and minimal memory size. This one assumes that all batches are of equal size.
-    final BloomFilter bloomFilter = LoadedFileFilter.createFilter(batchSize * batchCount);
+    // It is important to get a good estimate of the number of entries for an accurate FFP and
+    // minimal memory size. Each batch records its distinct beneficiary count, so this is exact,
+    // except for beneficiaries that appear in more than one batch.
+    int beneficiaryCount = 0;
+    for (LoadedBatch batch : loadedBatches) {
+      beneficiaryCount += batch.getBeneficiaryCount();
+    }
+    final BloomFilter bloomFilter = LoadedFileFilter.createFilter(Math.max(beneficiaryCount, 1));
 
     // Loop through all batches, filling the bloom filter and finding the lastUpdated
     Date lastUpdated = firstUpdated;
     for (LoadedBatch batch : loadedBatches) {
-      for (String beneficiary : batch.getBeneficiariesAsList()) {
-        bloomFilter.putString(beneficiary);
-      }
+      batch.forEachBeneficiary(bloomFilter::putString);
       if (batch.getCreated().after(lastUpdated)) {
         lastUpdated = batch.getCreated();
       }
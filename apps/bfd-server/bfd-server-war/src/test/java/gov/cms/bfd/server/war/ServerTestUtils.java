@@ -373,14 +373,15 @@ public final class ServerTestUtils {
   /** @return the {@link LoadAppOptions} to use with {@link RifLoader} in integration tests */
   public static LoadAppOptions createRifLoaderOptions() {
     DataSource dataSource = createDataSource();
-    return new LoadAppOptions(
-        RifLoaderTestUtils.HICN_HASH_ITERATIONS,
-        RifLoaderTestUtils.HICN_HASH_PEPPER,
-        dataSource,
-        LoadAppOptions.DEFAULT_LOADER_THREADS,
-        RifLoaderTestUtils.IDEMPOTENCY_REQUIRED,
-        RifLoaderTestUtils.FIXUPS_ENABLED,
-        RifLoaderIdleTasks.DEFAULT_PARTITION_COUNT);
+    return LoadAppOptions.builder()
+        .hicnHashIterations(RifLoaderTestUtils.HICN_HASH_ITERATIONS)
+        .hicnHashPepper(RifLoaderTestUtils.HICN_HASH_PEPPER)
+        .databaseDataSource(dataSource)
+        .loaderThreads(LoadAppOptions.DEFAULT_LOADER_THREADS)
+        .idempotencyRequired(RifLoaderTestUtils.IDEMPOTENCY_REQUIRED)
+        .fixupsEnabled(RifLoaderTestUtils.FIXUPS_ENABLED)
+        .fixupThreads(RifLoaderIdleTasks.DEFAULT_PARTITION_COUNT)
+        .build();
   }
 
   /**